@@ -25,11 +25,14 @@ import com.novell.ldapchai.provider.ChaiProvider;
 import com.novell.ldapchai.provider.SearchScope;
 import com.novell.ldapchai.util.SearchHelper;
 
+import java.io.InputStream;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * <p>{@code ChaiEntry} instances represent ldap entries.  Most other {@code Chai*} interfaces in this package inherit from
@@ -236,6 +239,32 @@ public interface ChaiEntry
     byte[][] readMultiByteAttribute( String attributeName )
             throws ChaiOperationException, ChaiUnavailableException;
 
+    /**
+     * Performs a read operation against the directory and returns the binary results as read-only buffers.
+     *
+     * @param attributeName A valid attribute on the object.
+     * @return A read-only buffer for each ldap value, an empty list if the attribute has no values.
+     * @throws ChaiOperationException   If an error is encountered during the operation
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     * @see com.novell.ldapchai.provider.ChaiProvider#readMultiByteBufferAttribute(String, String)
+     */
+    List<ByteBuffer> readMultiByteBufferAttribute( String attributeName )
+            throws ChaiOperationException, ChaiUnavailableException;
+
+    /**
+     * Performs a read operation against the directory and returns the <i>first</i> binary value as a stream.
+     * If the attribute has more than one value, the other values are discarded; use
+     * {@link #readMultiByteBufferAttribute(String)} to read every value.
+     *
+     * @param attributeName A valid attribute on the object.
+     * @return A stream of the first ldap value only, or null if the attribute has no values.
+     * @throws ChaiOperationException   If an error is encountered during the operation
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     * @see com.novell.ldapchai.provider.ChaiProvider#readByteStreamAttribute(String, String)
+     */
+    InputStream readByteStreamAttribute( String attributeName )
+            throws ChaiOperationException, ChaiUnavailableException;
+
     /**
      * <p>Retrieves an attribute value from the LDAP entry represented by the
      * instance of this class.  If the attribute syntax is not a string, the value will be
@@ -252,6 +281,25 @@ public interface ChaiEntry
     Set<String> readMultiStringAttribute( String attributeName )
             throws ChaiOperationException, ChaiUnavailableException;
 
+    /**
+     * <p>Reads the values of a multi-valued attribute one range at a time, without holding all values in memory.
+     * This is intended for attributes with a very large number of values, such as the {@code member} attribute
+     * of a large group, which directories such as Active Directory return using ranged retrieval.</p>
+     *
+     * <p>If the directory does not use ranged retrieval for the attribute, the consumer is invoked once with
+     * all values.</p>
+     *
+     * @param attributeName The name of the atttribute
+     * @param rangeConsumer Invoked with the values of each range, in order.  Returning false stops reading
+     *                      any further ranges.
+     * @return The number of values supplied to the consumer
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     * @see ChaiProvider#readMultiStringAttributeRange(String, String, int)
+     */
+    long readMultiStringAttribute( String attributeName, Predicate<List<String>> rangeConsumer )
+            throws ChaiOperationException, ChaiUnavailableException;
+
     /**
      * Read an attribute with network address value.  Reads attributes with network address syntax, and
      * returns any IP addresses found there.  Addresses of other types are ignored.
@@ -372,6 +420,41 @@ public interface ChaiEntry
     Set<ChaiEntry> search( String filter, SearchScope searchScope )
             throws ChaiOperationException, ChaiUnavailableException;
 
+    /**
+     * <p>Perform an ldap search using this entry as the search root, returning entries that carry the attribute
+     * values requested by the {@code SearchHelper}.  Unlike {@link #search(SearchHelper)}, the values returned by
+     * the search are retained, and {@link #readStringAttribute(String)}, {@link #readStringAttributes(Set)},
+     * {@link #readMultiStringAttribute(String)} and the methods based on them are answered from the retained
+     * values without a round trip to the directory.</p>
+     *
+     * <p>Reading an attribute that was not requested repeats the search once for that attribute, loading its values
+     * for all entries of the result together.  Iterating over the result and reading the same attributes from each
+     * entry therefore costs a fixed number of searches regardless of the number of entries.</p>
+     *
+     * <p>The retained values reflect the directory at the time of the search.  Modifying an entry using its write
+     * methods discards its retained values; changes made by any other means are not reflected.</p>
+     *
+     * @param searchHelper A search helper instance
+     * @return Set                      ChaiEntry objects that mean the search criteria
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     * @see com.novell.ldapchai.provider.ChaiProvider#searchMultiValues(String, com.novell.ldapchai.util.SearchHelper)
+     */
+    Set<ChaiEntry> searchPreloaded( SearchHelper searchHelper )
+            throws ChaiOperationException, ChaiUnavailableException;
+
+    /**
+     * Equivalent to {@link #searchPreloaded(SearchHelper)}, but the results are {@code ChaiUser} instances.  The
+     * {@code SearchHelper} filter should only match user entries.
+     *
+     * @param searchHelper A search helper instance
+     * @return Set                      ChaiUser objects that mean the search criteria
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    Set<ChaiUser> searchPreloadedUsers( SearchHelper searchHelper )
+            throws ChaiOperationException, ChaiUnavailableException;
+
     /**
      * Removes all existing values, if any, and sets the new value.
      *
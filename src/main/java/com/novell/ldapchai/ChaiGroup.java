@@ -22,6 +22,7 @@ package com.novell.ldapchai;
 import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
 
+import java.util.Collection;
 import java.util.Set;
 
 /**
@@ -56,6 +57,22 @@ public interface ChaiGroup extends ChaiEntry
     void addMember( ChaiUser theUser )
             throws ChaiUnavailableException, ChaiOperationException;
 
+    /**
+     * Make the passed in users members of this group.  Member values are written to the group using as few modify
+     * operations as possible, limited to {@link com.novell.ldapchai.provider.ChaiSetting#GROUP_MEMBERSHIP_BATCH_SIZE}
+     * values per operation, and any membership attributes maintained on the users are updated concurrently.
+     *
+     * <p>If a batch is rejected, for example because one of the users is already a member, its values are written
+     * individually.  The first error encountered is thrown once all users have been processed.</p>
+     *
+     * @param users The users to assign to this group's membership list.
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     * @see #addMember(ChaiUser)
+     */
+    void addMembers( Collection<ChaiUser> users )
+            throws ChaiUnavailableException, ChaiOperationException;
+
     /**
      * Get a Set of ChaiUser instances that are members of this group.
      *
@@ -67,6 +84,39 @@ public interface ChaiGroup extends ChaiEntry
             throws ChaiOperationException, ChaiUnavailableException;
 
 
+    /**
+     * Test if the passed in user is a direct member of this group.  Equivalent to
+     * {@code hasMember( theUser, false )}.
+     *
+     * @param theUser The user to test.
+     * @return true if the user is a member of this group.
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     * @see #hasMember(ChaiUser, boolean)
+     */
+    boolean hasMember( ChaiUser theUser )
+            throws ChaiOperationException, ChaiUnavailableException;
+
+    /**
+     * Test if the passed in user is a member of this group.  Direct membership is tested using a server side
+     * compare of the group's member attribute, so the membership list of the group is never read.  If the user is
+     * not a direct member and {@code nested} is true, the groups of the user are expanded until this group is
+     * found or no further groups remain.
+     *
+     * <p>Results are cached by the {@link com.novell.ldapchai.provider.MembershipCache} of the provider factory
+     * for {@link com.novell.ldapchai.provider.ChaiProviderFactorySetting#MEMBERSHIP_CACHE_MAX_AGE_MS}.  Cached
+     * results of a group are discarded when its membership is modified using this API.</p>
+     *
+     * @param theUser The user to test.
+     * @param nested  true to include membership through nested groups.
+     * @return true if the user is a member of this group.
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     * @see ChaiUser#isMemberOf(ChaiGroup, boolean)
+     */
+    boolean hasMember( ChaiUser theUser, boolean nested )
+            throws ChaiOperationException, ChaiUnavailableException;
+
     /**
      * Convienence method to read this ChaiUser instance's {@link #ATTR_GROUP_NAME} attribute.
      *
@@ -88,5 +138,20 @@ public interface ChaiGroup extends ChaiEntry
      */
     void removeMember( ChaiUser theUser )
             throws ChaiUnavailableException, ChaiOperationException;
+
+    /**
+     * Remove the passed in users from being members of this group.  Member values are removed from the group using
+     * as few modify operations as possible, limited to
+     * {@link com.novell.ldapchai.provider.ChaiSetting#GROUP_MEMBERSHIP_BATCH_SIZE} values per operation, and any
+     * membership attributes maintained on the users are updated concurrently.  Users that are not members
+     * of the group are ignored.
+     *
+     * @param users The users to remove from this group's membership list.
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     * @see #removeMember(ChaiUser)
+     */
+    void removeMembers( Collection<ChaiUser> users )
+            throws ChaiUnavailableException, ChaiOperationException;
 }
 
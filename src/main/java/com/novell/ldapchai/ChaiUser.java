@@ -131,6 +131,32 @@ public interface ChaiUser extends ChaiEntry
      */
     String ATTR_WORKFORCEID = ChaiConstant.ATTR_LDAP_WORFORCE_ID;
 
+    /**
+     * Test if this user is a direct member of the specified group.  Equivalent to
+     * {@code isMemberOf( theGroup, false )}.
+     *
+     * @param theGroup The group to test.
+     * @return true if this user is a member of the group.
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     * @see ChaiGroup#hasMember(ChaiUser)
+     */
+    boolean isMemberOf( ChaiGroup theGroup )
+            throws ChaiOperationException, ChaiUnavailableException;
+
+    /**
+     * Test if this user is a member of the specified group, optionally including membership through nested groups.
+     * The test is performed by the group, see {@link ChaiGroup#hasMember(ChaiUser, boolean)}.
+     *
+     * @param theGroup The group to test.
+     * @param nested   true to include membership through nested groups.
+     * @return true if this user is a member of the group.
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    boolean isMemberOf( ChaiGroup theGroup, boolean nested )
+            throws ChaiOperationException, ChaiUnavailableException;
+
     /**
      * Make this user a member of the specified group.  This method takes care of all four attribute assignments
      * used in eDirectory static groups.
@@ -462,5 +488,18 @@ public interface ChaiUser extends ChaiEntry
      */
     boolean isAccountExpired()
             throws ChaiOperationException, ChaiUnavailableException;
+
+    /**
+     * Read the account and password status of the user.  The status is computed from a single read of the
+     * attributes needed by {@link #isAccountEnabled()}, {@link #isPasswordLocked()}, {@link #isPasswordExpired()},
+     * {@link #isAccountExpired()} and the related date methods, where the vendor implementation permits.
+     *
+     * @return a snapshot of the status of the user
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     * @see UserStatusSnapshot#search(com.novell.ldapchai.provider.ChaiProvider, String, com.novell.ldapchai.util.SearchHelper, java.util.function.Consumer)
+     */
+    UserStatusSnapshot readStatusSnapshot()
+            throws ChaiOperationException, ChaiUnavailableException;
 }
 
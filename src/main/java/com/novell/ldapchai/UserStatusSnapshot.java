@@ -0,0 +1,326 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai;
+
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.impl.UserStatusEvaluator;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.SearchScope;
+import com.novell.ldapchai.util.LdapAttributeMap;
+import com.novell.ldapchai.util.SearchHelper;
+import com.novell.ldapchai.util.internal.ChaiLogger;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Point in time account and password status of a user, equivalent to calling {@link ChaiUser#isAccountEnabled()},
+ * {@link ChaiUser#isPasswordLocked()}, {@link ChaiUser#isPasswordExpired()}, {@link ChaiUser#isAccountExpired()} and
+ * the related date methods, but computed from a single read of the union of the attributes they need.
+ *
+ * <p>{@link #search(ChaiProvider, String, SearchHelper, Consumer)} computes snapshots for every user matched by a
+ * search, using one streamed (paged) search rather than several reads per user.  Each status is computed and passed
+ * to the consumer as its entry is returned, so the results of the search are never held in memory at once.</p>
+ *
+ * <p>Vendors that can not compute the status from attribute values alone, for example because the status depends
+ * on the password policy of the user, fall back to calling the individual {@link ChaiUser} methods.</p>
+ *
+ * @see ChaiUser#readStatusSnapshot()
+ * @see UserStatusEvaluator
+ */
+public final class UserStatusSnapshot
+{
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger( UserStatusSnapshot.class );
+
+    private final String entryDN;
+    private final Instant timestamp;
+    private final boolean accountEnabled;
+    private final boolean passwordLocked;
+    private final boolean passwordExpired;
+    private final Instant passwordExpirationDate;
+    private final Instant passwordModificationDate;
+    private final Instant lastLoginTime;
+    private final Instant accountExpirationDate;
+
+    private UserStatusSnapshot( final Builder builder )
+    {
+        this.entryDN = builder.entryDN;
+        this.timestamp = builder.timestamp;
+        this.accountEnabled = builder.accountEnabled;
+        this.passwordLocked = builder.passwordLocked;
+        this.passwordExpired = builder.passwordExpired;
+        this.passwordExpirationDate = builder.passwordExpirationDate;
+        this.passwordModificationDate = builder.passwordModificationDate;
+        this.lastLoginTime = builder.lastLoginTime;
+        this.accountExpirationDate = builder.accountExpirationDate;
+    }
+
+    /**
+     * Read the status of a single user.
+     *
+     * @param user the user to read
+     * @return the status of the user
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    public static UserStatusSnapshot read( final ChaiUser user )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final UserStatusEvaluator evaluator = UserStatusEvaluator.forProvider( user.getChaiProvider() );
+        final Set<String> attributes = evaluator.getStatusAttributes();
+
+        Map<String, List<String>> values = Collections.emptyMap();
+        if ( !attributes.isEmpty() )
+        {
+            final Map<String, Map<String, List<String>>> results = user.getChaiProvider().searchMultiValues(
+                    user.getEntryDN(), SearchHelper.DEFAULT_FILTER, attributes, SearchScope.BASE );
+            if ( !results.isEmpty() )
+            {
+                values = new LdapAttributeMap<>( results.values().iterator().next() );
+            }
+        }
+
+        return evaluator.evaluate( user, values, Instant.now() );
+    }
+
+    /**
+     * Compute the status of every user matched by a search.  The search attributes of the supplied search helper are
+     * replaced by the attributes needed to compute the status, the base, filter, scope and limits are used as supplied.
+     *
+     * @param chaiProvider provider to search with
+     * @param baseDN       search base
+     * @param searchHelper search filter, scope and limits
+     * @param consumer     receives the status of each matched user
+     * @return the number of users
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    public static int search(
+            final ChaiProvider chaiProvider,
+            final String baseDN,
+            final SearchHelper searchHelper,
+            final Consumer<UserStatusSnapshot> consumer
+    )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final UserStatusEvaluator evaluator = UserStatusEvaluator.forProvider( chaiProvider );
+        final Set<String> attributes = evaluator.getStatusAttributes();
+
+        final SearchHelper statusSearch = new SearchHelper( searchHelper );
+        if ( attributes.isEmpty() )
+        {
+            statusSearch.returnNoAttributes();
+        }
+        else
+        {
+            statusSearch.setAttributes( attributes );
+        }
+
+        final Instant now = Instant.now();
+        final ChaiEntryFactory entryFactory = chaiProvider.getEntryFactory();
+        final AtomicInteger userCount = new AtomicInteger();
+        chaiProvider.searchStream( baseDN, statusSearch, ( entryDN, values ) ->
+        {
+            final ChaiUser user = entryFactory.newChaiUser( entryDN );
+            consumer.accept( evaluator.evaluate( user, new LdapAttributeMap<>( values ), now ) );
+            userCount.incrementAndGet();
+        } );
+
+        LOGGER.debug( () -> "computed status of " + userCount.get() + " users under " + baseDN );
+        return userCount.get();
+    }
+
+    public static Builder builder( final String entryDN, final Instant timestamp )
+    {
+        return new Builder( entryDN, timestamp );
+    }
+
+    public String getEntryDN()
+    {
+        return entryDN;
+    }
+
+    /**
+     * Time at which the status was evaluated, time based states such as expiration are relative to this time.
+     *
+     * @return evaluation time
+     */
+    public Instant getTimestamp()
+    {
+        return timestamp;
+    }
+
+    public boolean isAccountEnabled()
+    {
+        return accountEnabled;
+    }
+
+    public boolean isPasswordLocked()
+    {
+        return passwordLocked;
+    }
+
+    public boolean isPasswordExpired()
+    {
+        return passwordExpired;
+    }
+
+    public boolean isAccountExpired()
+    {
+        return accountExpirationDate != null && accountExpirationDate.isBefore( timestamp );
+    }
+
+    /**
+     * Password expiration date.
+     *
+     * @return the expiration date, or null if the password does not expire or the date is not known
+     * @see ChaiUser#readPasswordExpirationDate()
+     */
+    public Instant getPasswordExpirationDate()
+    {
+        return passwordExpirationDate;
+    }
+
+    /**
+     * Password modification date.
+     *
+     * @return the modification date, or null if not known
+     * @see ChaiUser#readPasswordModificationDate()
+     */
+    public Instant getPasswordModificationDate()
+    {
+        return passwordModificationDate;
+    }
+
+    /**
+     * Last login time.
+     *
+     * @return the last login time, or null if not known
+     * @see ChaiUser#readLastLoginTime()
+     */
+    public Instant getLastLoginTime()
+    {
+        return lastLoginTime;
+    }
+
+    /**
+     * Account expiration date.
+     *
+     * @return the expiration date, or null if the account does not expire
+     * @see ChaiUser#readAccountExpirationDate()
+     */
+    public Instant getAccountExpirationDate()
+    {
+        return accountExpirationDate;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "UserStatusSnapshot{"
+                + "entryDN=" + entryDN
+                + ", accountEnabled=" + accountEnabled
+                + ", passwordLocked=" + passwordLocked
+                + ", passwordExpired=" + passwordExpired
+                + ", accountExpired=" + isAccountExpired()
+                + "}";
+    }
+
+    public static final class Builder
+    {
+        private final String entryDN;
+        private final Instant timestamp;
+        private boolean accountEnabled = true;
+        private boolean passwordLocked;
+        private boolean passwordExpired;
+        private Instant passwordExpirationDate;
+        private Instant passwordModificationDate;
+        private Instant lastLoginTime;
+        private Instant accountExpirationDate;
+
+        private Builder( final String entryDN, final Instant timestamp )
+        {
+            if ( entryDN == null )
+            {
+                throw new NullPointerException( "entryDN may not be null" );
+            }
+            if ( timestamp == null )
+            {
+                throw new NullPointerException( "timestamp may not be null" );
+            }
+            this.entryDN = entryDN;
+            this.timestamp = timestamp;
+        }
+
+        public Builder accountEnabled( final boolean accountEnabled )
+        {
+            this.accountEnabled = accountEnabled;
+            return this;
+        }
+
+        public Builder passwordLocked( final boolean passwordLocked )
+        {
+            this.passwordLocked = passwordLocked;
+            return this;
+        }
+
+        public Builder passwordExpired( final boolean passwordExpired )
+        {
+            this.passwordExpired = passwordExpired;
+            return this;
+        }
+
+        public Builder passwordExpirationDate( final Instant passwordExpirationDate )
+        {
+            this.passwordExpirationDate = passwordExpirationDate;
+            return this;
+        }
+
+        public Builder passwordModificationDate( final Instant passwordModificationDate )
+        {
+            this.passwordModificationDate = passwordModificationDate;
+            return this;
+        }
+
+        public Builder lastLoginTime( final Instant lastLoginTime )
+        {
+            this.lastLoginTime = lastLoginTime;
+            return this;
+        }
+
+        public Builder accountExpirationDate( final Instant accountExpirationDate )
+        {
+            this.accountExpirationDate = accountExpirationDate;
+            return this;
+        }
+
+        public UserStatusSnapshot build()
+        {
+            return new UserStatusSnapshot( this );
+        }
+    }
+}
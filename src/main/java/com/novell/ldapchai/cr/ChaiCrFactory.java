@@ -204,7 +204,7 @@ public final class ChaiCrFactory
             final Map<Challenge, String> crMap,
             final ChaiConfiguration chaiConfiguration )
     {
-        final int configuredThreadCount = Integer.parseInt( chaiConfiguration.getSetting( ChaiSetting.CR_CHAI_HASH_THREAD_COUNT ) );
+        final int configuredThreadCount = chaiConfiguration.getIntSetting( ChaiSetting.CR_CHAI_HASH_THREAD_COUNT );
         final int maxThreadCount = configuredThreadCount < 1 ? Runtime.getRuntime().availableProcessors() : configuredThreadCount;
         final int maxAppropriateToInput = Math.min( maxThreadCount, crMap.size() );
         final int effective = Math.min( MAX_HASH_THREAD_COUNT, maxAppropriateToInput );
@@ -337,7 +337,7 @@ public final class ChaiCrFactory
 
             final int iterations;
             {
-                final int configuredIterations = Integer.parseInt( chaiConfiguration.getSetting( ChaiSetting.CR_CHAI_ITERATIONS ) );
+                final int configuredIterations = chaiConfiguration.getIntSetting( ChaiSetting.CR_CHAI_ITERATIONS );
                 iterations = configuredIterations > 0
                         ? configuredIterations
                         : formatType.getDefaultIterations();
@@ -345,7 +345,7 @@ public final class ChaiCrFactory
 
             final int saltCharCount;
             {
-                final int configuredIterations = Integer.parseInt( chaiConfiguration.getSetting( ChaiSetting.CR_CHAI_SALT_CHAR_COUNT ) );
+                final int configuredIterations = chaiConfiguration.getIntSetting( ChaiSetting.CR_CHAI_SALT_CHAR_COUNT );
                 saltCharCount = configuredIterations > 0
                         ? configuredIterations
                         : formatType.getSaltLength();
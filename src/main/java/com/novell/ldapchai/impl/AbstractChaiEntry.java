@@ -21,18 +21,24 @@ package com.novell.ldapchai.impl;
 
 import com.novell.ldapchai.ChaiConstant;
 import com.novell.ldapchai.ChaiEntry;
+import com.novell.ldapchai.ChaiEntryFactory;
+import com.novell.ldapchai.ChaiUser;
 import com.novell.ldapchai.exception.ChaiError;
 import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.AttributeValueRange;
 import com.novell.ldapchai.provider.ChaiProvider;
 import com.novell.ldapchai.provider.ChaiSetting;
 import com.novell.ldapchai.provider.SearchScope;
+import com.novell.ldapchai.util.ChaiDn;
 import com.novell.ldapchai.util.internal.ChaiLogger;
 import com.novell.ldapchai.util.SearchHelper;
 import com.novell.ldapchai.util.internal.StringHelper;
 
+import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -43,6 +49,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Predicate;
 
 
 /**
@@ -90,11 +97,22 @@ public abstract class AbstractChaiEntry implements ChaiEntry
      */
     protected String entryDN;
 
+    /**
+     * Normalized form of {@link #entryDN}, used by {@link #equals(Object)} and {@link #hashCode()}.
+     */
+    private final String normalizedEntryDN;
+
     /**
      * Attribute to store the LDAP Provider.
      */
     protected ChaiProvider chaiProvider;
 
+    /**
+     * Attribute values loaded by the search that returned this entry, null if the entry was not
+     * returned by {@link #searchPreloaded(SearchHelper)} or has since been modified.
+     */
+    private volatile PreloadedAttributes preloadedAttributes;
+
     /**
      * Standard constructor.
      *
@@ -105,6 +123,7 @@ public abstract class AbstractChaiEntry implements ChaiEntry
     {
         this.chaiProvider = chaiProvider;
         this.entryDN = entryDN == null ? "" : entryDN;
+        this.normalizedEntryDN = ChaiDn.normalize( this.entryDN );
     }
 
     @Override
@@ -134,16 +153,13 @@ public abstract class AbstractChaiEntry implements ChaiEntry
 
         return !( chaiProvider != null
                 ? !chaiProvider.equals( chaiEntry.chaiProvider )
-                : chaiEntry.chaiProvider != null ) && !( entryDN != null
-                ? !entryDN.equals( chaiEntry.entryDN )
-                : chaiEntry.entryDN != null
-        );
+                : chaiEntry.chaiProvider != null ) && Objects.equals( normalizedEntryDN, chaiEntry.normalizedEntryDN );
     }
 
     public int hashCode()
     {
         int result;
-        result = ( entryDN != null ? entryDN.hashCode() : 0 );
+        result = ( normalizedEntryDN != null ? normalizedEntryDN.hashCode() : 0 );
         result = 29 * result + ( chaiProvider != null ? chaiProvider.hashCode() : 0 );
         return result;
     }
@@ -168,6 +184,7 @@ public abstract class AbstractChaiEntry implements ChaiEntry
     public final void addAttribute( final String attributeName, final String attributeValue )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        preloadedAttributes = null;
         chaiProvider.writeStringAttribute( entryDN, attributeName, Collections.singleton( attributeValue ), false );
     }
 
@@ -175,6 +192,7 @@ public abstract class AbstractChaiEntry implements ChaiEntry
     public final void addAttribute( final String attributeName, final Set<String> attributeValues )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        preloadedAttributes = null;
         chaiProvider.writeStringAttribute( entryDN, attributeName, attributeValues, false );
     }
 
@@ -182,6 +200,7 @@ public abstract class AbstractChaiEntry implements ChaiEntry
     public final void addAttribute( final String attributeName, final String... attributeValues )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        preloadedAttributes = null;
         chaiProvider.writeStringAttribute( entryDN, attributeName, new LinkedHashSet<>( Arrays.asList( attributeValues ) ), false );
     }
 
@@ -196,6 +215,7 @@ public abstract class AbstractChaiEntry implements ChaiEntry
     public final void deleteAttribute( final String attributeName, final String attributeValue )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        preloadedAttributes = null;
         chaiProvider.deleteStringAttributeValue( this.entryDN, attributeName, attributeValue );
     }
 
@@ -223,36 +243,18 @@ public abstract class AbstractChaiEntry implements ChaiEntry
     public final ChaiEntry getParentEntry()
             throws ChaiUnavailableException
     {
-        final String parentDNString = getParentDNString( this.getEntryDN() );
-        if ( parentDNString == null )
+        final String currentDN = this.getEntryDN();
+        if ( !ChaiDn.isValid( currentDN ) )
         {
             return null;
         }
-        return getChaiProvider().getEntryFactory().newChaiEntry( parentDNString );
-    }
 
-    private static String getParentDNString( final String inputDN )
-    {
-        if ( inputDN == null || inputDN.length() < 0 )
+        final ChaiDn parentDN = ChaiDn.parse( currentDN ).getParent();
+        if ( parentDN == null || parentDN.isRoot() )
         {
             return null;
         }
-        final String dnSeparatorRegex = "(?<!\\\\),";
-        final String[] dnSegments = inputDN.split( dnSeparatorRegex );
-        if ( dnSegments.length < 2 )
-        {
-            return null;
-        }
-        final StringBuilder parentDN = new StringBuilder();
-        for ( int i = 1; i < ( dnSegments.length ); i++ )
-        {
-            parentDN.append( dnSegments[i] );
-            if ( i < ( dnSegments.length - 1 ) )
-            {
-                parentDN.append( "," );
-            }
-        }
-        return parentDN.toString();
+        return getChaiProvider().getEntryFactory().newChaiEntry( parentDN.toString() );
     }
 
     @Override
@@ -327,13 +329,52 @@ public abstract class AbstractChaiEntry implements ChaiEntry
         return chaiProvider.readMultiByteAttribute( this.getEntryDN(), attributeName );
     }
 
+    @Override
+    public final List<ByteBuffer> readMultiByteBufferAttribute( final String attributeName )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return chaiProvider.readMultiByteBufferAttribute( this.getEntryDN(), attributeName );
+    }
+
+    @Override
+    public final InputStream readByteStreamAttribute( final String attributeName )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return chaiProvider.readByteStreamAttribute( this.getEntryDN(), attributeName );
+    }
+
     @Override
     public final Set<String> readMultiStringAttribute( final String attributeName )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        final List<String> preloadedValues = readPreloadedValues( attributeName );
+        if ( preloadedValues != null )
+        {
+            return new LinkedHashSet<>( preloadedValues );
+        }
         return chaiProvider.readMultiStringAttribute( entryDN, attributeName );
     }
 
+    @Override
+    public final long readMultiStringAttribute( final String attributeName, final Predicate<List<String>> rangeConsumer )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        Objects.requireNonNull( rangeConsumer );
+
+        long valueCount = 0;
+        int startIndex = 0;
+        while ( true )
+        {
+            final AttributeValueRange range = chaiProvider.readMultiStringAttributeRange( entryDN, attributeName, startIndex );
+            valueCount += range.getValues().size();
+            if ( !rangeConsumer.test( range.getValues() ) || range.isComplete() || range.getNextIndex() <= startIndex )
+            {
+                return valueCount;
+            }
+            startIndex = range.getNextIndex();
+        }
+    }
+
     @Override
     public List<InetAddress> readNetAddressAttribute( final String attributeName )
             throws ChaiUnavailableException, ChaiOperationException
@@ -384,6 +425,12 @@ public abstract class AbstractChaiEntry implements ChaiEntry
     public final String readStringAttribute( final String attributeName )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        final List<String> preloadedValues = readPreloadedValues( attributeName );
+        if ( preloadedValues != null )
+        {
+            return preloadedValues.isEmpty() ? null : preloadedValues.get( 0 );
+        }
+
         // Using the LDAP Helper, get the attribute for the selected attribute name.
         return chaiProvider.readStringAttribute( entryDN, attributeName );
     }
@@ -392,13 +439,30 @@ public abstract class AbstractChaiEntry implements ChaiEntry
     public final Map<String, String> readStringAttributes( final Set<String> attributes )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        final PreloadedAttributes preloaded = this.preloadedAttributes;
+        if ( preloaded != null && attributes != null && !attributes.isEmpty() )
+        {
+            final Map<String, String> preloadedValues = preloaded.readFirstValues( this.entryDN, attributes );
+            if ( preloadedValues != null )
+            {
+                return preloadedValues;
+            }
+        }
         return chaiProvider.readStringAttributes( this.entryDN, attributes );
     }
 
+    private List<String> readPreloadedValues( final String attributeName )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final PreloadedAttributes preloaded = this.preloadedAttributes;
+        return preloaded == null ? null : preloaded.readValues( this.entryDN, attributeName );
+    }
+
     @Override
     public final void replaceAttribute( final String attributeName, final String oldValue, final String newValue )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        preloadedAttributes = null;
         chaiProvider.replaceStringAttribute( this.entryDN, attributeName, oldValue, newValue );
     }
 
@@ -435,10 +499,48 @@ public abstract class AbstractChaiEntry implements ChaiEntry
         return this.search( new SearchHelper( filter, searchScope ) );
     }
 
+    @Override
+    public final Set<ChaiEntry> searchPreloaded( final SearchHelper searchHelper )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final PreloadedAttributes preloaded = PreloadedAttributes.search( chaiProvider, this.getEntryDN(), searchHelper );
+        final ChaiEntryFactory entryFactory = getChaiProvider().getEntryFactory();
+        final Set<ChaiEntry> resultSet = new LinkedHashSet<>();
+        for ( final String dn : preloaded.getEntryDNs() )
+        {
+            resultSet.add( attachPreloadedAttributes( entryFactory.newChaiEntry( dn ), preloaded ) );
+        }
+        return resultSet;
+    }
+
+    @Override
+    public final Set<ChaiUser> searchPreloadedUsers( final SearchHelper searchHelper )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final PreloadedAttributes preloaded = PreloadedAttributes.search( chaiProvider, this.getEntryDN(), searchHelper );
+        final ChaiEntryFactory entryFactory = getChaiProvider().getEntryFactory();
+        final Set<ChaiUser> resultSet = new LinkedHashSet<>();
+        for ( final String dn : preloaded.getEntryDNs() )
+        {
+            resultSet.add( attachPreloadedAttributes( entryFactory.newChaiUser( dn ), preloaded ) );
+        }
+        return resultSet;
+    }
+
+    private static <T extends ChaiEntry> T attachPreloadedAttributes( final T chaiEntry, final PreloadedAttributes preloaded )
+    {
+        if ( chaiEntry instanceof AbstractChaiEntry )
+        {
+            ( ( AbstractChaiEntry ) chaiEntry ).preloadedAttributes = preloaded;
+        }
+        return chaiEntry;
+    }
+
     @Override
     public final void writeStringAttribute( final String attributeName, final String attributeValue )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        preloadedAttributes = null;
         chaiProvider.writeStringAttribute( this.entryDN, attributeName, attributeValue == null
                 ? null
                 : Collections.singleton( attributeValue ), true );
@@ -448,6 +550,7 @@ public abstract class AbstractChaiEntry implements ChaiEntry
     public final void writeStringAttributes( final Map<String, String> attributeValueProps )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        preloadedAttributes = null;
         chaiProvider.writeStringAttributes( this.entryDN, attributeValueProps, true );
     }
 
@@ -455,6 +558,7 @@ public abstract class AbstractChaiEntry implements ChaiEntry
     public final void writeStringAttribute( final String attributeName, final Set<String> attributeValues )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        preloadedAttributes = null;
         // Using the LDAP Helper, set the attributes.
         chaiProvider.writeStringAttribute( this.entryDN, attributeName, attributeValues, true );
     }
@@ -463,6 +567,7 @@ public abstract class AbstractChaiEntry implements ChaiEntry
     public void writeStringAttribute( final String attributeName, final String... attributeValues )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        preloadedAttributes = null;
         // Using the LDAP Helper, set the attributes.
         chaiProvider.writeStringAttribute( this.entryDN, attributeName, attributeValues == null
                 ? null
@@ -473,6 +578,7 @@ public abstract class AbstractChaiEntry implements ChaiEntry
     public void writeBinaryAttribute( final String attributeName, final byte[]... attributeValues )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        preloadedAttributes = null;
         // Using the LDAP Helper, set the attributes.
         chaiProvider.writeBinaryAttribute( this.entryDN, attributeName, attributeValues, true );
     }
@@ -481,6 +587,7 @@ public abstract class AbstractChaiEntry implements ChaiEntry
     public void replaceBinaryAttribute( final String attributeName, final byte[] oldValue, final byte[] newValue )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        preloadedAttributes = null;
         chaiProvider.replaceBinaryAttribute( this.entryDN, attributeName, oldValue, newValue );
     }
 
@@ -22,12 +22,19 @@ package com.novell.ldapchai.impl;
 import com.novell.ldapchai.ChaiConstant;
 import com.novell.ldapchai.ChaiGroup;
 import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.exception.ChaiError;
 import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiConfiguration;
 import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.MembershipCache;
+import com.novell.ldapchai.util.GroupExpander;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -68,6 +75,76 @@ public abstract class AbstractChaiGroup extends AbstractChaiEntry implements Cha
         return Collections.unmodifiableSet( returnSet );
     }
 
+    @Override
+    public boolean hasMember( final ChaiUser theUser )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return hasMember( theUser, false );
+    }
+
+    @Override
+    public boolean hasMember( final ChaiUser theUser, final boolean nested )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        if ( theUser == null )
+        {
+            throw new NullPointerException( "user cannot be null" );
+        }
+
+        final ChaiConfiguration chaiConfiguration = getChaiProvider().getChaiConfiguration();
+        final ChaiProviderFactory chaiProviderFactory = getChaiProvider().getProviderFactory();
+        final MembershipCache membershipCache = chaiProviderFactory == null ? null : chaiProviderFactory.getMembershipCache();
+        if ( membershipCache != null )
+        {
+            final Optional<Boolean> cachedResult = membershipCache.get( chaiConfiguration, theUser.getEntryDN(), getEntryDN(), nested );
+            if ( cachedResult.isPresent() )
+            {
+                return cachedResult.get();
+            }
+        }
+
+        final boolean member = compareMember( theUser.getEntryDN() ) || ( nested && hasNestedMember( theUser.getEntryDN() ) );
+
+        if ( membershipCache != null )
+        {
+            membershipCache.put( chaiConfiguration, theUser.getEntryDN(), getEntryDN(), nested, member );
+        }
+
+        return member;
+    }
+
+    private boolean compareMember( final String memberDN )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        // the first member attribute holds the membership list, any others are eDirectory rights equivalence
+        final String memberAttribute = memberAttributes().iterator().next();
+        try
+        {
+            return this.compareStringAttribute( memberAttribute, memberDN );
+        }
+        catch ( final ChaiOperationException e )
+        {
+            if ( e.getErrorCode() == ChaiError.NO_SUCH_ATTRIBUTE )
+            {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private boolean hasNestedMember( final String memberDN )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        // single threaded and uncached, so no worker providers are created; results are held by the membership cache
+        try ( GroupExpander groupExpander = GroupExpander.builder( getChaiProvider() )
+                .threads( 1 )
+                .maxCacheSize( 0 )
+                .build() )
+        {
+            return groupExpander.isMemberOf( memberDN, getEntryDN() );
+        }
+    }
+
     @Override
     public String readGroupName()
             throws ChaiOperationException, ChaiUnavailableException
@@ -81,6 +158,7 @@ public abstract class AbstractChaiGroup extends AbstractChaiEntry implements Cha
     {
         this.addAttribute( ChaiConstant.ATTR_LDAP_MEMBER, theUser.getEntryDN() );
         theUser.addAttribute( ChaiConstant.ATTR_LDAP_GROUP_MEMBERSHIP, this.getEntryDN() );
+        MembershipCache.groupModified( getChaiProvider(), getEntryDN() );
     }
 
     @Override
@@ -89,5 +167,44 @@ public abstract class AbstractChaiGroup extends AbstractChaiEntry implements Cha
     {
         this.deleteAttribute( ChaiConstant.ATTR_LDAP_MEMBER, theUser.getEntryDN() );
         theUser.deleteAttribute( ChaiConstant.ATTR_LDAP_GROUP_MEMBERSHIP, this.getEntryDN() );
+        MembershipCache.groupModified( getChaiProvider(), getEntryDN() );
+    }
+
+    @Override
+    public void addMembers( final Collection<ChaiUser> users )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        new GroupMembershipBatch( this, true ).execute( users );
+    }
+
+    @Override
+    public void removeMembers( final Collection<ChaiUser> users )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        new GroupMembershipBatch( this, false ).execute( users );
+    }
+
+    /**
+     * Attributes of this group that contain the DN of each member, used by {@link #addMembers(Collection)} and
+     * {@link #removeMembers(Collection)}.  The first attribute is the membership list tested by
+     * {@link #hasMember(ChaiUser, boolean)}.
+     *
+     * @return attribute names
+     */
+    protected Set<String> memberAttributes()
+    {
+        return Collections.singleton( ChaiConstant.ATTR_LDAP_MEMBER );
+    }
+
+    /**
+     * Attributes of a member entry that contain the DN of this group and must be maintained by the client,
+     * used by {@link #addMembers(Collection)} and {@link #removeMembers(Collection)}.  Directories that maintain
+     * the reverse membership attribute themselves return an empty set.
+     *
+     * @return attribute names
+     */
+    protected Set<String> memberBackLinkAttributes()
+    {
+        return Collections.singleton( ChaiConstant.ATTR_LDAP_GROUP_MEMBERSHIP );
     }
 }
@@ -23,11 +23,13 @@ import com.novell.ldapchai.ChaiConstant;
 import com.novell.ldapchai.ChaiGroup;
 import com.novell.ldapchai.ChaiPasswordPolicy;
 import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.UserStatusSnapshot;
 import com.novell.ldapchai.exception.ChaiErrors;
 import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiPasswordPolicyException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.MembershipCache;
 
 import java.time.Instant;
 import java.util.Collections;
@@ -133,12 +135,32 @@ public abstract class AbstractChaiUser extends AbstractChaiEntry implements Chai
         return this.readStringAttribute( ATTR_COMMON_NAME );
     }
 
+    @Override
+    public boolean isMemberOf( final ChaiGroup theGroup )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return isMemberOf( theGroup, false );
+    }
+
+    @Override
+    public boolean isMemberOf( final ChaiGroup theGroup, final boolean nested )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        if ( theGroup == null )
+        {
+            throw new NullPointerException( "group cannot be null" );
+        }
+
+        return theGroup.hasMember( this, nested );
+    }
+
     @Override
     public void addGroupMembership( final ChaiGroup theGroup )
             throws ChaiOperationException, ChaiUnavailableException
     {
         this.addAttribute( ChaiConstant.ATTR_LDAP_GROUP_MEMBERSHIP, theGroup.getEntryDN() );
         theGroup.addAttribute( ChaiConstant.ATTR_LDAP_MEMBER, this.getEntryDN() );
+        MembershipCache.groupModified( getChaiProvider(), theGroup.getEntryDN() );
     }
 
     @Override
@@ -147,6 +169,7 @@ public abstract class AbstractChaiUser extends AbstractChaiEntry implements Chai
     {
         this.deleteAttribute( ChaiConstant.ATTR_LDAP_GROUP_MEMBERSHIP, theGroup.getEntryDN() );
         theGroup.deleteAttribute( ChaiConstant.ATTR_LDAP_MEMBER, this.getEntryDN() );
+        MembershipCache.groupModified( getChaiProvider(), theGroup.getEntryDN() );
     }
 
     @Override
@@ -287,4 +310,11 @@ public abstract class AbstractChaiUser extends AbstractChaiEntry implements Chai
         final Instant accountExpirationDate = readAccountExpirationDate();
         return accountExpirationDate != null && accountExpirationDate.isBefore( Instant.now() );
     }
+
+    @Override
+    public UserStatusSnapshot readStatusSnapshot()
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return UserStatusSnapshot.read( this );
+    }
 }
@@ -0,0 +1,387 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.impl;
+
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.provider.MembershipCache;
+import com.novell.ldapchai.util.internal.ChaiLogger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Adds or removes many members of a group.  Member values are written to the group in chunks of
+ * {@link ChaiSetting#GROUP_MEMBERSHIP_BATCH_SIZE} values per modify operation.  Afterwards the membership attributes
+ * maintained on each member entry are updated for the members whose group values were written, concurrently using
+ * {@link ChaiSetting#GROUP_MEMBERSHIP_THREADS} threads that each use their own connection.  Adding a member is one
+ * modify of the member entry, removing a member deletes each membership attribute value separately, so a value
+ * that is already missing does not prevent the others from being removed.
+ *
+ * @see AbstractChaiGroup#addMembers(Collection)
+ * @see AbstractChaiGroup#removeMembers(Collection)
+ */
+final class GroupMembershipBatch
+{
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger( GroupMembershipBatch.class );
+
+    private final ChaiProvider provider;
+    private final String groupDN;
+    private final Set<String> memberAttributes;
+    private final Set<String> memberBackLinkAttributes;
+    private final boolean add;
+
+    private final AtomicReference<Exception> firstError = new AtomicReference<>();
+    private final AtomicInteger operationCount = new AtomicInteger();
+    private final Set<String> failedMembers = new HashSet<>();
+
+    private final Queue<ChaiProvider> workerProviders = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<ChaiProvider> workerProvider = new ThreadLocal<>();
+
+    GroupMembershipBatch( final AbstractChaiGroup group, final boolean add )
+    {
+        this.provider = group.getChaiProvider();
+        this.groupDN = group.getEntryDN();
+        this.memberAttributes = group.memberAttributes();
+        this.memberBackLinkAttributes = group.memberBackLinkAttributes();
+        this.add = add;
+    }
+
+    void execute( final Collection<ChaiUser> users )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        if ( users == null )
+        {
+            throw new NullPointerException( "users cannot be null" );
+        }
+
+        final Set<String> memberDNs = new LinkedHashSet<>();
+        for ( final ChaiUser user : users )
+        {
+            if ( user == null )
+            {
+                throw new NullPointerException( "user cannot be null" );
+            }
+            memberDNs.add( user.getEntryDN() );
+        }
+
+        if ( memberDNs.isEmpty() )
+        {
+            return;
+        }
+
+        final ChaiConfiguration chaiConfiguration = provider.getChaiConfiguration();
+        final int batchSize = Math.max( 1, chaiConfiguration.getIntSetting( ChaiSetting.GROUP_MEMBERSHIP_BATCH_SIZE ) );
+
+        try
+        {
+            for ( final Set<String> chunk : chunks( memberDNs, batchSize ) )
+            {
+                modifyGroupChunk( chunk );
+            }
+
+            // the member entries of values that could not be written to the group are left alone.
+            final Set<String> backLinkDNs = new LinkedHashSet<>( memberDNs );
+            backLinkDNs.removeAll( failedMembers );
+            final int threads = Math.min( backLinkDNs.size(), chaiConfiguration.getIntSetting( ChaiSetting.GROUP_MEMBERSHIP_THREADS ) );
+            modifyAllBackLinks( backLinkDNs, threads );
+        }
+        finally
+        {
+            for ( final ChaiProvider chaiProvider : workerProviders )
+            {
+                chaiProvider.close();
+            }
+            MembershipCache.groupModified( provider, groupDN );
+        }
+
+        LOGGER.debug( () -> ( add ? "added " : "removed " ) + memberDNs.size() + " members of group " + groupDN
+                + " using " + operationCount.get() + " modify operations" );
+
+        throwFirstError();
+    }
+
+    private static List<Set<String>> chunks( final Set<String> values, final int chunkSize )
+    {
+        final List<Set<String>> chunks = new ArrayList<>();
+        Set<String> currentChunk = new LinkedHashSet<>();
+        for ( final String value : values )
+        {
+            currentChunk.add( value );
+            if ( currentChunk.size() >= chunkSize )
+            {
+                chunks.add( currentChunk );
+                currentChunk = new LinkedHashSet<>();
+            }
+        }
+        if ( !currentChunk.isEmpty() )
+        {
+            chunks.add( currentChunk );
+        }
+        return chunks;
+    }
+
+    private void modifyGroupChunk( final Set<String> chunk )
+    {
+        for ( final String memberAttribute : memberAttributes )
+        {
+            try
+            {
+                modifyGroupValues( memberAttribute, chunk );
+            }
+            catch ( ChaiOperationException e )
+            {
+                if ( chunk.size() == 1 )
+                {
+                    recordGroupError( e, chunk );
+                    continue;
+                }
+
+                // one rejected value fails the entire modify, retry each value so the others are still applied.
+                LOGGER.debug( () -> "batch modify of " + chunk.size() + " " + memberAttribute + " values of group "
+                        + groupDN + " failed, retrying values individually: " + e.getMessage() );
+                for ( final String memberDN : chunk )
+                {
+                    try
+                    {
+                        modifyGroupValues( memberAttribute, Collections.singleton( memberDN ) );
+                    }
+                    catch ( ChaiOperationException | ChaiUnavailableException individualError )
+                    {
+                        recordGroupError( individualError, Collections.singleton( memberDN ) );
+                    }
+                }
+            }
+            catch ( ChaiUnavailableException e )
+            {
+                recordGroupError( e, chunk );
+            }
+        }
+    }
+
+    private void modifyGroupValues( final String memberAttribute, final Set<String> memberDNs )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        operationCount.incrementAndGet();
+        if ( add )
+        {
+            provider.writeStringAttribute( groupDN, memberAttribute, memberDNs, false );
+        }
+        else
+        {
+            provider.deleteStringAttributeValues( groupDN, memberAttribute, memberDNs );
+        }
+    }
+
+    private void recordGroupError( final Exception e, final Set<String> memberDNs )
+    {
+        if ( recordError( e ) )
+        {
+            failedMembers.addAll( memberDNs );
+        }
+    }
+
+    private void modifyAllBackLinks( final Set<String> memberDNs, final int threads )
+            throws ChaiOperationException
+    {
+        if ( memberBackLinkAttributes.isEmpty() || memberDNs.isEmpty() )
+        {
+            return;
+        }
+
+        if ( threads <= 1 )
+        {
+            for ( final String memberDN : memberDNs )
+            {
+                modifyBackLinks( provider, memberDN );
+            }
+            return;
+        }
+
+        final ExecutorService executorService = Executors.newFixedThreadPool( threads, new MembershipThreadFactory() );
+        try
+        {
+            final List<Future<?>> futures = new ArrayList<>( memberDNs.size() );
+            for ( final String memberDN : memberDNs )
+            {
+                futures.add( executorService.submit( () -> modifyBackLinks( memberDN ) ) );
+            }
+            awaitCompletion( futures );
+        }
+        finally
+        {
+            executorService.shutdownNow();
+        }
+    }
+
+    private Void modifyBackLinks( final String memberDN )
+    {
+        try
+        {
+            modifyBackLinks( providerForWorker(), memberDN );
+        }
+        catch ( ChaiUnavailableException e )
+        {
+            recordError( e );
+        }
+        return null;
+    }
+
+    private void modifyBackLinks( final ChaiProvider chaiProvider, final String memberDN )
+    {
+        if ( add )
+        {
+            final Map<String, String> values = new LinkedHashMap<>();
+            for ( final String backLinkAttribute : memberBackLinkAttributes )
+            {
+                values.put( backLinkAttribute, groupDN );
+            }
+            try
+            {
+                operationCount.incrementAndGet();
+                chaiProvider.writeStringAttributes( memberDN, values, false );
+            }
+            catch ( ChaiOperationException | ChaiUnavailableException e )
+            {
+                recordError( e );
+            }
+            return;
+        }
+
+        for ( final String backLinkAttribute : memberBackLinkAttributes )
+        {
+            try
+            {
+                operationCount.incrementAndGet();
+                chaiProvider.deleteStringAttributeValue( memberDN, backLinkAttribute, groupDN );
+            }
+            catch ( ChaiOperationException | ChaiUnavailableException e )
+            {
+                recordError( e );
+            }
+        }
+    }
+
+    private ChaiProvider providerForWorker()
+            throws ChaiUnavailableException
+    {
+        ChaiProvider chaiProvider = workerProvider.get();
+        if ( chaiProvider == null )
+        {
+            chaiProvider = provider.getProviderFactory().newProvider( provider.getChaiConfiguration() );
+            workerProviders.add( chaiProvider );
+            workerProvider.set( chaiProvider );
+        }
+        return chaiProvider;
+    }
+
+    /**
+     * Record an error to be thrown once the batch is complete.
+     *
+     * @return false if the error was ignored because a removed value was already missing
+     */
+    private boolean recordError( final Exception e )
+    {
+        if ( !add && e instanceof ChaiOperationException )
+        {
+            final ChaiError errorCode = ( ( ChaiOperationException ) e ).getErrorCode();
+            if ( errorCode == ChaiError.NO_SUCH_VALUE || errorCode == ChaiError.NO_SUCH_ATTRIBUTE )
+            {
+                // not a member, nothing to remove
+                return false;
+            }
+        }
+
+        LOGGER.debug( () -> "error modifying membership of group " + groupDN + ": " + e.getMessage() );
+        firstError.compareAndSet( null, e );
+        return true;
+    }
+
+    private void awaitCompletion( final List<Future<?>> futures )
+            throws ChaiOperationException
+    {
+        try
+        {
+            for ( final Future<?> future : futures )
+            {
+                future.get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new ChaiOperationException( "interrupted while modifying membership of group " + groupDN, ChaiError.UNKNOWN );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new IllegalStateException( "unexpected error modifying membership of group " + groupDN
+                    + ": " + e.getCause().getMessage(), e.getCause() );
+        }
+    }
+
+    private void throwFirstError()
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final Exception error = firstError.get();
+        if ( error instanceof ChaiUnavailableException )
+        {
+            throw ( ChaiUnavailableException ) error;
+        }
+        if ( error instanceof ChaiOperationException )
+        {
+            throw ( ChaiOperationException ) error;
+        }
+    }
+
+    private static class MembershipThreadFactory implements ThreadFactory
+    {
+        private final ThreadFactory realThreadFactory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread( final Runnable runnable )
+        {
+            final Thread thread = realThreadFactory.newThread( runnable );
+            thread.setDaemon( true );
+            thread.setName( "ldapchai-groupmembership-" + thread.getName() );
+            return thread;
+        }
+    }
+}
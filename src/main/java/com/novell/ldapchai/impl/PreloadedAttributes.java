@@ -0,0 +1,283 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.impl;
+
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.util.ChaiDn;
+import com.novell.ldapchai.util.LdapAttributeMap;
+import com.novell.ldapchai.util.SearchHelper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Attribute values fetched by a single search and shared by every entry returned from
+ * {@link AbstractChaiEntry#searchPreloaded(SearchHelper)}.
+ *
+ * <p>Values are held per attribute.  Each column maps the normalized DN of every entry returned by the search to
+ * the values of that attribute, an empty list meaning the entry has no value.  When an entry reads an attribute
+ * that is not yet loaded, the search is repeated once requesting only the missing attributes and the values of
+ * all entries are loaded together.  Reading the same attribute from each entry of the result therefore costs
+ * one search instead of one read per entry.</p>
+ *
+ * <p>Values that can not be taken from the search results are read from the directory directly.  This applies
+ * to entries not returned by a repeated search, to attributes returned in ranges (such as
+ * {@code member;range=0-1499} for a large Active Directory group), which are completed by the ranged retrieval of
+ * {@link ChaiProvider#readMultiStringAttribute(String, String)}, and to requested attributes of an entry that
+ * returned attributes under other names, such as {@code cn} for a request for {@code commonName}.</p>
+ *
+ * <p>Loaded columns are never modified and reflect the directory at the time they were searched.</p>
+ */
+final class PreloadedAttributes
+{
+    private static final String RANGE_OPTION = ";range=";
+
+    private final ChaiProvider chaiProvider;
+
+    private final String baseDN;
+
+    private final SearchHelper searchHelper;
+
+    private final Map<String, Map<String, List<String>>> columns = new ConcurrentHashMap<>();
+
+    private final Set<String> entryDNs = new LinkedHashSet<>();
+
+    private PreloadedAttributes( final ChaiProvider chaiProvider, final String baseDN, final SearchHelper searchHelper )
+    {
+        this.chaiProvider = chaiProvider;
+        this.baseDN = baseDN;
+        this.searchHelper = new SearchHelper( searchHelper );
+    }
+
+    /**
+     * Perform the search and load the values of the attributes requested by the {@code searchHelper}.  If the
+     * {@code searchHelper} requests all attributes, every attribute returned by the directory is loaded.
+     *
+     * @param chaiProvider provider used for the search and any later loads
+     * @param baseDN search root
+     * @param searchHelper search parameters
+     * @return the loaded attributes, including the DNs of all returned entries
+     * @throws ChaiOperationException if the search fails
+     * @throws ChaiUnavailableException if the directory is unavailable
+     */
+    static PreloadedAttributes search( final ChaiProvider chaiProvider, final String baseDN, final SearchHelper searchHelper )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final PreloadedAttributes preloadedAttributes = new PreloadedAttributes( chaiProvider, baseDN, searchHelper );
+        final Set<String> attributes = searchHelper.getAttributes();
+        final boolean allAttributes = attributes == null || attributes.contains( "*" );
+        final Set<String> namedAttributes = new LinkedHashSet<>();
+        if ( !allAttributes )
+        {
+            for ( final String attribute : attributes )
+            {
+                if ( !"+".equals( attribute ) )
+                {
+                    namedAttributes.add( attribute );
+                }
+            }
+        }
+
+        final Map<String, Map<String, List<String>>> results = chaiProvider.searchMultiValues( baseDN, searchHelper );
+        preloadedAttributes.entryDNs.addAll( results.keySet() );
+        preloadedAttributes.store( namedAttributes, allAttributes, results );
+        return preloadedAttributes;
+    }
+
+    /**
+     * DNs of the entries returned by the search, in the order returned by the directory.
+     *
+     * @return an unmodifiable view of the entry DNs
+     */
+    Set<String> getEntryDNs()
+    {
+        return Collections.unmodifiableSet( entryDNs );
+    }
+
+    /**
+     * Read the values of an attribute, loading the attribute for all entries if it is not yet loaded.
+     *
+     * @param entryDN dn of the entry
+     * @param attributeName name of the attribute
+     * @return the values, an empty list if the entry has no values, or null if the entry was not returned by
+     *         the search that loaded the attribute
+     * @throws ChaiOperationException if loading the attribute fails
+     * @throws ChaiUnavailableException if the directory is unavailable
+     */
+    List<String> readValues( final String entryDN, final String attributeName )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        load( Collections.singleton( attributeName ) );
+        final Map<String, List<String>> column = columns.get( columnKey( attributeName ) );
+        return column == null ? null : column.get( ChaiDn.normalize( entryDN ) );
+    }
+
+    /**
+     * Read the first value of each attribute, loading all attributes that are not yet loaded with a single search.
+     *
+     * @param entryDN dn of the entry
+     * @param attributeNames names of the attributes
+     * @return a map of attribute names to first values, containing only attributes with a value, or null if the
+     *         entry was not returned by a search that loaded one of the attributes
+     * @throws ChaiOperationException if loading the attributes fails
+     * @throws ChaiUnavailableException if the directory is unavailable
+     */
+    Map<String, String> readFirstValues( final String entryDN, final Set<String> attributeNames )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        load( attributeNames );
+        final String dnKey = ChaiDn.normalize( entryDN );
+        final Map<String, String> returnMap = new LdapAttributeMap<>( attributeNames.size() );
+        for ( final String attributeName : attributeNames )
+        {
+            final Map<String, List<String>> column = columns.get( columnKey( attributeName ) );
+            final List<String> values = column == null ? null : column.get( dnKey );
+            if ( values == null )
+            {
+                return null;
+            }
+            if ( !values.isEmpty() )
+            {
+                returnMap.put( attributeName, values.get( 0 ) );
+            }
+        }
+        return returnMap;
+    }
+
+    private void load( final Collection<String> attributeNames )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        if ( isLoaded( attributeNames ) )
+        {
+            return;
+        }
+
+        synchronized ( this )
+        {
+            final Set<String> missingAttributes = new LinkedHashSet<>();
+            for ( final String attributeName : attributeNames )
+            {
+                if ( !columns.containsKey( columnKey( attributeName ) ) )
+                {
+                    missingAttributes.add( attributeName );
+                }
+            }
+
+            if ( missingAttributes.isEmpty() )
+            {
+                return;
+            }
+
+            final SearchHelper loadSearchHelper = new SearchHelper( searchHelper );
+            loadSearchHelper.setAttributes( missingAttributes );
+            store( missingAttributes, false, chaiProvider.searchMultiValues( baseDN, loadSearchHelper ) );
+        }
+    }
+
+    private boolean isLoaded( final Collection<String> attributeNames )
+    {
+        for ( final String attributeName : attributeNames )
+        {
+            if ( !columns.containsKey( columnKey( attributeName ) ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Store the results of a search as columns.  When specific attributes were requested, a column is stored for
+     * each of them and entries without a value get an empty list, unless the entry returned the attribute in
+     * ranges or returned an attribute that was not requested, which happens when an attribute is requested using
+     * an alias.  Such entries are left out of the column so they are read from the directory directly.  When all
+     * attributes were requested, a column is stored for each returned attribute other than ranged attributes.
+     */
+    private void store(
+            final Collection<String> attributeNames,
+            final boolean allAttributes,
+            final Map<String, Map<String, List<String>>> results
+    )
+    {
+        final Set<String> requestedKeys = new HashSet<>();
+        final Map<String, Map<String, List<String>>> newColumns = new HashMap<>();
+        for ( final String attributeName : attributeNames )
+        {
+            requestedKeys.add( columnKey( attributeName ) );
+            newColumns.put( columnKey( attributeName ), new HashMap<>() );
+        }
+
+        final Map<String, Set<String>> unresolvedKeys = new HashMap<>();
+        for ( final Map.Entry<String, Map<String, List<String>>> result : results.entrySet() )
+        {
+            final String dnKey = ChaiDn.normalize( result.getKey() );
+            final Set<String> entryUnresolvedKeys = new HashSet<>();
+            for ( final Map.Entry<String, List<String>> attribute : result.getValue().entrySet() )
+            {
+                final String key = columnKey( attribute.getKey() );
+                final int rangeIndex = key.indexOf( RANGE_OPTION );
+                if ( rangeIndex >= 0 )
+                {
+                    entryUnresolvedKeys.add( key.substring( 0, rangeIndex ) );
+                }
+                else if ( allAttributes || requestedKeys.contains( key ) )
+                {
+                    final List<String> values = attribute.getValue();
+                    newColumns.computeIfAbsent( key, k -> new HashMap<>() )
+                            .put( dnKey, values == null ? Collections.emptyList() : Collections.unmodifiableList( new ArrayList<>( values ) ) );
+                }
+                else
+                {
+                    entryUnresolvedKeys.addAll( requestedKeys );
+                }
+            }
+            unresolvedKeys.put( dnKey, entryUnresolvedKeys );
+        }
+
+        for ( final Map.Entry<String, Map<String, List<String>>> newColumn : newColumns.entrySet() )
+        {
+            final Map<String, List<String>> column = newColumn.getValue();
+            for ( final Map.Entry<String, Set<String>> entryUnresolvedKeys : unresolvedKeys.entrySet() )
+            {
+                if ( !entryUnresolvedKeys.getValue().contains( newColumn.getKey() ) )
+                {
+                    column.putIfAbsent( entryUnresolvedKeys.getKey(), Collections.emptyList() );
+                }
+            }
+            columns.put( newColumn.getKey(), Collections.unmodifiableMap( column ) );
+        }
+    }
+
+    private static String columnKey( final String attributeName )
+    {
+        return attributeName.toLowerCase( Locale.ROOT );
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.impl;
+
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.UserStatusSnapshot;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiProvider;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes a {@link UserStatusSnapshot} from the attribute values of a user entry.
+ *
+ * <p>The protected methods correspond to the status methods of {@link ChaiUser} and by default mirror
+ * {@link AbstractChaiUser}.  Vendor implementations override the same methods their {@link ChaiUser}
+ * implementation overrides, reading from the supplied {@link StatusValues} rather than the directory, and declare
+ * every attribute they use.  Implementations are obtained using {@link VendorFactory#getUserStatusEvaluator()}.</p>
+ */
+public class UserStatusEvaluator
+{
+    /**
+     * Evaluator matching the {@link AbstractChaiUser} defaults.
+     */
+    public static final UserStatusEvaluator GENERIC = new UserStatusEvaluator( ChaiUser.ATTR_LOGIN_DISABLED );
+
+    /**
+     * Evaluator that calls each {@link ChaiUser} status method, for vendors whose status can not be computed from
+     * attribute values alone.
+     */
+    static final UserStatusEvaluator PER_OPERATION = new UserStatusEvaluator()
+    {
+        @Override
+        public UserStatusSnapshot evaluate( final ChaiUser user, final Map<String, List<String>> values, final Instant now )
+                throws ChaiOperationException, ChaiUnavailableException
+        {
+            return UserStatusSnapshot.builder( user.getEntryDN(), now )
+                    .accountEnabled( user.isAccountEnabled() )
+                    .passwordLocked( user.isPasswordLocked() )
+                    .passwordExpired( user.isPasswordExpired() )
+                    .passwordExpirationDate( user.readPasswordExpirationDate() )
+                    .passwordModificationDate( user.readPasswordModificationDate() )
+                    .lastLoginTime( user.readLastLoginTime() )
+                    .accountExpirationDate( user.readAccountExpirationDate() )
+                    .build();
+        }
+    };
+
+    private final Set<String> statusAttributes;
+
+    protected UserStatusEvaluator( final String... statusAttributes )
+    {
+        this.statusAttributes = Collections.unmodifiableSet( new LinkedHashSet<>( Arrays.asList( statusAttributes ) ) );
+    }
+
+    public static UserStatusEvaluator forProvider( final ChaiProvider chaiProvider )
+            throws ChaiUnavailableException
+    {
+        return chaiProvider.getDirectoryVendor().getVendorFactory().getUserStatusEvaluator();
+    }
+
+    /**
+     * Attributes to read from each user entry.
+     *
+     * @return attribute names, may be empty
+     */
+    public Set<String> getStatusAttributes()
+    {
+        return statusAttributes;
+    }
+
+    /**
+     * Compute the status of a user.
+     *
+     * @param user   the user
+     * @param values values of the {@link #getStatusAttributes()} of the user, attribute names are case-insensitive
+     * @param now    evaluation time
+     * @return the status of the user
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    public UserStatusSnapshot evaluate( final ChaiUser user, final Map<String, List<String>> values, final Instant now )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final StatusValues statusValues = new StatusValues( user, values, now );
+        final Instant passwordExpirationDate = readPasswordExpirationDate( statusValues );
+        return UserStatusSnapshot.builder( user.getEntryDN(), now )
+                .accountEnabled( isAccountEnabled( statusValues ) )
+                .passwordLocked( isPasswordLocked( statusValues ) )
+                .passwordExpired( isPasswordExpired( statusValues, passwordExpirationDate ) )
+                .passwordExpirationDate( passwordExpirationDate )
+                .passwordModificationDate( readPasswordModificationDate( statusValues ) )
+                .lastLoginTime( readLastLoginTime( statusValues ) )
+                .accountExpirationDate( readAccountExpirationDate( statusValues ) )
+                .build();
+    }
+
+    protected boolean isAccountEnabled( final StatusValues values )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return !values.getBoolean( ChaiUser.ATTR_LOGIN_DISABLED );
+    }
+
+    protected boolean isPasswordLocked( final StatusValues values )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return false;
+    }
+
+    /**
+     * Determine if the password is expired.
+     *
+     * @param values                 attribute values of the user
+     * @param passwordExpirationDate the result of {@link #readPasswordExpirationDate(StatusValues)}
+     * @return true if the password is expired
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    protected boolean isPasswordExpired( final StatusValues values, final Instant passwordExpirationDate )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return false;
+    }
+
+    protected Instant readPasswordExpirationDate( final StatusValues values )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return null;
+    }
+
+    protected Instant readPasswordModificationDate( final StatusValues values )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return null;
+    }
+
+    protected Instant readLastLoginTime( final StatusValues values )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return null;
+    }
+
+    protected Instant readAccountExpirationDate( final StatusValues values )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return null;
+    }
+
+    /**
+     * Attribute values of a single user, with conversions matching {@link AbstractChaiEntry}.
+     */
+    protected static final class StatusValues
+    {
+        private final ChaiUser user;
+        private final Map<String, List<String>> values;
+        private final Instant now;
+
+        StatusValues( final ChaiUser user, final Map<String, List<String>> values, final Instant now )
+        {
+            this.user = user;
+            this.values = values;
+            this.now = now;
+        }
+
+        public ChaiUser getUser()
+        {
+            return user;
+        }
+
+        public Instant getNow()
+        {
+            return now;
+        }
+
+        public String getString( final String attributeName )
+        {
+            final List<String> attributeValues = values.get( attributeName );
+            return attributeValues == null || attributeValues.isEmpty() ? null : attributeValues.get( 0 );
+        }
+
+        public boolean getBoolean( final String attributeName )
+        {
+            return "TRUE".equalsIgnoreCase( getString( attributeName ) );
+        }
+
+        public int getInt( final String attributeName, final int defaultValue )
+        {
+            final String value = getString( attributeName );
+            if ( value == null )
+            {
+                return defaultValue;
+            }
+
+            try
+            {
+                return Integer.parseInt( value );
+            }
+            catch ( final NumberFormatException e )
+            {
+                return defaultValue;
+            }
+        }
+
+        public Instant getDate( final String attributeName )
+                throws ChaiUnavailableException
+        {
+            final String value = getString( attributeName );
+            return value == null || value.isEmpty()
+                    ? null
+                    : user.getChaiProvider().getDirectoryVendor().getVendorFactory().stringToInstant( value );
+        }
+    }
+}
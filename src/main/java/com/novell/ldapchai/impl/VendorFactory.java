@@ -19,6 +19,7 @@
 
 package com.novell.ldapchai.impl;
 
+import com.novell.ldapchai.ChaiConstant;
 import com.novell.ldapchai.ChaiEntry;
 import com.novell.ldapchai.ChaiGroup;
 import com.novell.ldapchai.ChaiUser;
@@ -53,4 +54,36 @@ public interface VendorFactory
     String instantToString( Instant input );
 
     boolean allowWatchdogDisconnect( ChaiProviderImplementor chaiProvider );
+
+    /**
+     * Name of the attribute of a user or group entry that lists the groups the entry is a direct member of.
+     *
+     * @return attribute name, {@link ChaiConstant#ATTR_LDAP_GROUP_MEMBERSHIP} unless overridden by the vendor
+     */
+    default String getGroupMembershipAttribute()
+    {
+        return ChaiConstant.ATTR_LDAP_GROUP_MEMBERSHIP;
+    }
+
+    /**
+     * Indicates if the directory evaluates the {@code LDAP_MATCHING_RULE_IN_CHAIN} (1.2.840.113556.1.4.1941)
+     * extensible match rule, allowing nested group membership to be resolved by the server in a single search.
+     *
+     * @return true if the matching rule is supported
+     */
+    default boolean supportsMatchingRuleInChain()
+    {
+        return false;
+    }
+
+    /**
+     * Evaluator used to compute {@link com.novell.ldapchai.UserStatusSnapshot}s for users of this vendor.  The default
+     * calls each of the {@link ChaiUser} status methods.
+     *
+     * @return a user status evaluator
+     */
+    default UserStatusEvaluator getUserStatusEvaluator()
+    {
+        return UserStatusEvaluator.PER_OPERATION;
+    }
 }
@@ -0,0 +1,194 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.impl.ad.entry;
+
+import com.novell.ldapchai.ChaiConstant;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.impl.UserStatusEvaluator;
+import com.novell.ldapchai.impl.ad.value.UserAccountControl;
+
+import java.time.Instant;
+
+/**
+ * Active Directory user status, equivalent to the status methods of {@link UserImpl}.
+ *
+ * <p>The constructed {@code msDS-User-Account-Control-Computed} and {@code msDS-UserPasswordExpiryTimeComputed}
+ * attributes are only returned by base searches, so for subtree searches lockout and password expiration are
+ * computed from {@code lockoutTime} and {@code pwdLastSet} using the {@code lockoutDuration} and {@code maxPwdAge}
+ * of the domain, or the {@code msDS-LockoutDuration} and {@code msDS-MaximumPasswordAge} of the user's
+ * {@code msDS-ResultantPSO}.  Domain and PSO values are read once per domain using {@link DomainPasswordPolicies}.
+ * If the domain has PSOs and the search did not return {@code msDS-ResultantPSO}, it is read from the user entry
+ * when needed.  A lockout duration of "until unlocked by an administrator" keeps a locked account locked.</p>
+ */
+final class ADUserStatusEvaluator extends UserStatusEvaluator
+{
+    static final ADUserStatusEvaluator INSTANCE = new ADUserStatusEvaluator();
+
+    private static final String ATTR_USER_ACCOUNT_CONTROL = "userAccountControl";
+    private static final String ATTR_COMPUTED_ACCOUNT_CONTROL = "msDS-User-Account-Control-Computed";
+    private static final String ATTR_COMPUTED_PASSWORD_EXPIRY = "msDS-UserPasswordExpiryTimeComputed";
+    private static final String ATTR_LOCKOUT_TIME = "lockoutTime";
+    private static final String ATTR_PWD_LAST_SET = "pwdLastSet";
+    private static final String ATTR_ACCOUNT_EXPIRES = "accountExpires";
+    private static final String ATTR_RESULTANT_PSO = ChaiConstant.ATTR_AD_PASSWORD_POLICY_RESULTANT_PSO;
+
+    private ADUserStatusEvaluator()
+    {
+        super(
+                ATTR_USER_ACCOUNT_CONTROL,
+                ATTR_COMPUTED_ACCOUNT_CONTROL,
+                ATTR_COMPUTED_PASSWORD_EXPIRY,
+                ATTR_LOCKOUT_TIME,
+                ATTR_PWD_LAST_SET,
+                ATTR_ACCOUNT_EXPIRES,
+                ATTR_RESULTANT_PSO,
+                User.ATTR_LAST_LOGIN,
+                User.ATTR_LAST_LOGIN_TIMESTAMP );
+    }
+
+    @Override
+    protected boolean isAccountEnabled( final StatusValues values )
+    {
+        // the ACCOUNT_ACTIVE bit (0x2) is set for disabled accounts
+        final int userAccountControl = values.getInt( ATTR_USER_ACCOUNT_CONTROL, 0 );
+        return ( userAccountControl & UserAccountControl.UACBit.ACCOUNT_ACTIVE.bitValue() ) == 0;
+    }
+
+    @Override
+    protected boolean isPasswordLocked( final StatusValues values )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final String computedBit = values.getString( ATTR_COMPUTED_ACCOUNT_CONTROL );
+        if ( computedBit != null && computedBit.length() > 0 )
+        {
+            return new UserAccountControl( computedBit ).isAccountLockout();
+        }
+
+        final Instant lockoutTime = ADEntries.convertWinEpochToDate( values.getString( ATTR_LOCKOUT_TIME ) );
+        if ( lockoutTime == null )
+        {
+            return false;
+        }
+
+        final DomainPasswordPolicies domainPolicies = domainPolicies( values );
+        final long lockoutDurationMs = domainPolicies == null
+                ? 0
+                : domainPolicies.getLockoutDurationMs( values.getUser().getChaiProvider(), resultantPso( values, domainPolicies ) );
+        if ( lockoutDurationMs == Long.MAX_VALUE )
+        {
+            return true;
+        }
+        return !values.getNow().isAfter( lockoutTime.plusMillis( lockoutDurationMs ) );
+    }
+
+    @Override
+    protected boolean isPasswordExpired( final StatusValues values, final Instant passwordExpirationDate )
+    {
+        final String computedBit = values.getString( ATTR_COMPUTED_ACCOUNT_CONTROL );
+        if ( computedBit != null && computedBit.length() > 0 )
+        {
+            return new UserAccountControl( computedBit ).isPasswordExpired();
+        }
+
+        return passwordExpirationDate != null && passwordExpirationDate.isBefore( values.getNow() );
+    }
+
+    @Override
+    protected Instant readPasswordExpirationDate( final StatusValues values )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final String computedValue = values.getString( ATTR_COMPUTED_PASSWORD_EXPIRY );
+        if ( computedValue != null && computedValue.length() > 0 )
+        {
+            return ADEntries.convertWinEpochToDate( computedValue );
+        }
+
+        final int dontExpireBit = UserAccountControl.UACBit.DONT_EXPIRE_PASSWORD.bitValue();
+        if ( ( values.getInt( ATTR_USER_ACCOUNT_CONTROL, 0 ) & dontExpireBit ) == dontExpireBit )
+        {
+            return null;
+        }
+
+        final Instant pwdLastSet = ADEntries.convertWinEpochToDate( values.getString( ATTR_PWD_LAST_SET ) );
+        if ( pwdLastSet == null )
+        {
+            return null;
+        }
+
+        final DomainPasswordPolicies domainPolicies = domainPolicies( values );
+        final long maxPwdAgeMs = domainPolicies == null
+                ? 0
+                : domainPolicies.getMaxPasswordAgeMs( values.getUser().getChaiProvider(), resultantPso( values, domainPolicies ) );
+        return maxPwdAgeMs == 0 ? null : pwdLastSet.plusMillis( maxPwdAgeMs );
+    }
+
+    @Override
+    protected Instant readPasswordModificationDate( final StatusValues values )
+            throws ChaiUnavailableException
+    {
+        return values.getDate( ATTR_PWD_LAST_SET );
+    }
+
+    @Override
+    protected Instant readLastLoginTime( final StatusValues values )
+    {
+        final Instant lastLogon = ADEntries.convertWinEpochToDate( values.getString( User.ATTR_LAST_LOGIN ) );
+        final Instant lastLogonTimestamp = ADEntries.convertWinEpochToDate( values.getString( User.ATTR_LAST_LOGIN_TIMESTAMP ) );
+
+        if ( lastLogon == null || lastLogonTimestamp == null )
+        {
+            return lastLogon == null ? lastLogonTimestamp : lastLogon;
+        }
+
+        return lastLogon.isAfter( lastLogonTimestamp ) ? lastLogon : lastLogonTimestamp;
+    }
+
+    @Override
+    protected Instant readAccountExpirationDate( final StatusValues values )
+            throws ChaiUnavailableException
+    {
+        return values.getDate( ATTR_ACCOUNT_EXPIRES );
+    }
+
+    private static String resultantPso( final StatusValues values, final DomainPasswordPolicies domainPolicies )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        if ( !domainPolicies.hasPsos() )
+        {
+            return null;
+        }
+
+        final String resultantPso = values.getString( ATTR_RESULTANT_PSO );
+        return resultantPso != null
+                ? resultantPso
+                : values.getUser().readStringAttribute( ATTR_RESULTANT_PSO );
+    }
+
+    private static DomainPasswordPolicies domainPolicies( final StatusValues values )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final String domainDN = DomainPasswordPolicies.domainOf( values.getUser().getEntryDN() );
+        return domainDN == null
+                ? null
+                : DomainPasswordPolicies.forDomain( values.getUser().getChaiProvider(), domainDN );
+    }
+}
@@ -19,8 +19,10 @@
 
 package com.novell.ldapchai.impl.ad.entry;
 
+import com.novell.ldapchai.ChaiConstant;
 import com.novell.ldapchai.ChaiEntry;
 import com.novell.ldapchai.ChaiGroup;
+import com.novell.ldapchai.impl.UserStatusEvaluator;
 import com.novell.ldapchai.impl.VendorFactory;
 import com.novell.ldapchai.exception.ErrorMap;
 import com.novell.ldapchai.impl.ad.ADErrorMap;
@@ -108,4 +110,22 @@ public class ADVendorFactory implements VendorFactory
     {
         return true;
     }
+
+    @Override
+    public String getGroupMembershipAttribute()
+    {
+        return ChaiConstant.ATTR_LDAP_MEMBER_OF;
+    }
+
+    @Override
+    public boolean supportsMatchingRuleInChain()
+    {
+        return true;
+    }
+
+    @Override
+    public UserStatusEvaluator getUserStatusEvaluator()
+    {
+        return ADUserStatusEvaluator.INSTANCE;
+    }
 }
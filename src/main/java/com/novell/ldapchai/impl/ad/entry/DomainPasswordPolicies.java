@@ -0,0 +1,511 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.impl.ad.entry;
+
+import com.novell.ldapchai.ChaiConstant;
+import com.novell.ldapchai.ChaiPasswordPolicy;
+import com.novell.ldapchai.ChaiPasswordRule;
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.PolicyCache;
+import com.novell.ldapchai.provider.SearchScope;
+import com.novell.ldapchai.util.ChaiDn;
+import com.novell.ldapchai.util.DefaultChaiPasswordPolicy;
+import com.novell.ldapchai.util.PasswordPolicyEvaluator;
+import com.novell.ldapchai.util.SearchHelper;
+import com.novell.ldapchai.util.internal.ChaiLogger;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Snapshot of the password policies of an Active Directory domain: the default domain policy and every
+ * fine-grained password settings object (PSO) of the domain's password settings container.
+ *
+ * <p>Snapshots are held in the {@link PolicyCache} of the provider factory.  A snapshot due for revalidation is
+ * confirmed current by comparing the domain {@code minPwdLength}, {@code pwdProperties}, {@code maxPwdAge} and
+ * {@code lockoutDuration} values and by a single search listing the
+ * {@code whenChanged} value of each PSO, so added, removed and modified PSOs are detected without re-reading
+ * their settings.</p>
+ *
+ * <p>Resolving the policy of a user requires no directory operations if the domain has no PSOs, otherwise a single
+ * read of the user's constructed {@code msDS-ResultantPSO} attribute, which the server computes from the group
+ * precedence of the applicable PSOs.  The maximum password age and lockout duration of each PSO are kept with
+ * the snapshot, so status evaluation can apply them once the resultant PSO is known.  The compiled
+ * {@link PasswordPolicyEvaluator} of each policy is also kept with the snapshot, so password tests do not
+ * compile the policy again.</p>
+ */
+final class DomainPasswordPolicies
+{
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger( DomainPasswordPolicies.class );
+
+    private static final Pattern DOMAIN_PATTERN = Pattern.compile( "(dc=[a-z0-9-]+[,]*)+", Pattern.CASE_INSENSITIVE );
+
+    private static final PolicyCache.Region<DomainPasswordPolicies> REGION
+            = new PolicyCache.Region<>( "ad.domainPasswordPolicies", DomainPasswordPolicies.class );
+
+    private static final String PSO_CONTAINER_PREFIX = "CN=Password Settings Container,CN=System,";
+    private static final String PSO_FILTER = "(objectClass=msDS-PasswordSettings)";
+    private static final String ATTR_MIN_PWD_LENGTH = "minPwdLength";
+    private static final String ATTR_PWD_PROPERTIES = "pwdProperties";
+    private static final String ATTR_MAX_PWD_AGE = "maxPwdAge";
+    private static final String ATTR_LOCKOUT_DURATION = "lockoutDuration";
+    private static final Set<String> DOMAIN_ATTRIBUTES = Collections.unmodifiableSet( new LinkedHashSet<>(
+            Arrays.asList( ATTR_MIN_PWD_LENGTH, ATTR_PWD_PROPERTIES, ATTR_MAX_PWD_AGE, ATTR_LOCKOUT_DURATION ) ) );
+    private static final String ATTR_WHEN_CHANGED = "whenChanged";
+    private static final Set<String> PSO_INTERVAL_ATTRIBUTES = Collections.unmodifiableSet( new LinkedHashSet<>( Arrays.asList(
+            ChaiConstant.ATTR_AD_PASSWORD_POLICY_MAX_PASSWORD_AGE,
+            ChaiConstant.ATTR_AD_PASSWORD_POLICY_LOCKOUT_DURATION ) ) );
+
+    /**
+     * Interval value meaning "never" for a maximum password age and "until unlocked by an administrator" for a
+     * lockout duration.
+     */
+    private static final long INTERVAL_NEVER = Long.MIN_VALUE;
+
+    /**
+     * {@code pwdProperties} flag requiring passwords to meet the domain complexity requirements.
+     */
+    private static final int DOMAIN_PASSWORD_COMPLEX = 0x1;
+
+    private final String domainDN;
+    private final Map<String, String> domainValues;
+    private final Map<String, String> domainRules;
+    private final Map<String, String> psoChangeStamps;
+    private final ChaiPasswordPolicy domainPolicy;
+    private final Map<String, ChaiPasswordPolicy> psoPolicies;
+    private final PasswordPolicyEvaluator domainEvaluator;
+    private final Map<String, PasswordPolicyEvaluator> psoEvaluators;
+    private final Map<String, Map<String, String>> psoIntervals;
+
+    private DomainPasswordPolicies(
+            final String domainDN,
+            final Map<String, String> domainValues,
+            final Map<String, String> psoChangeStamps,
+            final Map<String, Map<String, String>> psoRules,
+            final Map<String, Map<String, String>> psoIntervals
+    )
+    {
+        this.domainDN = domainDN;
+        this.domainValues = Collections.unmodifiableMap( new HashMap<>( domainValues ) );
+        this.domainRules = Collections.unmodifiableMap( defaultRules( domainValues ) );
+        this.psoChangeStamps = Collections.unmodifiableMap( psoChangeStamps );
+        this.psoIntervals = Collections.unmodifiableMap( psoIntervals );
+
+        this.domainPolicy = DefaultChaiPasswordPolicy.createDefaultChaiPasswordPolicy( domainRules );
+
+        this.domainEvaluator = PasswordPolicyEvaluator.compile( domainPolicy );
+
+        final Map<String, ChaiPasswordPolicy> policies = new HashMap<>();
+        final Map<String, PasswordPolicyEvaluator> evaluators = new HashMap<>();
+        for ( final Map.Entry<String, Map<String, String>> entry : psoRules.entrySet() )
+        {
+            final ChaiPasswordPolicy psoPolicy = applyPsoRules( domainRules, entry.getValue() );
+            policies.put( entry.getKey(), psoPolicy );
+            evaluators.put( entry.getKey(), PasswordPolicyEvaluator.compile( psoPolicy ) );
+        }
+        this.psoPolicies = Collections.unmodifiableMap( policies );
+        this.psoEvaluators = Collections.unmodifiableMap( evaluators );
+    }
+
+    /**
+     * Read the effective password policy of a user.
+     *
+     * @param user an active directory user
+     * @return the password policy of the user
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    static ChaiPasswordPolicy readPasswordPolicy( final ChaiUser user )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final String domainDN = domainOf( user.getEntryDN() );
+        if ( domainDN == null )
+        {
+            final String psoDN = user.readStringAttribute( ChaiConstant.ATTR_AD_PASSWORD_POLICY_RESULTANT_PSO );
+            return psoDN == null || psoDN.isEmpty()
+                    ? DefaultChaiPasswordPolicy.createDefaultChaiPasswordPolicy( defaultRules( Collections.emptyMap() ) )
+                    : readPsoPolicy( user.getChaiProvider(), defaultRules( Collections.emptyMap() ), psoDN );
+        }
+
+        final DomainPasswordPolicies domainPolicies = forDomain( user.getChaiProvider(), domainDN );
+        return domainPolicies.policyForUser( user );
+    }
+
+    /**
+     * Read the compiled evaluator of the effective password policy of a user.  Evaluators of the policies in a
+     * cached snapshot are compiled once with the snapshot.
+     *
+     * @param user an active directory user
+     * @return the password policy evaluator of the user
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    static PasswordPolicyEvaluator readPasswordPolicyEvaluator( final ChaiUser user )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final String domainDN = domainOf( user.getEntryDN() );
+        if ( domainDN == null )
+        {
+            return PasswordPolicyEvaluator.compile( readPasswordPolicy( user ) );
+        }
+
+        final DomainPasswordPolicies domainPolicies = forDomain( user.getChaiProvider(), domainDN );
+        return domainPolicies.evaluatorForUser( user );
+    }
+
+    /**
+     * Domain DN of an entry, taken from the trailing {@code dc} components of the entry DN.
+     *
+     * @param entryDN an entry DN
+     * @return the domain DN, or null if the DN has no {@code dc} components
+     */
+    static String domainOf( final String entryDN )
+    {
+        final Matcher domainMatcher = DOMAIN_PATTERN.matcher( entryDN );
+        return domainMatcher.find() ? domainMatcher.group() : null;
+    }
+
+    static DomainPasswordPolicies forDomain( final ChaiProvider chaiProvider, final String domainDN )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final PolicyCache policyCache = PolicyCache.forProvider( chaiProvider );
+        final String cacheKey = ChaiDn.normalize( domainDN );
+
+        final Optional<DomainPasswordPolicies> cached = policyCache.get( chaiProvider.getChaiConfiguration(), REGION, cacheKey,
+                policies -> policies.isCurrent( chaiProvider ) );
+        if ( cached.isPresent() )
+        {
+            return cached.get();
+        }
+
+        final DomainPasswordPolicies policies = read( chaiProvider, domainDN );
+        policyCache.put( chaiProvider.getChaiConfiguration(), REGION, cacheKey, policies );
+        return policies;
+    }
+
+    ChaiPasswordPolicy policyForUser( final ChaiUser user )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final String psoDN = resultantPsoDN( user );
+        if ( psoDN == null )
+        {
+            return domainPolicy;
+        }
+
+        final ChaiPasswordPolicy psoPolicy = psoPolicies.get( ChaiDn.normalize( psoDN ) );
+        if ( psoPolicy != null )
+        {
+            return psoPolicy;
+        }
+
+        // pso is outside of the password settings container, or was created after the snapshot
+        return readPsoPolicy( user.getChaiProvider(), domainRules, psoDN );
+    }
+
+    PasswordPolicyEvaluator evaluatorForUser( final ChaiUser user )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final String psoDN = resultantPsoDN( user );
+        if ( psoDN == null )
+        {
+            return domainEvaluator;
+        }
+
+        final PasswordPolicyEvaluator psoEvaluator = psoEvaluators.get( ChaiDn.normalize( psoDN ) );
+        if ( psoEvaluator != null )
+        {
+            return psoEvaluator;
+        }
+
+        // pso is outside of the password settings container, or was created after the snapshot
+        return PasswordPolicyEvaluator.compile( readPsoPolicy( user.getChaiProvider(), domainRules, psoDN ) );
+    }
+
+    /**
+     * Resultant PSO of a user, or null if the domain policy applies.  No read is needed if the domain has no PSOs.
+     */
+    private String resultantPsoDN( final ChaiUser user )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        if ( psoPolicies.isEmpty() )
+        {
+            return null;
+        }
+
+        final String psoDN = user.readStringAttribute( ChaiConstant.ATTR_AD_PASSWORD_POLICY_RESULTANT_PSO );
+        return psoDN == null || psoDN.isEmpty() ? null : psoDN;
+    }
+
+    /**
+     * Test if the domain has fine-grained password settings objects, so users may have a resultant PSO.
+     *
+     * @return true if the password settings container holds at least one PSO
+     */
+    boolean hasPsos()
+    {
+        return !psoChangeStamps.isEmpty();
+    }
+
+    /**
+     * Maximum password age of the domain, or of a PSO.
+     *
+     * @param chaiProvider provider used to read a PSO that is not part of the snapshot
+     * @param resultantPsoDN the {@code msDS-ResultantPSO} value of a user, or null for the domain value
+     * @return maximum age in milliseconds, zero if passwords do not expire
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    long getMaxPasswordAgeMs( final ChaiProvider chaiProvider, final String resultantPsoDN )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final String value = resultantPsoDN == null || resultantPsoDN.isEmpty()
+                ? domainValues.get( ATTR_MAX_PWD_AGE )
+                : psoIntervals( chaiProvider, resultantPsoDN ).get( ChaiConstant.ATTR_AD_PASSWORD_POLICY_MAX_PASSWORD_AGE );
+        final long interval = parseInterval( value );
+        return interval == INTERVAL_NEVER ? 0 : Math.abs( interval ) / 10000;
+    }
+
+    /**
+     * Intruder lockout duration of the domain, or of a PSO.
+     *
+     * @param chaiProvider provider used to read a PSO that is not part of the snapshot
+     * @param resultantPsoDN the {@code msDS-ResultantPSO} value of a user, or null for the domain value
+     * @return lockout duration in milliseconds, zero if not configured, or {@link Long#MAX_VALUE} if locked
+     *     accounts stay locked until unlocked by an administrator
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    long getLockoutDurationMs( final ChaiProvider chaiProvider, final String resultantPsoDN )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final String value = resultantPsoDN == null || resultantPsoDN.isEmpty()
+                ? domainValues.get( ATTR_LOCKOUT_DURATION )
+                : psoIntervals( chaiProvider, resultantPsoDN ).get( ChaiConstant.ATTR_AD_PASSWORD_POLICY_LOCKOUT_DURATION );
+        final long interval = parseInterval( value );
+        return interval == INTERVAL_NEVER ? Long.MAX_VALUE : Math.abs( interval ) / 10000;
+    }
+
+    private Map<String, String> psoIntervals( final ChaiProvider chaiProvider, final String psoDN )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final Map<String, String> intervals = psoIntervals.get( ChaiDn.normalize( psoDN ) );
+        if ( intervals != null )
+        {
+            return intervals;
+        }
+
+        // pso is outside of the password settings container, or was created after the snapshot
+        return chaiProvider.readStringAttributes( psoDN, PSO_INTERVAL_ATTRIBUTES );
+    }
+
+    ChaiPasswordPolicy getDomainPolicy()
+    {
+        return domainPolicy;
+    }
+
+    Set<String> getPsoDNs()
+    {
+        return psoChangeStamps.keySet();
+    }
+
+    private boolean isCurrent( final ChaiProvider chaiProvider )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        for ( final Map.Entry<String, String> entry : domainValues.entrySet() )
+        {
+            if ( !PolicyCache.hasAttributeValue( chaiProvider, domainDN, entry.getKey(), entry.getValue() ) )
+            {
+                return false;
+            }
+        }
+
+        // a compare cannot confirm an absent value, so any domain attribute missing from the snapshot is read again
+        if ( domainValues.size() < DOMAIN_ATTRIBUTES.size() )
+        {
+            final Set<String> missingAttributes = new LinkedHashSet<>( DOMAIN_ATTRIBUTES );
+            missingAttributes.removeAll( domainValues.keySet() );
+            if ( !chaiProvider.readStringAttributes( domainDN, missingAttributes ).isEmpty() )
+            {
+                return false;
+            }
+        }
+
+        final Map<String, String> currentStamps = new HashMap<>();
+        for ( final Map.Entry<String, Map<String, List<String>>> entry
+                : searchPsos( chaiProvider, domainDN, Collections.singleton( ATTR_WHEN_CHANGED ) ).entrySet() )
+        {
+            currentStamps.put( ChaiDn.normalize( entry.getKey() ), firstValue( entry.getValue(), ATTR_WHEN_CHANGED ) );
+        }
+
+        final boolean current = currentStamps.equals( psoChangeStamps );
+        if ( !current )
+        {
+            LOGGER.debug( () -> "password settings objects of domain " + domainDN + " have changed" );
+        }
+        return current;
+    }
+
+    private static DomainPasswordPolicies read( final ChaiProvider chaiProvider, final String domainDN )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final Map<String, String> domainValues = chaiProvider.readStringAttributes( domainDN, DOMAIN_ATTRIBUTES );
+
+        final Set<String> attributes = new LinkedHashSet<>( MsDSPasswordSettingsImpl.LDAP_PASSWORD_ATTRIBUTES );
+        attributes.add( ATTR_WHEN_CHANGED );
+
+        final Map<String, String> psoChangeStamps = new HashMap<>();
+        final Map<String, Map<String, String>> psoRules = new HashMap<>();
+        final Map<String, Map<String, String>> psoIntervals = new HashMap<>();
+        for ( final Map.Entry<String, Map<String, List<String>>> entry : searchPsos( chaiProvider, domainDN, attributes ).entrySet() )
+        {
+            final String key = ChaiDn.normalize( entry.getKey() );
+            psoChangeStamps.put( key, firstValue( entry.getValue(), ATTR_WHEN_CHANGED ) );
+            psoRules.put( key, MsDSPasswordSettingsImpl.createRuleMapUsingAttributeValues( entry.getValue() ) );
+
+            final Map<String, String> intervals = new HashMap<>();
+            for ( final String attribute : PSO_INTERVAL_ATTRIBUTES )
+            {
+                intervals.put( attribute, firstValue( entry.getValue(), attribute ) );
+            }
+            psoIntervals.put( key, Collections.unmodifiableMap( intervals ) );
+        }
+
+        LOGGER.debug( () -> "read password policies of domain " + domainDN + ", " + psoRules.size() + " password settings objects" );
+        return new DomainPasswordPolicies( domainDN, domainValues, psoChangeStamps, psoRules, psoIntervals );
+    }
+
+    private static Map<String, Map<String, List<String>>> searchPsos(
+            final ChaiProvider chaiProvider,
+            final String domainDN,
+            final Set<String> attributes
+    )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final SearchHelper searchHelper = new SearchHelper( PSO_FILTER, SearchScope.SUBTREE, attributes );
+        try
+        {
+            return chaiProvider.searchMultiValues( PSO_CONTAINER_PREFIX + domainDN, searchHelper );
+        }
+        catch ( final ChaiOperationException e )
+        {
+            if ( e.getErrorCode() == ChaiError.NO_SUCH_ENTRY )
+            {
+                return Collections.emptyMap();
+            }
+            throw e;
+        }
+    }
+
+    private static ChaiPasswordPolicy readPsoPolicy( final ChaiProvider chaiProvider, final Map<String, String> domainRules, final String psoDN )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final MsDSPasswordSettingsImpl msDSPasswordSetting = new MsDSPasswordSettingsImpl( psoDN, chaiProvider );
+        final Map<String, String> psoRules = new HashMap<>();
+        for ( final String loopKey : msDSPasswordSetting.getKeys() )
+        {
+            psoRules.put( loopKey, msDSPasswordSetting.getValue( loopKey ) );
+        }
+        return applyPsoRules( domainRules, psoRules );
+    }
+
+    private static ChaiPasswordPolicy applyPsoRules( final Map<String, String> domainRules, final Map<String, String> psoRules )
+    {
+        final Map<String, String> policyMap = new LinkedHashMap<>( domainRules );
+        policyMap.putAll( psoRules );
+        return DefaultChaiPasswordPolicy.createDefaultChaiPasswordPolicy( policyMap );
+    }
+
+    /**
+     * Rules of the default domain policy, from the domain {@code minPwdLength} and {@code pwdProperties} values.
+     */
+    private static Map<String, String> defaultRules( final Map<String, String> domainValues )
+    {
+        final Map<String, String> rules = new LinkedHashMap<>();
+
+        // defaults for ad policy
+        rules.put( ChaiPasswordRule.AllowNumeric.getKey(), String.valueOf( true ) );
+        rules.put( ChaiPasswordRule.AllowSpecial.getKey(), String.valueOf( true ) );
+        rules.put( ChaiPasswordRule.CaseSensitive.getKey(), String.valueOf( true ) );
+
+        final String minPwdLength = domainValues.get( ATTR_MIN_PWD_LENGTH );
+        if ( minPwdLength != null && minPwdLength.length() > 0 )
+        {
+            rules.put( ChaiPasswordRule.MinimumLength.getKey(), minPwdLength );
+        }
+
+        final String pwdProperties = domainValues.get( ATTR_PWD_PROPERTIES );
+        if ( pwdProperties != null && pwdProperties.length() > 0 )
+        {
+            try
+            {
+                final boolean complex = ( Integer.parseInt( pwdProperties.trim() ) & DOMAIN_PASSWORD_COMPLEX ) != 0;
+                rules.put( ChaiPasswordRule.ADComplexity.getKey(), String.valueOf( complex ) );
+            }
+            catch ( NumberFormatException e )
+            {
+                LOGGER.debug( () -> "ignoring unparseable " + ATTR_PWD_PROPERTIES + " value '" + pwdProperties + "'" );
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Domain and PSO intervals are stored as negative counts of 100 nanosecond intervals, with the largest negative
+     * value, {@link #INTERVAL_NEVER}, meaning the interval never ends.
+     *
+     * @return the interval, zero if not set
+     */
+    private static long parseInterval( final String value )
+    {
+        if ( value == null || value.isEmpty() )
+        {
+            return 0;
+        }
+
+        try
+        {
+            return Long.parseLong( value );
+        }
+        catch ( final NumberFormatException e )
+        {
+            return 0;
+        }
+    }
+
+    private static String firstValue( final Map<String, List<String>> values, final String attributeName )
+    {
+        final List<String> attributeValues = values.get( attributeName );
+        return attributeValues == null || attributeValues.isEmpty() ? "" : attributeValues.get( 0 );
+    }
+}
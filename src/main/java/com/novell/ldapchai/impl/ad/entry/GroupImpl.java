@@ -25,6 +25,9 @@ import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.impl.AbstractChaiGroup;
 import com.novell.ldapchai.provider.ChaiProvider;
 
+import java.util.Collections;
+import java.util.Set;
+
 class GroupImpl extends AbstractChaiGroup implements Group, ChaiGroup
 {
     GroupImpl( final String groupDN, final ChaiProvider chaiProvider )
@@ -45,4 +48,10 @@ class GroupImpl extends AbstractChaiGroup implements Group, ChaiGroup
     {
         return readStringAttribute( "distinguishedName" );
     }
+
+    @Override
+    protected Set<String> memberBackLinkAttributes()
+    {
+        return Collections.emptySet();
+    }
 }
@@ -73,7 +73,7 @@ public class MsDSPasswordSettingsImpl extends TopImpl implements MsDSPasswordSet
         ruleMap.putAll( createRuleMapUsingAttributeValues( results ) );
     }
 
-    private static Map<String, String> createRuleMapUsingAttributeValues( final Map<String, List<String>> entryValues )
+    static Map<String, String> createRuleMapUsingAttributeValues( final Map<String, List<String>> entryValues )
     {
         final Map<String, String> returnMap = new HashMap<>();
 
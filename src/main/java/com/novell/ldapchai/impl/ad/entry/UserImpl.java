@@ -23,7 +23,6 @@ import com.novell.ldapchai.ChaiConstant;
 import com.novell.ldapchai.ChaiEntry;
 import com.novell.ldapchai.ChaiGroup;
 import com.novell.ldapchai.ChaiPasswordPolicy;
-import com.novell.ldapchai.ChaiPasswordRule;
 import com.novell.ldapchai.ChaiRequestControl;
 import com.novell.ldapchai.ChaiUser;
 import com.novell.ldapchai.exception.ChaiError;
@@ -34,8 +33,9 @@ import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.impl.AbstractChaiUser;
 import com.novell.ldapchai.provider.ChaiProvider;
 import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.provider.MembershipCache;
 import com.novell.ldapchai.provider.SearchScope;
-import com.novell.ldapchai.util.DefaultChaiPasswordPolicy;
+import com.novell.ldapchai.util.PasswordPolicyEvaluator;
 import com.novell.ldapchai.util.SearchHelper;
 import com.novell.ldapchai.util.internal.StringHelper;
 
@@ -44,11 +44,8 @@ import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 class UserImpl extends AbstractChaiUser implements User, Top, ChaiUser
 {
@@ -83,44 +80,14 @@ class UserImpl extends AbstractChaiUser implements User, Top, ChaiUser
             throws ChaiOperationException, ChaiUnavailableException
     {
         theGroup.addAttribute( "member", this.getEntryDN() );
+        MembershipCache.groupModified( getChaiProvider(), theGroup.getEntryDN() );
     }
 
     @Override
     public ChaiPasswordPolicy getPasswordPolicy()
             throws ChaiUnavailableException, ChaiOperationException
     {
-
-        final Map<String, String> policyMap = new LinkedHashMap<>();
-
-        // defaults for ad policy
-        policyMap.put( ChaiPasswordRule.AllowNumeric.getKey(), String.valueOf( true ) );
-        policyMap.put( ChaiPasswordRule.AllowSpecial.getKey(), String.valueOf( true ) );
-        policyMap.put( ChaiPasswordRule.CaseSensitive.getKey(), String.valueOf( true ) );
-
-        //read minimum password length from domain
-        final Matcher domainMatcher = Pattern.compile( "(dc=[a-z0-9-]+[,]*)+", Pattern.CASE_INSENSITIVE ).matcher( this.getEntryDN() );
-        if ( domainMatcher.find() )
-        {
-            final String domainDN = domainMatcher.group();
-            final String minPwdLength = this.getChaiProvider().readStringAttribute( domainDN, "minPwdLength" );
-            if ( minPwdLength != null && minPwdLength.length() > 0 )
-            {
-                policyMap.put( ChaiPasswordRule.MinimumLength.getKey(), minPwdLength );
-            }
-        }
-
-        // Read PSO policy object.
-        final String psoObject = this.readStringAttribute( ChaiConstant.ATTR_AD_PASSWORD_POLICY_RESULTANT_PSO );
-        if ( psoObject != null && psoObject.length() > 0 )
-        {
-            final MsDSPasswordSettingsImpl msDSPasswordSetting = new MsDSPasswordSettingsImpl( psoObject, this.getChaiProvider() );
-            for ( final String loopKey : msDSPasswordSetting.getKeys() )
-            {
-                policyMap.put( loopKey, msDSPasswordSetting.getValue( loopKey ) );
-            }
-        }
-
-        return DefaultChaiPasswordPolicy.createDefaultChaiPasswordPolicy( policyMap );
+        return DomainPasswordPolicies.readPasswordPolicy( this );
     }
 
     @Override
@@ -135,6 +102,7 @@ class UserImpl extends AbstractChaiUser implements User, Top, ChaiUser
             throws ChaiOperationException, ChaiUnavailableException
     {
         theGroup.deleteAttribute( "member", this.getEntryDN() );
+        MembershipCache.groupModified( getChaiProvider(), theGroup.getEntryDN() );
     }
 
     @Override
@@ -148,7 +116,20 @@ class UserImpl extends AbstractChaiUser implements User, Top, ChaiUser
     public boolean testPasswordPolicy( final String testPassword )
             throws ChaiUnavailableException, ChaiPasswordPolicyException
     {
-        return false;
+        try
+        {
+            final PasswordPolicyEvaluator evaluator = DomainPasswordPolicies.readPasswordPolicyEvaluator( this );
+            final Set<String> requiredAttributes = evaluator.getRequiredAttributes();
+            final Map<String, String> attributeValues = requiredAttributes.isEmpty()
+                    ? Collections.emptyMap()
+                    : readStringAttributes( requiredAttributes );
+            evaluator.check( testPassword, attributeValues );
+        }
+        catch ( final ChaiOperationException e )
+        {
+            throw new ChaiPasswordPolicyException( "unable to read password policy: " + e.getMessage(), e.getErrorCode() );
+        }
+        return true;
     }
 
     @Override
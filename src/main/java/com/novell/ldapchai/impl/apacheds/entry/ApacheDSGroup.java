@@ -26,6 +26,10 @@ import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.impl.AbstractChaiGroup;
 import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.MembershipCache;
+
+import java.util.Collections;
+import java.util.Set;
 
 class ApacheDSGroup extends AbstractChaiGroup implements ChaiGroup
 {
@@ -40,6 +44,7 @@ class ApacheDSGroup extends AbstractChaiGroup implements ChaiGroup
     {
         this.addAttribute( ChaiConstant.ATTR_LDAP_MEMBER, theUser.getEntryDN() );
         theUser.addAttribute( ChaiConstant.ATTR_LDAP_MEMBER_OF, this.getEntryDN() );
+        MembershipCache.groupModified( getChaiProvider(), getEntryDN() );
     }
 
     @Override
@@ -48,6 +53,7 @@ class ApacheDSGroup extends AbstractChaiGroup implements ChaiGroup
     {
         this.deleteAttribute( ChaiConstant.ATTR_LDAP_MEMBER, theUser.getEntryDN() );
         theUser.deleteAttribute( ChaiConstant.ATTR_LDAP_MEMBER_OF, this.getEntryDN() );
+        MembershipCache.groupModified( getChaiProvider(), getEntryDN() );
     }
 
     @Override
@@ -56,4 +62,10 @@ class ApacheDSGroup extends AbstractChaiGroup implements ChaiGroup
     {
         return ApacheDSEntry.readGUIDImpl( this.getChaiProvider(), this.getEntryDN() );
     }
+
+    @Override
+    protected Set<String> memberBackLinkAttributes()
+    {
+        return Collections.singleton( ChaiConstant.ATTR_LDAP_MEMBER_OF );
+    }
 }
@@ -26,6 +26,7 @@ import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.impl.AbstractChaiUser;
 import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.MembershipCache;
 
 import java.time.Instant;
 import java.util.Collections;
@@ -50,12 +51,14 @@ class ApacheDSUser extends AbstractChaiUser implements ChaiUser
     public void addGroupMembership( final ChaiGroup theGroup )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        MembershipCache.groupModified( getChaiProvider(), theGroup.getEntryDN() );
     }
 
     @Override
     public void removeGroupMembership( final ChaiGroup theGroup )
             throws ChaiOperationException, ChaiUnavailableException
     {
+        MembershipCache.groupModified( getChaiProvider(), theGroup.getEntryDN() );
     }
 
     @Override
@@ -0,0 +1,42 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.impl.apacheds.entry;
+
+import com.novell.ldapchai.impl.UserStatusEvaluator;
+
+/**
+ * ApacheDS user status, equivalent to the status methods of {@link ApacheDSUser}, no attributes are read.
+ */
+final class ApacheDSUserStatusEvaluator extends UserStatusEvaluator
+{
+    static final ApacheDSUserStatusEvaluator INSTANCE = new ApacheDSUserStatusEvaluator();
+
+    private ApacheDSUserStatusEvaluator()
+    {
+        super();
+    }
+
+    @Override
+    protected boolean isAccountEnabled( final StatusValues values )
+    {
+        return true;
+    }
+}
@@ -27,6 +27,7 @@ import com.novell.ldapchai.exception.ChaiPasswordPolicyException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.impl.AbstractChaiUser;
 import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.MembershipCache;
 
 import java.time.Instant;
 import java.util.Collections;
@@ -148,6 +149,7 @@ class DirectoryServer389User extends AbstractChaiUser implements ChaiUser
             throws ChaiOperationException, ChaiUnavailableException
     {
         theGroup.addAttribute( ChaiConstant.ATTR_LDAP_MEMBER, this.getEntryDN() );
+        MembershipCache.groupModified( getChaiProvider(), theGroup.getEntryDN() );
     }
 
     @Override
@@ -155,5 +157,6 @@ class DirectoryServer389User extends AbstractChaiUser implements ChaiUser
             throws ChaiOperationException, ChaiUnavailableException
     {
         theGroup.deleteAttribute( ChaiConstant.ATTR_LDAP_MEMBER, this.getEntryDN() );
+        MembershipCache.groupModified( getChaiProvider(), theGroup.getEntryDN() );
     }
 }
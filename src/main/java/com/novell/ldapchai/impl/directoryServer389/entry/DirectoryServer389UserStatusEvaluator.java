@@ -0,0 +1,64 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.impl.directoryServer389.entry;
+
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.impl.UserStatusEvaluator;
+
+import java.time.Instant;
+
+/**
+ * 389 Directory Server user status, equivalent to the status methods of {@link DirectoryServer389User}.
+ */
+final class DirectoryServer389UserStatusEvaluator extends UserStatusEvaluator
+{
+    static final DirectoryServer389UserStatusEvaluator INSTANCE = new DirectoryServer389UserStatusEvaluator();
+
+    private DirectoryServer389UserStatusEvaluator()
+    {
+        super(
+                ChaiUser.ATTR_LOGIN_DISABLED,
+                ChaiUser.ATTR_PASSWORD_EXPIRE_TIME,
+                DirectoryServer389User.ATTR_ACCOUNT_UNLOCK_TIME );
+    }
+
+    @Override
+    protected boolean isPasswordLocked( final StatusValues values )
+            throws ChaiUnavailableException
+    {
+        final Instant unlockDate = values.getDate( DirectoryServer389User.ATTR_ACCOUNT_UNLOCK_TIME );
+        return unlockDate != null && unlockDate.isAfter( values.getNow() );
+    }
+
+    @Override
+    protected boolean isPasswordExpired( final StatusValues values, final Instant passwordExpirationDate )
+    {
+        return passwordExpirationDate != null && passwordExpirationDate.isBefore( values.getNow() );
+    }
+
+    @Override
+    protected Instant readPasswordExpirationDate( final StatusValues values )
+            throws ChaiUnavailableException
+    {
+        return values.getDate( ChaiUser.ATTR_PASSWORD_EXPIRE_TIME );
+    }
+}
@@ -19,10 +19,12 @@
 
 package com.novell.ldapchai.impl.directoryServer389.entry;
 
+import com.novell.ldapchai.ChaiConstant;
 import com.novell.ldapchai.ChaiEntry;
 import com.novell.ldapchai.ChaiGroup;
 import com.novell.ldapchai.ChaiUser;
 import com.novell.ldapchai.exception.ErrorMap;
+import com.novell.ldapchai.impl.UserStatusEvaluator;
 import com.novell.ldapchai.impl.VendorFactory;
 import com.novell.ldapchai.impl.edir.EdirErrorMap;
 import com.novell.ldapchai.impl.edir.entry.EdirEntries;
@@ -144,4 +146,16 @@ public class DirectoryServer389VendorFactory implements VendorFactory
     {
         return true;
     }
+
+    @Override
+    public String getGroupMembershipAttribute()
+    {
+        return ChaiConstant.ATTR_LDAP_MEMBER_OF;
+    }
+
+    @Override
+    public UserStatusEvaluator getUserStatusEvaluator()
+    {
+        return DirectoryServer389UserStatusEvaluator.INSTANCE;
+    }
 }
@@ -23,6 +23,7 @@ import com.novell.ldapchai.ChaiEntry;
 import com.novell.ldapchai.ChaiUser;
 import com.novell.ldapchai.exception.ChaiException;
 import com.novell.ldapchai.exception.ErrorMap;
+import com.novell.ldapchai.impl.UserStatusEvaluator;
 import com.novell.ldapchai.impl.VendorFactory;
 import com.novell.ldapchai.impl.edir.EdirErrorMap;
 import com.novell.ldapchai.provider.ChaiProvider;
@@ -148,4 +149,10 @@ public class EDirectoryVendorFactory implements VendorFactory
 
         return true;
     }
+
+    @Override
+    public UserStatusEvaluator getUserStatusEvaluator()
+    {
+        return EdirUserStatusEvaluator.INSTANCE;
+    }
 }
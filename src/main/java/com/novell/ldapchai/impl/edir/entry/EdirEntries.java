@@ -33,7 +33,10 @@ import com.novell.ldapchai.impl.edir.entry.ext.GetPwdPolicyInfoRequest;
 import com.novell.ldapchai.impl.edir.entry.ext.GetPwdPolicyInfoResponse;
 import com.novell.ldapchai.provider.ChaiProvider;
 import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.provider.MembershipCache;
+import com.novell.ldapchai.provider.PolicyCache;
 import com.novell.ldapchai.provider.SearchScope;
+import com.novell.ldapchai.util.ChaiDn;
 import com.novell.ldapchai.util.internal.ChaiLogger;
 import com.novell.ldapchai.util.DefaultChaiPasswordPolicy;
 import com.novell.ldapchai.util.SearchHelper;
@@ -53,6 +56,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -240,6 +244,8 @@ public class EdirEntries
         //Delete the attribs off of the group
         group.deleteAttribute( ChaiConstant.ATTR_LDAP_MEMBER, user.getEntryDN() );
         group.deleteAttribute( ChaiConstant.ATTR_LDAP_EQUIVALENT_TO_ME, user.getEntryDN() );
+
+        MembershipCache.groupModified( group.getChaiProvider(), group.getEntryDN() );
     }
 
 
@@ -276,6 +282,8 @@ public class EdirEntries
 
         group.addAttribute( ChaiConstant.ATTR_LDAP_MEMBER, user.getEntryDN() );
         group.addAttribute( ChaiConstant.ATTR_LDAP_EQUIVALENT_TO_ME, user.getEntryDN() );
+
+        MembershipCache.groupModified( group.getChaiProvider(), group.getEntryDN() );
     }
 
     private EdirEntries()
@@ -287,6 +295,15 @@ public class EdirEntries
         private static final Set<String> TRADITIONAL_PASSWORD_ATTRIBUTES;
         private static final SearchHelper NSPM_ENTRY_SEARCH_HELPER = new SearchHelper();
 
+        private static final String SECURITY_CONTAINER_DN = "cn=Security";
+
+        private static final PolicyCache.Region<String> CONTAINER_POLICY_REGION
+                = new PolicyCache.Region<>( "edir.containerPolicyDN", String.class );
+        private static final PolicyCache.Region<String> PARTITION_ROOT_REGION
+                = new PolicyCache.Region<>( "edir.partitionRootDN", String.class );
+        private static final PolicyCache.Region<String> LOGIN_POLICY_REGION
+                = new PolicyCache.Region<>( "edir.loginPolicyDN", String.class );
+
         static
         {
             {
@@ -324,21 +341,21 @@ public class EdirEntries
             try
             {
                 // fetch the user's associated password policy
-                final ChaiEntry policyEntry = findNspmPolicyForUser( theUser );
-                if ( policyEntry != null )
+                final String policyDN = findNspmPolicyForUser( theUser );
+                if ( policyDN != null )
                 {
-                    pwordPolicy = new NspmPasswordPolicyImpl( policyEntry.getEntryDN(), policyEntry.getChaiProvider() );
+                    pwordPolicy = NspmPasswordPolicyImpl.read( policyDN, theUser.getChaiProvider() );
 
                     // check to see if the advanced rules on the password policy are "enabled"
                     if ( pwordPolicy.getRuleHelper().isPolicyEnabled() )
                     {
                         // we've got a policy, and rules are enabled, now read the policy.
-                        LOGGER.trace( () -> "using active universal password policy for user " + theUser.getEntryDN() + " at " + policyEntry.getEntryDN() );
+                        LOGGER.trace( () -> "using active universal password policy for user " + theUser.getEntryDN() + " at " + policyDN );
                         usedUniversalPolicy = true;
                     }
                     else
                     {
-                        LOGGER.debug( () -> "ignoring unenabled nspm password policy for user " + theUser.getEntryDN() + " at " + policyEntry.getEntryDN() );
+                        LOGGER.debug( () -> "ignoring unenabled nspm password policy for user " + theUser.getEntryDN() + " at " + policyDN );
                     }
                 }
             }
@@ -365,87 +382,145 @@ public class EdirEntries
             return pwordPolicy;
         }
 
-        private static ChaiEntry findNspmPolicyForUser( final ChaiUser theUser )
+        /**
+         * Locate the universal password policy of a user.  Without NMAS, the policy is assigned to the user, its
+         * container, the partition root of the container, or the login policy of the tree, in that order.  The
+         * container, partition root and login policy lookups are shared by all users of a container, so they are
+         * held in the {@link PolicyCache} of the provider factory.
+         *
+         * @return the policy dn, or null if no policy is assigned
+         */
+        private static String findNspmPolicyForUser( final ChaiUser theUser )
                 throws ChaiUnavailableException, ChaiOperationException
         {
-            final boolean useNmasSetting = theUser.getChaiProvider().getChaiConfiguration().getBooleanSetting( ChaiSetting.EDIRECTORY_ENABLE_NMAS );
-            final ChaiEntryFactory chaiEntryFactory = theUser.getChaiProvider().getEntryFactory();
+            final ChaiProvider chaiProvider = theUser.getChaiProvider();
+            final boolean useNmasSetting = chaiProvider.getChaiConfiguration().getBooleanSetting( ChaiSetting.EDIRECTORY_ENABLE_NMAS );
+            final ChaiEntryFactory chaiEntryFactory = chaiProvider.getEntryFactory();
 
             if ( useNmasSetting )
             {
                 final GetPwdPolicyInfoRequest request = new GetPwdPolicyInfoRequest();
                 request.setObjectDN( theUser.getEntryDN() );
-                final ExtendedResponse response = theUser.getChaiProvider().extendedOperation( request );
+                final ExtendedResponse response = chaiProvider.extendedOperation( request );
                 if ( response != null )
                 {
                     final GetPwdPolicyInfoResponse polcyInfoResponse = ( GetPwdPolicyInfoResponse ) response;
-                    final String policyDN = polcyInfoResponse.getPwdPolicyDNStr();
-                    if ( policyDN != null )
-                    {
-                        return chaiEntryFactory.newChaiEntry( policyDN );
-                    }
+                    return polcyInfoResponse.getPwdPolicyDNStr();
                 }
                 return null;
             }
-            else
+
+            // look at user object first
             {
-                // look at user object first
+                final String policyDN = readPolicyDN( theUser );
+                if ( !policyDN.isEmpty() )
                 {
-                    final String policyDN = theUser.readStringAttribute( ChaiConstant.ATTR_EDIR_PASSWORD_POLICY_DN );
-                    if ( policyDN != null && policyDN.length() > 0 )
-                    {
-                        return chaiEntryFactory.newChaiEntry( policyDN );
-                    }
+                    return policyDN;
                 }
+            }
 
-                final ChaiEntry parentObject = theUser.getParentEntry();
-
+            final ChaiEntry parentObject = theUser.getParentEntry();
+            if ( parentObject != null )
+            {
                 // look at parent next
                 {
-                    if ( parentObject != null )
+                    final String policyDN = readContainerPolicyDN( parentObject );
+                    if ( !policyDN.isEmpty() )
                     {
-                        final String policyDN = parentObject.readStringAttribute( ChaiConstant.ATTR_EDIR_PASSWORD_POLICY_DN );
-                        if ( policyDN != null && policyDN.length() > 0 )
-                        {
-                            return chaiEntryFactory.newChaiEntry( policyDN );
-                        }
+                        return policyDN;
                     }
                 }
 
                 // look at partition root
                 {
-                    if ( parentObject != null )
+                    final String partitionRootDN = cachedLookup( chaiProvider, PARTITION_ROOT_REGION, parentObject.getEntryDN(),
+                            value -> true,
+                            () ->
+                            {
+                                final ChaiEntry partitionRoot = findPartitionRoot( parentObject );
+                                return partitionRoot == null ? "" : partitionRoot.getEntryDN();
+                            } );
+                    if ( !partitionRootDN.isEmpty() )
                     {
-                        final ChaiEntry partitonRoot = findPartitionRoot( parentObject );
-                        if ( partitonRoot != null )
+                        final String policyDN = readContainerPolicyDN( chaiEntryFactory.newChaiEntry( partitionRootDN ) );
+                        if ( !policyDN.isEmpty() )
                         {
-                            final String policyDN = partitonRoot.readStringAttribute( ChaiConstant.ATTR_EDIR_PASSWORD_POLICY_DN  );
-                            if ( policyDN != null && policyDN.length() > 0 )
-                            {
-                                return chaiEntryFactory.newChaiEntry( policyDN );
-                            }
+                            return policyDN;
                         }
                     }
                 }
+            }
 
-                // look at policy object
-                {
-                    final ChaiEntry securityContainer = chaiEntryFactory.newChaiEntry( "cn=Security" );
-                    final String loginPolicyDN = securityContainer.readStringAttribute( "sASLoginPolicyDN" );
-                    if ( loginPolicyDN != null && loginPolicyDN.length() > 0 )
-                    {
-                        final ChaiEntry loginPolicy = chaiEntryFactory.newChaiEntry( loginPolicyDN );
-                        final String policyDN = loginPolicy.readStringAttribute( ChaiConstant.ATTR_EDIR_PASSWORD_POLICY_DN  );
-                        if ( policyDN != null && policyDN.length() > 0 )
+            // look at policy object
+            {
+                final String policyDN = cachedLookup( chaiProvider, LOGIN_POLICY_REGION, SECURITY_CONTAINER_DN,
+                        value -> false,
+                        () ->
                         {
-                            return chaiEntryFactory.newChaiEntry( policyDN );
-                        }
-                    }
+                            final ChaiEntry securityContainer = chaiEntryFactory.newChaiEntry( SECURITY_CONTAINER_DN );
+                            final String loginPolicyDN = securityContainer.readStringAttribute( "sASLoginPolicyDN" );
+                            if ( loginPolicyDN != null && loginPolicyDN.length() > 0 )
+                            {
+                                return readPolicyDN( chaiEntryFactory.newChaiEntry( loginPolicyDN ) );
+                            }
+                            return "";
+                        } );
+                if ( !policyDN.isEmpty() )
+                {
+                    return policyDN;
                 }
             }
             return null;
         }
 
+        private static String readPolicyDN( final ChaiEntry entry )
+                throws ChaiUnavailableException, ChaiOperationException
+        {
+            final String policyDN = entry.readStringAttribute( ChaiConstant.ATTR_EDIR_PASSWORD_POLICY_DN );
+            return policyDN == null ? "" : policyDN;
+        }
+
+        /**
+         * Read the policy assigned to a container.  A cached assignment is confirmed with a compare before use, a
+         * cached absence of an assignment is read again once it is due for revalidation.
+         */
+        private static String readContainerPolicyDN( final ChaiEntry container )
+                throws ChaiUnavailableException, ChaiOperationException
+        {
+            final ChaiProvider chaiProvider = container.getChaiProvider();
+            return cachedLookup( chaiProvider, CONTAINER_POLICY_REGION, container.getEntryDN(),
+                    value -> PolicyCache.hasAttributeValue( chaiProvider, container.getEntryDN(), ChaiConstant.ATTR_EDIR_PASSWORD_POLICY_DN, value ),
+                    () -> readPolicyDN( container ) );
+        }
+
+        private static String cachedLookup(
+                final ChaiProvider chaiProvider,
+                final PolicyCache.Region<String> region,
+                final String entryDN,
+                final PolicyCache.Validator<String> validator,
+                final Lookup lookup
+        )
+                throws ChaiUnavailableException, ChaiOperationException
+        {
+            final PolicyCache policyCache = PolicyCache.forProvider( chaiProvider );
+            final String cacheKey = ChaiDn.normalize( entryDN );
+            final Optional<String> cachedValue = policyCache.get( chaiProvider.getChaiConfiguration(), region, cacheKey, validator );
+            if ( cachedValue.isPresent() )
+            {
+                return cachedValue.get();
+            }
+
+            final String value = lookup.lookup();
+            policyCache.put( chaiProvider.getChaiConfiguration(), region, cacheKey, value );
+            return value;
+        }
+
+        private interface Lookup
+        {
+            String lookup()
+                    throws ChaiUnavailableException, ChaiOperationException;
+        }
+
         /**
          * <p>Reads and applies the user's traditional (non-UP) password rules to the policy.</p>
          *
@@ -0,0 +1,115 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.impl.edir.entry;
+
+import com.novell.ldapchai.ChaiConstant;
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.impl.UserStatusEvaluator;
+
+import java.time.Instant;
+
+/**
+ * eDirectory user status, equivalent to the status methods of {@link InetOrgPersonImpl}.
+ */
+final class EdirUserStatusEvaluator extends UserStatusEvaluator
+{
+    static final EdirUserStatusEvaluator INSTANCE = new EdirUserStatusEvaluator();
+
+    private static final String ATTR_LOCKED_BY_INTRUDER = "lockedByIntruder";
+    private static final String ATTR_PASSWORD_CHANGED_TIME = "pwdChangedTime";
+    private static final String ATTR_LOGIN_EXPIRATION_TIME = "loginExpirationTime";
+
+    private EdirUserStatusEvaluator()
+    {
+        super(
+                ChaiUser.ATTR_LOGIN_DISABLED,
+                ATTR_LOCKED_BY_INTRUDER,
+                ChaiConstant.ATTR_LDAP_LOGIN_GRACE_LIMIT,
+                ChaiConstant.ATTR_LDAP_LOGIN_GRACE_REMAINING,
+                ChaiUser.ATTR_PASSWORD_EXPIRE_TIME,
+                ATTR_PASSWORD_CHANGED_TIME,
+                ATTR_LOGIN_EXPIRATION_TIME,
+                InetOrgPerson.ATTR_LAST_LOGIN );
+    }
+
+    @Override
+    protected boolean isPasswordLocked( final StatusValues values )
+    {
+        return values.getBoolean( ATTR_LOCKED_BY_INTRUDER );
+    }
+
+    @Override
+    protected boolean isPasswordExpired( final StatusValues values, final Instant passwordExpirationDate )
+            throws ChaiUnavailableException
+    {
+        if ( isGraceLoginUsed( values ) )
+        {
+            return true;
+        }
+
+        final Instant expireDate = values.getDate( ChaiUser.ATTR_PASSWORD_EXPIRE_TIME );
+        return expireDate != null && expireDate.isBefore( values.getNow() );
+    }
+
+    @Override
+    protected Instant readPasswordExpirationDate( final StatusValues values )
+            throws ChaiUnavailableException
+    {
+        final Instant expireDate = values.getDate( ChaiUser.ATTR_PASSWORD_EXPIRE_TIME );
+        if ( expireDate == null && isGraceLoginUsed( values ) )
+        {
+            return values.getNow();
+        }
+        return expireDate;
+    }
+
+    @Override
+    protected Instant readPasswordModificationDate( final StatusValues values )
+            throws ChaiUnavailableException
+    {
+        return values.getDate( ATTR_PASSWORD_CHANGED_TIME );
+    }
+
+    @Override
+    protected Instant readLastLoginTime( final StatusValues values )
+            throws ChaiUnavailableException
+    {
+        return values.getDate( InetOrgPerson.ATTR_LAST_LOGIN );
+    }
+
+    @Override
+    protected Instant readAccountExpirationDate( final StatusValues values )
+            throws ChaiUnavailableException
+    {
+        return values.getDate( ATTR_LOGIN_EXPIRATION_TIME );
+    }
+
+    /**
+     * If the grace login limit and remaining count differ, the password has expired and grace logins are in use.
+     */
+    private static boolean isGraceLoginUsed( final StatusValues values )
+    {
+        final int limit = values.getInt( ChaiConstant.ATTR_LDAP_LOGIN_GRACE_LIMIT, 0 );
+        final int remaining = values.getInt( ChaiConstant.ATTR_LDAP_LOGIN_GRACE_REMAINING, 0 );
+        return remaining != limit;
+    }
+}
@@ -26,12 +26,24 @@ import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.impl.AbstractChaiGroup;
 import com.novell.ldapchai.provider.ChaiProvider;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 
 /**
  * This class performs various actions on the LDAP Group object.
  */
 class GroupOfNamesImpl extends AbstractChaiGroup implements GroupOfNames
 {
+    private static final Set<String> MEMBER_ATTRIBUTES = Collections.unmodifiableSet( new LinkedHashSet<>( Arrays.asList(
+            ChaiConstant.ATTR_LDAP_MEMBER,
+            ChaiConstant.ATTR_LDAP_EQUIVALENT_TO_ME ) ) );
+
+    private static final Set<String> MEMBER_BACK_LINK_ATTRIBUTES = Collections.unmodifiableSet( new LinkedHashSet<>( Arrays.asList(
+            ChaiConstant.ATTR_LDAP_GROUP_MEMBERSHIP,
+            ChaiConstant.ATTR_LDAP_SECURITY_EQUALS ) ) );
 
     @Override
     public String getLdapObjectClassName()
@@ -71,4 +83,16 @@ class GroupOfNamesImpl extends AbstractChaiGroup implements GroupOfNames
     {
         return EdirEntries.readGuid( this );
     }
+
+    @Override
+    protected Set<String> memberAttributes()
+    {
+        return MEMBER_ATTRIBUTES;
+    }
+
+    @Override
+    protected Set<String> memberBackLinkAttributes()
+    {
+        return MEMBER_BACK_LINK_ATTRIBUTES;
+    }
 }
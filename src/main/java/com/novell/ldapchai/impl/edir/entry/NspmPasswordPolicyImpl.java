@@ -19,6 +19,7 @@
 
 package com.novell.ldapchai.impl.edir.entry;
 
+import com.novell.ldapchai.ChaiConstant;
 import com.novell.ldapchai.ChaiEntry;
 import com.novell.ldapchai.ChaiPasswordRule;
 import com.novell.ldapchai.exception.ChaiError;
@@ -26,8 +27,11 @@ import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.impl.edir.value.NspmComplexityRules;
 import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.PolicyCache;
 import com.novell.ldapchai.provider.SearchScope;
+import com.novell.ldapchai.util.ChaiDn;
 import com.novell.ldapchai.util.GenericRuleHelper;
+import com.novell.ldapchai.util.PasswordPolicyEvaluator;
 import com.novell.ldapchai.util.PasswordRuleHelper;
 import com.novell.ldapchai.util.SearchHelper;
 import com.novell.ldapchai.util.internal.StringHelper;
@@ -37,9 +41,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 
@@ -77,25 +83,57 @@ class NspmPasswordPolicyImpl extends TopImpl implements NspmPasswordPolicy
     }
 
 
+    private static final PolicyCache.Region<CachedPolicy> POLICY_REGION
+            = new PolicyCache.Region<>( "edir.nspmPasswordPolicy", CachedPolicy.class );
+
     private final Map<String, String> ruleMap;
     private final Map<String, List<String>> allEntryValues;
+    private final CachedPolicy cachedPolicy;
 
     NspmPasswordPolicyImpl( final String entryDN, final ChaiProvider chaiProvider )
             throws ChaiUnavailableException, ChaiOperationException
+    {
+        this( entryDN, chaiProvider, CachedPolicy.read( entryDN, chaiProvider ) );
+    }
+
+    private NspmPasswordPolicyImpl( final String entryDN, final ChaiProvider chaiProvider, final CachedPolicy cachedPolicy )
     {
         super( entryDN, chaiProvider );
+        allEntryValues = cachedPolicy.allEntryValues;
+        ruleMap = cachedPolicy.ruleMap;
+        this.cachedPolicy = cachedPolicy;
+    }
 
-        //read all attribute values from entry.
-        final SearchHelper searchHelper = new SearchHelper();
-        searchHelper.setFilter( SearchHelper.DEFAULT_FILTER );
-        searchHelper.setSearchScope( SearchScope.BASE );
-        searchHelper.setAttributes( LDAP_PASSWORD_ATTRIBUTES );
+    /**
+     * Read a policy using the {@link PolicyCache} of the provider factory.  A cached policy is re-used for as long
+     * as the {@code modifyTimestamp} of the policy entry is unchanged, so the entry and its complexity rules are
+     * only read and parsed again after the policy has been modified.
+     *
+     * @param entryDN      dn of the policy entry
+     * @param chaiProvider provider used to read the policy
+     * @return the policy
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     * @throws ChaiOperationException   If there is an error during the operation
+     */
+    static NspmPasswordPolicyImpl read( final String entryDN, final ChaiProvider chaiProvider )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        final PolicyCache policyCache = PolicyCache.forProvider( chaiProvider );
+        final String cacheKey = ChaiDn.normalize( entryDN );
 
-        final Map<String, Map<String, List<String>>> bigResults = this.getChaiProvider().searchMultiValues( getEntryDN(), searchHelper );
-        final Map<String, List<String>> results = bigResults.get( this.getEntryDN() );
+        final Optional<CachedPolicy> cachedPolicy = policyCache.get( chaiProvider.getChaiConfiguration(), POLICY_REGION, cacheKey,
+                policy -> PolicyCache.hasAttributeValue( chaiProvider, entryDN, ChaiConstant.ATTR_EDIR_MODIFIED_TIMESTAMP, policy.modifyTimestamp ) );
+        if ( cachedPolicy.isPresent() )
+        {
+            return new NspmPasswordPolicyImpl( entryDN, chaiProvider, cachedPolicy.get() );
+        }
 
-        allEntryValues = Collections.unmodifiableMap( new HashMap<>( results ) );
-        ruleMap = Collections.unmodifiableMap( new HashMap<>( createRuleMapUsingAttributeValues( results ) ) );
+        final CachedPolicy newPolicy = CachedPolicy.read( entryDN, chaiProvider );
+        if ( newPolicy.modifyTimestamp != null )
+        {
+            policyCache.put( chaiProvider.getChaiConfiguration(), POLICY_REGION, cacheKey, newPolicy );
+        }
+        return new NspmPasswordPolicyImpl( entryDN, chaiProvider, newPolicy );
     }
 
     @Override
@@ -119,8 +157,12 @@ class NspmPasswordPolicyImpl extends TopImpl implements NspmPasswordPolicy
 
     public List<ChaiError> testPasswordForErrors( final String password )
     {
-        //@todo implement this
-        throw new UnsupportedOperationException( "not implemented" );
+        final List<ChaiError> errors = new ArrayList<>();
+        for ( final PasswordPolicyEvaluator.Violation violation : cachedPolicy.getEvaluator( this ).evaluate( password ) )
+        {
+            errors.add( violation.getError() );
+        }
+        return errors;
     }
 
     @Override
@@ -390,4 +432,59 @@ class NspmPasswordPolicyImpl extends TopImpl implements NspmPasswordPolicy
     {
         return this;
     }
+
+    /**
+     * Attribute values and rules of a policy entry, independent of the provider used to read them.
+     */
+    private static final class CachedPolicy
+    {
+        private final Map<String, List<String>> allEntryValues;
+        private final Map<String, String> ruleMap;
+        private final String modifyTimestamp;
+
+        /**
+         * Compiled evaluator of the rule map, built by the first password test and shared by every policy instance
+         * created from the cached entry.
+         */
+        private volatile PasswordPolicyEvaluator evaluator;
+
+        private CachedPolicy( final Map<String, List<String>> entryValues, final String modifyTimestamp )
+        {
+            this.allEntryValues = Collections.unmodifiableMap( new HashMap<>( entryValues ) );
+            this.ruleMap = Collections.unmodifiableMap( new HashMap<>( createRuleMapUsingAttributeValues( entryValues ) ) );
+            this.modifyTimestamp = modifyTimestamp;
+        }
+
+        static CachedPolicy read( final String entryDN, final ChaiProvider chaiProvider )
+                throws ChaiUnavailableException, ChaiOperationException
+        {
+            //read all attribute values from entry.
+            final Set<String> attributes = new HashSet<>( LDAP_PASSWORD_ATTRIBUTES );
+            attributes.add( ChaiConstant.ATTR_EDIR_MODIFIED_TIMESTAMP );
+
+            final SearchHelper searchHelper = new SearchHelper();
+            searchHelper.setFilter( SearchHelper.DEFAULT_FILTER );
+            searchHelper.setSearchScope( SearchScope.BASE );
+            searchHelper.setAttributes( attributes );
+
+            final Map<String, Map<String, List<String>>> bigResults = chaiProvider.searchMultiValues( entryDN, searchHelper );
+            final Map<String, List<String>> results = new HashMap<>( bigResults.get( entryDN ) );
+
+            final List<String> timestamps = results.remove( ChaiConstant.ATTR_EDIR_MODIFIED_TIMESTAMP );
+            final String modifyTimestamp = timestamps == null || timestamps.isEmpty() ? null : timestamps.get( 0 );
+            return new CachedPolicy( results, modifyTimestamp );
+        }
+
+        PasswordPolicyEvaluator getEvaluator( final NspmPasswordPolicyImpl policy )
+        {
+            PasswordPolicyEvaluator result = evaluator;
+            if ( result == null )
+            {
+                // concurrent first tests may each compile the policy, the evaluators are equivalent
+                result = PasswordPolicyEvaluator.compile( policy );
+                evaluator = result;
+            }
+            return result;
+        }
+    }
 }
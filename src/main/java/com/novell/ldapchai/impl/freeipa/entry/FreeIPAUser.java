@@ -27,6 +27,7 @@ import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.impl.AbstractChaiUser;
 import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.MembershipCache;
 
 import java.time.Instant;
 import java.util.Set;
@@ -110,6 +111,7 @@ class FreeIPAUser extends AbstractChaiUser implements ChaiUser
     {
         this.addAttribute( ChaiConstant.ATTR_LDAP_MEMBER_OF, theGroup.getEntryDN() );
         theGroup.addAttribute( ChaiConstant.ATTR_LDAP_MEMBER, this.getEntryDN() );
+        MembershipCache.groupModified( getChaiProvider(), theGroup.getEntryDN() );
     }
 
     @Override
@@ -118,6 +120,7 @@ class FreeIPAUser extends AbstractChaiUser implements ChaiUser
     {
         this.deleteAttribute( ChaiConstant.ATTR_LDAP_MEMBER_OF, theGroup.getEntryDN() );
         theGroup.deleteAttribute( ChaiConstant.ATTR_LDAP_MEMBER, this.getEntryDN() );
+        MembershipCache.groupModified( getChaiProvider(), theGroup.getEntryDN() );
     }
 
     @Override
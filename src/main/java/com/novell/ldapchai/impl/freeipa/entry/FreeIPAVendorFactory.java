@@ -19,6 +19,7 @@
 
 package com.novell.ldapchai.impl.freeipa.entry;
 
+import com.novell.ldapchai.ChaiConstant;
 import com.novell.ldapchai.ChaiEntry;
 import com.novell.ldapchai.ChaiGroup;
 import com.novell.ldapchai.ChaiUser;
@@ -125,4 +126,10 @@ public class FreeIPAVendorFactory implements VendorFactory
     {
         return true;
     }
+
+    @Override
+    public String getGroupMembershipAttribute()
+    {
+        return ChaiConstant.ATTR_LDAP_MEMBER_OF;
+    }
 }
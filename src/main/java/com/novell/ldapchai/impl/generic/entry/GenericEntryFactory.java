@@ -23,6 +23,7 @@ import com.novell.ldapchai.ChaiEntry;
 import com.novell.ldapchai.ChaiGroup;
 import com.novell.ldapchai.ChaiUser;
 import com.novell.ldapchai.exception.ErrorMap;
+import com.novell.ldapchai.impl.UserStatusEvaluator;
 import com.novell.ldapchai.impl.VendorFactory;
 import com.novell.ldapchai.impl.edir.EdirErrorMap;
 import com.novell.ldapchai.impl.edir.entry.EdirEntries;
@@ -97,4 +98,10 @@ public class GenericEntryFactory implements VendorFactory
     {
         return true;
     }
+
+    @Override
+    public UserStatusEvaluator getUserStatusEvaluator()
+    {
+        return UserStatusEvaluator.GENERIC;
+    }
 }
@@ -19,6 +19,7 @@
 
 package com.novell.ldapchai.impl.lldap;
 
+import com.novell.ldapchai.ChaiConstant;
 import com.novell.ldapchai.ChaiEntry;
 import com.novell.ldapchai.ChaiGroup;
 import com.novell.ldapchai.ChaiUser;
@@ -122,4 +123,10 @@ public class LldapVendorFactory implements VendorFactory
     {
         return true;
     }
+
+    @Override
+    public String getGroupMembershipAttribute()
+    {
+        return ChaiConstant.ATTR_LDAP_MEMBER_OF;
+    }
 }
@@ -26,6 +26,10 @@ import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.impl.AbstractChaiGroup;
 import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.MembershipCache;
+
+import java.util.Collections;
+import java.util.Set;
 
 class OpenLDAPGroup extends AbstractChaiGroup implements ChaiGroup
 {
@@ -39,6 +43,7 @@ class OpenLDAPGroup extends AbstractChaiGroup implements ChaiGroup
             throws ChaiUnavailableException, ChaiOperationException
     {
         this.addAttribute( ChaiConstant.ATTR_LDAP_MEMBER, theUser.getEntryDN() );
+        MembershipCache.groupModified( getChaiProvider(), getEntryDN() );
     }
 
     @Override
@@ -46,5 +51,12 @@ class OpenLDAPGroup extends AbstractChaiGroup implements ChaiGroup
             throws ChaiUnavailableException, ChaiOperationException
     {
         this.deleteAttribute( ChaiConstant.ATTR_LDAP_MEMBER, theUser.getEntryDN() );
+        MembershipCache.groupModified( getChaiProvider(), getEntryDN() );
+    }
+
+    @Override
+    protected Set<String> memberBackLinkAttributes()
+    {
+        return Collections.emptySet();
     }
 }
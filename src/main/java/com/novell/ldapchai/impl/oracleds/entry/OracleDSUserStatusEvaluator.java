@@ -0,0 +1,78 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.impl.oracleds.entry;
+
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.impl.UserStatusEvaluator;
+
+import java.time.Instant;
+
+/**
+ * Oracle Directory Server user status, equivalent to the status methods of {@link InetOrgPerson}.
+ */
+final class OracleDSUserStatusEvaluator extends UserStatusEvaluator
+{
+    static final OracleDSUserStatusEvaluator INSTANCE = new OracleDSUserStatusEvaluator();
+
+    private static final String ATTR_LAST_AUTH_TIME = "pwdLastAuthTime";
+    private static final String ATTR_PASSWORD_EXPIRATION_TIME = "passwordExpirationTime";
+    private static final String ATTR_PASSWORD_RESET = "pwdReset";
+    private static final String ATTR_PASSWORD_CHANGED_TIME = "pwdChangedTime";
+
+    private OracleDSUserStatusEvaluator()
+    {
+        super(
+                ChaiUser.ATTR_LOGIN_DISABLED,
+                ATTR_LAST_AUTH_TIME,
+                ATTR_PASSWORD_EXPIRATION_TIME,
+                ATTR_PASSWORD_RESET,
+                ATTR_PASSWORD_CHANGED_TIME );
+    }
+
+    @Override
+    protected boolean isPasswordExpired( final StatusValues values, final Instant passwordExpirationDate )
+    {
+        return passwordExpirationDate != null && values.getNow().isAfter( passwordExpirationDate )
+                || values.getBoolean( ATTR_PASSWORD_RESET );
+    }
+
+    @Override
+    protected Instant readPasswordExpirationDate( final StatusValues values )
+            throws ChaiUnavailableException
+    {
+        return values.getDate( ATTR_PASSWORD_EXPIRATION_TIME );
+    }
+
+    @Override
+    protected Instant readPasswordModificationDate( final StatusValues values )
+            throws ChaiUnavailableException
+    {
+        return values.getDate( ATTR_PASSWORD_CHANGED_TIME );
+    }
+
+    @Override
+    protected Instant readLastLoginTime( final StatusValues values )
+            throws ChaiUnavailableException
+    {
+        return values.getDate( ATTR_LAST_AUTH_TIME );
+    }
+}
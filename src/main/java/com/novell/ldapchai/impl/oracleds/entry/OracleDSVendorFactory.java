@@ -19,6 +19,7 @@
 
 package com.novell.ldapchai.impl.oracleds.entry;
 
+import com.novell.ldapchai.impl.UserStatusEvaluator;
 import com.novell.ldapchai.impl.VendorFactory;
 import com.novell.ldapchai.exception.ErrorMap;
 import com.novell.ldapchai.provider.ChaiProvider;
@@ -105,4 +106,10 @@ public class OracleDSVendorFactory implements VendorFactory
     {
         return true;
     }
+
+    @Override
+    public UserStatusEvaluator getUserStatusEvaluator()
+    {
+        return OracleDSUserStatusEvaluator.INSTANCE;
+    }
 }
@@ -33,7 +33,14 @@ import com.novell.ldapchai.util.internal.ChaiLogger;
 import javax.naming.ldap.ExtendedRequest;
 import javax.naming.ldap.ExtendedResponse;
 import javax.net.ssl.X509TrustManager;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -53,6 +60,7 @@ abstract class AbstractProvider implements ChaiProvider, ChaiProviderImplementor
 
     private final Map<String, Object> cacheFailureMap = new HashMap<>();
     private DirectoryVendor cachedDirectoryVendor;
+    private volatile ServerCapabilities cachedServerCapabilities;
 
     private static final AtomicInteger ID_COUNTER = new AtomicInteger( 0 );
     private final int counter = ID_COUNTER.getAndIncrement();
@@ -286,6 +294,16 @@ abstract class AbstractProvider implements ChaiProvider, ChaiProviderImplementor
             }
         }
 
+        @Override
+        public final void deleteStringAttributeValues( final String entryDN, final String attributeName, final Set<String> values )
+        {
+            deleteStringAttributeValue( entryDN, attributeName, null );
+            if ( values == null )
+            {
+                throw new NullPointerException( "values must not be null" );
+            }
+        }
+
         @Override
         public final ExtendedResponse extendedOperation( final ExtendedRequest request )
         {
@@ -322,6 +340,20 @@ abstract class AbstractProvider implements ChaiProvider, ChaiProviderImplementor
             return null;
         }
 
+        @Override
+        public final List<ByteBuffer> readMultiByteBufferAttribute( final String entryDN, final String attributeName )
+        {
+            readMultiByteAttribute( entryDN, attributeName );
+            return null;
+        }
+
+        @Override
+        public final InputStream readByteStreamAttribute( final String entryDN, final String attributeName )
+        {
+            readMultiByteAttribute( entryDN, attributeName );
+            return null;
+        }
+
         @Override
         public final Set<String> readMultiStringAttribute( final String entryDN, final String attributeName )
         {
@@ -337,6 +369,17 @@ abstract class AbstractProvider implements ChaiProvider, ChaiProviderImplementor
             return null;
         }
 
+        @Override
+        public final AttributeValueRange readMultiStringAttributeRange( final String entryDN, final String attributeName, final int startIndex )
+        {
+            readMultiStringAttribute( entryDN, attributeName );
+            if ( startIndex < 0 )
+            {
+                throw new IllegalArgumentException( "startIndex must not be negative" );
+            }
+            return null;
+        }
+
         @Override
         public final String readStringAttribute( final String entryDN, final String attributeName )
         {
@@ -431,6 +474,37 @@ abstract class AbstractProvider implements ChaiProvider, ChaiProviderImplementor
             return null;
         }
 
+        @Override
+        public final CompactSearchResult searchCompact( final String baseDN, final SearchHelper searchHelper )
+        {
+            if ( baseDN == null )
+            {
+                throw new NullPointerException( "baseDN must not be null" );
+            }
+            if ( searchHelper == null )
+            {
+                throw new NullPointerException( "searchHelper must not be null" );
+            }
+            return null;
+        }
+
+        @Override
+        public final Map<String, Map<String, byte[][]>> searchMultiByteValues( final String baseDN, final SearchHelper searchHelper )
+        {
+            searchCompact( baseDN, searchHelper );
+            return null;
+        }
+
+        @Override
+        public final void searchStream( final String baseDN, final SearchHelper searchHelper, final SearchResultHandler resultHandler )
+        {
+            searchCompact( baseDN, searchHelper );
+            if ( resultHandler == null )
+            {
+                throw new NullPointerException( "resultHandler must not be null" );
+            }
+        }
+
         @Override
         public final Map<String, Map<String, List<String>>> searchMultiValues(
                 final String baseDN, final String filter,
@@ -539,6 +613,13 @@ abstract class AbstractProvider implements ChaiProvider, ChaiProviderImplementor
             return null;
         }
 
+        @Override
+        public AttributeSchema getAttributeSchema()
+                throws ChaiUnavailableException
+        {
+            return null;
+        }
+
         @Override
         public void replaceBinaryAttribute(
                 final String entryDN,
@@ -582,7 +663,7 @@ abstract class AbstractProvider implements ChaiProvider, ChaiProviderImplementor
     protected void preCheckExtendedOperation( final ExtendedRequest request )
             throws ChaiOperationException
     {
-        final boolean cacheFailures = "true".equalsIgnoreCase( this.getChaiConfiguration().getSetting( ChaiSetting.EXTENDED_OPERATION_FAILURE_CACHE ) );
+        final boolean cacheFailures = this.getChaiConfiguration().getBooleanSetting( ChaiSetting.EXTENDED_OPERATION_FAILURE_CACHE );
         if ( cacheFailures )
         {
             final String requestID = request.getID();
@@ -591,6 +672,12 @@ abstract class AbstractProvider implements ChaiProvider, ChaiProviderImplementor
                 LOGGER.debug( () -> "previous extended operation request for " + requestID + " has failed, reissuing cached exception without attempting operation" );
                 throw ( ChaiOperationException ) cacheFailureMap.get( requestID );
             }
+
+            if ( getProviderFactory().getCentralService().getServerCapabilityCache().isExtendedOperationUnsupported( chaiConfig, requestID ) )
+            {
+                LOGGER.debug( () -> "extended operation request for " + requestID + " is not supported by server, failing without attempting operation" );
+                throw new ChaiOperationException( "extended operation " + requestID + " is not supported by server", ChaiError.UNSUPPORTED_OPERATION );
+            }
         }
     }
 
@@ -605,6 +692,7 @@ abstract class AbstractProvider implements ChaiProvider, ChaiProviderImplementor
             {
                 final String requestID = request.getID();
                 cacheFailureMap.put( requestID, opExcep );
+                getProviderFactory().getCentralService().getServerCapabilityCache().addUnsupportedExtendedOperation( chaiConfig, requestID );
                 LOGGER.trace( () -> "caching extended operation for " + requestID );
                 throw opExcep;
             }
@@ -620,35 +708,166 @@ abstract class AbstractProvider implements ChaiProvider, ChaiProviderImplementor
             return cachedDirectoryVendor;
         }
 
-        {
-            final DirectoryVendor centralCachedVendor = getProviderFactory().getCentralService().getVendorCache( this.chaiConfig );
-            if ( centralCachedVendor != null )
-            {
-                return centralCachedVendor;
-            }
-        }
-
         final Optional<DirectoryVendor> optionalDefaultVendor = getChaiConfiguration().getDefaultVendor();
         if ( optionalDefaultVendor.isPresent() )
         {
             cachedDirectoryVendor = optionalDefaultVendor.get();
+            return cachedDirectoryVendor;
         }
-        else
+
+        try
         {
-            try
-            {
-                final ChaiEntry rootDseEntry = ChaiUtility.getRootDSE( this );
-                cachedDirectoryVendor = ChaiUtility.determineDirectoryVendor( rootDseEntry );
-            }
-            catch ( ChaiOperationException e )
+            cachedDirectoryVendor = getServerCapabilities().getVendor();
+        }
+        catch ( ChaiOperationException e )
+        {
+            LOGGER.warn( () -> "error while attempting to determine directory vendor: " + e.getMessage(), e );
+            return DirectoryVendor.GENERIC;
+        }
+
+        return cachedDirectoryVendor;
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    public List<ByteBuffer> readMultiByteBufferAttribute( final String entryDN, final String attribute )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        final byte[][] values = readMultiByteAttribute( entryDN, attribute );
+        if ( values == null || values.length == 0 )
+        {
+            return Collections.emptyList();
+        }
+
+        final List<ByteBuffer> buffers = new ArrayList<>( values.length );
+        for ( final byte[] value : values )
+        {
+            buffers.add( ByteBuffer.wrap( value ).asReadOnlyBuffer() );
+        }
+        return Collections.unmodifiableList( buffers );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    public AttributeValueRange readMultiStringAttributeRange( final String entryDN, final String attribute, final int startIndex )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        getInputValidator().readMultiStringAttributeRange( entryDN, attribute, startIndex );
+
+        final Set<String> allValues = readMultiStringAttribute( entryDN, attribute );
+        final List<String> values = allValues == null ? Collections.emptyList() : new ArrayList<>( allValues );
+        return AttributeValueRange.completeRange( values.subList( Math.min( startIndex, values.size() ), values.size() ), startIndex );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    public InputStream readByteStreamAttribute( final String entryDN, final String attribute )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        // only the first value is returned, see ChaiProvider#readByteStreamAttribute
+        final byte[][] values = readMultiByteAttribute( entryDN, attribute );
+        if ( values == null || values.length == 0 )
+        {
+            return null;
+        }
+        return new ByteArrayInputStream( values[0] );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.SearchOperation
+    public CompactSearchResult searchCompact( final String baseDN, final SearchHelper searchHelper )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        return CompactSearchResult.fromMap( searchMultiValues( baseDN, searchHelper ) );
+    }
+
+    /**
+     * Test if searches should use the simple paged results control, according to
+     * {@link ChaiSetting#LDAP_SEARCH_PAGING_ENABLE}.
+     *
+     * @return true if searches should be paged
+     * @throws ChaiUnavailableException If the server capabilities can not be read
+     * @throws ChaiOperationException   If the server capabilities can not be read
+     */
+    protected boolean supportsSearchResultPaging()
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        final String enableSettingStr = this.getChaiConfiguration().getSetting( ChaiSetting.LDAP_SEARCH_PAGING_ENABLE );
+        if ( "auto".equalsIgnoreCase( enableSettingStr ) )
+        {
+            return getServerCapabilities().isPagingSupported();
+        }
+        return Boolean.parseBoolean( enableSettingStr );
+    }
+
+    @Override
+    public AttributeSchema getAttributeSchema()
+            throws ChaiUnavailableException
+    {
+        final AttributeSchemaCache attributeSchemaCache = getProviderFactory().getCentralService().getAttributeSchemaCache();
+        final AttributeSchema cachedSchema = attributeSchemaCache.get( this.chaiConfig );
+        if ( cachedSchema != null )
+        {
+            return cachedSchema;
+        }
+
+        AttributeSchema attributeSchema = AttributeSchema.EMPTY;
+        try
+        {
+            final String subschemaSubentry = getServerCapabilities().getSubschemaSubentry();
+            if ( subschemaSubentry != null && !subschemaSubentry.isEmpty() )
             {
-                LOGGER.warn( () -> "error while attempting to determine directory vendor: " + e.getMessage(), e );
-                return DirectoryVendor.GENERIC;
+                final Instant startTime = Instant.now();
+                attributeSchema = AttributeSchema.fromAttributeTypes( readMultiStringAttribute( subschemaSubentry, "attributeTypes" ) );
+                final int definitionCount = attributeSchema.getAttributeTypes().size();
+                LOGGER.trace( () -> "read " + definitionCount + " attribute type definitions from " + subschemaSubentry,
+                        Duration.between( startTime, Instant.now() ) );
             }
         }
+        catch ( ChaiOperationException e )
+        {
+            LOGGER.debug( () -> "unable to read attribute schema from subschema subentry: " + e.getMessage() );
+        }
 
-        getProviderFactory().getCentralService().addVendorCache( this.chaiConfig, cachedDirectoryVendor );
-        return cachedDirectoryVendor;
+        attributeSchemaCache.put( this.chaiConfig, attributeSchema );
+        return attributeSchema;
+    }
+
+    /**
+     * Get the capabilities of the connected server.  Capabilities are shared with other providers of the same
+     * {@link ChaiProviderFactory} and are only read from the rootDSE if not already cached.
+     *
+     * @return the server capabilities, never null.
+     * @throws ChaiUnavailableException If the directory is unreachable
+     * @throws ChaiOperationException If there is an error reading the rootDSE
+     */
+    ServerCapabilities getServerCapabilities()
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        if ( cachedServerCapabilities != null )
+        {
+            return cachedServerCapabilities;
+        }
+
+        final ServerCapabilityCache serverCapabilityCache = getProviderFactory().getCentralService().getServerCapabilityCache();
+        final ServerCapabilities centralCapabilities = serverCapabilityCache.get( this.chaiConfig );
+        if ( centralCapabilities != null && centralCapabilities.isRootDseRead() )
+        {
+            cachedServerCapabilities = centralCapabilities;
+            return centralCapabilities;
+        }
+
+        final Instant startTime = Instant.now();
+        final ChaiEntry rootDseEntry = ChaiUtility.getRootDSE( this );
+        final ServerCapabilities serverCapabilities = ServerCapabilities.readFromRootDSE(
+                rootDseEntry,
+                centralCapabilities == null ? Collections.emptySet() : centralCapabilities.getUnsupportedExtendedOperations() );
+        LOGGER.trace( () -> "read server capabilities from rootDSE, vendor=" + serverCapabilities.getVendor(), Duration.between( startTime, Instant.now() ) );
+
+        serverCapabilityCache.put( this.chaiConfig, serverCapabilities );
+        cachedServerCapabilities = serverCapabilities;
+        return serverCapabilities;
     }
 
     @Override
@@ -51,7 +51,7 @@ abstract class AbstractWrapper implements InvocationHandler
             throws Exception
     {
         //check to make sure watchdog ise enabled;
-        final boolean isEnabled = Boolean.parseBoolean( chaiProvider.getChaiConfiguration().getSetting( enableSetting ) );
+        final boolean isEnabled = chaiProvider.getChaiConfiguration().getBooleanSetting( enableSetting );
         if ( !isEnabled )
         {
             final String errorStr = "attempt to obtain " + wrapperClass.getName() + " wrapper when not enabled in chaiConfiguration";
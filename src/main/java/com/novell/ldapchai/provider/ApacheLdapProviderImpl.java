@@ -25,6 +25,7 @@ import com.novell.ldapchai.exception.ChaiError;
 import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.util.internal.ChaiLogger;
+import com.novell.ldapchai.util.LdapAttributeMap;
 import com.novell.ldapchai.util.SearchHelper;
 import org.apache.directory.api.ldap.model.cursor.CursorException;
 import org.apache.directory.api.ldap.model.cursor.EntryCursor;
@@ -56,6 +57,9 @@ import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
 import org.apache.directory.api.ldap.model.message.ResultResponse;
 import org.apache.directory.api.ldap.model.message.SearchRequest;
 import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.controls.PagedResults;
+import org.apache.directory.api.ldap.model.message.controls.PagedResultsImpl;
 import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.api.ldap.model.name.Rdn;
 import org.apache.directory.ldap.client.api.LdapConnection;
@@ -70,7 +74,6 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -160,31 +163,14 @@ public class ApacheLdapProviderImpl extends AbstractProvider implements ChaiProv
         if ( ldapURL.getScheme().equalsIgnoreCase( "ldaps" ) )
         {
             ldapConnectionConfig.setUseSsl( true );
-            final boolean usePromiscuousSSL = Boolean.parseBoolean( chaiConfig.getSetting( ChaiSetting.PROMISCUOUS_SSL ) );
-            if ( usePromiscuousSSL )
+
+            // the apache api creates its own ssl context per connection, so only the trust managers and random source are shared.
+            final X509TrustManager[] trustManagers = TlsContextCache.effectiveTrustManagers( chaiConfig );
+            if ( trustManagers != null )
             {
-                try
-                {
-                    final PromiscuousTrustManager promiscuousTrustManager = new PromiscuousTrustManager();
-                    ldapConnectionConfig.setTrustManagers( promiscuousTrustManager );
-                }
-                catch ( Exception e )
-                {
-                    LOGGER.error( () -> "error creating promiscuous ssl ldap socket factory: " + e.getMessage() );
-                }
-            }
-            else if ( chaiConfig.getTrustManager() != null )
-            {
-                try
-                {
-                    final X509TrustManager[] trustManager = chaiConfig.getTrustManager();
-                    ldapConnectionConfig.setTrustManagers( trustManager );
-                }
-                catch ( Exception e )
-                {
-                    LOGGER.error( () -> "error creating configured ssl ldap socket factory: " + e.getMessage() );
-                }
+                ldapConnectionConfig.setTrustManagers( trustManagers );
             }
+            ldapConnectionConfig.setSecureRandom( TlsContextCache.secureRandom( providerFactory ) );
         }
 
         final LdapConnection newConnection;
@@ -375,6 +361,35 @@ public class ApacheLdapProviderImpl extends AbstractProvider implements ChaiProv
         }
     }
 
+    @Override
+    public void deleteStringAttributeValues( final String entryDN, final String attributeName, final Set<String> values )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().deleteStringAttributeValues( entryDN, attributeName, values );
+
+        if ( values.isEmpty() )
+        {
+            return;
+        }
+
+        try
+        {
+            final ModifyRequest modifyRequest = new ModifyRequestImpl();
+            modifyRequest.setName( new Dn( entryDN ) );
+            modifyRequest.addModification( new DefaultModification(
+                    ModificationOperation.REMOVE_ATTRIBUTE,
+                    attributeName,
+                    values.toArray( new String[0] ) ) );
+            final ModifyResponse response = connection.modify( modifyRequest );
+            processResponse( response );
+        }
+        catch ( LdapException e )
+        {
+            throw ChaiOperationException.forErrorMessage( e.getMessage(), e );
+        }
+    }
+
     @Override
     public ExtendedResponse extendedOperation( final ExtendedRequest request )
             throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
@@ -536,17 +551,56 @@ public class ApacheLdapProviderImpl extends AbstractProvider implements ChaiProv
         activityPreCheck();
         getInputValidator().readStringAttribute( entryDN, attribute );
 
-        final List<Value> values = readMultiAttribute( entryDN, attribute );
-        if ( values == null )
+        final Set<String> returnSet = new LinkedHashSet<>();
+        RangedAttributeRetrieval.readAll( requestedAttribute -> readReturnedAttributes( entryDN, requestedAttribute ), attribute, returnSet );
+        return Collections.unmodifiableSet( returnSet );
+    }
+
+    @Override
+    public AttributeValueRange readMultiStringAttributeRange( final String entryDN, final String attribute, final int startIndex )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().readMultiStringAttributeRange( entryDN, attribute, startIndex );
+
+        return RangedAttributeRetrieval.readRange( requestedAttribute -> readReturnedAttributes( entryDN, requestedAttribute ), attribute, startIndex );
+    }
+
+    /**
+     * Read a single attribute, returning the values keyed by the attribute description returned by the server,
+     * which includes any range option.
+     */
+    private Map<String, List<String>> readReturnedAttributes( final String entryDN, final String requestedAttribute )
+            throws ChaiOperationException
+    {
+        try
         {
-            return Collections.emptySet();
+            final EntryCursor entries = connection.search(
+                    entryDN,
+                    ChaiConstant.FILTER_OBJECTCLASS_ANY,
+                    org.apache.directory.api.ldap.model.message.SearchScope.OBJECT,
+                    requestedAttribute
+            );
+            final Entry entry = entries.iterator().next();
+            final Map<String, List<String>> returnedAttributes = new LinkedHashMap<>();
+            for ( final Attribute attr : entry.getAttributes() )
+            {
+                final List<String> values = new ArrayList<>( attr.size() );
+                for ( final Value value : attr )
+                {
+                    if ( value != null )
+                    {
+                        values.add( value.getString() );
+                    }
+                }
+                returnedAttributes.put( attr.getUpId(), values );
+            }
+            return returnedAttributes;
         }
-        final Set<String> returnSet = new LinkedHashSet<>();
-        for ( final Value value : values )
+        catch ( LdapException e )
         {
-            returnSet.add( value.getString() );
+            throw ChaiOperationException.forErrorMessage( e.getMessage(), e );
         }
-        return Collections.unmodifiableSet( returnSet );
     }
 
     private List<Value> readMultiAttribute( final String entryDN, final String attribute )
@@ -627,7 +681,7 @@ public class ApacheLdapProviderImpl extends AbstractProvider implements ChaiProv
             );
             final Entry entry = entries.iterator().next();
             final Collection<Attribute> attrs = entry.getAttributes();
-            final Map<String, String> returnMap = new LinkedHashMap<>();
+            final Map<String, String> returnMap = new LdapAttributeMap<>( attrs.size() );
             for ( final Attribute attr : attrs )
             {
                 final String name = attr.getId();
@@ -695,7 +749,7 @@ public class ApacheLdapProviderImpl extends AbstractProvider implements ChaiProv
         {
             final String dn = resultEntry.getKey();
             final Map<String, List<String>> entryMap = resultEntry.getValue();
-            final Map<String, String> newEntryMap = new LinkedHashMap<>();
+            final Map<String, String> newEntryMap = new LdapAttributeMap<>( entryMap.size() );
             for ( final Map.Entry<String, List<String>> attributeEntry : entryMap.entrySet() )
             {
                 final String attr = attributeEntry.getKey();
@@ -757,6 +811,162 @@ public class ApacheLdapProviderImpl extends AbstractProvider implements ChaiProv
         return searchImpl( baseDN, searchHelper, true );
     }
 
+    @Override
+    public void searchStream( final String baseDN, final SearchHelper searchHelper, final SearchResultHandler resultHandler )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().searchStream( baseDN, searchHelper, resultHandler );
+
+        searchPaged( baseDN, searchHelper, entry ->
+        {
+            final Map<String, List<String>> entryMap = new LdapAttributeMap<>( entry.size() );
+            for ( final Attribute returnAttr : entry )
+            {
+                final List<String> valueList = new ArrayList<>( returnAttr.size() );
+                for ( final Value value : returnAttr )
+                {
+                    valueList.add( value.getString() );
+                }
+                entryMap.put( returnAttr.getId(), Collections.unmodifiableList( valueList ) );
+            }
+            resultHandler.handleEntry( entry.getDn().getName(), Collections.unmodifiableMap( entryMap ) );
+            return true;
+        } );
+    }
+
+    @Override
+    public Map<String, Map<String, byte[][]>> searchMultiByteValues( final String baseDN, final SearchHelper searchHelper )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().searchMultiByteValues( baseDN, searchHelper );
+
+        final Map<String, Map<String, byte[][]>> results = new LinkedHashMap<>();
+        searchPaged( baseDN, searchHelper, entry ->
+        {
+            final Map<String, byte[][]> entryMap = new LdapAttributeMap<>( entry.size() );
+            for ( final Attribute returnAttr : entry )
+            {
+                final byte[][] values = new byte[returnAttr.size()][];
+                int index = 0;
+                for ( final Value value : returnAttr )
+                {
+                    values[index++] = value.getBytes();
+                }
+                entryMap.put( returnAttr.getId(), values );
+            }
+            return results.putIfAbsent( entry.getDn().getName(), Collections.unmodifiableMap( entryMap ) ) == null;
+        } );
+        return Collections.unmodifiableMap( results );
+    }
+
+    /**
+     * Search using the simple paged results control, passing each entry to the handler as it is read.  Only one
+     * page of entries is requested from the server at a time.  Values are decoded by the handler, so the same
+     * search serves string and binary results.
+     */
+    private void searchPaged( final String baseDN, final SearchHelper searchHelper, final EntryHandler entryHandler )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        final int maxResults = searchHelper.getMaxResults();
+        final int pageSize = getChaiConfiguration().getIntSetting( ChaiSetting.LDAP_SEARCH_PAGING_SIZE );
+
+        // enable paging if the search count is unlimited (0) or bigger than the page size.
+        final boolean pagingEnabled = ( maxResults == 0 || maxResults > pageSize ) && supportsSearchResultPaging();
+
+        int resultCount = 0;
+        byte[] pageCookie = null;
+        try
+        {
+            do
+            {
+                final SearchRequest searchRequest = new SearchRequestImpl();
+                searchRequest.setBase( new Dn( baseDN == null ? "" : baseDN ) );
+                searchRequest.setFilter( searchHelper.getFilter() );
+                searchRequest.setScope( figureSearchScope( searchHelper.getSearchScope() ) );
+                searchRequest.setSizeLimit( maxResults );
+                searchRequest.setTimeLimit( searchHelper.getTimeLimit() );
+                if ( searchHelper.getAttributes() != null )
+                {
+                    searchRequest.addAttributes( searchHelper.getAttributes().toArray( new String[0] ) );
+                }
+                if ( pagingEnabled )
+                {
+                    final PagedResults pagedResults = new PagedResultsImpl();
+                    pagedResults.setSize( pageSize );
+                    pagedResults.setCookie( pageCookie == null ? new byte[0] : pageCookie );
+                    pagedResults.setCritical( pageCookie != null );
+                    searchRequest.addControl( pagedResults );
+                }
+
+                try ( SearchCursor searchCursor = connection.search( searchRequest ) )
+                {
+                    while ( searchCursor.next() )
+                    {
+                        if ( !searchCursor.isEntry() )
+                        {
+                            continue;
+                        }
+
+                        final Entry entry = searchCursor.getEntry();
+                        if ( entryHandler.accept( entry ) )
+                        {
+                            resultCount++;
+                        }
+                        else
+                        {
+                            LOGGER.warn( () -> "ignoring duplicate DN in search result from ldap server: " + entry.getDn().getName() );
+                        }
+                        if ( maxResults > 0 && resultCount >= maxResults )
+                        {
+                            return;
+                        }
+                    }
+
+                    final SearchResultDone searchResultDone = searchCursor.getSearchResultDone();
+                    final ResultCodeEnum resultCode = searchResultDone == null ? ResultCodeEnum.SUCCESS : searchResultDone.getLdapResult().getResultCode();
+                    if ( resultCode == ResultCodeEnum.SIZE_LIMIT_EXCEEDED || resultCode == ResultCodeEnum.TIME_LIMIT_EXCEEDED )
+                    {
+                        return;
+                    }
+                    if ( searchResultDone != null )
+                    {
+                        processResponse( searchResultDone );
+                    }
+                    pageCookie = pagingEnabled ? readPageCookie( searchResultDone ) : null;
+                }
+            }
+            while ( pageCookie != null );
+        }
+        catch ( final CursorException | LdapException | IOException e )
+        {
+            throw ChaiOperationException.forErrorMessage( e.getMessage(), e );
+        }
+    }
+
+    private static byte[] readPageCookie( final SearchResultDone searchResultDone )
+    {
+        final Control control = searchResultDone == null ? null : searchResultDone.getControl( PagedResults.OID );
+        if ( control instanceof PagedResults )
+        {
+            final byte[] cookie = ( ( PagedResults ) control ).getCookie();
+            return cookie == null || cookie.length == 0 ? null : cookie;
+        }
+        return null;
+    }
+
+    private interface EntryHandler
+    {
+        /**
+         * Accept a search result entry.
+         *
+         * @return false if the entry DN is a duplicate and has been ignored.
+         */
+        boolean accept( Entry entry )
+                throws ChaiOperationException, ChaiUnavailableException;
+    }
+
     private Map<String, Map<String, List<String>>> searchImpl( final String baseDN, final SearchHelper searchHelper, final boolean multivalued )
             throws ChaiUnavailableException, ChaiOperationException
     {
@@ -777,7 +987,7 @@ public class ApacheLdapProviderImpl extends AbstractProvider implements ChaiProv
             {
                 final Entry entry = searchCursor.getEntry();
                 final String dnValue = entry.getDn().getName();
-                final Map<String, List<String>> entryMap = new HashMap<>();
+                final Map<String, List<String>> entryMap = new LdapAttributeMap<>( entry.size() );
                 for ( Attribute returnAttr : entry )
                 {
                     final String attrName = returnAttr.getId();
@@ -0,0 +1,229 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.util.internal.ChaiLogger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable collection of {@link AttributeTypeDefinition}s read from a server's subschema subentry.
+ *
+ * <p>Definitions may be looked up by any of their names or by OID.  Lookups are case-insensitive and
+ * ignore attribute options, so {@code userCertificate;binary} resolves to the definition of {@code userCertificate}.</p>
+ *
+ * <p>An empty schema is returned if the subschema subentry can not be read, in which case all lookups
+ * return {@link Optional#empty()}.</p>
+ *
+ * @see ChaiProvider#getAttributeSchema()
+ */
+public final class AttributeSchema
+{
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger( AttributeSchema.class );
+
+    private static final int MAX_SUPERIOR_DEPTH = 10;
+
+    private static final String BINARY_OPTION = "binary";
+
+    static final AttributeSchema EMPTY = new AttributeSchema( Collections.emptyList() );
+
+    private final Map<String, AttributeTypeDefinition> definitionsByName;
+
+    private final Set<String> binaryAttributeNames;
+
+    private AttributeSchema( final Collection<AttributeTypeDefinition> declaredDefinitions )
+    {
+        final Map<String, AttributeTypeDefinition> declaredByName = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+        for ( final AttributeTypeDefinition definition : declaredDefinitions )
+        {
+            declaredByName.put( definition.getOid(), definition );
+            for ( final String name : definition.getNames() )
+            {
+                declaredByName.put( name, definition );
+            }
+        }
+
+        final Map<String, AttributeTypeDefinition> resolvedByName = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+        final Set<String> binaryNames = new LinkedHashSet<>();
+        for ( final AttributeTypeDefinition definition : declaredDefinitions )
+        {
+            final AttributeTypeDefinition resolved = resolveSuperiors( definition, declaredByName );
+            resolvedByName.put( resolved.getOid(), resolved );
+            for ( final String name : resolved.getNames() )
+            {
+                resolvedByName.put( name, resolved );
+            }
+            if ( resolved.isBinary() )
+            {
+                binaryNames.addAll( resolved.getNames() );
+            }
+        }
+
+        this.definitionsByName = Collections.unmodifiableMap( resolvedByName );
+        this.binaryAttributeNames = Collections.unmodifiableSet( binaryNames );
+    }
+
+    /**
+     * Create a schema from {@code attributeTypes} values of a subschema subentry.  Values that can not
+     * be parsed are logged and ignored.
+     *
+     * @param attributeTypeValues RFC 4512 attribute type descriptions
+     * @return a new schema instance
+     */
+    public static AttributeSchema fromAttributeTypes( final Collection<String> attributeTypeValues )
+    {
+        final List<AttributeTypeDefinition> definitions = new ArrayList<>( attributeTypeValues.size() );
+        for ( final String value : attributeTypeValues )
+        {
+            try
+            {
+                definitions.add( AttributeTypeDefinition.parse( value ) );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                LOGGER.debug( () -> "ignoring unparseable attribute type definition: " + e.getMessage() );
+            }
+        }
+        return new AttributeSchema( definitions );
+    }
+
+    /**
+     * Get the definition of an attribute type.
+     *
+     * @param attributeName attribute name or OID, optionally including attribute options
+     * @return the definition, or empty if the attribute type is unknown.
+     */
+    public Optional<AttributeTypeDefinition> getAttributeType( final String attributeName )
+    {
+        if ( attributeName == null )
+        {
+            return Optional.empty();
+        }
+        return Optional.ofNullable( definitionsByName.get( stripOptions( attributeName ) ) );
+    }
+
+    /**
+     * Indicates if the values of an attribute are binary, either because of the attribute syntax or because
+     * the attribute description includes the {@code binary} option.
+     *
+     * @param attributeName attribute name or OID, optionally including attribute options
+     * @return true if the attribute is known to be binary.
+     */
+    public boolean isBinary( final String attributeName )
+    {
+        if ( attributeName == null )
+        {
+            return false;
+        }
+        if ( hasBinaryOption( attributeName ) )
+        {
+            return true;
+        }
+        final AttributeTypeDefinition definition = definitionsByName.get( stripOptions( attributeName ) );
+        return definition != null && definition.isBinary();
+    }
+
+    /**
+     * Get the names of all attribute types with a binary syntax.
+     *
+     * @return an unmodifiable set of attribute names.
+     */
+    public Set<String> getBinaryAttributeNames()
+    {
+        return binaryAttributeNames;
+    }
+
+    /**
+     * Get all known attribute type definitions.
+     *
+     * @return an unmodifiable collection of definitions, each definition is included once.
+     */
+    public Collection<AttributeTypeDefinition> getAttributeTypes()
+    {
+        final Map<String, AttributeTypeDefinition> byOid = new LinkedHashMap<>();
+        for ( final AttributeTypeDefinition definition : definitionsByName.values() )
+        {
+            byOid.put( definition.getOid(), definition );
+        }
+        return Collections.unmodifiableCollection( byOid.values() );
+    }
+
+    public boolean isEmpty()
+    {
+        return definitionsByName.isEmpty();
+    }
+
+    private static AttributeTypeDefinition resolveSuperiors(
+            final AttributeTypeDefinition definition,
+            final Map<String, AttributeTypeDefinition> declaredByName
+    )
+    {
+        AttributeTypeDefinition resolved = definition;
+        AttributeTypeDefinition current = definition;
+        int depth = 0;
+        while ( current.getSuperiorType() != null && depth < MAX_SUPERIOR_DEPTH )
+        {
+            final AttributeTypeDefinition superior = declaredByName.get( current.getSuperiorType() );
+            if ( superior == null )
+            {
+                break;
+            }
+            resolved = resolved.inheritFrom( superior );
+            current = superior;
+            depth++;
+        }
+        return resolved;
+    }
+
+    private static String stripOptions( final String attributeName )
+    {
+        final int optionIndex = attributeName.indexOf( ';' );
+        return optionIndex > 0 ? attributeName.substring( 0, optionIndex ) : attributeName;
+    }
+
+    private static boolean hasBinaryOption( final String attributeName )
+    {
+        int optionIndex = attributeName.indexOf( ';' );
+        while ( optionIndex > 0 )
+        {
+            final int nextIndex = attributeName.indexOf( ';', optionIndex + 1 );
+            final String option = nextIndex > 0
+                    ? attributeName.substring( optionIndex + 1, nextIndex )
+                    : attributeName.substring( optionIndex + 1 );
+            if ( BINARY_OPTION.equals( option.toLowerCase( Locale.ROOT ) ) )
+            {
+                return true;
+            }
+            optionIndex = nextIndex;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.provider;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Factory level cache of {@link AttributeSchema} instances, keyed by server URL.
+ *
+ * @see ChaiProviderFactorySetting#SCHEMA_CACHE_MAX_AGE_MS
+ */
+class AttributeSchemaCache
+{
+    private static final int MAX_CACHE_SIZE = 100;
+
+    private final Map<String, SchemaCacheInfo> schemaMap = new ConcurrentHashMap<>();
+
+    private final int maxAgeMs;
+
+    AttributeSchemaCache( final ChaiProviderFactory chaiProviderFactory )
+    {
+        maxAgeMs = Integer.parseInt( chaiProviderFactory.getChaiProviderFactorySettings().getOrDefault(
+                ChaiProviderFactorySetting.SCHEMA_CACHE_MAX_AGE_MS,
+                ChaiProviderFactorySetting.SCHEMA_CACHE_MAX_AGE_MS.getDefaultValue() ) );
+    }
+
+    AttributeSchema get( final ChaiConfiguration chaiConfiguration )
+    {
+        if ( maxAgeMs <= 0 )
+        {
+            return null;
+        }
+
+        final String cacheKey = ServerCapabilityCache.cacheKey( chaiConfiguration );
+        final SchemaCacheInfo schemaCacheInfo = schemaMap.get( cacheKey );
+        if ( schemaCacheInfo != null )
+        {
+            if ( schemaCacheInfo.getTimestamp().plusMillis( maxAgeMs ).isBefore( Instant.now() ) )
+            {
+                schemaMap.remove( cacheKey, schemaCacheInfo );
+            }
+            else
+            {
+                return schemaCacheInfo.getAttributeSchema();
+            }
+        }
+        return null;
+    }
+
+    void put( final ChaiConfiguration chaiConfiguration, final AttributeSchema attributeSchema )
+    {
+        if ( maxAgeMs <= 0 )
+        {
+            return;
+        }
+
+        // safety check
+        if ( schemaMap.size() >= MAX_CACHE_SIZE )
+        {
+            schemaMap.clear();
+        }
+
+        schemaMap.put( ServerCapabilityCache.cacheKey( chaiConfiguration ), new SchemaCacheInfo( Instant.now(), attributeSchema ) );
+    }
+
+    private static class SchemaCacheInfo
+    {
+        private final Instant timestamp;
+        private final AttributeSchema attributeSchema;
+
+        SchemaCacheInfo( final Instant timestamp, final AttributeSchema attributeSchema )
+        {
+            this.timestamp = timestamp;
+            this.attributeSchema = attributeSchema;
+        }
+
+        Instant getTimestamp()
+        {
+            return timestamp;
+        }
+
+        AttributeSchema getAttributeSchema()
+        {
+            return attributeSchema;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.provider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Immutable definition of an LDAP attribute type, as published by a server's subschema subentry.
+ *
+ * <p>Definitions are parsed from RFC 4512 {@code AttributeTypeDescription} values, for example:</p>
+ *
+ * <pre>
+ * ( 2.5.4.3 NAME ( 'cn' 'commonName' ) SUP name EQUALITY caseIgnoreMatch SYNTAX 1.3.6.1.4.1.1466.115.121.1.15{64} )
+ * </pre>
+ *
+ * <p>Values not declared directly by the definition, such as the syntax of an attribute derived from a superior
+ * type, are resolved by {@link AttributeSchema}.</p>
+ *
+ * @see ChaiProvider#getAttributeSchema()
+ */
+public final class AttributeTypeDefinition
+{
+    /**
+     * Syntax OIDs (RFC 4517 and RFC 4523) whose values are not textual.
+     */
+    private static final Set<String> BINARY_SYNTAX_OIDS = Collections.unmodifiableSet( new HashSet<>( Arrays.asList(
+            "1.3.6.1.4.1.1466.115.121.1.4",
+            "1.3.6.1.4.1.1466.115.121.1.5",
+            "1.3.6.1.4.1.1466.115.121.1.8",
+            "1.3.6.1.4.1.1466.115.121.1.9",
+            "1.3.6.1.4.1.1466.115.121.1.10",
+            "1.3.6.1.4.1.1466.115.121.1.23",
+            "1.3.6.1.4.1.1466.115.121.1.28",
+            "1.3.6.1.4.1.1466.115.121.1.40",
+            "1.3.6.1.4.1.1466.115.121.1.49"
+    ) ) );
+
+    private static final Set<String> DN_SYNTAX_OIDS = Collections.unmodifiableSet( new HashSet<>( Arrays.asList(
+            "1.3.6.1.4.1.1466.115.121.1.12",
+            "1.3.6.1.4.1.1466.115.121.1.34"
+    ) ) );
+
+    private static final Set<String> FLAG_KEYWORDS = Collections.unmodifiableSet( new HashSet<>( Arrays.asList(
+            "OBSOLETE",
+            "SINGLE-VALUE",
+            "COLLECTIVE",
+            "NO-USER-MODIFICATION"
+    ) ) );
+
+    private final String oid;
+    private final List<String> names;
+    private final String superiorType;
+    private final String syntax;
+    private final String equalityMatchingRule;
+    private final String orderingMatchingRule;
+    private final String substringMatchingRule;
+    private final boolean singleValue;
+    private final boolean noUserModification;
+    private final String usage;
+
+    private AttributeTypeDefinition( final Builder builder )
+    {
+        this.oid = builder.oid;
+        this.names = Collections.unmodifiableList( new ArrayList<>( builder.names ) );
+        this.superiorType = builder.superiorType;
+        this.syntax = builder.syntax;
+        this.equalityMatchingRule = builder.equalityMatchingRule;
+        this.orderingMatchingRule = builder.orderingMatchingRule;
+        this.substringMatchingRule = builder.substringMatchingRule;
+        this.singleValue = builder.singleValue;
+        this.noUserModification = builder.noUserModification;
+        this.usage = builder.usage;
+    }
+
+    /**
+     * Parse an RFC 4512 attribute type description.
+     *
+     * @param value an {@code attributeTypes} value read from a subschema subentry
+     * @return the parsed definition
+     * @throws IllegalArgumentException if the value can not be parsed
+     */
+    public static AttributeTypeDefinition parse( final String value )
+    {
+        final List<String> tokens = tokenize( value );
+        if ( tokens.size() < 3 || !"(".equals( tokens.get( 0 ) ) || !")".equals( tokens.get( tokens.size() - 1 ) ) )
+        {
+            throw new IllegalArgumentException( "attribute type description is not enclosed in parenthesis: " + value );
+        }
+
+        final Builder builder = new Builder();
+        builder.oid = tokens.get( 1 );
+
+        int position = 2;
+        while ( position < tokens.size() - 1 )
+        {
+            final String keyword = tokens.get( position ).toUpperCase( Locale.ROOT );
+            position++;
+
+            if ( FLAG_KEYWORDS.contains( keyword ) )
+            {
+                builder.singleValue = builder.singleValue || "SINGLE-VALUE".equals( keyword );
+                builder.noUserModification = builder.noUserModification || "NO-USER-MODIFICATION".equals( keyword );
+                continue;
+            }
+
+            final List<String> values = new ArrayList<>();
+            if ( position < tokens.size() - 1 && "(".equals( tokens.get( position ) ) )
+            {
+                position++;
+                while ( position < tokens.size() - 1 && !")".equals( tokens.get( position ) ) )
+                {
+                    if ( !"$".equals( tokens.get( position ) ) )
+                    {
+                        values.add( tokens.get( position ) );
+                    }
+                    position++;
+                }
+                position++;
+            }
+            else if ( position < tokens.size() - 1 )
+            {
+                values.add( tokens.get( position ) );
+                position++;
+            }
+
+            final String firstValue = values.isEmpty() ? null : values.get( 0 );
+            switch ( keyword )
+            {
+                case "NAME":
+                    builder.names.addAll( values );
+                    break;
+
+                case "SUP":
+                    builder.superiorType = firstValue;
+                    break;
+
+                case "SYNTAX":
+                    builder.syntax = stripSyntaxLength( firstValue );
+                    break;
+
+                case "EQUALITY":
+                    builder.equalityMatchingRule = firstValue;
+                    break;
+
+                case "ORDERING":
+                    builder.orderingMatchingRule = firstValue;
+                    break;
+
+                case "SUBSTR":
+                    builder.substringMatchingRule = firstValue;
+                    break;
+
+                case "USAGE":
+                    builder.usage = firstValue;
+                    break;
+
+                default:
+                    // DESC and X- extensions are not used
+                    break;
+            }
+        }
+
+        return new AttributeTypeDefinition( builder );
+    }
+
+    /**
+     * Create a copy of this definition with undeclared values taken from the superior type.
+     *
+     * @param superior the definition of the superior type
+     * @return a new definition
+     */
+    AttributeTypeDefinition inheritFrom( final AttributeTypeDefinition superior )
+    {
+        final Builder builder = new Builder();
+        builder.oid = oid;
+        builder.names.addAll( names );
+        builder.superiorType = superiorType;
+        builder.syntax = syntax == null ? superior.getSyntax() : syntax;
+        builder.equalityMatchingRule = equalityMatchingRule == null ? superior.getEqualityMatchingRule() : equalityMatchingRule;
+        builder.orderingMatchingRule = orderingMatchingRule == null ? superior.getOrderingMatchingRule() : orderingMatchingRule;
+        builder.substringMatchingRule = substringMatchingRule == null ? superior.getSubstringMatchingRule() : substringMatchingRule;
+        builder.singleValue = singleValue;
+        builder.noUserModification = noUserModification;
+        builder.usage = usage;
+        return new AttributeTypeDefinition( builder );
+    }
+
+    public String getOid()
+    {
+        return oid;
+    }
+
+    public List<String> getNames()
+    {
+        return names;
+    }
+
+    /**
+     * Get the primary name of the attribute type, or the OID if the type has no name.
+     *
+     * @return the attribute type name
+     */
+    public String getName()
+    {
+        return names.isEmpty() ? oid : names.get( 0 );
+    }
+
+    public String getSuperiorType()
+    {
+        return superiorType;
+    }
+
+    /**
+     * Get the syntax OID, without any length constraint.
+     *
+     * @return the syntax OID, or null if not declared.
+     */
+    public String getSyntax()
+    {
+        return syntax;
+    }
+
+    public String getEqualityMatchingRule()
+    {
+        return equalityMatchingRule;
+    }
+
+    public String getOrderingMatchingRule()
+    {
+        return orderingMatchingRule;
+    }
+
+    public String getSubstringMatchingRule()
+    {
+        return substringMatchingRule;
+    }
+
+    public boolean isSingleValue()
+    {
+        return singleValue;
+    }
+
+    public boolean isNoUserModification()
+    {
+        return noUserModification;
+    }
+
+    public String getUsage()
+    {
+        return usage;
+    }
+
+    /**
+     * Indicates if values of this attribute type are binary and should be read using
+     * {@link ChaiProvider#readMultiByteAttribute(String, String)}.
+     *
+     * @return true if the attribute syntax is not textual.
+     */
+    public boolean isBinary()
+    {
+        return syntax != null && BINARY_SYNTAX_OIDS.contains( syntax );
+    }
+
+    /**
+     * Indicates if values of this attribute type are distinguished names.
+     *
+     * @return true if the attribute syntax is a DN syntax.
+     */
+    public boolean isDistinguishedName()
+    {
+        return syntax != null && DN_SYNTAX_OIDS.contains( syntax );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "AttributeTypeDefinition{name=" + getName()
+                + ", oid=" + oid
+                + ", syntax=" + syntax
+                + ", singleValue=" + singleValue
+                + "}";
+    }
+
+    private static String stripSyntaxLength( final String syntaxValue )
+    {
+        if ( syntaxValue == null )
+        {
+            return null;
+        }
+        final int lengthIndex = syntaxValue.indexOf( '{' );
+        return lengthIndex > 0 ? syntaxValue.substring( 0, lengthIndex ) : syntaxValue;
+    }
+
+    private static List<String> tokenize( final String value )
+    {
+        final List<String> tokens = new ArrayList<>();
+        final int length = value.length();
+        int position = 0;
+        while ( position < length )
+        {
+            final char current = value.charAt( position );
+            if ( Character.isWhitespace( current ) )
+            {
+                position++;
+            }
+            else if ( current == '(' || current == ')' || current == '$' )
+            {
+                tokens.add( String.valueOf( current ) );
+                position++;
+            }
+            else if ( current == '\'' )
+            {
+                final int endQuote = value.indexOf( '\'', position + 1 );
+                if ( endQuote < 0 )
+                {
+                    throw new IllegalArgumentException( "unterminated quoted string in attribute type description: " + value );
+                }
+                tokens.add( value.substring( position + 1, endQuote ) );
+                position = endQuote + 1;
+            }
+            else
+            {
+                final int start = position;
+                while ( position < length
+                        && !Character.isWhitespace( value.charAt( position ) )
+                        && value.charAt( position ) != '('
+                        && value.charAt( position ) != ')'
+                        && value.charAt( position ) != '\'' )
+                {
+                    position++;
+                }
+                tokens.add( value.substring( start, position ) );
+            }
+        }
+        return tokens;
+    }
+
+    private static class Builder
+    {
+        private String oid;
+        private final List<String> names = new ArrayList<>();
+        private String superiorType;
+        private String syntax;
+        private String equalityMatchingRule;
+        private String orderingMatchingRule;
+        private String substringMatchingRule;
+        private boolean singleValue;
+        private boolean noUserModification;
+        private String usage = "userApplications";
+    }
+}
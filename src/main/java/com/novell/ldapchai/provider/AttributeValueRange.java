@@ -0,0 +1,109 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A contiguous range of the values of a multi-valued attribute, as returned by
+ * {@link ChaiProvider#readMultiStringAttributeRange(String, String, int)}.
+ *
+ * <p>Directories such as Active Directory limit the number of values of a single attribute returned in a read
+ * (1500 by default).  Larger attributes are returned using ranged attribute retrieval, where the attribute is
+ * returned with a {@code ;range=low-high} option and the remaining values must be requested separately.</p>
+ */
+public final class AttributeValueRange
+{
+    private final List<String> values;
+    private final int startIndex;
+    private final int nextIndex;
+    private final boolean complete;
+
+    AttributeValueRange( final Collection<String> values, final int startIndex, final int nextIndex, final boolean complete )
+    {
+        this.values = values == null || values.isEmpty()
+                ? Collections.emptyList()
+                : Collections.unmodifiableList( new ArrayList<>( values ) );
+        this.startIndex = startIndex;
+        this.nextIndex = nextIndex;
+        this.complete = complete;
+    }
+
+    static AttributeValueRange completeRange( final Collection<String> values, final int startIndex )
+    {
+        final int size = values == null ? 0 : values.size();
+        return new AttributeValueRange( values, startIndex, startIndex + size, true );
+    }
+
+    /**
+     * Values of this range, in the order returned by the directory.
+     *
+     * @return an unmodifiable list of values, empty if the attribute has no values in this range
+     */
+    public List<String> getValues()
+    {
+        return values;
+    }
+
+    /**
+     * Index of the first value of this range.
+     *
+     * @return zero based index
+     */
+    public int getStartIndex()
+    {
+        return startIndex;
+    }
+
+    /**
+     * Index of the first value of the following range, to be supplied to
+     * {@link ChaiProvider#readMultiStringAttributeRange(String, String, int)} if the range is not complete.
+     *
+     * @return zero based index
+     */
+    public int getNextIndex()
+    {
+        return nextIndex;
+    }
+
+    /**
+     * Indicates if this range contains the last value of the attribute.
+     *
+     * @return true if no further ranges remain to be read
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "AttributeValueRange{"
+                + "startIndex=" + startIndex
+                + ", nextIndex=" + nextIndex
+                + ", size=" + values.size()
+                + ", complete=" + complete
+                + '}';
+    }
+}
@@ -69,8 +69,8 @@ class CachingWrapper extends AbstractWrapper
             throw new IllegalStateException( "chaiProvider is already wrapped for caching" );
         }
 
-        final int maxSize = Integer.parseInt( providerImpl.getChaiConfiguration().getSetting( ChaiSetting.CACHE_MAXIMUM_SIZE ) );
-        final int maxTime = Integer.parseInt( providerImpl.getChaiConfiguration().getSetting( ChaiSetting.CACHE_MAXIMUM_AGE ) );
+        final int maxSize = providerImpl.getChaiConfiguration().getIntSetting( ChaiSetting.CACHE_MAXIMUM_SIZE );
+        final int maxTime = providerImpl.getChaiConfiguration().getIntSetting( ChaiSetting.CACHE_MAXIMUM_AGE );
 
         this.realProvider = providerImpl;
         this.memorizedProvider = ( ChaiProviderImplementor ) Memorizer.forObject( realProvider, maxSize, maxTime );
@@ -51,6 +51,13 @@ public class ChaiConfiguration
     private final Map<String, String> settings;
     private final X509TrustManager[] trustManager;
 
+    // typed snapshot of the settings, indexed by ChaiSetting ordinal and computed once at build time.
+    private final String[] settingValues;
+    private final boolean[] booleanValues;
+    private final int[] intValues;
+    private final boolean[] intValuesValid;
+    private final List<String> bindURLs;
+
     static
     {
         final Map<String, String> settings = new LinkedHashMap<>();
@@ -68,8 +75,35 @@ public class ChaiConfiguration
     )
     {
         this.implementationConfiguration = implementationConfiguration;
-        this.settings = settings;
+        this.settings = Collections.unmodifiableMap( new LinkedHashMap<>( settings ) );
         this.trustManager = trustManager == null ? null : Arrays.copyOf( trustManager, trustManager.length );
+
+        final ChaiSetting[] allSettings = ChaiSetting.values();
+        this.settingValues = new String[allSettings.length];
+        this.booleanValues = new boolean[allSettings.length];
+        this.intValues = new int[allSettings.length];
+        this.intValuesValid = new boolean[allSettings.length];
+        for ( final ChaiSetting setting : allSettings )
+        {
+            final int index = setting.ordinal();
+            final String value = this.settings.get( setting.getKey() );
+            settingValues[index] = value;
+            booleanValues[index] = StringHelper.convertStrToBoolean( value );
+            try
+            {
+                intValues[index] = value == null ? 0 : Integer.parseInt( value );
+                intValuesValid[index] = value != null;
+            }
+            catch ( NumberFormatException e )
+            {
+                intValuesValid[index] = false;
+            }
+        }
+
+        final String bindURLsSetting = settingValues[ChaiSetting.BIND_URLS.ordinal()];
+        this.bindURLs = bindURLsSetting == null
+                ? Collections.emptyList()
+                : Collections.unmodifiableList( Arrays.asList( bindURLsSetting.split( LDAP_URL_SEPARATOR_REGEX_PATTERN ) ) );
     }
 
     /**
@@ -159,7 +193,7 @@ public class ChaiConfiguration
      */
     public String getSetting( final ChaiSetting setting )
     {
-        return settings.get( setting.getKey() );
+        return settingValues[setting.ordinal()];
     }
 
     /**
@@ -170,8 +204,7 @@ public class ChaiConfiguration
      */
     public boolean getBooleanSetting( final ChaiSetting setting )
     {
-        final String settingValue = getSetting( setting );
-        return StringHelper.convertStrToBoolean( settingValue );
+        return booleanValues[setting.ordinal()];
     }
 
     /**
@@ -181,8 +214,7 @@ public class ChaiConfiguration
      */
     public List<String> bindURLsAsList()
     {
-        final List<String> splitUrls = Arrays.asList( getSetting( ChaiSetting.BIND_URLS ).split( LDAP_URL_SEPARATOR_REGEX_PATTERN ) );
-        return Collections.unmodifiableList( splitUrls );
+        return bindURLs;
     }
 
     public String getDebugUrl()
@@ -192,7 +224,7 @@ public class ChaiConfiguration
 
     String getBindPassword()
     {
-        return settings.get( ChaiSetting.BIND_PASSWORD.getKey() );
+        return getSetting( ChaiSetting.BIND_PASSWORD );
     }
 
     Optional<DirectoryVendor> getDefaultVendor()
@@ -212,17 +244,21 @@ public class ChaiConfiguration
         return Optional.empty();
     }
 
-    int getIntSetting( final ChaiSetting name )
+    /**
+     * Get an individual setting value as an integer.
+     *
+     * @param setting the setting to return
+     * @return the value or the default value if no value exists.
+     * @throws IllegalArgumentException if the setting value is not an integer
+     */
+    public int getIntSetting( final ChaiSetting setting )
     {
-        try
-        {
-            return Integer.parseInt( getSetting( name ) );
-        }
-        catch ( Exception e )
+        final int index = setting.ordinal();
+        if ( intValuesValid[index] )
         {
-            // doesnt matter, we're throwing anyway.
+            return intValues[index];
         }
-        throw new IllegalArgumentException( "misconfigured value; " + name + " should be Integer, but is not" );
+        throw new IllegalArgumentException( "misconfigured value; " + setting + " should be Integer, but is not" );
     }
 
     /**
@@ -27,8 +27,10 @@ import com.novell.ldapchai.util.SearchHelper;
 
 import javax.naming.ldap.ExtendedRequest;
 import javax.naming.ldap.ExtendedResponse;
+import java.io.InputStream;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -160,6 +162,23 @@ public interface ChaiProvider
     void deleteStringAttributeValue( String entryDN, String attributeName, String value )
             throws ChaiOperationException, ChaiUnavailableException, IllegalStateException;
 
+    /**
+     * Delete multiple string values of the specified object's attribute using a single modify operation.
+     * The operation is atomic; if any of the values is not present none of the values are removed.
+     *
+     * @param entryDN       A valid entryDN
+     * @param attributeName A valid attribute of the entryDN
+     * @param values        The values to delete
+     * @throws ChaiOperationException   If an error is encountered during the operation
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     * @throws IllegalStateException    If the underlying connection is not in an available state
+     * @see com.novell.ldapchai.ChaiGroup#removeMembers(java.util.Collection)
+     */
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.ModifyOperation
+    void deleteStringAttributeValues( String entryDN, String attributeName, Set<String> values )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException;
+
     /**
      * Performs an extended operation against the server.  The extended operation must be understood by the server.
      *
@@ -211,6 +230,41 @@ public interface ChaiProvider
     byte[][] readMultiByteAttribute( String entryDN, String attribute )
             throws ChaiOperationException, ChaiUnavailableException, IllegalStateException;
 
+    /**
+     * Performs a read operation against the directory and returns the binary results as read-only buffers.
+     * The buffers wrap the values read from the directory without copying, which is preferable for
+     * large binary values such as photos or certificates.
+     *
+     * @param entryDN   A valid object
+     * @param attribute A valid attribute on the object.
+     * @return A read-only buffer for each ldap value, an empty list if the attribute has no values.
+     * @throws ChaiOperationException   If an error is encountered during the operation
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     * @throws IllegalStateException    If the underlying connection is not in an available state
+     * @see com.novell.ldapchai.ChaiEntry#readMultiByteBufferAttribute(String)
+     */
+    @ChaiProvider.LdapOperation
+    List<ByteBuffer> readMultiByteBufferAttribute( String entryDN, String attribute )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException;
+
+    /**
+     * Performs a read operation against the directory and returns the <i>first</i> binary value as a stream.
+     * This is intended for single valued attributes; if the attribute has more than one value, the other values
+     * are discarded.  Use {@link #readMultiByteBufferAttribute(String, String)} to read every value.  The stream
+     * reads the value as decoded from the directory response without copying it.
+     *
+     * @param entryDN   A valid object
+     * @param attribute A valid attribute on the object.
+     * @return A stream of the first ldap value only, or null if the attribute has no values.
+     * @throws ChaiOperationException   If an error is encountered during the operation
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     * @throws IllegalStateException    If the underlying connection is not in an available state
+     * @see com.novell.ldapchai.ChaiEntry#readByteStreamAttribute(String)
+     */
+    @ChaiProvider.LdapOperation
+    InputStream readByteStreamAttribute( String entryDN, String attribute )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException;
+
     /**
      * Read all string values of the specified attribute.
      *
@@ -226,6 +280,29 @@ public interface ChaiProvider
     Set<String> readMultiStringAttribute( String entryDN, String attribute )
             throws ChaiOperationException, ChaiUnavailableException, IllegalStateException;
 
+    /**
+     * Read a range of the string values of a multi-valued attribute.  Directories such as Active Directory
+     * return attributes with a large number of values, such as the {@code member} attribute of a large group, in
+     * ranges.  {@link #readMultiStringAttribute(String, String)} reads all ranges transparently, this method
+     * allows the values to be processed one range at a time without holding all values in memory.
+     *
+     * <p>If the directory does not use ranged retrieval for the attribute, a single complete range
+     * containing the values beginning at {@code startIndex} is returned.</p>
+     *
+     * @param entryDN    The full DN of the object to read
+     * @param attribute  A valid attribute on the object
+     * @param startIndex Index of the first value to read, 0 for the first range, otherwise the
+     *                   {@link AttributeValueRange#getNextIndex()} of the previous range
+     * @return The range of values, never null
+     * @throws ChaiOperationException   If an error is encountered during the operation
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     * @throws IllegalStateException    If the underlying connection is not in an available state
+     * @see com.novell.ldapchai.ChaiEntry#readMultiStringAttribute(String, java.util.function.Predicate)
+     */
+    @ChaiProvider.LdapOperation
+    AttributeValueRange readMultiStringAttributeRange( String entryDN, String attribute, int startIndex )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException;
+
     /**
      * Read a single string value of the specified attribute.  If the attribute has multiple values, only the first
      * value returned by the directory is returned.
@@ -356,6 +433,64 @@ public interface ChaiProvider
     Map<String, Map<String, List<String>>> searchMultiValues( String baseDN, String filter, Set<String> attributes, SearchScope searchScope )
             throws ChaiOperationException, ChaiUnavailableException, IllegalStateException;
 
+    /**
+     * Perform a search where multiple values of an object are returned, using a compact representation of the results.
+     * The results are equivalent to {@link #searchMultiValues(String, SearchHelper)}, but require substantially less
+     * heap for large result sets.  Providers that are unable to build the compact representation while reading
+     * results will convert the results of {@link #searchMultiValues(String, SearchHelper)}.
+     *
+     * @param baseDN       A valid entryDN
+     * @param searchHelper A Chai searchHelper
+     * @return A compact, immutable search result.
+     * @throws ChaiOperationException   If an error is encountered during the operation
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     * @throws IllegalStateException    If the underlying connection is not in an available state
+     */
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.SearchOperation
+    CompactSearchResult searchCompact( String baseDN, SearchHelper searchHelper )
+            throws ChaiUnavailableException, ChaiOperationException;
+
+    /**
+     * Perform a search where the values of the returned attributes are read as binary values, so binary attributes of
+     * many entries can be read without a {@link #readMultiByteAttribute(String, String)} call per entry.  Values of
+     * attributes without a binary syntax are returned in their UTF-8 encoding.  Providers that are unable to read
+     * binary values in a search read the values of each returned entry with {@link #readMultiByteAttribute(String, String)}.
+     *
+     * @param baseDN       A valid entryDN
+     * @param searchHelper A Chai searchHelper
+     * @return A map containing Strings of DNs for keys, and a Map for values.
+     *     The value map itself contains attribute name Strings as keys,
+     *     and the binary values of each attribute.
+     * @throws ChaiOperationException   If an error is encountered during the operation
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     * @throws IllegalStateException    If the underlying connection is not in an available state
+     */
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.SearchOperation
+    Map<String, Map<String, byte[][]>> searchMultiByteValues( String baseDN, SearchHelper searchHelper )
+            throws ChaiUnavailableException, ChaiOperationException;
+
+    /**
+     * Perform a search where each entry is passed to a handler as it is read, rather than being collected into
+     * a result.  Paged searches pass each page of entries to the handler before the next page is requested, so
+     * the memory used by the search is bounded by the page size regardless of the number of entries.
+     *
+     * <p>The handler is called on the calling thread, and may use the provider for other operations.  If the search
+     * fails part way, entries already passed to the handler are not retracted.</p>
+     *
+     * @param baseDN        A valid entryDN
+     * @param searchHelper  A Chai searchHelper
+     * @param resultHandler handler called once for each entry of the search result
+     * @throws ChaiOperationException   If an error is encountered during the operation, or thrown by the handler
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     * @throws IllegalStateException    If the underlying connection is not in an available state
+     */
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.SearchOperation
+    void searchStream( String baseDN, SearchHelper searchHelper, SearchResultHandler resultHandler )
+            throws ChaiUnavailableException, ChaiOperationException;
+
     /**
      * Write the binary values to the specified object's specified attribute.
      *
@@ -436,6 +571,20 @@ public interface ChaiProvider
     DirectoryVendor getDirectoryVendor()
             throws ChaiUnavailableException;
 
+    /**
+     * Returns the attribute type definitions published by the subschema subentry of the configured directory.
+     * The schema is read once and shared by all providers of the {@link ChaiProviderFactory} that connect to the
+     * same server.  Callers can use the schema to determine if an attribute is binary, single-valued or contains
+     * distinguished names.
+     *
+     * @return The attribute schema of the directory.  An empty schema is returned if the subschema subentry can not be read.
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     * @see ChaiProviderFactorySetting#SCHEMA_CACHE_MAX_AGE_MS
+     */
+    @ChaiProvider.LdapOperation
+    AttributeSchema getAttributeSchema()
+            throws ChaiUnavailableException;
+
     /**
      * Replace binary value of the specified object's specified attribute.
      *
@@ -472,6 +621,25 @@ public interface ChaiProvider
      */
     ChaiEntryFactory getEntryFactory();
 
+    /**
+     * Receives the entries of {@link #searchStream(String, SearchHelper, SearchResultHandler)}.
+     */
+    @FunctionalInterface
+    interface SearchResultHandler
+    {
+        /**
+         * Handle a single entry of a search result.
+         *
+         * @param entryDN    DN of the entry
+         * @param attributes attribute names and values of the entry, in the form of the entry maps returned by
+         *                   {@link #searchMultiValues(String, SearchHelper)}
+         * @throws ChaiOperationException   to stop the search
+         * @throws ChaiUnavailableException to stop the search
+         */
+        void handleEntry( String entryDN, Map<String, List<String>> attributes )
+                throws ChaiOperationException, ChaiUnavailableException;
+    }
+
     /**
      * Indicates if the method is actually performing an ldap operation.
      */
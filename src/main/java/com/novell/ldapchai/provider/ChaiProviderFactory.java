@@ -27,12 +27,13 @@ import com.novell.ldapchai.util.internal.ChaiLogger;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.time.Instant;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
@@ -260,6 +261,7 @@ public final class ChaiProviderFactory implements Closeable
         final boolean enableReadOnly = chaiConfiguration.getBooleanSetting( ChaiSetting.READONLY );
         final boolean enableWireTrace = chaiConfiguration.getBooleanSetting( ChaiSetting.WIRETRACE_ENABLE );
         final boolean enableStatistics = chaiConfiguration.getBooleanSetting( ChaiSetting.STATISTICS_ENABLE );
+        final boolean enableLocalReplica = chaiConfiguration.getBooleanSetting( ChaiSetting.LOCAL_REPLICA_ENABLE );
         final boolean enableCaching = chaiConfiguration.getBooleanSetting( ChaiSetting.CACHE_ENABLE );
         final boolean threadSafeEnabled = chaiConfiguration.getBooleanSetting( ChaiSetting.THREAD_SAFE_ENABLE );
 
@@ -289,6 +291,16 @@ public final class ChaiProviderFactory implements Closeable
             outputProvider = StatisticsWrapper.forProvider( outputProvider );
         }
 
+        if ( enableLocalReplica )
+        {
+            final Optional<LocalReplica> localReplica = getCentralService().getLocalReplica( this, chaiConfiguration );
+            if ( localReplica.isPresent() )
+            {
+                LOGGER.trace( () -> "adding LocalReplicaWrapper to provider instance" );
+                outputProvider = LocalReplicaWrapper.forProvider( outputProvider, localReplica.get() );
+            }
+        }
+
         if ( enableCaching && !( outputProvider instanceof CachingWrapper ) )
         {
             LOGGER.trace( () -> "adding CachingWrapper to provider instance" );
@@ -329,6 +341,28 @@ public final class ChaiProviderFactory implements Closeable
         return centralService;
     }
 
+    /**
+     * Cache of group membership test results shared by the providers of this factory.
+     *
+     * @return the membership cache
+     * @see ChaiProviderFactorySetting#MEMBERSHIP_CACHE_MAX_AGE_MS
+     */
+    public MembershipCache getMembershipCache()
+    {
+        return getCentralService().getMembershipCache();
+    }
+
+    /**
+     * Cache of password policy data shared by the providers of this factory.
+     *
+     * @return the policy cache
+     * @see ChaiProviderFactorySetting#POLICY_CACHE_MAX_AGE_MS
+     */
+    public PolicyCache getPolicyCache()
+    {
+        return getCentralService().getPolicyCache();
+    }
+
     public Set<ChaiProvider> activeProviders()
     {
         return getCentralService().activeProviders();
@@ -361,65 +395,50 @@ public final class ChaiProviderFactory implements Closeable
 
         private final StatisticsWrapper.StatsBean globalStats = new StatisticsWrapper.StatsBean();
 
-        // cache thread access isn't strictly locked but should be good enough for cache usage
-        private final Map<String, VendorCacheInfo> vendorCacheMap = new ConcurrentHashMap<>();
+        private final WeakReferenceHolder<ChaiProviderImplementor> activeProviders = new WeakReferenceHolder<>();
 
-        private final int maxVendorCacheAgeMs;
+        private final TlsContextCache tlsContextCache;
 
-        private final WeakReferenceHolder<ChaiProviderImplementor> activeProviders = new WeakReferenceHolder<>();
+        private final ServerCapabilityCache serverCapabilityCache;
 
-        private CentralService( final ChaiProviderFactory chaiProviderFactory )
-        {
-            maxVendorCacheAgeMs = Integer.parseInt(
-                    chaiProviderFactory.getChaiProviderFactorySettings().getOrDefault(
-                            ChaiProviderFactorySetting.VENDOR_CACHE_MAX_AGE_MS,
-                            ChaiProviderFactorySetting.VENDOR_CACHE_MAX_AGE_MS.getDefaultValue()
-                    )
-            );
-            watchdogService = new WatchdogService( chaiProviderFactory );
-        }
+        private final AttributeSchemaCache attributeSchemaCache;
 
-        void addVendorCache( final ChaiConfiguration chaiConfiguration, final DirectoryVendor vendor )
-        {
-            if ( maxVendorCacheAgeMs > 0 )
-            {
-                final String cacheKey = chaiConfiguration.getSetting( ChaiSetting.BIND_URLS );
+        private final Map<LocalReplica.Key, LocalReplica> localReplicas = new HashMap<>();
 
-                if ( !vendorCacheMap.containsKey( cacheKey ) )
-                {
-                    vendorCacheMap.put( cacheKey, new VendorCacheInfo( Instant.now(), vendor ) );
-                }
+        private final Map<String, InMemoryDirectory> inMemoryDirectories = new ConcurrentHashMap<>();
 
-                // safety check
-                while ( vendorCacheMap.size() > 100 )
-                {
-                    vendorCacheMap.entrySet().iterator().remove();
-                }
-            }
+        private final MembershipCache membershipCache;
+
+        private final PolicyCache policyCache;
+
+        private CentralService( final ChaiProviderFactory chaiProviderFactory )
+        {
+            watchdogService = new WatchdogService( chaiProviderFactory );
+            tlsContextCache = new TlsContextCache( chaiProviderFactory );
+            serverCapabilityCache = new ServerCapabilityCache( chaiProviderFactory );
+            attributeSchemaCache = new AttributeSchemaCache( chaiProviderFactory );
+            membershipCache = new MembershipCache( chaiProviderFactory );
+            policyCache = new PolicyCache( chaiProviderFactory );
         }
 
         @Override
         public void close()
         {
             watchdogService.close();
-        }
 
-        DirectoryVendor getVendorCache( final ChaiConfiguration chaiConfiguration )
-        {
-            final String cacheKey = chaiConfiguration.getSetting( ChaiSetting.BIND_URLS );
-            final VendorCacheInfo vendorCacheInfo = vendorCacheMap.get( cacheKey );
-            if ( vendorCacheInfo != null )
+            synchronized ( localReplicas )
             {
-                if ( vendorCacheInfo.getTimestamp().plusMillis( maxVendorCacheAgeMs ).isBefore( Instant.now() ) )
+                for ( final LocalReplica localReplica : localReplicas.values() )
                 {
-                    vendorCacheMap.remove( cacheKey );
-                }
-                else
-                {
-                    return vendorCacheInfo.getVendor();
+                    localReplica.close();
                 }
+                localReplicas.clear();
             }
-            return null;
+
+            serverCapabilityCache.close();
+            inMemoryDirectories.clear();
+            membershipCache.clear();
+            policyCache.clear();
         }
 
         StatisticsWrapper.StatsBean getStatsBean()
@@ -432,42 +451,98 @@ public final class ChaiProviderFactory implements Closeable
             return watchdogService;
         }
 
-        Set<ChaiProvider> activeProviders()
+        TlsContextCache getTlsContextCache()
         {
-            final Set<ChaiProvider> returnSet = new HashSet<>( activeProviders.allValues() );
-            return Collections.unmodifiableSet( returnSet );
+            return tlsContextCache;
         }
 
-        void registerProvider( final ChaiProviderImplementor chaiProviderImplementor )
+        ServerCapabilityCache getServerCapabilityCache()
         {
-            activeProviders.add( chaiProviderImplementor );
+            return serverCapabilityCache;
         }
 
-        void deRegisterProvider( final ChaiProviderImplementor chaiProviderImplementor )
+        AttributeSchemaCache getAttributeSchemaCache()
         {
-            activeProviders.remove( chaiProviderImplementor );
+            return attributeSchemaCache;
         }
-    }
 
-    private static class VendorCacheInfo
-    {
-        private final Instant timestamp;
-        private final DirectoryVendor vendor;
+        MembershipCache getMembershipCache()
+        {
+            return membershipCache;
+        }
+
+        PolicyCache getPolicyCache()
+        {
+            return policyCache;
+        }
+
+        /**
+         * Get the local replica for a configuration, opening it if necessary.  Replicas are shared by all
+         * providers using the same replica directory, bind DN and server URLs.  A configuration with a different
+         * bind DN or server than the replica already open in its directory is not given a replica, since the
+         * stored entries were read with another identity's access rights or from another directory.
+         *
+         * @param chaiProviderFactory the factory owning this service
+         * @param chaiConfiguration a configuration with {@link ChaiSetting#LOCAL_REPLICA_ENABLE} set
+         * @return the replica, or empty if the replica is misconfigured, can not be opened, or belongs to another identity
+         */
+        Optional<LocalReplica> getLocalReplica( final ChaiProviderFactory chaiProviderFactory, final ChaiConfiguration chaiConfiguration )
+        {
+            synchronized ( localReplicas )
+            {
+                try
+                {
+                    final LocalReplica.Key replicaKey = LocalReplica.Key.forConfiguration( chaiConfiguration );
+                    LocalReplica localReplica = localReplicas.get( replicaKey );
+                    if ( localReplica == null )
+                    {
+                        for ( final LocalReplica.Key existingKey : localReplicas.keySet() )
+                        {
+                            if ( existingKey.getDirectory().equals( replicaKey.getDirectory() ) )
+                            {
+                                LOGGER.warn( () -> "local replica directory " + replicaKey.getDirectory() + " is in use by " + existingKey.getIdentity()
+                                        + ", all operations for " + replicaKey.getIdentity() + " will be sent to the server" );
+                                return Optional.empty();
+                            }
+                        }
+                        localReplica = LocalReplica.forConfiguration( chaiProviderFactory, chaiConfiguration );
+                        localReplicas.put( replicaKey, localReplica );
+                    }
+                    return Optional.of( localReplica );
+                }
+                catch ( IOException | IllegalArgumentException e )
+                {
+                    LOGGER.error( () -> "unable to open local replica, all operations will be sent to the server: " + e.getMessage() );
+                    return Optional.empty();
+                }
+            }
+        }
+
+        /**
+         * Get the directory of the {@link InMemoryProviderImpl} for a bind URL, creating an empty directory if necessary.
+         *
+         * @param bindURL the first bind URL of the provider configuration
+         * @return the shared directory for the URL
+         */
+        InMemoryDirectory getInMemoryDirectory( final String bindURL )
+        {
+            return inMemoryDirectories.computeIfAbsent( bindURL, k -> new InMemoryDirectory() );
+        }
 
-        VendorCacheInfo( final Instant timestamp, final DirectoryVendor vendor )
+        Set<ChaiProvider> activeProviders()
         {
-            this.timestamp = timestamp;
-            this.vendor = vendor;
+            final Set<ChaiProvider> returnSet = new HashSet<>( activeProviders.allValues() );
+            return Collections.unmodifiableSet( returnSet );
         }
 
-        public Instant getTimestamp()
+        void registerProvider( final ChaiProviderImplementor chaiProviderImplementor )
         {
-            return timestamp;
+            activeProviders.add( chaiProviderImplementor );
         }
 
-        public DirectoryVendor getVendor()
+        void deRegisterProvider( final ChaiProviderImplementor chaiProviderImplementor )
         {
-            return vendor;
+            activeProviders.remove( chaiProviderImplementor );
         }
     }
 
@@ -45,14 +45,114 @@ public enum ChaiProviderFactorySetting
     WATCHDOG_CHECK_FREQUENCY( "chai.providerFactory.connection.watchdog.frequencyMs", "1000", SettingValidator.INTEGER_VALIDATOR ),
 
     /**
-     * <p>Maximum time duration to cache a vendor identification for a given LDAP URL.</p>
+     * <p>Maximum time duration to cache a vendor identification and other server capabilities such as supported
+     * controls and extended operations for a given LDAP URL.  A value of zero disables the cache.</p>
      *
      * <table><caption>Setting Information</caption>
      * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.provider.vendor.cache.maxAgeMs</td></tr>
      * <tr><td style="text-align: right"><i>Default: </i></td><td>5000</td></tr>
      * </table>
      */
-    VENDOR_CACHE_MAX_AGE_MS( "chai.providerFactory.vendorCache.maxAgeMs", "60000", SettingValidator.INTEGER_VALIDATOR ),;
+    VENDOR_CACHE_MAX_AGE_MS( "chai.providerFactory.vendorCache.maxAgeMs", "60000", SettingValidator.INTEGER_VALIDATOR ),
+
+    /**
+     * <p>Share ssl contexts between providers with the same trust configuration.  Sharing the ssl context allows
+     * re-opened connections to resume a previous TLS session instead of performing a full handshake.</p>
+     *
+     * <table><caption>Setting Information</caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.providerFactory.tlsContextCache.enable</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>true</td></tr>
+     * </table>
+     */
+    TLS_CONTEXT_CACHE_ENABLE( "chai.providerFactory.tlsContextCache.enable", "true", SettingValidator.BOOLEAN_VALIDATOR ),
+
+    /**
+     * <p>Maximum age of a cached TLS client session (in ms) that may be resumed by a shared ssl context.</p>
+     *
+     * <table><caption>Setting Information</caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.providerFactory.tlsContextCache.sessionTimeoutMs</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>3600000</td></tr>
+     * </table>
+     */
+    TLS_SESSION_TIMEOUT_MS( "chai.providerFactory.tlsContextCache.sessionTimeoutMs", "3600000", SettingValidator.INTEGER_VALIDATOR ),
+
+    /**
+     * <p>Path of a local file used to persist cached server capabilities, allowing a new factory to re-use
+     * capabilities discovered by a previous factory instance or application run.  Entries older than
+     * {@link #SERVER_CAPABILITY_CACHE_FILE_MAX_AGE_HOURS} are ignored when the file is read.  If blank, capabilities
+     * are not persisted.</p>
+     *
+     * <table><caption>Setting Information</caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.providerFactory.serverCapabilityCache.file</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td><i>(blank)</i></td></tr>
+     * </table>
+     */
+    SERVER_CAPABILITY_CACHE_FILE( "chai.providerFactory.serverCapabilityCache.file", "", null ),
+
+    /**
+     * <p>Maximum age in hours of the server capabilities read from {@link #SERVER_CAPABILITY_CACHE_FILE}.  Records
+     * loaded from the file are then kept in memory for {@link #VENDOR_CACHE_MAX_AGE_MS} from the time they were
+     * loaded, like newly read capabilities.</p>
+     *
+     * <table><caption>Setting Information</caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.providerFactory.serverCapabilityCache.fileMaxAgeHours</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>24</td></tr>
+     * </table>
+     */
+    SERVER_CAPABILITY_CACHE_FILE_MAX_AGE_HOURS( "chai.providerFactory.serverCapabilityCache.fileMaxAgeHours", "24", SettingValidator.INTEGER_VALIDATOR ),
+
+    /**
+     * <p>Maximum time duration to cache the attribute schema read from a server's subschema subentry.  A value
+     * of zero disables the cache, in which case the schema is re-read for each call to
+     * {@link ChaiProvider#getAttributeSchema()}.</p>
+     *
+     * <table><caption>Setting Information</caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.providerFactory.schemaCache.maxAgeMs</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>3600000</td></tr>
+     * </table>
+     */
+    SCHEMA_CACHE_MAX_AGE_MS( "chai.providerFactory.schemaCache.maxAgeMs", "3600000", SettingValidator.INTEGER_VALIDATOR ),
+
+    /**
+     * <p>Maximum time duration to cache the result of a group membership test performed by
+     * {@link com.novell.ldapchai.ChaiGroup#hasMember(com.novell.ldapchai.ChaiUser)} or
+     * {@link com.novell.ldapchai.ChaiUser#isMemberOf(com.novell.ldapchai.ChaiGroup)}.  A value of zero disables
+     * the cache.</p>
+     *
+     * <table><caption>Setting Information</caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.providerFactory.membershipCache.maxAgeMs</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>30000</td></tr>
+     * </table>
+     *
+     * @see MembershipCache
+     */
+    MEMBERSHIP_CACHE_MAX_AGE_MS( "chai.providerFactory.membershipCache.maxAgeMs", "30000", SettingValidator.INTEGER_VALIDATOR ),
+
+    /**
+     * <p>Maximum time duration to cache password policy data, such as parsed policy entries and the lookups used
+     * to locate the policy of a user.  A value of zero disables the cache.</p>
+     *
+     * <table><caption>Setting Information</caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.providerFactory.policyCache.maxAgeMs</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>3600000</td></tr>
+     * </table>
+     *
+     * @see PolicyCache
+     */
+    POLICY_CACHE_MAX_AGE_MS( "chai.providerFactory.policyCache.maxAgeMs", "3600000", SettingValidator.INTEGER_VALIDATOR ),
+
+    /**
+     * <p>Time duration after which a cached password policy value is confirmed to be current before it is used,
+     * typically by comparing the {@code modifyTimestamp} of the policy entry.</p>
+     *
+     * <table><caption>Setting Information</caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.providerFactory.policyCache.revalidateMs</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>60000</td></tr>
+     * </table>
+     *
+     * @see PolicyCache
+     */
+    POLICY_CACHE_REVALIDATE_MS( "chai.providerFactory.policyCache.revalidateMs", "60000", SettingValidator.INTEGER_VALIDATOR ),;
 
     private final String key;
     private final String defaultValue;
@@ -171,6 +171,78 @@ public enum ChaiSetting
      */
     CACHE_MAXIMUM_AGE( "chai.cache.maximumAge", "1000", true, SettingValidator.INTEGER_VALIDATOR ),
 
+    /**
+     * <p>Enable the local replica.  If enabled, the entries below {@link #LOCAL_REPLICA_BASE_DN} are copied to a
+     * memory-mapped store in {@link #LOCAL_REPLICA_DIRECTORY} and kept up to date in the background.  Reads and simple
+     * searches of replicated entries are answered from the store, other operations are sent to the server.  The store
+     * is retained across restarts so an application can serve reads before the first synchronization completes.</p>
+     *
+     * <p>A replica is shared by all providers of a {@link ChaiProviderFactory} that use the same directory.  The
+     * replica has the visibility of the configured bind DN, so it should only be enabled for configurations whose
+     * callers may read everything that bind DN can read.</p>
+     *
+     * <table border="1"><caption><b>Setting Information</b></caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.localReplica.enable</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>false</td></tr>
+     * </table>
+     */
+    LOCAL_REPLICA_ENABLE( "chai.localReplica.enable", "false", true, SettingValidator.BOOLEAN_VALIDATOR ),
+
+    /**
+     * <p>Base DN of the subtree copied to the local replica.  Required if {@link #LOCAL_REPLICA_ENABLE} is
+     * set to <i>true</i>.</p>
+     *
+     * <table border="1"><caption><b>Setting Information</b></caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.localReplica.baseDN</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>(none)</td></tr>
+     * </table>
+     */
+    LOCAL_REPLICA_BASE_DN( "chai.localReplica.baseDN", "", true, null ),
+
+    /**
+     * <p>File system directory of the local replica store.  The directory is created if it does not exist, and
+     * must not be shared by processes.  Required if {@link #LOCAL_REPLICA_ENABLE} is set to <i>true</i>.</p>
+     *
+     * <table border="1"><caption><b>Setting Information</b></caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.localReplica.directory</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>(none)</td></tr>
+     * </table>
+     */
+    LOCAL_REPLICA_DIRECTORY( "chai.localReplica.directory", "", true, null ),
+
+    /**
+     * <p>Interval (in ms) between incremental synchronizations of the local replica.  Each synchronization
+     * retrieves the entries whose {@code modifyTimestamp} is newer than the last synchronization.</p>
+     *
+     * <table border="1"><caption><b>Setting Information</b></caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.localReplica.syncInterval</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>60000</td></tr>
+     * </table>
+     */
+    LOCAL_REPLICA_SYNC_INTERVAL( "chai.localReplica.syncInterval", "60000", true, SettingValidator.INTEGER_VALIDATOR ),
+
+    /**
+     * <p>Interval (in ms) between reconciliations of the local replica.  A reconciliation lists the DNs of the
+     * replicated subtree and removes entries that have been deleted on the server.</p>
+     *
+     * <table border="1"><caption><b>Setting Information</b></caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.localReplica.reconcileInterval</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>3600000</td></tr>
+     * </table>
+     */
+    LOCAL_REPLICA_RECONCILE_INTERVAL( "chai.localReplica.reconcileInterval", "3600000", true, SettingValidator.INTEGER_VALIDATOR ),
+
+    /**
+     * <p>Comma separated list of attributes with an equality index in the local replica.  Searches with an equality
+     * filter on an indexed attribute are answered without scanning the replicated subtree.</p>
+     *
+     * <table border="1"><caption><b>Setting Information</b></caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.localReplica.indexedAttributes</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>objectClass,cn,uid,mail,sAMAccountName,userPrincipalName</td></tr>
+     * </table>
+     */
+    LOCAL_REPLICA_INDEXED_ATTRIBUTES( "chai.localReplica.indexedAttributes", "objectClass,cn,uid,mail,sAMAccountName,userPrincipalName", true, null ),
+
     /**
      * <p>Enable chai statistics.  If enabled, each ChaiProvider will maintain statistics and make them
      * available via {@link com.novell.ldapchai.provider.ChaiProvider#getProviderStatistics()}.</p>
@@ -225,7 +297,8 @@ public enum ChaiSetting
     /**
      * <p>Maximum time a ChaiProvider can remain inactive (in ms).  If this time is exceeded, the connection will
      * be closed.  Future methods called to the ChaiProvider will attempt to re-open a new
-     * ldap connection.</p>
+     * ldap connection.  Not used when {@link #WATCHDOG_KEEPALIVE_ENABLE} is set to <i>true</i>, idle connections are
+     * then kept open and probed instead.</p>
      *
      * <table border="1"><caption><b>Setting Information</b></caption>
      * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.watchdog.idleTimeout</td></tr>
@@ -255,6 +328,72 @@ public enum ChaiSetting
      */
     WATCHDOG_DISABLE_IF_PW_EXPIRED( "chai.watchdog.disableIfPwExpired", "true", true, SettingValidator.BOOLEAN_VALIDATOR ),
 
+    /**
+     * <p>Enable watchdog keep-alive probing of idle connections.  When enabled, the watchdog will periodically issue a
+     * cheap probe operation (see {@link #WATCHDOG_KEEPALIVE_PROBE}) on connections that have been idle longer than
+     * {@link #WATCHDOG_KEEPALIVE_INTERVAL}.  Connections that fail the probe are closed and replaced in the background
+     * so that the next operation does not have to wait for a dead connection to time out.</p>
+     *
+     * <p>This is useful when firewalls or load balancers between the client and ldap server silently drop idle
+     * TCP sessions.  The keep-alive interval should be shorter than the firewall idle timeout.  While keep-alive is
+     * enabled {@link #WATCHDOG_IDLE_TIMEOUT} is not applied, so idle connections stay open.  Probes run on a separate
+     * thread from the watchdog timer; operations may continue to use the connection while it is being probed.  A
+     * probe that does not complete within {@link #WATCHDOG_KEEPALIVE_TIMEOUT} is treated as failed.</p>
+     *
+     * <table border="1"><caption><b>Setting Information</b></caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.watchdog.keepAlive.enable</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>false</td></tr>
+     * </table>
+     */
+    WATCHDOG_KEEPALIVE_ENABLE( "chai.watchdog.keepAlive.enable", "false", true, SettingValidator.BOOLEAN_VALIDATOR ),
+
+    /**
+     * <p>Time a connection may remain idle (in ms) before a keep-alive probe is issued.  Only used when
+     * {@link #WATCHDOG_KEEPALIVE_ENABLE} is set to <i>true</i>.</p>
+     *
+     * <table border="1"><caption><b>Setting Information</b></caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.watchdog.keepAlive.interval</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>240000</td></tr>
+     * </table>
+     */
+    WATCHDOG_KEEPALIVE_INTERVAL( "chai.watchdog.keepAlive.interval", "240000", true, SettingValidator.INTEGER_VALIDATOR ),
+
+    /**
+     * <p>Operation used for keep-alive probes.  Permitted values are <i>ROOT_DSE</i>, which reads the rootDSE
+     * entry, and <i>WHO_AM_I</i>, which issues an RFC 4532 "Who am I?" extended operation.  Servers that do not
+     * support the extended operation are probed by reading the rootDSE instead.</p>
+     *
+     * <table border="1"><caption><b>Setting Information</b></caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.watchdog.keepAlive.probe</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>ROOT_DSE</td></tr>
+     * </table>
+     */
+    WATCHDOG_KEEPALIVE_PROBE( "chai.watchdog.keepAlive.probe", WatchdogKeepAliveProbe.ROOT_DSE.name(), true, ( SettingValidator.Validator ) value ->
+    {
+        for ( final WatchdogKeepAliveProbe probe : WatchdogKeepAliveProbe.values() )
+        {
+            if ( probe.name().equals( value ) )
+            {
+                return;
+            }
+        }
+
+        throw new IllegalArgumentException( "value must match a known keep-alive probe type" );
+    }
+    ),
+
+    /**
+     * <p>Maximum time (in ms) to wait for a keep-alive probe to complete.  A probe that does not complete in time is
+     * treated as failed and the connection is closed and replaced.  Only used when {@link #WATCHDOG_KEEPALIVE_ENABLE}
+     * is set to <i>true</i>.</p>
+     *
+     * <table border="1"><caption><b>Setting Information</b></caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.watchdog.keepAlive.timeout</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>10000</td></tr>
+     * </table>
+     */
+    WATCHDOG_KEEPALIVE_TIMEOUT( "chai.watchdog.keepAlive.timeout", "10000", true, SettingValidator.INTEGER_VALIDATOR ),
+
 
     /**
      * <p>Sets the Chai Provider to use a promiscuous SSL socket factory when making ldaps connections.  By default
@@ -387,9 +526,22 @@ public enum ChaiSetting
      * @see com.novell.ldapchai.provider.JNDIProviderImpl
      * @see com.novell.ldapchai.provider.JLDAPProviderImpl
      * @see ApacheLdapProviderImpl
+     * @see InMemoryProviderImpl
      */
     PROVIDER_IMPLEMENTATION( "chai.provider.implementation", JNDIProviderImpl.class.getName(), true, null ),
 
+    /**
+     * <p>Path of an LDIF file loaded into the directory of the {@link InMemoryProviderImpl} when it is first used.
+     * The file may contain change records, which are applied in order.  An empty value starts with an empty
+     * directory.</p>
+     *
+     * <table border="1"><caption><b>Setting Information</b></caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.inMemory.ldifFile</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td></td></tr>
+     * </table>
+     */
+    IN_MEMORY_LDIF_FILE( "chai.inMemory.ldifFile", "", true, null ),
+
     /**
      * <p>Enable NMAS support for Novell eDirectory.  NMAS support makes some operations more efficient,
      * and provides more descriptive error messages.  NMAS support requires libraries from the NMAS SDK.</p>
@@ -597,6 +749,30 @@ public enum ChaiSetting
      */
     LDAP_SEARCH_PAGING_SIZE( "chai.ldap.paging.size", "500", true, SettingValidator.INTEGER_VALIDATOR ),
 
+    /**
+     * <p>Maximum number of values added to or removed from a group's member attribute in a single modify operation
+     * by {@link com.novell.ldapchai.ChaiGroup#addMembers(java.util.Collection)} and
+     * {@link com.novell.ldapchai.ChaiGroup#removeMembers(java.util.Collection)}.</p>
+     *
+     * <table border="1"><caption><b>Setting Information</b></caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.group.membershipBatchSize</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>1000</td></tr>
+     * </table>
+     */
+    GROUP_MEMBERSHIP_BATCH_SIZE( "chai.group.membershipBatchSize", "1000", true, SettingValidator.INTEGER_VALIDATOR ),
+
+    /**
+     * <p>Number of concurrent operations used to update the membership attributes of the member entries
+     * during {@link com.novell.ldapchai.ChaiGroup#addMembers(java.util.Collection)} and
+     * {@link com.novell.ldapchai.ChaiGroup#removeMembers(java.util.Collection)}.</p>
+     *
+     * <table border="1"><caption><b>Setting Information</b></caption>
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.group.membershipThreads</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>4</td></tr>
+     * </table>
+     */
+    GROUP_MEMBERSHIP_THREADS( "chai.group.membershipThreads", "4", true, SettingValidator.INTEGER_VALIDATOR ),
+
     /**
      * <p>Distinguished name of the default password policy in OpenLDAP.</p>
      *
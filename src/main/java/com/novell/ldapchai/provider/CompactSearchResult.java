@@ -0,0 +1,621 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.provider;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Compact, immutable representation of a multi-valued search result, suitable for very large result sets.
+ *
+ * <p>Rather than a map per entry and a list per attribute, entries are stored in flat arrays:</p>
+ * <ul>
+ *     <li>Attribute names are stored once per result in a shared attribute table, each entry references
+ *     attributes by index.</li>
+ *     <li>Values of all entries are stored in a single array, each attribute of an entry references a range
+ *     of the value array.</li>
+ *     <li>Repeated values of an attribute, such as {@code objectClass} or {@code manager} values, share a single
+ *     {@code String} instance.  De-duplication is abandoned for attributes whose values are mostly unique.</li>
+ * </ul>
+ *
+ * <p>Attribute name lookups are case-insensitive.  {@link #asMap()} provides a read-only view in the same form
+ * as {@link ChaiProvider#searchMultiValues(String, com.novell.ldapchai.util.SearchHelper)}, entries of the view
+ * are created on access.</p>
+ *
+ * @see ChaiProvider#searchCompact(String, com.novell.ldapchai.util.SearchHelper)
+ */
+public final class CompactSearchResult
+{
+    private static final CompactSearchResult EMPTY = new Builder().build();
+
+    private final String[] attributeNames;
+    private final Map<String, Integer> attributeIndex;
+    private final String[] entryDNs;
+    private final int[] entryRunStart;
+    private final int[] runAttribute;
+    private final int[] runValueStart;
+    private final String[] values;
+    private final DnTable dnTable;
+
+    private CompactSearchResult( final Builder builder )
+    {
+        this.attributeNames = builder.attributeNames.toArray( new String[0] );
+        this.attributeIndex = Collections.unmodifiableMap( builder.attributeIndex );
+        this.entryDNs = Arrays.copyOf( builder.entryDNs, builder.entryCount );
+        this.entryRunStart = Arrays.copyOf( builder.entryRunStart, builder.entryCount + 1 );
+        this.entryRunStart[builder.entryCount] = builder.runCount;
+        this.runAttribute = Arrays.copyOf( builder.runAttribute, builder.runCount );
+        this.runValueStart = Arrays.copyOf( builder.runValueStart, builder.runCount + 1 );
+        this.runValueStart[builder.runCount] = builder.valueCount;
+        this.values = Arrays.copyOf( builder.values, builder.valueCount );
+        this.dnTable = builder.dnTable;
+    }
+
+    public static CompactSearchResult empty()
+    {
+        return EMPTY;
+    }
+
+    /**
+     * Create a compact result from a result in the form returned by
+     * {@link ChaiProvider#searchMultiValues(String, com.novell.ldapchai.util.SearchHelper)}.
+     *
+     * @param searchResults search results keyed by entry DN
+     * @return a new compact result
+     */
+    public static CompactSearchResult fromMap( final Map<String, Map<String, List<String>>> searchResults )
+    {
+        if ( searchResults == null || searchResults.isEmpty() )
+        {
+            return EMPTY;
+        }
+
+        final Builder builder = new Builder();
+        for ( final Map.Entry<String, Map<String, List<String>>> entry : searchResults.entrySet() )
+        {
+            if ( builder.startEntry( entry.getKey() ) && entry.getValue() != null )
+            {
+                for ( final Map.Entry<String, List<String>> attributeEntry : entry.getValue().entrySet() )
+                {
+                    builder.startAttribute( attributeEntry.getKey() );
+                    for ( final String value : attributeEntry.getValue() )
+                    {
+                        builder.addValue( value );
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Number of entries in the result.
+     *
+     * @return the entry count
+     */
+    public int size()
+    {
+        return entryDNs.length;
+    }
+
+    public boolean isEmpty()
+    {
+        return entryDNs.length == 0;
+    }
+
+    /**
+     * Get the DN of an entry.
+     *
+     * @param entryIndex index of the entry, from zero to {@link #size()} - 1.
+     * @return the entry DN
+     */
+    public String getEntryDN( final int entryIndex )
+    {
+        return entryDNs[entryIndex];
+    }
+
+    /**
+     * Get the index of an entry.
+     *
+     * @param entryDN DN of an entry
+     * @return the index of the entry, or -1 if the DN is not part of the result.
+     */
+    public int indexOf( final String entryDN )
+    {
+        return entryDN == null ? -1 : dnTable.find( entryDNs, entryDN );
+    }
+
+    /**
+     * Get the names of all attributes present in any entry of the result.
+     *
+     * @return an unmodifiable list of attribute names.
+     */
+    public List<String> getAttributeNames()
+    {
+        return Collections.unmodifiableList( Arrays.asList( attributeNames ) );
+    }
+
+    /**
+     * Get the values of an attribute for an entry.
+     *
+     * @param entryIndex    index of the entry
+     * @param attributeName name of the attribute, case-insensitive
+     * @return an unmodifiable list of values, empty if the entry has no values for the attribute.
+     */
+    public List<String> getValues( final int entryIndex, final String attributeName )
+    {
+        final int run = findRun( entryIndex, attributeName );
+        return run < 0 ? Collections.emptyList() : runValues( run );
+    }
+
+    /**
+     * Get the first value of an attribute for an entry.
+     *
+     * @param entryIndex    index of the entry
+     * @param attributeName name of the attribute, case-insensitive
+     * @return the first value, or null if the entry has no values for the attribute.
+     */
+    public String getFirstValue( final int entryIndex, final String attributeName )
+    {
+        final int run = findRun( entryIndex, attributeName );
+        return run < 0 || runValueStart[run] == runValueStart[run + 1] ? null : values[runValueStart[run]];
+    }
+
+    /**
+     * Get a read-only map view of the result.  The view does not copy the result, entry maps and value lists
+     * are created as they are accessed.
+     *
+     * @return a map containing entry DNs as keys, and a map of attribute names and values for each entry.
+     */
+    public Map<String, Map<String, List<String>>> asMap()
+    {
+        return new ResultMapView();
+    }
+
+    private int findRun( final int entryIndex, final String attributeName )
+    {
+        final Integer attribute = attributeName == null ? null : attributeIndex.get( attributeName );
+        if ( attribute == null )
+        {
+            return -1;
+        }
+        for ( int run = entryRunStart[entryIndex]; run < entryRunStart[entryIndex + 1]; run++ )
+        {
+            if ( runAttribute[run] == attribute )
+            {
+                return run;
+            }
+        }
+        return -1;
+    }
+
+    private List<String> runValues( final int run )
+    {
+        final int start = runValueStart[run];
+        final int end = runValueStart[run + 1];
+        return new AbstractList<String>()
+        {
+            @Override
+            public String get( final int index )
+            {
+                if ( index < 0 || index >= end - start )
+                {
+                    throw new IndexOutOfBoundsException( "index " + index + " out of range" );
+                }
+                return values[start + index];
+            }
+
+            @Override
+            public int size()
+            {
+                return end - start;
+            }
+        };
+    }
+
+    private class ResultMapView extends AbstractMap<String, Map<String, List<String>>>
+    {
+        @Override
+        public Set<Entry<String, Map<String, List<String>>>> entrySet()
+        {
+            return new AbstractSet<Entry<String, Map<String, List<String>>>>()
+            {
+                @Override
+                public Iterator<Entry<String, Map<String, List<String>>>> iterator()
+                {
+                    return new IndexIterator<>( entryDNs.length,
+                            index -> new SimpleImmutableEntry<>( entryDNs[index], new EntryMapView( index ) ) );
+                }
+
+                @Override
+                public int size()
+                {
+                    return entryDNs.length;
+                }
+            };
+        }
+
+        @Override
+        public int size()
+        {
+            return entryDNs.length;
+        }
+
+        @Override
+        public boolean containsKey( final Object key )
+        {
+            return key instanceof String && dnTable.find( entryDNs, ( String ) key ) >= 0;
+        }
+
+        @Override
+        public Map<String, List<String>> get( final Object key )
+        {
+            final int index = key instanceof String ? dnTable.find( entryDNs, ( String ) key ) : -1;
+            return index < 0 ? null : new EntryMapView( index );
+        }
+    }
+
+    private class EntryMapView extends AbstractMap<String, List<String>>
+    {
+        private final int entryIndex;
+
+        EntryMapView( final int entryIndex )
+        {
+            this.entryIndex = entryIndex;
+        }
+
+        @Override
+        public Set<Entry<String, List<String>>> entrySet()
+        {
+            final int firstRun = entryRunStart[entryIndex];
+            final int runCount = entryRunStart[entryIndex + 1] - firstRun;
+            return new AbstractSet<Entry<String, List<String>>>()
+            {
+                @Override
+                public Iterator<Entry<String, List<String>>> iterator()
+                {
+                    return new IndexIterator<>( runCount,
+                            index -> new SimpleImmutableEntry<>( attributeNames[runAttribute[firstRun + index]], runValues( firstRun + index ) ) );
+                }
+
+                @Override
+                public int size()
+                {
+                    return runCount;
+                }
+            };
+        }
+
+        @Override
+        public boolean containsKey( final Object key )
+        {
+            return key instanceof String && findRun( entryIndex, ( String ) key ) >= 0;
+        }
+
+        @Override
+        public List<String> get( final Object key )
+        {
+            final int run = key instanceof String ? findRun( entryIndex, ( String ) key ) : -1;
+            return run < 0 ? null : runValues( run );
+        }
+    }
+
+    private interface IndexFunction<T>
+    {
+        T apply( int index );
+    }
+
+    private static class IndexIterator<T> implements Iterator<T>
+    {
+        private final int size;
+        private final IndexFunction<T> function;
+        private int position;
+
+        IndexIterator( final int size, final IndexFunction<T> function )
+        {
+            this.size = size;
+            this.function = function;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return position < size;
+        }
+
+        @Override
+        public T next()
+        {
+            if ( position >= size )
+            {
+                throw new NoSuchElementException();
+            }
+            return function.apply( position++ );
+        }
+    }
+
+    /**
+     * Incrementally builds a {@link CompactSearchResult}.  Entries are added with {@link #startEntry(String)}, followed
+     * by {@link #startAttribute(String)} and {@link #addValue(String)} for each attribute of the entry.  An attribute
+     * started more than once for the same entry collects the values of all occurrences.
+     */
+    static class Builder
+    {
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final List<String> attributeNames = new ArrayList<>();
+        private final Map<String, Integer> attributeIndex = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+        private final List<ValuePool> valuePools = new ArrayList<>();
+        private final DnTable dnTable = new DnTable();
+
+        private String[] entryDNs = new String[INITIAL_CAPACITY];
+        private int[] entryRunStart = new int[INITIAL_CAPACITY + 1];
+        private int entryCount;
+
+        private int[] runAttribute = new int[INITIAL_CAPACITY];
+        private int[] runValueStart = new int[INITIAL_CAPACITY + 1];
+        private int runCount;
+
+        private String[] values = new String[INITIAL_CAPACITY];
+        private int valueCount;
+
+        private int currentAttribute = -1;
+        private boolean ignoreEntry;
+
+        /**
+         * Start a new entry.
+         *
+         * @param entryDN DN of the entry
+         * @return false if an entry with the same DN has already been added, in which case the attributes and values
+         *     of the entry are ignored.
+         */
+        boolean startEntry( final String entryDN )
+        {
+            currentAttribute = -1;
+            ignoreEntry = dnTable.find( entryDNs, entryDN ) >= 0;
+            if ( ignoreEntry )
+            {
+                return false;
+            }
+
+            if ( entryCount == entryDNs.length )
+            {
+                entryDNs = Arrays.copyOf( entryDNs, entryCount * 2 );
+                entryRunStart = Arrays.copyOf( entryRunStart, entryCount * 2 + 1 );
+            }
+            entryDNs[entryCount] = entryDN;
+            dnTable.add( entryDNs, entryCount );
+            entryRunStart[entryCount] = runCount;
+            entryCount++;
+            return true;
+        }
+
+        void startAttribute( final String attributeName )
+        {
+            if ( entryCount == 0 )
+            {
+                throw new IllegalStateException( "startEntry must be called before adding attributes" );
+            }
+            if ( ignoreEntry )
+            {
+                return;
+            }
+
+            Integer index = attributeIndex.get( attributeName );
+            if ( index == null )
+            {
+                index = attributeNames.size();
+                attributeNames.add( attributeName );
+                attributeIndex.put( attributeName, index );
+                valuePools.add( new ValuePool() );
+            }
+
+            // values of the same attribute may be delivered in more than one attribute.
+            for ( int run = entryRunStart[entryCount - 1]; run < runCount; run++ )
+            {
+                if ( runAttribute[run] == index )
+                {
+                    moveRunToEnd( run );
+                    currentAttribute = index;
+                    return;
+                }
+            }
+
+            if ( runCount == runAttribute.length )
+            {
+                runAttribute = Arrays.copyOf( runAttribute, runCount * 2 );
+                runValueStart = Arrays.copyOf( runValueStart, runCount * 2 + 1 );
+            }
+            runAttribute[runCount] = index;
+            runValueStart[runCount] = valueCount;
+            runCount++;
+            currentAttribute = index;
+        }
+
+        /**
+         * Move a run of the current entry behind the other runs of the entry, so further values can be appended
+         * to it.  Only values of the current entry are shifted.
+         */
+        private void moveRunToEnd( final int run )
+        {
+            if ( run == runCount - 1 )
+            {
+                return;
+            }
+
+            final int attribute = runAttribute[run];
+            final int start = runValueStart[run];
+            final int length = runValueStart[run + 1] - start;
+
+            final String[] runValues = Arrays.copyOfRange( values, start, start + length );
+            System.arraycopy( values, start + length, values, start, valueCount - start - length );
+            System.arraycopy( runValues, 0, values, valueCount - length, length );
+
+            for ( int next = run + 1; next < runCount; next++ )
+            {
+                runAttribute[next - 1] = runAttribute[next];
+                runValueStart[next - 1] = runValueStart[next] - length;
+            }
+            runAttribute[runCount - 1] = attribute;
+            runValueStart[runCount - 1] = valueCount - length;
+        }
+
+        void addValue( final String value )
+        {
+            if ( ignoreEntry )
+            {
+                return;
+            }
+            if ( currentAttribute < 0 )
+            {
+                throw new IllegalStateException( "startAttribute must be called before adding values" );
+            }
+
+            if ( valueCount == values.length )
+            {
+                values = Arrays.copyOf( values, valueCount * 2 );
+            }
+            values[valueCount++] = valuePools.get( currentAttribute ).dedupe( value );
+        }
+
+        int entryCount()
+        {
+            return entryCount;
+        }
+
+        CompactSearchResult build()
+        {
+            return new CompactSearchResult( this );
+        }
+    }
+
+    /**
+     * Per-attribute value pool that gives up once it is apparent values of the attribute are mostly unique.
+     */
+    private static class ValuePool
+    {
+        private static final int SAMPLE_SIZE = 1024;
+        private static final int MAX_POOL_SIZE = 1 << 16;
+
+        private Map<String, String> pool = new HashMap<>();
+        private int lookups;
+        private int hits;
+
+        String dedupe( final String value )
+        {
+            if ( pool == null || value == null )
+            {
+                return value;
+            }
+
+            lookups++;
+            String result = pool.get( value );
+            if ( result != null )
+            {
+                hits++;
+            }
+            else
+            {
+                result = value;
+                if ( pool.size() < MAX_POOL_SIZE )
+                {
+                    pool.put( value, value );
+                }
+            }
+
+            // stop pooling attributes where most values are distinct, such as cn or guid values.
+            if ( lookups == SAMPLE_SIZE && hits < lookups - hits )
+            {
+                pool = null;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Open addressing hash table of entry indexes, keyed by the DNs of an entry DN array.  Each slot holds an entry
+     * index plus one, so the index of a result costs two ints per entry rather than a map node and boxed index.
+     */
+    private static class DnTable
+    {
+        private int[] slots = new int[16];
+        private int count;
+
+        int find( final String[] entryDNs, final String entryDN )
+        {
+            final int mask = slots.length - 1;
+            for ( int slot = spread( entryDN.hashCode() ) & mask; slots[slot] != 0; slot = ( slot + 1 ) & mask )
+            {
+                final int index = slots[slot] - 1;
+                if ( entryDN.equals( entryDNs[index] ) )
+                {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        void add( final String[] entryDNs, final int index )
+        {
+            if ( ( count + 1 ) * 2 > slots.length )
+            {
+                final int[] oldSlots = slots;
+                slots = new int[oldSlots.length * 2];
+                for ( final int oldSlot : oldSlots )
+                {
+                    if ( oldSlot != 0 )
+                    {
+                        insert( entryDNs[oldSlot - 1], oldSlot );
+                    }
+                }
+            }
+            insert( entryDNs[index], index + 1 );
+            count++;
+        }
+
+        private void insert( final String entryDN, final int slotValue )
+        {
+            final int mask = slots.length - 1;
+            int slot = spread( entryDN.hashCode() ) & mask;
+            while ( slots[slot] != 0 )
+            {
+                slot = ( slot + 1 ) & mask;
+            }
+            slots[slot] = slotValue;
+        }
+
+        private static int spread( final int hash )
+        {
+            return hash ^ ( hash >>> 16 );
+        }
+    }
+}
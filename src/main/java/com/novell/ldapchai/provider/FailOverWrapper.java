@@ -67,8 +67,8 @@ class FailOverWrapper implements InvocationHandler
     private FailOverWrapper( final ChaiProviderFactory chaiProviderFactory, final ChaiConfiguration chaiConfig )
             throws ChaiUnavailableException
     {
-        final int settingMaxRetries = Integer.parseInt( chaiConfig.getSetting( ChaiSetting.FAILOVER_CONNECT_RETRIES ) );
-        final int settingMinFailbackTime = Integer.parseInt( chaiConfig.getSetting( ChaiSetting.FAILOVER_MINIMUM_FAILBACK_TIME ) );
+        final int settingMaxRetries = chaiConfig.getIntSetting( ChaiSetting.FAILOVER_CONNECT_RETRIES );
+        final int settingMinFailbackTime = chaiConfig.getIntSetting( ChaiSetting.FAILOVER_MINIMUM_FAILBACK_TIME );
         this.originalConfiguration = chaiConfig;
 
         final ChaiProviderImplementor failOverHelper;
@@ -0,0 +1,774 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.util.ChaiDn;
+import com.novell.ldapchai.util.internal.LdapFilter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Concurrent DN tree backing {@link InMemoryProviderImpl}.
+ *
+ * <p>Entries are held in a map keyed by normalized DN, and each entry holds the normalized DNs of its children.
+ * The attributes of an entry are an immutable snapshot that is replaced by each modification, so reads and
+ * searches never block.  Adds and deletes lock the parent and the entry, renames lock the whole tree.</p>
+ *
+ * <p>The rootDSE is always present.  It advertises the paged results control and lists the top level entries
+ * as naming contexts; other rootDSE values can be set by modifying the empty DN.</p>
+ */
+final class InMemoryDirectory
+{
+    static final String PAGED_RESULTS_CONTROL_OID = "1.2.840.113556.1.4.319";
+
+    private static final String ATTR_OBJECT_CLASS = "objectClass";
+    private static final String ATTR_NAMING_CONTEXTS = "namingContexts";
+
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+    private final ReadWriteLock treeLock = new ReentrantReadWriteLock();
+    private final Node rootDse;
+
+    private boolean loadAttempted;
+    private String loadError;
+
+    InMemoryDirectory()
+    {
+        final Map<String, Attribute> rootAttributes = new HashMap<>();
+        putValues( rootAttributes, ATTR_OBJECT_CLASS, Collections.singletonList( "top" ) );
+        putValues( rootAttributes, "supportedControl", Collections.singletonList( PAGED_RESULTS_CONTROL_OID ) );
+        putValues( rootAttributes, "supportedLDAPVersion", Collections.singletonList( "3" ) );
+        putValues( rootAttributes, "vendorName", Collections.singletonList( "LDAP Chai" ) );
+        rootDse = new Node( "", "", null, rootAttributes );
+        nodes.put( "", rootDse );
+    }
+
+    /**
+     * Load initial content exactly once.  Later callers wait for the first load to complete, and fail with the same
+     * error if it failed.
+     *
+     * @param loader loads the content, typically by importing an LDIF file
+     * @throws Exception if this or an earlier load failed
+     */
+    synchronized void loadOnce( final Loader loader )
+            throws Exception
+    {
+        if ( !loadAttempted )
+        {
+            loadAttempted = true;
+            try
+            {
+                loader.load();
+            }
+            catch ( Exception e )
+            {
+                loadError = e.getMessage();
+                throw e;
+            }
+        }
+        else if ( loadError != null )
+        {
+            throw new IllegalStateException( "initial load of in-memory directory failed: " + loadError );
+        }
+    }
+
+    int size()
+    {
+        return nodes.size() - 1;
+    }
+
+    Node read( final String dn )
+            throws ChaiOperationException
+    {
+        final Node node = nodes.get( normalize( dn ) );
+        if ( node == null )
+        {
+            throw noSuchEntry( dn );
+        }
+        return node;
+    }
+
+    void add( final String dn, final Map<String, Attribute> attributes )
+            throws ChaiOperationException
+    {
+        final ChaiDn chaiDn = parse( dn );
+        if ( chaiDn.isRoot() )
+        {
+            throw new ChaiOperationException( "entry already exists: rootDSE", ChaiError.UNKNOWN, true, false );
+        }
+
+        // the naming attribute value is always present in the entry
+        final String rdnKey = key( chaiDn.getRdnType() );
+        final Attribute rdnAttribute = attributes.get( rdnKey );
+        if ( rdnAttribute == null )
+        {
+            putValues( attributes, chaiDn.getRdnType(), Collections.singletonList( chaiDn.getRdnValue() ) );
+        }
+        else if ( indexOf( rdnAttribute.values, chaiDn.getRdnValue() ) < 0 )
+        {
+            final List<String> values = new ArrayList<>( rdnAttribute.values );
+            values.add( chaiDn.getRdnValue() );
+            putValues( attributes, rdnAttribute.name, values );
+        }
+
+        treeLock.readLock().lock();
+        try
+        {
+            final Node parent = parentFor( chaiDn );
+            final Node node = new Node( dn, chaiDn.toNormalizedString(), parent.normalizedDn, attributes );
+            synchronized ( parent )
+            {
+                if ( parent.deleted )
+                {
+                    throw noSuchEntry( chaiDn.getParent().toString() );
+                }
+                if ( nodes.putIfAbsent( node.normalizedDn, node ) != null )
+                {
+                    throw new ChaiOperationException( "entry already exists: " + dn, ChaiError.UNKNOWN, true, false );
+                }
+                parent.children.add( node.normalizedDn );
+                if ( parent == rootDse )
+                {
+                    updateNamingContexts();
+                }
+            }
+        }
+        finally
+        {
+            treeLock.readLock().unlock();
+        }
+    }
+
+    void delete( final String dn )
+            throws ChaiOperationException
+    {
+        final String normalizedDn = normalize( dn );
+        if ( normalizedDn.isEmpty() )
+        {
+            throw new ChaiOperationException( "the rootDSE can not be deleted", ChaiError.UNSUPPORTED_OPERATION, true, false );
+        }
+
+        treeLock.readLock().lock();
+        try
+        {
+            final Node node = read( dn );
+            final Node parent = nodes.get( node.parentKey );
+            synchronized ( parent )
+            {
+                synchronized ( node )
+                {
+                    if ( node.deleted )
+                    {
+                        throw noSuchEntry( dn );
+                    }
+                    if ( !node.children.isEmpty() )
+                    {
+                        throw new ChaiOperationException( "operation not allowed on non-leaf entry: " + dn, ChaiError.UNKNOWN, true, false );
+                    }
+                    node.deleted = true;
+                    nodes.remove( normalizedDn );
+                    parent.children.remove( normalizedDn );
+                    if ( parent == rootDse )
+                    {
+                        updateNamingContexts();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            treeLock.readLock().unlock();
+        }
+    }
+
+    void rename( final String dn, final String newRdn, final String newParentDn )
+            throws ChaiOperationException
+    {
+        final ChaiDn oldDn = parse( dn );
+        final ChaiDn newParent = parse( newParentDn );
+        final String newDnString = newParent.isRoot() ? newRdn : newRdn + "," + newParentDn;
+        final ChaiDn newDn = parse( newDnString );
+        if ( oldDn.isRoot() || newDn.isRoot() )
+        {
+            throw new ChaiOperationException( "the rootDSE can not be renamed", ChaiError.UNSUPPORTED_OPERATION, true, false );
+        }
+        if ( newParent.equals( oldDn ) || newParent.isDescendantOf( oldDn ) )
+        {
+            throw new ChaiOperationException( "an entry can not be moved below itself: " + dn, ChaiError.UNSUPPORTED_OPERATION, true, false );
+        }
+
+        treeLock.writeLock().lock();
+        try
+        {
+            final Node node = read( dn );
+            final Node parent = newParent.isRoot() ? rootDse : read( newParentDn );
+            if ( !newDn.equals( oldDn ) && nodes.containsKey( newDn.toNormalizedString() ) )
+            {
+                throw new ChaiOperationException( "entry already exists: " + newDnString, ChaiError.UNKNOWN, true, false );
+            }
+
+            // replace the old naming value with the new one
+            final Map<String, Attribute> attributes = new HashMap<>( node.attributes );
+            removeValue( attributes, oldDn.getRdnType(), oldDn.getRdnValue(), false );
+            final Attribute rdnAttribute = attributes.get( key( newDn.getRdnType() ) );
+            final List<String> rdnValues = rdnAttribute == null ? new ArrayList<>() : new ArrayList<>( rdnAttribute.values );
+            if ( indexOf( rdnValues, newDn.getRdnValue() ) < 0 )
+            {
+                rdnValues.add( newDn.getRdnValue() );
+            }
+            putValues( attributes, rdnAttribute == null ? newDn.getRdnType() : rdnAttribute.name, rdnValues );
+
+            nodes.get( node.parentKey ).children.remove( node.normalizedDn );
+            moveSubtree( node, newDnString, newDn.toNormalizedString(), parent.normalizedDn, attributes );
+            parent.children.add( newDn.toNormalizedString() );
+            updateNamingContexts();
+        }
+        finally
+        {
+            treeLock.writeLock().unlock();
+        }
+    }
+
+    void modify( final String dn, final Modification modification )
+            throws ChaiOperationException
+    {
+        final Node node = read( dn );
+        synchronized ( node )
+        {
+            if ( node.deleted )
+            {
+                throw noSuchEntry( dn );
+            }
+            final Map<String, Attribute> attributes = new HashMap<>( node.attributes );
+            modification.apply( attributes );
+            node.attributes = Collections.unmodifiableMap( attributes );
+        }
+    }
+
+    /**
+     * Search the tree.  Candidates are examined in pages of {@code pageSize} entries and the time limit is checked
+     * between pages.  The rootDSE is only returned by base scope searches.
+     *
+     * @param baseDN base of the search
+     * @param searchScope scope of the search
+     * @param filter filter to evaluate
+     * @param maxResults maximum number of results, or zero for unlimited
+     * @param timeLimitMs time limit in milliseconds, or zero for unlimited
+     * @param pageSize number of candidates examined between time limit checks
+     * @return the matching entries in tree order
+     * @throws ChaiOperationException if the base does not exist or the time limit is exceeded
+     */
+    List<Node> search(
+            final String baseDN,
+            final SearchScope searchScope,
+            final LdapFilter filter,
+            final int maxResults,
+            final int timeLimitMs,
+            final int pageSize
+    )
+            throws ChaiOperationException
+    {
+        final Node base = read( baseDN );
+        final List<Node> results = new ArrayList<>();
+        if ( searchScope == SearchScope.BASE )
+        {
+            if ( filter.matches( base::values ) )
+            {
+                results.add( base );
+            }
+            return results;
+        }
+
+        final long deadline = timeLimitMs > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeLimitMs ) : 0;
+        final int effectivePageSize = Math.max( 1, pageSize );
+        final Deque<Node> pending = new ArrayDeque<>();
+        pushChildren( pending, base );
+        if ( searchScope == SearchScope.SUBTREE && base != rootDse )
+        {
+            pending.push( base );
+        }
+
+        int examined = 0;
+        while ( !pending.isEmpty() )
+        {
+            final Node node = pending.pop();
+            if ( filter.matches( node::values ) )
+            {
+                results.add( node );
+                if ( maxResults > 0 && results.size() >= maxResults )
+                {
+                    return results;
+                }
+            }
+            if ( searchScope == SearchScope.SUBTREE && node != base )
+            {
+                pushChildren( pending, node );
+            }
+
+            examined++;
+            if ( deadline != 0 && examined % effectivePageSize == 0 && System.nanoTime() - deadline > 0 )
+            {
+                throw new ChaiOperationException( "time limit exceeded searching " + baseDN, ChaiError.UNKNOWN, false, false );
+            }
+        }
+        return results;
+    }
+
+    private void pushChildren( final Deque<Node> pending, final Node node )
+    {
+        for ( final String childKey : node.children )
+        {
+            final Node child = nodes.get( childKey );
+            if ( child != null )
+            {
+                pending.push( child );
+            }
+        }
+    }
+
+    private Node parentFor( final ChaiDn chaiDn )
+            throws ChaiOperationException
+    {
+        final ChaiDn parentDn = chaiDn.getParent();
+        final Node parent = nodes.get( parentDn.toNormalizedString() );
+        if ( parent != null )
+        {
+            return parent;
+        }
+
+        // an entry without a parent becomes a new naming context, unless it would be an orphan below an existing entry
+        ChaiDn ancestor = parentDn.getParent();
+        while ( ancestor != null && !ancestor.isRoot() )
+        {
+            if ( nodes.containsKey( ancestor.toNormalizedString() ) )
+            {
+                throw noSuchEntry( parentDn.toString() );
+            }
+            ancestor = ancestor.getParent();
+        }
+        return rootDse;
+    }
+
+    private void moveSubtree(
+            final Node node,
+            final String newDn,
+            final String newNormalizedDn,
+            final String newParentKey,
+            final Map<String, Attribute> attributes
+    )
+    {
+        final Node newNode = new Node( newDn, newNormalizedDn, newParentKey, attributes );
+        synchronized ( node )
+        {
+            node.deleted = true;
+        }
+        nodes.remove( node.normalizedDn );
+        nodes.put( newNormalizedDn, newNode );
+
+        for ( final String childKey : node.children )
+        {
+            final Node child = nodes.get( childKey );
+            if ( child != null )
+            {
+                final String childDn = ChaiDn.parse( child.dn ).getRdn() + "," + newDn;
+                final String childNormalizedDn = ChaiDn.normalize( childDn );
+                newNode.children.add( childNormalizedDn );
+                moveSubtree( child, childDn, childNormalizedDn, newNormalizedDn, child.attributes );
+            }
+        }
+    }
+
+    private void updateNamingContexts()
+    {
+        synchronized ( rootDse )
+        {
+            final List<String> namingContexts = new ArrayList<>();
+            for ( final String childKey : rootDse.children )
+            {
+                final Node child = nodes.get( childKey );
+                if ( child != null )
+                {
+                    namingContexts.add( child.dn );
+                }
+            }
+            final Map<String, Attribute> attributes = new HashMap<>( rootDse.attributes );
+            if ( namingContexts.isEmpty() )
+            {
+                attributes.remove( key( ATTR_NAMING_CONTEXTS ) );
+            }
+            else
+            {
+                putValues( attributes, ATTR_NAMING_CONTEXTS, namingContexts );
+            }
+            rootDse.attributes = Collections.unmodifiableMap( attributes );
+        }
+    }
+
+    /**
+     * Add or replace string values of an attribute.
+     *
+     * @param attributes attributes being modified
+     * @param name attribute name
+     * @param values values to write
+     * @param replace if true, existing values are replaced, otherwise values are added to the existing values
+     * @throws ChaiOperationException if a value being added is already present
+     */
+    static void writeValues( final Map<String, Attribute> attributes, final String name, final Collection<String> values, final boolean replace )
+            throws ChaiOperationException
+    {
+        final Attribute existing = replace ? null : attributes.get( key( name ) );
+        final List<String> newValues = existing == null ? new ArrayList<>( values.size() ) : new ArrayList<>( existing.values );
+        for ( final String value : values )
+        {
+            if ( indexOf( newValues, value ) >= 0 )
+            {
+                throw new ChaiOperationException( "attribute or value exists: " + name + "=" + value, ChaiError.UNKNOWN, true, false );
+            }
+            newValues.add( value );
+        }
+
+        if ( newValues.isEmpty() )
+        {
+            attributes.remove( key( name ) );
+        }
+        else if ( existing != null && existing.binaryValues != null )
+        {
+            final List<byte[]> newBinaryValues = new ArrayList<>( existing.binaryValues );
+            for ( final String value : values )
+            {
+                newBinaryValues.add( value.getBytes( StandardCharsets.UTF_8 ) );
+            }
+            attributes.put( key( name ), Attribute.binary( existing.name, newBinaryValues ) );
+        }
+        else
+        {
+            putValues( attributes, existing == null ? name : existing.name, newValues );
+        }
+    }
+
+    /**
+     * Add or replace binary values of an attribute.
+     *
+     * @param attributes attributes being modified
+     * @param name attribute name
+     * @param values values to write
+     * @param replace if true, existing values are replaced, otherwise values are added to the existing values
+     * @throws ChaiOperationException if a value being added is already present
+     */
+    static void writeBinaryValues( final Map<String, Attribute> attributes, final String name, final byte[][] values, final boolean replace )
+            throws ChaiOperationException
+    {
+        final Attribute existing = replace ? null : attributes.get( key( name ) );
+        final List<byte[]> newValues = new ArrayList<>();
+        if ( existing != null )
+        {
+            newValues.addAll( existing.binaryValues() );
+        }
+        for ( final byte[] value : values )
+        {
+            if ( indexOf( newValues, value ) >= 0 )
+            {
+                throw new ChaiOperationException( "attribute or value exists: " + name, ChaiError.UNKNOWN, true, false );
+            }
+            newValues.add( value.clone() );
+        }
+
+        if ( newValues.isEmpty() )
+        {
+            attributes.remove( key( name ) );
+        }
+        else
+        {
+            attributes.put( key( name ), Attribute.binary( existing == null ? name : existing.name, newValues ) );
+        }
+    }
+
+    /**
+     * Remove a string value, or the whole attribute.
+     *
+     * @param attributes attributes being modified
+     * @param name attribute name
+     * @param value value to remove, or null to remove all values
+     * @param required if true, a missing attribute or value is an error
+     * @throws ChaiOperationException if a required attribute or value is not present
+     */
+    static void removeValue( final Map<String, Attribute> attributes, final String name, final String value, final boolean required )
+            throws ChaiOperationException
+    {
+        final Attribute existing = attributes.get( key( name ) );
+        if ( existing == null )
+        {
+            if ( required )
+            {
+                throw new ChaiOperationException( "no such attribute: " + name, ChaiError.NO_SUCH_ATTRIBUTE, true, false );
+            }
+            return;
+        }
+
+        if ( value == null )
+        {
+            attributes.remove( key( name ) );
+            return;
+        }
+
+        final int index = indexOf( existing.values, value );
+        if ( index < 0 )
+        {
+            if ( required )
+            {
+                throw new ChaiOperationException( "no such value: " + name + "=" + value, ChaiError.NO_SUCH_VALUE, true, false );
+            }
+            return;
+        }
+        removeIndex( attributes, existing, index );
+    }
+
+    /**
+     * Remove a binary value.
+     *
+     * @param attributes attributes being modified
+     * @param name attribute name
+     * @param value value to remove
+     * @throws ChaiOperationException if the attribute or value is not present
+     */
+    static void removeBinaryValue( final Map<String, Attribute> attributes, final String name, final byte[] value )
+            throws ChaiOperationException
+    {
+        final Attribute existing = attributes.get( key( name ) );
+        if ( existing == null )
+        {
+            throw new ChaiOperationException( "no such attribute: " + name, ChaiError.NO_SUCH_ATTRIBUTE, true, false );
+        }
+
+        final int index = indexOf( existing.binaryValues(), value );
+        if ( index < 0 )
+        {
+            throw new ChaiOperationException( "no such value: " + name, ChaiError.NO_SUCH_VALUE, true, false );
+        }
+        removeIndex( attributes, existing, index );
+    }
+
+    private static void removeIndex( final Map<String, Attribute> attributes, final Attribute existing, final int index )
+    {
+        if ( existing.values.size() == 1 )
+        {
+            attributes.remove( key( existing.name ) );
+        }
+        else if ( existing.binaryValues != null )
+        {
+            final List<byte[]> newValues = new ArrayList<>( existing.binaryValues );
+            newValues.remove( index );
+            attributes.put( key( existing.name ), Attribute.binary( existing.name, newValues ) );
+        }
+        else
+        {
+            final List<String> newValues = new ArrayList<>( existing.values );
+            newValues.remove( index );
+            putValues( attributes, existing.name, newValues );
+        }
+    }
+
+    static void putValues( final Map<String, Attribute> attributes, final String name, final List<String> values )
+    {
+        attributes.put( key( name ), new Attribute( name, Collections.unmodifiableList( new ArrayList<>( values ) ), null ) );
+    }
+
+    static String key( final String attributeName )
+    {
+        return attributeName.toLowerCase( Locale.ROOT );
+    }
+
+    private static int indexOf( final List<String> values, final String value )
+    {
+        for ( int i = 0; i < values.size(); i++ )
+        {
+            if ( values.get( i ).equalsIgnoreCase( value ) )
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf( final List<byte[]> values, final byte[] value )
+    {
+        for ( int i = 0; i < values.size(); i++ )
+        {
+            if ( Arrays.equals( values.get( i ), value ) )
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String normalize( final String dn )
+            throws ChaiOperationException
+    {
+        return parse( dn ).toNormalizedString();
+    }
+
+    private static ChaiDn parse( final String dn )
+            throws ChaiOperationException
+    {
+        try
+        {
+            return ChaiDn.parse( dn );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new ChaiOperationException( "invalid dn syntax: " + e.getMessage(), ChaiError.UNKNOWN, true, false );
+        }
+    }
+
+    private static ChaiOperationException noSuchEntry( final String dn )
+    {
+        return new ChaiOperationException( "no such entry: " + dn, ChaiError.NO_SUCH_ENTRY, true, false );
+    }
+
+    interface Loader
+    {
+        void load()
+                throws Exception;
+    }
+
+    interface Modification
+    {
+        void apply( Map<String, Attribute> attributes )
+                throws ChaiOperationException;
+    }
+
+    /**
+     * Immutable attribute of an entry.  Values written as binary keep their bytes, and are also held decoded as
+     * UTF-8 for string reads and filter evaluation.
+     */
+    static final class Attribute
+    {
+        private final String name;
+        private final List<String> values;
+        private final List<byte[]> binaryValues;
+
+        private Attribute( final String name, final List<String> values, final List<byte[]> binaryValues )
+        {
+            this.name = name;
+            this.values = values;
+            this.binaryValues = binaryValues;
+        }
+
+        private static Attribute binary( final String name, final List<byte[]> binaryValues )
+        {
+            final List<String> values = new ArrayList<>( binaryValues.size() );
+            for ( final byte[] value : binaryValues )
+            {
+                values.add( new String( value, StandardCharsets.UTF_8 ) );
+            }
+            return new Attribute( name, Collections.unmodifiableList( values ), Collections.unmodifiableList( binaryValues ) );
+        }
+
+        String getName()
+        {
+            return name;
+        }
+
+        List<String> getValues()
+        {
+            return values;
+        }
+
+        /**
+         * Get the values as bytes, string values are encoded as UTF-8.  The arrays must not be modified.
+         *
+         * @return the values
+         */
+        List<byte[]> binaryValues()
+        {
+            if ( binaryValues != null )
+            {
+                return binaryValues;
+            }
+            final List<byte[]> encoded = new ArrayList<>( values.size() );
+            for ( final String value : values )
+            {
+                encoded.add( value.getBytes( StandardCharsets.UTF_8 ) );
+            }
+            return encoded;
+        }
+    }
+
+    /**
+     * Entry of the tree.
+     */
+    static final class Node
+    {
+        private final String dn;
+        private final String normalizedDn;
+        private final String parentKey;
+        private final Set<String> children = ConcurrentHashMap.newKeySet();
+        private volatile Map<String, Attribute> attributes;
+
+        // guarded by this
+        private boolean deleted;
+
+        private Node( final String dn, final String normalizedDn, final String parentKey, final Map<String, Attribute> attributes )
+        {
+            this.dn = dn;
+            this.normalizedDn = normalizedDn;
+            this.parentKey = parentKey;
+            this.attributes = Collections.unmodifiableMap( new HashMap<>( attributes ) );
+        }
+
+        String getDn()
+        {
+            return dn;
+        }
+
+        Map<String, Attribute> getAttributes()
+        {
+            return attributes;
+        }
+
+        Attribute attribute( final String name )
+        {
+            return attributes.get( key( name ) );
+        }
+
+        List<String> values( final String name )
+        {
+            final Attribute attribute = attributes.get( key( name ) );
+            return attribute == null ? null : attribute.values;
+        }
+    }
+}
@@ -0,0 +1,630 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.ChaiConstant;
+import com.novell.ldapchai.ChaiRequestControl;
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.util.LdapAttributeMap;
+import com.novell.ldapchai.util.LdifImporter;
+import com.novell.ldapchai.util.SearchHelper;
+import com.novell.ldapchai.util.internal.ChaiLogger;
+import com.novell.ldapchai.util.internal.LdapFilter;
+
+import javax.naming.ldap.ExtendedRequest;
+import javax.naming.ldap.ExtendedResponse;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>In-memory {@code ChaiProvider} implementation, for tests, benchmarks and embedded use without a directory
+ * server.</p>
+ *
+ * <p>This implementation can be used by setting {@link ChaiSetting#PROVIDER_IMPLEMENTATION}
+ * to {@code com.novell.ldapchai.provider.InMemoryProviderImpl}.  All providers of a {@link ChaiProviderFactory} with
+ * the same first {@link ChaiSetting#BIND_URLS} value share one directory, which lives until the factory is closed.
+ * The bind credentials are not checked.  Initial content is loaded from {@link ChaiSetting#IN_MEMORY_LDIF_FILE}
+ * when the directory is first used, further content can be loaded with {@link LdifImporter}.</p>
+ *
+ * <p>Searches evaluate RFC 4515 filters with base, one level and subtree scope.  Results are examined in pages of
+ * {@link ChaiSetting#LDAP_SEARCH_PAGING_SIZE} entries with the time limit checked between pages, and like the
+ * other providers a search that reaches its size limit returns the results found so far.  Values are compared
+ * without regard to case, and extensible match filters and extended operations are not supported.</p>
+ *
+ * <p>Errors are reported with the same {@link ChaiError} codes as the LDAP providers, such as
+ * {@link ChaiError#NO_SUCH_ENTRY}, {@link ChaiError#NO_SUCH_ATTRIBUTE} and {@link ChaiError#NO_SUCH_VALUE}.</p>
+ */
+public class InMemoryProviderImpl extends AbstractProvider implements ChaiProviderImplementor
+{
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger( InMemoryProviderImpl.class );
+
+    private static final int MAX_FILTER_CACHE_SIZE = 1000;
+
+    private static final Map<String, LdapFilter> FILTER_CACHE = new ConcurrentHashMap<>();
+
+    private InMemoryDirectory directory;
+    private String connectionURL;
+
+    InMemoryProviderImpl()
+    {
+        super();
+    }
+
+    @Override
+    public void init( final ChaiConfiguration chaiConfig, final ChaiProviderFactory providerFactory )
+            throws ChaiUnavailableException, IllegalStateException
+    {
+        super.init( chaiConfig, providerFactory );
+        connectionURL = chaiConfig.bindURLsAsList().get( 0 );
+        directory = providerFactory.getCentralService().getInMemoryDirectory( connectionURL );
+
+        final String ldifFile = chaiConfig.getSetting( ChaiSetting.IN_MEMORY_LDIF_FILE );
+        if ( ldifFile != null && !ldifFile.isEmpty() )
+        {
+            try
+            {
+                directory.loadOnce( () ->
+                {
+                    final LdifImporter.ImportResult importResult = LdifImporter.builder( this ).build().importLdif( Paths.get( ldifFile ) );
+                    LOGGER.debug( () -> "loaded in-memory directory " + connectionURL + " from " + ldifFile + ": " + importResult );
+                } );
+            }
+            catch ( Exception e )
+            {
+                throw new ChaiUnavailableException( "unable to load ldif file " + ldifFile + ": " + e.getMessage(), ChaiError.UNKNOWN, true, false );
+            }
+        }
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    public boolean compareStringAttribute( final String entryDN, final String attribute, final String value )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().compareStringAttribute( entryDN, attribute, value );
+
+        final List<String> values = directory.read( entryDN ).values( attribute );
+        if ( values != null )
+        {
+            for ( final String existingValue : values )
+            {
+                if ( existingValue.equalsIgnoreCase( value ) )
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.ModifyOperation
+    public void createEntry( final String entryDN, final String baseObjectClass, final Map<String, String> stringAttributes )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().createEntry( entryDN, baseObjectClass, stringAttributes );
+
+        createEntry( entryDN, Collections.singleton( baseObjectClass ), stringAttributes );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.ModifyOperation
+    public void createEntry( final String entryDN, final Set<String> baseObjectClasses, final Map<String, String> stringAttributes )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().createEntry( entryDN, baseObjectClasses, stringAttributes );
+
+        final Map<String, InMemoryDirectory.Attribute> attributes = new HashMap<>();
+        InMemoryDirectory.writeValues( attributes, ChaiConstant.ATTR_LDAP_OBJECTCLASS, new LinkedHashSet<>( baseObjectClasses ), true );
+        if ( stringAttributes != null )
+        {
+            for ( final Map.Entry<String, String> entry : stringAttributes.entrySet() )
+            {
+                InMemoryDirectory.writeValues( attributes, entry.getKey(), Collections.singleton( entry.getValue() ), false );
+            }
+        }
+        directory.add( entryDN, attributes );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.ModifyOperation
+    public void renameEntry( final String entryDN, final String newRDN, final String newParentDN )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().renameEntry( entryDN, newRDN, newParentDN );
+
+        directory.rename( entryDN, newRDN, newParentDN );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.ModifyOperation
+    public void deleteEntry( final String entryDN )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().deleteEntry( entryDN );
+
+        directory.delete( entryDN );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.ModifyOperation
+    public void deleteStringAttributeValue( final String entryDN, final String attribute, final String value )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().deleteStringAttributeValue( entryDN, attribute, value );
+
+        directory.modify( entryDN, attributes -> InMemoryDirectory.removeValue( attributes, attribute, value, true ) );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.ModifyOperation
+    public void deleteStringAttributeValues( final String entryDN, final String attribute, final Set<String> values )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().deleteStringAttributeValues( entryDN, attribute, values );
+
+        directory.modify( entryDN, attributes ->
+        {
+            for ( final String value : values )
+            {
+                InMemoryDirectory.removeValue( attributes, attribute, value, true );
+            }
+        } );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.ModifyOperation
+    public ExtendedResponse extendedOperation( final ExtendedRequest request )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().extendedOperation( request );
+
+        throw new ChaiOperationException( "extended operations are not supported by the in-memory provider: " + request.getID(),
+                ChaiError.UNSUPPORTED_OPERATION, true, false );
+    }
+
+    @Override
+    public ProviderStatistics getProviderStatistics()
+    {
+        return null;
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    public byte[][] readMultiByteAttribute( final String entryDN, final String attribute )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().readMultiByteAttribute( entryDN, attribute );
+
+        final InMemoryDirectory.Attribute values = directory.read( entryDN ).attribute( attribute );
+        if ( values == null )
+        {
+            return new byte[0][0];
+        }
+
+        final List<byte[]> binaryValues = values.binaryValues();
+        final byte[][] returnValues = new byte[binaryValues.size()][];
+        for ( int i = 0; i < returnValues.length; i++ )
+        {
+            returnValues[i] = binaryValues.get( i ).clone();
+        }
+        return returnValues;
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    public Set<String> readMultiStringAttribute( final String entryDN, final String attribute )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().readMultiStringAttribute( entryDN, attribute );
+
+        final List<String> values = directory.read( entryDN ).values( attribute );
+        return values == null ? Collections.emptySet() : new LinkedHashSet<>( values );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    public String readStringAttribute( final String entryDN, final String attribute )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().readStringAttribute( entryDN, attribute );
+
+        final List<String> values = directory.read( entryDN ).values( attribute );
+        return values == null ? null : values.get( 0 );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    public Map<String, String> readStringAttributes( final String entryDN, final Set<String> attributes )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().readStringAttributes( entryDN, attributes );
+
+        final InMemoryDirectory.Node node = directory.read( entryDN );
+        final Map<String, String> returnProps = new LdapAttributeMap<>();
+        for ( final InMemoryDirectory.Attribute attribute : selectAttributes( node, attributes == null || attributes.isEmpty() ? null : attributes ) )
+        {
+            returnProps.put( attribute.getName(), attribute.getValues().get( 0 ) );
+        }
+        return returnProps;
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.ModifyOperation
+    public void replaceStringAttribute( final String entryDN, final String attributeName, final String oldValue, final String newValue )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().replaceStringAttribute( entryDN, attributeName, oldValue, newValue );
+
+        directory.modify( entryDN, attributes ->
+        {
+            InMemoryDirectory.removeValue( attributes, attributeName, oldValue, true );
+            InMemoryDirectory.writeValues( attributes, attributeName, Collections.singleton( newValue ), false );
+        } );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.SearchOperation
+    public Map<String, Map<String, String>> search( final String baseDN, final SearchHelper searchHelper )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().search( baseDN, searchHelper );
+
+        final Map<String, Map<String, String>> results = new LinkedHashMap<>();
+        for ( final InMemoryDirectory.Node node : executeSearch( baseDN, searchHelper ) )
+        {
+            final Collection<InMemoryDirectory.Attribute> attributes = selectAttributes( node, searchHelper.getAttributes() );
+            final Map<String, String> entryValues = new LdapAttributeMap<>( attributes.size() );
+            for ( final InMemoryDirectory.Attribute attribute : attributes )
+            {
+                entryValues.put( attribute.getName(), attribute.getValues().get( 0 ) );
+            }
+            results.put( node.getDn(), entryValues );
+        }
+        return Collections.unmodifiableMap( results );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.SearchOperation
+    public Map<String, Map<String, String>> search( final String baseDN, final String filter, final Set<String> attributes, final SearchScope searchScope )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().search( baseDN, filter, attributes, searchScope );
+
+        final SearchHelper searchHelper = new SearchHelper();
+        searchHelper.setFilter( filter );
+        searchHelper.setAttributes( attributes );
+        searchHelper.setSearchScope( searchScope );
+        return search( baseDN, searchHelper );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.SearchOperation
+    public Map<String, Map<String, List<String>>> searchMultiValues( final String baseDN, final SearchHelper searchHelper )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().searchMultiValues( baseDN, searchHelper );
+
+        final Map<String, Map<String, List<String>>> results = new LinkedHashMap<>();
+        for ( final InMemoryDirectory.Node node : executeSearch( baseDN, searchHelper ) )
+        {
+            final Collection<InMemoryDirectory.Attribute> attributes = selectAttributes( node, searchHelper.getAttributes() );
+            final Map<String, List<String>> entryValues = new LdapAttributeMap<>( attributes.size() );
+            for ( final InMemoryDirectory.Attribute attribute : attributes )
+            {
+                entryValues.put( attribute.getName(), attribute.getValues() );
+            }
+            results.put( node.getDn(), entryValues );
+        }
+        return Collections.unmodifiableMap( results );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.SearchOperation
+    public void searchStream( final String baseDN, final SearchHelper searchHelper, final SearchResultHandler resultHandler )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().searchStream( baseDN, searchHelper, resultHandler );
+
+        for ( final InMemoryDirectory.Node node : executeSearch( baseDN, searchHelper ) )
+        {
+            final Collection<InMemoryDirectory.Attribute> attributes = selectAttributes( node, searchHelper.getAttributes() );
+            final Map<String, List<String>> entryValues = new LdapAttributeMap<>( attributes.size() );
+            for ( final InMemoryDirectory.Attribute attribute : attributes )
+            {
+                entryValues.put( attribute.getName(), attribute.getValues() );
+            }
+            resultHandler.handleEntry( node.getDn(), Collections.unmodifiableMap( entryValues ) );
+        }
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.SearchOperation
+    public Map<String, Map<String, byte[][]>> searchMultiByteValues( final String baseDN, final SearchHelper searchHelper )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().searchMultiByteValues( baseDN, searchHelper );
+
+        final Map<String, Map<String, byte[][]>> results = new LinkedHashMap<>();
+        for ( final InMemoryDirectory.Node node : executeSearch( baseDN, searchHelper ) )
+        {
+            final Collection<InMemoryDirectory.Attribute> attributes = selectAttributes( node, searchHelper.getAttributes() );
+            final Map<String, byte[][]> entryValues = new LdapAttributeMap<>( attributes.size() );
+            for ( final InMemoryDirectory.Attribute attribute : attributes )
+            {
+                final List<byte[]> binaryValues = attribute.binaryValues();
+                final byte[][] values = new byte[binaryValues.size()][];
+                for ( int i = 0; i < values.length; i++ )
+                {
+                    values[i] = binaryValues.get( i ).clone();
+                }
+                entryValues.put( attribute.getName(), values );
+            }
+            results.put( node.getDn(), Collections.unmodifiableMap( entryValues ) );
+        }
+        return Collections.unmodifiableMap( results );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.SearchOperation
+    public Map<String, Map<String, List<String>>> searchMultiValues(
+            final String baseDN,
+            final String filter,
+            final Set<String> attributes,
+            final SearchScope searchScope
+    )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().searchMultiValues( baseDN, filter, attributes, searchScope );
+
+        final SearchHelper searchHelper = new SearchHelper();
+        searchHelper.setFilter( filter );
+        searchHelper.setAttributes( attributes );
+        searchHelper.setSearchScope( searchScope );
+        return searchMultiValues( baseDN, searchHelper );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.ModifyOperation
+    public void writeBinaryAttribute( final String entryDN, final String attributeName, final byte[][] values, final boolean overwrite )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        writeBinaryAttribute( entryDN, attributeName, values, overwrite, null );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.ModifyOperation
+    public void writeBinaryAttribute(
+            final String entryDN,
+            final String attributeName,
+            final byte[][] values,
+            final boolean overwrite,
+            final ChaiRequestControl[] controls
+    )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().writeBinaryAttribute( entryDN, attributeName, values, overwrite, controls );
+        checkControls( controls );
+
+        directory.modify( entryDN, attributes -> InMemoryDirectory.writeBinaryValues( attributes, attributeName, values, overwrite ) );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.ModifyOperation
+    public void replaceBinaryAttribute( final String entryDN, final String attributeName, final byte[] oldValue, final byte[] newValue )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().replaceBinaryAttribute( entryDN, attributeName, oldValue, newValue );
+
+        directory.modify( entryDN, attributes ->
+        {
+            InMemoryDirectory.removeBinaryValue( attributes, attributeName, oldValue );
+            InMemoryDirectory.writeBinaryValues( attributes, attributeName, new byte[][] {newValue}, false );
+        } );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.ModifyOperation
+    public void writeStringAttribute( final String entryDN, final String attributeName, final Set<String> values, final boolean overwrite )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().writeStringAttribute( entryDN, attributeName, values, overwrite );
+
+        directory.modify( entryDN, attributes -> InMemoryDirectory.writeValues( attributes, attributeName, values, overwrite ) );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.ModifyOperation
+    public void writeStringAttributes( final String entryDN, final Map<String, String> attributeValueProps, final boolean overwrite )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().writeStringAttributes( entryDN, attributeValueProps, overwrite );
+
+        directory.modify( entryDN, attributes ->
+        {
+            for ( final Map.Entry<String, String> entry : attributeValueProps.entrySet() )
+            {
+                InMemoryDirectory.writeValues( attributes, entry.getKey(), Collections.singleton( entry.getValue() ), overwrite );
+            }
+        } );
+    }
+
+    @Override
+    public Object getConnectionObject()
+    {
+        return directory;
+    }
+
+    @Override
+    public String getCurrentConnectionURL()
+    {
+        return isConnected() ? connectionURL : null;
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        return getConnectionState() == ConnectionState.OPEN;
+    }
+
+    private List<InMemoryDirectory.Node> executeSearch( final String baseDN, final SearchHelper searchHelper )
+            throws ChaiOperationException
+    {
+        final LdapFilter filter = parseFilter( searchHelper.getFilter() );
+        return directory.search(
+                baseDN,
+                searchHelper.getSearchScope(),
+                filter,
+                searchHelper.getMaxResults(),
+                searchHelper.getTimeLimit(),
+                getChaiConfiguration().getIntSetting( ChaiSetting.LDAP_SEARCH_PAGING_SIZE ) );
+    }
+
+    private static LdapFilter parseFilter( final String filter )
+            throws ChaiOperationException
+    {
+        final LdapFilter cached = FILTER_CACHE.get( filter );
+        if ( cached != null )
+        {
+            return cached;
+        }
+
+        final LdapFilter parsed;
+        try
+        {
+            parsed = LdapFilter.parse( filter );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new ChaiOperationException( e.getMessage(), ChaiError.UNKNOWN, true, false );
+        }
+
+        if ( !parsed.isEvaluable() )
+        {
+            throw new ChaiOperationException( "extensible match filters are not supported by the in-memory provider: " + filter,
+                    ChaiError.UNSUPPORTED_OPERATION, true, false );
+        }
+
+        // safety check, clear rather than track usage; the working set of filters is repopulated quickly.
+        if ( FILTER_CACHE.size() >= MAX_FILTER_CACHE_SIZE )
+        {
+            FILTER_CACHE.clear();
+        }
+        FILTER_CACHE.put( filter, parsed );
+        return parsed;
+    }
+
+    /**
+     * Select the attributes to return.  Null or {@code *} selects all attributes, and an empty set or {@code 1.1}
+     * selects none.
+     */
+    private static Collection<InMemoryDirectory.Attribute> selectAttributes( final InMemoryDirectory.Node node, final Set<String> requested )
+    {
+        final Map<String, InMemoryDirectory.Attribute> attributes = node.getAttributes();
+        if ( requested == null || requested.contains( "*" ) )
+        {
+            return attributes.values();
+        }
+
+        if ( requested.isEmpty() || requested.contains( "1.1" ) )
+        {
+            return Collections.emptyList();
+        }
+
+        final Map<String, InMemoryDirectory.Attribute> selected = new LinkedHashMap<>( requested.size() );
+        for ( final String name : requested )
+        {
+            final InMemoryDirectory.Attribute attribute = attributes.get( InMemoryDirectory.key( name ) );
+            if ( attribute != null )
+            {
+                selected.put( InMemoryDirectory.key( name ), attribute );
+            }
+        }
+        return selected.values();
+    }
+
+    private static void checkControls( final ChaiRequestControl[] controls )
+            throws ChaiOperationException
+    {
+        if ( controls != null )
+        {
+            for ( final ChaiRequestControl control : controls )
+            {
+                if ( control.isCritical() )
+                {
+                    throw new ChaiOperationException( "critical control is not supported by the in-memory provider: " + control.getId(),
+                            ChaiError.UNSUPPORTED_OPERATION, true, false );
+                }
+            }
+        }
+    }
+}
@@ -32,28 +32,36 @@ import com.novell.ldap.LDAPJSSESecureSocketFactory;
 import com.novell.ldap.LDAPModification;
 import com.novell.ldap.LDAPSearchConstraints;
 import com.novell.ldap.LDAPSearchResults;
+import com.novell.ldap.asn1.ASN1Integer;
+import com.novell.ldap.asn1.ASN1Object;
+import com.novell.ldap.asn1.ASN1OctetString;
+import com.novell.ldap.asn1.ASN1Sequence;
+import com.novell.ldap.asn1.LBERDecoder;
+import com.novell.ldap.asn1.LBEREncoder;
 import com.novell.ldapchai.ChaiConstant;
 import com.novell.ldapchai.ChaiRequestControl;
 import com.novell.ldapchai.exception.ChaiError;
 import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.util.internal.ChaiLogger;
+import com.novell.ldapchai.util.LdapAttributeMap;
 import com.novell.ldapchai.util.SearchHelper;
 
 import javax.naming.NamingException;
 import javax.naming.ldap.ExtendedRequest;
 import javax.naming.ldap.ExtendedResponse;
+import javax.naming.ldap.PagedResultsControl;
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.X509TrustManager;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -94,37 +102,11 @@ public class JLDAPProviderImpl extends AbstractProvider implements ChaiProviderI
 
             if ( ldapURL.getScheme().equalsIgnoreCase( "ldaps" ) )
             {
-                final boolean usePromiscuousSSL = Boolean.parseBoolean( chaiConfig.getSetting( ChaiSetting.PROMISCUOUS_SSL ) );
-                if ( usePromiscuousSSL )
-                {
-                    try
-                    {
-                        final SSLContext sc = SSLContext.getInstance( "SSL" );
-                        sc.init( null, new X509TrustManager[] {new PromiscuousTrustManager()}, new java.security.SecureRandom() );
-                        ldapConnection = new LDAPConnection( new LDAPJSSESecureSocketFactory( sc.getSocketFactory() ) );
-                    }
-                    catch ( Exception e )
-                    {
-                        LOGGER.error( () -> "error creating promiscuous ssl ldap socket factory: " + e.getMessage() );
-                    }
-                }
-                else if ( chaiConfig.getTrustManager() != null )
-                {
-                    try
-                    {
-                        final SSLContext sc = SSLContext.getInstance( "SSL" );
-                        sc.init( null, chaiConfig.getTrustManager(), new java.security.SecureRandom() );
-                        ldapConnection = new LDAPConnection( new LDAPJSSESecureSocketFactory( sc.getSocketFactory() ) );
-                    }
-                    catch ( Exception e )
-                    {
-                        LOGGER.error( () -> "error creating configured ssl ldap socket factory: " + e.getMessage() );
-                    }
-                }
-                else
-                {
-                    ldapConnection = new LDAPConnection( new LDAPJSSESecureSocketFactory() );
-                }
+                // use a shared ssl context for promiscuous or configured trust managers so reconnects can resume tls sessions
+                final Optional<SSLContext> sslContext = TlsContextCache.forConfiguration( providerFactory, chaiConfig );
+                ldapConnection = sslContext.isPresent()
+                        ? new LDAPConnection( new LDAPJSSESecureSocketFactory( sslContext.get().getSocketFactory() ) )
+                        : new LDAPConnection( new LDAPJSSESecureSocketFactory() );
             }
             else
             {
@@ -292,6 +274,33 @@ public class JLDAPProviderImpl extends AbstractProvider implements ChaiProviderI
         }
     }
 
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.ModifyOperation
+    public void deleteStringAttributeValues( final String entryDN, final String attribute, final Set<String> values )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().deleteStringAttributeValues( entryDN, attribute, values );
+
+        if ( values.isEmpty() )
+        {
+            return;
+        }
+
+        final LDAPAttribute ldapAttr = new LDAPAttribute( attribute, values.toArray( new String[0] ) );
+        final LDAPModification mod = new LDAPModification( LDAPModification.DELETE, ldapAttr );
+
+        try
+        {
+            ldapConnection.modify( entryDN, mod );
+        }
+        catch ( LDAPException e )
+        {
+            throw ChaiOperationException.forErrorMessage( e.getLDAPErrorMessage(), e );
+        }
+    }
+
     @Override
     @ChaiProvider.LdapOperation
     public ExtendedResponse extendedOperation( final ExtendedRequest request )
@@ -359,18 +368,39 @@ public class JLDAPProviderImpl extends AbstractProvider implements ChaiProviderI
         activityPreCheck();
         getInputValidator().readMultiStringAttribute( entryDN, attribute );
 
+        final Set<String> values = new LinkedHashSet<>();
+        RangedAttributeRetrieval.readAll( requestedAttribute -> readReturnedAttributes( entryDN, requestedAttribute ), attribute, values );
+        return values;
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    public AttributeValueRange readMultiStringAttributeRange( final String entryDN, final String attribute, final int startIndex )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        getInputValidator().readMultiStringAttributeRange( entryDN, attribute, startIndex );
+
+        return RangedAttributeRetrieval.readRange( requestedAttribute -> readReturnedAttributes( entryDN, requestedAttribute ), attribute, startIndex );
+    }
+
+    /**
+     * Read a single attribute, returning the values keyed by the attribute description returned by the server,
+     * which includes any range option.
+     */
+    private Map<String, List<String>> readReturnedAttributes( final String entryDN, final String requestedAttribute )
+            throws ChaiOperationException
+    {
         try
         {
-            final LDAPEntry entry = ldapConnection.read( entryDN, new String[] {attribute} );
-            final LDAPAttribute ldapAttribute = entry.getAttribute( attribute );
-            if ( ldapAttribute == null )
-            {
-                return Collections.emptySet();
-            }
-            else
+            final LDAPEntry entry = ldapConnection.read( entryDN, new String[] {requestedAttribute} );
+            final Map<String, List<String>> returnedAttributes = new LinkedHashMap<>();
+            for ( final Object attr : entry.getAttributeSet() )
             {
-                return new HashSet<>( Arrays.asList( ldapAttribute.getStringValueArray() ) );
+                final LDAPAttribute ldapAttribute = ( LDAPAttribute ) attr;
+                returnedAttributes.put( ldapAttribute.getName(), Arrays.asList( ldapAttribute.getStringValueArray() ) );
             }
+            return returnedAttributes;
         }
         catch ( LDAPException e )
         {
@@ -397,7 +427,7 @@ public class JLDAPProviderImpl extends AbstractProvider implements ChaiProviderI
         activityPreCheck();
         getInputValidator().readStringAttributes( entryDN, attributes );
 
-        final Map<String, String> returnProps = new LinkedHashMap<>();
+        final Map<String, String> returnProps = new LdapAttributeMap<>();
         try
         {
             final LDAPEntry entry = ldapConnection.read( entryDN, attributes.toArray( new String[0] ) );
@@ -456,7 +486,7 @@ public class JLDAPProviderImpl extends AbstractProvider implements ChaiProviderI
         {
             final String dn = resultEntry.getKey();
             final Map<String, List<String>> loopAttrs = resultEntry.getValue();
-            final Map<String, String> attrProps = new LinkedHashMap<>();
+            final Map<String, String> attrProps = new LdapAttributeMap<>( loopAttrs.size() );
             for ( final Map.Entry<String, List<String>> attrEntry : loopAttrs.entrySet() )
             {
                 final String loopAttr = attrEntry.getKey();
@@ -516,6 +546,186 @@ public class JLDAPProviderImpl extends AbstractProvider implements ChaiProviderI
         return searchImpl( baseDN, searchHelper, false );
     }
 
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.SearchOperation
+    public void searchStream( final String baseDN, final SearchHelper searchHelper, final SearchResultHandler resultHandler )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().searchStream( baseDN, searchHelper, resultHandler );
+
+        searchPaged( baseDN, searchHelper, entry ->
+        {
+            final LDAPAttributeSet attrSet = entry.getAttributeSet();
+            final Map<String, List<String>> entryValues = new LdapAttributeMap<>( attrSet.size() );
+            for ( final Object anAttrSet : attrSet )
+            {
+                final LDAPAttribute loopAttr = ( LDAPAttribute ) anAttrSet;
+                entryValues.put( loopAttr.getName(), Arrays.asList( loopAttr.getStringValueArray() ) );
+            }
+            resultHandler.handleEntry( entry.getDN(), Collections.unmodifiableMap( entryValues ) );
+            return true;
+        } );
+    }
+
+    @Override
+    @ChaiProvider.LdapOperation
+    @ChaiProvider.SearchOperation
+    public Map<String, Map<String, byte[][]>> searchMultiByteValues( final String baseDN, final SearchHelper searchHelper )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().searchMultiByteValues( baseDN, searchHelper );
+
+        final Map<String, Map<String, byte[][]>> results = new LinkedHashMap<>();
+        searchPaged( baseDN, searchHelper, entry ->
+        {
+            final LDAPAttributeSet attrSet = entry.getAttributeSet();
+            final Map<String, byte[][]> entryValues = new LdapAttributeMap<>( attrSet.size() );
+            for ( final Object anAttrSet : attrSet )
+            {
+                final LDAPAttribute loopAttr = ( LDAPAttribute ) anAttrSet;
+                entryValues.put( loopAttr.getName(), loopAttr.getByteValueArray() );
+            }
+            return results.putIfAbsent( entry.getDN(), Collections.unmodifiableMap( entryValues ) ) == null;
+        } );
+        return Collections.unmodifiableMap( results );
+    }
+
+    /**
+     * Search using the simple paged results control, passing each entry to the handler as it is read.  Only one
+     * page of entries is requested from the server at a time.  Values are decoded by the handler, so the same
+     * search serves string and binary results.
+     */
+    private void searchPaged( final String baseDN, final SearchHelper searchHelper, final EntryHandler entryHandler )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        final String effectiveBaseDN = baseDN != null ? baseDN : "";
+        final String[] returnAttributes = searchHelper.getAttributes() == null
+                ? null
+                : searchHelper.getAttributes().toArray( new String[0] );
+        final int maxResults = searchHelper.getMaxResults();
+        final int pageSize = getChaiConfiguration().getIntSetting( ChaiSetting.LDAP_SEARCH_PAGING_SIZE );
+
+        // enable paging if the search count is unlimited (0) or bigger than the page size.
+        final boolean pagingEnabled = ( maxResults == 0 || maxResults > pageSize ) && supportsSearchResultPaging();
+
+        int resultCount = 0;
+        byte[] pageCookie = null;
+        try
+        {
+            do
+            {
+                final LDAPSearchConstraints constraints = new LDAPSearchConstraints();
+                constraints.setMaxResults( maxResults );
+                constraints.setTimeLimit( searchHelper.getTimeLimit() );
+                if ( pagingEnabled )
+                {
+                    constraints.setControls( pagedResultsControl( pageSize, pageCookie ) );
+                }
+
+                final LDAPSearchResults results = ldapConnection.search(
+                        effectiveBaseDN,
+                        ldapScope( searchHelper.getSearchScope() ),
+                        searchHelper.getFilter(),
+                        returnAttributes,
+                        false,
+                        constraints
+                );
+
+                while ( results.hasMore() )
+                {
+                    final LDAPEntry entry = results.next();
+                    if ( entryHandler.accept( entry ) )
+                    {
+                        resultCount++;
+                    }
+                    else
+                    {
+                        LOGGER.warn( () -> "ignoring duplicate DN in search result from ldap server: " + entry.getDN() );
+                    }
+                    if ( maxResults > 0 && resultCount >= maxResults )
+                    {
+                        return;
+                    }
+                }
+
+                pageCookie = pagingEnabled ? readPageCookie( results.getResponseControls() ) : null;
+            }
+            while ( pageCookie != null );
+        }
+        catch ( LDAPException e )
+        {
+            // entries already passed to the handler are kept if the size or time limit is exceeded
+            if ( resultCount > 0 && ( e.getResultCode() == LDAPException.SIZE_LIMIT_EXCEEDED
+                    || e.getResultCode() == LDAPException.TIME_LIMIT_EXCEEDED ) )
+            {
+                return;
+            }
+            throw ChaiOperationException.forErrorMessage( e.getLDAPErrorMessage(), e );
+        }
+    }
+
+    private static LDAPControl pagedResultsControl( final int pageSize, final byte[] pageCookie )
+    {
+        final ASN1Sequence controlValue = new ASN1Sequence( 2 );
+        controlValue.add( new ASN1Integer( pageSize ) );
+        controlValue.add( new ASN1OctetString( pageCookie == null ? new byte[0] : pageCookie ) );
+        return new LDAPControl( PagedResultsControl.OID, pageCookie != null, controlValue.getEncoding( new LBEREncoder() ) );
+    }
+
+    private static byte[] readPageCookie( final LDAPControl[] controls )
+    {
+        if ( controls == null )
+        {
+            return null;
+        }
+
+        for ( final LDAPControl control : controls )
+        {
+            if ( PagedResultsControl.OID.equals( control.getID() ) && control.getValue() != null )
+            {
+                final ASN1Object controlValue = new LBERDecoder().decode( control.getValue() );
+                if ( controlValue instanceof ASN1Sequence && ( ( ASN1Sequence ) controlValue ).size() > 1 )
+                {
+                    final ASN1Object cookie = ( ( ASN1Sequence ) controlValue ).get( 1 );
+                    if ( cookie instanceof ASN1OctetString && ( ( ASN1OctetString ) cookie ).byteValue().length > 0 )
+                    {
+                        return ( ( ASN1OctetString ) cookie ).byteValue();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int ldapScope( final SearchScope searchScope )
+    {
+        switch ( searchScope )
+        {
+            case ONE:
+                return LDAPConnection.SCOPE_ONE;
+            case BASE:
+                return LDAPConnection.SCOPE_BASE;
+            case SUBTREE:
+                return LDAPConnection.SCOPE_SUB;
+            default:
+                return -1;
+        }
+    }
+
+    private interface EntryHandler
+    {
+        /**
+         * Accept a search result entry.
+         *
+         * @return false if the entry DN is a duplicate and has been ignored.
+         */
+        boolean accept( LDAPEntry entry )
+                throws ChaiOperationException, ChaiUnavailableException;
+    }
+
     @Override
     @ChaiProvider.LdapOperation
     @ChaiProvider.ModifyOperation
@@ -692,21 +902,7 @@ public class JLDAPProviderImpl extends AbstractProvider implements ChaiProviderI
                 : "";
 
 
-        final int ldapScope;
-        switch ( effectiveSearchHelper.getSearchScope() )
-        {
-            case ONE:
-                ldapScope = LDAPConnection.SCOPE_ONE;
-                break;
-            case BASE:
-                ldapScope = LDAPConnection.SCOPE_BASE;
-                break;
-            case SUBTREE:
-                ldapScope = LDAPConnection.SCOPE_SUB;
-                break;
-            default:
-                ldapScope = -1;
-        }
+        final int ldapScope = ldapScope( effectiveSearchHelper.getSearchScope() );
 
         final Map<String, Map<String, List<String>>> returnMap = new LinkedHashMap<>();
 
@@ -733,8 +929,8 @@ public class JLDAPProviderImpl extends AbstractProvider implements ChaiProviderI
             {
                 final LDAPEntry loopEntry = results.next();
                 final String loopDN = loopEntry.getDN();
-                final Map<String, List<String>> loopAttributes = new LinkedHashMap<>();
                 final LDAPAttributeSet attrSet = loopEntry.getAttributeSet();
+                final Map<String, List<String>> loopAttributes = new LdapAttributeMap<>( attrSet.size() );
                 for ( final Object anAttrSet : attrSet )
                 {
                     final LDAPAttribute loopAttr = ( LDAPAttribute ) anAttrSet;
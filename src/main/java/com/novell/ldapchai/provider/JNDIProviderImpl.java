@@ -20,15 +20,13 @@
 package com.novell.ldapchai.provider;
 
 import com.novell.ldapchai.ChaiConstant;
-import com.novell.ldapchai.ChaiEntry;
 import com.novell.ldapchai.ChaiRequestControl;
 import com.novell.ldapchai.exception.ChaiError;
 import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
-import com.novell.ldapchai.util.ChaiUtility;
+import com.novell.ldapchai.util.LdapAttributeMap;
 import com.novell.ldapchai.util.SearchHelper;
 import com.novell.ldapchai.util.internal.ChaiLogger;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import javax.naming.CommunicationException;
 import javax.naming.Context;
@@ -55,22 +53,24 @@ import javax.naming.ldap.PagedResultsControl;
 import javax.naming.ldap.PagedResultsResponseControl;
 import javax.net.SocketFactory;
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.X509TrustManager;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Hashtable;
-import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -102,10 +102,18 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
 
     private static final ChaiLogger LOGGER = ChaiLogger.getLogger( JNDIProviderImpl.class );
 
-    private Boolean cachedPagingEnableSupport = null;
+    private static final String JNDI_BINARY_SETTING = "java.naming.ldap.attributes.binary";
+
     private LdapContext jndiConnection;
     private SocketFactory socketFactory;
 
+    /**
+     * Context with all binary attributes of the server schema registered in its environment, used as the base for binary reads.
+     */
+    private volatile LdapContext binaryJndiConnection;
+    private volatile AttributeSchema binaryAttributeSchema;
+    private final Object binaryConnectionLock = new Object();
+
     private static LdapContext generateNewJndiContext( final Hashtable<String, Object> environment )
             throws ChaiOperationException, ChaiUnavailableException
     {
@@ -151,62 +159,69 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
     }
 
     /**
-     * <p>Converts an array of primitive bytes to objects.</p>
-     *
-     * <p>This method returns <code>null</code> for a <code>null</code> input array.</p>
-     *
-     * <p>From Jakarta Commons project</p>
+     * Collect the binary values of an attribute.  Value arrays are returned as decoded by jndi, without copying.
+     * Non-binary values, returned if jndi was not informed the attribute is binary, are ignored.
      *
-     * @param array a <code>byte</code> array
-     * @return a <code>Byte</code> array, <code>null</code> if null array input
+     * @param attribute attribute read from the directory, may be null.
+     * @return binary values of the attribute, never null.
+     * @throws NamingException if an error occurs enumerating the values.
      */
-    private static Byte[] toObject( final byte[] array )
+    static byte[][] binaryValues( final Attribute attribute )
+            throws NamingException
     {
-        if ( array == null )
+        if ( attribute == null || attribute.size() == 0 )
         {
-            return null;
+            return new byte[0][];
         }
-        else if ( array.length == 0 )
+
+        final byte[][] values = new byte[attribute.size()][];
+        int valueCount = 0;
+        final NamingEnumeration<?> namingEnum = attribute.getAll();
+        try
         {
-            return new Byte[0];
+            while ( namingEnum.hasMore() )
+            {
+                final Object value = namingEnum.next();
+                if ( value instanceof byte[] && valueCount < values.length )
+                {
+                    values[valueCount++] = ( byte[] ) value;
+                }
+            }
         }
-        final Byte[] result = new Byte[array.length];
-        int counter = 0;
-        while ( counter < array.length )
+        finally
         {
-            result[counter] = array[counter];
-            counter++;
+            namingEnum.close();
         }
-        return result;
+
+        return valueCount == values.length ? values : Arrays.copyOf( values, valueCount );
     }
 
     /**
-     * <p>Converts an array of object Bytes to primitives.</p>
-     *
-     * <p>This method returns <code>null</code> for a <code>null</code> input array.</p>
-     *
-     * <p>From Jakarta Commons project</p>
-     *
-     * @param array a <code>Byte</code> array, may be <code>null</code>
-     * @return a <code>byte</code> array, <code>null</code> if null array input
-     * @throws NullPointerException if array content is <code>null</code>
+     * Parse the attributes of a search result read with binary values.  Values jndi returned as strings, because
+     * the attribute was not registered as binary, are converted to their UTF-8 encoding.
      */
-    private static byte[] toPrimitive( final Byte[] array )
+    static Map<String, byte[][]> parseBinaryAttributeValues( final Attributes attributes )
+            throws NamingException
     {
-        if ( array == null )
-        {
-            return null;
-        }
-        else if ( array.length == 0 )
+        final int attributeCount = attributes == null ? 0 : attributes.size();
+        if ( attributeCount == 0 )
         {
-            return new byte[0];
+            return Collections.emptyMap();
         }
-        final byte[] result = new byte[array.length];
-        for ( int i = 0; i < array.length; i++ )
+
+        final Map<String, byte[][]> attrValues = new LdapAttributeMap<>( attributeCount );
+        for ( final NamingEnumeration<? extends Attribute> attributeEnum = attributes.getAll(); attributeEnum.hasMore(); )
         {
-            result[i] = array[i];
+            final Attribute attribute = attributeEnum.next();
+            final byte[][] values = new byte[attribute.size()][];
+            for ( int i = 0; i < values.length; i++ )
+            {
+                final Object value = attribute.get( i );
+                values[i] = value instanceof byte[] ? ( byte[] ) value : String.valueOf( value ).getBytes( StandardCharsets.UTF_8 );
+            }
+            attrValues.put( attribute.getID(), values );
         }
-        return result;
+        return Collections.unmodifiableMap( attrValues );
     }
 
     JNDIProviderImpl()
@@ -218,6 +233,21 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
     public void close()
     {
         super.close();
+        if ( binaryJndiConnection != null )
+        {
+            try
+            {
+                binaryJndiConnection.close();
+            }
+            catch ( Exception e )
+            {
+                LOGGER.trace( () -> "unexpected error during jndi binary connection close " + e.getMessage() );
+            }
+            finally
+            {
+                binaryJndiConnection = null;
+            }
+        }
         if ( jndiConnection != null )
         {
             try
@@ -410,6 +440,39 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         }
     }
 
+    @Override
+    @LdapOperation
+    @ModifyOperation
+    public final void deleteStringAttributeValues( final String entryDN, final String attributeName, final Set<String> values )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().deleteStringAttributeValues( entryDN, attributeName, values );
+
+        if ( values.isEmpty() )
+        {
+            return;
+        }
+
+        final BasicAttribute attributeToRemove = new BasicAttribute( attributeName );
+        for ( final String value : values )
+        {
+            attributeToRemove.add( value );
+        }
+
+        final ModificationItem[] modificationItem = {new ModificationItem( DirContext.REMOVE_ATTRIBUTE, attributeToRemove )};
+
+        final LdapContext ldapConnection = getLdapConnection();
+        try
+        {
+            ldapConnection.modifyAttributes( addJndiEscape( entryDN ), modificationItem );
+        }
+        catch ( NamingException e )
+        {
+            throw convertNamingException( e );
+        }
+    }
+
     @Override
     @LdapOperation
     @ModifyOperation
@@ -456,109 +519,162 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
 
     @Override
     @LdapOperation
-    // legacy code, suppress should be removed in future
-    @SuppressFBWarnings( "DCN_NULLPOINTER_EXCEPTION" )
     public final byte[][] readMultiByteAttribute( final String entryDN, final String attributeName )
             throws ChaiUnavailableException, ChaiOperationException
     {
         activityPreCheck();
         getInputValidator().readMultiByteAttribute( entryDN, attributeName );
 
-        final List<Byte[]> returnValues = new ArrayList<>();
-        final String jndiBinarySetting = "java.naming.ldap.attributes.binary";
-        NamingEnumeration<?> namingEnum = null;
-
-        // Get only the Attribute that is passed in.
-        final String[] attributesArray = {attributeName};
-
         try
         {
-            final LdapContext ldapConnection = ( LdapContext ) getLdapConnection().lookup( "" );
+            return binaryValues( readBinaryAttribute( entryDN, attributeName ) );
+        }
+        catch ( NamingException e )
+        {
+            throw convertNamingException( e );
+        }
+    }
 
-            // inform jndi the attribute is binary.
-            ldapConnection.addToEnvironment( jndiBinarySetting, attributeName );
+    @Override
+    @LdapOperation
+    public final List<ByteBuffer> readMultiByteBufferAttribute( final String entryDN, final String attributeName )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().readMultiByteBufferAttribute( entryDN, attributeName );
 
-            // Get the Enumeration of attribute values.
-            namingEnum = ldapConnection.getAttributes( addJndiEscape( entryDN ), attributesArray ).get( attributeName ).getAll();
-            while ( namingEnum.hasMore() )
+        try
+        {
+            final Attribute attribute = readBinaryAttribute( entryDN, attributeName );
+            if ( attribute == null || attribute.size() == 0 )
             {
-                final Object value = namingEnum.next();
+                return Collections.emptyList();
+            }
 
-                if ( value instanceof byte[] )
+            // wrap the value arrays decoded by jndi
+            final List<ByteBuffer> buffers = new ArrayList<>( attribute.size() );
+            final NamingEnumeration<?> namingEnum = attribute.getAll();
+            try
+            {
+                while ( namingEnum.hasMore() )
                 {
-                    final Byte[] objectValue = toObject( ( byte[] ) value );
-                    returnValues.add( objectValue );
+                    final Object value = namingEnum.next();
+                    if ( value instanceof byte[] )
+                    {
+                        buffers.add( ByteBuffer.wrap( ( byte[] ) value ).asReadOnlyBuffer() );
+                    }
                 }
             }
-
-            // Return the list as a set of primitives.
-            final byte[][] returnArray = new byte[returnValues.size()][];
-            for ( int i = 0; i < returnValues.size(); i++ )
+            finally
             {
-                returnArray[i] = toPrimitive( returnValues.get( i ) );
+                namingEnum.close();
             }
-
-            return returnArray;
-        }
-        catch ( NullPointerException e )
-        {
-            return new byte[0][0];
+            return Collections.unmodifiableList( buffers );
         }
         catch ( NamingException e )
         {
             throw convertNamingException( e );
         }
-        finally
+    }
+
+    @Override
+    @LdapOperation
+    public final InputStream readByteStreamAttribute( final String entryDN, final String attributeName )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().readByteStreamAttribute( entryDN, attributeName );
+
+        try
         {
-            // close the enumeration
-            try
-            {
-                if ( namingEnum != null )
-                {
-                    namingEnum.close();
-                }
-            }
-            catch ( NamingException e )
-            {
-                LOGGER.trace( () -> "unexpected error closing naming exception: " + e.getMessage() );
-            }
+            // only the first value is streamed, directly from the array decoded by jndi
+            final Attribute attribute = readBinaryAttribute( entryDN, attributeName );
+            final Object value = attribute == null || attribute.size() == 0 ? null : attribute.get();
+            return value instanceof byte[] ? new ByteArrayInputStream( ( byte[] ) value ) : null;
         }
+        catch ( NamingException e )
+        {
+            throw convertNamingException( e );
+        }
+    }
+
+    /**
+     * Read a single attribute using the binary connection, so values are returned as byte arrays.
+     */
+    private Attribute readBinaryAttribute( final String entryDN, final String attributeName )
+            throws ChaiUnavailableException, NamingException
+    {
+        // Get only the Attribute that is passed in.
+        final String[] attributesArray = {attributeName};
+
+        final LdapContext ldapConnection = getBinaryLdapConnection( attributeName );
+        final Attributes attributes = ldapConnection.getAttributes( addJndiEscape( entryDN ), attributesArray );
+        return attributes == null ? null : attributes.get( attributeName );
     }
 
     @Override
     @LdapOperation
-    // legacy code, new spotbugs detection, suppress should be removed in future
-    @SuppressFBWarnings( "DCN_NULLPOINTER_EXCEPTION" )
     public final Set<String> readMultiStringAttribute( final String entryDN, final String attributeName )
             throws ChaiUnavailableException, ChaiOperationException
     {
         activityPreCheck();
         getInputValidator().readMultiStringAttribute( entryDN, attributeName );
 
-        final Set<String> attributeValues = new HashSet<>();
-        NamingEnumeration<?> namingEnum = null;
+        final Set<String> attributeValues = new LinkedHashSet<>();
+        RangedAttributeRetrieval.readAll( requestedAttribute -> readReturnedAttributes( entryDN, requestedAttribute ), attributeName, attributeValues );
+        return attributeValues;
+    }
+
+    @Override
+    @LdapOperation
+    public final AttributeValueRange readMultiStringAttributeRange( final String entryDN, final String attributeName, final int startIndex )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().readMultiStringAttributeRange( entryDN, attributeName, startIndex );
+
+        return RangedAttributeRetrieval.readRange( requestedAttribute -> readReturnedAttributes( entryDN, requestedAttribute ), attributeName, startIndex );
+    }
+
+    /**
+     * Read a single attribute, returning the values keyed by the attribute description returned by the server,
+     * which includes any range option.
+     */
+    private Map<String, List<String>> readReturnedAttributes( final String entryDN, final String requestedAttribute )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        final Map<String, List<String>> returnedAttributes = new HashMap<>();
+        NamingEnumeration<? extends Attribute> attributeEnum = null;
 
         try
         {
-            // Get only the Attribute that is passed in.
-            final String[] attributesArray = {attributeName};
-
-            // Get the Enumeration of attribute values.
             final LdapContext ldapConnection = getLdapConnection();
-
-            namingEnum = ldapConnection.getAttributes( addJndiEscape( entryDN ), attributesArray ).get( attributeName ).getAll();
-            while ( namingEnum.hasMore() )
+            final Attributes attributes = ldapConnection.getAttributes( addJndiEscape( entryDN ), new String[] {requestedAttribute} );
+            if ( attributes == null )
             {
-                attributeValues.add( namingEnum.next().toString() );
+                return returnedAttributes;
             }
 
-            // Return the list as an array.
-            return attributeValues;
-        }
-        catch ( NullPointerException e )
-        {
-            // to be consistent with nps impl.
-            return Collections.emptySet();
+            attributeEnum = attributes.getAll();
+            while ( attributeEnum.hasMore() )
+            {
+                final Attribute attribute = attributeEnum.next();
+                final List<String> values = new ArrayList<>( attribute.size() );
+                final NamingEnumeration<?> valueEnum = attribute.getAll();
+                try
+                {
+                    while ( valueEnum.hasMore() )
+                    {
+                        values.add( valueEnum.next().toString() );
+                    }
+                }
+                finally
+                {
+                    valueEnum.close();
+                }
+                returnedAttributes.put( attribute.getID(), values );
+            }
+            return returnedAttributes;
         }
         catch ( NamingException e )
         {
@@ -568,9 +684,9 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         {
             try
             {
-                if ( namingEnum != null )
+                if ( attributeEnum != null )
                 {
-                    namingEnum.close();
+                    attributeEnum.close();
                 }
             }
             catch ( NamingException e )
@@ -600,7 +716,7 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         getInputValidator().readStringAttributes( entryDN, attributes );
 
         // Allocate a return object
-        final Map<String, String> returnObj = new LinkedHashMap<>();
+        final Map<String, String> returnObj = new LdapAttributeMap<>();
 
         // get ldap connection
         final LdapContext ldapConnection = getLdapConnection();
@@ -706,32 +822,8 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         getInputValidator().search( baseDN, searchHelper );
 
         // perform search
-        final SearchEngine searchEngine = new SearchEngine( chaiConfig, baseDN, searchHelper, false );
-        final Map<String, Map<String, List<String>>> results = searchEngine.getResults();
-
-        // convert to <String, Properties> return set.
-        if ( results != null )
-        {
-            final Map<String, Map<String, String>> returnMap = new HashMap<>( results.size() );
-            for ( final Map.Entry<String, Map<String, List<String>>> resultEntry : results.entrySet() )
-            {
-                final String entryDN = resultEntry.getKey();
-                final Map<String, List<String>> attributeMap = resultEntry.getValue();
-                final Map<String, String> newProps = new LinkedHashMap<>();
-                for ( final Map.Entry<String, List<String>> attributeEntry : attributeMap.entrySet() )
-                {
-                    final String attrName = attributeEntry.getKey();
-                    final List<String> values = attributeEntry.getValue();
-                    newProps.put( attrName, values.get( 0 ) );
-                }
-                returnMap.put( entryDN, Collections.unmodifiableMap( newProps ) );
-            }
-            return Collections.unmodifiableMap( returnMap );
-        }
-        else
-        {
-            return Collections.emptyMap();
-        }
+        final SearchEngine searchEngine = new SearchEngine( chaiConfig, baseDN, searchHelper );
+        return searchEngine.getFirstValueResults();
     }
 
     @Override
@@ -756,10 +848,40 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
     {
         activityPreCheck();
         getInputValidator().searchMultiValues( baseDN, searchHelper );
-        final SearchEngine searchEngine = new SearchEngine( chaiConfig, baseDN, searchHelper, true );
+        final SearchEngine searchEngine = new SearchEngine( chaiConfig, baseDN, searchHelper );
         return searchEngine.getResults();
     }
 
+    @Override
+    public final CompactSearchResult searchCompact( final String baseDN, final SearchHelper searchHelper )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().searchCompact( baseDN, searchHelper );
+        final SearchEngine searchEngine = new SearchEngine( chaiConfig, baseDN, searchHelper );
+        return searchEngine.getCompactResults();
+    }
+
+    @Override
+    public final Map<String, Map<String, byte[][]>> searchMultiByteValues( final String baseDN, final SearchHelper searchHelper )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().searchMultiByteValues( baseDN, searchHelper );
+        final SearchEngine searchEngine = new SearchEngine( chaiConfig, baseDN, searchHelper );
+        return searchEngine.getBinaryResults();
+    }
+
+    @Override
+    public final void searchStream( final String baseDN, final SearchHelper searchHelper, final SearchResultHandler resultHandler )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        getInputValidator().searchStream( baseDN, searchHelper, resultHandler );
+        final SearchEngine searchEngine = new SearchEngine( chaiConfig, baseDN, searchHelper );
+        searchEngine.streamResults( resultHandler );
+    }
+
     @Override
     public final Map<String, Map<String, List<String>>> searchMultiValues( final String baseDN, final String filter, final Set<String> attributes, final SearchScope searchScope )
             throws ChaiUnavailableException, ChaiOperationException
@@ -772,7 +894,7 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         searchHelper.setAttributes( attributes );
         searchHelper.setSearchScope( searchScope );
 
-        final SearchEngine searchEngine = new SearchEngine( chaiConfig, baseDN, searchHelper, true );
+        final SearchEngine searchEngine = new SearchEngine( chaiConfig, baseDN, searchHelper );
         return searchEngine.getResults();
     }
 
@@ -1036,7 +1158,7 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
     {
         this.chaiConfig = chaiConfig;
         final String connectionURL = chaiConfig.bindURLsAsList().get( 0 );
-        final Hashtable<String, Object> env = generateJndiEnvironment( connectionURL );
+        final Hashtable<String, Object> env = generateJndiEnvironment( connectionURL, providerFactory );
         try
         {
             jndiConnection = generateNewJndiContext( env );
@@ -1049,7 +1171,7 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         super.init( chaiConfig, providerFactory );
     }
 
-    private Hashtable<String, Object> generateJndiEnvironment( final String ldapURL )
+    private Hashtable<String, Object> generateJndiEnvironment( final String ldapURL, final ChaiProviderFactory providerFactory )
     {
         // Populate the hashtable with the attributes to connect to eDirectory.
         final Hashtable<String, Object> env = new Hashtable<>();
@@ -1061,7 +1183,7 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         env.put( Context.SECURITY_CREDENTIALS, chaiConfig.getBindPassword() );
 
         // set the JNDI pooler up
-        final boolean jndiConnectionPoolEnable = Boolean.valueOf( chaiConfig.getSetting( ChaiSetting.JNDI_ENABLE_POOL ) );
+        final boolean jndiConnectionPoolEnable = chaiConfig.getBooleanSetting( ChaiSetting.JNDI_ENABLE_POOL );
         if ( jndiConnectionPoolEnable )
         {
             env.put( "com.sun.jndi.ldap.connect.pool", "true" );
@@ -1093,41 +1215,15 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
 
         final boolean isSecureLdapURL = ( URI.create( ldapURL ) ).getScheme().equalsIgnoreCase( "ldaps" );
 
-        //setup blind SSL socket factory
-        final boolean promiscuousMode = chaiConfig.getBooleanSetting( ChaiSetting.PROMISCUOUS_SSL );
+        // use a shared ssl context for promiscuous or configured trust managers so reconnects can resume tls sessions
         if ( isSecureLdapURL )
         {
-            if ( promiscuousMode )
-            {
-                try
-                {
-                    final SSLContext sc = SSLContext.getInstance( "SSL" );
-                    sc.init( null, new X509TrustManager[] {new PromiscuousTrustManager()}, new java.security.SecureRandom() );
-                    socketFactory = sc.getSocketFactory();
-                    ThreadLocalSocketFactory.set( socketFactory );
-                    env.put( "java.naming.ldap.factory.socket", ThreadLocalSocketFactory.class.getName() );
-                }
-                catch ( NoSuchAlgorithmException | KeyManagementException e )
-                {
-                    LOGGER.error( () -> "error configuring promiscuous socket factory" );
-                }
-
-            }
-            else if ( chaiConfig.getTrustManager() != null )
+            final Optional<SSLContext> sslContext = TlsContextCache.forConfiguration( providerFactory, chaiConfig );
+            if ( sslContext.isPresent() )
             {
-                try
-                {
-                    final SSLContext sc = SSLContext.getInstance( "SSL" );
-                    sc.init( null, chaiConfig.getTrustManager(), new java.security.SecureRandom() );
-                    socketFactory = sc.getSocketFactory();
-                    ThreadLocalSocketFactory.set( socketFactory );
-
-                    env.put( "java.naming.ldap.factory.socket", ThreadLocalSocketFactory.class.getName() );
-                }
-                catch ( NoSuchAlgorithmException | KeyManagementException e )
-                {
-                    LOGGER.error( () -> "error configuring socket factory from configured trust manager" );
-                }
+                socketFactory = sslContext.get().getSocketFactory();
+                ThreadLocalSocketFactory.set( socketFactory );
+                env.put( "java.naming.ldap.factory.socket", ThreadLocalSocketFactory.class.getName() );
             }
         }
 
@@ -1150,21 +1246,29 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         return env;
     }
 
-    private class SearchEngine
+    /**
+     * Executes a search and decodes its results.  Package visible so that tests and benchmarks can decode mocked
+     * results through {@link #parseResults(NamingEnumeration)} without a connection; not otherwise used outside
+     * this class.
+     */
+    class SearchEngine
     {
         private final String baseDN;
         private final SearchHelper searchHelper;
-        private final boolean returnAllValues;
-        private final ChaiConfiguration chaiConfiguration;
+
+        // resolved once per search, and disabled if the jndi provider does not support it.
+        private boolean resolveInNamespace;
 
         private boolean used = false;
-        private final Map<String, Map<String, List<String>>> results = new HashMap<>();
+        private boolean binaryValues = false;
+        private boolean streaming = false;
+        private int resultCount;
+        private ResultConsumer resultConsumer;
 
         SearchEngine(
                 final ChaiConfiguration chaiConfiguration,
                 final String baseDN,
-                final SearchHelper searchHelper,
-                final boolean returnAllValues
+                final SearchHelper searchHelper
         )
                 throws ChaiOperationException
         {
@@ -1172,13 +1276,98 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
 
             // make a copy so if it changes somewhere else we won't be affected.
             this.searchHelper = new SearchHelper( searchHelper );
-            this.returnAllValues = returnAllValues;
 
-            this.chaiConfiguration = chaiConfiguration;
+            this.resolveInNamespace = chaiConfiguration.getBooleanSetting( ChaiSetting.JNDI_RESOLVE_IN_NAMESPACE );
         }
 
         public Map<String, Map<String, List<String>>> getResults()
                 throws ChaiUnavailableException, ChaiOperationException
+        {
+            final Map<String, Map<String, List<String>>> results = new HashMap<>();
+            resultConsumer = multiValueConsumer( results );
+            executeSearch();
+            return Collections.unmodifiableMap( results );
+        }
+
+        /**
+         * Decode the entries of a search result page into the {@link #searchMultiValues(String, SearchHelper)}
+         * result form, as done for each page of a search.  Performs no ldap operation.
+         *
+         * @param answer search results
+         * @return unmodifiable map of entry DNs to attribute values
+         * @throws NamingException        If the results can not be read
+         * @throws ChaiOperationException If an error is encountered decoding the results
+         * @throws ChaiUnavailableException If an error is encountered decoding the results
+         */
+        Map<String, Map<String, List<String>>> parseResults( final NamingEnumeration<SearchResult> answer )
+                throws NamingException, ChaiOperationException, ChaiUnavailableException
+        {
+            final Map<String, Map<String, List<String>>> results = new HashMap<>();
+            resultConsumer = multiValueConsumer( results );
+            parseSearchResults( answer );
+            return Collections.unmodifiableMap( results );
+        }
+
+        private ResultConsumer multiValueConsumer( final Map<String, Map<String, List<String>>> results )
+        {
+            return ( entryDN, attributes ) -> results.putIfAbsent( entryDN, parseAttributeValues( attributes ) ) == null;
+        }
+
+        public Map<String, Map<String, String>> getFirstValueResults()
+                throws ChaiUnavailableException, ChaiOperationException
+        {
+            final Map<String, Map<String, String>> results = new HashMap<>();
+            resultConsumer = ( entryDN, attributes ) -> results.putIfAbsent( entryDN, parseFirstAttributeValues( attributes ) ) == null;
+            executeSearch();
+            return Collections.unmodifiableMap( results );
+        }
+
+        public CompactSearchResult getCompactResults()
+                throws ChaiUnavailableException, ChaiOperationException
+        {
+            final CompactSearchResult.Builder compactResults = new CompactSearchResult.Builder();
+            resultConsumer = ( entryDN, attributes ) ->
+            {
+                if ( !compactResults.startEntry( entryDN ) )
+                {
+                    return false;
+                }
+                parseCompactAttributeValues( compactResults, attributes );
+                return true;
+            };
+            executeSearch();
+            return compactResults.build();
+        }
+
+        public Map<String, Map<String, byte[][]>> getBinaryResults()
+                throws ChaiUnavailableException, ChaiOperationException
+        {
+            final Map<String, Map<String, byte[][]>> results = new HashMap<>();
+            resultConsumer = ( entryDN, attributes ) -> results.putIfAbsent( entryDN, parseBinaryAttributeValues( attributes ) ) == null;
+            binaryValues = true;
+            executeSearch();
+            return Collections.unmodifiableMap( results );
+        }
+
+        /**
+         * Pass each entry to the handler as it is read.  Entries are not retained, so duplicate DNs returned by the
+         * server are not detected.  The search runs on its own context so operations issued by the handler do not
+         * disturb the paging controls of the search.
+         */
+        public void streamResults( final SearchResultHandler resultHandler )
+                throws ChaiUnavailableException, ChaiOperationException
+        {
+            resultConsumer = ( entryDN, attributes ) ->
+            {
+                resultHandler.handleEntry( entryDN, parseAttributeValues( attributes ) );
+                return true;
+            };
+            streaming = true;
+            executeSearch();
+        }
+
+        private void executeSearch()
+                throws ChaiUnavailableException, ChaiOperationException
         {
             if ( used )
             {
@@ -1198,7 +1387,10 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
             final boolean pagingEnabled = ( searchControls.getCountLimit() == 0 || ( searchControls.getCountLimit() > maxPageSize )
                     && supportsSearchResultPaging() );
 
-            final LdapContext ldapConnection = getLdapConnection();
+            final boolean derivedConnection = binaryValues || streaming;
+            final LdapContext ldapConnection = binaryValues
+                    ? getBinarySearchConnection()
+                    : streaming ? getDerivedConnection() : getLdapConnection();
 
             NamingEnumeration<SearchResult> answer = null;
             try
@@ -1219,11 +1411,12 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
                     answer = ldapConnection.search( addJndiEscape( baseDN ), searchHelper.getFilter(), searchControls );
 
                     // read search results from ldap into the result map
-                    final int previousResultSize = results.size();
+                    final int previousResultSize = resultCount;
                     parseSearchResults( answer );
-                    if ( pageCookie != null && previousResultSize == results.size() )
+                    if ( pageCookie != null && previousResultSize == resultCount )
                     {
-                        LOGGER.warn( () -> "ldap paged search has returned an empty result page, current result size=" + results.size() );
+                        final int currentResultSize = resultCount;
+                        LOGGER.warn( () -> "ldap paged search has returned an empty result page, current result size=" + currentResultSize );
                     }
 
                     // if paging enabled, read the cookie value.
@@ -1259,9 +1452,65 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
                         // nothing to do
                     }
                 }
+                if ( derivedConnection )
+                {
+                    try
+                    {
+                        ldapConnection.close();
+                    }
+                    catch ( NamingException e )
+                    {
+                        // nothing to do
+                    }
+                }
             }
+        }
 
-            return Collections.unmodifiableMap( results );
+        /**
+         * Get a context sharing the provider's connection, with its own request and response controls.
+         */
+        private LdapContext getDerivedConnection()
+                throws ChaiUnavailableException, ChaiOperationException
+        {
+            try
+            {
+                return ( LdapContext ) getLdapConnection().lookup( "" );
+            }
+            catch ( NamingException e )
+            {
+                throw convertNamingException( e );
+            }
+        }
+
+        /**
+         * Get a connection that returns the values of the requested attributes, and of attributes with a binary
+         * syntax in the server schema, as binary.
+         */
+        private LdapContext getBinarySearchConnection()
+                throws ChaiUnavailableException, ChaiOperationException
+        {
+            final Set<String> binaryAttributes = new LinkedHashSet<>( getAttributeSchema().getBinaryAttributeNames() );
+            if ( searchHelper.getAttributes() != null )
+            {
+                for ( final String attributeName : searchHelper.getAttributes() )
+                {
+                    if ( !"*".equals( attributeName ) && !"+".equals( attributeName ) )
+                    {
+                        binaryAttributes.add( attributeName );
+                    }
+                }
+            }
+
+            try
+            {
+                final LdapContext ldapConnection = getDerivedConnection();
+                ldapConnection.addToEnvironment( JNDI_BINARY_SETTING, String.join( " ", binaryAttributes ) );
+                return ldapConnection;
+            }
+            catch ( NamingException e )
+            {
+                throw convertNamingException( e );
+            }
         }
 
         private SearchControls makeSearchControls()
@@ -1303,108 +1552,196 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         private void parseSearchResults(
                 final NamingEnumeration<SearchResult> answer
         )
-                throws NamingException
+                throws NamingException, ChaiOperationException, ChaiUnavailableException
         {
             while ( answer.hasMore() )
             {
                 final SearchResult searchResult = answer.next();
-
-                String entryDN = null;
-                if ( chaiConfiguration.getBooleanSetting( ChaiSetting.JNDI_RESOLVE_IN_NAMESPACE ) )
-                {
-                    try
-                    {
-                        entryDN = searchResult.getNameInNamespace();
-                        entryDN = removeJndiEscapes( entryDN );
-                    }
-                    catch ( UnsupportedOperationException e )
-                    {
-                        LOGGER.debug( () -> "unable to use jndi NameInNamespace api: " + e.getMessage() );
-                    }
-                }
-
-                if ( entryDN == null )
+                final String entryDN = resultEntryDN( searchResult );
+                if ( resultConsumer.accept( entryDN, searchResult.getAttributes() ) )
                 {
-                    final StringBuilder entryDNbuilder = new StringBuilder();
-                    entryDNbuilder.append( removeJndiEscapes( searchResult.getName() ) );
-                    if ( baseDN.length() > 0 )
-                    {
-                        if ( entryDNbuilder.length() > 0 )
-                        {
-                            entryDNbuilder.append( ',' );
-                        }
-                        entryDNbuilder.append( baseDN );
-                    }
-
-                    entryDN = entryDNbuilder.toString();
+                    resultCount++;
                 }
-
-                final Map<String, List<String>> attrValues = new HashMap<>();
+                else
                 {
-                    final NamingEnumeration attributeEnum = searchResult.getAttributes().getAll();
-                    attrValues.putAll( parseAttributeValues( attributeEnum, returnAllValues ) );
+                    LOGGER.warn( () -> "ignoring duplicate DN in search result from ldap server: " + entryDN );
                 }
+            }
+        }
 
-                final String finalEntryDN = entryDN;
-                if ( results.containsKey( entryDN ) )
+        private String resultEntryDN( final SearchResult searchResult )
+        {
+            if ( resolveInNamespace )
+            {
+                try
                 {
-                    LOGGER.warn( () -> "ignoring duplicate DN in search result from ldap server: " + finalEntryDN );
+                    return removeJndiEscapes( searchResult.getNameInNamespace() );
                 }
-                else
+                catch ( UnsupportedOperationException e )
                 {
-                    results.put( entryDN, Collections.unmodifiableMap( attrValues ) );
+                    LOGGER.debug( () -> "unable to use jndi NameInNamespace api: " + e.getMessage() );
+                    resolveInNamespace = false;
                 }
             }
+
+            return joinDN( removeJndiEscapes( searchResult.getName() ), baseDN );
         }
     }
 
-    private Map<String, List<String>> parseAttributeValues(
-            final NamingEnumeration attributeEnum,
-            final boolean returnAllValues
-    )
+    private interface ResultConsumer
+    {
+        /**
+         * Accept a search result entry.
+         *
+         * @return false if the entry DN is a duplicate and has been ignored.
+         */
+        boolean accept( String entryDN, Attributes attributes )
+                throws NamingException, ChaiOperationException, ChaiUnavailableException;
+    }
+
+    static String joinDN( final String relativeName, final String baseDN )
+    {
+        if ( baseDN.isEmpty() )
+        {
+            return relativeName;
+        }
+        if ( relativeName.isEmpty() )
+        {
+            return baseDN;
+        }
+        return relativeName + ',' + baseDN;
+    }
+
+    static Map<String, List<String>> parseAttributeValues( final Attributes attributes )
             throws NamingException
     {
-        final Map<String, List<String>> attrValues = new HashMap<>();
-        if ( attributeEnum != null && attributeEnum.hasMore() )
+        final int attributeCount = attributes == null ? 0 : attributes.size();
+        if ( attributeCount == 0 )
         {
-            while ( attributeEnum.hasMore() )
+            return Collections.emptyMap();
+        }
+
+        final Map<String, List<String>> attrValues = new LdapAttributeMap<>( attributeCount );
+        for ( final NamingEnumeration<? extends Attribute> attributeEnum = attributes.getAll(); attributeEnum.hasMore(); )
+        {
+            final Attribute attribute = attributeEnum.next();
+            attrValues.put( attribute.getID(), attributeValues( attribute ) );
+        }
+        return Collections.unmodifiableMap( attrValues );
+    }
+
+    static Map<String, String> parseFirstAttributeValues( final Attributes attributes )
+            throws NamingException
+    {
+        final int attributeCount = attributes == null ? 0 : attributes.size();
+        if ( attributeCount == 0 )
+        {
+            return Collections.emptyMap();
+        }
+
+        final Map<String, String> attrValues = new LdapAttributeMap<>( attributeCount );
+        for ( final NamingEnumeration<? extends Attribute> attributeEnum = attributes.getAll(); attributeEnum.hasMore(); )
+        {
+            final Attribute attribute = attributeEnum.next();
+            if ( attribute.size() > 0 )
             {
-                final Attribute loopAttribute = ( Attribute ) attributeEnum.next();
-                final String attrName = loopAttribute.getID();
-                final List<String> valueList = new ArrayList<>();
-                for ( NamingEnumeration attrValueEnum = loopAttribute.getAll(); attrValueEnum.hasMore(); )
-                {
-                    final Object value = attrValueEnum.next();
-                    valueList.add( value.toString() );
-                    if ( !returnAllValues )
-                    {
-                        attrValueEnum.close();
-                        break;
-                    }
-                }
-                attrValues.put( attrName, Collections.unmodifiableList( valueList ) );
+                attrValues.put( attribute.getID(), attribute.get().toString() );
             }
         }
         return Collections.unmodifiableMap( attrValues );
     }
 
-    private boolean supportsSearchResultPaging()
-            throws ChaiUnavailableException, ChaiOperationException
+    private static List<String> attributeValues( final Attribute attribute )
+            throws NamingException
+    {
+        final int valueCount = attribute.size();
+        if ( valueCount == 0 )
+        {
+            return Collections.emptyList();
+        }
+        if ( valueCount == 1 )
+        {
+            return Collections.singletonList( attribute.get().toString() );
+        }
+
+        final String[] values = new String[valueCount];
+        for ( int i = 0; i < valueCount; i++ )
+        {
+            values[i] = attribute.get( i ).toString();
+        }
+        return Collections.unmodifiableList( Arrays.asList( values ) );
+    }
+
+    private static void parseCompactAttributeValues( final CompactSearchResult.Builder compactResults, final Attributes attributes )
+            throws NamingException
+    {
+        if ( attributes == null )
+        {
+            return;
+        }
+
+        for ( final NamingEnumeration<? extends Attribute> attributeEnum = attributes.getAll(); attributeEnum.hasMore(); )
+        {
+            final Attribute attribute = attributeEnum.next();
+            compactResults.startAttribute( attribute.getID() );
+            final int valueCount = attribute.size();
+            for ( int i = 0; i < valueCount; i++ )
+            {
+                compactResults.addValue( attribute.get( i ).toString() );
+            }
+        }
+    }
+
+    /**
+     * Get a connection that will return the values of {@code attributeName} as binary.  Attributes with a binary
+     * syntax in the server schema use a context that already has the binary attributes registered, other attributes
+     * require a new context with the attribute added to the environment.
+     */
+    private LdapContext getBinaryLdapConnection( final String attributeName )
+            throws ChaiUnavailableException, NamingException
     {
-        final String enableSettingStr = this.getChaiConfiguration().getSetting( ChaiSetting.LDAP_SEARCH_PAGING_ENABLE );
-        if ( "auto".equalsIgnoreCase( enableSettingStr ) )
+        if ( binaryAttributeSchema == null )
         {
-            if ( cachedPagingEnableSupport == null )
+            initBinaryLdapConnection();
+        }
+
+        final LdapContext schemaBinaryConnection = binaryJndiConnection;
+        if ( schemaBinaryConnection != null && attributeName.indexOf( ';' ) < 0 && binaryAttributeSchema.isBinary( attributeName ) )
+        {
+            if ( socketFactory != null )
             {
-                final ChaiEntry rootDse = ChaiUtility.getRootDSE( this );
-                final Set<String> supportedControls = rootDse.readMultiStringAttribute( "supportedControl" );
-                cachedPagingEnableSupport = supportedControls.contains( PagedResultsControl.OID );
+                ThreadLocalSocketFactory.set( socketFactory );
             }
-            return cachedPagingEnableSupport;
+            return schemaBinaryConnection.newInstance( null );
         }
-        return Boolean.parseBoolean( enableSettingStr );
+
+        final LdapContext ldapConnection = ( LdapContext ) getLdapConnection().lookup( "" );
+
+        // inform jndi the attribute is binary.
+        ldapConnection.addToEnvironment( JNDI_BINARY_SETTING, attributeName );
+        return ldapConnection;
     }
 
+    private void initBinaryLdapConnection()
+            throws ChaiUnavailableException, NamingException
+    {
+        synchronized ( binaryConnectionLock )
+        {
+            if ( binaryAttributeSchema != null )
+            {
+                return;
+            }
+
+            final AttributeSchema attributeSchema = getAttributeSchema();
+            if ( !attributeSchema.getBinaryAttributeNames().isEmpty() )
+            {
+                final LdapContext ldapConnection = getLdapConnection();
+                ldapConnection.addToEnvironment( JNDI_BINARY_SETTING, String.join( " ", attributeSchema.getBinaryAttributeNames() ) );
+                binaryJndiConnection = ldapConnection;
+            }
+            binaryAttributeSchema = attributeSchema;
+        }
+    }
 
     private LdapContext getLdapConnection()
             throws ChaiUnavailableException
@@ -1492,10 +1829,14 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         }
 
         // remove surrounding quotes if the internal value contains a / character
-        final String slashEscapePattern = "^\".*/.*\"$";
-        if ( input.matches( slashEscapePattern ) )
+        final int length = input.length();
+        if ( length > 2 && input.charAt( 0 ) == '"' && input.charAt( length - 1 ) == '"' )
         {
-            return input.replaceAll( "^\"|\"$", "" );
+            final int slashIndex = input.indexOf( '/', 1 );
+            if ( slashIndex > 0 && slashIndex < length - 1 )
+            {
+                return input.substring( 1, length - 1 );
+            }
         }
         return input;
     }
@@ -1506,7 +1847,22 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         {
             return null;
         }
-        return input.replaceAll( "/", "\\\\2f" );
+
+        int slashIndex = input.indexOf( '/' );
+        if ( slashIndex < 0 )
+        {
+            return input;
+        }
+
+        final StringBuilder sb = new StringBuilder( input.length() + 4 );
+        int copied = 0;
+        while ( slashIndex >= 0 )
+        {
+            sb.append( input, copied, slashIndex ).append( "\\2f" );
+            copied = slashIndex + 1;
+            slashIndex = input.indexOf( '/', copied );
+        }
+        return sb.append( input, copied, input.length() ).toString();
     }
 
     protected static BasicControl[] convertControls( final ChaiRequestControl[] controls )
@@ -0,0 +1,823 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiException;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.util.ChaiDn;
+import com.novell.ldapchai.util.SearchHelper;
+import com.novell.ldapchai.util.internal.ChaiLogger;
+import com.novell.ldapchai.util.internal.LdapFilter;
+import com.novell.ldapchai.util.internal.StringHelper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Local replica of an ldap subtree, kept in a {@link LocalReplicaStore} and synchronized in the background.
+ *
+ * <p>The first synchronization copies the complete subtree.  Later synchronizations retrieve the entries whose
+ * {@code modifyTimestamp} is at or after the newest timestamp seen so far, and a periodic reconciliation lists
+ * the DNs of the subtree to find deleted entries, which are not visible to a timestamp search.  Once a full
+ * synchronization has completed the store remains usable after a restart; the replica then serves the stored
+ * entries while the next incremental synchronization catches up.</p>
+ *
+ * <p>Changes made through a {@link LocalReplicaWrapper} are written through to the store by re-reading the
+ * modified entries shortly after the change.  Changes made in quick succession are re-read together and stored as
+ * one batch, and until then the modified entries are read from the server, so callers see their own changes
+ * without waiting for a synchronization.</p>
+ *
+ * @see ChaiSetting#LOCAL_REPLICA_ENABLE
+ */
+final class LocalReplica implements Closeable
+{
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger( LocalReplica.class );
+
+    static final String MODIFY_TIMESTAMP = "modifyTimestamp";
+
+    static final String METADATA_BASE_DN = "baseDN";
+    static final String METADATA_BIND_DN = "bindDN";
+    static final String METADATA_BIND_URLS = "bindURLs";
+    static final String METADATA_SYNC_TIMESTAMP = "syncTimestamp";
+    static final String METADATA_FULL_SYNC_TIME = "fullSyncTime";
+    static final String METADATA_RECONCILE_TIME = "reconcileTime";
+
+    private static final int WRITE_BATCH_SIZE = 1000;
+    private static final int REFRESH_DELAY_MS = 250;
+
+    private static final Set<String> SYNC_ATTRIBUTES = Collections.unmodifiableSet( new LinkedHashSet<>( Arrays.asList( "*", MODIFY_TIMESTAMP ) ) );
+
+    private final LocalReplicaStore store;
+    private final String baseDN;
+    private final ChaiDn parsedBaseDN;
+    private final Identity identity;
+    private final int syncIntervalMs;
+    private final int reconcileIntervalMs;
+    private final ProviderSource providerSource;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Map<String, PendingRefresh> pendingRefreshes = new ConcurrentHashMap<>();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    private volatile boolean ready;
+    private volatile boolean searchable;
+    private volatile ScheduledExecutorService executorService;
+
+    private ChaiProvider syncProvider;
+
+    /**
+     * The bind DN and server URLs a replica is synchronized with.  Entries read under one identity are only served
+     * to providers with the same identity, so that the server's access controls and data are not bypassed.
+     */
+    static final class Identity
+    {
+        private final String bindDN;
+        private final String bindURLs;
+
+        Identity( final String bindDN, final List<String> bindURLs )
+        {
+            this.bindDN = bindDN == null ? "" : ChaiDn.normalize( bindDN );
+            this.bindURLs = StringHelper.stringCollectionToString( bindURLs, "," );
+        }
+
+        static Identity forConfiguration( final ChaiConfiguration chaiConfiguration )
+        {
+            return new Identity( chaiConfiguration.getSetting( ChaiSetting.BIND_DN ), chaiConfiguration.bindURLsAsList() );
+        }
+
+        /**
+         * Test if a store was synchronized with this identity.  A populated store without a recorded identity does
+         * not match, since it can not be known which identity read its entries.
+         */
+        boolean matchesStore( final LocalReplicaStore store )
+        {
+            final String storedBindDN = store.getMetadata( METADATA_BIND_DN );
+            final String storedBindURLs = store.getMetadata( METADATA_BIND_URLS );
+            if ( storedBindDN == null || storedBindURLs == null )
+            {
+                return store.getMetadata( METADATA_FULL_SYNC_TIME ) == null && store.size() == 0;
+            }
+            return bindDN.equals( storedBindDN ) && bindURLs.equals( storedBindURLs );
+        }
+
+        @Override
+        public boolean equals( final Object o )
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+            if ( o == null || getClass() != o.getClass() )
+            {
+                return false;
+            }
+            final Identity that = ( Identity ) o;
+            return bindDN.equals( that.bindDN ) && bindURLs.equals( that.bindURLs );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash( bindDN, bindURLs );
+        }
+
+        @Override
+        public String toString()
+        {
+            return bindDN + "@" + bindURLs;
+        }
+    }
+
+    /**
+     * Key of a replica shared between providers: the store directory and the identity synchronizing it.
+     */
+    static final class Key
+    {
+        private final Path directory;
+        private final Identity identity;
+
+        private Key( final Path directory, final Identity identity )
+        {
+            this.directory = directory;
+            this.identity = identity;
+        }
+
+        static Key forConfiguration( final ChaiConfiguration chaiConfiguration )
+        {
+            return new Key( storeDirectory( chaiConfiguration ), Identity.forConfiguration( chaiConfiguration ) );
+        }
+
+        Path getDirectory()
+        {
+            return directory;
+        }
+
+        Identity getIdentity()
+        {
+            return identity;
+        }
+
+        @Override
+        public boolean equals( final Object o )
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+            if ( o == null || getClass() != o.getClass() )
+            {
+                return false;
+            }
+            final Key that = ( Key ) o;
+            return directory.equals( that.directory ) && identity.equals( that.identity );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash( directory, identity );
+        }
+    }
+
+    /**
+     * Source of the connection used for synchronization.
+     */
+    interface ProviderSource
+    {
+        ChaiProvider newProvider()
+                throws ChaiUnavailableException;
+    }
+
+    LocalReplica(
+            final LocalReplicaStore store,
+            final String baseDN,
+            final Identity identity,
+            final int syncIntervalMs,
+            final int reconcileIntervalMs,
+            final ProviderSource providerSource
+    )
+            throws IOException
+    {
+        this.store = store;
+        this.baseDN = baseDN;
+        this.parsedBaseDN = ChaiDn.parse( baseDN );
+        this.identity = identity;
+        this.syncIntervalMs = syncIntervalMs;
+        this.reconcileIntervalMs = reconcileIntervalMs;
+        this.providerSource = providerSource;
+
+        final String storedBaseDN = store.getMetadata( METADATA_BASE_DN );
+        if ( storedBaseDN != null && !ChaiDn.normalize( storedBaseDN ).equals( parsedBaseDN.toNormalizedString() ) )
+        {
+            LOGGER.info( () -> "local replica base DN changed from " + storedBaseDN + " to " + baseDN + ", discarding stored entries" );
+            store.clear();
+        }
+        else if ( !identity.matchesStore( store ) )
+        {
+            LOGGER.info( () -> "local replica of " + baseDN + " was synchronized by a different bind DN or server, discarding stored entries" );
+            store.clear();
+        }
+
+        this.ready = store.getMetadata( METADATA_FULL_SYNC_TIME ) != null && store.getMetadata( METADATA_SYNC_TIMESTAMP ) != null;
+        this.searchable = ready;
+        if ( ready )
+        {
+            LOGGER.debug( () -> "local replica of " + baseDN + " opened with " + store.size() + " entries, last full synchronization at "
+                    + store.getMetadata( METADATA_FULL_SYNC_TIME ) );
+        }
+    }
+
+    /**
+     * Open the replica for a configuration.  The replica connects using a copy of the configuration with
+     * {@link ChaiSetting#LOCAL_REPLICA_ENABLE} disabled, and starts synchronizing in the background.
+     *
+     * @param chaiProviderFactory factory used to create the synchronization connection
+     * @param chaiConfiguration a configuration with the local replica enabled
+     * @return a started replica
+     * @throws IOException if the store can not be opened
+     */
+    static LocalReplica forConfiguration( final ChaiProviderFactory chaiProviderFactory, final ChaiConfiguration chaiConfiguration )
+            throws IOException
+    {
+        final String baseDN = chaiConfiguration.getSetting( ChaiSetting.LOCAL_REPLICA_BASE_DN );
+        if ( StringHelper.isEmpty( baseDN ) || !ChaiDn.isValid( baseDN ) )
+        {
+            throw new IllegalArgumentException( "setting " + ChaiSetting.LOCAL_REPLICA_BASE_DN.getKey() + " must be a valid DN" );
+        }
+
+        final LocalReplicaStore store = LocalReplicaStore.open(
+                storeDirectory( chaiConfiguration ),
+                StringHelper.tokenizeString( chaiConfiguration.getSetting( ChaiSetting.LOCAL_REPLICA_INDEXED_ATTRIBUTES ), "," ) );
+
+        final ChaiConfiguration syncConfiguration = ChaiConfiguration.builder( chaiConfiguration )
+                .setSetting( ChaiSetting.LOCAL_REPLICA_ENABLE, "false" )
+                .build();
+
+        final LocalReplica localReplica = new LocalReplica(
+                store,
+                baseDN,
+                Identity.forConfiguration( chaiConfiguration ),
+                chaiConfiguration.getIntSetting( ChaiSetting.LOCAL_REPLICA_SYNC_INTERVAL ),
+                chaiConfiguration.getIntSetting( ChaiSetting.LOCAL_REPLICA_RECONCILE_INTERVAL ),
+                () -> chaiProviderFactory.newProvider( syncConfiguration ) );
+        localReplica.start();
+        return localReplica;
+    }
+
+    static Path storeDirectory( final ChaiConfiguration chaiConfiguration )
+    {
+        final String directory = chaiConfiguration.getSetting( ChaiSetting.LOCAL_REPLICA_DIRECTORY );
+        if ( StringHelper.isEmpty( directory ) )
+        {
+            throw new IllegalArgumentException( "setting " + ChaiSetting.LOCAL_REPLICA_DIRECTORY.getKey() + " is required" );
+        }
+        return Paths.get( directory ).toAbsolutePath().normalize();
+    }
+
+    void start()
+    {
+        final ThreadFactory threadFactory = new ThreadFactory()
+        {
+            private final ThreadFactory realThreadFactory = Executors.defaultThreadFactory();
+
+            @Override
+            public Thread newThread( final Runnable runnable )
+            {
+                final Thread t = realThreadFactory.newThread( runnable );
+                t.setDaemon( true );
+                t.setName( "ldapchai-replica-" + t.getName() );
+                return t;
+            }
+        };
+
+        final ScheduledExecutorService newExecutor = Executors.newSingleThreadScheduledExecutor( threadFactory );
+        newExecutor.scheduleWithFixedDelay( this::syncAndLog, 0, Math.max( 1000, syncIntervalMs ), TimeUnit.MILLISECONDS );
+        executorService = newExecutor;
+    }
+
+    /**
+     * Test if stored entries can be read.
+     *
+     * @return true once a full synchronization has completed, including one completed before a restart
+     */
+    boolean isReady()
+    {
+        return ready;
+    }
+
+    /**
+     * Test if stored entries can be searched.  Searching is suspended if a change could not be written through to
+     * the store, until the next synchronization.
+     *
+     * @return true if searches can be answered from the store
+     */
+    boolean isSearchable()
+    {
+        return ready && searchable && pendingRefreshes.isEmpty();
+    }
+
+    /**
+     * Test if a modified entry has not yet been re-read from the server.
+     *
+     * @param dn an entry DN
+     * @return true if the stored values of the entry may be out of date
+     */
+    boolean isRefreshPending( final String dn )
+    {
+        if ( pendingRefreshes.isEmpty() )
+        {
+            return false;
+        }
+        if ( pendingRefreshes.containsKey( ChaiDn.normalize( dn ) ) )
+        {
+            return true;
+        }
+        for ( final PendingRefresh pendingRefresh : pendingRefreshes.values() )
+        {
+            if ( pendingRefresh.searchScope == SearchScope.SUBTREE && ChaiDn.isValid( dn ) && ChaiDn.isValid( pendingRefresh.dn )
+                    && ChaiDn.parse( dn ).isDescendantOf( ChaiDn.parse( pendingRefresh.dn ) ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Test if a DN is inside the replicated subtree.
+     *
+     * @param dn an entry DN
+     * @return true if the DN is the base DN or one of its descendants
+     */
+    boolean covers( final String dn )
+    {
+        if ( dn == null || !ChaiDn.isValid( dn ) )
+        {
+            return false;
+        }
+        final ChaiDn parsedDn = ChaiDn.parse( dn );
+        return parsedDn.equals( parsedBaseDN ) || parsedDn.isDescendantOf( parsedBaseDN );
+    }
+
+    Identity getIdentity()
+    {
+        return identity;
+    }
+
+    LocalReplicaStore getStore()
+    {
+        return store;
+    }
+
+    String getBaseDN()
+    {
+        return baseDN;
+    }
+
+    private void syncAndLog()
+    {
+        try
+        {
+            sync();
+        }
+        catch ( Exception e )
+        {
+            LOGGER.warn( () -> "error synchronizing local replica of " + baseDN + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Synchronize the store with the server.  A full synchronization is performed if the store has never been
+     * completely populated, otherwise an incremental synchronization, followed by a reconciliation if one is due.
+     *
+     * @throws ChaiException if the server can not be read
+     * @throws IOException if the store can not be written
+     */
+    void sync()
+            throws ChaiException, IOException
+    {
+        syncLock.lock();
+        try
+        {
+            final ChaiProvider provider = syncProvider();
+            try
+            {
+                final String lastTimestamp = store.getMetadata( METADATA_SYNC_TIMESTAMP );
+                if ( !ready || lastTimestamp == null )
+                {
+                    fullSync( provider );
+                }
+                else
+                {
+                    incrementalSync( provider, lastTimestamp );
+                    if ( reconcileDue() )
+                    {
+                        reconcile( provider );
+                    }
+                }
+                searchable = true;
+                refreshPending( provider );
+            }
+            catch ( ChaiUnavailableException e )
+            {
+                closeSyncProvider();
+                throw e;
+            }
+        }
+        finally
+        {
+            syncLock.unlock();
+        }
+    }
+
+    private void fullSync( final ChaiProvider provider )
+            throws ChaiException, IOException
+    {
+        final long startTime = System.currentTimeMillis();
+        final CompactSearchResult results = provider.searchCompact( baseDN, syncSearchHelper( SearchHelper.DEFAULT_FILTER, SearchScope.SUBTREE ) );
+
+        final Set<String> serverDNs = new HashSet<>( results.size() );
+        for ( int i = 0; i < results.size(); i++ )
+        {
+            serverDNs.add( ChaiDn.normalize( results.getEntryDN( i ) ) );
+        }
+
+        final Set<String> deletes = store.normalizedDNs();
+        deletes.removeAll( serverDNs );
+        store.apply( Collections.emptyMap(), deletes );
+
+        final String maxTimestamp = storeResults( results, null );
+
+        final Map<String, String> metadata = new HashMap<>();
+        metadata.put( METADATA_BASE_DN, baseDN );
+        metadata.put( METADATA_BIND_DN, identity.bindDN );
+        metadata.put( METADATA_BIND_URLS, identity.bindURLs );
+        metadata.put( METADATA_SYNC_TIMESTAMP, maxTimestamp == null ? "" : maxTimestamp );
+        metadata.put( METADATA_FULL_SYNC_TIME, String.valueOf( System.currentTimeMillis() ) );
+        metadata.put( METADATA_RECONCILE_TIME, String.valueOf( System.currentTimeMillis() ) );
+        store.putMetadata( metadata );
+        ready = true;
+
+        LOGGER.debug( () -> "full synchronization of local replica " + baseDN + " stored " + results.size() + " entries in "
+                + ( System.currentTimeMillis() - startTime ) + "ms" );
+    }
+
+    private void incrementalSync( final ChaiProvider provider, final String lastTimestamp )
+            throws ChaiException, IOException
+    {
+        if ( lastTimestamp.isEmpty() )
+        {
+            // the subtree had no timestamps when it was copied, so changes can only be found by copying it again.
+            fullSync( provider );
+            return;
+        }
+
+        final String filter = LdapFilter.greaterOrEqual( MODIFY_TIMESTAMP, lastTimestamp ).toString();
+        final CompactSearchResult results = provider.searchCompact( baseDN, syncSearchHelper( filter, SearchScope.SUBTREE ) );
+        final String maxTimestamp = storeResults( results, lastTimestamp );
+
+        if ( !lastTimestamp.equals( maxTimestamp ) )
+        {
+            store.putMetadata( Collections.singletonMap( METADATA_SYNC_TIMESTAMP, maxTimestamp ) );
+        }
+
+        LOGGER.trace( () -> "incremental synchronization of local replica " + baseDN + " updated " + results.size() + " entries" );
+    }
+
+    private boolean reconcileDue()
+    {
+        final long lastReconcile = StringHelper.convertStrToLong( store.getMetadata( METADATA_RECONCILE_TIME ), 0 );
+        return System.currentTimeMillis() - lastReconcile >= reconcileIntervalMs;
+    }
+
+    private void reconcile( final ChaiProvider provider )
+            throws ChaiException, IOException
+    {
+        final SearchHelper searchHelper = new SearchHelper( SearchHelper.DEFAULT_FILTER, SearchScope.SUBTREE );
+        searchHelper.returnNoAttributes();
+        final CompactSearchResult results = provider.searchCompact( baseDN, searchHelper );
+
+        final Set<String> serverDNs = new HashSet<>( results.size() );
+        final List<String> missingDNs = new ArrayList<>();
+        for ( int i = 0; i < results.size(); i++ )
+        {
+            final String entryDN = results.getEntryDN( i );
+            serverDNs.add( ChaiDn.normalize( entryDN ) );
+            if ( !store.contains( entryDN ) )
+            {
+                missingDNs.add( entryDN );
+            }
+        }
+
+        final Set<String> deletes = store.normalizedDNs();
+        deletes.removeAll( serverDNs );
+        store.apply( Collections.emptyMap(), deletes );
+
+        final List<PendingRefresh> refreshes = new ArrayList<>( missingDNs.size() );
+        for ( final String missingDN : missingDNs )
+        {
+            refreshes.add( new PendingRefresh( missingDN, SearchScope.BASE ) );
+        }
+        refreshEntries( provider, refreshes );
+
+        store.putMetadata( Collections.singletonMap( METADATA_RECONCILE_TIME, String.valueOf( System.currentTimeMillis() ) ) );
+        LOGGER.debug( () -> "reconciled local replica " + baseDN + ", removed " + deletes.size() + " and added " + missingDNs.size() + " entries" );
+    }
+
+    /**
+     * Store the entries of a search result in batches.
+     *
+     * @return the newest {@code modifyTimestamp} of the results and {@code initialTimestamp}
+     */
+    private String storeResults( final CompactSearchResult results, final String initialTimestamp )
+            throws IOException
+    {
+        return storeResults( results.asMap(), initialTimestamp );
+    }
+
+    private String storeResults( final Map<String, Map<String, List<String>>> results, final String initialTimestamp )
+            throws IOException
+    {
+        String maxTimestamp = initialTimestamp;
+        Map<String, Map<String, List<String>>> batch = new LinkedHashMap<>();
+        for ( final Map.Entry<String, Map<String, List<String>>> entry : results.entrySet() )
+        {
+            batch.put( entry.getKey(), entry.getValue() );
+
+            final List<String> timestamps = entry.getValue().get( MODIFY_TIMESTAMP );
+            if ( timestamps != null && !timestamps.isEmpty() )
+            {
+                final String timestamp = timestamps.get( 0 );
+                if ( maxTimestamp == null || maxTimestamp.compareTo( timestamp ) < 0 )
+                {
+                    maxTimestamp = timestamp;
+                }
+            }
+
+            if ( batch.size() >= WRITE_BATCH_SIZE )
+            {
+                store.apply( batch, Collections.emptyList() );
+                batch = new LinkedHashMap<>();
+            }
+        }
+        store.apply( batch, Collections.emptyList() );
+        return maxTimestamp;
+    }
+
+    /**
+     * Queue an entry to be re-read from the server after a change, so the change becomes visible in the store.
+     * Queued entries are re-read together shortly afterwards, or by the next synchronization if the replica is not
+     * started, and are read from the server until then.
+     *
+     * @param dn DN of the changed entry
+     * @param searchScope {@link SearchScope#BASE} for a single entry, or {@link SearchScope#SUBTREE} for a renamed subtree
+     */
+    void refreshLater( final String dn, final SearchScope searchScope )
+    {
+        if ( !covers( dn ) )
+        {
+            return;
+        }
+
+        pendingRefreshes.put( ChaiDn.normalize( dn ), new PendingRefresh( dn, searchScope ) );
+
+        final ScheduledExecutorService executor = executorService;
+        if ( executor != null && refreshScheduled.compareAndSet( false, true ) )
+        {
+            try
+            {
+                executor.schedule( this::refreshPendingAndLog, REFRESH_DELAY_MS, TimeUnit.MILLISECONDS );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                refreshScheduled.set( false );
+            }
+        }
+    }
+
+    private void refreshPendingAndLog()
+    {
+        try
+        {
+            refreshPending();
+        }
+        catch ( Exception e )
+        {
+            LOGGER.debug( () -> "error refreshing local replica of " + baseDN + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Re-read all entries queued by {@link #refreshLater(String, SearchScope)} and store them as one batch.
+     *
+     * @throws ChaiUnavailableException if the server can not be reached, the entries stay queued
+     * @throws IOException if the store can not be written
+     */
+    void refreshPending()
+            throws ChaiUnavailableException, IOException
+    {
+        syncLock.lock();
+        try
+        {
+            try
+            {
+                refreshPending( syncProvider() );
+            }
+            catch ( ChaiUnavailableException e )
+            {
+                closeSyncProvider();
+                throw e;
+            }
+        }
+        finally
+        {
+            syncLock.unlock();
+        }
+    }
+
+    private void refreshPending( final ChaiProvider provider )
+            throws ChaiUnavailableException, IOException
+    {
+        refreshScheduled.set( false );
+        if ( pendingRefreshes.isEmpty() )
+        {
+            return;
+        }
+
+        final Map<String, PendingRefresh> refreshes = new LinkedHashMap<>( pendingRefreshes );
+        refreshEntries( provider, refreshes.values() );
+
+        // entries changed again while they were being read stay queued.
+        for ( final Map.Entry<String, PendingRefresh> entry : refreshes.entrySet() )
+        {
+            pendingRefreshes.remove( entry.getKey(), entry.getValue() );
+        }
+        LOGGER.trace( () -> "refreshed " + refreshes.size() + " modified entries of local replica " + baseDN );
+    }
+
+    /**
+     * Re-read entries from the server and store them as one batch.  Entries that can not be read are removed from
+     * the store and searches are answered by the server until the next synchronization.
+     */
+    private void refreshEntries( final ChaiProvider provider, final Collection<PendingRefresh> refreshes )
+            throws ChaiUnavailableException, IOException
+    {
+        final Map<String, Map<String, List<String>>> results = new LinkedHashMap<>();
+        for ( final PendingRefresh refresh : refreshes )
+        {
+            try
+            {
+                final CompactSearchResult entryResults = provider.searchCompact(
+                        refresh.dn,
+                        syncSearchHelper( SearchHelper.DEFAULT_FILTER, refresh.searchScope ) );
+                if ( entryResults.isEmpty() )
+                {
+                    removeSubtree( refresh.dn );
+                }
+                else
+                {
+                    results.putAll( entryResults.asMap() );
+                }
+                continue;
+            }
+            catch ( ChaiOperationException e )
+            {
+                if ( e.getErrorCode() == ChaiError.NO_SUCH_ENTRY )
+                {
+                    removeSubtree( refresh.dn );
+                    continue;
+                }
+                LOGGER.debug( () -> "unable to refresh local replica entry " + refresh.dn + ": " + e.getMessage() );
+            }
+
+            searchable = false;
+            removeSubtree( refresh.dn );
+        }
+        storeResults( results, null );
+    }
+
+    /**
+     * Remove an entry and its descendants from the store.
+     *
+     * @param dn DN of the removed entry
+     */
+    void removeSubtree( final String dn )
+    {
+        if ( !covers( dn ) )
+        {
+            return;
+        }
+
+        try
+        {
+            store.deleteSubtree( dn );
+        }
+        catch ( IOException e )
+        {
+            LOGGER.warn( () -> "error removing " + dn + " from local replica, discarding replica: " + e.getMessage() );
+            ready = false;
+        }
+    }
+
+    private static SearchHelper syncSearchHelper( final String filter, final SearchScope searchScope )
+    {
+        return new SearchHelper( filter, searchScope, SYNC_ATTRIBUTES );
+    }
+
+    private static final class PendingRefresh
+    {
+        private final String dn;
+        private final SearchScope searchScope;
+
+        PendingRefresh( final String dn, final SearchScope searchScope )
+        {
+            this.dn = dn;
+            this.searchScope = searchScope;
+        }
+    }
+
+    private ChaiProvider syncProvider()
+            throws ChaiUnavailableException
+    {
+        if ( syncProvider == null )
+        {
+            syncProvider = providerSource.newProvider();
+        }
+        return syncProvider;
+    }
+
+    private void closeSyncProvider()
+    {
+        if ( syncProvider != null )
+        {
+            syncProvider.close();
+            syncProvider = null;
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        final ScheduledExecutorService executor = executorService;
+        if ( executor != null )
+        {
+            executor.shutdownNow();
+        }
+
+        syncLock.lock();
+        try
+        {
+            closeSyncProvider();
+            store.close();
+        }
+        catch ( IOException e )
+        {
+            LOGGER.warn( () -> "error closing local replica store: " + e.getMessage() );
+        }
+        finally
+        {
+            syncLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,967 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.util.ChaiDn;
+import com.novell.ldapchai.util.internal.ChaiLogger;
+import com.novell.ldapchai.util.internal.LdapFilter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Disk-backed entry store of a {@link LocalReplica}.
+ *
+ * <p>Entries are kept in an append-only log file that is memory-mapped.  Each change appends a record, either the
+ * complete attribute values of an entry or a delete marker, so a crash can at worst leave a partially written record
+ * at the end of the log, which is discarded when the store is re-opened.  The mapping is larger than the log and
+ * grows in powers of two, so records are written into already mapped space and the file is only re-mapped when the
+ * log outgrows it; the unused space is zero-filled and is trimmed when the store is closed.  The log is rewritten
+ * without superseded records once they use more space than the live entries.</p>
+ *
+ * <p>The DN index, the parent/child index used to evaluate search scopes and the attribute equality indexes are
+ * held in memory and rebuilt from the mapped log when the store is opened, which is much faster than
+ * re-reading the subtree from the server.  A small properties file holds the synchronization state.</p>
+ *
+ * <p>The log is limited to 2GB, the maximum size of a single mapped buffer.</p>
+ */
+final class LocalReplicaStore implements Closeable
+{
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger( LocalReplicaStore.class );
+
+    static final String DATA_FILE = "entries.dat";
+    static final String METADATA_FILE = "replica.properties";
+
+    private static final int MAGIC = 0x4C524550;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final int RECORD_PREFIX_LENGTH = 5;
+
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_DELETE = 2;
+
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+    private static final long MIN_MAPPED_SIZE = 1024 * 1024;
+
+    private final Path directory;
+    private final Set<String> indexedAttributes;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> offsets = new HashMap<>();
+    private final Map<String, Set<String>> children = new HashMap<>();
+    private final Map<String, Map<String, Set<String>>> indexes = new HashMap<>();
+    private final Properties metadata = new Properties();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long fileSize;
+    private long liveBytes;
+
+    private LocalReplicaStore( final Path directory, final Collection<String> indexedAttributes )
+    {
+        this.directory = directory;
+        final Set<String> lowerCaseNames = new HashSet<>();
+        for ( final String attribute : indexedAttributes )
+        {
+            lowerCaseNames.add( attribute.trim().toLowerCase( Locale.ROOT ) );
+        }
+        this.indexedAttributes = Collections.unmodifiableSet( lowerCaseNames );
+    }
+
+    /**
+     * Open or create a store, rebuilding the in-memory indexes from the existing log.
+     *
+     * @param directory store directory, created if it does not exist
+     * @param indexedAttributes attributes with an equality index
+     * @return an open store
+     * @throws IOException if the store can not be read or created
+     */
+    static LocalReplicaStore open( final Path directory, final Collection<String> indexedAttributes )
+            throws IOException
+    {
+        Files.createDirectories( directory );
+        final LocalReplicaStore store = new LocalReplicaStore( directory, indexedAttributes );
+        store.load();
+        return store;
+    }
+
+    private void load()
+            throws IOException
+    {
+        final long startTime = System.currentTimeMillis();
+
+        final Path metadataFile = directory.resolve( METADATA_FILE );
+        if ( Files.exists( metadataFile ) )
+        {
+            try ( InputStream inputStream = Files.newInputStream( metadataFile ) )
+            {
+                metadata.load( inputStream );
+            }
+        }
+
+        channel = FileChannel.open( directory.resolve( DATA_FILE ), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE );
+        fileSize = channel.size();
+
+        if ( fileSize < HEADER_LENGTH || !validHeader() )
+        {
+            if ( fileSize > 0 )
+            {
+                LOGGER.warn( () -> "local replica store " + directory + " has an unknown format, discarding existing data" );
+            }
+            resetFile();
+            return;
+        }
+
+        map( fileSize );
+        long position = HEADER_LENGTH;
+        while ( position + RECORD_PREFIX_LENGTH <= fileSize )
+        {
+            final int recordLength = buffer.getInt( ( int ) position );
+            if ( recordLength < 1 || position + 4 + recordLength > fileSize )
+            {
+                break;
+            }
+
+            try
+            {
+                applyRecordToIndexes( ( int ) position );
+            }
+            catch ( BufferUnderflowException | IllegalArgumentException e )
+            {
+                break;
+            }
+            position += 4 + recordLength;
+        }
+
+        if ( position < fileSize )
+        {
+            // a zero record length is the unused mapped space of a store that was not closed, anything else is a partial record.
+            if ( position + 4 > fileSize || buffer.getInt( ( int ) position ) != 0 )
+            {
+                final long discardedBytes = fileSize - position;
+                LOGGER.warn( () -> "discarding " + discardedBytes + " bytes of incomplete records at end of local replica store " + directory );
+            }
+            buffer = null;
+            channel.truncate( position );
+            fileSize = position;
+        }
+        ensureMapped( fileSize );
+
+        LOGGER.debug( () -> "opened local replica store " + directory + " with " + offsets.size() + " entries in "
+                + ( System.currentTimeMillis() - startTime ) + "ms" );
+    }
+
+    private boolean validHeader()
+            throws IOException
+    {
+        final ByteBuffer header = ByteBuffer.allocate( HEADER_LENGTH );
+        channel.read( header, 0 );
+        header.flip();
+        return header.getInt() == MAGIC && header.getInt() == VERSION;
+    }
+
+    private void resetFile()
+            throws IOException
+    {
+        buffer = null;
+        channel.truncate( 0 );
+        final ByteBuffer header = ByteBuffer.allocate( HEADER_LENGTH );
+        header.putInt( MAGIC ).putInt( VERSION ).flip();
+        channel.write( header, 0 );
+        channel.force( true );
+        fileSize = HEADER_LENGTH;
+        offsets.clear();
+        children.clear();
+        indexes.clear();
+        liveBytes = 0;
+        ensureMapped( fileSize );
+    }
+
+    /**
+     * Make sure the mapping covers at least {@code requiredSize} bytes, re-mapping the file with the next power of two
+     * if it does not.  Mapping past the end of the file extends it with zeros.
+     */
+    private void ensureMapped( final long requiredSize )
+            throws IOException
+    {
+        if ( buffer != null && buffer.capacity() >= requiredSize )
+        {
+            return;
+        }
+
+        final long capacity = Math.min( MAX_FILE_SIZE, Math.max( MIN_MAPPED_SIZE, Long.highestOneBit( Math.max( 1, requiredSize - 1 ) ) << 1 ) );
+        map( capacity );
+    }
+
+    private void map( final long capacity )
+            throws IOException
+    {
+        buffer = channel.map( FileChannel.MapMode.READ_WRITE, 0, capacity );
+    }
+
+    /**
+     * Get a synchronization state value.
+     *
+     * @param key metadata key
+     * @return the value, or null if not set
+     */
+    String getMetadata( final String key )
+    {
+        lock.readLock().lock();
+        try
+        {
+            return metadata.getProperty( key );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Update synchronization state values.  The entry log is flushed to disk before the metadata is written, so the
+     * metadata never describes changes that have not been stored.
+     *
+     * @param values new metadata values, null values remove a key
+     * @throws IOException if the metadata can not be written
+     */
+    void putMetadata( final Map<String, String> values )
+            throws IOException
+    {
+        lock.writeLock().lock();
+        try
+        {
+            for ( final Map.Entry<String, String> entry : values.entrySet() )
+            {
+                if ( entry.getValue() == null )
+                {
+                    metadata.remove( entry.getKey() );
+                }
+                else
+                {
+                    metadata.setProperty( entry.getKey(), entry.getValue() );
+                }
+            }
+
+            buffer.force();
+            writeMetadata();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void writeMetadata()
+            throws IOException
+    {
+        final Path metadataFile = directory.resolve( METADATA_FILE );
+        final Path tempFile = Paths.get( metadataFile + ".tmp" );
+        try ( OutputStream outputStream = Files.newOutputStream( tempFile ) )
+        {
+            metadata.store( outputStream, "ldapchai local replica" );
+        }
+        Files.move( tempFile, metadataFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+    }
+
+    /**
+     * Remove all entries and metadata.
+     *
+     * @throws IOException if the store can not be written
+     */
+    void clear()
+            throws IOException
+    {
+        lock.writeLock().lock();
+        try
+        {
+            metadata.clear();
+            Files.deleteIfExists( directory.resolve( METADATA_FILE ) );
+            resetFile();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Apply a batch of changes.
+     *
+     * @param puts entries to store, keyed by DN, replacing any previous values of the entry
+     * @param deletes DNs of entries to remove
+     * @throws IOException if the changes can not be written
+     */
+    void apply( final Map<String, ? extends Map<String, ? extends Collection<String>>> puts, final Collection<String> deletes )
+            throws IOException
+    {
+        if ( puts.isEmpty() && deletes.isEmpty() )
+        {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try
+        {
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            final DataOutputStream output = new DataOutputStream( byteArrayOutputStream );
+            final List<Integer> recordOffsets = new ArrayList<>();
+
+            for ( final String dn : deletes )
+            {
+                if ( offsets.containsKey( normalize( dn ) ) )
+                {
+                    recordOffsets.add( ( int ) fileSize + output.size() );
+                    writeDeleteRecord( output, dn );
+                }
+            }
+
+            for ( final Map.Entry<String, ? extends Map<String, ? extends Collection<String>>> entry : puts.entrySet() )
+            {
+                recordOffsets.add( ( int ) fileSize + output.size() );
+                writePutRecord( output, entry.getKey(), entry.getValue() );
+            }
+
+            if ( recordOffsets.isEmpty() )
+            {
+                return;
+            }
+
+            output.flush();
+            final byte[] bytes = byteArrayOutputStream.toByteArray();
+            if ( fileSize + bytes.length > MAX_FILE_SIZE )
+            {
+                throw new IOException( "local replica store " + directory + " exceeds maximum size of " + MAX_FILE_SIZE + " bytes" );
+            }
+
+            ensureMapped( fileSize + bytes.length );
+            final ByteBuffer writeBuffer = buffer.duplicate();
+            writeBuffer.position( ( int ) fileSize );
+            writeBuffer.put( bytes );
+            fileSize += bytes.length;
+
+            for ( final int recordOffset : recordOffsets )
+            {
+                applyRecordToIndexes( recordOffset );
+            }
+
+            compactIfNeeded();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove an entry and all of its descendants.
+     *
+     * @param dn the DN of the subtree root
+     * @throws IOException if the changes can not be written
+     */
+    void deleteSubtree( final String dn )
+            throws IOException
+    {
+        final List<String> subtree;
+        lock.readLock().lock();
+        try
+        {
+            subtree = new ArrayList<>( scopeCandidates( normalize( dn ), SearchScope.SUBTREE ) );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        apply( Collections.emptyMap(), subtree );
+    }
+
+    /**
+     * Read a stored entry.
+     *
+     * @param dn entry DN
+     * @return the entry, or null if the entry is not stored
+     */
+    StoredEntry read( final String dn )
+    {
+        lock.readLock().lock();
+        try
+        {
+            final Integer offset = offsets.get( normalize( dn ) );
+            return offset == null ? null : readEntry( offset );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean contains( final String dn )
+    {
+        lock.readLock().lock();
+        try
+        {
+            return offsets.containsKey( normalize( dn ) );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return offsets.size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the normalized DNs of all stored entries.
+     *
+     * @return a copy of the stored DNs
+     */
+    Set<String> normalizedDNs()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return new HashSet<>( offsets.keySet() );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Search the stored entries.  Equality filters on indexed attributes are resolved with the index, other
+     * filters are evaluated against each entry in scope.
+     *
+     * @param baseDN search base
+     * @param searchScope search scope
+     * @param filter an evaluable filter, see {@link LdapFilter#isEvaluable()}
+     * @param maxResults maximum number of results, zero for unlimited
+     * @return matching entries keyed by DN, in no particular order
+     */
+    Map<String, StoredEntry> search( final String baseDN, final SearchScope searchScope, final LdapFilter filter, final int maxResults )
+    {
+        final String normalizedBase = normalize( baseDN );
+        final Map<String, StoredEntry> results = new LinkedHashMap<>();
+
+        lock.readLock().lock();
+        try
+        {
+            final Set<String> indexCandidates = indexCandidates( filter );
+            final Collection<String> candidates = indexCandidates == null
+                    ? scopeCandidates( normalizedBase, searchScope )
+                    : indexCandidates;
+
+            for ( final String candidate : candidates )
+            {
+                if ( indexCandidates != null && !inScope( candidate, normalizedBase, searchScope ) )
+                {
+                    continue;
+                }
+
+                final Integer offset = offsets.get( candidate );
+                if ( offset != null )
+                {
+                    final StoredEntry storedEntry = readEntry( offset );
+                    if ( filter.matches( storedEntry.getAttributes() ) )
+                    {
+                        results.put( storedEntry.getDn(), storedEntry );
+                        if ( maxResults > 0 && results.size() >= maxResults )
+                        {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+
+        return results;
+    }
+
+    private Set<String> indexCandidates( final LdapFilter filter )
+    {
+        switch ( filter.getType() )
+        {
+            case EQUALITY:
+            {
+                final Map<String, Set<String>> index = indexes.get( filter.getAttribute().toLowerCase( Locale.ROOT ) );
+                if ( index == null && !indexedAttributes.contains( filter.getAttribute().toLowerCase( Locale.ROOT ) ) )
+                {
+                    return null;
+                }
+                final Set<String> matches = index == null ? null : index.get( filter.getValue().toLowerCase( Locale.ROOT ) );
+                return matches == null ? Collections.emptySet() : matches;
+            }
+
+            case AND:
+            {
+                Set<String> smallest = null;
+                for ( final LdapFilter child : filter.getChildren() )
+                {
+                    final Set<String> childCandidates = indexCandidates( child );
+                    if ( childCandidates != null && ( smallest == null || childCandidates.size() < smallest.size() ) )
+                    {
+                        smallest = childCandidates;
+                    }
+                }
+                return smallest;
+            }
+
+            case OR:
+            {
+                final Set<String> union = new HashSet<>();
+                for ( final LdapFilter child : filter.getChildren() )
+                {
+                    final Set<String> childCandidates = indexCandidates( child );
+                    if ( childCandidates == null )
+                    {
+                        return null;
+                    }
+                    union.addAll( childCandidates );
+                }
+                return filter.getChildren().isEmpty() ? null : union;
+            }
+
+            default:
+                return null;
+        }
+    }
+
+    private Collection<String> scopeCandidates( final String normalizedBase, final SearchScope searchScope )
+    {
+        if ( searchScope == SearchScope.ONE )
+        {
+            final Set<String> childSet = children.get( normalizedBase );
+            return childSet == null ? Collections.emptySet() : childSet;
+        }
+
+        final List<String> results = new ArrayList<>();
+        if ( offsets.containsKey( normalizedBase ) )
+        {
+            results.add( normalizedBase );
+        }
+        if ( searchScope == SearchScope.BASE )
+        {
+            return results;
+        }
+
+        final Deque<String> pending = new ArrayDeque<>();
+        pending.add( normalizedBase );
+        while ( !pending.isEmpty() )
+        {
+            final Set<String> childSet = children.get( pending.removeFirst() );
+            if ( childSet != null )
+            {
+                results.addAll( childSet );
+                pending.addAll( childSet );
+            }
+        }
+        return results;
+    }
+
+    private static boolean inScope( final String normalizedDn, final String normalizedBase, final SearchScope searchScope )
+    {
+        switch ( searchScope )
+        {
+            case BASE:
+                return normalizedDn.equals( normalizedBase );
+
+            case ONE:
+                return parentOf( normalizedDn ).equals( normalizedBase );
+
+            default:
+                return normalizedDn.equals( normalizedBase ) || isDescendant( normalizedDn, normalizedBase );
+        }
+    }
+
+    private static boolean isDescendant( final String normalizedDn, final String normalizedBase )
+    {
+        try
+        {
+            return ChaiDn.parse( normalizedDn ).isDescendantOf( ChaiDn.parse( normalizedBase ) );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return false;
+        }
+    }
+
+    private static String parentOf( final String normalizedDn )
+    {
+        try
+        {
+            final ChaiDn parent = ChaiDn.parse( normalizedDn ).getParent();
+            return parent == null ? "" : parent.toNormalizedString();
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return "";
+        }
+    }
+
+    private static String normalize( final String dn )
+    {
+        return ChaiDn.normalize( dn );
+    }
+
+    private void applyRecordToIndexes( final int offset )
+    {
+        final ByteBuffer view = buffer.duplicate();
+        view.position( offset );
+        final int recordLength = view.getInt();
+        final byte type = view.get();
+        if ( type != RECORD_PUT && type != RECORD_DELETE )
+        {
+            throw new IllegalArgumentException( "unknown record type " + type );
+        }
+
+        // decode the complete record before changing any index, so a damaged record leaves the indexes intact.
+        final StoredEntry newEntry = type == RECORD_PUT ? readEntry( offset ) : null;
+        final String normalizedDn = normalize( newEntry == null ? readString( view ) : newEntry.getDn() );
+
+        final Integer previousOffset = offsets.remove( normalizedDn );
+        if ( previousOffset != null )
+        {
+            unindexEntry( normalizedDn, readEntry( previousOffset ) );
+            liveBytes -= 4 + buffer.getInt( previousOffset );
+        }
+
+        if ( newEntry != null )
+        {
+            offsets.put( normalizedDn, offset );
+            liveBytes += 4 + recordLength;
+            children.computeIfAbsent( parentOf( normalizedDn ), k -> new LinkedHashSet<>() ).add( normalizedDn );
+            indexEntry( normalizedDn, newEntry );
+        }
+        else
+        {
+            final String parent = parentOf( normalizedDn );
+            final Set<String> siblings = children.get( parent );
+            if ( siblings != null )
+            {
+                siblings.remove( normalizedDn );
+                if ( siblings.isEmpty() )
+                {
+                    children.remove( parent );
+                }
+            }
+        }
+    }
+
+    private void indexEntry( final String normalizedDn, final StoredEntry storedEntry )
+    {
+        for ( final Map.Entry<String, List<String>> attribute : storedEntry.getAttributes().entrySet() )
+        {
+            final String attributeName = attribute.getKey().toLowerCase( Locale.ROOT );
+            if ( indexedAttributes.contains( attributeName ) )
+            {
+                final Map<String, Set<String>> index = indexes.computeIfAbsent( attributeName, k -> new HashMap<>() );
+                for ( final String value : attribute.getValue() )
+                {
+                    index.computeIfAbsent( value.toLowerCase( Locale.ROOT ), k -> new HashSet<>() ).add( normalizedDn );
+                }
+            }
+        }
+    }
+
+    private void unindexEntry( final String normalizedDn, final StoredEntry storedEntry )
+    {
+        for ( final Map.Entry<String, List<String>> attribute : storedEntry.getAttributes().entrySet() )
+        {
+            final Map<String, Set<String>> index = indexes.get( attribute.getKey().toLowerCase( Locale.ROOT ) );
+            if ( index != null )
+            {
+                for ( final String value : attribute.getValue() )
+                {
+                    final String key = value.toLowerCase( Locale.ROOT );
+                    final Set<String> dns = index.get( key );
+                    if ( dns != null )
+                    {
+                        dns.remove( normalizedDn );
+                        if ( dns.isEmpty() )
+                        {
+                            index.remove( key );
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void compactIfNeeded()
+            throws IOException
+    {
+        final long deadBytes = fileSize - HEADER_LENGTH - liveBytes;
+        if ( deadBytes < MIN_COMPACT_BYTES || deadBytes < liveBytes )
+        {
+            return;
+        }
+
+        final long startTime = System.currentTimeMillis();
+        final Path dataFile = directory.resolve( DATA_FILE );
+        final Path tempFile = Paths.get( dataFile + ".tmp" );
+        final Map<String, Integer> newOffsets = new HashMap<>( offsets.size() );
+
+        try ( FileChannel tempChannel = FileChannel.open( tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE ) )
+        {
+            final ByteBuffer header = ByteBuffer.allocate( HEADER_LENGTH );
+            header.putInt( MAGIC ).putInt( VERSION ).flip();
+            tempChannel.write( header );
+
+            long position = HEADER_LENGTH;
+            for ( final Map.Entry<String, Integer> entry : offsets.entrySet() )
+            {
+                final int offset = entry.getValue();
+                final ByteBuffer record = buffer.duplicate();
+                record.position( offset );
+                record.limit( offset + 4 + buffer.getInt( offset ) );
+                newOffsets.put( entry.getKey(), ( int ) position );
+                while ( record.hasRemaining() )
+                {
+                    position += tempChannel.write( record );
+                }
+            }
+            tempChannel.force( true );
+        }
+
+        buffer = null;
+        channel.close();
+        Files.move( tempFile, dataFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+        channel = FileChannel.open( dataFile, StandardOpenOption.READ, StandardOpenOption.WRITE );
+        fileSize = channel.size();
+        offsets.clear();
+        offsets.putAll( newOffsets );
+        ensureMapped( fileSize );
+
+        LOGGER.debug( () -> "compacted local replica store " + directory + ", discarded " + deadBytes + " bytes in "
+                + ( System.currentTimeMillis() - startTime ) + "ms" );
+    }
+
+    private StoredEntry readEntry( final int offset )
+    {
+        final ByteBuffer view = buffer.duplicate();
+        view.limit( offset + 4 + buffer.getInt( offset ) );
+        view.position( offset + RECORD_PREFIX_LENGTH );
+        final String dn = readString( view );
+        final int attributeCount = view.getInt();
+        final Map<String, List<String>> attributes = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+        for ( int i = 0; i < attributeCount; i++ )
+        {
+            final String name = readString( view );
+            final int valueCount = view.getInt();
+            if ( valueCount < 0 )
+            {
+                throw new IllegalArgumentException( "invalid value count " + valueCount );
+            }
+            final List<String> values = new ArrayList<>( Math.min( valueCount, 1024 ) );
+            for ( int v = 0; v < valueCount; v++ )
+            {
+                values.add( readString( view ) );
+            }
+            attributes.put( name, Collections.unmodifiableList( values ) );
+        }
+        return new StoredEntry( dn, Collections.unmodifiableMap( attributes ) );
+    }
+
+    private static String readString( final ByteBuffer view )
+    {
+        final int length = view.getInt();
+        if ( length < 0 || length > view.remaining() )
+        {
+            throw new IllegalArgumentException( "invalid string length " + length );
+        }
+        final byte[] bytes = new byte[length];
+        view.get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    private static void writePutRecord(
+            final DataOutputStream output,
+            final String dn,
+            final Map<String, ? extends Collection<String>> attributes
+    )
+            throws IOException
+    {
+        final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        final DataOutputStream record = new DataOutputStream( recordBytes );
+        record.writeByte( RECORD_PUT );
+        writeString( record, dn );
+
+        final Map<String, List<String>> nonEmpty = new LinkedHashMap<>();
+        for ( final Map.Entry<String, ? extends Collection<String>> attribute : attributes.entrySet() )
+        {
+            if ( attribute.getValue() != null )
+            {
+                final List<String> values = new ArrayList<>( attribute.getValue().size() );
+                for ( final String value : attribute.getValue() )
+                {
+                    if ( value != null )
+                    {
+                        values.add( value );
+                    }
+                }
+                if ( !values.isEmpty() )
+                {
+                    nonEmpty.put( attribute.getKey(), values );
+                }
+            }
+        }
+
+        record.writeInt( nonEmpty.size() );
+        for ( final Map.Entry<String, List<String>> attribute : nonEmpty.entrySet() )
+        {
+            writeString( record, attribute.getKey() );
+            record.writeInt( attribute.getValue().size() );
+            for ( final String value : attribute.getValue() )
+            {
+                writeString( record, value );
+            }
+        }
+        record.flush();
+
+        output.writeInt( recordBytes.size() );
+        recordBytes.writeTo( output );
+    }
+
+    private static void writeDeleteRecord( final DataOutputStream output, final String dn )
+            throws IOException
+    {
+        final byte[] dnBytes = dn.getBytes( StandardCharsets.UTF_8 );
+        output.writeInt( 1 + 4 + dnBytes.length );
+        output.writeByte( RECORD_DELETE );
+        output.writeInt( dnBytes.length );
+        output.write( dnBytes );
+    }
+
+    private static void writeString( final DataOutputStream output, final String value )
+            throws IOException
+    {
+        final byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+        output.writeInt( bytes.length );
+        output.write( bytes );
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        lock.writeLock().lock();
+        try
+        {
+            if ( channel != null && channel.isOpen() )
+            {
+                if ( buffer != null )
+                {
+                    buffer.force();
+                    buffer = null;
+                }
+                channel.truncate( fileSize );
+                channel.force( true );
+                channel.close();
+            }
+            buffer = null;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * An entry read from the store.
+     */
+    static final class StoredEntry
+    {
+        private final String dn;
+        private final Map<String, List<String>> attributes;
+
+        StoredEntry( final String dn, final Map<String, List<String>> attributes )
+        {
+            this.dn = dn;
+            this.attributes = attributes;
+        }
+
+        /**
+         * Get the DN as it was returned by the server.
+         *
+         * @return the entry DN
+         */
+        String getDn()
+        {
+            return dn;
+        }
+
+        /**
+         * Get the stored attribute values.
+         *
+         * @return an unmodifiable, case-insensitive map of attribute values
+         */
+        Map<String, List<String>> getAttributes()
+        {
+            return attributes;
+        }
+    }
+}
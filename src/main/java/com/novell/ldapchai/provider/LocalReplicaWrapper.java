@@ -0,0 +1,547 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.util.ChaiDn;
+import com.novell.ldapchai.util.LdapAttributeMap;
+import com.novell.ldapchai.util.SearchHelper;
+import com.novell.ldapchai.util.internal.ChaiLogger;
+import com.novell.ldapchai.util.internal.LdapFilter;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Answers reads and simple searches of replicated entries from a {@link LocalReplica}.
+ *
+ * <p>An operation is answered locally only if the result is known to match what the server would return: the
+ * entries must be inside the replicated subtree and present in the store, attributes missing from a stored entry
+ * must be user attributes according to the server schema, and search filters may only use equality, presence,
+ * substring and ordering comparisons on attributes whose matching rules ignore case.  Any other operation, or any
+ * operation while the replica has not completed its first synchronization, is sent to the server.</p>
+ *
+ * <p>Successful modifications are written through to the replica by re-reading the modified entries in batches,
+ * and the modified entries are read from the server until they have been re-read.</p>
+ *
+ * @see ChaiSetting#LOCAL_REPLICA_ENABLE
+ */
+class LocalReplicaWrapper implements InvocationHandler
+{
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger( LocalReplicaWrapper.class );
+
+    private static final String USER_APPLICATIONS = "userApplications";
+
+    private static final Set<String> CASE_IGNORE_RULES = Collections.unmodifiableSet( new HashSet<>( Arrays.asList(
+            "objectidentifiermatch",
+            "integermatch",
+            "integerorderingmatch",
+            "numericstringmatch",
+            "numericstringorderingmatch",
+            "numericstringsubstringsmatch",
+            "generalizedtimematch",
+            "generalizedtimeorderingmatch" ) ) );
+
+    /**
+     * Syntaxes compared case-insensitively by servers that do not publish matching rules, such as Active Directory.
+     */
+    private static final Set<String> CASE_IGNORE_SYNTAXES = Collections.unmodifiableSet( new HashSet<>( Arrays.asList(
+            "1.3.6.1.4.1.1466.115.121.1.15",
+            "1.3.6.1.4.1.1466.115.121.1.24",
+            "1.3.6.1.4.1.1466.115.121.1.26",
+            "1.3.6.1.4.1.1466.115.121.1.27",
+            "1.3.6.1.4.1.1466.115.121.1.36",
+            "1.3.6.1.4.1.1466.115.121.1.38",
+            "1.3.6.1.4.1.1466.115.121.1.44" ) ) );
+
+    /**
+     * Returned by local operations that must be sent to the server, as {@code null} is a valid result.
+     */
+    private static final Object NOT_LOCAL = new Object();
+
+    private final ChaiProviderImplementor realProvider;
+
+    private final LocalReplica localReplica;
+
+    private volatile AttributeSchema attributeSchema;
+
+    static ChaiProviderImplementor forProvider( final ChaiProviderImplementor chaiProvider, final LocalReplica localReplica )
+    {
+        if ( Proxy.isProxyClass( chaiProvider.getClass() ) && Proxy.getInvocationHandler( chaiProvider ) instanceof LocalReplicaWrapper )
+        {
+            LOGGER.warn( () -> "attempt to obtain LocalReplicaWrapper wrapper for already wrapped Provider." );
+            return chaiProvider;
+        }
+
+        return ( ChaiProviderImplementor ) Proxy.newProxyInstance(
+                chaiProvider.getClass().getClassLoader(),
+                chaiProvider.getClass().getInterfaces(),
+                new LocalReplicaWrapper( chaiProvider, localReplica ) );
+    }
+
+    private LocalReplicaWrapper( final ChaiProviderImplementor realProvider, final LocalReplica localReplica )
+    {
+        this.realProvider = realProvider;
+        this.localReplica = localReplica;
+    }
+
+    @Override
+    public Object invoke( final Object proxy, final Method method, final Object[] args )
+            throws Throwable
+    {
+        if ( method.getAnnotation( ChaiProviderImplementor.ModifyOperation.class ) != null )
+        {
+            final Object result = invokeReal( method, args );
+            afterModify( method.getName(), args );
+            return result;
+        }
+
+        if ( localReplica.isReady() && method.getAnnotation( ChaiProviderImplementor.LdapOperation.class ) != null )
+        {
+            final Object localResult = invokeLocal( method, args );
+            if ( localResult != NOT_LOCAL )
+            {
+                return localResult;
+            }
+        }
+
+        return invokeReal( method, args );
+    }
+
+    private Object invokeReal( final Method method, final Object[] args )
+            throws Throwable
+    {
+        try
+        {
+            return method.invoke( realProvider, args );
+        }
+        catch ( InvocationTargetException e )
+        {
+            throw e.getCause();
+        }
+    }
+
+    private void afterModify( final String methodName, final Object[] args )
+    {
+        if ( args == null || args.length == 0 || !( args[0] instanceof String ) )
+        {
+            return;
+        }
+
+        final String entryDN = ( String ) args[0];
+        switch ( methodName )
+        {
+            case "deleteEntry":
+                localReplica.removeSubtree( entryDN );
+                break;
+
+            case "renameEntry":
+                localReplica.removeSubtree( entryDN );
+                renamedDN( entryDN, ( String ) args[1], ( String ) args[2] )
+                        .ifPresent( newDN -> localReplica.refreshLater( newDN, SearchScope.SUBTREE ) );
+                break;
+
+            default:
+                localReplica.refreshLater( entryDN, SearchScope.BASE );
+                break;
+        }
+    }
+
+    private static Optional<String> renamedDN( final String entryDN, final String newRDN, final String newParentDN )
+    {
+        if ( newParentDN != null && !newParentDN.isEmpty() )
+        {
+            return Optional.of( newRDN + "," + newParentDN );
+        }
+        try
+        {
+            final ChaiDn parent = ChaiDn.parse( entryDN ).getParent();
+            return parent == null || parent.isRoot() ? Optional.of( newRDN ) : Optional.of( newRDN + "," + parent );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return Optional.empty();
+        }
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private Object invokeLocal( final Method method, final Object[] args )
+    {
+        if ( args == null || args.length == 0 || !( args[0] instanceof String ) || !localReplica.covers( ( String ) args[0] )
+                || localReplica.isRefreshPending( ( String ) args[0] ) )
+        {
+            return NOT_LOCAL;
+        }
+
+        final String entryDN = ( String ) args[0];
+        switch ( method.getName() )
+        {
+            case "readStringAttribute":
+            {
+                final List<String> values = readAttribute( entryDN, ( String ) args[1] );
+                return values == null ? NOT_LOCAL : values.isEmpty() ? null : values.get( 0 );
+            }
+
+            case "readMultiStringAttribute":
+            {
+                final List<String> values = readAttribute( entryDN, ( String ) args[1] );
+                return values == null ? NOT_LOCAL : new LinkedHashSet<>( values );
+            }
+
+            case "readStringAttributes":
+                return readStringAttributes( entryDN, ( Set<String> ) args[1] );
+
+            case "compareStringAttribute":
+                return compareStringAttribute( entryDN, ( String ) args[1], ( String ) args[2] );
+
+            case "search":
+            case "searchMultiValues":
+            case "searchCompact":
+                return search( method.getName(), entryDN, args );
+
+            default:
+                return NOT_LOCAL;
+        }
+    }
+
+    /**
+     * Read attribute values from the replica.
+     *
+     * @return the values, an empty list if the entry is known not to have the attribute, or null if the
+     *     values can not be read locally
+     */
+    private List<String> readAttribute( final String entryDN, final String attributeName )
+    {
+        final LocalReplicaStore.StoredEntry storedEntry = localReplica.getStore().read( entryDN );
+        if ( storedEntry == null || attributeName == null )
+        {
+            return null;
+        }
+
+        final List<String> values = storedEntry.getAttributes().get( attributeName );
+        if ( values != null )
+        {
+            return isBinary( attributeName ) ? null : values;
+        }
+        return isKnownUserAttribute( attributeName ) ? Collections.emptyList() : null;
+    }
+
+    private Object readStringAttributes( final String entryDN, final Set<String> attributeNames )
+    {
+        if ( attributeNames == null || attributeNames.isEmpty() )
+        {
+            return NOT_LOCAL;
+        }
+
+        final Map<String, String> results = new LdapAttributeMap<>();
+        for ( final String attributeName : attributeNames )
+        {
+            final List<String> values = readAttribute( entryDN, attributeName );
+            if ( values == null )
+            {
+                return NOT_LOCAL;
+            }
+            if ( !values.isEmpty() )
+            {
+                results.put( attributeName, values.get( 0 ) );
+            }
+        }
+        return results;
+    }
+
+    private Object compareStringAttribute( final String entryDN, final String attributeName, final String value )
+    {
+        final List<String> values = readAttribute( entryDN, attributeName );
+        if ( values == null || values.isEmpty() || value == null )
+        {
+            return NOT_LOCAL;
+        }
+
+        for ( final String storedValue : values )
+        {
+            if ( storedValue.equals( value ) )
+            {
+                return Boolean.TRUE;
+            }
+        }
+
+        // other values match or not depending on the matching rule, such as dn or telephone number normalization,
+        // so only attributes with case ignore equality matching are answered locally.
+        if ( !locallyEvaluable( LdapFilter.Type.EQUALITY, attributeName ) )
+        {
+            return NOT_LOCAL;
+        }
+
+        for ( final String storedValue : values )
+        {
+            if ( storedValue.equalsIgnoreCase( value ) )
+            {
+                return Boolean.TRUE;
+            }
+        }
+        return Boolean.FALSE;
+    }
+
+    private Object search( final String methodName, final String baseDN, final Object[] args )
+    {
+        if ( !localReplica.isSearchable() || !localReplica.getStore().contains( baseDN ) )
+        {
+            return NOT_LOCAL;
+        }
+
+        final SearchHelper searchHelper;
+        if ( args.length == 2 && args[1] instanceof SearchHelper )
+        {
+            searchHelper = ( SearchHelper ) args[1];
+        }
+        else if ( args.length == 4 )
+        {
+            @SuppressWarnings( "unchecked" )
+            final Set<String> attributes = ( Set<String> ) args[2];
+            searchHelper = new SearchHelper( ( String ) args[1], args[3] == null ? SearchHelper.DEFAULT_SCOPE : ( SearchScope ) args[3] );
+            searchHelper.setAttributes( attributes );
+        }
+        else
+        {
+            return NOT_LOCAL;
+        }
+
+        final LdapFilter filter;
+        try
+        {
+            filter = LdapFilter.parse( searchHelper.getFilter() == null ? SearchHelper.DEFAULT_FILTER : searchHelper.getFilter() );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return NOT_LOCAL;
+        }
+
+        if ( !locallyEvaluable( filter ) )
+        {
+            return NOT_LOCAL;
+        }
+
+        final Set<String> requestedAttributes = searchHelper.getAttributes();
+        if ( requestedAttributes != null )
+        {
+            for ( final String attributeName : requestedAttributes )
+            {
+                if ( !"*".equals( attributeName ) && ( isBinary( attributeName ) || !isKnownUserAttribute( attributeName ) ) )
+                {
+                    return NOT_LOCAL;
+                }
+            }
+        }
+
+        final Map<String, LocalReplicaStore.StoredEntry> entries = localReplica.getStore().search(
+                baseDN,
+                searchHelper.getSearchScope() == null ? SearchHelper.DEFAULT_SCOPE : searchHelper.getSearchScope(),
+                filter,
+                searchHelper.getMaxResults() );
+
+        final Map<String, Map<String, List<String>>> multiValueResults = new LinkedHashMap<>();
+        for ( final LocalReplicaStore.StoredEntry storedEntry : entries.values() )
+        {
+            multiValueResults.put( storedEntry.getDn(), project( storedEntry, requestedAttributes ) );
+        }
+
+        LOGGER.trace( () -> "answered search of " + baseDN + " for " + filter + " from local replica, " + multiValueResults.size() + " results" );
+
+        switch ( methodName )
+        {
+            case "searchCompact":
+                return CompactSearchResult.fromMap( multiValueResults );
+
+            case "searchMultiValues":
+                return multiValueResults;
+
+            default:
+                final Map<String, Map<String, String>> results = new LinkedHashMap<>();
+                for ( final Map.Entry<String, Map<String, List<String>>> entry : multiValueResults.entrySet() )
+                {
+                    final Map<String, String> firstValues = new LdapAttributeMap<>();
+                    for ( final Map.Entry<String, List<String>> attribute : entry.getValue().entrySet() )
+                    {
+                        firstValues.put( attribute.getKey(), attribute.getValue().get( 0 ) );
+                    }
+                    results.put( entry.getKey(), firstValues );
+                }
+                return results;
+        }
+    }
+
+    private Map<String, List<String>> project( final LocalReplicaStore.StoredEntry storedEntry, final Set<String> requestedAttributes )
+    {
+        final Map<String, List<String>> attributes = new LdapAttributeMap<>();
+        final boolean allUserAttributes = requestedAttributes == null || requestedAttributes.contains( "*" );
+        if ( allUserAttributes )
+        {
+            for ( final Map.Entry<String, List<String>> attribute : storedEntry.getAttributes().entrySet() )
+            {
+                if ( !LocalReplica.MODIFY_TIMESTAMP.equalsIgnoreCase( attribute.getKey() ) )
+                {
+                    attributes.put( attribute.getKey(), new ArrayList<>( attribute.getValue() ) );
+                }
+            }
+        }
+
+        if ( requestedAttributes != null )
+        {
+            for ( final String attributeName : requestedAttributes )
+            {
+                final List<String> values = storedEntry.getAttributes().get( attributeName );
+                if ( values != null )
+                {
+                    attributes.put( attributeName, new ArrayList<>( values ) );
+                }
+            }
+        }
+        return attributes;
+    }
+
+    private boolean locallyEvaluable( final LdapFilter filter )
+    {
+        switch ( filter.getType() )
+        {
+            case AND:
+            case OR:
+            case NOT:
+                for ( final LdapFilter child : filter.getChildren() )
+                {
+                    if ( !locallyEvaluable( child ) )
+                    {
+                        return false;
+                    }
+                }
+                return true;
+
+            case APPROXIMATE:
+            case EXTENSIBLE:
+                return false;
+
+            default:
+                return locallyEvaluable( filter.getType(), filter.getAttribute() );
+        }
+    }
+
+    private boolean locallyEvaluable( final LdapFilter.Type type, final String attributeName )
+    {
+        if ( "objectClass".equalsIgnoreCase( attributeName ) )
+        {
+            return true;
+        }
+
+        final Optional<AttributeTypeDefinition> definition = attributeDefinition( attributeName );
+        if ( !definition.isPresent() || definition.get().isBinary() || definition.get().isDistinguishedName() )
+        {
+            return false;
+        }
+
+        if ( !USER_APPLICATIONS.equals( definition.get().getUsage() ) && !LocalReplica.MODIFY_TIMESTAMP.equalsIgnoreCase( attributeName ) )
+        {
+            return false;
+        }
+
+        final String matchingRule;
+        switch ( type )
+        {
+            case PRESENT:
+                return true;
+
+            case SUBSTRING:
+                matchingRule = definition.get().getSubstringMatchingRule();
+                break;
+
+            case GREATER_OR_EQUAL:
+            case LESS_OR_EQUAL:
+                matchingRule = definition.get().getOrderingMatchingRule();
+                break;
+
+            default:
+                matchingRule = definition.get().getEqualityMatchingRule();
+                break;
+        }
+
+        if ( matchingRule == null )
+        {
+            final String syntax = definition.get().getSyntax();
+            return syntax != null && CASE_IGNORE_SYNTAXES.contains( stripSyntaxLength( syntax ) );
+        }
+
+        final String lowerCaseRule = matchingRule.toLowerCase( Locale.ROOT );
+        return lowerCaseRule.startsWith( "caseignore" ) || CASE_IGNORE_RULES.contains( lowerCaseRule );
+    }
+
+    private static String stripSyntaxLength( final String syntax )
+    {
+        final int braceIndex = syntax.indexOf( '{' );
+        return braceIndex < 0 ? syntax : syntax.substring( 0, braceIndex );
+    }
+
+    private boolean isKnownUserAttribute( final String attributeName )
+    {
+        if ( attributeName.indexOf( ';' ) >= 0 )
+        {
+            return false;
+        }
+        final Optional<AttributeTypeDefinition> definition = attributeDefinition( attributeName );
+        return definition.isPresent() && USER_APPLICATIONS.equals( definition.get().getUsage() );
+    }
+
+    private boolean isBinary( final String attributeName )
+    {
+        final AttributeSchema schema = attributeSchema();
+        return schema == null || schema.isBinary( attributeName );
+    }
+
+    private Optional<AttributeTypeDefinition> attributeDefinition( final String attributeName )
+    {
+        final AttributeSchema schema = attributeSchema();
+        return schema == null ? Optional.empty() : schema.getAttributeType( attributeName );
+    }
+
+    private AttributeSchema attributeSchema()
+    {
+        if ( attributeSchema == null )
+        {
+            try
+            {
+                attributeSchema = realProvider.getAttributeSchema();
+            }
+            catch ( Exception e )
+            {
+                LOGGER.debug( () -> "unable to read schema for local replica, operations will be sent to the server: " + e.getMessage() );
+            }
+        }
+        return attributeSchema;
+    }
+}
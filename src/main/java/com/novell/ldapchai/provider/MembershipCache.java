@@ -0,0 +1,223 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.util.ChaiDn;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Factory level cache of group membership test results, used by
+ * {@link com.novell.ldapchai.ChaiGroup#hasMember(com.novell.ldapchai.ChaiUser, boolean)}.  Results are keyed by
+ * the server and bind DN of the provider configuration, the member and the group.
+ *
+ * <p>Cached results of a group are discarded when its membership is modified using the membership methods of
+ * {@link com.novell.ldapchai.ChaiGroup} or {@link com.novell.ldapchai.ChaiUser} with a provider of the same factory.
+ * Changes made by other clients are only observed once the cached result expires.</p>
+ *
+ * @see ChaiProviderFactorySetting#MEMBERSHIP_CACHE_MAX_AGE_MS
+ * @see ChaiProviderFactory#getMembershipCache()
+ */
+public final class MembershipCache
+{
+    private static final int MAX_CACHE_SIZE = 100_000;
+
+    private final Map<CacheKey, CachedResult> cache = new ConcurrentHashMap<>();
+
+    private final long maxAgeMs;
+
+    MembershipCache( final ChaiProviderFactory chaiProviderFactory )
+    {
+        maxAgeMs = Long.parseLong( chaiProviderFactory.getChaiProviderFactorySettings().getOrDefault(
+                ChaiProviderFactorySetting.MEMBERSHIP_CACHE_MAX_AGE_MS,
+                ChaiProviderFactorySetting.MEMBERSHIP_CACHE_MAX_AGE_MS.getDefaultValue() ) );
+    }
+
+    /**
+     * Get a cached membership test result.
+     *
+     * @param chaiConfiguration configuration of the provider performing the test
+     * @param memberDN          dn of the member
+     * @param groupDN           dn of the group
+     * @param nested            true if the result includes membership through nested groups
+     * @return the cached result, or empty if no unexpired result is cached
+     */
+    public Optional<Boolean> get(
+            final ChaiConfiguration chaiConfiguration,
+            final String memberDN,
+            final String groupDN,
+            final boolean nested
+    )
+    {
+        if ( maxAgeMs <= 0 )
+        {
+            return Optional.empty();
+        }
+
+        final CacheKey cacheKey = new CacheKey( chaiConfiguration, memberDN, groupDN, nested );
+        final CachedResult cachedResult = cache.get( cacheKey );
+        if ( cachedResult == null )
+        {
+            return Optional.empty();
+        }
+
+        if ( System.currentTimeMillis() - cachedResult.timestamp > maxAgeMs )
+        {
+            cache.remove( cacheKey, cachedResult );
+            return Optional.empty();
+        }
+
+        return Optional.of( cachedResult.member );
+    }
+
+    /**
+     * Store a membership test result.
+     *
+     * @param chaiConfiguration configuration of the provider that performed the test
+     * @param memberDN          dn of the member
+     * @param groupDN           dn of the group
+     * @param nested            true if the result includes membership through nested groups
+     * @param member            result of the test
+     */
+    public void put(
+            final ChaiConfiguration chaiConfiguration,
+            final String memberDN,
+            final String groupDN,
+            final boolean nested,
+            final boolean member
+    )
+    {
+        if ( maxAgeMs <= 0 )
+        {
+            return;
+        }
+
+        // safety check
+        if ( cache.size() >= MAX_CACHE_SIZE )
+        {
+            cache.clear();
+        }
+
+        cache.put( new CacheKey( chaiConfiguration, memberDN, groupDN, nested ), new CachedResult( member ) );
+    }
+
+    /**
+     * Discard the cached results of a group whose membership has changed.  Nested results of all groups of the
+     * same server are also discarded, as they may depend on the membership of the changed group.
+     *
+     * @param chaiConfiguration configuration of the provider that modified the group
+     * @param groupDN           dn of the modified group
+     */
+    public void invalidateGroup( final ChaiConfiguration chaiConfiguration, final String groupDN )
+    {
+        if ( cache.isEmpty() )
+        {
+            return;
+        }
+
+        final String serverKey = ServerCapabilityCache.cacheKey( chaiConfiguration );
+        final String normalizedGroupDN = ChaiDn.normalize( groupDN );
+        cache.keySet().removeIf( key -> key.serverKey.equals( serverKey )
+                && ( key.nested || key.groupDN.equals( normalizedGroupDN ) ) );
+    }
+
+    /**
+     * Discard the cached results of a group whose membership has changed, using the membership cache of the
+     * factory that owns the provider.  Does nothing if the provider has no factory.
+     *
+     * @param chaiProvider provider that modified the group
+     * @param groupDN      dn of the modified group
+     */
+    public static void groupModified( final ChaiProvider chaiProvider, final String groupDN )
+    {
+        final ChaiProviderFactory chaiProviderFactory = chaiProvider.getProviderFactory();
+        if ( chaiProviderFactory != null )
+        {
+            chaiProviderFactory.getMembershipCache().invalidateGroup( chaiProvider.getChaiConfiguration(), groupDN );
+        }
+    }
+
+    public void clear()
+    {
+        cache.clear();
+    }
+
+    int size()
+    {
+        return cache.size();
+    }
+
+    private static final class CacheKey
+    {
+        private final String serverKey;
+        private final String bindDN;
+        private final String memberDN;
+        private final String groupDN;
+        private final boolean nested;
+
+        CacheKey( final ChaiConfiguration chaiConfiguration, final String memberDN, final String groupDN, final boolean nested )
+        {
+            this.serverKey = ServerCapabilityCache.cacheKey( chaiConfiguration );
+            this.bindDN = chaiConfiguration.getSetting( ChaiSetting.BIND_DN );
+            this.memberDN = ChaiDn.normalize( memberDN );
+            this.groupDN = ChaiDn.normalize( groupDN );
+            this.nested = nested;
+        }
+
+        @Override
+        public boolean equals( final Object o )
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+            if ( o == null || getClass() != o.getClass() )
+            {
+                return false;
+            }
+            final CacheKey cacheKey = ( CacheKey ) o;
+            return nested == cacheKey.nested
+                    && serverKey.equals( cacheKey.serverKey )
+                    && Objects.equals( bindDN, cacheKey.bindDN )
+                    && memberDN.equals( cacheKey.memberDN )
+                    && groupDN.equals( cacheKey.groupDN );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash( serverKey, bindDN, memberDN, groupDN, nested );
+        }
+    }
+
+    private static final class CachedResult
+    {
+        private final boolean member;
+        private final long timestamp = System.currentTimeMillis();
+
+        CachedResult( final boolean member )
+        {
+            this.member = member;
+        }
+    }
+}
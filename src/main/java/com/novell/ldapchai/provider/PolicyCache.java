@@ -0,0 +1,303 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Factory level cache of password policy data, shared by the providers of a {@link ChaiProviderFactory} that connect
+ * to the same servers.  Vendor implementations use the cache to avoid re-reading and re-parsing policy entries,
+ * and the directory lookups that locate them, for every user.
+ *
+ * <p>Values are grouped into {@link Region}s, each region is defined by the vendor implementation that uses it.
+ * A value older than {@link ChaiProviderFactorySetting#POLICY_CACHE_REVALIDATE_MS} is only returned after the
+ * caller confirms it is current, typically by comparing the {@code modifyTimestamp} of the source entry, which is
+ * much cheaper than reading and parsing the entry again.  Values older than
+ * {@link ChaiProviderFactorySetting#POLICY_CACHE_MAX_AGE_MS} are always discarded.</p>
+ *
+ * @see ChaiProviderFactory#getPolicyCache()
+ */
+public final class PolicyCache
+{
+    private static final int MAX_CACHE_SIZE = 10_000;
+
+    private static final PolicyCache DISABLED = new PolicyCache( 0, 0 );
+
+    private final Map<CacheKey, CachedValue> cache = new ConcurrentHashMap<>();
+
+    private final long maxAgeMs;
+
+    private final long revalidateMs;
+
+    PolicyCache( final ChaiProviderFactory chaiProviderFactory )
+    {
+        this(
+                Long.parseLong( chaiProviderFactory.getChaiProviderFactorySettings().getOrDefault(
+                        ChaiProviderFactorySetting.POLICY_CACHE_MAX_AGE_MS,
+                        ChaiProviderFactorySetting.POLICY_CACHE_MAX_AGE_MS.getDefaultValue() ) ),
+                Long.parseLong( chaiProviderFactory.getChaiProviderFactorySettings().getOrDefault(
+                        ChaiProviderFactorySetting.POLICY_CACHE_REVALIDATE_MS,
+                        ChaiProviderFactorySetting.POLICY_CACHE_REVALIDATE_MS.getDefaultValue() ) ) );
+    }
+
+    private PolicyCache( final long maxAgeMs, final long revalidateMs )
+    {
+        this.maxAgeMs = maxAgeMs;
+        this.revalidateMs = revalidateMs;
+    }
+
+    /**
+     * Get the policy cache of the factory that owns a provider.
+     *
+     * @param chaiProvider a provider
+     * @return the factory policy cache, or a cache that never holds values if the provider has no factory
+     */
+    public static PolicyCache forProvider( final ChaiProvider chaiProvider )
+    {
+        final ChaiProviderFactory chaiProviderFactory = chaiProvider.getProviderFactory();
+        return chaiProviderFactory == null ? DISABLED : chaiProviderFactory.getPolicyCache();
+    }
+
+    /**
+     * Get a cached value.  If the value is due for revalidation, {@code validator} is called, and the value is
+     * returned only if the validator confirms it is current.
+     *
+     * @param chaiConfiguration configuration of the provider performing the lookup
+     * @param region            region of the value
+     * @param key               key of the value within the region
+     * @param validator         test performed against the directory to confirm a value is current
+     * @param <V>               type of the region values
+     * @return the cached value, or empty if no current value is cached
+     * @throws ChaiOperationException   If an error is encountered by the validator
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     */
+    public <V> Optional<V> get(
+            final ChaiConfiguration chaiConfiguration,
+            final Region<V> region,
+            final String key,
+            final Validator<V> validator
+    )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        if ( maxAgeMs <= 0 )
+        {
+            return Optional.empty();
+        }
+
+        final CacheKey cacheKey = new CacheKey( chaiConfiguration, region, key );
+        final CachedValue cachedValue = cache.get( cacheKey );
+        if ( cachedValue == null )
+        {
+            return Optional.empty();
+        }
+
+        final long now = System.currentTimeMillis();
+        if ( now - cachedValue.created > maxAgeMs )
+        {
+            cache.remove( cacheKey, cachedValue );
+            return Optional.empty();
+        }
+
+        final V value = region.type.cast( cachedValue.value );
+        if ( now - cachedValue.validated >= revalidateMs )
+        {
+            if ( !validator.isCurrent( value ) )
+            {
+                cache.remove( cacheKey, cachedValue );
+                return Optional.empty();
+            }
+            cachedValue.validated = now;
+        }
+
+        return Optional.of( value );
+    }
+
+    /**
+     * Store a value.
+     *
+     * @param chaiConfiguration configuration of the provider that read the value
+     * @param region            region of the value
+     * @param key               key of the value within the region
+     * @param value             value to cache
+     * @param <V>               type of the region values
+     */
+    public <V> void put(
+            final ChaiConfiguration chaiConfiguration,
+            final Region<V> region,
+            final String key,
+            final V value
+    )
+    {
+        if ( maxAgeMs <= 0 )
+        {
+            return;
+        }
+
+        // safety check
+        if ( cache.size() >= MAX_CACHE_SIZE )
+        {
+            cache.clear();
+        }
+
+        cache.put( new CacheKey( chaiConfiguration, region, key ), new CachedValue( Objects.requireNonNull( value ) ) );
+    }
+
+    /**
+     * Test if an attribute of an entry has a value, using a server side compare.  Intended for use by
+     * {@link Validator} implementations, such as a comparison of the {@code modifyTimestamp} of a cached entry.
+     *
+     * @param chaiProvider  provider used for the compare
+     * @param entryDN       dn of the entry
+     * @param attributeName name of the attribute
+     * @param value         expected value, may be null
+     * @return true if the attribute has the value; false if it does not, or the attribute or entry does not exist
+     * @throws ChaiOperationException   If an error is encountered during the operation
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     */
+    public static boolean hasAttributeValue(
+            final ChaiProvider chaiProvider,
+            final String entryDN,
+            final String attributeName,
+            final String value
+    )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        if ( value == null || value.isEmpty() )
+        {
+            return false;
+        }
+
+        try
+        {
+            return chaiProvider.compareStringAttribute( entryDN, attributeName, value );
+        }
+        catch ( final ChaiOperationException e )
+        {
+            if ( e.getErrorCode() == ChaiError.NO_SUCH_ATTRIBUTE || e.getErrorCode() == ChaiError.NO_SUCH_ENTRY )
+            {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    public void clear()
+    {
+        cache.clear();
+    }
+
+    int size()
+    {
+        return cache.size();
+    }
+
+    /**
+     * A named group of cached values of the same type.  Regions are compared by identity, so each region should
+     * be a constant of the class that uses it.
+     *
+     * @param <V> type of the region values
+     */
+    public static final class Region<V>
+    {
+        private final String name;
+        private final Class<V> type;
+
+        public Region( final String name, final Class<V> type )
+        {
+            this.name = Objects.requireNonNull( name );
+            this.type = Objects.requireNonNull( type );
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+    /**
+     * Confirms a cached value is still current.
+     *
+     * @param <V> type of the value
+     */
+    @FunctionalInterface
+    public interface Validator<V>
+    {
+        boolean isCurrent( V value )
+                throws ChaiOperationException, ChaiUnavailableException;
+    }
+
+    private static final class CacheKey
+    {
+        private final String serverKey;
+        private final Region<?> region;
+        private final String key;
+
+        CacheKey( final ChaiConfiguration chaiConfiguration, final Region<?> region, final String key )
+        {
+            this.serverKey = ServerCapabilityCache.cacheKey( chaiConfiguration );
+            this.region = region;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals( final Object o )
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+            if ( o == null || getClass() != o.getClass() )
+            {
+                return false;
+            }
+            final CacheKey cacheKey = ( CacheKey ) o;
+            return region == cacheKey.region
+                    && serverKey.equals( cacheKey.serverKey )
+                    && key.equals( cacheKey.key );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash( serverKey, System.identityHashCode( region ), key );
+        }
+    }
+
+    private static final class CachedValue
+    {
+        private final Object value;
+        private final long created = System.currentTimeMillis();
+        private volatile long validated = created;
+
+        CachedValue( final Object value )
+        {
+            this.value = value;
+        }
+    }
+}
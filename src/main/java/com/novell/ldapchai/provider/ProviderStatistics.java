@@ -68,6 +68,21 @@ public interface ProviderStatistics
          */
         UNAVAILABLE_COUNT,
 
+        /**
+         * Number of watchdog keep-alive probes issued against idle connections.
+         */
+        KEEPALIVE_PROBE_COUNT,
+
+        /**
+         * Number of watchdog keep-alive probes that failed and caused the connection to be replaced.
+         */
+        KEEPALIVE_PROBE_FAILURE_COUNT,
+
+        /**
+         * Cumulative time (in ms) spent executing watchdog keep-alive probes.
+         */
+        KEEPALIVE_PROBE_TIME_MS,
+
     }
 
     enum TimestampStatistic
@@ -86,6 +101,11 @@ public interface ProviderStatistics
          * The last time (in ms seconds epoch) a {@link com.novell.ldapchai.exception.ChaiUnavailableException} was returned.
          */
         LAST_UNAVAILABLE_EXCEPTION,
+
+        /**
+         * The last time (in ms seconds epoch) a watchdog keep-alive probe was issued.
+         */
+        LAST_KEEPALIVE_PROBE,
     }
 
 
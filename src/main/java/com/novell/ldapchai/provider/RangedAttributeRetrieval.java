@@ -0,0 +1,180 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.util.internal.ChaiLogger;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Support for ranged attribute retrieval, used by Active Directory to return attributes with more
+ * values than the server's {@code MaxValRange} policy.
+ *
+ * <p>When an attribute exceeds the limit, the server returns it as {@code member;range=0-1499} instead of
+ * {@code member}.  The next range is requested as {@code member;range=1500-*}, and the final range is returned
+ * with an upper bound of {@code *}.</p>
+ */
+final class RangedAttributeRetrieval
+{
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger( RangedAttributeRetrieval.class );
+
+    private static final String RANGE_OPTION = ";range=";
+
+    private static final String RANGE_END = "*";
+
+    /**
+     * Reads the values returned for a single requested attribute name.
+     */
+    interface RangeReader
+    {
+        /**
+         * Read the entry, requesting the supplied attribute name.
+         *
+         * @param requestedAttribute attribute name, possibly including a range option
+         * @return map of each returned attribute description, exactly as returned by the server, to its values
+         */
+        Map<String, List<String>> read( String requestedAttribute )
+                throws ChaiOperationException, ChaiUnavailableException;
+    }
+
+    private RangedAttributeRetrieval()
+    {
+    }
+
+    /**
+     * Attribute description to request for a range beginning at the supplied index.  The first range is
+     * requested using the plain attribute name, so servers that do not support ranged retrieval return all values.
+     */
+    static String requestedAttribute( final String attribute, final int startIndex )
+    {
+        return startIndex == 0
+                ? attribute
+                : attribute + RANGE_OPTION + startIndex + "-" + RANGE_END;
+    }
+
+    static AttributeValueRange readRange( final RangeReader reader, final String attribute, final int startIndex )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        if ( startIndex < 0 )
+        {
+            throw new IllegalArgumentException( "startIndex must not be negative" );
+        }
+        return toRange( attribute, startIndex, reader.read( requestedAttribute( attribute, startIndex ) ) );
+    }
+
+    /**
+     * Read all values of an attribute, following ranges until the final range has been read.
+     *
+     * @param reader    reads a single range
+     * @param attribute attribute name
+     * @param values    collection to which the values are added
+     */
+    static void readAll( final RangeReader reader, final String attribute, final Collection<String> values )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        int startIndex = 0;
+        while ( true )
+        {
+            final AttributeValueRange range = readRange( reader, attribute, startIndex );
+            values.addAll( range.getValues() );
+            if ( range.isComplete() )
+            {
+                return;
+            }
+
+            if ( range.getNextIndex() <= startIndex )
+            {
+                final int stalledIndex = startIndex;
+                LOGGER.warn( () -> "ranged retrieval of attribute '" + attribute + "' did not advance beyond index "
+                        + stalledIndex + ", returning partial values" );
+                return;
+            }
+
+            final int nextIndex = range.getNextIndex();
+            LOGGER.trace( () -> "read range of attribute '" + attribute + "', continuing at index " + nextIndex );
+            startIndex = nextIndex;
+        }
+    }
+
+    /**
+     * Interpret the attributes returned for a range request.
+     */
+    static AttributeValueRange toRange(
+            final String attribute,
+            final int startIndex,
+            final Map<String, List<String>> returnedAttributes
+    )
+    {
+        if ( returnedAttributes == null || returnedAttributes.isEmpty() )
+        {
+            return AttributeValueRange.completeRange( null, startIndex );
+        }
+
+        final String rangePrefix = attribute.toLowerCase( Locale.ROOT ) + RANGE_OPTION;
+        for ( final Map.Entry<String, List<String>> entry : returnedAttributes.entrySet() )
+        {
+            final String returnedName = entry.getKey();
+            if ( returnedName.equalsIgnoreCase( attribute ) )
+            {
+                // server does not use ranges for this attribute, all values have been returned
+                final List<String> values = entry.getValue();
+                return startIndex == 0 || values == null
+                        ? AttributeValueRange.completeRange( values, 0 )
+                        : AttributeValueRange.completeRange( values.subList( Math.min( startIndex, values.size() ), values.size() ), startIndex );
+            }
+
+            if ( returnedName.toLowerCase( Locale.ROOT ).startsWith( rangePrefix ) )
+            {
+                return parseRange( returnedName.substring( rangePrefix.length() ), startIndex, entry.getValue() );
+            }
+        }
+
+        return AttributeValueRange.completeRange( null, startIndex );
+    }
+
+    private static AttributeValueRange parseRange( final String rangeValue, final int requestedStart, final List<String> values )
+    {
+        final int separator = rangeValue.indexOf( '-' );
+        if ( separator > 0 )
+        {
+            try
+            {
+                final int low = Integer.parseInt( rangeValue.substring( 0, separator ) );
+                final String high = rangeValue.substring( separator + 1 );
+                if ( RANGE_END.equals( high ) )
+                {
+                    return new AttributeValueRange( values, low, low + values.size(), true );
+                }
+                return new AttributeValueRange( values, low, Integer.parseInt( high ) + 1, false );
+            }
+            catch ( NumberFormatException e )
+            {
+                LOGGER.debug( () -> "unable to parse attribute range option '" + rangeValue + "'" );
+            }
+        }
+
+        return AttributeValueRange.completeRange( values, requestedStart );
+    }
+}
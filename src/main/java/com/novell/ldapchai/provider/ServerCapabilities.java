@@ -0,0 +1,223 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.ChaiEntry;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.util.ChaiUtility;
+import com.novell.ldapchai.util.SearchHelper;
+
+import javax.naming.ldap.PagedResultsControl;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable snapshot of the capabilities advertised by a directory server's rootDSE, along with the extended
+ * operations the server has been observed to reject.
+ *
+ * <p>Instances are created by {@link ServerCapabilityCache} and shared by all providers of a factory that connect
+ * to the same server.  Field layout is kept simple so instances can be persisted as json.</p>
+ */
+final class ServerCapabilities
+{
+    private static final String ATTR_SUPPORTED_CONTROL = "supportedControl";
+    private static final String ATTR_SUPPORTED_EXTENSION = "supportedExtension";
+    private static final String ATTR_NAMING_CONTEXTS = "namingContexts";
+    private static final String ATTR_SUBSCHEMA_SUBENTRY = "subschemaSubentry";
+
+    private final long timestamp;
+    private final DirectoryVendor vendor;
+    private final Set<String> supportedControls;
+    private final Set<String> supportedExtensions;
+    private final List<String> namingContexts;
+    private final String subschemaSubentry;
+    private final Set<String> unsupportedExtendedOperations;
+
+    private ServerCapabilities(
+            final long timestamp,
+            final DirectoryVendor vendor,
+            final Set<String> supportedControls,
+            final Set<String> supportedExtensions,
+            final List<String> namingContexts,
+            final String subschemaSubentry,
+            final Set<String> unsupportedExtendedOperations
+    )
+    {
+        this.timestamp = timestamp;
+        this.vendor = vendor;
+        this.supportedControls = Collections.unmodifiableSet( new LinkedHashSet<>( supportedControls ) );
+        this.supportedExtensions = Collections.unmodifiableSet( new LinkedHashSet<>( supportedExtensions ) );
+        this.namingContexts = Collections.unmodifiableList( new ArrayList<>( namingContexts ) );
+        this.subschemaSubentry = subschemaSubentry;
+        this.unsupportedExtendedOperations = Collections.unmodifiableSet( new LinkedHashSet<>( unsupportedExtendedOperations ) );
+    }
+
+    /**
+     * Create a snapshot that only records unsupported extended operations; the rootDSE has not been read.
+     *
+     * @param unsupportedExtendedOperations unsupported extended operation OIDs
+     * @return a new instance
+     */
+    static ServerCapabilities unread( final Set<String> unsupportedExtendedOperations )
+    {
+        return new ServerCapabilities(
+                System.currentTimeMillis(),
+                null,
+                Collections.emptySet(),
+                Collections.emptySet(),
+                Collections.emptyList(),
+                null,
+                unsupportedExtendedOperations );
+    }
+
+    /**
+     * Read the capabilities of the server using a single base search of the rootDSE.
+     *
+     * @param rootDse the rootDSE entry of the server
+     * @param unsupportedExtendedOperations previously observed unsupported extended operations to carry forward
+     * @return a new instance
+     * @throws ChaiUnavailableException If the directory is unreachable
+     * @throws ChaiOperationException If there is an error reading the rootDSE
+     */
+    static ServerCapabilities readFromRootDSE( final ChaiEntry rootDse, final Set<String> unsupportedExtendedOperations )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        final Set<String> interestedAttributes = new HashSet<>();
+        interestedAttributes.add( ATTR_SUPPORTED_CONTROL );
+        interestedAttributes.add( ATTR_SUPPORTED_EXTENSION );
+        interestedAttributes.add( ATTR_NAMING_CONTEXTS );
+        interestedAttributes.add( ATTR_SUBSCHEMA_SUBENTRY );
+        for ( final DirectoryVendor directoryVendor : DirectoryVendor.values() )
+        {
+            interestedAttributes.addAll( directoryVendor.getVendorFactory().interestedDseAttributes() );
+        }
+
+        final SearchHelper searchHelper = new SearchHelper();
+        searchHelper.setAttributes( interestedAttributes.toArray( new String[0] ) );
+        searchHelper.setFilter( SearchHelper.DEFAULT_FILTER );
+        searchHelper.setMaxResults( 1 );
+        searchHelper.setSearchScope( SearchScope.BASE );
+
+        final Map<String, Map<String, List<String>>> results = rootDse.getChaiProvider().searchMultiValues( "", searchHelper );
+        final Map<String, List<String>> rootDseData = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+        if ( results != null && !results.isEmpty() )
+        {
+            rootDseData.putAll( results.values().iterator().next() );
+        }
+
+        return new ServerCapabilities(
+                System.currentTimeMillis(),
+                ChaiUtility.determineDirectoryVendor( rootDseData ),
+                new LinkedHashSet<>( rootDseData.getOrDefault( ATTR_SUPPORTED_CONTROL, Collections.emptyList() ) ),
+                new LinkedHashSet<>( rootDseData.getOrDefault( ATTR_SUPPORTED_EXTENSION, Collections.emptyList() ) ),
+                rootDseData.getOrDefault( ATTR_NAMING_CONTEXTS, Collections.emptyList() ),
+                firstValue( rootDseData.get( ATTR_SUBSCHEMA_SUBENTRY ) ),
+                unsupportedExtendedOperations );
+    }
+
+    ServerCapabilities withUnsupportedExtendedOperation( final String oid )
+    {
+        final Set<String> newUnsupportedOperations = new LinkedHashSet<>( getUnsupportedExtendedOperations() );
+        newUnsupportedOperations.add( oid );
+        return new ServerCapabilities(
+                timestamp,
+                vendor,
+                getSupportedControls(),
+                getSupportedExtensions(),
+                getNamingContexts(),
+                subschemaSubentry,
+                newUnsupportedOperations );
+    }
+
+    /**
+     * Indicates if the rootDSE has been read, if false only the unsupported extended operations are known.
+     *
+     * @return true if the rootDSE values are present
+     */
+    boolean isRootDseRead()
+    {
+        return vendor != null;
+    }
+
+    boolean isExpired( final long maxAgeMs )
+    {
+        return Instant.ofEpochMilli( timestamp ).plusMillis( maxAgeMs ).isBefore( Instant.now() );
+    }
+
+    boolean isPagingSupported()
+    {
+        return getSupportedControls().contains( PagedResultsControl.OID );
+    }
+
+    boolean isExtendedOperationUnsupported( final String oid )
+    {
+        return getUnsupportedExtendedOperations().contains( oid );
+    }
+
+    Instant getTimestamp()
+    {
+        return Instant.ofEpochMilli( timestamp );
+    }
+
+    DirectoryVendor getVendor()
+    {
+        return vendor;
+    }
+
+    String getSubschemaSubentry()
+    {
+        return subschemaSubentry;
+    }
+
+    // collections are null checked as instances may be created by gson without using the constructor.
+
+    Set<String> getSupportedControls()
+    {
+        return supportedControls == null ? Collections.emptySet() : supportedControls;
+    }
+
+    Set<String> getSupportedExtensions()
+    {
+        return supportedExtensions == null ? Collections.emptySet() : supportedExtensions;
+    }
+
+    List<String> getNamingContexts()
+    {
+        return namingContexts == null ? Collections.emptyList() : namingContexts;
+    }
+
+    Set<String> getUnsupportedExtendedOperations()
+    {
+        return unsupportedExtendedOperations == null ? Collections.emptySet() : unsupportedExtendedOperations;
+    }
+
+    private static String firstValue( final List<String> values )
+    {
+        return values == null || values.isEmpty() ? null : values.get( 0 );
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.novell.ldapchai.util.internal.ChaiLogger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Factory level cache of {@link ServerCapabilities}, keyed by server URL.
+ *
+ * <p>Providers are frequently re-created by the watchdog and fail-over wrappers; sharing the capabilities
+ * of a server avoids re-reading the rootDSE for each new provider instance.  The cache may optionally be
+ * persisted to a local file so that a restarted application does not need to re-discover server capabilities.
+ * The file is written on a background thread, and any pending changes are written when the factory is closed.</p>
+ *
+ * @see ChaiProviderFactorySetting#VENDOR_CACHE_MAX_AGE_MS
+ * @see ChaiProviderFactorySetting#SERVER_CAPABILITY_CACHE_FILE
+ * @see ChaiProviderFactorySetting#SERVER_CAPABILITY_CACHE_FILE_MAX_AGE_HOURS
+ */
+class ServerCapabilityCache
+{
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger( ServerCapabilityCache.class );
+
+    private static final int MAX_CACHE_SIZE = 100;
+
+    private static final int CLOSE_WAIT_SECONDS = 10;
+
+    private static final String WRITER_THREAD_NAME = "LDAP Chai ServerCapabilityCache writer thread";
+
+    private static final Type STORED_TYPE = new TypeToken<Map<String, ServerCapabilities>>()
+    {
+    }.getType();
+
+    private final Map<String, ServerCapabilities> capabilityMap = new ConcurrentHashMap<>();
+
+    /**
+     * Time each record read from the storage file was loaded.  Loaded records expire from memory relative to this
+     * time rather than their stored timestamp, which is kept so the record ages normally in the file.
+     */
+    private final Map<String, Instant> loadedTimes = new ConcurrentHashMap<>();
+
+    private final int maxAgeMs;
+
+    private final long fileMaxAgeMs;
+
+    private final Path storageFile;
+
+    private final Object storageLock = new Object();
+
+    private final AtomicBoolean writePending = new AtomicBoolean( false );
+
+    private final ExecutorService writeExecutor = newWriteExecutor();
+
+    ServerCapabilityCache( final ChaiProviderFactory chaiProviderFactory )
+    {
+        final Map<ChaiProviderFactorySetting, String> settings = chaiProviderFactory.getChaiProviderFactorySettings();
+        maxAgeMs = Integer.parseInt( settings.getOrDefault(
+                ChaiProviderFactorySetting.VENDOR_CACHE_MAX_AGE_MS,
+                ChaiProviderFactorySetting.VENDOR_CACHE_MAX_AGE_MS.getDefaultValue() ) );
+        fileMaxAgeMs = TimeUnit.HOURS.toMillis( Integer.parseInt( settings.getOrDefault(
+                ChaiProviderFactorySetting.SERVER_CAPABILITY_CACHE_FILE_MAX_AGE_HOURS,
+                ChaiProviderFactorySetting.SERVER_CAPABILITY_CACHE_FILE_MAX_AGE_HOURS.getDefaultValue() ) ) );
+
+        final String fileSetting = settings.getOrDefault(
+                ChaiProviderFactorySetting.SERVER_CAPABILITY_CACHE_FILE,
+                ChaiProviderFactorySetting.SERVER_CAPABILITY_CACHE_FILE.getDefaultValue() );
+        storageFile = fileSetting == null || fileSetting.trim().isEmpty()
+                ? null
+                : Paths.get( fileSetting.trim() );
+
+        readStorage();
+    }
+
+    /**
+     * Get the cache key for a configuration.  Only the scheme, host and port of the bind urls are significant, so
+     * configurations that differ only by credentials or url path share capabilities.
+     *
+     * @param chaiConfiguration a configuration
+     * @return the cache key
+     */
+    static String cacheKey( final ChaiConfiguration chaiConfiguration )
+    {
+        final StringBuilder sb = new StringBuilder();
+        for ( final String url : chaiConfiguration.bindURLsAsList() )
+        {
+            if ( sb.length() > 0 )
+            {
+                sb.append( ',' );
+            }
+
+            try
+            {
+                final URI uri = URI.create( url );
+                sb.append( uri.getScheme() ).append( "://" ).append( uri.getHost() ).append( ':' ).append( uri.getPort() );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                sb.append( url );
+            }
+        }
+        return sb.toString().toLowerCase( Locale.ROOT );
+    }
+
+    boolean isEnabled()
+    {
+        return maxAgeMs > 0;
+    }
+
+    /**
+     * Get the cached capabilities of the server.
+     *
+     * @param chaiConfiguration configuration of the provider
+     * @return cached capabilities, or null if not cached or expired.
+     */
+    ServerCapabilities get( final ChaiConfiguration chaiConfiguration )
+    {
+        if ( !isEnabled() )
+        {
+            return null;
+        }
+
+        final String cacheKey = cacheKey( chaiConfiguration );
+        final ServerCapabilities serverCapabilities = capabilityMap.get( cacheKey );
+        if ( serverCapabilities == null )
+        {
+            return null;
+        }
+
+        if ( isExpired( cacheKey, serverCapabilities ) )
+        {
+            capabilityMap.remove( cacheKey, serverCapabilities );
+            loadedTimes.remove( cacheKey );
+            return null;
+        }
+        return serverCapabilities;
+    }
+
+    void put( final ChaiConfiguration chaiConfiguration, final ServerCapabilities serverCapabilities )
+    {
+        if ( !isEnabled() )
+        {
+            return;
+        }
+
+        checkSize();
+
+        capabilityMap.compute( cacheKey( chaiConfiguration ), ( key, previous ) ->
+        {
+            // a loaded record updated in place keeps its load time, newly read capabilities expire by their own timestamp
+            if ( previous == null || !previous.getTimestamp().equals( serverCapabilities.getTimestamp() ) )
+            {
+                loadedTimes.remove( key );
+            }
+            return serverCapabilities;
+        } );
+        scheduleWriteStorage();
+    }
+
+    void addUnsupportedExtendedOperation( final ChaiConfiguration chaiConfiguration, final String oid )
+    {
+        if ( !isEnabled() )
+        {
+            return;
+        }
+
+        checkSize();
+
+        final AtomicBoolean modified = new AtomicBoolean( false );
+        capabilityMap.compute( cacheKey( chaiConfiguration ), ( key, existing ) ->
+        {
+            if ( existing == null || isExpired( key, existing ) )
+            {
+                loadedTimes.remove( key );
+                modified.set( true );
+                return ServerCapabilities.unread( Collections.singleton( oid ) );
+            }
+
+            if ( existing.isExtendedOperationUnsupported( oid ) )
+            {
+                return existing;
+            }
+
+            modified.set( true );
+            return existing.withUnsupportedExtendedOperation( oid );
+        } );
+
+        if ( modified.get() )
+        {
+            scheduleWriteStorage();
+        }
+    }
+
+    boolean isExtendedOperationUnsupported( final ChaiConfiguration chaiConfiguration, final String oid )
+    {
+        final ServerCapabilities serverCapabilities = get( chaiConfiguration );
+        return serverCapabilities != null && serverCapabilities.isExtendedOperationUnsupported( oid );
+    }
+
+    int size()
+    {
+        return capabilityMap.size();
+    }
+
+    /**
+     * Write any pending changes to the storage file and stop the storage writer thread.
+     */
+    void close()
+    {
+        writeExecutor.shutdown();
+        try
+        {
+            writeExecutor.awaitTermination( CLOSE_WAIT_SECONDS, TimeUnit.SECONDS );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        writePendingStorage();
+    }
+
+    private boolean isExpired( final String cacheKey, final ServerCapabilities serverCapabilities )
+    {
+        final Instant loadedTime = loadedTimes.get( cacheKey );
+        return loadedTime == null
+                ? serverCapabilities.isExpired( maxAgeMs )
+                : loadedTime.plusMillis( maxAgeMs ).isBefore( Instant.now() );
+    }
+
+    private void checkSize()
+    {
+        // safety check
+        if ( capabilityMap.size() >= MAX_CACHE_SIZE )
+        {
+            capabilityMap.clear();
+            loadedTimes.clear();
+        }
+    }
+
+    /**
+     * Queue a write of the storage file.  Writes are made on a background thread, and changes made while a write
+     * is already queued are included in that write rather than queueing another.
+     */
+    private void scheduleWriteStorage()
+    {
+        if ( storageFile == null || !writePending.compareAndSet( false, true ) )
+        {
+            return;
+        }
+
+        try
+        {
+            writeExecutor.execute( this::writePendingStorage );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            // cache has been closed
+            writePendingStorage();
+        }
+    }
+
+    /**
+     * Single thread executor for storage writes.  The thread is discarded when idle, so a cache that is not
+     * being updated does not hold a thread.
+     */
+    private static ExecutorService newWriteExecutor()
+    {
+        final ThreadFactory threadFactory = new ThreadFactory()
+        {
+            private final ThreadFactory realThreadFactory = Executors.defaultThreadFactory();
+
+            @Override
+            public Thread newThread( final Runnable runnable )
+            {
+                final Thread t = realThreadFactory.newThread( runnable );
+                t.setDaemon( true );
+                t.setName( WRITER_THREAD_NAME );
+                return t;
+            }
+        };
+        return new ThreadPoolExecutor( 0, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory );
+    }
+
+    private void writePendingStorage()
+    {
+        if ( writePending.getAndSet( false ) )
+        {
+            writeStorage();
+        }
+    }
+
+    private void readStorage()
+    {
+        if ( storageFile == null || !isEnabled() || !Files.exists( storageFile ) )
+        {
+            return;
+        }
+
+        try ( Reader reader = Files.newBufferedReader( storageFile, StandardCharsets.UTF_8 ) )
+        {
+            final Map<String, ServerCapabilities> storedValues = new Gson().fromJson( reader, STORED_TYPE );
+            if ( storedValues != null )
+            {
+                final Instant now = Instant.now();
+                for ( final Map.Entry<String, ServerCapabilities> entry : storedValues.entrySet() )
+                {
+                    if ( entry.getKey() != null && entry.getValue() != null && !entry.getValue().isExpired( fileMaxAgeMs ) )
+                    {
+                        capabilityMap.put( entry.getKey(), entry.getValue() );
+                        loadedTimes.put( entry.getKey(), now );
+                    }
+                }
+            }
+            LOGGER.debug( () -> "loaded " + capabilityMap.size() + " server capability records from " + storageFile );
+        }
+        catch ( IOException | JsonParseException e )
+        {
+            LOGGER.warn( () -> "unable to read server capability cache file " + storageFile + ": " + e.getMessage() );
+        }
+    }
+
+    private void writeStorage()
+    {
+        if ( storageFile == null )
+        {
+            return;
+        }
+
+        synchronized ( storageLock )
+        {
+            final Map<String, ServerCapabilities> outputValues = new LinkedHashMap<>( capabilityMap );
+            try
+            {
+                final Path tempFile = Paths.get( storageFile + ".tmp" );
+                try ( Writer writer = Files.newBufferedWriter( tempFile, StandardCharsets.UTF_8 ) )
+                {
+                    new Gson().toJson( outputValues, STORED_TYPE, writer );
+                }
+
+                try
+                {
+                    Files.move( tempFile, storageFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+                }
+                catch ( AtomicMoveNotSupportedException e )
+                {
+                    Files.move( tempFile, storageFile, StandardCopyOption.REPLACE_EXISTING );
+                }
+            }
+            catch ( IOException e )
+            {
+                LOGGER.warn( () -> "unable to write server capability cache file " + storageFile + ": " + e.getMessage() );
+            }
+        }
+    }
+}
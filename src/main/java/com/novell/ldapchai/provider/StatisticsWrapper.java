@@ -185,6 +185,11 @@ class StatisticsWrapper implements InvocationHandler
             incrementerMap.get( incrementerStatistic ).increment();
         }
 
+        void addToStatistic( final IncrementerStatistic incrementerStatistic, final long value )
+        {
+            incrementerMap.get( incrementerStatistic ).add( value );
+        }
+
         void markTimestampStatistic( final TimestampStatistic timestampStatistic )
         {
             timestampMap.put( timestampStatistic, Instant.now() );
@@ -43,7 +43,7 @@ class ThreadSafeWrapper extends AbstractWrapper
     )
     {
         //check to make sure watchdog ise enabled;
-        final boolean threadSafeEnabled = Boolean.parseBoolean( chaiProvider.getChaiConfiguration().getSetting( ChaiSetting.THREAD_SAFE_ENABLE ) );
+        final boolean threadSafeEnabled = chaiProvider.getChaiConfiguration().getBooleanSetting( ChaiSetting.THREAD_SAFE_ENABLE );
         if ( !threadSafeEnabled )
         {
             final String errorStr = "attempt to obtain ThreadSafeWrapper wrapper when thread safe is not enabled in chai config";
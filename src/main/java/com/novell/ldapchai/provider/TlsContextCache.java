@@ -0,0 +1,195 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.util.internal.ChaiLogger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.X509TrustManager;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Factory level cache of {@link SSLContext} instances, keyed by the trust configuration of a {@link ChaiConfiguration}.
+ *
+ * <p>Providers are frequently closed and re-opened by the watchdog and fail-over wrappers.  Creating a new
+ * {@code SSLContext} for each connection discards the client TLS session cache, forcing a full handshake on every
+ * reconnect.  Sharing the context allows reconnects to the same server to resume the previous TLS session.</p>
+ *
+ * <p>Configurations that use neither {@link ChaiSetting#PROMISCUOUS_SSL} nor a configured trust manager use the
+ * JVM default {@code SSLContext}, which is already shared, so no context is returned for them.</p>
+ *
+ * @see ChaiProviderFactorySetting#TLS_CONTEXT_CACHE_ENABLE
+ */
+class TlsContextCache
+{
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger( TlsContextCache.class );
+
+    private static final String SSL_PROTOCOL = "SSL";
+
+    private static final int MAX_CACHE_SIZE = 100;
+
+    private static final Object PROMISCUOUS_KEY = new Object();
+
+    private final Map<List<Object>, SSLContext> contextCache = new ConcurrentHashMap<>();
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private final boolean enabled;
+
+    private final int sessionTimeoutSeconds;
+
+    TlsContextCache( final ChaiProviderFactory chaiProviderFactory )
+    {
+        final Map<ChaiProviderFactorySetting, String> settings = chaiProviderFactory.getChaiProviderFactorySettings();
+        enabled = Boolean.parseBoolean( settings.getOrDefault(
+                ChaiProviderFactorySetting.TLS_CONTEXT_CACHE_ENABLE,
+                ChaiProviderFactorySetting.TLS_CONTEXT_CACHE_ENABLE.getDefaultValue() ) );
+        sessionTimeoutSeconds = ( int ) ( Long.parseLong( settings.getOrDefault(
+                ChaiProviderFactorySetting.TLS_SESSION_TIMEOUT_MS,
+                ChaiProviderFactorySetting.TLS_SESSION_TIMEOUT_MS.getDefaultValue() ) ) / 1000 );
+    }
+
+    /**
+     * Get an {@code SSLContext} appropriate for the trust settings of the supplied configuration.
+     *
+     * @param chaiProviderFactory the factory owning the cache, may be null in which case a new, uncached context is returned
+     * @param chaiConfiguration the configuration of the provider being created
+     * @return an {@code SSLContext}, or empty if the JVM default context should be used
+     */
+    static Optional<SSLContext> forConfiguration(
+            final ChaiProviderFactory chaiProviderFactory,
+            final ChaiConfiguration chaiConfiguration
+    )
+    {
+        if ( chaiProviderFactory == null )
+        {
+            final X509TrustManager[] trustManagers = effectiveTrustManagers( chaiConfiguration );
+            return trustManagers == null
+                    ? Optional.empty()
+                    : Optional.ofNullable( createContext( trustManagers, new SecureRandom(), 0 ) );
+        }
+
+        return chaiProviderFactory.getCentralService().getTlsContextCache().getContext( chaiConfiguration );
+    }
+
+    /**
+     * Get a {@code SecureRandom} for ssl libraries that insist on creating their own {@code SSLContext}.
+     *
+     * @param chaiProviderFactory the factory owning the cache, may be null
+     * @return a shared {@code SecureRandom} instance
+     */
+    static SecureRandom secureRandom( final ChaiProviderFactory chaiProviderFactory )
+    {
+        return chaiProviderFactory == null
+                ? new SecureRandom()
+                : chaiProviderFactory.getCentralService().getTlsContextCache().secureRandom;
+    }
+
+    /**
+     * Determine the trust managers implied by the configuration.
+     *
+     * @param chaiConfiguration configuration to examine
+     * @return trust managers to use, or null if the JVM default trust managers should be used.
+     */
+    static X509TrustManager[] effectiveTrustManagers( final ChaiConfiguration chaiConfiguration )
+    {
+        if ( chaiConfiguration.getBooleanSetting( ChaiSetting.PROMISCUOUS_SSL ) )
+        {
+            return new X509TrustManager[] {new AbstractProvider.PromiscuousTrustManager()};
+        }
+        return chaiConfiguration.getTrustManager();
+    }
+
+    Optional<SSLContext> getContext( final ChaiConfiguration chaiConfiguration )
+    {
+        final X509TrustManager[] trustManagers = effectiveTrustManagers( chaiConfiguration );
+        if ( trustManagers == null )
+        {
+            return Optional.empty();
+        }
+
+        if ( !enabled )
+        {
+            return Optional.ofNullable( createContext( trustManagers, new SecureRandom(), 0 ) );
+        }
+
+        final List<Object> cacheKey = chaiConfiguration.getBooleanSetting( ChaiSetting.PROMISCUOUS_SSL )
+                ? Collections.singletonList( PROMISCUOUS_KEY )
+                : Collections.unmodifiableList( Arrays.asList( ( Object[] ) trustManagers ) );
+
+        final SSLContext cachedContext = contextCache.get( cacheKey );
+        if ( cachedContext != null )
+        {
+            return Optional.of( cachedContext );
+        }
+
+        final SSLContext newContext = createContext( trustManagers, secureRandom, sessionTimeoutSeconds );
+        if ( newContext == null )
+        {
+            return Optional.empty();
+        }
+
+        // safety check, trust managers are normally long-lived but callers could generate new ones per configuration.
+        if ( contextCache.size() >= MAX_CACHE_SIZE )
+        {
+            contextCache.clear();
+        }
+
+        final SSLContext existingContext = contextCache.putIfAbsent( cacheKey, newContext );
+        LOGGER.trace( () -> "created new shared ssl context, cache size=" + contextCache.size() );
+        return Optional.of( existingContext == null ? newContext : existingContext );
+    }
+
+    int size()
+    {
+        return contextCache.size();
+    }
+
+    private static SSLContext createContext(
+            final X509TrustManager[] trustManagers,
+            final SecureRandom secureRandom,
+            final int sessionTimeoutSeconds
+    )
+    {
+        try
+        {
+            final SSLContext sslContext = SSLContext.getInstance( SSL_PROTOCOL );
+            sslContext.init( null, trustManagers, secureRandom );
+            if ( sessionTimeoutSeconds > 0 )
+            {
+                sslContext.getClientSessionContext().setSessionTimeout( sessionTimeoutSeconds );
+            }
+            return sslContext;
+        }
+        catch ( NoSuchAlgorithmException | KeyManagementException e )
+        {
+            LOGGER.error( () -> "error configuring ssl context: " + e.getMessage() );
+        }
+        return null;
+    }
+}
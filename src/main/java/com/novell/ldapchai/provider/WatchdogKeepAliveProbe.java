@@ -0,0 +1,118 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+
+import javax.naming.ldap.ExtendedRequest;
+import javax.naming.ldap.ExtendedResponse;
+
+/**
+ * Keep-alive probe operations used by the {@link WatchdogProviderHolder} to detect connections that have
+ * been silently dropped while idle.
+ *
+ * <p>A probe is considered successful if the server responds at all; an operation level error
+ * such as an unsupported extended operation still proves the connection is alive.</p>
+ *
+ * @see ChaiSetting#WATCHDOG_KEEPALIVE_PROBE
+ */
+enum WatchdogKeepAliveProbe
+{
+    /**
+     * Base level read of the rootDSE.
+     */
+    ROOT_DSE
+            {
+                @Override
+                void probe( final ChaiProvider chaiProvider )
+                        throws ChaiOperationException, ChaiUnavailableException
+                {
+                    chaiProvider.readStringAttribute( "", "objectClass" );
+                }
+            },
+
+    /**
+     * RFC 4532 "Who am I?" extended operation.  Providers remember extended operations rejected by the server
+     * and fail them without contacting the server, so if the operation is unsupported the rootDSE is read instead.
+     */
+    WHO_AM_I
+            {
+                @Override
+                void probe( final ChaiProvider chaiProvider )
+                        throws ChaiOperationException, ChaiUnavailableException
+                {
+                    try
+                    {
+                        chaiProvider.extendedOperation( new WhoAmIRequest() );
+                    }
+                    catch ( final ChaiOperationException e )
+                    {
+                        if ( e.getErrorCode() != ChaiError.UNSUPPORTED_OPERATION )
+                        {
+                            throw e;
+                        }
+                        ROOT_DSE.probe( chaiProvider );
+                    }
+                }
+            },;
+
+    abstract void probe( ChaiProvider chaiProvider )
+            throws ChaiOperationException, ChaiUnavailableException;
+
+    static WatchdogKeepAliveProbe forConfiguration( final ChaiConfiguration chaiConfiguration )
+    {
+        return WatchdogKeepAliveProbe.valueOf( chaiConfiguration.getSetting( ChaiSetting.WATCHDOG_KEEPALIVE_PROBE ) );
+    }
+
+    /**
+     * RFC 4532 "Who am I?" request, the request has no value and the response is ignored.
+     */
+    static class WhoAmIRequest implements ExtendedRequest
+    {
+        private static final long serialVersionUID = 1L;
+
+        static final String OID = "1.3.6.1.4.1.4203.1.11.3";
+
+        @Override
+        public String getID()
+        {
+            return OID;
+        }
+
+        @Override
+        public byte[] getEncodedValue()
+        {
+            return null;
+        }
+
+        @Override
+        public ExtendedResponse createExtendedResponse(
+                final String id,
+                final byte[] berValue,
+                final int offset,
+                final int length
+        )
+        {
+            return null;
+        }
+    }
+}
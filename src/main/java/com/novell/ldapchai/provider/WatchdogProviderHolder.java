@@ -25,6 +25,10 @@ import com.novell.ldapchai.util.internal.ChaiLogger;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -57,6 +61,8 @@ class WatchdogProviderHolder
 
     private volatile InternalHolder miniHolder;
     private volatile Instant lastActivity = Instant.now();
+    private volatile Instant lastKeepAliveProbe = Instant.now();
+    private volatile boolean probeInProgress = false;
     private volatile boolean closed = false;
 
     WatchdogProviderHolder(
@@ -175,7 +181,7 @@ class WatchdogProviderHolder
      */
     void periodicStatusCheck()
     {
-        if ( miniHolder == null )
+        if ( miniHolder == null || probeInProgress )
         {
             return;
         }
@@ -184,17 +190,25 @@ class WatchdogProviderHolder
         // is an active connection then no need to check these statuses
         if ( usageLock.writeLock().tryLock() )
         {
+            final InternalHolder keepAliveHolder;
             providerChangeLock.lock();
             try
             {
                 checkMaxLifetimeDuration();
                 checkIdleTimeout();
+                keepAliveHolder = checkKeepAliveDue();
             }
             finally
             {
                 providerChangeLock.unlock();
                 usageLock.writeLock().unlock();
             }
+
+            // the probe runs without any lock held, callers may use the connection while it is being probed
+            if ( keepAliveHolder != null )
+            {
+                startKeepAliveProbe( keepAliveHolder );
+            }
         }
         else
         {
@@ -204,6 +218,12 @@ class WatchdogProviderHolder
 
     private void checkIdleTimeout()
     {
+        // idle connections are kept open and probed instead, otherwise they would be closed long before a probe is due
+        if ( settings.isKeepAliveEnabled() )
+        {
+            return;
+        }
+
         final Duration idleDuration = Duration.between( lastActivity, Instant.now() );
         if ( idleDuration.toMillis() > settings.getIdleTimeoutMS() )
         {
@@ -216,6 +236,234 @@ class WatchdogProviderHolder
         }
     }
 
+    /**
+     * Determine if the connection has been idle longer than the keep-alive interval.  Must be called while holding
+     * the locks.  The probe time is marked immediately so that a slow probe is not issued again by the next check.
+     *
+     * @return the holder to probe, or null if no probe is due
+     */
+    private InternalHolder checkKeepAliveDue()
+    {
+        final InternalHolder localHolder = miniHolder;
+        if ( !settings.isKeepAliveEnabled() || localHolder == null )
+        {
+            return null;
+        }
+
+        final Instant lastUse = lastKeepAliveProbe.isAfter( lastActivity ) ? lastKeepAliveProbe : lastActivity;
+        if ( Duration.between( lastUse, Instant.now() ).toMillis() < settings.getKeepAliveIntervalMS() )
+        {
+            return null;
+        }
+
+        lastKeepAliveProbe = Instant.now();
+        return localHolder;
+    }
+
+    /**
+     * Start a keep-alive probe on the keep-alive executor, so the watchdog timer thread is not held up by an
+     * unresponsive connection.
+     *
+     * @param probeHolder snapshot of the holder taken while holding the locks
+     */
+    private void startKeepAliveProbe( final InternalHolder probeHolder )
+    {
+        probeInProgress = true;
+        try
+        {
+            chaiProviderFactory.getCentralService().getWatchdogService().getKeepAliveExecutor().execute( () ->
+            {
+                try
+                {
+                    probeKeepAlive( probeHolder );
+                }
+                finally
+                {
+                    probeInProgress = false;
+                }
+            } );
+        }
+        catch ( final RuntimeException e )
+        {
+            probeInProgress = false;
+            LOGGER.debug( () -> "unable to start keep-alive probe for connection id=" + wrapperIdentifier + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Issue a keep-alive probe against a snapshot of the holder.  The probe is
+     * executed directly against the real provider so it does not count as activity for the purposes of the idle
+     * timeout, and on a separate thread so that it can be abandoned after the keep-alive timeout.  If the probe fails
+     * the connection is discarded and a replacement is opened so that the next caller does not pay for the dead
+     * connection.
+     *
+     * @param probeHolder snapshot of the holder taken while holding the locks
+     */
+    private void probeKeepAlive( final InternalHolder probeHolder )
+    {
+        final ChaiProviderImplementor probeProvider = probeHolder.getRealProvider();
+        final Instant startTime = Instant.now();
+        boolean success = false;
+        String errorMsg = null;
+
+        final Future<?> probeResult;
+        try
+        {
+            probeResult = chaiProviderFactory.getCentralService().getWatchdogService().getKeepAliveExecutor().submit( () ->
+            {
+                settings.getKeepAliveProbe().probe( probeProvider );
+                return null;
+            } );
+        }
+        catch ( final RuntimeException e )
+        {
+            LOGGER.debug( () -> "unable to issue keep-alive probe for connection id=" + wrapperIdentifier + ": " + e.getMessage() );
+            return;
+        }
+
+        try
+        {
+            probeResult.get( settings.getKeepAliveTimeoutMS(), TimeUnit.MILLISECONDS );
+            success = true;
+        }
+        catch ( final ExecutionException e )
+        {
+            if ( e.getCause() instanceof ChaiOperationException )
+            {
+                // server responded with an operation error, so the connection itself is alive.
+                success = true;
+            }
+            else
+            {
+                errorMsg = e.getCause() == null ? e.getMessage() : e.getCause().getMessage();
+            }
+        }
+        catch ( final TimeoutException e )
+        {
+            probeResult.cancel( true );
+            errorMsg = "no response within " + ChaiLogger.format( Duration.ofMillis( settings.getKeepAliveTimeoutMS() ) );
+        }
+        catch ( final InterruptedException e )
+        {
+            probeResult.cancel( true );
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        lastKeepAliveProbe = Instant.now();
+        final Duration probeDuration = Duration.between( startTime, lastKeepAliveProbe );
+        recordKeepAliveStatistics( probeDuration, success );
+
+        if ( success )
+        {
+            LOGGER.trace( () -> "keep-alive probe succeeded for connection id=" + wrapperIdentifier, probeDuration );
+            return;
+        }
+
+        final String finalErrorMsg = errorMsg;
+        disconnectAfterFailedProbe( probeHolder, () -> "keep-alive probe failed ("
+                + ChaiLogger.format( probeDuration )
+                + "), closing connection id="
+                + wrapperIdentifier
+                + ", error: " + finalErrorMsg );
+    }
+
+    /**
+     * Discard the connection after a failed probe and open a replacement.  Called by the keep-alive thread.  The
+     * locks are only held while the dead connection is detached, the replacement is opened without holding them.
+     */
+    private void disconnectAfterFailedProbe( final InternalHolder probeHolder, final Supplier<String> debugMsg )
+    {
+        // a caller that is still using the connection will find out about the failure itself
+        if ( !usageLock.writeLock().tryLock() )
+        {
+            LOGGER.debug( () -> "connection id=" + wrapperIdentifier + " failed keep-alive probe but is in use, not closing" );
+            return;
+        }
+
+        try
+        {
+            providerChangeLock.lock();
+            try
+            {
+                if ( miniHolder != probeHolder )
+                {
+                    return;
+                }
+
+                disconnectRealProvider( debugMsg );
+                if ( miniHolder != null || closed )
+                {
+                    return;
+                }
+            }
+            finally
+            {
+                providerChangeLock.unlock();
+            }
+        }
+        finally
+        {
+            usageLock.writeLock().unlock();
+        }
+
+        reconnectAfterFailedProbe();
+    }
+
+    /**
+     * Open a replacement connection without holding the locks, and install it unless a caller has re-opened the
+     * connection in the meantime.
+     */
+    private void reconnectAfterFailedProbe()
+    {
+        final Instant startTime = Instant.now();
+        final ChaiProviderImplementor newProvider;
+        try
+        {
+            newProvider = chaiProviderFactory.createFailOverOrConcreteProvider( chaiConfiguration );
+        }
+        catch ( final ChaiUnavailableException e )
+        {
+            LOGGER.debug( () -> "unable to replace connection id=" + wrapperIdentifier + " after failed keep-alive probe: " + e.getMessage() );
+            return;
+        }
+
+        providerChangeLock.lock();
+        try
+        {
+            if ( miniHolder == null && !closed )
+            {
+                miniHolder = new InternalHolder( newProvider );
+                lastKeepAliveProbe = Instant.now();
+                LOGGER.trace( () -> "re-opened ldap connection id=" + wrapperIdentifier, Duration.between( startTime, Instant.now() ) );
+                return;
+            }
+        }
+        finally
+        {
+            providerChangeLock.unlock();
+        }
+
+        newProvider.close();
+    }
+
+    private void recordKeepAliveStatistics( final Duration probeDuration, final boolean success )
+    {
+        if ( !settings.isStatisticsEnabled() )
+        {
+            return;
+        }
+
+        final StatisticsWrapper.StatsBean statsBean = chaiProviderFactory.getCentralService().getStatsBean();
+        statsBean.incrementStatistic( ProviderStatistics.IncrementerStatistic.KEEPALIVE_PROBE_COUNT );
+        statsBean.addToStatistic( ProviderStatistics.IncrementerStatistic.KEEPALIVE_PROBE_TIME_MS, probeDuration.toMillis() );
+        statsBean.markTimestampStatistic( ProviderStatistics.TimestampStatistic.LAST_KEEPALIVE_PROBE );
+        if ( !success )
+        {
+            statsBean.incrementStatistic( ProviderStatistics.IncrementerStatistic.KEEPALIVE_PROBE_FAILURE_COUNT );
+        }
+    }
+
     private void checkMaxLifetimeDuration()
     {
         final Duration maxConnectionLifetime = settings.getMaxConnectionLifetime();
@@ -264,6 +512,7 @@ class WatchdogProviderHolder
             final Instant startTime = Instant.now();
             final ChaiProviderImplementor newProvider = chaiProviderFactory.createFailOverOrConcreteProvider( chaiConfiguration );
             miniHolder = new InternalHolder( newProvider );
+            lastKeepAliveProbe = Instant.now();
             LOGGER.trace( () -> "re-opened ldap connection id=" + wrapperIdentifier, Duration.between( startTime, Instant.now() ) );
 
             return newProvider;
@@ -27,6 +27,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
@@ -40,6 +41,8 @@ class WatchdogService implements Closeable
 
     private static final String THREAD_NAME = "LDAP Chai WatchdogWrapper timer thread";
 
+    private static final String KEEPALIVE_THREAD_NAME = "LDAP Chai WatchdogWrapper keep-alive probe thread";
+
     private final long watchdogFrequency;
 
     private final ChaiProviderFactory chaiProviderFactory;
@@ -50,6 +53,8 @@ class WatchdogService implements Closeable
 
     private volatile ScheduledExecutorService watchdogTimer = null;
 
+    private volatile ExecutorService keepAliveExecutor = null;
+
     WatchdogService( final ChaiProviderFactory chaiProviderFactory )
     {
         watchdogFrequency = Integer.parseInt(
@@ -96,9 +101,32 @@ class WatchdogService implements Closeable
         }
     }
 
-    private void startWatchdogThread()
+    /**
+     * Executor for keep-alive probes.  Probes run on their own threads so that a probe blocked on an unresponsive
+     * connection does not hold up the watchdog timer thread; idle threads are discarded.
+     *
+     * @return the shared keep-alive probe executor
+     */
+    ExecutorService getKeepAliveExecutor()
+    {
+        serviceThreadLock.lock();
+        try
+        {
+            if ( keepAliveExecutor == null )
+            {
+                keepAliveExecutor = Executors.newCachedThreadPool( daemonThreadFactory( KEEPALIVE_THREAD_NAME ) );
+            }
+            return keepAliveExecutor;
+        }
+        finally
+        {
+            serviceThreadLock.unlock();
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory( final String threadName )
     {
-        final ThreadFactory threadFactory = new ThreadFactory()
+        return new ThreadFactory()
         {
             private final ThreadFactory realThreadFactory = Executors.defaultThreadFactory();
 
@@ -107,12 +135,15 @@ class WatchdogService implements Closeable
             {
                 final Thread t = realThreadFactory.newThread( runnable );
                 t.setDaemon( true );
-                t.setName( THREAD_NAME );
+                t.setName( threadName );
                 return t;
             }
         };
+    }
 
-        watchdogTimer = Executors.newSingleThreadScheduledExecutor( threadFactory );
+    private void startWatchdogThread()
+    {
+        watchdogTimer = Executors.newSingleThreadScheduledExecutor( daemonThreadFactory( THREAD_NAME ) );
         watchdogTimer.scheduleWithFixedDelay( new WatchdogTask(),  watchdogFrequency, watchdogFrequency, TimeUnit.MILLISECONDS );
     }
 
@@ -197,6 +228,12 @@ class WatchdogService implements Closeable
                 watchdogTimer = null;
             }
 
+            if ( keepAliveExecutor != null )
+            {
+                keepAliveExecutor.shutdownNow();
+                keepAliveExecutor = null;
+            }
+
             final Collection<WatchdogWrapper> wrappers = issuedWatchdogWrappers.allValues();
             for ( final WatchdogWrapper watchdogWrapper : wrappers )
             {
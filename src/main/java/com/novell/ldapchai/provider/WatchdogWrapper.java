@@ -28,6 +28,8 @@ import com.novell.ldapchai.util.internal.ChaiLogger;
 
 import javax.naming.ldap.ExtendedRequest;
 import javax.naming.ldap.ExtendedResponse;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
@@ -42,6 +44,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @see com.novell.ldapchai.provider.ChaiSetting#WATCHDOG_ENABLE
  * @see com.novell.ldapchai.provider.ChaiSetting#WATCHDOG_IDLE_TIMEOUT
  * @see com.novell.ldapchai.provider.ChaiSetting#WATCHDOG_OPERATION_TIMEOUT
+ * @see com.novell.ldapchai.provider.ChaiSetting#WATCHDOG_KEEPALIVE_ENABLE
  */
 class WatchdogWrapper implements ChaiProviderImplementor
 {
@@ -73,7 +76,7 @@ class WatchdogWrapper implements ChaiProviderImplementor
     )
     {
         //check to make sure watchdog is enabled;
-        final boolean watchDogEnabled = Boolean.parseBoolean( chaiProvider.getChaiConfiguration().getSetting( ChaiSetting.WATCHDOG_ENABLE ) );
+        final boolean watchDogEnabled = chaiProvider.getChaiConfiguration().getBooleanSetting( ChaiSetting.WATCHDOG_ENABLE );
         if ( !watchDogEnabled )
         {
             final String errorStr = "attempt to obtain WatchdogWrapper wrapper when watchdog is not enabled in chai config id="
@@ -205,6 +208,17 @@ class WatchdogWrapper implements ChaiProviderImplementor
         } );
     }
 
+    @Override
+    public void deleteStringAttributeValues( final String entryDN, final String attributeName, final Set<String> values )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        providerHolder.execute( ( WatchdogProviderHolder.LdapFunction<Void> ) chaiProvider ->
+        {
+            chaiProvider.deleteStringAttributeValues( entryDN, attributeName, values );
+            return null;
+        } );
+    }
+
     @Override
     public ExtendedResponse extendedOperation( final ExtendedRequest request )
             throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
@@ -231,6 +245,20 @@ class WatchdogWrapper implements ChaiProviderImplementor
         return providerHolder.execute( chaiProvider -> chaiProvider.readMultiByteAttribute( entryDN, attribute ) );
     }
 
+    @Override
+    public List<ByteBuffer> readMultiByteBufferAttribute( final String entryDN, final String attribute )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        return providerHolder.execute( chaiProvider -> chaiProvider.readMultiByteBufferAttribute( entryDN, attribute ) );
+    }
+
+    @Override
+    public InputStream readByteStreamAttribute( final String entryDN, final String attribute )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        return providerHolder.execute( chaiProvider -> chaiProvider.readByteStreamAttribute( entryDN, attribute ) );
+    }
+
     @Override
     public Set<String> readMultiStringAttribute( final String entryDN, final String attribute )
             throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
@@ -238,6 +266,13 @@ class WatchdogWrapper implements ChaiProviderImplementor
         return providerHolder.execute( chaiProvider -> chaiProvider.readMultiStringAttribute( entryDN, attribute ) );
     }
 
+    @Override
+    public AttributeValueRange readMultiStringAttributeRange( final String entryDN, final String attribute, final int startIndex )
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        return providerHolder.execute( chaiProvider -> chaiProvider.readMultiStringAttributeRange( entryDN, attribute, startIndex ) );
+    }
+
     @Override
     public String readStringAttribute( final String entryDN, final String attribute )
             throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
@@ -284,6 +319,31 @@ class WatchdogWrapper implements ChaiProviderImplementor
         return providerHolder.execute( chaiProvider -> chaiProvider.searchMultiValues( baseDN, searchHelper ) );
     }
 
+    @Override
+    public CompactSearchResult searchCompact( final String baseDN, final SearchHelper searchHelper )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        return providerHolder.execute( chaiProvider -> chaiProvider.searchCompact( baseDN, searchHelper ) );
+    }
+
+    @Override
+    public Map<String, Map<String, byte[][]>> searchMultiByteValues( final String baseDN, final SearchHelper searchHelper )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        return providerHolder.execute( chaiProvider -> chaiProvider.searchMultiByteValues( baseDN, searchHelper ) );
+    }
+
+    @Override
+    public void searchStream( final String baseDN, final SearchHelper searchHelper, final SearchResultHandler resultHandler )
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        providerHolder.execute( ( WatchdogProviderHolder.LdapFunction<Void> ) chaiProvider ->
+        {
+            chaiProvider.searchStream( baseDN, searchHelper, resultHandler );
+            return null;
+        } );
+    }
+
     @Override
     public Map<String, Map<String, List<String>>> searchMultiValues( final String baseDN, final String filter, final Set<String> attributes, final SearchScope searchScope )
             throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
@@ -351,6 +411,22 @@ class WatchdogWrapper implements ChaiProviderImplementor
         }
     }
 
+    @Override
+    public AttributeSchema getAttributeSchema()
+            throws ChaiUnavailableException
+    {
+        try
+        {
+            return providerHolder.execute( ChaiProvider::getAttributeSchema );
+        }
+        catch ( ChaiOperationException e )
+        {
+            final String msg = "unexpected ChaiOperationException during getAttributeSchema " + e.getMessage();
+            LOGGER.error( () -> msg, e );
+            throw ChaiUnavailableException.forErrorMessage( msg, e );
+        }
+    }
+
     @Override
     public void replaceBinaryAttribute( final String entryDN, final String attributeName, final byte[] oldValue, final byte[] newValue )
             throws ChaiUnavailableException, ChaiOperationException
@@ -395,12 +471,24 @@ class WatchdogWrapper implements ChaiProviderImplementor
         private final int operationTimeout;
         private final int idleTimeout;
         private final Duration maxConnectionLifetime;
+        private final boolean keepAliveEnabled;
+        private final int keepAliveInterval;
+        private final WatchdogKeepAliveProbe keepAliveProbe;
+        private final int keepAliveTimeout;
+        private final boolean statisticsEnabled;
 
-        private Settings( final int operationTimeout, final int idleTimeout, final Duration maxConnectionLifetime )
+        private Settings( final ChaiConfiguration chaiConfiguration )
         {
-            this.operationTimeout = operationTimeout;
-            this.idleTimeout = idleTimeout;
-            this.maxConnectionLifetime = maxConnectionLifetime;
+            this.operationTimeout = chaiConfiguration.getIntSetting( ChaiSetting.WATCHDOG_OPERATION_TIMEOUT );
+            this.idleTimeout = chaiConfiguration.getIntSetting( ChaiSetting.WATCHDOG_IDLE_TIMEOUT );
+            this.maxConnectionLifetime = Duration.of(
+                    chaiConfiguration.getIntSetting( ChaiSetting.WATCHDOG_MAX_CONNECTION_LIFETIME ),
+                    ChronoUnit.MILLIS );
+            this.keepAliveEnabled = chaiConfiguration.getBooleanSetting( ChaiSetting.WATCHDOG_KEEPALIVE_ENABLE );
+            this.keepAliveInterval = chaiConfiguration.getIntSetting( ChaiSetting.WATCHDOG_KEEPALIVE_INTERVAL );
+            this.keepAliveProbe = WatchdogKeepAliveProbe.forConfiguration( chaiConfiguration );
+            this.keepAliveTimeout = chaiConfiguration.getIntSetting( ChaiSetting.WATCHDOG_KEEPALIVE_TIMEOUT );
+            this.statisticsEnabled = chaiConfiguration.getBooleanSetting( ChaiSetting.STATISTICS_ENABLE );
         }
 
         public int getOperationTimeoutMS()
@@ -418,14 +506,34 @@ class WatchdogWrapper implements ChaiProviderImplementor
             return maxConnectionLifetime;
         }
 
-        private static Settings fromConfig( final ChaiConfiguration chaiConfiguration )
+        public boolean isKeepAliveEnabled()
         {
-            final int operationTimeout = Integer.parseInt( chaiConfiguration.getSetting( ChaiSetting.WATCHDOG_OPERATION_TIMEOUT ) );
-            final int idleTimeout = Integer.parseInt( chaiConfiguration.getSetting( ChaiSetting.WATCHDOG_IDLE_TIMEOUT ) );
-            final Duration maxConnectionLifetime = Duration.of(
-                    Integer.parseInt( chaiConfiguration.getSetting( ChaiSetting.WATCHDOG_MAX_CONNECTION_LIFETIME ) ),
-                    ChronoUnit.MILLIS );
-            return new Settings( operationTimeout, idleTimeout, maxConnectionLifetime );
+            return keepAliveEnabled;
+        }
+
+        public int getKeepAliveIntervalMS()
+        {
+            return keepAliveInterval;
+        }
+
+        public WatchdogKeepAliveProbe getKeepAliveProbe()
+        {
+            return keepAliveProbe;
+        }
+
+        public int getKeepAliveTimeoutMS()
+        {
+            return keepAliveTimeout;
+        }
+
+        public boolean isStatisticsEnabled()
+        {
+            return statisticsEnabled;
+        }
+
+        static Settings fromConfig( final ChaiConfiguration chaiConfiguration )
+        {
+            return new Settings( chaiConfiguration );
         }
     }
 
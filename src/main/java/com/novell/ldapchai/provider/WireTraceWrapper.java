@@ -54,7 +54,7 @@ class WireTraceWrapper extends AbstractWrapper
     )
     {
         //check to make sure watchdog ise enabled;
-        final boolean watchDogEnabled = Boolean.parseBoolean( chaiProvider.getChaiConfiguration().getSetting( ChaiSetting.WIRETRACE_ENABLE ) );
+        final boolean watchDogEnabled = chaiProvider.getChaiConfiguration().getBooleanSetting( ChaiSetting.WIRETRACE_ENABLE );
         if ( !watchDogEnabled )
         {
             final String errorStr = "attempt to obtain WireTrace wrapper when watchdog is not enabled in chai config";
@@ -0,0 +1,639 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable, parsed LDAP distinguished name.
+ *
+ * <p>DNs are parsed according to RFC 4514, with the RFC 2253 legacy forms ({@code ;} separators and quoted
+ * values) also accepted.  Each instance carries a normalized form used for {@link #equals(Object)} and
+ * {@link #hashCode()}: attribute types and values are lower cased, insignificant spaces are removed, escaping is
+ * canonical and the values of multi-valued RDNs are sorted.  Values are compared case-insensitively as the common
+ * naming attributes use case-ignore matching.</p>
+ *
+ * <p>{@link #parse(String)} caches parsed instances in a bounded, process wide cache, as the same DNs are parsed
+ * repeatedly when entries are compared or navigated.</p>
+ */
+public final class ChaiDn implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final int MAX_CACHE_SIZE = 10_000;
+
+    private static final Map<String, ChaiDn> CACHE = new ConcurrentHashMap<>();
+
+    private static final Rdn[] NO_RDNS = new Rdn[0];
+
+    private final String dn;
+    private final Rdn[] rdns;
+    private final int offset;
+    private final String normalized;
+
+    private ChaiDn( final String dn, final Rdn[] rdns, final int offset )
+    {
+        this.dn = dn;
+        this.rdns = rdns;
+        this.offset = offset;
+
+        final StringBuilder sb = new StringBuilder();
+        for ( int i = offset; i < rdns.length; i++ )
+        {
+            if ( i > offset )
+            {
+                sb.append( ',' );
+            }
+            sb.append( rdns[i].normalized );
+        }
+        this.normalized = sb.toString();
+    }
+
+    /**
+     * Parse a DN, returning a cached instance if the same DN string has been parsed recently.
+     *
+     * @param dn a DN string
+     * @return the parsed DN
+     * @throws IllegalArgumentException if the DN is not a valid RFC 4514 DN
+     * @throws NullPointerException if {@code dn} is null
+     */
+    public static ChaiDn parse( final String dn )
+    {
+        if ( dn.isEmpty() )
+        {
+            return new ChaiDn( dn, NO_RDNS, 0 );
+        }
+
+        final ChaiDn cached = CACHE.get( dn );
+        if ( cached != null )
+        {
+            return cached;
+        }
+
+        final ChaiDn chaiDn = new Parser( dn ).parse();
+
+        // safety check, clear rather than track usage; the working set of DNs is repopulated quickly.
+        if ( CACHE.size() >= MAX_CACHE_SIZE )
+        {
+            CACHE.clear();
+        }
+        CACHE.put( dn, chaiDn );
+        return chaiDn;
+    }
+
+    /**
+     * Test if a string is a valid DN.
+     *
+     * @param dn a DN string
+     * @return true if the DN can be parsed
+     */
+    public static boolean isValid( final String dn )
+    {
+        if ( dn == null )
+        {
+            return false;
+        }
+        try
+        {
+            parse( dn );
+            return true;
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Normalize a DN string, see the class description for the normalization rules.  DN strings that can not be
+     * parsed are returned unchanged, so the result is suitable for comparing DNs from untrusted sources.
+     *
+     * @param dn a DN string, may be null
+     * @return the normalized DN, or {@code dn} if it can not be parsed
+     */
+    public static String normalize( final String dn )
+    {
+        if ( dn == null )
+        {
+            return null;
+        }
+        try
+        {
+            return parse( dn ).normalized;
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return dn;
+        }
+    }
+
+    /**
+     * Number of RDNs in the DN.
+     *
+     * @return the RDN count, zero for the root DN.
+     */
+    public int size()
+    {
+        return rdns.length - offset;
+    }
+
+    /**
+     * Test if this is the empty DN of the rootDSE.
+     *
+     * @return true if the DN has no RDNs.
+     */
+    public boolean isRoot()
+    {
+        return rdns.length == offset;
+    }
+
+    /**
+     * Get the parent DN.
+     *
+     * @return the parent DN, the root DN for a single RDN, or null if this is the root DN.
+     */
+    public ChaiDn getParent()
+    {
+        if ( isRoot() )
+        {
+            return null;
+        }
+        if ( size() == 1 )
+        {
+            return new ChaiDn( "", rdns, rdns.length );
+        }
+        return new ChaiDn( dn.substring( rdns[offset + 1].start - rdns[offset].start ), rdns, offset + 1 );
+    }
+
+    /**
+     * Get the left-most RDN as it appears in the DN string, such as {@code cn=Alice}.
+     *
+     * @return the RDN, or null if this is the root DN.
+     */
+    public String getRdn()
+    {
+        if ( isRoot() )
+        {
+            return null;
+        }
+        final int base = rdns[offset].start;
+        return dn.substring( 0, rdns[offset].end - base );
+    }
+
+    /**
+     * Get the lower case attribute type of the left-most RDN, such as {@code cn}.  For multi-valued RDNs, the
+     * attribute type of the first attribute is returned.
+     *
+     * @return the attribute type, or null if this is the root DN.
+     */
+    public String getRdnType()
+    {
+        return isRoot() ? null : rdns[offset].type;
+    }
+
+    /**
+     * Get the un-escaped value of the left-most RDN, such as {@code Alice}.  For multi-valued RDNs, the value
+     * of the first attribute is returned.
+     *
+     * @return the RDN value, or null if this is the root DN.
+     */
+    public String getRdnValue()
+    {
+        return isRoot() ? null : rdns[offset].value;
+    }
+
+    /**
+     * Test if this DN is subordinate to another DN, at any depth.
+     *
+     * @param ancestor a potential ancestor DN
+     * @return true if this DN is a descendant of {@code ancestor}.
+     */
+    public boolean isDescendantOf( final ChaiDn ancestor )
+    {
+        final int depth = size() - ancestor.size();
+        if ( depth <= 0 )
+        {
+            return false;
+        }
+        for ( int i = 0; i < ancestor.size(); i++ )
+        {
+            if ( !rdns[offset + depth + i].normalized.equals( ancestor.rdns[ancestor.offset + i].normalized ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the normalized form of the DN.
+     *
+     * @return the normalized DN string
+     */
+    public String toNormalizedString()
+    {
+        return normalized;
+    }
+
+    /**
+     * Get the DN as originally supplied.
+     *
+     * @return the DN string
+     */
+    @Override
+    public String toString()
+    {
+        return dn;
+    }
+
+    @Override
+    public boolean equals( final Object o )
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+        return o instanceof ChaiDn && normalized.equals( ( ( ChaiDn ) o ).normalized );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return normalized.hashCode();
+    }
+
+    private static class Rdn implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String type;
+        private final String value;
+        private final String normalized;
+
+        // position of the rdn within the original DN string.
+        private final int start;
+        private final int end;
+
+        Rdn( final String type, final String value, final String normalized, final int start, final int end )
+        {
+            this.type = type;
+            this.value = value;
+            this.normalized = normalized;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Single pass RFC 4514 DN parser.
+     */
+    private static class Parser
+    {
+        private final String input;
+        private final int length;
+        private int position;
+
+        private final StringBuilder valueBuilder = new StringBuilder();
+        private byte[] pendingBytes = new byte[16];
+        private int pendingByteCount;
+
+        Parser( final String input )
+        {
+            this.input = input;
+            this.length = input.length();
+        }
+
+        ChaiDn parse()
+        {
+            final List<Rdn> rdns = new ArrayList<>();
+            while ( true )
+            {
+                skipSpaces();
+                final int rdnStart = position;
+                final List<String> normalizedAvas = new ArrayList<>( 1 );
+                String firstType = null;
+                String firstValue = null;
+
+                while ( true )
+                {
+                    skipSpaces();
+                    final String type = parseType();
+                    skipSpaces();
+                    expect( '=' );
+                    skipSpaces();
+                    final boolean hexValue = position < length && input.charAt( position ) == '#';
+                    final String value = parseValue();
+                    normalizedAvas.add( type + '=' + ( hexValue ? value.toLowerCase( Locale.ROOT ) : escapeValue( value.toLowerCase( Locale.ROOT ) ) ) );
+                    if ( firstType == null )
+                    {
+                        firstType = type;
+                        firstValue = value;
+                    }
+
+                    skipSpaces();
+                    if ( position < length && input.charAt( position ) == '+' )
+                    {
+                        position++;
+                        continue;
+                    }
+                    break;
+                }
+
+                final int rdnEnd = trimmedEnd( rdnStart, position );
+                final String normalizedRdn;
+                if ( normalizedAvas.size() == 1 )
+                {
+                    normalizedRdn = normalizedAvas.get( 0 );
+                }
+                else
+                {
+                    final String[] sorted = normalizedAvas.toArray( new String[0] );
+                    Arrays.sort( sorted );
+                    normalizedRdn = String.join( "+", sorted );
+                }
+                rdns.add( new Rdn( firstType, firstValue, normalizedRdn, rdnStart, rdnEnd ) );
+
+                if ( position >= length )
+                {
+                    break;
+                }
+
+                final char separator = input.charAt( position );
+                if ( separator != ',' && separator != ';' )
+                {
+                    throw error( "expected ',' " );
+                }
+                position++;
+            }
+
+            final Rdn[] rdnArray = rdns.toArray( new Rdn[0] );
+            return new ChaiDn( input.substring( rdnArray[0].start ), rdnArray, 0 );
+        }
+
+        private String parseType()
+        {
+            final int start = position;
+            while ( position < length )
+            {
+                final char character = input.charAt( position );
+                if ( ( character >= 'a' && character <= 'z' ) || ( character >= 'A' && character <= 'Z' )
+                        || ( character >= '0' && character <= '9' ) || character == '-' || character == '.' )
+                {
+                    position++;
+                }
+                else
+                {
+                    break;
+                }
+            }
+            if ( position == start )
+            {
+                throw error( "expected attribute type " );
+            }
+
+            final String type = input.substring( start, position ).toLowerCase( Locale.ROOT );
+            return type.startsWith( "oid." ) ? type.substring( 4 ) : type;
+        }
+
+        private String parseValue()
+        {
+            valueBuilder.setLength( 0 );
+            if ( position < length && input.charAt( position ) == '"' )
+            {
+                return parseQuotedValue();
+            }
+
+            // length of the value excluding trailing unescaped spaces.
+            int significantLength = 0;
+            while ( position < length )
+            {
+                final char character = input.charAt( position );
+                if ( character == ',' || character == ';' || character == '+' )
+                {
+                    break;
+                }
+
+                if ( character == '\\' )
+                {
+                    parseEscape();
+                    flushBytesIfNotEscapedHex();
+                    if ( pendingByteCount == 0 )
+                    {
+                        significantLength = valueBuilder.length();
+                    }
+                    continue;
+                }
+
+                if ( character == '"' || character == '<' || character == '>' || character == '=' || character == 0 )
+                {
+                    throw error( "unescaped '" + character + "' " );
+                }
+
+                flushBytes();
+                valueBuilder.append( character );
+                position++;
+                if ( character != ' ' )
+                {
+                    significantLength = valueBuilder.length();
+                }
+            }
+            flushBytes();
+            valueBuilder.setLength( significantLength );
+            return valueBuilder.toString();
+        }
+
+        private String parseQuotedValue()
+        {
+            position++;
+            while ( position < length )
+            {
+                final char character = input.charAt( position );
+                if ( character == '"' )
+                {
+                    position++;
+                    flushBytes();
+                    return valueBuilder.toString();
+                }
+                if ( character == '\\' )
+                {
+                    parseEscape();
+                    flushBytesIfNotEscapedHex();
+                    continue;
+                }
+                flushBytes();
+                valueBuilder.append( character );
+                position++;
+            }
+            throw error( "unterminated quoted value " );
+        }
+
+        private void parseEscape()
+        {
+            position++;
+            if ( position >= length )
+            {
+                throw error( "incomplete escape " );
+            }
+
+            final int high = Character.digit( input.charAt( position ), 16 );
+            if ( high >= 0 && position + 1 < length )
+            {
+                final int low = Character.digit( input.charAt( position + 1 ), 16 );
+                if ( low < 0 )
+                {
+                    throw error( "invalid hex escape " );
+                }
+                if ( pendingByteCount == pendingBytes.length )
+                {
+                    pendingBytes = Arrays.copyOf( pendingBytes, pendingByteCount * 2 );
+                }
+                pendingBytes[pendingByteCount++] = ( byte ) ( ( high << 4 ) | low );
+                position += 2;
+                return;
+            }
+            if ( high >= 0 )
+            {
+                throw error( "invalid hex escape " );
+            }
+
+            flushBytes();
+            valueBuilder.append( input.charAt( position ) );
+            position++;
+        }
+
+        private void flushBytesIfNotEscapedHex()
+        {
+            // hex escaped utf-8 sequences span consecutive escapes, decode once the sequence ends.
+            if ( position + 1 < length && input.charAt( position ) == '\\'
+                    && Character.digit( input.charAt( position + 1 ), 16 ) >= 0 )
+            {
+                return;
+            }
+            flushBytes();
+        }
+
+        private void flushBytes()
+        {
+            if ( pendingByteCount > 0 )
+            {
+                valueBuilder.append( new String( pendingBytes, 0, pendingByteCount, StandardCharsets.UTF_8 ) );
+                pendingByteCount = 0;
+            }
+        }
+
+        private void skipSpaces()
+        {
+            while ( position < length && input.charAt( position ) == ' ' )
+            {
+                position++;
+            }
+        }
+
+        private int trimmedEnd( final int start, final int end )
+        {
+            int trimmed = end;
+            while ( trimmed > start && input.charAt( trimmed - 1 ) == ' ' && !isEscaped( trimmed - 1 ) )
+            {
+                trimmed--;
+            }
+            return trimmed;
+        }
+
+        private boolean isEscaped( final int index )
+        {
+            int backslashes = 0;
+            for ( int i = index - 1; i >= 0 && input.charAt( i ) == '\\'; i-- )
+            {
+                backslashes++;
+            }
+            return ( backslashes & 1 ) != 0;
+        }
+
+        private void expect( final char expected )
+        {
+            if ( position >= length || input.charAt( position ) != expected )
+            {
+                throw error( "expected '" + expected + "' " );
+            }
+            position++;
+        }
+
+        private IllegalArgumentException error( final String message )
+        {
+            return new IllegalArgumentException( message + "at position " + position + " of DN '" + input + "'" );
+        }
+    }
+
+    /**
+     * Escape a value using the minimal RFC 4514 escaping.
+     */
+    static String escapeValue( final String value )
+    {
+        StringBuilder sb = null;
+        final int length = value.length();
+        for ( int i = 0; i < length; i++ )
+        {
+            final char character = value.charAt( i );
+            final boolean escape;
+            switch ( character )
+            {
+                case '"':
+                case '+':
+                case ',':
+                case ';':
+                case '<':
+                case '>':
+                case '\\':
+                    escape = true;
+                    break;
+                case '#':
+                    escape = i == 0;
+                    break;
+                case ' ':
+                    escape = i == 0 || i == length - 1;
+                    break;
+                default:
+                    escape = false;
+            }
+
+            if ( escape || character == 0 )
+            {
+                if ( sb == null )
+                {
+                    sb = new StringBuilder( length + 8 ).append( value, 0, i );
+                }
+                sb.append( '\\' ).append( character == 0 ? "00" : String.valueOf( character ) );
+            }
+            else if ( sb != null )
+            {
+                sb.append( character );
+            }
+        }
+        return sb == null ? value : sb.toString();
+    }
+}
@@ -196,7 +196,8 @@ public final class ChaiUtility
     }
 
     /**
-     * Convert to an LDIF format.  Useful for debugging or other purposes
+     * Convert to an LDIF format.  Useful for debugging or other purposes.  Values that are not safe LDIF strings are
+     * base64 encoded and long lines are folded.  Use {@link SubtreeExporter} to export many entries.
      *
      * @param theEntry A valid {@code ChaiEntry}
      * @return A string containing a properly formatted LDIF view of the entry.
@@ -207,7 +208,7 @@ public final class ChaiUtility
             throws ChaiUnavailableException, ChaiOperationException
     {
         final StringBuilder sb = new StringBuilder();
-        sb.append( "dn: " ).append( theEntry.getEntryDN() ).append( "\n" );
+        LdifWriter.appendDn( sb, theEntry.getEntryDN() );
 
         final Map<String, Map<String, List<String>>> results = theEntry.getChaiProvider().searchMultiValues(
                 theEntry.getEntryDN(),
@@ -223,7 +224,7 @@ public final class ChaiUtility
             final List<String> values = entry.getValue();
             for ( final String value : values )
             {
-                sb.append( attrName ).append( ": " ).append( value ).append( '\n' );
+                LdifWriter.appendAttribute( sb, attrName, value );
             }
         }
 
@@ -464,13 +465,25 @@ public final class ChaiUtility
         final Map<String, Map<String, List<String>>> results = rootDSE.getChaiProvider().searchMultiValues( "", searchHelper );
         if ( results != null && !results.isEmpty() )
         {
-            final Map<String, List<String>> rootDseSearchResults = results.values().iterator().next();
-            for ( final DirectoryVendor directoryVendor : DirectoryVendor.values() )
+            return determineDirectoryVendor( results.values().iterator().next() );
+        }
+
+        return DirectoryVendor.GENERIC;
+    }
+
+    /**
+     * Determines the vendor of a the ldap directory using previously read RootDSE attributes.
+     *
+     * @param rootDseSearchResults attribute values of the Root DSE entry
+     * @return the proper directory vendor, or {@link DirectoryVendor#GENERIC} if the vendor can not be determined.
+     */
+    public static DirectoryVendor determineDirectoryVendor( final Map<String, List<String>> rootDseSearchResults )
+    {
+        for ( final DirectoryVendor directoryVendor : DirectoryVendor.values() )
+        {
+            if ( directoryVendor.getVendorFactory().detectVendorFromRootDSEData( rootDseSearchResults ) )
             {
-                if ( directoryVendor.getVendorFactory().detectVendorFromRootDSEData( rootDseSearchResults ) )
-                {
-                    return directoryVendor;
-                }
+                return directoryVendor;
             }
         }
 
@@ -0,0 +1,838 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.util;
+
+import com.novell.ldapchai.ChaiConstant;
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.impl.VendorFactory;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.SearchScope;
+import com.novell.ldapchai.util.internal.ChaiLogger;
+import com.novell.ldapchai.util.internal.LdapFilter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Expands nested group membership.
+ *
+ * <p>{@link com.novell.ldapchai.ChaiGroup#getMembers()} and {@link com.novell.ldapchai.ChaiUser#getGroups()} only
+ * return direct membership.  This class follows the membership attributes transitively, reading each level of the
+ * hierarchy in parallel and caching the direct membership of every entry it visits, so repeated expansions of
+ * overlapping hierarchies only read entries that are not already cached.  Cycles in the membership graph are
+ * detected and each entry is visited at most once per expansion.</p>
+ *
+ * <p>The entries of a level are read with one search per parent container, matching their RDNs and the presence
+ * of the membership attribute, so only entries that have values, such as nested groups, are returned and leaf
+ * entries such as users cost no operation of their own.  Values returned in ranges are read individually.</p>
+ *
+ * <p>If the directory vendor supports the {@code LDAP_MATCHING_RULE_IN_CHAIN} matching rule (Active Directory),
+ * the complete expansion is instead resolved by the server using a single subtree search, see
+ * {@link Builder#vendorFastPath(boolean)}.</p>
+ *
+ * <p>Instances are thread safe and are intended to be long-lived.  Operations of the calling thread use the
+ * supplied provider, each worker thread uses its own provider created with the factory and configuration of the
+ * supplied provider, so parallel reads are not serialized by a shared connection.  Worker providers are closed by
+ * {@link #close()}.</p>
+ *
+ * <p><b>Example Usage:</b></p>
+ * <pre>
+ * try ( GroupExpander groupExpander = GroupExpander.builder( provider ).threads( 4 ).build() )
+ * {
+ *     Set&lt;String&gt; groups = groupExpander.expandMemberships( "cn=user,ou=people,o=example" );
+ * }
+ * </pre>
+ */
+public final class GroupExpander implements AutoCloseable
+{
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger( GroupExpander.class );
+
+    private static final String MATCHING_RULE_IN_CHAIN = "1.2.840.113556.1.4.1941";
+
+    private static final String ATTR_DEFAULT_NAMING_CONTEXT = "defaultNamingContext";
+
+    private static final String RANGE_OPTION = ";range=";
+
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private enum Direction
+    {
+        MEMBERS,
+        MEMBERSHIPS,
+    }
+
+    private final ChaiProvider provider;
+    private final int threads;
+    private final long cacheTtlNanos;
+    private final String memberAttribute;
+    private final String membershipAttribute;
+    private final boolean fastPath;
+    private final String configuredSearchBase;
+    private final ExpansionCache cache;
+    private final ExecutorService executorService;
+    private final Queue<ChaiProvider> workerProviders = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<ChaiProvider> workerProvider = new ThreadLocal<>();
+
+    private volatile String searchBase;
+    private volatile boolean fastPathFailed;
+
+    private GroupExpander( final Builder builder )
+            throws ChaiUnavailableException
+    {
+        final VendorFactory vendorFactory = builder.provider.getDirectoryVendor().getVendorFactory();
+
+        this.provider = builder.provider;
+        this.threads = Math.max( 1, builder.threads );
+        this.cacheTtlNanos = builder.cacheTtl.toNanos();
+        this.memberAttribute = builder.memberAttribute;
+        this.membershipAttribute = builder.membershipAttribute == null
+                ? vendorFactory.getGroupMembershipAttribute()
+                : builder.membershipAttribute;
+        this.fastPath = builder.vendorFastPath && vendorFactory.supportsMatchingRuleInChain();
+        this.configuredSearchBase = builder.searchBase;
+        this.cache = new ExpansionCache( builder.maxCacheSize );
+        this.executorService = this.threads > 1
+                ? Executors.newFixedThreadPool( this.threads, new ExpanderThreadFactory() )
+                : null;
+    }
+
+    public static Builder builder( final ChaiProvider provider )
+    {
+        return new Builder( provider );
+    }
+
+    /**
+     * Get the transitive members of a group.  Members that are themselves groups are included in the result
+     * along with their own members.
+     *
+     * @param groupDN dn of the group to expand
+     * @return unmodifiable set of member dns, in breadth first order; empty if the group has no members or does not exist
+     * @throws ChaiOperationException   If an error is encountered reading the directory
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     */
+    public Set<String> expandMembers( final String groupDN )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return expand( groupDN, Direction.MEMBERS, null );
+    }
+
+    /**
+     * Get the transitive group memberships of an entry, including the groups of which it is a member through
+     * nested groups.
+     *
+     * @param entryDN dn of a user or group
+     * @return unmodifiable set of group dns, in breadth first order; empty if the entry has no memberships or does not exist
+     * @throws ChaiOperationException   If an error is encountered reading the directory
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     */
+    public Set<String> expandMemberships( final String entryDN )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return expand( entryDN, Direction.MEMBERSHIPS, null );
+    }
+
+    /**
+     * Test if an entry is a member of a group, directly or through nested groups.  The breadth first expansion
+     * of the entry's memberships stops as soon as the group is reached, so groups beyond the level at which the
+     * group is found are not read.
+     *
+     * @param entryDN dn of a user or group
+     * @param groupDN dn of the group
+     * @return true if the entry is a transitive member of the group
+     * @throws ChaiOperationException   If an error is encountered reading the directory
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     */
+    public boolean isMemberOf( final String entryDN, final String groupDN )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        if ( groupDN == null || groupDN.isEmpty() )
+        {
+            throw new NullPointerException( "groupDN must not be null or empty" );
+        }
+
+        final String normalizedGroupDN = ChaiDn.normalize( groupDN );
+        for ( final String membershipDN : expand( entryDN, Direction.MEMBERSHIPS, normalizedGroupDN ) )
+        {
+            if ( normalizedGroupDN.equals( ChaiDn.normalize( membershipDN ) ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove any cached membership data of an entry.  Expansions already cached for other entries that
+     * pass through this entry are only invalidated if they were resolved using the vendor fast path,
+     * otherwise they are recomputed from the direct membership of each entry.
+     *
+     * @param entryDN dn of a modified entry
+     */
+    public void invalidate( final String entryDN )
+    {
+        final String normalizedDN = ChaiDn.normalize( entryDN );
+        for ( final Direction direction : Direction.values() )
+        {
+            cache.remove( cacheKey( direction, false, normalizedDN ) );
+            cache.remove( cacheKey( direction, true, normalizedDN ) );
+        }
+        if ( fastPath )
+        {
+            cache.removeTransitive();
+        }
+    }
+
+    public void invalidateAll()
+    {
+        cache.clear();
+    }
+
+    @Override
+    public void close()
+    {
+        if ( executorService != null )
+        {
+            executorService.shutdownNow();
+        }
+        for ( final ChaiProvider chaiProvider : workerProviders )
+        {
+            chaiProvider.close();
+        }
+        workerProviders.clear();
+        cache.clear();
+    }
+
+    /**
+     * Expand an entry.  If a target dn is given, the breadth first expansion ends once the target is reached and
+     * the result is incomplete.
+     */
+    private Set<String> expand( final String startDN, final Direction direction, final String normalizedTargetDN )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        if ( startDN == null || startDN.isEmpty() )
+        {
+            throw new NullPointerException( "entryDN must not be null or empty" );
+        }
+
+        if ( fastPath && !fastPathFailed )
+        {
+            final Set<String> fastPathResult = expandUsingMatchingRule( startDN, direction );
+            if ( fastPathResult != null )
+            {
+                return fastPathResult;
+            }
+        }
+
+        return expandBreadthFirst( startDN, direction, normalizedTargetDN );
+    }
+
+    private Set<String> expandBreadthFirst( final String startDN, final Direction direction, final String normalizedTargetDN )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final String startNormalized = ChaiDn.normalize( startDN );
+        final Set<String> visited = new HashSet<>();
+        visited.add( startNormalized );
+
+        final Set<String> results = new LinkedHashSet<>();
+        List<String> currentLevel = Collections.singletonList( startDN );
+        int depth = 0;
+
+        while ( !currentLevel.isEmpty() )
+        {
+            final Map<String, Set<String>> levelValues = readLevel( currentLevel, direction );
+            final List<String> nextLevel = new ArrayList<>();
+
+            for ( final String dn : currentLevel )
+            {
+                for ( final String value : levelValues.get( dn ) )
+                {
+                    final String normalizedValue = ChaiDn.normalize( value );
+                    if ( visited.add( normalizedValue ) )
+                    {
+                        results.add( value );
+                        nextLevel.add( value );
+                        if ( normalizedValue.equals( normalizedTargetDN ) )
+                        {
+                            final int targetDepth = depth;
+                            LOGGER.trace( () -> "reached '" + value + "' at depth " + targetDepth + " while expanding "
+                                    + direction + " of '" + startDN + "'" );
+                            return Collections.unmodifiableSet( results );
+                        }
+                    }
+                    else
+                    {
+                        final int cycleDepth = depth;
+                        LOGGER.trace( () -> "skipping previously visited entry '" + value + "' referenced by '" + dn
+                                + "' at depth " + cycleDepth + " while expanding " + direction + " of '" + startDN + "'" );
+                    }
+                }
+            }
+
+            currentLevel = nextLevel;
+            depth++;
+        }
+
+        final int finalDepth = depth;
+        LOGGER.trace( () -> "expanded " + direction + " of '" + startDN + "', " + results.size()
+                + " entries, depth " + finalDepth );
+        return Collections.unmodifiableSet( results );
+    }
+
+    /**
+     * Read the direct membership values of all entries in a level of the traversal, using the cache where
+     * possible and the worker pool for the remaining batches.
+     */
+    private Map<String, Set<String>> readLevel( final List<String> levelDNs, final Direction direction )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final Map<String, Set<String>> results = new HashMap<>();
+        final List<String> uncachedDNs = new ArrayList<>();
+
+        for ( final String dn : levelDNs )
+        {
+            final Set<String> cachedValues = cache.get( cacheKey( direction, false, ChaiDn.normalize( dn ) ) );
+            if ( cachedValues != null )
+            {
+                results.put( dn, cachedValues );
+            }
+            else
+            {
+                uncachedDNs.add( dn );
+            }
+        }
+
+        final List<List<String>> batches = batches( uncachedDNs );
+        if ( executorService == null || batches.size() < 2 )
+        {
+            for ( final List<String> batch : batches )
+            {
+                results.putAll( readBatch( provider, batch, direction ) );
+            }
+            return results;
+        }
+
+        final List<Future<Map<String, Set<String>>>> futures = new ArrayList<>();
+        for ( final List<String> batch : batches )
+        {
+            futures.add( executorService.submit( () -> readBatch( providerForWorker(), batch, direction ) ) );
+        }
+
+        try
+        {
+            for ( final Future<Map<String, Set<String>>> future : futures )
+            {
+                results.putAll( future.get() );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new ChaiOperationException( "interrupted while expanding group membership", ChaiError.UNKNOWN );
+        }
+        catch ( ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            if ( cause instanceof ChaiOperationException )
+            {
+                throw ( ChaiOperationException ) cause;
+            }
+            if ( cause instanceof ChaiUnavailableException )
+            {
+                throw ( ChaiUnavailableException ) cause;
+            }
+            throw new IllegalStateException( "unexpected error expanding group membership: " + cause.getMessage(), cause );
+        }
+        finally
+        {
+            for ( final Future<Map<String, Set<String>>> future : futures )
+            {
+                future.cancel( true );
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Group entries by parent container, in batches of at most {@link #MAX_BATCH_SIZE} entries.  Entries that
+     * can not be searched by their RDN, such as entries directly below the root, are placed in batches of their own.
+     */
+    private static List<List<String>> batches( final List<String> dns )
+    {
+        final List<List<String>> batches = new ArrayList<>();
+        final Map<String, List<String>> parentBatches = new LinkedHashMap<>();
+        for ( final String dn : dns )
+        {
+            final ChaiDn parsedDN = ChaiDn.isValid( dn ) ? ChaiDn.parse( dn ) : null;
+            final ChaiDn parent = parsedDN == null || parsedDN.isRoot() ? null : parsedDN.getParent();
+            if ( parent == null || parent.isRoot() )
+            {
+                batches.add( Collections.singletonList( dn ) );
+                continue;
+            }
+
+            final String parentKey = parent.toNormalizedString();
+            final List<String> batch = parentBatches.computeIfAbsent( parentKey, k -> new ArrayList<>() );
+            batch.add( dn );
+            if ( batch.size() >= MAX_BATCH_SIZE )
+            {
+                batches.add( batch );
+                parentBatches.remove( parentKey );
+            }
+        }
+        batches.addAll( parentBatches.values() );
+        return batches;
+    }
+
+    /**
+     * Read the direct membership values of entries sharing a parent using a single one level search.  Entries
+     * not returned by the search have no values.
+     */
+    private Map<String, Set<String>> readBatch( final ChaiProvider chaiProvider, final List<String> batchDNs, final Direction direction )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final Map<String, Set<String>> results = new HashMap<>();
+        if ( batchDNs.size() == 1 )
+        {
+            final String dn = batchDNs.get( 0 );
+            results.put( dn, readDirect( chaiProvider, dn, direction ) );
+            return results;
+        }
+
+        final String attribute = direction == Direction.MEMBERS ? memberAttribute : membershipAttribute;
+        final ChaiDn parent = ChaiDn.parse( batchDNs.get( 0 ) ).getParent();
+        final List<SearchFilter> rdnFilters = new ArrayList<>( batchDNs.size() );
+        for ( final String dn : batchDNs )
+        {
+            final ChaiDn parsedDN = ChaiDn.parse( dn );
+            rdnFilters.add( SearchFilter.equal( parsedDN.getRdnType(), parsedDN.getRdnValue() ) );
+        }
+        final SearchHelper searchHelper = new SearchHelper( SearchFilter.and( SearchFilter.present( attribute ), SearchFilter.or( rdnFilters ) ), SearchScope.ONE );
+        searchHelper.setAttributes( attribute );
+
+        final Map<String, Map<String, List<String>>> searchResults = new HashMap<>();
+        try
+        {
+            for ( final Map.Entry<String, Map<String, List<String>>> entry : chaiProvider.searchMultiValues( parent.toString(), searchHelper ).entrySet() )
+            {
+                searchResults.put( ChaiDn.normalize( entry.getKey() ), entry.getValue() );
+            }
+        }
+        catch ( ChaiOperationException e )
+        {
+            if ( e.getErrorCode() != ChaiError.NO_SUCH_ENTRY )
+            {
+                LOGGER.debug( () -> "unable to search " + attribute + " values below '" + parent + "', reading entries individually: " + e.getMessage() );
+                for ( final String dn : batchDNs )
+                {
+                    results.put( dn, readDirect( chaiProvider, dn, direction ) );
+                }
+                return results;
+            }
+        }
+
+        for ( final String dn : batchDNs )
+        {
+            final Map<String, List<String>> entryValues = searchResults.get( ChaiDn.normalize( dn ) );
+            final Set<String> values;
+            if ( entryValues == null )
+            {
+                values = Collections.emptySet();
+            }
+            else if ( isRanged( entryValues, attribute ) )
+            {
+                results.put( dn, readDirect( chaiProvider, dn, direction ) );
+                continue;
+            }
+            else
+            {
+                final List<String> attributeValues = new LdapAttributeMap<>( entryValues ).get( attribute );
+                values = attributeValues == null ? Collections.emptySet() : new LinkedHashSet<>( attributeValues );
+            }
+            results.put( dn, cacheDirect( dn, direction, values ) );
+        }
+        return results;
+    }
+
+    private static boolean isRanged( final Map<String, List<String>> entryValues, final String attribute )
+    {
+        final String rangedPrefix = ( attribute + RANGE_OPTION ).toLowerCase( Locale.ROOT );
+        for ( final String key : entryValues.keySet() )
+        {
+            if ( key.toLowerCase( Locale.ROOT ).startsWith( rangedPrefix ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Set<String> readDirect( final ChaiProvider chaiProvider, final String dn, final Direction direction )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final String attribute = direction == Direction.MEMBERS ? memberAttribute : membershipAttribute;
+        Set<String> values;
+        try
+        {
+            values = chaiProvider.readMultiStringAttribute( dn, attribute );
+        }
+        catch ( ChaiOperationException e )
+        {
+            if ( e.getErrorCode() != ChaiError.NO_SUCH_ENTRY )
+            {
+                throw e;
+            }
+            LOGGER.debug( () -> "referenced entry '" + dn + "' does not exist, treating as having no " + attribute + " values" );
+            values = null;
+        }
+
+        return cacheDirect( dn, direction, values );
+    }
+
+    private Set<String> cacheDirect( final String dn, final Direction direction, final Set<String> values )
+    {
+        final Set<String> result = values == null || values.isEmpty()
+                ? Collections.emptySet()
+                : Collections.unmodifiableSet( new LinkedHashSet<>( values ) );
+        cache.put( cacheKey( direction, false, ChaiDn.normalize( dn ) ), result, cacheTtlNanos );
+        return result;
+    }
+
+    private ChaiProvider providerForWorker()
+            throws ChaiUnavailableException
+    {
+        ChaiProvider chaiProvider = workerProvider.get();
+        if ( chaiProvider == null )
+        {
+            chaiProvider = provider.getProviderFactory().newProvider( provider.getChaiConfiguration() );
+            workerProviders.add( chaiProvider );
+            workerProvider.set( chaiProvider );
+        }
+        return chaiProvider;
+    }
+
+    /**
+     * Resolve the expansion using a single {@code LDAP_MATCHING_RULE_IN_CHAIN} search.
+     *
+     * @return the expansion, or null if the search could not be performed and the breadth first expansion should be used
+     */
+    private Set<String> expandUsingMatchingRule( final String startDN, final Direction direction )
+            throws ChaiUnavailableException
+    {
+        final String key = cacheKey( direction, true, ChaiDn.normalize( startDN ) );
+        final Set<String> cachedValues = cache.get( key );
+        if ( cachedValues != null )
+        {
+            return cachedValues;
+        }
+
+        final String base = resolveSearchBase();
+        if ( base == null )
+        {
+            return null;
+        }
+
+        final String filterAttribute = direction == Direction.MEMBERS ? ChaiConstant.ATTR_LDAP_MEMBER_OF : memberAttribute;
+        final String filter = "(" + filterAttribute + ":" + MATCHING_RULE_IN_CHAIN + ":="
+                + LdapFilter.escapeValue( startDN ) + ")";
+
+        try
+        {
+            final Set<String> searchResults = provider.search( base, filter, Collections.emptySet(), SearchScope.SUBTREE ).keySet();
+            final String startNormalized = ChaiDn.normalize( startDN );
+            final Set<String> results = new LinkedHashSet<>();
+            for ( final String dn : searchResults )
+            {
+                if ( !startNormalized.equals( ChaiDn.normalize( dn ) ) )
+                {
+                    results.add( dn );
+                }
+            }
+            final Set<String> result = Collections.unmodifiableSet( results );
+            cache.put( key, result, cacheTtlNanos );
+            return result;
+        }
+        catch ( ChaiOperationException e )
+        {
+            // only a server that does not support the matching rule disables the fast path, other errors may be transient.
+            if ( e.getErrorCode() == ChaiError.UNSUPPORTED_OPERATION )
+            {
+                fastPathFailed = true;
+            }
+            LOGGER.debug( () -> "matching rule in chain search failed, using breadth first expansion: " + e.getMessage() );
+            return null;
+        }
+    }
+
+    private String resolveSearchBase()
+            throws ChaiUnavailableException
+    {
+        if ( configuredSearchBase != null )
+        {
+            return configuredSearchBase;
+        }
+
+        if ( searchBase == null )
+        {
+            try
+            {
+                final String namingContext = provider.readStringAttribute( "", ATTR_DEFAULT_NAMING_CONTEXT );
+                searchBase = namingContext == null || namingContext.isEmpty() ? "" : namingContext;
+            }
+            catch ( ChaiOperationException e )
+            {
+                // retried by the next expansion
+                LOGGER.debug( () -> "unable to read " + ATTR_DEFAULT_NAMING_CONTEXT + " from rootDSE: " + e.getMessage() );
+                return null;
+            }
+        }
+
+        if ( searchBase.isEmpty() )
+        {
+            fastPathFailed = true;
+            return null;
+        }
+        return searchBase;
+    }
+
+    private static String cacheKey( final Direction direction, final boolean transitive, final String normalizedDN )
+    {
+        return ( transitive ? "t" : "d" ) + direction.ordinal() + "|" + normalizedDN;
+    }
+
+    /**
+     * Bounded, least recently used cache of membership values with a per-entry expiration.
+     */
+    private static class ExpansionCache
+    {
+        private final int maxSize;
+        private final LinkedHashMap<String, CacheEntry> map;
+
+        ExpansionCache( final int maxSize )
+        {
+            this.maxSize = maxSize;
+            this.map = new LinkedHashMap<String, CacheEntry>( 16, 0.75f, true )
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry( final Map.Entry<String, CacheEntry> eldest )
+                {
+                    return size() > ExpansionCache.this.maxSize;
+                }
+            };
+        }
+
+        synchronized Set<String> get( final String key )
+        {
+            final CacheEntry cacheEntry = map.get( key );
+            if ( cacheEntry == null )
+            {
+                return null;
+            }
+            if ( System.nanoTime() - cacheEntry.expiration > 0 )
+            {
+                map.remove( key );
+                return null;
+            }
+            return cacheEntry.values;
+        }
+
+        synchronized void put( final String key, final Set<String> values, final long ttlNanos )
+        {
+            if ( ttlNanos > 0 && maxSize > 0 )
+            {
+                map.put( key, new CacheEntry( values, System.nanoTime() + ttlNanos ) );
+            }
+        }
+
+        synchronized void remove( final String key )
+        {
+            map.remove( key );
+        }
+
+        synchronized void removeTransitive()
+        {
+            map.keySet().removeIf( key -> key.charAt( 0 ) == 't' );
+        }
+
+        synchronized void clear()
+        {
+            map.clear();
+        }
+    }
+
+    private static class CacheEntry
+    {
+        private final Set<String> values;
+        private final long expiration;
+
+        CacheEntry( final Set<String> values, final long expiration )
+        {
+            this.values = values;
+            this.expiration = expiration;
+        }
+    }
+
+    private static class ExpanderThreadFactory implements ThreadFactory
+    {
+        private final ThreadFactory realThreadFactory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread( final Runnable runnable )
+        {
+            final Thread thread = realThreadFactory.newThread( runnable );
+            thread.setDaemon( true );
+            thread.setName( "ldapchai-groupexpander-" + thread.getName() );
+            return thread;
+        }
+    }
+
+    public static class Builder
+    {
+        private final ChaiProvider provider;
+        private int threads = 8;
+        private int maxCacheSize = 10_000;
+        private Duration cacheTtl = Duration.ofMinutes( 5 );
+        private String memberAttribute = ChaiConstant.ATTR_LDAP_MEMBER;
+        private String membershipAttribute;
+        private boolean vendorFastPath = true;
+        private String searchBase;
+
+        Builder( final ChaiProvider provider )
+        {
+            this.provider = provider;
+        }
+
+        /**
+         * Maximum number of batches of a single level of the hierarchy that are read in parallel.  Each worker
+         * thread uses its own provider.
+         *
+         * @param threads worker thread count, 1 reads all entries on the calling thread
+         * @return this builder
+         */
+        public Builder threads( final int threads )
+        {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Maximum number of entries held in the cache.  Each cached entry is the direct membership of a single
+         * entry, or the complete expansion of an entry resolved using the vendor fast path.
+         *
+         * @param maxCacheSize maximum cache entries, 0 disables caching
+         * @return this builder
+         */
+        public Builder maxCacheSize( final int maxCacheSize )
+        {
+            this.maxCacheSize = maxCacheSize;
+            return this;
+        }
+
+        /**
+         * Duration cached membership values remain valid.
+         *
+         * @param cacheTtl time to live of cached values, {@link Duration#ZERO} disables caching
+         * @return this builder
+         */
+        public Builder cacheTtl( final Duration cacheTtl )
+        {
+            this.cacheTtl = cacheTtl == null ? Duration.ZERO : cacheTtl;
+            return this;
+        }
+
+        /**
+         * Attribute of a group listing its direct members, {@code member} by default.
+         *
+         * @param memberAttribute attribute name
+         * @return this builder
+         */
+        public Builder memberAttribute( final String memberAttribute )
+        {
+            this.memberAttribute = memberAttribute;
+            return this;
+        }
+
+        /**
+         * Attribute of an entry listing the groups it is a direct member of.  By default the attribute
+         * used by the directory vendor, such as {@code memberOf} or {@code groupMembership}.
+         *
+         * @param membershipAttribute attribute name
+         * @return this builder
+         */
+        public Builder membershipAttribute( final String membershipAttribute )
+        {
+            this.membershipAttribute = membershipAttribute;
+            return this;
+        }
+
+        /**
+         * If true (the default) and the directory supports the {@code LDAP_MATCHING_RULE_IN_CHAIN} matching rule,
+         * expansions are resolved by a single subtree search of the {@link #searchBase(String)}.  If the
+         * search fails, the breadth first expansion is used for the remaining lifetime of the instance.
+         *
+         * @param vendorFastPath use the vendor fast path where supported
+         * @return this builder
+         */
+        public Builder vendorFastPath( final boolean vendorFastPath )
+        {
+            this.vendorFastPath = vendorFastPath;
+            return this;
+        }
+
+        /**
+         * Base of the searches performed by the vendor fast path.  By default the {@code defaultNamingContext}
+         * of the rootDSE.
+         *
+         * @param searchBase search base dn
+         * @return this builder
+         */
+        public Builder searchBase( final String searchBase )
+        {
+            this.searchBase = searchBase;
+            return this;
+        }
+
+        public GroupExpander build()
+                throws ChaiUnavailableException
+        {
+            return new GroupExpander( this );
+        }
+    }
+}
@@ -0,0 +1,484 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code Map} keyed by LDAP attribute names, where keys are compared without regard to case.  Returned by
+ * the providers for attribute results, so {@code map.get( "givenName" )} finds a {@code givenname} value
+ * returned by the server.
+ *
+ * <p>Entries are held in insertion ordered arrays, with an open addressing index of case-folded key hashes.
+ * The spelling of the first key put for an attribute is retained.  Attribute names are interned in a bounded,
+ * process wide pool so the many maps of a large search result share name instances.</p>
+ *
+ * <p>Like {@link java.util.TreeMap} with {@link String#CASE_INSENSITIVE_ORDER}, {@code equals()} against maps
+ * with case-sensitive keys is only symmetric when the key sets are spelled the same.  Null keys are not permitted,
+ * null values are.  This class is not thread safe.</p>
+ *
+ * @param <V> value type
+ */
+public final class LdapAttributeMap<V> extends AbstractMap<String, V> implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final int EMPTY_SLOT = -1;
+    private static final int DELETED_SLOT = -2;
+    private static final int MAX_INTERNED_NAMES = 10_000;
+
+    private static final Map<String, String> INTERNED_NAMES = new ConcurrentHashMap<>();
+
+    private String[] keys;
+    private Object[] values;
+    private int[] hashes;
+    private int[] slots;
+
+    // number of used positions in the entry arrays, including removed entries.
+    private int entryCount;
+    private int size;
+    private int modCount;
+
+    private transient Set<Entry<String, V>> entrySet;
+
+    public LdapAttributeMap()
+    {
+        this( DEFAULT_CAPACITY );
+    }
+
+    /**
+     * Create a map able to hold the expected number of attributes without resizing.
+     *
+     * @param expectedSize expected number of attributes
+     */
+    public LdapAttributeMap( final int expectedSize )
+    {
+        if ( expectedSize < 0 )
+        {
+            throw new IllegalArgumentException( "expectedSize must not be negative" );
+        }
+        allocate( Math.max( expectedSize, 1 ) );
+    }
+
+    public LdapAttributeMap( final Map<String, ? extends V> map )
+    {
+        this( map.size() );
+        putAll( map );
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey( final Object key )
+    {
+        return key instanceof String && findEntry( ( String ) key ) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public V get( final Object key )
+    {
+        final int entry = key instanceof String ? findEntry( ( String ) key ) : -1;
+        return entry < 0 ? null : ( V ) values[entry];
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public V put( final String key, final V value )
+    {
+        Objects.requireNonNull( key, "key must not be null" );
+
+        final int hash = foldedHash( key );
+        final int existing = findEntry( key, hash );
+        if ( existing >= 0 )
+        {
+            final V previous = ( V ) values[existing];
+            values[existing] = value;
+            return previous;
+        }
+
+        if ( entryCount == keys.length )
+        {
+            // compact removed entries, or grow when the arrays are mostly live.
+            resize( size >= keys.length / 2 ? keys.length * 2 : keys.length );
+        }
+
+        final int entry = entryCount++;
+        keys[entry] = intern( key );
+        values[entry] = value;
+        hashes[entry] = hash;
+        insertSlot( hash, entry );
+        size++;
+        modCount++;
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public V remove( final Object key )
+    {
+        if ( !( key instanceof String ) )
+        {
+            return null;
+        }
+
+        final String stringKey = ( String ) key;
+        final int hash = foldedHash( stringKey );
+        final int mask = slots.length - 1;
+        for ( int slot = hash & mask; slots[slot] != EMPTY_SLOT; slot = ( slot + 1 ) & mask )
+        {
+            final int entry = slots[slot];
+            if ( entry >= 0 && hashes[entry] == hash && keys[entry].equalsIgnoreCase( stringKey ) )
+            {
+                final V previous = ( V ) values[entry];
+                slots[slot] = DELETED_SLOT;
+                removeEntry( entry );
+                return previous;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void clear()
+    {
+        Arrays.fill( keys, 0, entryCount, null );
+        Arrays.fill( values, 0, entryCount, null );
+        Arrays.fill( slots, EMPTY_SLOT );
+        entryCount = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet()
+    {
+        if ( entrySet == null )
+        {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private int findEntry( final String key )
+    {
+        return findEntry( key, foldedHash( key ) );
+    }
+
+    private int findEntry( final String key, final int hash )
+    {
+        final int mask = slots.length - 1;
+        for ( int slot = hash & mask; slots[slot] != EMPTY_SLOT; slot = ( slot + 1 ) & mask )
+        {
+            final int entry = slots[slot];
+            if ( entry >= 0 && hashes[entry] == hash && keys[entry].equalsIgnoreCase( key ) )
+            {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private void removeEntry( final int entry )
+    {
+        keys[entry] = null;
+        values[entry] = null;
+        size--;
+        modCount++;
+    }
+
+    private void removeEntryAndSlot( final int entry )
+    {
+        final int mask = slots.length - 1;
+        for ( int slot = hashes[entry] & mask; slots[slot] != EMPTY_SLOT; slot = ( slot + 1 ) & mask )
+        {
+            if ( slots[slot] == entry )
+            {
+                slots[slot] = DELETED_SLOT;
+                break;
+            }
+        }
+        removeEntry( entry );
+    }
+
+    private void insertSlot( final int hash, final int entry )
+    {
+        final int mask = slots.length - 1;
+        int slot = hash & mask;
+        while ( slots[slot] >= 0 )
+        {
+            slot = ( slot + 1 ) & mask;
+        }
+        slots[slot] = entry;
+    }
+
+    private void allocate( final int entryCapacity )
+    {
+        keys = new String[entryCapacity];
+        values = new Object[entryCapacity];
+        hashes = new int[entryCapacity];
+
+        // keep the index at most half full so probe sequences stay short.
+        int slotCapacity = Integer.highestOneBit( entryCapacity ) << 1;
+        if ( slotCapacity < entryCapacity * 2 )
+        {
+            slotCapacity <<= 1;
+        }
+        slots = new int[slotCapacity];
+        Arrays.fill( slots, EMPTY_SLOT );
+    }
+
+    private void resize( final int entryCapacity )
+    {
+        final String[] oldKeys = keys;
+        final Object[] oldValues = values;
+        final int[] oldHashes = hashes;
+        final int oldEntryCount = entryCount;
+
+        allocate( entryCapacity );
+        entryCount = 0;
+        for ( int i = 0; i < oldEntryCount; i++ )
+        {
+            if ( oldKeys[i] != null )
+            {
+                keys[entryCount] = oldKeys[i];
+                values[entryCount] = oldValues[i];
+                hashes[entryCount] = oldHashes[i];
+                insertSlot( oldHashes[i], entryCount );
+                entryCount++;
+            }
+        }
+        modCount++;
+    }
+
+    /**
+     * Hash of the case-folded key, consistent with {@link String#equalsIgnoreCase(String)}.  Attribute names are
+     * almost always ASCII, so non-ASCII characters take the slower path.
+     */
+    static int foldedHash( final String key )
+    {
+        int hash = 0;
+        final int length = key.length();
+        for ( int i = 0; i < length; i++ )
+        {
+            char character = key.charAt( i );
+            if ( character >= 'A' && character <= 'Z' )
+            {
+                character += 'a' - 'A';
+            }
+            else if ( character >= 0x80 )
+            {
+                character = Character.toLowerCase( Character.toUpperCase( character ) );
+            }
+            hash = 31 * hash + character;
+        }
+        return hash ^ ( hash >>> 16 );
+    }
+
+    private static String intern( final String name )
+    {
+        final String existing = INTERNED_NAMES.get( name );
+        if ( existing != null )
+        {
+            return existing;
+        }
+
+        // attribute names are a small set in practice, the limit protects against unusual or hostile data.
+        if ( INTERNED_NAMES.size() < MAX_INTERNED_NAMES )
+        {
+            final String previous = INTERNED_NAMES.putIfAbsent( name, name );
+            return previous == null ? name : previous;
+        }
+        return name;
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String, V>>
+    {
+        @Override
+        public Iterator<Entry<String, V>> iterator()
+        {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        public void clear()
+        {
+            LdapAttributeMap.this.clear();
+        }
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, V>>
+    {
+        private int nextEntry;
+        private int lastEntry = -1;
+        private int expectedModCount = modCount;
+
+        EntryIterator()
+        {
+            advance();
+        }
+
+        private void advance()
+        {
+            while ( nextEntry < entryCount && keys[nextEntry] == null )
+            {
+                nextEntry++;
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return nextEntry < entryCount;
+        }
+
+        @Override
+        public Entry<String, V> next()
+        {
+            if ( modCount != expectedModCount )
+            {
+                throw new ConcurrentModificationException();
+            }
+            if ( nextEntry >= entryCount )
+            {
+                throw new NoSuchElementException();
+            }
+            lastEntry = nextEntry++;
+            advance();
+            return new MapEntry( lastEntry );
+        }
+
+        @Override
+        public void remove()
+        {
+            if ( lastEntry < 0 )
+            {
+                throw new IllegalStateException();
+            }
+            if ( modCount != expectedModCount )
+            {
+                throw new ConcurrentModificationException();
+            }
+            removeEntryAndSlot( lastEntry );
+            lastEntry = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    private class MapEntry implements Entry<String, V>
+    {
+        private final String key;
+        private int entry;
+
+        MapEntry( final int entry )
+        {
+            this.entry = entry;
+            this.key = keys[entry];
+        }
+
+        /**
+         * Position of the key in the entry arrays, looked up again if the arrays have been compacted or resized
+         * since this entry was returned.
+         *
+         * @return the position, or -1 if the key has been removed from the map
+         */
+        private int currentEntry()
+        {
+            if ( entry < 0 || entry >= entryCount || keys[entry] != key )
+            {
+                entry = findEntry( key );
+            }
+            return entry;
+        }
+
+        @Override
+        public String getKey()
+        {
+            return key;
+        }
+
+        @Override
+        @SuppressWarnings( "unchecked" )
+        public V getValue()
+        {
+            final int currentEntry = currentEntry();
+            return currentEntry < 0 ? null : ( V ) values[currentEntry];
+        }
+
+        @Override
+        @SuppressWarnings( "unchecked" )
+        public V setValue( final V value )
+        {
+            final int currentEntry = currentEntry();
+            if ( currentEntry < 0 )
+            {
+                throw new IllegalStateException( "entry has been removed" );
+            }
+            final V previous = ( V ) values[currentEntry];
+            values[currentEntry] = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals( final Object other )
+        {
+            if ( !( other instanceof Entry ) )
+            {
+                return false;
+            }
+            final Entry<?, ?> otherEntry = ( Entry<?, ?> ) other;
+            return key.equals( otherEntry.getKey() ) && Objects.equals( getValue(), otherEntry.getValue() );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return key.hashCode() ^ Objects.hashCode( getValue() );
+        }
+
+        @Override
+        public String toString()
+        {
+            return key + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,1173 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import com.novell.ldapchai.ChaiConstant;
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiException;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.AttributeSchema;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderImplementor;
+import com.novell.ldapchai.util.internal.ChaiLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Bulk import of RFC 2849 LDIF content and change records.
+ *
+ * <p>The LDIF input is streamed; only records that are queued or waiting for their parent entry are held in memory.
+ * Records are applied by a pool of workers, each using its own connection by default.  A record is not started
+ * until any earlier record for the same entry or for its parent entry has completed, so parent entries are always
+ * created before their children.  Add records that fail because their parent does not yet exist, which happens when
+ * the LDIF contains children before their parents, are retried after the remainder of the input has been processed.
+ * Delete and rename records are applied only once all earlier records have completed.</p>
+ *
+ * <p>Each directory operation that fails with a retryable error, as determined by
+ * {@link ChaiProviderImplementor#errorIsRetryable(Exception)}, is retried with an exponential back off.</p>
+ *
+ * <p>If a checkpoint file is configured, the number of leading records that have been completely processed is
+ * periodically written to the file.  A later import of the same LDIF using the same checkpoint file skips those
+ * records.  The checkpoint lags behind the actual progress, so records following the checkpoint may be applied a
+ * second time when resuming.  The checkpoint file is removed when an import completes.</p>
+ *
+ * <p>Add records are applied as a single create operation containing the first value of each attribute, followed
+ * by a modify replacing the values of each attribute with additional values and of each binary attribute.  If the
+ * create fails when resuming from a checkpoint, or after a retried attempt may have reached the server, and the
+ * entry exists, the values of every attribute of the record are replaced instead, so an add that was applied
+ * completely or partially by an earlier attempt is completed rather than failed.  Modify, delete and rename records
+ * are not checked in this way.  Consecutive single
+ * valued add or replace modifications of a modify record are combined into a single modify operation.  Rename
+ * records always delete the old RDN value.</p>
+ *
+ * <p><b>Example Usage:</b></p>
+ * <pre>
+ * LdifImporter.ImportResult result = LdifImporter.builder( provider )
+ *     .connections( 8 )
+ *     .checkpointFile( Paths.get( "tenant.ldif.checkpoint" ) )
+ *     .build()
+ *     .importLdif( Paths.get( "tenant.ldif.gz" ) );
+ * System.out.println( result );
+ * </pre>
+ */
+public final class LdifImporter
+{
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger( LdifImporter.class );
+
+    private static final int QUEUED_RECORDS_PER_CONNECTION = 64;
+
+    private static final int MAX_QUEUED_RECORDS = 10_000;
+
+    private static final int MAX_REPORTED_FAILURES = 100;
+
+    private static final String CHECKPOINT_PROPERTY = "recordsCompleted";
+
+    private final ChaiProvider provider;
+    private final int connections;
+    private final boolean connectionPerWorker;
+    private final int maxRetries;
+    private final Duration retryDelay;
+    private final Path checkpointFile;
+    private final int checkpointInterval;
+    private final boolean continueOnError;
+
+    private LdifImporter( final Builder builder )
+    {
+        this.provider = builder.provider;
+        this.connections = builder.connections;
+        this.connectionPerWorker = builder.connectionPerWorker;
+        this.maxRetries = builder.maxRetries;
+        this.retryDelay = builder.retryDelay;
+        this.checkpointFile = builder.checkpointFile;
+        this.checkpointInterval = builder.checkpointInterval;
+        this.continueOnError = builder.continueOnError;
+    }
+
+    public static Builder builder( final ChaiProvider provider )
+    {
+        return new Builder( provider );
+    }
+
+    /**
+     * Import an LDIF file.  Files with a name ending in {@code .gz} are decompressed.
+     *
+     * @param ldifFile the LDIF file, encoded as UTF-8
+     * @return statistics of the import
+     * @throws ChaiOperationException   If a record could not be applied and continue on error is not enabled
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     * @throws IOException              If the file can not be read or is not valid LDIF, or the checkpoint file can not be written
+     */
+    public ImportResult importLdif( final Path ldifFile )
+            throws ChaiOperationException, ChaiUnavailableException, IOException
+    {
+        final boolean gzip = String.valueOf( ldifFile.getFileName() ).endsWith( ".gz" );
+        try ( InputStream fileStream = Files.newInputStream( ldifFile );
+              InputStream inputStream = gzip ? new GZIPInputStream( fileStream, 64 * 1024 ) : fileStream;
+              Reader reader = new InputStreamReader( inputStream, StandardCharsets.UTF_8 ) )
+        {
+            return importLdif( reader );
+        }
+    }
+
+    /**
+     * Import LDIF from a reader.  The reader is not closed.
+     *
+     * @param reader source of LDIF text
+     * @return statistics of the import
+     * @throws ChaiOperationException   If a record could not be applied and continue on error is not enabled
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     * @throws IOException              If the input is not valid LDIF, or the checkpoint file can not be written
+     */
+    public ImportResult importLdif( final Reader reader )
+            throws ChaiOperationException, ChaiUnavailableException, IOException
+    {
+        final Instant startTime = Instant.now();
+        final AttributeSchema attributeSchema = provider.getAttributeSchema();
+        final ImportRun importRun = new ImportRun( readCheckpoint() );
+        try
+        {
+            importRun.run( new LdifReader( reader, attributeSchema::isBinary ) );
+        }
+        finally
+        {
+            importRun.close();
+        }
+
+        final ImportResult importResult = new ImportResult( importRun, Duration.between( startTime, Instant.now() ) );
+        LOGGER.debug( () -> "completed ldif import: " + importResult );
+        return importResult;
+    }
+
+    private long readCheckpoint()
+            throws IOException
+    {
+        if ( checkpointFile == null || !Files.exists( checkpointFile ) )
+        {
+            return 0;
+        }
+
+        final Properties properties = new Properties();
+        try ( Reader reader = Files.newBufferedReader( checkpointFile, StandardCharsets.UTF_8 ) )
+        {
+            properties.load( reader );
+        }
+
+        try
+        {
+            final long recordsCompleted = Long.parseLong( properties.getProperty( CHECKPOINT_PROPERTY, "0" ) );
+            LOGGER.info( () -> "resuming ldif import after " + recordsCompleted + " records using checkpoint " + checkpointFile );
+            return recordsCompleted;
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new IOException( "invalid checkpoint file " + checkpointFile + ": " + e.getMessage(), e );
+        }
+    }
+
+    private static String parentKey( final String entryDN )
+    {
+        if ( !ChaiDn.isValid( entryDN ) )
+        {
+            return null;
+        }
+        final ChaiDn parent = ChaiDn.parse( entryDN ).getParent();
+        return parent == null ? null : parent.toNormalizedString();
+    }
+
+    private interface ProviderOperation
+    {
+        void execute( ChaiProvider chaiProvider )
+                throws ChaiOperationException, ChaiUnavailableException;
+    }
+
+    private static final class PendingRecord
+    {
+        private final LdifReader.Record record;
+        private final long index;
+        private final String key;
+        private final List<PendingRecord> dependents = new ArrayList<>();
+
+        PendingRecord( final LdifReader.Record record, final long index )
+        {
+            this.record = record;
+            this.index = index;
+            this.key = ChaiDn.normalize( record.getEntryDN() );
+        }
+    }
+
+    /**
+     * State of a single invocation of {@link #importLdif(Reader)}.
+     */
+    private class ImportRun
+    {
+        private final long resumeIndex;
+        private final ExecutorService executorService;
+        private final Semaphore queuePermits;
+        private final Phaser phaser = new Phaser( 1 );
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+        private final Queue<ChaiProvider> workerProviders = new ConcurrentLinkedQueue<>();
+        private final ThreadLocal<ChaiProvider> workerProvider = new ThreadLocal<>();
+
+        // guarded by this
+        private final Map<String, PendingRecord> inFlight = new HashMap<>();
+        private final TreeMap<Long, PendingRecord> deferred = new TreeMap<>();
+        private final TreeSet<Long> completedAhead = new TreeSet<>();
+        private long watermark;
+        private long lastCheckpoint;
+        private boolean deferMissingParents = true;
+
+        private final LongAdder addedCount = new LongAdder();
+        private final LongAdder modifiedCount = new LongAdder();
+        private final LongAdder deletedCount = new LongAdder();
+        private final LongAdder renamedCount = new LongAdder();
+        private final LongAdder failedCount = new LongAdder();
+        private final LongAdder retryCount = new LongAdder();
+        private final List<String> failureMessages = Collections.synchronizedList( new ArrayList<>() );
+        private long skippedCount;
+
+        ImportRun( final long resumeIndex )
+        {
+            this.resumeIndex = resumeIndex;
+            this.watermark = resumeIndex;
+            this.lastCheckpoint = resumeIndex;
+            this.queuePermits = new Semaphore( Math.min( MAX_QUEUED_RECORDS, connections * QUEUED_RECORDS_PER_CONNECTION ) );
+            this.executorService = Executors.newFixedThreadPool( connections, new ThreadFactory()
+            {
+                private final ThreadFactory realThreadFactory = Executors.defaultThreadFactory();
+
+                @Override
+                public Thread newThread( final Runnable runnable )
+                {
+                    final Thread t = realThreadFactory.newThread( runnable );
+                    t.setDaemon( true );
+                    t.setName( "ldapchai-import-" + t.getName() );
+                    return t;
+                }
+            } );
+        }
+
+        void run( final LdifReader ldifReader )
+                throws ChaiOperationException, ChaiUnavailableException, IOException
+        {
+            try
+            {
+                long index = 0;
+                for ( LdifReader.Record record = ldifReader.readRecord();
+                      record != null && failure.get() == null;
+                      record = ldifReader.readRecord() )
+                {
+                    if ( index < resumeIndex )
+                    {
+                        skippedCount++;
+                    }
+                    else
+                    {
+                        dispatch( new PendingRecord( record, index ) );
+                    }
+                    index++;
+                }
+                awaitIdle();
+                retryDeferred();
+            }
+            catch ( IOException e )
+            {
+                failure.compareAndSet( null, e );
+                awaitIdle();
+            }
+
+            synchronized ( this )
+            {
+                if ( checkpointFile != null )
+                {
+                    if ( failure.get() == null )
+                    {
+                        Files.deleteIfExists( checkpointFile );
+                    }
+                    else
+                    {
+                        writeCheckpoint();
+                    }
+                }
+            }
+
+            throwFailure();
+        }
+
+        private void dispatch( final PendingRecord pendingRecord )
+                throws InterruptedIOException
+        {
+            acquirePermit();
+
+            final LdifReader.ChangeType changeType = pendingRecord.record.getChangeType();
+            final boolean barrier = changeType == LdifReader.ChangeType.DELETE || changeType == LdifReader.ChangeType.MODDN;
+            if ( barrier )
+            {
+                awaitIdle();
+            }
+
+            phaser.register();
+            final PendingRecord blocker;
+            synchronized ( this )
+            {
+                final PendingRecord sameEntry = inFlight.get( pendingRecord.key );
+                final String parentKey = sameEntry == null ? parentKey( pendingRecord.record.getEntryDN() ) : null;
+                blocker = sameEntry != null ? sameEntry : parentKey == null ? null : inFlight.get( parentKey );
+                inFlight.put( pendingRecord.key, pendingRecord );
+                if ( blocker != null )
+                {
+                    blocker.dependents.add( pendingRecord );
+                }
+            }
+
+            if ( blocker == null )
+            {
+                executorService.execute( () -> process( pendingRecord ) );
+            }
+
+            if ( barrier )
+            {
+                awaitIdle();
+            }
+        }
+
+        private void retryDeferred()
+                throws InterruptedIOException
+        {
+            while ( failure.get() == null )
+            {
+                final List<PendingRecord> retryRecords;
+                synchronized ( this )
+                {
+                    if ( deferred.isEmpty() )
+                    {
+                        return;
+                    }
+                    retryRecords = new ArrayList<>( deferred.values() );
+                    deferred.clear();
+                }
+
+                LOGGER.debug( () -> "retrying " + retryRecords.size() + " records with missing parent entries" );
+                for ( final PendingRecord pendingRecord : retryRecords )
+                {
+                    dispatch( new PendingRecord( pendingRecord.record, pendingRecord.index ) );
+                }
+                awaitIdle();
+
+                synchronized ( this )
+                {
+                    if ( deferred.size() == retryRecords.size() )
+                    {
+                        // no progress was made, the next attempt reports the failures
+                        deferMissingParents = false;
+                    }
+                }
+            }
+        }
+
+        private void process( final PendingRecord pendingRecord )
+        {
+            boolean completed = false;
+            try
+            {
+                if ( failure.get() == null )
+                {
+                    applyRecord( providerForWorker(), pendingRecord.record );
+                    completed = true;
+                }
+            }
+            catch ( ChaiOperationException e )
+            {
+                if ( e.getErrorCode() == ChaiError.NO_SUCH_ENTRY && deferRecord( pendingRecord ) )
+                {
+                    LOGGER.trace( () -> "deferring record for " + pendingRecord.record.getEntryDN() + ", parent entry does not exist" );
+                }
+                else
+                {
+                    completed = handleFailure( pendingRecord, e );
+                }
+            }
+            catch ( ChaiUnavailableException | RuntimeException e )
+            {
+                completed = handleFailure( pendingRecord, e );
+            }
+            finally
+            {
+                finish( pendingRecord, completed );
+            }
+        }
+
+        private synchronized boolean deferRecord( final PendingRecord pendingRecord )
+        {
+            if ( !deferMissingParents || pendingRecord.record.getChangeType() != LdifReader.ChangeType.ADD )
+            {
+                return false;
+            }
+            deferred.put( pendingRecord.index, pendingRecord );
+            return true;
+        }
+
+        private boolean handleFailure( final PendingRecord pendingRecord, final Exception e )
+        {
+            final String message = "error applying LDIF record at line " + pendingRecord.record.getLineNumber()
+                    + " for " + pendingRecord.record.getEntryDN() + ": " + e.getMessage();
+            failedCount.increment();
+            if ( failureMessages.size() < MAX_REPORTED_FAILURES )
+            {
+                failureMessages.add( message );
+            }
+
+            if ( continueOnError )
+            {
+                LOGGER.warn( () -> message );
+                return true;
+            }
+
+            if ( failure.compareAndSet( null, e ) )
+            {
+                LOGGER.error( () -> message );
+            }
+            return false;
+        }
+
+        private void finish( final PendingRecord pendingRecord, final boolean completed )
+        {
+            final List<PendingRecord> dependents;
+            synchronized ( this )
+            {
+                if ( inFlight.get( pendingRecord.key ) == pendingRecord )
+                {
+                    inFlight.remove( pendingRecord.key );
+                }
+                dependents = new ArrayList<>( pendingRecord.dependents );
+                if ( completed )
+                {
+                    markCompleted( pendingRecord.index );
+                }
+            }
+
+            queuePermits.release();
+            for ( final PendingRecord dependent : dependents )
+            {
+                executorService.execute( () -> process( dependent ) );
+            }
+            phaser.arriveAndDeregister();
+        }
+
+        private void markCompleted( final long index )
+        {
+            if ( index == watermark )
+            {
+                watermark++;
+                while ( completedAhead.remove( watermark ) )
+                {
+                    watermark++;
+                }
+            }
+            else
+            {
+                completedAhead.add( index );
+            }
+
+            if ( checkpointFile != null && watermark - lastCheckpoint >= checkpointInterval )
+            {
+                try
+                {
+                    writeCheckpoint();
+                }
+                catch ( IOException e )
+                {
+                    if ( failure.compareAndSet( null, e ) )
+                    {
+                        LOGGER.error( () -> "error writing ldif import checkpoint " + checkpointFile + ": " + e.getMessage() );
+                    }
+                }
+            }
+        }
+
+        private void writeCheckpoint()
+                throws IOException
+        {
+            final Properties properties = new Properties();
+            properties.setProperty( CHECKPOINT_PROPERTY, Long.toString( watermark ) );
+
+            final Path tempFile = Paths.get( checkpointFile + ".tmp" );
+            try ( OutputStream outputStream = Files.newOutputStream( tempFile ) )
+            {
+                properties.store( outputStream, "ldapchai ldif import checkpoint" );
+            }
+            Files.move( tempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            lastCheckpoint = watermark;
+        }
+
+        private void applyRecord( final ChaiProvider chaiProvider, final LdifReader.Record record )
+                throws ChaiOperationException, ChaiUnavailableException
+        {
+            final String entryDN = record.getEntryDN();
+            switch ( record.getChangeType() )
+            {
+                case ADD:
+                    applyAdd( chaiProvider, record );
+                    addedCount.increment();
+                    break;
+
+                case MODIFY:
+                    applyModify( chaiProvider, record );
+                    modifiedCount.increment();
+                    break;
+
+                case DELETE:
+                    withRetry( chaiProvider, p -> p.deleteEntry( entryDN ) );
+                    deletedCount.increment();
+                    break;
+
+                case MODDN:
+                    final String newSuperior = record.getNewSuperior() != null
+                            ? record.getNewSuperior()
+                            : ChaiDn.parse( entryDN ).getParent().toString();
+                    withRetry( chaiProvider, p -> p.renameEntry( entryDN, record.getNewRdn(), newSuperior ) );
+                    renamedCount.increment();
+                    break;
+
+                default:
+                    throw new IllegalStateException( "unhandled change type " + record.getChangeType() );
+            }
+        }
+
+        private void applyAdd( final ChaiProvider chaiProvider, final LdifReader.Record record )
+                throws ChaiOperationException, ChaiUnavailableException
+        {
+            final String entryDN = record.getEntryDN();
+            final Map<String, List<String>> stringValues = record.getStringValues();
+            final Set<String> objectClasses = new LinkedHashSet<>(
+                    stringValues.getOrDefault( ChaiConstant.ATTR_LDAP_OBJECTCLASS, Collections.emptyList() ) );
+
+            final Map<String, String> firstValues = new LinkedHashMap<>();
+            for ( final Map.Entry<String, List<String>> entry : stringValues.entrySet() )
+            {
+                if ( !ChaiConstant.ATTR_LDAP_OBJECTCLASS.equalsIgnoreCase( entry.getKey() ) )
+                {
+                    firstValues.put( entry.getKey(), entry.getValue().get( 0 ) );
+                }
+            }
+            if ( !createEntry( chaiProvider, entryDN, objectClasses, firstValues ) && !firstValues.isEmpty() )
+            {
+                withRetry( chaiProvider, p -> p.writeStringAttributes( entryDN, firstValues, true ) );
+            }
+
+            // values are replaced rather than added, so values written by an earlier attempt are not an error
+            for ( final Map.Entry<String, List<String>> entry : stringValues.entrySet() )
+            {
+                final List<String> values = entry.getValue();
+                if ( values.size() > 1 && !ChaiConstant.ATTR_LDAP_OBJECTCLASS.equalsIgnoreCase( entry.getKey() ) )
+                {
+                    final Set<String> allValues = new LinkedHashSet<>( values );
+                    withRetry( chaiProvider, p -> p.writeStringAttribute( entryDN, entry.getKey(), allValues, true ) );
+                }
+            }
+
+            for ( final Map.Entry<String, List<byte[]>> entry : record.getBinaryValues().entrySet() )
+            {
+                final byte[][] values = entry.getValue().toArray( new byte[0][] );
+                withRetry( chaiProvider, p -> p.writeBinaryAttribute( entryDN, entry.getKey(), values, true ) );
+            }
+        }
+
+        /**
+         * Create an entry.
+         *
+         * @return false if the create failed because the entry was already created by an earlier import or attempt.
+         */
+        private boolean createEntry(
+                final ChaiProvider chaiProvider,
+                final String entryDN,
+                final Set<String> objectClasses,
+                final Map<String, String> firstValues
+        )
+                throws ChaiOperationException, ChaiUnavailableException
+        {
+            final AtomicInteger attempts = new AtomicInteger();
+            try
+            {
+                withRetry( chaiProvider, p ->
+                {
+                    attempts.incrementAndGet();
+                    p.createEntry( entryDN, objectClasses, firstValues );
+                } );
+                return true;
+            }
+            catch ( ChaiOperationException e )
+            {
+                final boolean replayed = resumeIndex > 0 || attempts.get() > 1;
+                if ( replayed && e.getErrorCode() != ChaiError.NO_SUCH_ENTRY && entryExists( chaiProvider, entryDN ) )
+                {
+                    LOGGER.debug( () -> "completing existing entry " + entryDN + " after create failed: " + e.getMessage() );
+                    return false;
+                }
+                throw e;
+            }
+        }
+
+        private boolean entryExists( final ChaiProvider chaiProvider, final String entryDN )
+                throws ChaiOperationException, ChaiUnavailableException
+        {
+            try
+            {
+                withRetry( chaiProvider, p -> p.readMultiStringAttribute( entryDN, ChaiConstant.ATTR_LDAP_OBJECTCLASS ) );
+                return true;
+            }
+            catch ( ChaiOperationException e )
+            {
+                if ( e.getErrorCode() == ChaiError.NO_SUCH_ENTRY )
+                {
+                    return false;
+                }
+                throw e;
+            }
+        }
+
+        private void applyModify( final ChaiProvider chaiProvider, final LdifReader.Record record )
+                throws ChaiOperationException, ChaiUnavailableException
+        {
+            final String entryDN = record.getEntryDN();
+            final Map<String, String> batch = new LdapAttributeMap<>();
+            LdifReader.ModificationType batchType = null;
+
+            for ( final LdifReader.Modification modification : record.getModifications() )
+            {
+                final LdifReader.ModificationType modificationType = modification.getModificationType();
+                final boolean batchable = modificationType != LdifReader.ModificationType.DELETE
+                        && modification.getValues().size() == 1
+                        && modification.getBinaryValues().isEmpty();
+
+                if ( batchable && ( batchType == null || batchType == modificationType )
+                        && !batch.containsKey( modification.getAttributeName() ) )
+                {
+                    batch.put( modification.getAttributeName(), modification.getValues().get( 0 ) );
+                    batchType = modificationType;
+                    continue;
+                }
+
+                writeBatch( chaiProvider, entryDN, batch, batchType );
+                batchType = null;
+
+                if ( batchable )
+                {
+                    batch.put( modification.getAttributeName(), modification.getValues().get( 0 ) );
+                    batchType = modificationType;
+                }
+                else
+                {
+                    applyModification( chaiProvider, entryDN, modification );
+                }
+            }
+
+            writeBatch( chaiProvider, entryDN, batch, batchType );
+        }
+
+        private void writeBatch(
+                final ChaiProvider chaiProvider,
+                final String entryDN,
+                final Map<String, String> batch,
+                final LdifReader.ModificationType batchType
+        )
+                throws ChaiOperationException, ChaiUnavailableException
+        {
+            if ( !batch.isEmpty() )
+            {
+                final Map<String, String> values = new LinkedHashMap<>( batch );
+                final boolean overwrite = batchType == LdifReader.ModificationType.REPLACE;
+                withRetry( chaiProvider, p -> p.writeStringAttributes( entryDN, values, overwrite ) );
+                batch.clear();
+            }
+        }
+
+        private void applyModification(
+                final ChaiProvider chaiProvider,
+                final String entryDN,
+                final LdifReader.Modification modification
+        )
+                throws ChaiOperationException, ChaiUnavailableException
+        {
+            final String attributeName = modification.getAttributeName();
+            final Set<String> values = new LinkedHashSet<>( modification.getValues() );
+            final byte[][] binaryValues = modification.getBinaryValues().toArray( new byte[0][] );
+            final boolean overwrite = modification.getModificationType() == LdifReader.ModificationType.REPLACE;
+
+            switch ( modification.getModificationType() )
+            {
+                case ADD:
+                case REPLACE:
+                    if ( values.isEmpty() && binaryValues.length == 0 )
+                    {
+                        if ( overwrite )
+                        {
+                            deleteAllValues( chaiProvider, entryDN, attributeName );
+                        }
+                        break;
+                    }
+                    if ( !values.isEmpty() )
+                    {
+                        withRetry( chaiProvider, p -> p.writeStringAttribute( entryDN, attributeName, values, overwrite ) );
+                    }
+                    if ( binaryValues.length > 0 )
+                    {
+                        final boolean overwriteBinary = overwrite && values.isEmpty();
+                        withRetry( chaiProvider, p -> p.writeBinaryAttribute( entryDN, attributeName, binaryValues, overwriteBinary ) );
+                    }
+                    break;
+
+                case DELETE:
+                    if ( binaryValues.length > 0 )
+                    {
+                        throw new ChaiOperationException( "deletion of binary values of attribute '" + attributeName
+                                + "' is not supported", ChaiError.UNSUPPORTED_OPERATION );
+                    }
+                    if ( values.isEmpty() )
+                    {
+                        withRetry( chaiProvider, p -> p.deleteStringAttributeValue( entryDN, attributeName, null ) );
+                    }
+                    for ( final String value : values )
+                    {
+                        withRetry( chaiProvider, p -> p.deleteStringAttributeValue( entryDN, attributeName, value ) );
+                    }
+                    break;
+
+                default:
+                    throw new IllegalStateException( "unhandled modification type " + modification.getModificationType() );
+            }
+        }
+
+        private void deleteAllValues( final ChaiProvider chaiProvider, final String entryDN, final String attributeName )
+                throws ChaiOperationException, ChaiUnavailableException
+        {
+            try
+            {
+                withRetry( chaiProvider, p -> p.deleteStringAttributeValue( entryDN, attributeName, null ) );
+            }
+            catch ( ChaiOperationException e )
+            {
+                // a replace without values of an attribute that is not present is not an error
+                if ( e.getErrorCode() != ChaiError.NO_SUCH_ATTRIBUTE )
+                {
+                    throw e;
+                }
+            }
+        }
+
+        private void withRetry( final ChaiProvider chaiProvider, final ProviderOperation operation )
+                throws ChaiOperationException, ChaiUnavailableException
+        {
+            for ( int attempt = 0; ; attempt++ )
+            {
+                try
+                {
+                    operation.execute( chaiProvider );
+                    return;
+                }
+                catch ( ChaiOperationException | ChaiUnavailableException e )
+                {
+                    if ( attempt >= maxRetries || !isRetryable( chaiProvider, e ) || failure.get() != null )
+                    {
+                        throw e;
+                    }
+
+                    retryCount.increment();
+                    final long delayMs = retryDelay.toMillis() << Math.min( attempt, 10 );
+                    final int attemptNumber = attempt + 1;
+                    LOGGER.debug( () -> "retrying ldap operation after error (attempt " + attemptNumber + " of " + maxRetries
+                            + ", delay " + delayMs + "ms): " + e.getMessage() );
+                    try
+                    {
+                        Thread.sleep( delayMs );
+                    }
+                    catch ( InterruptedException interruptedException )
+                    {
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        private boolean isRetryable( final ChaiProvider chaiProvider, final ChaiException e )
+        {
+            if ( chaiProvider instanceof ChaiProviderImplementor )
+            {
+                return ( ( ChaiProviderImplementor ) chaiProvider ).errorIsRetryable( e );
+            }
+            return !e.isPermanent();
+        }
+
+        private ChaiProvider providerForWorker()
+                throws ChaiUnavailableException
+        {
+            if ( !connectionPerWorker || connections <= 1 )
+            {
+                return provider;
+            }
+
+            ChaiProvider chaiProvider = workerProvider.get();
+            if ( chaiProvider == null )
+            {
+                chaiProvider = provider.getProviderFactory().newProvider( provider.getChaiConfiguration() );
+                workerProviders.add( chaiProvider );
+                workerProvider.set( chaiProvider );
+            }
+            return chaiProvider;
+        }
+
+        private void acquirePermit()
+                throws InterruptedIOException
+        {
+            try
+            {
+                queuePermits.acquire();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "ldif import was interrupted" );
+            }
+        }
+
+        private void awaitIdle()
+                throws InterruptedIOException
+        {
+            try
+            {
+                phaser.awaitAdvanceInterruptibly( phaser.arrive() );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "ldif import was interrupted" );
+            }
+        }
+
+        private void throwFailure()
+                throws ChaiOperationException, ChaiUnavailableException, IOException
+        {
+            final Exception exception = failure.get();
+            if ( exception instanceof ChaiOperationException )
+            {
+                throw ( ChaiOperationException ) exception;
+            }
+            if ( exception instanceof ChaiUnavailableException )
+            {
+                throw ( ChaiUnavailableException ) exception;
+            }
+            if ( exception instanceof IOException )
+            {
+                throw ( IOException ) exception;
+            }
+            if ( exception instanceof RuntimeException )
+            {
+                throw ( RuntimeException ) exception;
+            }
+        }
+
+        void close()
+        {
+            executorService.shutdownNow();
+            for ( final ChaiProvider chaiProvider : workerProviders )
+            {
+                chaiProvider.close();
+            }
+        }
+    }
+
+    /**
+     * Statistics of a completed import.
+     */
+    public static final class ImportResult
+    {
+        private final long addedCount;
+        private final long modifiedCount;
+        private final long deletedCount;
+        private final long renamedCount;
+        private final long failedCount;
+        private final long skippedCount;
+        private final long retryCount;
+        private final List<String> failureMessages;
+        private final Duration duration;
+
+        private ImportResult( final ImportRun importRun, final Duration duration )
+        {
+            this.addedCount = importRun.addedCount.sum();
+            this.modifiedCount = importRun.modifiedCount.sum();
+            this.deletedCount = importRun.deletedCount.sum();
+            this.renamedCount = importRun.renamedCount.sum();
+            this.failedCount = importRun.failedCount.sum();
+            this.skippedCount = importRun.skippedCount;
+            this.retryCount = importRun.retryCount.sum();
+            this.failureMessages = Collections.unmodifiableList( new ArrayList<>( importRun.failureMessages ) );
+            this.duration = duration;
+        }
+
+        /**
+         * Number of records processed, including failed records but excluding records skipped due to a checkpoint.
+         *
+         * @return record count
+         */
+        public long getRecordCount()
+        {
+            return addedCount + modifiedCount + deletedCount + renamedCount + failedCount;
+        }
+
+        public long getAddedCount()
+        {
+            return addedCount;
+        }
+
+        public long getModifiedCount()
+        {
+            return modifiedCount;
+        }
+
+        public long getDeletedCount()
+        {
+            return deletedCount;
+        }
+
+        public long getRenamedCount()
+        {
+            return renamedCount;
+        }
+
+        public long getFailedCount()
+        {
+            return failedCount;
+        }
+
+        /**
+         * Number of records skipped because they were completed by a previous import using the same checkpoint file.
+         *
+         * @return skipped record count
+         */
+        public long getSkippedCount()
+        {
+            return skippedCount;
+        }
+
+        /**
+         * Number of ldap operations that were retried after a retryable error.
+         *
+         * @return retry count
+         */
+        public long getRetryCount()
+        {
+            return retryCount;
+        }
+
+        /**
+         * Error messages of failed records, limited to the first 100 failures.
+         *
+         * @return an unmodifiable list of messages
+         */
+        public List<String> getFailureMessages()
+        {
+            return failureMessages;
+        }
+
+        public Duration getDuration()
+        {
+            return duration;
+        }
+
+        public double getEntriesPerSecond()
+        {
+            final long millis = Math.max( 1, duration.toMillis() );
+            return getRecordCount() * 1000d / millis;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "records=" + getRecordCount()
+                    + ", added=" + addedCount
+                    + ", modified=" + modifiedCount
+                    + ", deleted=" + deletedCount
+                    + ", renamed=" + renamedCount
+                    + ", failed=" + failedCount
+                    + ", skipped=" + skippedCount
+                    + ", retries=" + retryCount
+                    + ", duration=" + duration.toMillis() + "ms"
+                    + ", entriesPerSecond=" + String.format( "%.1f", getEntriesPerSecond() );
+        }
+    }
+
+    public static class Builder
+    {
+        private final ChaiProvider provider;
+        private int connections = 1;
+        private boolean connectionPerWorker = true;
+        private int maxRetries = 3;
+        private Duration retryDelay = Duration.ofSeconds( 1 );
+        private Path checkpointFile;
+        private int checkpointInterval = 1000;
+        private boolean continueOnError;
+
+        Builder( final ChaiProvider provider )
+        {
+            this.provider = provider;
+        }
+
+        /**
+         * Number of records that are applied concurrently.
+         *
+         * @param connections worker count, at least 1
+         * @return this builder
+         */
+        public Builder connections( final int connections )
+        {
+            this.connections = connections;
+            return this;
+        }
+
+        /**
+         * If true (the default), each worker uses a new provider created with the configuration of the supplied
+         * provider, otherwise all workers share the supplied provider.
+         *
+         * @param connectionPerWorker use a provider per worker
+         * @return this builder
+         */
+        public Builder connectionPerWorker( final boolean connectionPerWorker )
+        {
+            this.connectionPerWorker = connectionPerWorker;
+            return this;
+        }
+
+        /**
+         * Maximum number of times a single ldap operation is retried after a retryable error.
+         *
+         * @param maxRetries retry limit, 0 to disable retries
+         * @return this builder
+         */
+        public Builder maxRetries( final int maxRetries )
+        {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Delay before the first retry of an operation, the delay doubles for each subsequent retry.
+         *
+         * @param retryDelay initial retry delay
+         * @return this builder
+         */
+        public Builder retryDelay( final Duration retryDelay )
+        {
+            this.retryDelay = retryDelay;
+            return this;
+        }
+
+        public Builder checkpointFile( final Path checkpointFile )
+        {
+            this.checkpointFile = checkpointFile;
+            return this;
+        }
+
+        /**
+         * Number of completed records between updates of the checkpoint file.
+         *
+         * @param checkpointInterval record count
+         * @return this builder
+         */
+        public Builder checkpointInterval( final int checkpointInterval )
+        {
+            this.checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        /**
+         * If true, records that fail are logged and counted and the import continues.  If false (the default),
+         * the import stops after the first failure.
+         *
+         * @param continueOnError continue after failures
+         * @return this builder
+         */
+        public Builder continueOnError( final boolean continueOnError )
+        {
+            this.continueOnError = continueOnError;
+            return this;
+        }
+
+        public LdifImporter build()
+        {
+            if ( provider == null )
+            {
+                throw new NullPointerException( "provider must not be null" );
+            }
+            if ( retryDelay == null )
+            {
+                throw new NullPointerException( "retryDelay must not be null" );
+            }
+            if ( connections < 1 )
+            {
+                throw new IllegalArgumentException( "connections must be at least 1" );
+            }
+            if ( maxRetries < 0 )
+            {
+                throw new IllegalArgumentException( "maxRetries must not be negative" );
+            }
+            if ( checkpointInterval < 1 )
+            {
+                throw new IllegalArgumentException( "checkpointInterval must be at least 1" );
+            }
+            return new LdifImporter( this );
+        }
+    }
+}
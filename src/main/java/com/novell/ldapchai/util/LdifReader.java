@@ -0,0 +1,543 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Streaming RFC 2849 LDIF parser.  Records are read one at a time, so memory use is bounded by the size of the
+ * largest record.  Both content records and change records are supported; URL values ({@code attr:< url}) are
+ * not supported.
+ */
+final class LdifReader implements AutoCloseable
+{
+    enum ChangeType
+    {
+        ADD,
+        MODIFY,
+        DELETE,
+        MODDN,
+    }
+
+    enum ModificationType
+    {
+        ADD,
+        DELETE,
+        REPLACE,
+    }
+
+    private final BufferedReader reader;
+    private final Predicate<String> binaryAttributeTest;
+
+    private int lineNumber;
+    private boolean firstRecord = true;
+
+    /**
+     * Create a new reader.
+     *
+     * @param reader              source of the LDIF text
+     * @param binaryAttributeTest identifies attributes whose base64 values should be kept as bytes rather
+     *                            than decoded as UTF-8 strings
+     */
+    LdifReader( final Reader reader, final Predicate<String> binaryAttributeTest )
+    {
+        this.reader = reader instanceof BufferedReader ? ( BufferedReader ) reader : new BufferedReader( reader );
+        this.binaryAttributeTest = binaryAttributeTest;
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return the next record, or null if there are no more records.
+     * @throws IOException if the input can not be read or is not valid LDIF
+     */
+    Record readRecord()
+            throws IOException
+    {
+        List<Line> lines = readRecordLines();
+        if ( lines.isEmpty() )
+        {
+            return null;
+        }
+
+        if ( firstRecord )
+        {
+            firstRecord = false;
+            if ( "version".equalsIgnoreCase( lines.get( 0 ).name ) )
+            {
+                if ( !"1".equals( lines.get( 0 ).stringValue() ) )
+                {
+                    throw parseError( lines.get( 0 ), "unsupported LDIF version '" + lines.get( 0 ).stringValue() + "'" );
+                }
+                lines = lines.subList( 1, lines.size() );
+                if ( lines.isEmpty() )
+                {
+                    return readRecord();
+                }
+            }
+        }
+
+        final Line dnLine = lines.get( 0 );
+        if ( !"dn".equalsIgnoreCase( dnLine.name ) )
+        {
+            throw parseError( dnLine, "record does not begin with a dn" );
+        }
+
+        int position = 1;
+        while ( position < lines.size() && "control".equalsIgnoreCase( lines.get( position ).name ) )
+        {
+            position++;
+        }
+
+        ChangeType changeType = ChangeType.ADD;
+        boolean changeRecord = false;
+        if ( position < lines.size() && "changetype".equalsIgnoreCase( lines.get( position ).name ) )
+        {
+            changeType = parseChangeType( lines.get( position ) );
+            changeRecord = true;
+            position++;
+        }
+
+        final Record record = new Record( dnLine.stringValue(), changeType, dnLine.lineNumber );
+        final List<Line> body = lines.subList( position, lines.size() );
+        switch ( changeType )
+        {
+            case ADD:
+                if ( body.isEmpty() && !changeRecord )
+                {
+                    throw parseError( dnLine, "content record has no attributes" );
+                }
+                for ( final Line line : body )
+                {
+                    addValue( record.stringValues, record.binaryValues, line );
+                }
+                break;
+
+            case MODIFY:
+                parseModifications( record, body );
+                break;
+
+            case MODDN:
+                for ( final Line line : body )
+                {
+                    if ( "newrdn".equalsIgnoreCase( line.name ) )
+                    {
+                        record.newRdn = line.stringValue();
+                    }
+                    else if ( "deleteoldrdn".equalsIgnoreCase( line.name ) )
+                    {
+                        record.deleteOldRdn = "1".equals( line.stringValue() );
+                    }
+                    else if ( "newsuperior".equalsIgnoreCase( line.name ) )
+                    {
+                        record.newSuperior = line.stringValue();
+                    }
+                    else
+                    {
+                        throw parseError( line, "unexpected line '" + line.name + "' in moddn record" );
+                    }
+                }
+                if ( record.newRdn == null )
+                {
+                    throw parseError( dnLine, "moddn record has no newrdn" );
+                }
+                break;
+
+            case DELETE:
+                if ( !body.isEmpty() )
+                {
+                    throw parseError( body.get( 0 ), "unexpected line '" + body.get( 0 ).name + "' in delete record" );
+                }
+                break;
+
+            default:
+                throw new IllegalStateException( "unhandled change type " + changeType );
+        }
+
+        return record;
+    }
+
+    int getLineNumber()
+    {
+        return lineNumber;
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        reader.close();
+    }
+
+    private void parseModifications( final Record record, final List<Line> body )
+            throws IOException
+    {
+        Modification modification = null;
+        for ( final Line line : body )
+        {
+            if ( modification == null )
+            {
+                final ModificationType modificationType = parseModificationType( line );
+                modification = new Modification( modificationType, line.stringValue() );
+            }
+            else if ( "-".equals( line.name ) )
+            {
+                record.modifications.add( modification );
+                modification = null;
+            }
+            else if ( line.name.equalsIgnoreCase( modification.attributeName ) )
+            {
+                if ( line.binaryValue != null && binaryAttributeTest.test( line.name ) )
+                {
+                    modification.binaryValues.add( line.binaryValue );
+                }
+                else
+                {
+                    modification.values.add( line.stringValue() );
+                }
+            }
+            else
+            {
+                throw parseError( line, "attribute '" + line.name + "' does not match modification attribute '"
+                        + modification.attributeName + "'" );
+            }
+        }
+
+        if ( modification != null )
+        {
+            // the final '-' separator is frequently omitted
+            record.modifications.add( modification );
+        }
+    }
+
+    private void addValue(
+            final Map<String, List<String>> stringValues,
+            final Map<String, List<byte[]>> binaryValues,
+            final Line line
+    )
+    {
+        if ( line.binaryValue != null && binaryAttributeTest.test( line.name ) )
+        {
+            binaryValues.computeIfAbsent( line.name, k -> new ArrayList<>() ).add( line.binaryValue );
+        }
+        else
+        {
+            stringValues.computeIfAbsent( line.name, k -> new ArrayList<>() ).add( line.stringValue() );
+        }
+    }
+
+    private ChangeType parseChangeType( final Line line )
+            throws IOException
+    {
+        final String value = line.stringValue().trim().toLowerCase();
+        switch ( value )
+        {
+            case "add":
+                return ChangeType.ADD;
+
+            case "modify":
+                return ChangeType.MODIFY;
+
+            case "delete":
+                return ChangeType.DELETE;
+
+            case "modrdn":
+            case "moddn":
+                return ChangeType.MODDN;
+
+            default:
+                throw parseError( line, "unknown changetype '" + value + "'" );
+        }
+    }
+
+    private ModificationType parseModificationType( final Line line )
+            throws IOException
+    {
+        switch ( line.name.toLowerCase() )
+        {
+            case "add":
+                return ModificationType.ADD;
+
+            case "delete":
+                return ModificationType.DELETE;
+
+            case "replace":
+                return ModificationType.REPLACE;
+
+            default:
+                throw parseError( line, "unsupported modification type '" + line.name + "'" );
+        }
+    }
+
+    /**
+     * Read the unfolded, non-comment lines of the next record.
+     */
+    private List<Line> readRecordLines()
+            throws IOException
+    {
+        final List<Line> lines = new ArrayList<>();
+        StringBuilder current = null;
+        int currentLineNumber = 0;
+        boolean inComment = false;
+
+        while ( true )
+        {
+            final String rawLine = nextRawLine();
+            if ( rawLine == null || rawLine.isEmpty() )
+            {
+                if ( current != null )
+                {
+                    lines.add( parseLine( current.toString(), currentLineNumber ) );
+                    current = null;
+                }
+                if ( rawLine == null || !lines.isEmpty() )
+                {
+                    return lines;
+                }
+                inComment = false;
+            }
+            else if ( rawLine.charAt( 0 ) == ' ' )
+            {
+                if ( inComment )
+                {
+                    continue;
+                }
+                if ( current == null )
+                {
+                    throw new IOException( "invalid LDIF at line " + lineNumber + ": continuation line without a preceding line" );
+                }
+                current.append( rawLine, 1, rawLine.length() );
+            }
+            else
+            {
+                if ( current != null )
+                {
+                    lines.add( parseLine( current.toString(), currentLineNumber ) );
+                    current = null;
+                }
+                inComment = rawLine.charAt( 0 ) == '#';
+                if ( !inComment )
+                {
+                    current = new StringBuilder( rawLine );
+                    currentLineNumber = lineNumber;
+                }
+            }
+        }
+    }
+
+    private String nextRawLine()
+            throws IOException
+    {
+        final String line = reader.readLine();
+        if ( line == null )
+        {
+            return null;
+        }
+        lineNumber++;
+        return line.endsWith( "\r" ) ? line.substring( 0, line.length() - 1 ) : line;
+    }
+
+    private static Line parseLine( final String text, final int lineNumber )
+            throws IOException
+    {
+        if ( "-".equals( text.trim() ) )
+        {
+            return new Line( "-", "", null, lineNumber );
+        }
+
+        final int colon = text.indexOf( ':' );
+        if ( colon <= 0 )
+        {
+            throw new IOException( "invalid LDIF at line " + lineNumber + ": missing ':' separator" );
+        }
+
+        final String name = text.substring( 0, colon ).trim();
+        int valueStart = colon + 1;
+        final boolean base64 = valueStart < text.length() && text.charAt( valueStart ) == ':';
+        if ( base64 )
+        {
+            valueStart++;
+        }
+        else if ( valueStart < text.length() && text.charAt( valueStart ) == '<' )
+        {
+            throw new IOException( "invalid LDIF at line " + lineNumber + ": URL values are not supported" );
+        }
+
+        while ( valueStart < text.length() && text.charAt( valueStart ) == ' ' )
+        {
+            valueStart++;
+        }
+
+        final String value = text.substring( valueStart );
+        if ( base64 )
+        {
+            try
+            {
+                return new Line( name, null, Base64.getMimeDecoder().decode( value ), lineNumber );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                throw new IOException( "invalid LDIF at line " + lineNumber + ": invalid base64 value", e );
+            }
+        }
+        return new Line( name, value, null, lineNumber );
+    }
+
+    private static IOException parseError( final Line line, final String message )
+    {
+        return new IOException( "invalid LDIF at line " + line.lineNumber + ": " + message );
+    }
+
+    private static final class Line
+    {
+        private final String name;
+        private final String value;
+        private final byte[] binaryValue;
+        private final int lineNumber;
+
+        Line( final String name, final String value, final byte[] binaryValue, final int lineNumber )
+        {
+            this.name = name;
+            this.value = value;
+            this.binaryValue = binaryValue;
+            this.lineNumber = lineNumber;
+        }
+
+        String stringValue()
+        {
+            return value != null ? value : new String( binaryValue, StandardCharsets.UTF_8 );
+        }
+    }
+
+    /**
+     * A single LDIF content or change record.  Content records are represented as {@link ChangeType#ADD} records.
+     */
+    static final class Record
+    {
+        private final String entryDN;
+        private final ChangeType changeType;
+        private final int lineNumber;
+        private final Map<String, List<String>> stringValues = new LdapAttributeMap<>();
+        private final Map<String, List<byte[]>> binaryValues = new LdapAttributeMap<>();
+        private final List<Modification> modifications = new ArrayList<>();
+        private String newRdn;
+        private boolean deleteOldRdn = true;
+        private String newSuperior;
+
+        Record( final String entryDN, final ChangeType changeType, final int lineNumber )
+        {
+            this.entryDN = entryDN;
+            this.changeType = changeType;
+            this.lineNumber = lineNumber;
+        }
+
+        String getEntryDN()
+        {
+            return entryDN;
+        }
+
+        ChangeType getChangeType()
+        {
+            return changeType;
+        }
+
+        int getLineNumber()
+        {
+            return lineNumber;
+        }
+
+        Map<String, List<String>> getStringValues()
+        {
+            return Collections.unmodifiableMap( stringValues );
+        }
+
+        Map<String, List<byte[]>> getBinaryValues()
+        {
+            return Collections.unmodifiableMap( binaryValues );
+        }
+
+        List<Modification> getModifications()
+        {
+            return Collections.unmodifiableList( modifications );
+        }
+
+        String getNewRdn()
+        {
+            return newRdn;
+        }
+
+        boolean isDeleteOldRdn()
+        {
+            return deleteOldRdn;
+        }
+
+        String getNewSuperior()
+        {
+            return newSuperior;
+        }
+    }
+
+    /**
+     * A single modification of a {@link ChangeType#MODIFY} record.
+     */
+    static final class Modification
+    {
+        private final ModificationType modificationType;
+        private final String attributeName;
+        private final List<String> values = new ArrayList<>();
+        private final List<byte[]> binaryValues = new ArrayList<>();
+
+        Modification( final ModificationType modificationType, final String attributeName )
+        {
+            this.modificationType = modificationType;
+            this.attributeName = attributeName;
+        }
+
+        ModificationType getModificationType()
+        {
+            return modificationType;
+        }
+
+        String getAttributeName()
+        {
+            return attributeName;
+        }
+
+        List<String> getValues()
+        {
+            return Collections.unmodifiableList( values );
+        }
+
+        List<byte[]> getBinaryValues()
+        {
+            return Collections.unmodifiableList( binaryValues );
+        }
+    }
+}
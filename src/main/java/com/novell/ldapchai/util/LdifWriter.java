@@ -0,0 +1,134 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * RFC 2849 LDIF formatting helpers.  Values that are not "safe strings" are base64 encoded and all lines
+ * longer than {@link #MAX_LINE_LENGTH} characters are folded.
+ */
+final class LdifWriter
+{
+    static final int MAX_LINE_LENGTH = 76;
+
+    static final String VERSION_HEADER = "version: 1\n\n";
+
+    private LdifWriter()
+    {
+    }
+
+    /**
+     * Append the {@code dn} line that begins an LDIF record.
+     *
+     * @param sb      output buffer
+     * @param entryDN dn of the entry
+     */
+    static void appendDn( final StringBuilder sb, final String entryDN )
+    {
+        appendAttribute( sb, "dn", entryDN );
+    }
+
+    /**
+     * Append an attribute line, base64 encoding the value if it is not a safe string.
+     *
+     * @param sb            output buffer
+     * @param attributeName name of the attribute
+     * @param value         string value
+     */
+    static void appendAttribute( final StringBuilder sb, final String attributeName, final String value )
+    {
+        if ( isSafeString( value ) )
+        {
+            appendLine( sb, attributeName, ": ", value );
+        }
+        else
+        {
+            appendAttribute( sb, attributeName, value.getBytes( StandardCharsets.UTF_8 ) );
+        }
+    }
+
+    /**
+     * Append a base64 encoded attribute line.
+     *
+     * @param sb            output buffer
+     * @param attributeName name of the attribute
+     * @param value         binary value
+     */
+    static void appendAttribute( final StringBuilder sb, final String attributeName, final byte[] value )
+    {
+        appendLine( sb, attributeName, ":: ", Base64.getEncoder().encodeToString( value ) );
+    }
+
+    /**
+     * Test if a value can be written without base64 encoding, as defined by the {@code SAFE-STRING} production
+     * of RFC 2849.  Values with trailing spaces are also considered unsafe as they are commonly stripped by editors.
+     *
+     * @param value the value to test
+     * @return true if the value can be written as-is.
+     */
+    static boolean isSafeString( final String value )
+    {
+        if ( value.isEmpty() )
+        {
+            return true;
+        }
+
+        final char first = value.charAt( 0 );
+        if ( first == ' ' || first == ':' || first == '<' )
+        {
+            return false;
+        }
+
+        final int length = value.length();
+        for ( int i = 0; i < length; i++ )
+        {
+            final char character = value.charAt( i );
+            if ( character == 0 || character == '\n' || character == '\r' || character > 0x7F )
+            {
+                return false;
+            }
+        }
+
+        return value.charAt( length - 1 ) != ' ';
+    }
+
+    private static void appendLine( final StringBuilder sb, final String attributeName, final String separator, final String value )
+    {
+        final int lineStart = sb.length();
+        sb.append( attributeName ).append( separator ).append( value );
+        final int lineLength = sb.length() - lineStart;
+
+        if ( lineLength > MAX_LINE_LENGTH )
+        {
+            final String line = sb.substring( lineStart );
+            sb.setLength( lineStart );
+            sb.append( line, 0, MAX_LINE_LENGTH );
+            for ( int position = MAX_LINE_LENGTH; position < lineLength; position += MAX_LINE_LENGTH - 1 )
+            {
+                sb.append( "\n " ).append( line, position, Math.min( lineLength, position + MAX_LINE_LENGTH - 1 ) );
+            }
+        }
+
+        sb.append( '\n' );
+    }
+}
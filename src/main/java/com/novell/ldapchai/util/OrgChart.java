@@ -0,0 +1,508 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import com.novell.ldapchai.ChaiConstant;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.CompactSearchResult;
+import com.novell.ldapchai.provider.SearchScope;
+import com.novell.ldapchai.util.internal.ChaiLogger;
+import com.novell.ldapchai.util.internal.LdapFilter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * In-memory organization chart built from the {@code manager} attribute of the entries of a subtree.
+ *
+ * <p>{@link com.novell.ldapchai.ChaiUser#getDirectReports()} and {@link com.novell.ldapchai.ChaiUser#getManager()}
+ * read a single entry per call, so walking the hierarchy of a large organization requires a round trip for every
+ * person.  This class instead retrieves the DN and manager of every matching entry with a single subtree search,
+ * which is paged by the provider, and answers all hierarchy queries from memory.</p>
+ *
+ * <p>{@link #refreshIncremental()} re-reads only the entries whose {@code modifyTimestamp} is at or after the newest
+ * timestamp seen so far.  Deleted or renamed entries, and entries that no longer match the filter, are only removed
+ * by a full {@link #refresh()}.</p>
+ *
+ * <p>Managers that are not part of the chart, for example because they are outside the search base, are still
+ * reported by {@link #getManager(String)} and their reports are available from {@link #getDirectReports(String)}.
+ * Cycles in the management chain are tolerated; each entry is visited at most once per query.  DN comparisons
+ * are case-insensitive.  Instances are thread safe.</p>
+ *
+ * <p><b>Example Usage:</b></p>
+ * <pre>
+ * OrgChart orgChart = OrgChart.builder( provider, "ou=people,o=example" ).build();
+ * Set&lt;String&gt; organization = orgChart.getSubtree( "cn=ceo,ou=people,o=example" );
+ * int spanOfControl = orgChart.getSpanOfControl( "cn=cto,ou=people,o=example" );
+ * </pre>
+ */
+public final class OrgChart
+{
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger( OrgChart.class );
+
+    private final ChaiProvider provider;
+    private final String baseDN;
+    private final String filter;
+    private final String managerAttribute;
+    private final String timestampAttribute;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<String, Node> nodes = new HashMap<>();
+    private Map<String, Set<String>> reports = new HashMap<>();
+    private String lastTimestamp;
+
+    private OrgChart( final Builder builder )
+    {
+        this.provider = builder.provider;
+        this.baseDN = builder.baseDN;
+        this.filter = builder.filter;
+        this.managerAttribute = builder.managerAttribute;
+        this.timestampAttribute = builder.timestampAttribute;
+    }
+
+    public static Builder builder( final ChaiProvider provider, final String baseDN )
+    {
+        return new Builder( provider, baseDN );
+    }
+
+    /**
+     * Replace the contents of the chart with the current entries of the directory.
+     *
+     * @throws ChaiOperationException   If an error is encountered reading the directory
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     */
+    public void refresh()
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final Instant startTime = Instant.now();
+        final CompactSearchResult results = search( filter );
+
+        final Map<String, Node> newNodes = new HashMap<>( results.size() * 2 );
+        final Map<String, Set<String>> newReports = new HashMap<>();
+        String newTimestamp = null;
+        for ( int i = 0; i < results.size(); i++ )
+        {
+            final Node node = new Node( results.getEntryDN( i ), results.getFirstValue( i, managerAttribute ) );
+            newNodes.put( node.key, node );
+            if ( node.managerKey != null )
+            {
+                newReports.computeIfAbsent( node.managerKey, k -> new LinkedHashSet<>() ).add( node.key );
+            }
+            newTimestamp = newerTimestamp( newTimestamp, results.getFirstValue( i, timestampAttribute ) );
+        }
+
+        lock.writeLock().lock();
+        try
+        {
+            nodes = newNodes;
+            reports = newReports;
+            lastTimestamp = newTimestamp;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+
+        LOGGER.debug( () -> "loaded org chart of " + newNodes.size() + " entries under " + baseDN,
+                Duration.between( startTime, Instant.now() ) );
+    }
+
+    /**
+     * Update the chart with the entries that have been modified since the newest {@code modifyTimestamp} seen by a
+     * previous refresh.  If no timestamp is known, a full {@link #refresh()} is performed instead.
+     *
+     * @return the number of entries read from the directory
+     * @throws ChaiOperationException   If an error is encountered reading the directory
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     */
+    public int refreshIncremental()
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final String sinceTimestamp = readLocked( () -> lastTimestamp );
+        if ( sinceTimestamp == null )
+        {
+            refresh();
+            return size();
+        }
+
+        final String incrementalFilter = LdapFilter.and( Arrays.asList(
+                LdapFilter.parse( filter ),
+                LdapFilter.greaterOrEqual( timestampAttribute, sinceTimestamp ) ) ).toString();
+        final CompactSearchResult results = search( incrementalFilter );
+
+        lock.writeLock().lock();
+        try
+        {
+            for ( int i = 0; i < results.size(); i++ )
+            {
+                final Node node = new Node( results.getEntryDN( i ), results.getFirstValue( i, managerAttribute ) );
+                final Node previous = nodes.put( node.key, node );
+                if ( previous != null && previous.managerKey != null )
+                {
+                    final Set<String> previousReports = reports.get( previous.managerKey );
+                    if ( previousReports != null )
+                    {
+                        previousReports.remove( node.key );
+                        if ( previousReports.isEmpty() )
+                        {
+                            reports.remove( previous.managerKey );
+                        }
+                    }
+                }
+                if ( node.managerKey != null )
+                {
+                    reports.computeIfAbsent( node.managerKey, k -> new LinkedHashSet<>() ).add( node.key );
+                }
+                lastTimestamp = newerTimestamp( lastTimestamp, results.getFirstValue( i, timestampAttribute ) );
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+
+        LOGGER.trace( () -> "incremental org chart refresh under " + baseDN + " read " + results.size() + " entries" );
+        return results.size();
+    }
+
+    /**
+     * Number of entries in the chart.
+     *
+     * @return entry count
+     */
+    public int size()
+    {
+        return readLocked( () -> nodes.size() );
+    }
+
+    /**
+     * Test if an entry is part of the chart.
+     *
+     * @param entryDN dn of the entry
+     * @return true if the entry was returned by the search
+     */
+    public boolean contains( final String entryDN )
+    {
+        final String key = ChaiDn.normalize( entryDN );
+        return readLocked( () -> nodes.containsKey( key ) );
+    }
+
+    /**
+     * Get the manager of an entry.
+     *
+     * @param entryDN dn of the entry
+     * @return dn of the manager, or empty if the entry has no manager or is not part of the chart
+     */
+    public Optional<String> getManager( final String entryDN )
+    {
+        final String key = ChaiDn.normalize( entryDN );
+        return readLocked( () ->
+        {
+            final Node node = nodes.get( key );
+            return node == null ? Optional.empty() : Optional.ofNullable( node.managerDN );
+        } );
+    }
+
+    /**
+     * Get the entries whose manager is the specified entry.
+     *
+     * @param managerDN dn of the manager
+     * @return unmodifiable set of report dns; empty if the entry has no reports
+     */
+    public Set<String> getDirectReports( final String managerDN )
+    {
+        return getSubtree( managerDN, 1 );
+    }
+
+    /**
+     * Get the number of direct reports of an entry.
+     *
+     * @param managerDN dn of the manager
+     * @return number of entries whose manager is the specified entry
+     */
+    public int getSpanOfControl( final String managerDN )
+    {
+        final String key = ChaiDn.normalize( managerDN );
+        return readLocked( () -> reports.getOrDefault( key, Collections.emptySet() ).size() );
+    }
+
+    /**
+     * Get all entries that report to an entry, directly or through intermediate managers.
+     *
+     * @param managerDN dn of the manager
+     * @return unmodifiable set of report dns, in breadth first order; empty if the entry has no reports
+     */
+    public Set<String> getSubtree( final String managerDN )
+    {
+        return getSubtree( managerDN, Integer.MAX_VALUE );
+    }
+
+    /**
+     * Get the entries that report to an entry, directly or through at most {@code maxDepth - 1} intermediate
+     * managers.
+     *
+     * @param managerDN dn of the manager
+     * @param maxDepth  number of levels below the manager to include, 1 returns only the direct reports
+     * @return unmodifiable set of report dns, in breadth first order; empty if the entry has no reports
+     */
+    public Set<String> getSubtree( final String managerDN, final int maxDepth )
+    {
+        final String rootKey = ChaiDn.normalize( managerDN );
+        return readLocked( () ->
+        {
+            final Set<String> visited = new HashSet<>();
+            visited.add( rootKey );
+            final Set<String> result = new LinkedHashSet<>();
+            Queue<String> level = new ArrayDeque<>( Collections.singleton( rootKey ) );
+            for ( int depth = 0; depth < maxDepth && !level.isEmpty(); depth++ )
+            {
+                final Queue<String> nextLevel = new ArrayDeque<>();
+                for ( final String key : level )
+                {
+                    for ( final String reportKey : reports.getOrDefault( key, Collections.emptySet() ) )
+                    {
+                        if ( visited.add( reportKey ) )
+                        {
+                            result.add( nodes.get( reportKey ).dn );
+                            nextLevel.add( reportKey );
+                        }
+                    }
+                }
+                level = nextLevel;
+            }
+            return Collections.unmodifiableSet( result );
+        } );
+    }
+
+    /**
+     * Get the management chain of an entry, starting with its manager.  The chain ends at an entry that has no
+     * manager, whose manager is not part of the chart, or at the first repeated entry of a management cycle.
+     *
+     * @param entryDN dn of the entry
+     * @return unmodifiable list of manager dns; empty if the entry has no manager or is not part of the chart
+     */
+    public List<String> getManagementChain( final String entryDN )
+    {
+        final String startKey = ChaiDn.normalize( entryDN );
+        return readLocked( () ->
+        {
+            final List<String> chain = new ArrayList<>();
+            final Set<String> visited = new HashSet<>();
+            visited.add( startKey );
+            Node node = nodes.get( startKey );
+            while ( node != null && node.managerKey != null && visited.add( node.managerKey ) )
+            {
+                chain.add( node.managerDN );
+                node = nodes.get( node.managerKey );
+            }
+            return Collections.unmodifiableList( chain );
+        } );
+    }
+
+    /**
+     * Get the depth of an entry in the hierarchy, the number of managers above it.  Entries without a manager in
+     * the chart have a depth of zero.
+     *
+     * @param entryDN dn of the entry
+     * @return depth of the entry, or -1 if the entry is not part of the chart
+     */
+    public int getDepth( final String entryDN )
+    {
+        final String startKey = ChaiDn.normalize( entryDN );
+        return readLocked( () ->
+        {
+            Node node = nodes.get( startKey );
+            if ( node == null )
+            {
+                return -1;
+            }
+
+            int depth = 0;
+            final Set<String> visited = new HashSet<>();
+            visited.add( startKey );
+            while ( node.managerKey != null && visited.add( node.managerKey ) && nodes.containsKey( node.managerKey ) )
+            {
+                node = nodes.get( node.managerKey );
+                depth++;
+            }
+            return depth;
+        } );
+    }
+
+    /**
+     * Get the entries at the top of the hierarchy, entries that have no manager or whose manager is not part of
+     * the chart.
+     *
+     * @return unmodifiable set of root dns
+     */
+    public Set<String> getRoots()
+    {
+        return readLocked( () ->
+        {
+            final Set<String> roots = new LinkedHashSet<>();
+            for ( final Node node : nodes.values() )
+            {
+                if ( node.managerKey == null || !nodes.containsKey( node.managerKey ) )
+                {
+                    roots.add( node.dn );
+                }
+            }
+            return Collections.unmodifiableSet( roots );
+        } );
+    }
+
+    private CompactSearchResult search( final String searchFilter )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final Set<String> attributes = new LinkedHashSet<>( Arrays.asList( managerAttribute, timestampAttribute ) );
+        return provider.searchCompact( baseDN, new SearchHelper( searchFilter, SearchScope.SUBTREE, attributes ) );
+    }
+
+    private static String newerTimestamp( final String current, final String candidate )
+    {
+        return candidate != null && ( current == null || current.compareTo( candidate ) < 0 )
+                ? candidate
+                : current;
+    }
+
+    private <T> T readLocked( final Supplier<T> supplier )
+    {
+        lock.readLock().lock();
+        try
+        {
+            return supplier.get();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static final class Node
+    {
+        private final String dn;
+        private final String key;
+        private final String managerDN;
+        private final String managerKey;
+
+        Node( final String dn, final String managerDN )
+        {
+            this.dn = dn;
+            this.key = ChaiDn.normalize( dn );
+            this.managerDN = managerDN == null || managerDN.isEmpty() ? null : managerDN;
+            this.managerKey = this.managerDN == null ? null : ChaiDn.normalize( this.managerDN );
+        }
+    }
+
+    public static class Builder
+    {
+        private final ChaiProvider provider;
+        private final String baseDN;
+        private String filter = "(objectClass=person)";
+        private String managerAttribute = ChaiConstant.ATTR_LDAP_MANAGER;
+        private String timestampAttribute = ChaiConstant.ATTR_EDIR_MODIFIED_TIMESTAMP;
+
+        Builder( final ChaiProvider provider, final String baseDN )
+        {
+            this.provider = provider;
+            this.baseDN = baseDN;
+        }
+
+        /**
+         * Filter selecting the entries of the chart, {@code (objectClass=person)} by default.
+         *
+         * @param filter an RFC 4515 filter string
+         * @return this builder
+         */
+        public Builder filter( final String filter )
+        {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Attribute of an entry containing the dn of its manager, {@code manager} by default.
+         *
+         * @param managerAttribute attribute name
+         * @return this builder
+         */
+        public Builder managerAttribute( final String managerAttribute )
+        {
+            this.managerAttribute = managerAttribute;
+            return this;
+        }
+
+        /**
+         * Generalized time attribute updated by the server when an entry is modified, used by
+         * {@link OrgChart#refreshIncremental()}.  {@code modifyTimestamp} by default.
+         *
+         * @param timestampAttribute attribute name
+         * @return this builder
+         */
+        public Builder timestampAttribute( final String timestampAttribute )
+        {
+            this.timestampAttribute = timestampAttribute;
+            return this;
+        }
+
+        /**
+         * Create the chart and load its entries using {@link OrgChart#refresh()}.
+         *
+         * @return a populated org chart
+         * @throws ChaiOperationException   If an error is encountered reading the directory
+         * @throws ChaiUnavailableException If no directory servers are reachable
+         */
+        public OrgChart build()
+                throws ChaiOperationException, ChaiUnavailableException
+        {
+            if ( provider == null )
+            {
+                throw new NullPointerException( "provider cannot be null" );
+            }
+            if ( baseDN == null )
+            {
+                throw new NullPointerException( "baseDN cannot be null" );
+            }
+
+            final OrgChart orgChart = new OrgChart( this );
+            orgChart.refresh();
+            return orgChart;
+        }
+    }
+}
@@ -0,0 +1,677 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import com.novell.ldapchai.ChaiPasswordPolicy;
+import com.novell.ldapchai.ChaiPasswordRule;
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiPasswordPolicyException;
+import com.novell.ldapchai.impl.edir.value.NspmComplexityRules;
+import com.novell.ldapchai.util.internal.StringHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates candidate passwords against a {@link ChaiPasswordPolicy} locally, without a directory round trip.
+ *
+ * <p>The policy rules are read and parsed once by {@link #compile(ChaiPasswordPolicy)}, including any
+ * {@link ChaiPasswordRule#NovellComplexityRules} definition, so an evaluator can be retained and shared between
+ * threads to give interactive feedback on each keystroke.  Every violation is reported, not only the first.</p>
+ *
+ * <p>The following rules are evaluated:</p>
+ * <ul>
+ *     <li>length, upper case, lower case, numeric, special, non-alpha and unique character limits</li>
+ *     <li>numeric and special characters being allowed at all, and as the first or last character</li>
+ *     <li>repeated and sequentially repeated characters</li>
+ *     <li>{@link ChaiPasswordRule#DisallowedValues} and {@link ChaiPasswordRule#DisallowedAttributes}</li>
+ *     <li>Active Directory 2003 and 2008 complexity</li>
+ *     <li>eDirectory advanced (complexity) rule sets</li>
+ * </ul>
+ *
+ * <p>Rules missing from the policy take the default value of the {@link ChaiPasswordRule}.  Rules that depend on
+ * directory state, such as password history or minimum lifetime, are not evaluated.  Characters are classified
+ * using {@link Character}: digits are numeric, and characters that are neither letters nor digits are special.</p>
+ *
+ * <p>Values of the attributes named by {@link #getRequiredAttributes()} are supplied by the caller, typically from
+ * a single read of the user entry.</p>
+ */
+public final class PasswordPolicyEvaluator
+{
+    private static final String AD_ACCOUNT_NAME_ATTRIBUTE = "sAMAccountName";
+    private static final String AD_DISPLAY_NAME_ATTRIBUTE = "displayName";
+    private static final Pattern AD_DISPLAY_NAME_DELIMITERS = Pattern.compile( "[,.\\-_#\\s]+" );
+    private static final int AD_MINIMUM_NAME_TOKEN_LENGTH = 3;
+    private static final int AD_2008_CATEGORY_COUNT = 5;
+    private static final int AD_2008_DEFAULT_MAX_VIOLATIONS = 2;
+
+    private final Map<ChaiPasswordRule, Integer> limits = new EnumMap<>( ChaiPasswordRule.class );
+    private final boolean policyEnabled;
+    private final boolean caseSensitive;
+    private final boolean allowNumeric;
+    private final boolean allowFirstCharNumeric;
+    private final boolean allowLastCharNumeric;
+    private final boolean allowSpecial;
+    private final boolean allowFirstCharSpecial;
+    private final boolean allowLastCharSpecial;
+    private final boolean allowNonAlpha;
+    private final boolean adComplexity;
+    private final boolean adComplexity2008;
+    private final int adComplexityRequiredCategories;
+    private final List<String> disallowedValues;
+    private final List<String> disallowedAttributes;
+    private final List<NspmComplexityRules.Policy> complexityPolicies;
+
+    private PasswordPolicyEvaluator( final ChaiPasswordPolicy policy )
+    {
+        final PasswordRuleHelper ruleHelper = new GenericRuleHelper( policy );
+
+        for ( final ChaiPasswordRule rule : ChaiPasswordRule.values() )
+        {
+            if ( rule.getRuleType() == ChaiPasswordRule.RuleType.MIN || rule.getRuleType() == ChaiPasswordRule.RuleType.MAX )
+            {
+                final int value = StringHelper.convertStrToInt( policy.getValue( rule ), 0 );
+                if ( value > 0 )
+                {
+                    limits.put( rule, value );
+                }
+            }
+        }
+
+        policyEnabled = booleanValue( policy, ChaiPasswordRule.PolicyEnabled );
+        caseSensitive = booleanValue( policy, ChaiPasswordRule.CaseSensitive );
+        allowNumeric = booleanValue( policy, ChaiPasswordRule.AllowNumeric );
+        allowFirstCharNumeric = booleanValue( policy, ChaiPasswordRule.AllowFirstCharNumeric );
+        allowLastCharNumeric = booleanValue( policy, ChaiPasswordRule.AllowLastCharNumeric );
+        allowSpecial = booleanValue( policy, ChaiPasswordRule.AllowSpecial );
+        allowFirstCharSpecial = booleanValue( policy, ChaiPasswordRule.AllowFirstCharSpecial );
+        allowLastCharSpecial = booleanValue( policy, ChaiPasswordRule.AllowLastCharSpecial );
+        allowNonAlpha = booleanValue( policy, ChaiPasswordRule.AllowNonAlpha );
+
+        adComplexity2008 = booleanValue( policy, ChaiPasswordRule.ADComplexity2008 );
+        adComplexity = adComplexity2008 || booleanValue( policy, ChaiPasswordRule.ADComplexity );
+        if ( adComplexity2008 )
+        {
+            final int maxViolations = StringHelper.convertStrToInt(
+                    policy.getValue( ChaiPasswordRule.ADComplexityMaxViolation ), AD_2008_DEFAULT_MAX_VIOLATIONS );
+            adComplexityRequiredCategories = Math.max( 0, AD_2008_CATEGORY_COUNT - maxViolations );
+        }
+        else
+        {
+            adComplexityRequiredCategories = 3;
+        }
+
+        disallowedValues = lowerCaseValues( ruleHelper.getDisallowedValues() );
+        disallowedAttributes = Collections.unmodifiableList( new ArrayList<>( ruleHelper.getDisallowedAttributes() ) );
+
+        final String complexityXml = policy.getValue( ChaiPasswordRule.NovellComplexityRules );
+        complexityPolicies = StringHelper.isEmpty( complexityXml )
+                ? Collections.emptyList()
+                : new NspmComplexityRules( complexityXml ).getComplexityPolicies();
+    }
+
+    /**
+     * Compile a password policy for repeated local evaluation.
+     *
+     * @param policy the policy to compile
+     * @return an immutable evaluator for the policy
+     */
+    public static PasswordPolicyEvaluator compile( final ChaiPasswordPolicy policy )
+    {
+        if ( policy == null )
+        {
+            throw new NullPointerException( "policy may not be null" );
+        }
+        return new PasswordPolicyEvaluator( policy );
+    }
+
+    /**
+     * Names of the user attributes whose values should be supplied to {@link #evaluate(String, Map)}.
+     *
+     * @return attribute names, empty if the policy does not depend on any user attribute values
+     */
+    public Set<String> getRequiredAttributes()
+    {
+        final Set<String> attributes = new LinkedHashSet<>( disallowedAttributes );
+        if ( adComplexity )
+        {
+            attributes.add( AD_ACCOUNT_NAME_ATTRIBUTE );
+            attributes.add( AD_DISPLAY_NAME_ATTRIBUTE );
+        }
+        return Collections.unmodifiableSet( attributes );
+    }
+
+    /**
+     * Evaluate a password without any user attribute values.
+     *
+     * @param password the candidate password
+     * @return every violation of the policy, empty if the password is acceptable
+     */
+    public List<Violation> evaluate( final String password )
+    {
+        return evaluate( password, Collections.emptyMap() );
+    }
+
+    /**
+     * Evaluate a password.
+     *
+     * @param password        the candidate password
+     * @param attributeValues values of the user attributes named by {@link #getRequiredAttributes()}, keyed by attribute name
+     * @return every violation of the policy, empty if the password is acceptable
+     */
+    public List<Violation> evaluate( final String password, final Map<String, String> attributeValues )
+    {
+        if ( !policyEnabled )
+        {
+            return Collections.emptyList();
+        }
+
+        final CharacterStatistics stats = new CharacterStatistics( password == null ? "" : password, caseSensitive );
+        final List<Violation> violations = new ArrayList<>();
+
+        checkMinimum( violations, ChaiPasswordRule.MinimumLength, stats.length, ChaiError.PASSWORD_TOO_SHORT );
+        checkMaximum( violations, ChaiPasswordRule.MaximumLength, stats.length, ChaiError.PASSWORD_TOO_LONG );
+        checkMinimum( violations, ChaiPasswordRule.MinimumUpperCase, stats.upper, ChaiError.PASSWORD_NOT_ENOUGH_UPPER );
+        checkMaximum( violations, ChaiPasswordRule.MaximumUpperCase, stats.upper, ChaiError.PASSWORD_TOO_MANY_UPPER );
+        checkMinimum( violations, ChaiPasswordRule.MinimumLowerCase, stats.lower, ChaiError.PASSWORD_NOT_ENOUGH_LOWER );
+        checkMaximum( violations, ChaiPasswordRule.MaximumLowerCase, stats.lower, ChaiError.PASSWORD_TOO_MANY_LOWER );
+
+        if ( !allowNumeric )
+        {
+            check( violations, stats.numeric == 0, ChaiPasswordRule.AllowNumeric, ChaiError.PASSWORD_NUMERIC_DISALLOWED,
+                    "numeric characters are not allowed" );
+        }
+        else
+        {
+            checkMinimum( violations, ChaiPasswordRule.MinimumNumeric, stats.numeric, ChaiError.PASSWORD_NOT_ENOUGH_NUM );
+            checkMaximum( violations, ChaiPasswordRule.MaximumNumeric, stats.numeric, ChaiError.PASSWORD_TOO_MANY_NUMERIC );
+            check( violations, allowFirstCharNumeric || !stats.firstNumeric, ChaiPasswordRule.AllowFirstCharNumeric,
+                    ChaiError.PASSWORD_FIRST_IS_NUMERIC, "first character may not be numeric" );
+            check( violations, allowLastCharNumeric || !stats.lastNumeric, ChaiPasswordRule.AllowLastCharNumeric,
+                    ChaiError.PASSWORD_LAST_IS_NUMERIC, "last character may not be numeric" );
+        }
+
+        if ( !allowSpecial )
+        {
+            check( violations, stats.special == 0, ChaiPasswordRule.AllowSpecial, ChaiError.PASSWORD_SPECIAL_DISALLOWED,
+                    "special characters are not allowed" );
+        }
+        else
+        {
+            checkMinimum( violations, ChaiPasswordRule.MinimumSpecial, stats.special, ChaiError.PASSWORD_NOT_ENOUGH_SPECIAL );
+            checkMaximum( violations, ChaiPasswordRule.MaximumSpecial, stats.special, ChaiError.PASSWORD_TOO_MANY_SPECIAL );
+            check( violations, allowFirstCharSpecial || !stats.firstSpecial, ChaiPasswordRule.AllowFirstCharSpecial,
+                    ChaiError.PASSWORD_FIRST_IS_SPECIAL, "first character may not be special" );
+            check( violations, allowLastCharSpecial || !stats.lastSpecial, ChaiPasswordRule.AllowLastCharSpecial,
+                    ChaiError.PASSWORD_LAST_IS_SPECIAL, "last character may not be special" );
+        }
+
+        final int nonAlpha = stats.numeric + stats.special;
+        if ( !allowNonAlpha )
+        {
+            check( violations, nonAlpha == 0, ChaiPasswordRule.AllowNonAlpha, ChaiError.PASSWORD_INVALID_CHAR,
+                    "non-alpha characters are not allowed" );
+        }
+        else
+        {
+            checkMinimum( violations, ChaiPasswordRule.MinimumNonAlpha, nonAlpha, ChaiError.PASSWORD_NOT_ENOUGH_SPECIAL );
+            checkMaximum( violations, ChaiPasswordRule.MaximumNonAlpha, nonAlpha, ChaiError.PASSWORD_TOO_MANY_SPECIAL );
+        }
+
+        checkMinimum( violations, ChaiPasswordRule.MinimumUnique, stats.unique, ChaiError.PASSWORD_NOT_ENOUGH_UNIQUE );
+        checkMaximum( violations, ChaiPasswordRule.MaximumUnique, stats.unique, ChaiError.PASSWORD_BADPASSWORD );
+        checkMaximum( violations, ChaiPasswordRule.MaximumRepeat, stats.maxRepeat, ChaiError.PASSWORD_TOO_MANY_REPEAT );
+        checkMaximum( violations, ChaiPasswordRule.MaximumSequentialRepeat, stats.maxSequentialRepeat, ChaiError.PASSWORD_TOO_MANY_REPEAT );
+
+        checkDisallowedValues( violations, stats.lowerCasePassword );
+        checkDisallowedAttributes( violations, stats.lowerCasePassword, attributeValues );
+
+        if ( adComplexity )
+        {
+            checkAdComplexity( violations, stats, attributeValues );
+        }
+
+        if ( !complexityPolicies.isEmpty() )
+        {
+            violations.addAll( evaluateComplexityPolicies( stats ) );
+        }
+
+        return Collections.unmodifiableList( violations );
+    }
+
+    /**
+     * Evaluate a password, throwing an exception for the first violation.
+     *
+     * @param password        the candidate password
+     * @param attributeValues values of the user attributes named by {@link #getRequiredAttributes()}, keyed by attribute name
+     * @throws ChaiPasswordPolicyException if the password violates the policy
+     */
+    public void check( final String password, final Map<String, String> attributeValues )
+            throws ChaiPasswordPolicyException
+    {
+        final List<Violation> violations = evaluate( password, attributeValues );
+        if ( !violations.isEmpty() )
+        {
+            final Violation violation = violations.get( 0 );
+            throw new ChaiPasswordPolicyException( violation.getMessage(), violation.getError() );
+        }
+    }
+
+    private void checkMinimum( final List<Violation> violations, final ChaiPasswordRule rule, final int actual, final ChaiError error )
+    {
+        final Integer limit = limits.get( rule );
+        if ( limit != null && actual < limit )
+        {
+            violations.add( new Violation( error, rule, rule.name() + " is " + limit + ", password has " + actual ) );
+        }
+    }
+
+    private void checkMaximum( final List<Violation> violations, final ChaiPasswordRule rule, final int actual, final ChaiError error )
+    {
+        final Integer limit = limits.get( rule );
+        if ( limit != null && actual > limit )
+        {
+            violations.add( new Violation( error, rule, rule.name() + " is " + limit + ", password has " + actual ) );
+        }
+    }
+
+    private static void check(
+            final List<Violation> violations,
+            final boolean valid,
+            final ChaiPasswordRule rule,
+            final ChaiError error,
+            final String message
+    )
+    {
+        if ( !valid )
+        {
+            violations.add( new Violation( error, rule, message ) );
+        }
+    }
+
+    private void checkDisallowedValues( final List<Violation> violations, final String lowerCasePassword )
+    {
+        for ( final String value : disallowedValues )
+        {
+            if ( !value.isEmpty() && lowerCasePassword.contains( value ) )
+            {
+                violations.add( new Violation( ChaiError.PASSWORD_INWORDLIST, ChaiPasswordRule.DisallowedValues,
+                        "password contains a disallowed value" ) );
+                return;
+            }
+        }
+    }
+
+    private void checkDisallowedAttributes(
+            final List<Violation> violations,
+            final String lowerCasePassword,
+            final Map<String, String> attributeValues
+    )
+    {
+        for ( final String attribute : disallowedAttributes )
+        {
+            final String value = attributeValue( attributeValues, attribute );
+            if ( !StringHelper.isEmpty( value ) && lowerCasePassword.contains( value.toLowerCase( Locale.ROOT ) ) )
+            {
+                violations.add( new Violation( ChaiError.PASSWORD_SAMEASATTR, ChaiPasswordRule.DisallowedAttributes,
+                        "password contains the value of attribute " + attribute ) );
+            }
+        }
+    }
+
+    private void checkAdComplexity(
+            final List<Violation> violations,
+            final CharacterStatistics stats,
+            final Map<String, String> attributeValues
+    )
+    {
+        final ChaiPasswordRule rule = adComplexity2008 ? ChaiPasswordRule.ADComplexity2008 : ChaiPasswordRule.ADComplexity;
+
+        int categories = 0;
+        categories += stats.upper > 0 ? 1 : 0;
+        categories += stats.lower > 0 ? 1 : 0;
+        categories += stats.numeric > 0 ? 1 : 0;
+        categories += stats.special > 0 ? 1 : 0;
+        if ( adComplexity2008 )
+        {
+            categories += stats.otherAlpha > 0 ? 1 : 0;
+        }
+        if ( categories < adComplexityRequiredCategories )
+        {
+            violations.add( new Violation( ChaiError.PASSWORD_BADPASSWORD, rule,
+                    "password has " + categories + " character categories, " + adComplexityRequiredCategories + " are required" ) );
+        }
+
+        final String accountName = attributeValue( attributeValues, AD_ACCOUNT_NAME_ATTRIBUTE );
+        if ( accountName != null && accountName.length() >= AD_MINIMUM_NAME_TOKEN_LENGTH
+                && stats.lowerCasePassword.contains( accountName.toLowerCase( Locale.ROOT ) ) )
+        {
+            violations.add( new Violation( ChaiError.PASSWORD_SAMEASATTR, rule, "password contains the account name" ) );
+        }
+
+        final String displayName = attributeValue( attributeValues, AD_DISPLAY_NAME_ATTRIBUTE );
+        if ( displayName != null )
+        {
+            for ( final String token : AD_DISPLAY_NAME_DELIMITERS.split( displayName ) )
+            {
+                if ( token.length() >= AD_MINIMUM_NAME_TOKEN_LENGTH && stats.lowerCasePassword.contains( token.toLowerCase( Locale.ROOT ) ) )
+                {
+                    violations.add( new Violation( ChaiError.PASSWORD_SAMEASATTR, rule, "password contains part of the display name" ) );
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * A password satisfies the complexity rules if it satisfies any one of the policies, and satisfies a policy if none
+     * of its rule sets has more violations than the rule set allows.  If no policy is satisfied, the violations of the
+     * closest policy are reported.
+     */
+    private List<Violation> evaluateComplexityPolicies( final CharacterStatistics stats )
+    {
+        List<Violation> closestViolations = null;
+        for ( final NspmComplexityRules.Policy policy : complexityPolicies )
+        {
+            final List<Violation> policyViolations = new ArrayList<>();
+            for ( final NspmComplexityRules.RuleSet ruleSet : policy.getComplexityRuleSets() )
+            {
+                final List<Violation> ruleSetViolations = new ArrayList<>();
+                for ( final Map.Entry<NspmComplexityRules.Rule, String> entry : ruleSet.getComplexityRules().entrySet() )
+                {
+                    checkComplexityRule( ruleSetViolations, entry.getKey(), entry.getValue(), stats );
+                }
+                if ( ruleSetViolations.size() > ruleSet.getViolationsAllowed() )
+                {
+                    policyViolations.addAll( ruleSetViolations );
+                }
+            }
+
+            if ( policyViolations.isEmpty() )
+            {
+                return Collections.emptyList();
+            }
+            if ( closestViolations == null || policyViolations.size() < closestViolations.size() )
+            {
+                closestViolations = policyViolations;
+            }
+        }
+        return closestViolations == null ? Collections.emptyList() : closestViolations;
+    }
+
+    private static void checkComplexityRule(
+            final List<Violation> violations,
+            final NspmComplexityRules.Rule rule,
+            final String value,
+            final CharacterStatistics stats
+    )
+    {
+        final int limit = StringHelper.convertStrToInt( value, 0 );
+        final boolean flag = StringHelper.convertStrToBoolean( value );
+        switch ( rule )
+        {
+            case MinPwdLen:
+                checkComplexity( violations, stats.length >= limit, rule, ChaiError.PASSWORD_TOO_SHORT );
+                break;
+            case MaxPwdLen:
+                checkComplexity( violations, limit <= 0 || stats.length <= limit, rule, ChaiError.PASSWORD_TOO_LONG );
+                break;
+            case MinUppercase:
+                checkComplexity( violations, stats.upper >= limit, rule, ChaiError.PASSWORD_NOT_ENOUGH_UPPER );
+                break;
+            case MaxUppercase:
+                checkComplexity( violations, stats.upper <= limit, rule, ChaiError.PASSWORD_TOO_MANY_UPPER );
+                break;
+            case MinLowercase:
+                checkComplexity( violations, stats.lower >= limit, rule, ChaiError.PASSWORD_NOT_ENOUGH_LOWER );
+                break;
+            case MaxLowercase:
+                checkComplexity( violations, stats.lower <= limit, rule, ChaiError.PASSWORD_TOO_MANY_LOWER );
+                break;
+            case MinNumeric:
+                checkComplexity( violations, stats.numeric >= limit, rule, ChaiError.PASSWORD_NOT_ENOUGH_NUM );
+                break;
+            case MaxNumeric:
+                checkComplexity( violations, stats.numeric <= limit, rule, ChaiError.PASSWORD_TOO_MANY_NUMERIC );
+                break;
+            case MinSpecial:
+                checkComplexity( violations, stats.special >= limit, rule, ChaiError.PASSWORD_NOT_ENOUGH_SPECIAL );
+                break;
+            case MaxSpecial:
+                checkComplexity( violations, stats.special <= limit, rule, ChaiError.PASSWORD_TOO_MANY_SPECIAL );
+                break;
+            case MaxRepeated:
+                checkComplexity( violations, limit <= 0 || stats.maxRepeat <= limit, rule, ChaiError.PASSWORD_TOO_MANY_REPEAT );
+                break;
+            case MaxConsecutive:
+                checkComplexity( violations, limit <= 0 || stats.maxSequentialRepeat <= limit, rule, ChaiError.PASSWORD_TOO_MANY_REPEAT );
+                break;
+            case MinUnique:
+                checkComplexity( violations, stats.unique >= limit, rule, ChaiError.PASSWORD_NOT_ENOUGH_UNIQUE );
+                break;
+            case UppercaseFirstCharDisallowed:
+                checkComplexity( violations, !flag || !stats.firstUpper, rule, ChaiError.PASSWORD_INVALID_CHAR );
+                break;
+            case UppercaseLastCharDisallowed:
+                checkComplexity( violations, !flag || !stats.lastUpper, rule, ChaiError.PASSWORD_INVALID_CHAR );
+                break;
+            case LowercaseFirstCharDisallowed:
+                checkComplexity( violations, !flag || !stats.firstLower, rule, ChaiError.PASSWORD_INVALID_CHAR );
+                break;
+            case LowercaseLastCharDisallowed:
+                checkComplexity( violations, !flag || !stats.lastLower, rule, ChaiError.PASSWORD_INVALID_CHAR );
+                break;
+            case FirstCharNumericDisallowed:
+                checkComplexity( violations, !flag || !stats.firstNumeric, rule, ChaiError.PASSWORD_FIRST_IS_NUMERIC );
+                break;
+            case LastCharNumericDisallowed:
+                checkComplexity( violations, !flag || !stats.lastNumeric, rule, ChaiError.PASSWORD_LAST_IS_NUMERIC );
+                break;
+            case FirstCharSpecialDisallowed:
+                checkComplexity( violations, !flag || !stats.firstSpecial, rule, ChaiError.PASSWORD_FIRST_IS_SPECIAL );
+                break;
+            case LastCharSpecialDisallowed:
+                checkComplexity( violations, !flag || !stats.lastSpecial, rule, ChaiError.PASSWORD_LAST_IS_SPECIAL );
+                break;
+            case ExtendedCharDisallowed:
+                checkComplexity( violations, !flag || stats.extended == 0, rule, ChaiError.PASSWORD_INVALID_CHAR );
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void checkComplexity(
+            final List<Violation> violations,
+            final boolean valid,
+            final NspmComplexityRules.Rule rule,
+            final ChaiError error
+    )
+    {
+        if ( !valid )
+        {
+            violations.add( new Violation( error, ChaiPasswordRule.NovellComplexityRules, "complexity rule " + rule + " not satisfied" ) );
+        }
+    }
+
+    private static String attributeValue( final Map<String, String> attributeValues, final String attribute )
+    {
+        if ( attributeValues == null || attributeValues.isEmpty() )
+        {
+            return null;
+        }
+        final String value = attributeValues.get( attribute );
+        if ( value != null )
+        {
+            return value;
+        }
+        for ( final Map.Entry<String, String> entry : attributeValues.entrySet() )
+        {
+            if ( attribute.equalsIgnoreCase( entry.getKey() ) )
+            {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static boolean booleanValue( final ChaiPasswordPolicy policy, final ChaiPasswordRule rule )
+    {
+        final String value = policy.getValue( rule );
+        return StringHelper.convertStrToBoolean( value == null ? rule.getDefaultValue() : value );
+    }
+
+    private static List<String> lowerCaseValues( final List<String> values )
+    {
+        final List<String> returnList = new ArrayList<>( values.size() );
+        for ( final String value : values )
+        {
+            returnList.add( value.trim().toLowerCase( Locale.ROOT ) );
+        }
+        return Collections.unmodifiableList( returnList );
+    }
+
+    /**
+     * A single violation of a password policy.
+     */
+    public static final class Violation
+    {
+        private final ChaiError error;
+        private final ChaiPasswordRule rule;
+        private final String message;
+
+        Violation( final ChaiError error, final ChaiPasswordRule rule, final String message )
+        {
+            this.error = error;
+            this.rule = rule;
+            this.message = message;
+        }
+
+        public ChaiError getError()
+        {
+            return error;
+        }
+
+        /**
+         * The violated rule.  Complexity rule set violations are reported as {@link ChaiPasswordRule#NovellComplexityRules}.
+         *
+         * @return the violated rule
+         */
+        public ChaiPasswordRule getRule()
+        {
+            return rule;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+
+        @Override
+        public String toString()
+        {
+            return error + ": " + message;
+        }
+    }
+
+    /**
+     * Character counts of a password, gathered in a single pass.
+     */
+    private static final class CharacterStatistics
+    {
+        private final String lowerCasePassword;
+        private int length;
+        private int upper;
+        private int lower;
+        private int otherAlpha;
+        private int numeric;
+        private int special;
+        private int extended;
+        private int unique;
+        private int maxRepeat;
+        private int maxSequentialRepeat;
+        private boolean firstUpper;
+        private boolean lastUpper;
+        private boolean firstLower;
+        private boolean lastLower;
+        private boolean firstNumeric;
+        private boolean lastNumeric;
+        private boolean firstSpecial;
+        private boolean lastSpecial;
+
+        CharacterStatistics( final String password, final boolean caseSensitive )
+        {
+            this.lowerCasePassword = password.toLowerCase( Locale.ROOT );
+
+            final Map<Integer, Integer> occurrences = new HashMap<>();
+            int previous = -1;
+            int sequentialRepeat = 0;
+            int index = 0;
+            while ( index < password.length() )
+            {
+                final int codePoint = password.codePointAt( index );
+                index += Character.charCount( codePoint );
+                length++;
+
+                final boolean isUpper = Character.isUpperCase( codePoint );
+                final boolean isLower = Character.isLowerCase( codePoint );
+                final boolean isNumeric = Character.isDigit( codePoint );
+                final boolean isSpecial = !Character.isLetterOrDigit( codePoint );
+
+                upper += isUpper ? 1 : 0;
+                lower += isLower ? 1 : 0;
+                otherAlpha += Character.isLetter( codePoint ) && !isUpper && !isLower ? 1 : 0;
+                numeric += isNumeric ? 1 : 0;
+                special += isSpecial ? 1 : 0;
+                extended += codePoint > 127 ? 1 : 0;
+
+                if ( length == 1 )
+                {
+                    firstUpper = isUpper;
+                    firstLower = isLower;
+                    firstNumeric = isNumeric;
+                    firstSpecial = isSpecial;
+                }
+                lastUpper = isUpper;
+                lastLower = isLower;
+                lastNumeric = isNumeric;
+                lastSpecial = isSpecial;
+
+                final int comparable = caseSensitive ? codePoint : Character.toLowerCase( codePoint );
+                final int count = occurrences.merge( comparable, 1, Integer::sum );
+                maxRepeat = Math.max( maxRepeat, count );
+
+                sequentialRepeat = comparable == previous ? sequentialRepeat + 1 : 1;
+                maxSequentialRepeat = Math.max( maxSequentialRepeat, sequentialRepeat );
+                previous = comparable;
+            }
+            unique = occurrences.size();
+        }
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.util;
+
+import com.novell.ldapchai.ChaiConstant;
+import com.novell.ldapchai.util.internal.LdapFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable, compiled LDAP search filter.
+ *
+ * <p>A {@code SearchFilter} is parsed or built once into a filter tree, and its RFC 4515 string form and hash code
+ * are computed when it is created.  Instances are thread safe and can be held as constants for frequently used
+ * queries, and used with {@link SearchHelper#setFilter(SearchFilter)}.</p>
+ *
+ * <p>Assertion values passed to the factory methods are escaped, so {@code SearchFilter.equal( "cn", "a*b" )}
+ * matches the literal value {@code a*b}.  AND and OR filters are simplified as they are built: nested filters of the
+ * same type are flattened, duplicate terms are removed and a single term is returned unwrapped, so for example
+ * {@code and( and( a, b ), b )} encodes as {@code (&(a)(b))}.  Parsed filters are simplified the same way.</p>
+ *
+ * <pre>
+ * private static final SearchFilter ACTIVE_USERS = SearchFilter.and(
+ *         SearchFilter.equal( "objectClass", "inetOrgPerson" ),
+ *         SearchFilter.not( SearchFilter.equal( "loginDisabled", "TRUE" ) ) );
+ * </pre>
+ */
+public final class SearchFilter
+{
+    /**
+     * Filter matching any entry, {@code (objectClass=*)}.
+     */
+    public static final SearchFilter ANY = present( ChaiConstant.ATTR_LDAP_OBJECTCLASS );
+
+    private final LdapFilter filter;
+    private final String encoded;
+    private final int hashCode;
+
+    private SearchFilter( final LdapFilter filter )
+    {
+        this.filter = filter;
+        this.encoded = filter.toString();
+        this.hashCode = encoded.hashCode();
+    }
+
+    /**
+     * Parse and compile a filter string.
+     *
+     * @param filter an RFC 4515 filter string, parentheses around a single term are optional
+     * @return the compiled filter
+     * @throws IllegalArgumentException if the filter is not valid
+     * @throws NullPointerException if {@code filter} is null
+     */
+    public static SearchFilter parse( final String filter )
+    {
+        return new SearchFilter( simplify( LdapFilter.parse( filter ) ) );
+    }
+
+    /**
+     * Equality filter, such as {@code (cn=value)}.
+     *
+     * @param attribute attribute name
+     * @param value unescaped assertion value
+     * @return a new filter
+     */
+    public static SearchFilter equal( final String attribute, final String value )
+    {
+        return new SearchFilter( LdapFilter.equality( attribute, value ) );
+    }
+
+    /**
+     * Presence filter, such as {@code (cn=*)}.
+     *
+     * @param attribute attribute name
+     * @return a new filter
+     */
+    public static SearchFilter present( final String attribute )
+    {
+        return new SearchFilter( LdapFilter.present( attribute ) );
+    }
+
+    /**
+     * Greater-or-equal filter, such as {@code (cn>=value)}.
+     *
+     * @param attribute attribute name
+     * @param value unescaped assertion value
+     * @return a new filter
+     */
+    public static SearchFilter greaterOrEqual( final String attribute, final String value )
+    {
+        return new SearchFilter( LdapFilter.greaterOrEqual( attribute, value ) );
+    }
+
+    /**
+     * Less-or-equal filter, such as {@code (cn<=value)}.
+     *
+     * @param attribute attribute name
+     * @param value unescaped assertion value
+     * @return a new filter
+     */
+    public static SearchFilter lessOrEqual( final String attribute, final String value )
+    {
+        return new SearchFilter( LdapFilter.lessOrEqual( attribute, value ) );
+    }
+
+    /**
+     * Approximate match filter, such as {@code (cn~=value)}.
+     *
+     * @param attribute attribute name
+     * @param value unescaped assertion value
+     * @return a new filter
+     */
+    public static SearchFilter approximate( final String attribute, final String value )
+    {
+        return new SearchFilter( LdapFilter.approximate( attribute, value ) );
+    }
+
+    /**
+     * Prefix filter, such as {@code (cn=value*)}.
+     *
+     * @param attribute attribute name
+     * @param prefix unescaped prefix
+     * @return a new filter
+     */
+    public static SearchFilter startsWith( final String attribute, final String prefix )
+    {
+        return substring( attribute, prefix, Collections.emptyList(), null );
+    }
+
+    /**
+     * Substring filter, such as {@code (cn=initial*any*final)}.
+     *
+     * @param attribute attribute name
+     * @param initial unescaped initial substring, or null
+     * @param any unescaped middle substrings, may be empty
+     * @param last unescaped final substring, or null
+     * @return a new filter
+     * @throws IllegalArgumentException if no substring is supplied
+     */
+    public static SearchFilter substring( final String attribute, final String initial, final List<String> any, final String last )
+    {
+        return new SearchFilter( LdapFilter.substring( attribute, initial, any, last ) );
+    }
+
+    /**
+     * Negation of a filter, such as {@code (!(cn=value))}.  A negated NOT filter is returned unwrapped.
+     *
+     * @param filter filter that must not match
+     * @return the simplified filter
+     */
+    public static SearchFilter not( final SearchFilter filter )
+    {
+        return new SearchFilter( simplify( LdapFilter.not( filter.filter ) ) );
+    }
+
+    /**
+     * AND of one or more filters.
+     *
+     * @param filters filters that must all match
+     * @return the simplified filter
+     * @throws IllegalArgumentException if no filters are supplied
+     */
+    public static SearchFilter and( final SearchFilter... filters )
+    {
+        return and( Arrays.asList( filters ) );
+    }
+
+    /**
+     * AND of one or more filters.
+     *
+     * @param filters filters that must all match
+     * @return the simplified filter
+     * @throws IllegalArgumentException if {@code filters} is empty
+     */
+    public static SearchFilter and( final Collection<SearchFilter> filters )
+    {
+        return new SearchFilter( combine( LdapFilter.Type.AND, unwrap( filters ) ) );
+    }
+
+    /**
+     * OR of one or more filters.
+     *
+     * @param filters filters of which at least one must match
+     * @return the simplified filter
+     * @throws IllegalArgumentException if no filters are supplied
+     */
+    public static SearchFilter or( final SearchFilter... filters )
+    {
+        return or( Arrays.asList( filters ) );
+    }
+
+    /**
+     * OR of one or more filters.
+     *
+     * @param filters filters of which at least one must match
+     * @return the simplified filter
+     * @throws IllegalArgumentException if {@code filters} is empty
+     */
+    public static SearchFilter or( final Collection<SearchFilter> filters )
+    {
+        return new SearchFilter( combine( LdapFilter.Type.OR, unwrap( filters ) ) );
+    }
+
+    /**
+     * AND of an equality filter for each map key and value, the escaped equivalent of
+     * {@link SearchHelper#setFilterAnd(Map)}.
+     *
+     * @param nameValuePairs attribute names and unescaped values
+     * @return the simplified filter
+     * @throws IllegalArgumentException if the map is empty
+     */
+    public static SearchFilter allEqual( final Map<String, String> nameValuePairs )
+    {
+        return and( equalityTerms( nameValuePairs ) );
+    }
+
+    /**
+     * OR of an equality filter for each map key and value, the escaped equivalent of
+     * {@link SearchHelper#setFilterOr(Map)}.
+     *
+     * @param nameValuePairs attribute names and unescaped values
+     * @return the simplified filter
+     * @throws IllegalArgumentException if the map is empty
+     */
+    public static SearchFilter anyEqual( final Map<String, String> nameValuePairs )
+    {
+        return or( equalityTerms( nameValuePairs ) );
+    }
+
+    /**
+     * Get the RFC 4515 string form of the filter.
+     *
+     * @return the encoded filter
+     */
+    @Override
+    public String toString()
+    {
+        return encoded;
+    }
+
+    @Override
+    public boolean equals( final Object o )
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+        if ( o == null || getClass() != o.getClass() )
+        {
+            return false;
+        }
+        final SearchFilter that = ( SearchFilter ) o;
+        return hashCode == that.hashCode && encoded.equals( that.encoded );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hashCode;
+    }
+
+    private static List<SearchFilter> equalityTerms( final Map<String, String> nameValuePairs )
+    {
+        final List<SearchFilter> terms = new ArrayList<>( nameValuePairs.size() );
+        for ( final Map.Entry<String, String> entry : nameValuePairs.entrySet() )
+        {
+            terms.add( equal( entry.getKey(), entry.getValue() ) );
+        }
+        return terms;
+    }
+
+    private static List<LdapFilter> unwrap( final Collection<SearchFilter> filters )
+    {
+        final List<LdapFilter> children = new ArrayList<>( filters.size() );
+        for ( final SearchFilter filter : filters )
+        {
+            children.add( Objects.requireNonNull( filter, "filter must not be null" ).filter );
+        }
+        return children;
+    }
+
+    /**
+     * Simplify a parsed filter tree, see the class description.
+     */
+    private static LdapFilter simplify( final LdapFilter filter )
+    {
+        switch ( filter.getType() )
+        {
+            case AND:
+            case OR:
+            {
+                final List<LdapFilter> children = new ArrayList<>( filter.getChildren().size() );
+                for ( final LdapFilter child : filter.getChildren() )
+                {
+                    children.add( simplify( child ) );
+                }
+                return combine( filter.getType(), children );
+            }
+
+            case NOT:
+            {
+                final LdapFilter child = simplify( filter.getChildren().get( 0 ) );
+                if ( child.getType() == LdapFilter.Type.NOT )
+                {
+                    return child.getChildren().get( 0 );
+                }
+                return child == filter.getChildren().get( 0 ) ? filter : LdapFilter.not( child );
+            }
+
+            default:
+                return filter;
+        }
+    }
+
+    /**
+     * Combine already simplified filters, flattening nested filters of the same type and removing duplicates.
+     */
+    private static LdapFilter combine( final LdapFilter.Type type, final List<LdapFilter> children )
+    {
+        if ( children.isEmpty() )
+        {
+            throw new IllegalArgumentException( "at least one filter is required" );
+        }
+
+        final Map<String, LdapFilter> terms = new LinkedHashMap<>();
+        for ( final LdapFilter child : children )
+        {
+            if ( child.getType() == type )
+            {
+                for ( final LdapFilter grandChild : child.getChildren() )
+                {
+                    terms.putIfAbsent( grandChild.toString(), grandChild );
+                }
+            }
+            else
+            {
+                terms.putIfAbsent( child.toString(), child );
+            }
+        }
+
+        if ( terms.size() == 1 )
+        {
+            return terms.values().iterator().next();
+        }
+
+        final List<LdapFilter> flattened = new ArrayList<>( terms.values() );
+        return type == LdapFilter.Type.AND ? LdapFilter.and( flattened ) : LdapFilter.or( flattened );
+    }
+}
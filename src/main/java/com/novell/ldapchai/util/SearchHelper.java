@@ -21,6 +21,8 @@ package com.novell.ldapchai.util;
 
 import com.novell.ldapchai.provider.SearchScope;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -38,10 +40,17 @@ import java.util.Set;
 /**
  * {@code SearchHelper} is a mutable helper class for managing LDAP search queries.
  *
+ * <p>The filter may be set as a string, or as an immutable {@link SearchFilter} which escapes assertion values
+ * and can be held as a constant and shared between threads.  The {@code setFilterXxx} convenience methods do
+ * not escape values.</p>
+ *
  * @author Jason D. Rivard
  */
 public class SearchHelper implements Serializable
 {
+    // computed from the class before the transient search filter was added, the serialized form is unchanged.
+    private static final long serialVersionUID = -3293258095651396903L;
+
     public static final String DEFAULT_FILTER = "(objectClass=*)";
     public static final SearchScope DEFAULT_SCOPE = SearchScope.SUBTREE;
     public static final int DEFAULT_TIMEOUT = 0;
@@ -49,6 +58,7 @@ public class SearchHelper implements Serializable
 
 
     private String filter = DEFAULT_FILTER;
+    private transient SearchFilter searchFilter = SearchFilter.ANY;
     private SearchScope searchScope = DEFAULT_SCOPE;
     private Set<String> attributes = null;
     private int maxResults = DEFAULT_MAX_RESULTS;
@@ -64,6 +74,7 @@ public class SearchHelper implements Serializable
     public SearchHelper( final SearchHelper source )
     {
         this.filter = source.filter;
+        this.searchFilter = source.searchFilter;
         this.searchScope = source.searchScope;
         this.attributes = source.attributes;
         this.maxResults = source.maxResults;
@@ -81,6 +92,30 @@ public class SearchHelper implements Serializable
         this.setFilter( filter );
     }
 
+    /**
+     * Construct a {@code SearchHelper} with a compiled filter.  Default values are used for
+     * missing values.
+     *
+     * @param filter A compiled search filter.
+     */
+    public SearchHelper( final SearchFilter filter )
+    {
+        this.setFilter( filter );
+    }
+
+    /**
+     * Construct a {@code SearchHelper} with a compiled filter and scope.  Default values are used for
+     * missing values.
+     *
+     * @param filter A compiled search filter.
+     * @param searchScope A valid SEARCH_SCOPE of Base, One or Subtree
+     */
+    public SearchHelper( final SearchFilter filter, final SearchScope searchScope )
+    {
+        this.setFilter( filter );
+        this.setSearchScope( searchScope );
+    }
+
     /**
      * Set the filter to a valid ldap search filter string.
      *
@@ -89,6 +124,34 @@ public class SearchHelper implements Serializable
     public void setFilter( final String filter )
     {
         this.filter = filter == null ? DEFAULT_FILTER : filter;
+        this.searchFilter = null;
+    }
+
+    /**
+     * Set the filter to a compiled filter.  The encoded form of the filter is used as the filter string.
+     *
+     * @param filter A compiled search filter.
+     */
+    public void setFilter( final SearchFilter filter )
+    {
+        this.searchFilter = Objects.requireNonNull( filter, "filter must not be null" );
+        this.filter = filter.toString();
+    }
+
+    /**
+     * Get the current filter as a compiled filter.  A filter set as a string is compiled the first time this
+     * method is called.
+     *
+     * @return the compiled filter
+     * @throws IllegalArgumentException if the current filter string is not a valid ldap search filter
+     */
+    public SearchFilter getSearchFilter()
+    {
+        if ( searchFilter == null )
+        {
+            searchFilter = SearchFilter.parse( filter );
+        }
+        return searchFilter;
     }
 
     /**
@@ -339,6 +402,15 @@ public class SearchHelper implements Serializable
         this.timeLimit = timeLimit;
     }
 
+    private void readObject( final ObjectInputStream in )
+            throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+
+        // the compiled filter is not serialized, it is compiled again from the filter string when needed.
+        searchFilter = null;
+    }
+
     @Override
     public boolean equals( final Object o )
     {
@@ -415,6 +487,7 @@ public class SearchHelper implements Serializable
     public void clearFilter()
     {
         filter = DEFAULT_FILTER;
+        searchFilter = SearchFilter.ANY;
     }
 
     /**
@@ -429,6 +502,7 @@ public class SearchHelper implements Serializable
      * <code>(&amp;(givenName=John)(sn=Smith))</code>
      *
      * @param nameValuePairs A valid list of attribute to name pairs
+     * @see SearchFilter#allEqual(Map)
      */
     public void setFilterAnd( final Map<String, String> nameValuePairs )
     {
@@ -475,6 +549,7 @@ public class SearchHelper implements Serializable
         }
 
         filter = sb.toString();
+        searchFilter = null;
     }
 
     /**
@@ -518,6 +593,7 @@ public class SearchHelper implements Serializable
         sb.append( new FilterSequence( attributeName, "*", FilterSequence.MatchingRuleEnum.EQUALS ) );
         sb.append( ")" );
         this.filter = sb.toString();
+        searchFilter = null;
     }
 
     /**
@@ -548,6 +624,7 @@ public class SearchHelper implements Serializable
         sb.append( ")" );
 
         filter = sb.toString();
+        searchFilter = null;
     }
 
     /**
@@ -567,6 +644,7 @@ public class SearchHelper implements Serializable
     {
         this.setFilter( attributeName, value );
         filter = "(!" + filter + ")";
+        searchFilter = null;
     }
 
     /**
@@ -585,6 +663,7 @@ public class SearchHelper implements Serializable
     public void setFilter( final String attributeName, final String value )
     {
         filter = new FilterSequence( attributeName, value ).toString();
+        searchFilter = null;
     }
 
     /**
@@ -599,6 +678,7 @@ public class SearchHelper implements Serializable
      * <code>(|(givenName=John)(sn=Smith))</code>
      *
      * @param nameValuePairs A valid list of attribute to name pairs
+     * @see SearchFilter#anyEqual(Map)
      */
     public void setFilterOr( final Map<String, String> nameValuePairs )
     {
@@ -0,0 +1,932 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import com.google.gson.stream.JsonWriter;
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.AttributeSchema;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.SearchScope;
+import com.novell.ldapchai.util.internal.ChaiLogger;
+import com.novell.ldapchai.util.internal.LdapFilter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming export of an ldap subtree to RFC 2849 LDIF or JSON Lines.
+ *
+ * <p>The subtree is read one container at a time using one-level searches.  Each search is streamed with
+ * {@link ChaiProvider#searchStream(String, SearchHelper, ChaiProvider.SearchResultHandler)}, so a worker holds at
+ * most one page of the search and one batch of entries in memory, however many entries a container has.  The
+ * binary attribute values of a batch are read with a single search of the container, filtered to the entries of
+ * the batch by their RDN.  Formatted entries are written to the output channel in chunks as they are produced.  Containers are processed in parallel by a pool of
+ * workers; a container is only queued after the chunk containing its own entry has been written, so every entry
+ * in the output is preceded by its parent.</p>
+ *
+ * <p>An entry is treated as a container if the server reports subordinates using one of the {@code hasSubordinates},
+ * {@code numSubordinates}, {@code subordinateCount} or {@code msDS-Approx-Immed-Subordinates} operational attributes.
+ * If none of these are returned, the entry's object classes are compared to {@link Builder#containerObjectClasses(Collection)}.</p>
+ *
+ * <p><b>Example Usage:</b></p>
+ * <pre>
+ * try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.CREATE, StandardOpenOption.WRITE ) )
+ * {
+ *     SubtreeExporter.ExportResult result = SubtreeExporter.builder( provider, "o=example" )
+ *         .format( SubtreeExporter.Format.LDIF )
+ *         .gzip( true )
+ *         .workers( 4 )
+ *         .build()
+ *         .export( channel );
+ *     System.out.println( result );
+ * }
+ * </pre>
+ */
+public final class SubtreeExporter
+{
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger( SubtreeExporter.class );
+
+    private static final int CHUNK_FLUSH_SIZE = 256 * 1024;
+
+    private static final int ENTRY_BATCH_SIZE = 500;
+
+    private static final String ATTR_OBJECT_CLASS = "objectClass";
+
+    private static final List<String> SUBORDINATE_ATTRIBUTES = Collections.unmodifiableList( Arrays.asList(
+            "hasSubordinates",
+            "numSubordinates",
+            "subordinateCount",
+            "msDS-Approx-Immed-Subordinates" ) );
+
+    private static final List<String> DEFAULT_CONTAINER_OBJECT_CLASSES = Collections.unmodifiableList( Arrays.asList(
+            "organization",
+            "organizationalUnit",
+            "country",
+            "locality",
+            "domain",
+            "domainDNS",
+            "container",
+            "builtinDomain",
+            "nsContainer" ) );
+
+    public enum Format
+    {
+        /**
+         * RFC 2849 LDIF content records.
+         */
+        LDIF,
+
+        /**
+         * One JSON object per line, containing {@code dn}, {@code attributes} and, if present, base64 encoded
+         * {@code binary} attribute values.
+         */
+        JSON_LINES,
+    }
+
+    private final ChaiProvider provider;
+    private final String baseDN;
+    private final Format format;
+    private final Set<String> attributes;
+    private final boolean gzip;
+    private final int workers;
+    private final boolean connectionPerWorker;
+    private final boolean includeBinaryAttributes;
+    private final Set<String> containerObjectClasses;
+
+    private SubtreeExporter( final Builder builder )
+    {
+        this.provider = builder.provider;
+        this.baseDN = builder.baseDN;
+        this.format = builder.format;
+        this.attributes = caseInsensitiveSet( builder.attributes );
+        this.gzip = builder.gzip;
+        this.workers = builder.workers;
+        this.connectionPerWorker = builder.connectionPerWorker;
+        this.includeBinaryAttributes = builder.includeBinaryAttributes;
+        this.containerObjectClasses = caseInsensitiveSet( builder.containerObjectClasses );
+    }
+
+    public static Builder builder( final ChaiProvider provider, final String baseDN )
+    {
+        return new Builder( provider, baseDN );
+    }
+
+    /**
+     * Export the subtree to the supplied channel.  The channel is not closed.
+     *
+     * @param channel destination of the export, must be a blocking channel
+     * @return statistics of the export
+     * @throws ChaiOperationException   If an error is encountered reading the subtree
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     * @throws IOException              If an error is encountered writing to the channel
+     */
+    public ExportResult export( final WritableByteChannel channel )
+            throws ChaiOperationException, ChaiUnavailableException, IOException
+    {
+        final Instant startTime = Instant.now();
+        final ExportOutput output = new ExportOutput( channel, gzip );
+        final ExportRun exportRun = new ExportRun( output );
+
+        try
+        {
+            if ( format == Format.LDIF )
+            {
+                output.write( LdifWriter.VERSION_HEADER );
+            }
+
+            if ( exportRun.exportEntries( provider, baseDN, SearchScope.BASE ) == 0 )
+            {
+                throw new ChaiOperationException( "export base entry '" + baseDN + "' does not exist", ChaiError.NO_SUCH_ENTRY );
+            }
+
+            exportRun.awaitCompletion();
+            output.finish();
+        }
+        finally
+        {
+            exportRun.close();
+        }
+
+        final ExportResult exportResult = new ExportResult(
+                exportRun.entryCount.sum(),
+                exportRun.containerCount.sum(),
+                output.getByteCount(),
+                Duration.between( startTime, Instant.now() ) );
+        LOGGER.debug( () -> "completed export of " + baseDN + ": " + exportResult );
+        return exportResult;
+    }
+
+    private static Set<String> caseInsensitiveSet( final Collection<String> values )
+    {
+        final Set<String> set = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        if ( values != null )
+        {
+            set.addAll( values );
+        }
+        return Collections.unmodifiableSet( set );
+    }
+
+    private boolean isContainer( final Map<String, List<String>> entryAttributes )
+    {
+        for ( final String subordinateAttribute : SUBORDINATE_ATTRIBUTES )
+        {
+            final List<String> values = entryAttributes.get( subordinateAttribute );
+            if ( values != null && !values.isEmpty() )
+            {
+                final String value = values.get( 0 ).trim();
+                if ( "TRUE".equalsIgnoreCase( value ) )
+                {
+                    return true;
+                }
+                try
+                {
+                    return Long.parseLong( value ) > 0;
+                }
+                catch ( NumberFormatException e )
+                {
+                    return false;
+                }
+            }
+        }
+
+        final List<String> objectClasses = entryAttributes.get( ATTR_OBJECT_CLASS );
+        if ( objectClasses != null )
+        {
+            for ( final String objectClass : objectClasses )
+            {
+                if ( containerObjectClasses.contains( objectClass ) )
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * State of a single invocation of {@link #export(WritableByteChannel)}.
+     */
+    private class ExportRun
+    {
+        private final ExportOutput output;
+        private final AttributeSchema attributeSchema;
+        private final Set<String> searchAttributes;
+        private final Set<String> hiddenAttributes;
+
+        private final LongAdder entryCount = new LongAdder();
+        private final LongAdder containerCount = new LongAdder();
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+        private final Phaser phaser = new Phaser( 1 );
+        private final ExecutorService executorService;
+        private final Queue<ChaiProvider> workerProviders = new ConcurrentLinkedQueue<>();
+        private final ThreadLocal<ChaiProvider> workerProvider = new ThreadLocal<>();
+
+        ExportRun( final ExportOutput output )
+                throws ChaiUnavailableException
+        {
+            this.output = output;
+            this.attributeSchema = provider.getAttributeSchema();
+
+            final Set<String> search = new LinkedHashSet<>();
+            final Set<String> hidden = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+            if ( attributes.isEmpty() )
+            {
+                search.add( "*" );
+                search.add( ATTR_OBJECT_CLASS );
+            }
+            else
+            {
+                search.addAll( attributes );
+                if ( !attributes.contains( ATTR_OBJECT_CLASS ) )
+                {
+                    search.add( ATTR_OBJECT_CLASS );
+                    hidden.add( ATTR_OBJECT_CLASS );
+                }
+            }
+            for ( final String subordinateAttribute : SUBORDINATE_ATTRIBUTES )
+            {
+                if ( !attributes.contains( subordinateAttribute ) )
+                {
+                    search.add( subordinateAttribute );
+                    hidden.add( subordinateAttribute );
+                }
+            }
+            this.searchAttributes = Collections.unmodifiableSet( search );
+            this.hiddenAttributes = Collections.unmodifiableSet( hidden );
+
+            this.executorService = Executors.newFixedThreadPool( workers, new ThreadFactory()
+            {
+                private final ThreadFactory realThreadFactory = Executors.defaultThreadFactory();
+
+                @Override
+                public Thread newThread( final Runnable runnable )
+                {
+                    final Thread t = realThreadFactory.newThread( runnable );
+                    t.setDaemon( true );
+                    t.setName( "ldapchai-export-" + t.getName() );
+                    return t;
+                }
+            } );
+        }
+
+        SearchHelper searchHelper( final SearchScope searchScope )
+        {
+            return new SearchHelper( SearchHelper.DEFAULT_FILTER, searchScope, searchAttributes );
+        }
+
+        void submitContainers( final List<String> containerDNs )
+        {
+            for ( final String containerDN : containerDNs )
+            {
+                containerCount.increment();
+                phaser.register();
+                executorService.execute( () ->
+                {
+                    try
+                    {
+                        if ( failure.get() == null )
+                        {
+                            exportEntries( providerForWorker(), containerDN, SearchScope.ONE );
+                        }
+                    }
+                    catch ( Exception e )
+                    {
+                        if ( failure.compareAndSet( null, e ) )
+                        {
+                            LOGGER.error( () -> "error exporting container " + containerDN + ": " + e.getMessage() );
+                        }
+                    }
+                    finally
+                    {
+                        phaser.arriveAndDeregister();
+                    }
+                } );
+            }
+            containerDNs.clear();
+        }
+
+        /**
+         * Stream the entries of a search to the output in batches.
+         *
+         * @return the number of entries exported
+         */
+        long exportEntries( final ChaiProvider chaiProvider, final String searchDN, final SearchScope searchScope )
+                throws ChaiOperationException, ChaiUnavailableException, IOException
+        {
+            final EntryBatch entryBatch = new EntryBatch( chaiProvider, searchDN, searchScope );
+            try
+            {
+                chaiProvider.searchStream( searchDN, searchHelper( searchScope ), entryBatch::add );
+            }
+            catch ( UncheckedIOException e )
+            {
+                throw e.getCause();
+            }
+            entryBatch.finish();
+            return entryBatch.exportedCount;
+        }
+
+        /**
+         * Entries of one search that have been read but not yet formatted.  Batches are formatted once
+         * {@link #ENTRY_BATCH_SIZE} entries have been read, and child containers are queued once the chunk containing
+         * their entry has been written.
+         */
+        private class EntryBatch
+        {
+            private final ChaiProvider chaiProvider;
+            private final String searchDN;
+            private final SearchScope searchScope;
+
+            private final List<String> entryDNs = new ArrayList<>( ENTRY_BATCH_SIZE );
+            private final List<Map<String, List<String>>> entryAttributes = new ArrayList<>( ENTRY_BATCH_SIZE );
+            private final StringBuilder chunk = new StringBuilder();
+            private final List<String> childContainers = new ArrayList<>();
+            private long exportedCount;
+
+            EntryBatch( final ChaiProvider chaiProvider, final String searchDN, final SearchScope searchScope )
+            {
+                this.chaiProvider = chaiProvider;
+                this.searchDN = searchDN;
+                this.searchScope = searchScope;
+            }
+
+            void add( final String entryDN, final Map<String, List<String>> attributes )
+                    throws ChaiOperationException, ChaiUnavailableException
+            {
+                entryDNs.add( entryDN );
+                entryAttributes.add( attributes );
+                if ( entryDNs.size() >= ENTRY_BATCH_SIZE )
+                {
+                    try
+                    {
+                        writeBatch();
+                    }
+                    catch ( IOException e )
+                    {
+                        throw new UncheckedIOException( e );
+                    }
+                }
+            }
+
+            void finish()
+                    throws ChaiOperationException, ChaiUnavailableException, IOException
+            {
+                writeBatch();
+                if ( chunk.length() > 0 )
+                {
+                    output.write( chunk );
+                    chunk.setLength( 0 );
+                }
+                submitContainers( childContainers );
+            }
+
+            private void writeBatch()
+                    throws ChaiOperationException, ChaiUnavailableException, IOException
+            {
+                if ( failure.get() != null )
+                {
+                    throw new ChaiOperationException( "export of " + baseDN + " has been stopped", ChaiError.UNKNOWN );
+                }
+
+                final Map<String, Map<String, byte[][]>> binaryResults = readBinaryValues( chaiProvider, searchDN, searchScope, entryDNs, entryAttributes );
+
+                for ( int i = 0; i < entryDNs.size(); i++ )
+                {
+                    final String entryDN = entryDNs.get( i );
+                    final Map<String, List<String>> attributes = entryAttributes.get( i );
+                    final Map<String, byte[][]> binaryValues = binaryResults.getOrDefault( entryDN, Collections.emptyMap() );
+
+                    if ( format == Format.LDIF )
+                    {
+                        formatLdif( chunk, entryDN, attributes, binaryValues );
+                    }
+                    else
+                    {
+                        formatJson( chunk, entryDN, attributes, binaryValues );
+                    }
+                    exportedCount++;
+                    entryCount.increment();
+
+                    if ( isContainer( attributes ) )
+                    {
+                        childContainers.add( entryDN );
+                    }
+
+                    if ( chunk.length() >= CHUNK_FLUSH_SIZE )
+                    {
+                        output.write( chunk );
+                        chunk.setLength( 0 );
+                        submitContainers( childContainers );
+                    }
+                }
+
+                entryDNs.clear();
+                entryAttributes.clear();
+            }
+        }
+
+        private boolean isExported( final String attributeName, final Map<String, byte[][]> binaryValues )
+        {
+            return !hiddenAttributes.contains( attributeName )
+                    && ( !attributeSchema.isBinary( attributeName ) || binaryValues.containsKey( attributeName ) );
+        }
+
+        /**
+         * Read the binary attribute values of a batch of entries with a single search of the same scope, requesting
+         * only the binary attributes present in the batch.  For one-level searches, the search is limited to the
+         * entries of the batch by a filter on their RDNs.
+         */
+        private Map<String, Map<String, byte[][]>> readBinaryValues(
+                final ChaiProvider chaiProvider,
+                final String searchDN,
+                final SearchScope searchScope,
+                final List<String> entryDNs,
+                final List<Map<String, List<String>>> entryAttributes
+        )
+                throws ChaiOperationException, ChaiUnavailableException
+        {
+            if ( !includeBinaryAttributes || attributeSchema.isEmpty() )
+            {
+                return Collections.emptyMap();
+            }
+
+            final Set<String> binaryAttributes = new LinkedHashSet<>();
+            final List<LdapFilter> rdnFilters = new ArrayList<>();
+            final Map<String, Map<String, byte[][]>> results = new HashMap<>();
+            for ( int i = 0; i < entryDNs.size(); i++ )
+            {
+                final String entryDN = entryDNs.get( i );
+                final Set<String> entryBinaryAttributes = new LinkedHashSet<>();
+                for ( final String attributeName : entryAttributes.get( i ).keySet() )
+                {
+                    if ( attributeSchema.isBinary( attributeName ) && !hiddenAttributes.contains( attributeName ) )
+                    {
+                        entryBinaryAttributes.add( attributeName );
+                    }
+                }
+
+                if ( !entryBinaryAttributes.isEmpty() )
+                {
+                    final ChaiDn chaiDn = ChaiDn.isValid( entryDN ) ? ChaiDn.parse( entryDN ) : null;
+                    if ( chaiDn == null || chaiDn.isRoot() )
+                    {
+                        results.put( entryDN, readEntryBinaryValues( chaiProvider, entryDN, entryBinaryAttributes ) );
+                    }
+                    else
+                    {
+                        binaryAttributes.addAll( entryBinaryAttributes );
+                        rdnFilters.add( LdapFilter.equality( chaiDn.getRdnType(), chaiDn.getRdnValue() ) );
+                    }
+                }
+            }
+            if ( rdnFilters.isEmpty() )
+            {
+                return results;
+            }
+
+            final String filter = searchScope == SearchScope.BASE
+                    ? SearchHelper.DEFAULT_FILTER
+                    : ( rdnFilters.size() == 1 ? rdnFilters.get( 0 ) : LdapFilter.or( rdnFilters ) ).toString();
+            results.putAll( chaiProvider.searchMultiByteValues( searchDN, new SearchHelper( filter, searchScope, binaryAttributes ) ) );
+            return results;
+        }
+
+        private Map<String, byte[][]> readEntryBinaryValues(
+                final ChaiProvider chaiProvider,
+                final String entryDN,
+                final Set<String> binaryAttributes
+        )
+                throws ChaiOperationException, ChaiUnavailableException
+        {
+            final Map<String, byte[][]> values = new LdapAttributeMap<>( binaryAttributes.size() );
+            for ( final String attributeName : binaryAttributes )
+            {
+                values.put( attributeName, chaiProvider.readMultiByteAttribute( entryDN, attributeName ) );
+            }
+            return values;
+        }
+
+        private void formatLdif(
+                final StringBuilder sb,
+                final String entryDN,
+                final Map<String, List<String>> entryAttributes,
+                final Map<String, byte[][]> binaryValues
+        )
+        {
+            LdifWriter.appendDn( sb, entryDN );
+            for ( final Map.Entry<String, List<String>> attribute : entryAttributes.entrySet() )
+            {
+                final String attributeName = attribute.getKey();
+                if ( isExported( attributeName, binaryValues ) )
+                {
+                    final byte[][] values = binaryValues.get( attributeName );
+                    if ( values != null )
+                    {
+                        for ( final byte[] value : values )
+                        {
+                            LdifWriter.appendAttribute( sb, attributeName, value );
+                        }
+                    }
+                    else
+                    {
+                        for ( final String value : attribute.getValue() )
+                        {
+                            LdifWriter.appendAttribute( sb, attributeName, value );
+                        }
+                    }
+                }
+            }
+            sb.append( '\n' );
+        }
+
+        private void formatJson(
+                final StringBuilder sb,
+                final String entryDN,
+                final Map<String, List<String>> entryAttributes,
+                final Map<String, byte[][]> binaryValues
+        )
+                throws IOException
+        {
+            final StringWriter stringWriter = new StringWriter();
+            try ( JsonWriter jsonWriter = new JsonWriter( stringWriter ) )
+            {
+                jsonWriter.beginObject();
+                jsonWriter.name( "dn" ).value( entryDN );
+                jsonWriter.name( "attributes" ).beginObject();
+                for ( final Map.Entry<String, List<String>> attribute : entryAttributes.entrySet() )
+                {
+                    final String attributeName = attribute.getKey();
+                    if ( isExported( attributeName, binaryValues ) && !binaryValues.containsKey( attributeName ) )
+                    {
+                        jsonWriter.name( attributeName ).beginArray();
+                        for ( final String value : attribute.getValue() )
+                        {
+                            jsonWriter.value( value );
+                        }
+                        jsonWriter.endArray();
+                    }
+                }
+                jsonWriter.endObject();
+
+                if ( !binaryValues.isEmpty() )
+                {
+                    jsonWriter.name( "binary" ).beginObject();
+                    for ( final Map.Entry<String, byte[][]> attribute : binaryValues.entrySet() )
+                    {
+                        jsonWriter.name( attribute.getKey() ).beginArray();
+                        for ( final byte[] value : attribute.getValue() )
+                        {
+                            jsonWriter.value( Base64.getEncoder().encodeToString( value ) );
+                        }
+                        jsonWriter.endArray();
+                    }
+                    jsonWriter.endObject();
+                }
+                jsonWriter.endObject();
+            }
+            sb.append( stringWriter.getBuffer() ).append( '\n' );
+        }
+
+        private ChaiProvider providerForWorker()
+                throws ChaiUnavailableException
+        {
+            if ( !connectionPerWorker || workers <= 1 )
+            {
+                return provider;
+            }
+
+            ChaiProvider chaiProvider = workerProvider.get();
+            if ( chaiProvider == null )
+            {
+                chaiProvider = provider.getProviderFactory().newProvider( provider.getChaiConfiguration() );
+                workerProviders.add( chaiProvider );
+                workerProvider.set( chaiProvider );
+            }
+            return chaiProvider;
+        }
+
+        void awaitCompletion()
+                throws ChaiOperationException, ChaiUnavailableException, IOException
+        {
+            try
+            {
+                phaser.awaitAdvanceInterruptibly( phaser.arrive() );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet( null, new InterruptedIOException( "export of " + baseDN + " was interrupted" ) );
+            }
+
+            final Exception exception = failure.get();
+            if ( exception instanceof ChaiOperationException )
+            {
+                throw ( ChaiOperationException ) exception;
+            }
+            if ( exception instanceof ChaiUnavailableException )
+            {
+                throw ( ChaiUnavailableException ) exception;
+            }
+            if ( exception instanceof IOException )
+            {
+                throw ( IOException ) exception;
+            }
+            if ( exception instanceof RuntimeException )
+            {
+                throw ( RuntimeException ) exception;
+            }
+        }
+
+        void close()
+        {
+            failure.compareAndSet( null, new IllegalStateException( "export closed" ) );
+            executorService.shutdownNow();
+            for ( final ChaiProvider chaiProvider : workerProviders )
+            {
+                chaiProvider.close();
+            }
+        }
+    }
+
+    /**
+     * Serializes writes from the workers to the output channel.
+     */
+    private static class ExportOutput
+    {
+        private final WritableByteChannel channel;
+        private final GZIPOutputStream gzipOutputStream;
+        private long byteCount;
+
+        ExportOutput( final WritableByteChannel channel, final boolean gzip )
+                throws IOException
+        {
+            this.channel = channel;
+            this.gzipOutputStream = gzip ? new GZIPOutputStream( Channels.newOutputStream( channel ), 64 * 1024 ) : null;
+        }
+
+        synchronized void write( final CharSequence text )
+                throws IOException
+        {
+            final byte[] bytes = text.toString().getBytes( StandardCharsets.UTF_8 );
+            if ( gzipOutputStream != null )
+            {
+                gzipOutputStream.write( bytes );
+            }
+            else
+            {
+                final ByteBuffer byteBuffer = ByteBuffer.wrap( bytes );
+                while ( byteBuffer.hasRemaining() )
+                {
+                    channel.write( byteBuffer );
+                }
+            }
+            byteCount += bytes.length;
+        }
+
+        synchronized long getByteCount()
+        {
+            return byteCount;
+        }
+
+        synchronized void finish()
+                throws IOException
+        {
+            if ( gzipOutputStream != null )
+            {
+                gzipOutputStream.finish();
+                gzipOutputStream.flush();
+            }
+        }
+    }
+
+    /**
+     * Statistics of a completed export.
+     */
+    public static final class ExportResult
+    {
+        private final long entryCount;
+        private final long containerCount;
+        private final long byteCount;
+        private final Duration duration;
+
+        ExportResult( final long entryCount, final long containerCount, final long byteCount, final Duration duration )
+        {
+            this.entryCount = entryCount;
+            this.containerCount = containerCount;
+            this.byteCount = byteCount;
+            this.duration = duration;
+        }
+
+        public long getEntryCount()
+        {
+            return entryCount;
+        }
+
+        /**
+         * Number of containers searched, including containers that did not have any subordinate entries.
+         *
+         * @return container count
+         */
+        public long getContainerCount()
+        {
+            return containerCount;
+        }
+
+        /**
+         * Number of uncompressed bytes written.
+         *
+         * @return byte count
+         */
+        public long getByteCount()
+        {
+            return byteCount;
+        }
+
+        public Duration getDuration()
+        {
+            return duration;
+        }
+
+        public double getEntriesPerSecond()
+        {
+            final long millis = Math.max( 1, duration.toMillis() );
+            return entryCount * 1000d / millis;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "entries=" + entryCount
+                    + ", containers=" + containerCount
+                    + ", bytes=" + byteCount
+                    + ", duration=" + duration.toMillis() + "ms"
+                    + ", entriesPerSecond=" + String.format( "%.1f", getEntriesPerSecond() );
+        }
+    }
+
+    public static class Builder
+    {
+        private final ChaiProvider provider;
+        private final String baseDN;
+        private Format format = Format.LDIF;
+        private Collection<String> attributes = Collections.emptySet();
+        private boolean gzip;
+        private int workers = 1;
+        private boolean connectionPerWorker = true;
+        private boolean includeBinaryAttributes = true;
+        private Collection<String> containerObjectClasses = DEFAULT_CONTAINER_OBJECT_CLASSES;
+
+        Builder( final ChaiProvider provider, final String baseDN )
+        {
+            this.provider = provider;
+            this.baseDN = baseDN;
+        }
+
+        public Builder format( final Format format )
+        {
+            this.format = format;
+            return this;
+        }
+
+        /**
+         * Attributes to export.  If empty (the default) all user attributes are exported.
+         *
+         * @param attributes attribute names
+         * @return this builder
+         */
+        public Builder attributes( final Collection<String> attributes )
+        {
+            this.attributes = attributes == null ? Collections.emptySet() : new ArrayList<>( attributes );
+            return this;
+        }
+
+        public Builder gzip( final boolean gzip )
+        {
+            this.gzip = gzip;
+            return this;
+        }
+
+        /**
+         * Number of containers that are read in parallel.
+         *
+         * @param workers worker thread count, at least 1
+         * @return this builder
+         */
+        public Builder workers( final int workers )
+        {
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * If true (the default), each worker uses a new provider created with the configuration of the supplied
+         * provider, otherwise all workers share the supplied provider.  Providers with
+         * {@link com.novell.ldapchai.provider.ChaiSetting#THREAD_SAFE_ENABLE} serialize operations, so sharing a provider
+         * limits the parallelism of the export.
+         *
+         * @param connectionPerWorker use a provider per worker
+         * @return this builder
+         */
+        public Builder connectionPerWorker( final boolean connectionPerWorker )
+        {
+            this.connectionPerWorker = connectionPerWorker;
+            return this;
+        }
+
+        /**
+         * If true (the default), attributes that the directory schema identifies as binary are read using
+         * {@link ChaiProvider#readMultiByteAttribute(String, String)} and written base64 encoded.  If false, binary
+         * attributes are omitted, which avoids an additional read for each entry containing binary values.
+         *
+         * @param includeBinaryAttributes include binary attributes
+         * @return this builder
+         */
+        public Builder includeBinaryAttributes( final boolean includeBinaryAttributes )
+        {
+            this.includeBinaryAttributes = includeBinaryAttributes;
+            return this;
+        }
+
+        /**
+         * Object classes used to identify containers when the server does not return any subordinate count
+         * attributes.
+         *
+         * @param containerObjectClasses object class names
+         * @return this builder
+         */
+        public Builder containerObjectClasses( final Collection<String> containerObjectClasses )
+        {
+            this.containerObjectClasses = containerObjectClasses == null ? Collections.emptySet() : new ArrayList<>( containerObjectClasses );
+            return this;
+        }
+
+        public SubtreeExporter build()
+        {
+            if ( provider == null )
+            {
+                throw new NullPointerException( "provider must not be null" );
+            }
+            if ( baseDN == null )
+            {
+                throw new NullPointerException( "baseDN must not be null" );
+            }
+            if ( format == null )
+            {
+                throw new NullPointerException( "format must not be null" );
+            }
+            if ( workers < 1 )
+            {
+                throw new IllegalArgumentException( "workers must be at least 1" );
+            }
+            return new SubtreeExporter( this );
+        }
+    }
+}
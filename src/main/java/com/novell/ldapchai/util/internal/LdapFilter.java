@@ -0,0 +1,890 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.util.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Immutable, parsed RFC 4515 LDAP search filter.
+ *
+ * <p>Filters can be parsed from their string form with {@link #parse(String)}, or built with the static factory
+ * methods.  {@link #toString()} returns the canonical string encoding, with assertion values escaped as required
+ * by RFC 4515.  Filters are equal if their canonical encodings are equal.</p>
+ *
+ * <p>{@link #matches(Function)} evaluates a filter against a set of attribute values.  Evaluation is an
+ * approximation of the server's behavior suitable for local caches and test directories: all values are compared
+ * case-insensitively, ordering comparisons are numeric when both values are integers, and extensible match filters
+ * are never matched (see {@link #isEvaluable()}).</p>
+ */
+public final class LdapFilter
+{
+    public enum Type
+    {
+        AND,
+        OR,
+        NOT,
+        EQUALITY,
+        SUBSTRING,
+        GREATER_OR_EQUAL,
+        LESS_OR_EQUAL,
+        PRESENT,
+        APPROXIMATE,
+        EXTENSIBLE,
+    }
+
+    private final Type type;
+    private final String attribute;
+    private final String value;
+    private final List<LdapFilter> children;
+    private final String substringInitial;
+    private final List<String> substringAny;
+    private final String substringFinal;
+    private final String matchingRule;
+    private final boolean dnAttributes;
+    private final String encoded;
+
+    private LdapFilter(
+            final Type type,
+            final String attribute,
+            final String value,
+            final List<LdapFilter> children,
+            final List<String> substrings,
+            final String matchingRule,
+            final boolean dnAttributes
+    )
+    {
+        this.type = type;
+        this.attribute = attribute;
+        this.value = value;
+        this.children = children == null ? Collections.emptyList() : Collections.unmodifiableList( new ArrayList<>( children ) );
+        if ( substrings != null )
+        {
+            this.substringInitial = substrings.get( 0 );
+            this.substringAny = Collections.unmodifiableList( new ArrayList<>( substrings.subList( 1, substrings.size() - 1 ) ) );
+            this.substringFinal = substrings.get( substrings.size() - 1 );
+        }
+        else
+        {
+            this.substringInitial = null;
+            this.substringAny = Collections.emptyList();
+            this.substringFinal = null;
+        }
+        this.matchingRule = matchingRule;
+        this.dnAttributes = dnAttributes;
+        this.encoded = encode();
+    }
+
+    /**
+     * Parse a filter string.  A filter without enclosing parentheses, such as {@code cn=bob}, is accepted for
+     * compatibility with JNDI.
+     *
+     * @param filter an RFC 4515 filter string
+     * @return the parsed filter
+     * @throws IllegalArgumentException if the filter is not valid
+     * @throws NullPointerException if {@code filter} is null
+     */
+    public static LdapFilter parse( final String filter )
+    {
+        final String trimmed = filter.trim();
+        final String input = trimmed.startsWith( "(" ) ? trimmed : "(" + trimmed + ")";
+        final Parser parser = new Parser( input );
+        final LdapFilter result = parser.parseFilter();
+        if ( parser.pos != input.length() )
+        {
+            throw parser.error( "unexpected trailing characters" );
+        }
+        return result;
+    }
+
+    public static LdapFilter and( final List<LdapFilter> children )
+    {
+        return new LdapFilter( Type.AND, null, null, checkChildren( children ), null, null, false );
+    }
+
+    public static LdapFilter or( final List<LdapFilter> children )
+    {
+        return new LdapFilter( Type.OR, null, null, checkChildren( children ), null, null, false );
+    }
+
+    public static LdapFilter not( final LdapFilter child )
+    {
+        return new LdapFilter( Type.NOT, null, null, Collections.singletonList( Objects.requireNonNull( child ) ), null, null, false );
+    }
+
+    public static LdapFilter equality( final String attribute, final String value )
+    {
+        return new LdapFilter( Type.EQUALITY, checkAttribute( attribute ), Objects.requireNonNull( value ), null, null, null, false );
+    }
+
+    public static LdapFilter present( final String attribute )
+    {
+        return new LdapFilter( Type.PRESENT, checkAttribute( attribute ), null, null, null, null, false );
+    }
+
+    public static LdapFilter greaterOrEqual( final String attribute, final String value )
+    {
+        return new LdapFilter( Type.GREATER_OR_EQUAL, checkAttribute( attribute ), Objects.requireNonNull( value ), null, null, null, false );
+    }
+
+    public static LdapFilter lessOrEqual( final String attribute, final String value )
+    {
+        return new LdapFilter( Type.LESS_OR_EQUAL, checkAttribute( attribute ), Objects.requireNonNull( value ), null, null, null, false );
+    }
+
+    public static LdapFilter approximate( final String attribute, final String value )
+    {
+        return new LdapFilter( Type.APPROXIMATE, checkAttribute( attribute ), Objects.requireNonNull( value ), null, null, null, false );
+    }
+
+    /**
+     * Create a substring filter.
+     *
+     * @param attribute attribute name
+     * @param initial the initial substring, or null
+     * @param any the middle substrings, may be empty
+     * @param last the final substring, or null
+     * @return a new substring filter
+     */
+    public static LdapFilter substring( final String attribute, final String initial, final List<String> any, final String last )
+    {
+        final List<String> substrings = new ArrayList<>();
+        substrings.add( StringHelper.isEmpty( initial ) ? null : initial );
+        for ( final String part : any )
+        {
+            if ( StringHelper.isEmpty( part ) )
+            {
+                throw new IllegalArgumentException( "substring filter components must not be empty" );
+            }
+            substrings.add( part );
+        }
+        substrings.add( StringHelper.isEmpty( last ) ? null : last );
+        if ( substrings.size() == 2 && substrings.get( 0 ) == null && substrings.get( 1 ) == null )
+        {
+            throw new IllegalArgumentException( "substring filter requires at least one substring" );
+        }
+        return new LdapFilter( Type.SUBSTRING, checkAttribute( attribute ), null, null, substrings, null, false );
+    }
+
+    /**
+     * Escape an assertion value for inclusion in a filter string, as described in RFC 4515 section 3.
+     *
+     * @param value an unescaped value
+     * @return the escaped value
+     */
+    public static String escapeValue( final String value )
+    {
+        final StringBuilder sb = new StringBuilder( value.length() + 8 );
+        appendEscaped( sb, value );
+        return sb.toString();
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * Get the attribute description of an item filter.
+     *
+     * @return the attribute name, or null for {@code AND}, {@code OR} and {@code NOT} filters and extensible
+     *     filters without an attribute.
+     */
+    public String getAttribute()
+    {
+        return attribute;
+    }
+
+    /**
+     * Get the unescaped assertion value.
+     *
+     * @return the assertion value, or null for filters without a single assertion value.
+     */
+    public String getValue()
+    {
+        return value;
+    }
+
+    public List<LdapFilter> getChildren()
+    {
+        return children;
+    }
+
+    public String getSubstringInitial()
+    {
+        return substringInitial;
+    }
+
+    public List<String> getSubstringAny()
+    {
+        return substringAny;
+    }
+
+    public String getSubstringFinal()
+    {
+        return substringFinal;
+    }
+
+    public String getMatchingRule()
+    {
+        return matchingRule;
+    }
+
+    public boolean isDnAttributes()
+    {
+        return dnAttributes;
+    }
+
+    /**
+     * Test if the filter can be evaluated by {@link #matches(Function)}.
+     *
+     * @return false if the filter contains an extensible match component
+     */
+    public boolean isEvaluable()
+    {
+        if ( type == Type.EXTENSIBLE )
+        {
+            return false;
+        }
+        for ( final LdapFilter child : children )
+        {
+            if ( !child.isEvaluable() )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evaluate the filter against an entry.
+     *
+     * @param valueLookup returns the values of an attribute, or null or an empty collection if the entry has no
+     *     values for the attribute
+     * @return true if the entry matches the filter
+     */
+    public boolean matches( final Function<String, ? extends Collection<String>> valueLookup )
+    {
+        switch ( type )
+        {
+            case AND:
+                for ( final LdapFilter child : children )
+                {
+                    if ( !child.matches( valueLookup ) )
+                    {
+                        return false;
+                    }
+                }
+                return true;
+
+            case OR:
+                for ( final LdapFilter child : children )
+                {
+                    if ( child.matches( valueLookup ) )
+                    {
+                        return true;
+                    }
+                }
+                return false;
+
+            case NOT:
+                return !children.get( 0 ).matches( valueLookup );
+
+            case EXTENSIBLE:
+                return false;
+
+            default:
+                break;
+        }
+
+        final Collection<String> values = valueLookup.apply( attribute );
+        if ( values == null || values.isEmpty() )
+        {
+            return false;
+        }
+
+        if ( type == Type.PRESENT )
+        {
+            return true;
+        }
+
+        for ( final String candidate : values )
+        {
+            if ( candidate != null && matchesValue( candidate ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluate the filter against an attribute map.  Attribute names are looked up exactly first, and then
+     * case-insensitively.
+     *
+     * @param attributes attribute values of an entry
+     * @return true if the entry matches the filter
+     * @see #matches(Function)
+     */
+    public boolean matches( final Map<String, ? extends Collection<String>> attributes )
+    {
+        return matches( name ->
+        {
+            final Collection<String> exact = attributes.get( name );
+            if ( exact != null )
+            {
+                return exact;
+            }
+            for ( final Map.Entry<String, ? extends Collection<String>> entry : attributes.entrySet() )
+            {
+                if ( entry.getKey().equalsIgnoreCase( name ) )
+                {
+                    return entry.getValue();
+                }
+            }
+            return null;
+        } );
+    }
+
+    private boolean matchesValue( final String candidate )
+    {
+        switch ( type )
+        {
+            case EQUALITY:
+                return candidate.equalsIgnoreCase( value );
+
+            case APPROXIMATE:
+                return stripSpaces( candidate ).equalsIgnoreCase( stripSpaces( value ) );
+
+            case GREATER_OR_EQUAL:
+                return compareValues( candidate, value ) >= 0;
+
+            case LESS_OR_EQUAL:
+                return compareValues( candidate, value ) <= 0;
+
+            case SUBSTRING:
+                return matchesSubstring( candidate.toLowerCase( Locale.ROOT ) );
+
+            default:
+                return false;
+        }
+    }
+
+    private boolean matchesSubstring( final String candidate )
+    {
+        int position = 0;
+        if ( substringInitial != null )
+        {
+            if ( !candidate.startsWith( substringInitial.toLowerCase( Locale.ROOT ) ) )
+            {
+                return false;
+            }
+            position = substringInitial.length();
+        }
+
+        for ( final String part : substringAny )
+        {
+            final int index = candidate.indexOf( part.toLowerCase( Locale.ROOT ), position );
+            if ( index < 0 )
+            {
+                return false;
+            }
+            position = index + part.length();
+        }
+
+        if ( substringFinal != null )
+        {
+            final String lowerFinal = substringFinal.toLowerCase( Locale.ROOT );
+            return candidate.length() - position >= lowerFinal.length() && candidate.endsWith( lowerFinal );
+        }
+        return true;
+    }
+
+    private static int compareValues( final String candidate, final String assertion )
+    {
+        if ( isInteger( candidate ) && isInteger( assertion ) )
+        {
+            try
+            {
+                return Long.compare( Long.parseLong( candidate ), Long.parseLong( assertion ) );
+            }
+            catch ( NumberFormatException e )
+            {
+                // fall through to string comparison for values outside of the long range
+            }
+        }
+        return candidate.compareToIgnoreCase( assertion );
+    }
+
+    private static boolean isInteger( final String input )
+    {
+        final int start = input.startsWith( "-" ) ? 1 : 0;
+        if ( input.length() <= start )
+        {
+            return false;
+        }
+        for ( int i = start; i < input.length(); i++ )
+        {
+            if ( !Character.isDigit( input.charAt( i ) ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String stripSpaces( final String input )
+    {
+        return input.replace( " ", "" );
+    }
+
+    private static List<LdapFilter> checkChildren( final List<LdapFilter> children )
+    {
+        for ( final LdapFilter child : children )
+        {
+            Objects.requireNonNull( child );
+        }
+        return children;
+    }
+
+    private static String checkAttribute( final String attribute )
+    {
+        if ( StringHelper.isEmpty( attribute ) )
+        {
+            throw new IllegalArgumentException( "attribute name is required" );
+        }
+        for ( int i = 0; i < attribute.length(); i++ )
+        {
+            if ( !isAttributeChar( attribute.charAt( i ) ) )
+            {
+                throw new IllegalArgumentException( "invalid character in attribute name '" + attribute + "'" );
+            }
+        }
+        return attribute;
+    }
+
+    private static boolean isAttributeChar( final char c )
+    {
+        return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || ( c >= '0' && c <= '9' ) || c == '-' || c == ';' || c == '.';
+    }
+
+    private String encode()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( '(' );
+        switch ( type )
+        {
+            case AND:
+            case OR:
+            case NOT:
+                sb.append( type == Type.AND ? '&' : type == Type.OR ? '|' : '!' );
+                for ( final LdapFilter child : children )
+                {
+                    sb.append( child.encoded );
+                }
+                break;
+
+            case EQUALITY:
+                sb.append( attribute ).append( '=' );
+                appendEscaped( sb, value );
+                break;
+
+            case GREATER_OR_EQUAL:
+                sb.append( attribute ).append( ">=" );
+                appendEscaped( sb, value );
+                break;
+
+            case LESS_OR_EQUAL:
+                sb.append( attribute ).append( "<=" );
+                appendEscaped( sb, value );
+                break;
+
+            case APPROXIMATE:
+                sb.append( attribute ).append( "~=" );
+                appendEscaped( sb, value );
+                break;
+
+            case PRESENT:
+                sb.append( attribute ).append( "=*" );
+                break;
+
+            case SUBSTRING:
+                sb.append( attribute ).append( '=' );
+                if ( substringInitial != null )
+                {
+                    appendEscaped( sb, substringInitial );
+                }
+                sb.append( '*' );
+                for ( final String part : substringAny )
+                {
+                    appendEscaped( sb, part );
+                    sb.append( '*' );
+                }
+                if ( substringFinal != null )
+                {
+                    appendEscaped( sb, substringFinal );
+                }
+                break;
+
+            case EXTENSIBLE:
+                if ( attribute != null )
+                {
+                    sb.append( attribute );
+                }
+                if ( dnAttributes )
+                {
+                    sb.append( ":dn" );
+                }
+                if ( matchingRule != null )
+                {
+                    sb.append( ':' ).append( matchingRule );
+                }
+                sb.append( ":=" );
+                appendEscaped( sb, value );
+                break;
+
+            default:
+                throw new IllegalStateException( "unknown filter type " + type );
+        }
+        sb.append( ')' );
+        return sb.toString();
+    }
+
+    private static void appendEscaped( final StringBuilder sb, final String value )
+    {
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            final char c = value.charAt( i );
+            switch ( c )
+            {
+                case '*':
+                    sb.append( "\\2a" );
+                    break;
+                case '(':
+                    sb.append( "\\28" );
+                    break;
+                case ')':
+                    sb.append( "\\29" );
+                    break;
+                case '\\':
+                    sb.append( "\\5c" );
+                    break;
+                case '\0':
+                    sb.append( "\\00" );
+                    break;
+                default:
+                    sb.append( c );
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return encoded;
+    }
+
+    @Override
+    public boolean equals( final Object o )
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+        if ( o == null || getClass() != o.getClass() )
+        {
+            return false;
+        }
+        return encoded.equals( ( ( LdapFilter ) o ).encoded );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return encoded.hashCode();
+    }
+
+    private static class Parser
+    {
+        private final String input;
+        private int pos;
+
+        Parser( final String input )
+        {
+            this.input = input;
+        }
+
+        LdapFilter parseFilter()
+        {
+            expect( '(' );
+            skipSpaces();
+            if ( pos >= input.length() )
+            {
+                throw error( "unexpected end of filter" );
+            }
+
+            final LdapFilter result;
+            final char c = input.charAt( pos );
+            if ( c == '&' || c == '|' )
+            {
+                pos++;
+                final List<LdapFilter> children = parseFilterList();
+                result = c == '&' ? and( children ) : or( children );
+            }
+            else if ( c == '!' )
+            {
+                pos++;
+                skipSpaces();
+                result = not( parseFilter() );
+                skipSpaces();
+            }
+            else
+            {
+                result = parseItem();
+            }
+            expect( ')' );
+            return result;
+        }
+
+        private List<LdapFilter> parseFilterList()
+        {
+            final List<LdapFilter> children = new ArrayList<>();
+            skipSpaces();
+            while ( pos < input.length() && input.charAt( pos ) == '(' )
+            {
+                children.add( parseFilter() );
+                skipSpaces();
+            }
+            return children;
+        }
+
+        private LdapFilter parseItem()
+        {
+            final int start = pos;
+            final int equalsIndex = input.indexOf( '=', pos );
+            if ( equalsIndex <= start )
+            {
+                throw error( "missing attribute or '=' in filter item" );
+            }
+
+            final char operator = input.charAt( equalsIndex - 1 );
+            final int valueStart = equalsIndex + 1;
+            final int valueEnd = findValueEnd( valueStart );
+            final String rawValue = input.substring( valueStart, valueEnd );
+            pos = valueEnd;
+
+            try
+            {
+                switch ( operator )
+                {
+                    case '~':
+                        return approximate( attributeName( start, equalsIndex - 1 ), unescape( rawValue ) );
+                    case '>':
+                        return greaterOrEqual( attributeName( start, equalsIndex - 1 ), unescape( rawValue ) );
+                    case '<':
+                        return lessOrEqual( attributeName( start, equalsIndex - 1 ), unescape( rawValue ) );
+                    case ':':
+                        return parseExtensible( input.substring( start, equalsIndex - 1 ), unescape( rawValue ) );
+                    default:
+                        return parseEquality( attributeName( start, equalsIndex ), rawValue );
+                }
+            }
+            catch ( IllegalArgumentException e )
+            {
+                throw error( e.getMessage() );
+            }
+        }
+
+        private String attributeName( final int start, final int end )
+        {
+            return input.substring( start, end ).trim();
+        }
+
+        private LdapFilter parseEquality( final String attributeName, final String rawValue )
+        {
+            if ( "*".equals( rawValue ) )
+            {
+                return present( attributeName );
+            }
+
+            final List<String> parts = new ArrayList<>();
+            int partStart = 0;
+            int index = 0;
+            while ( index < rawValue.length() )
+            {
+                final char c = rawValue.charAt( index );
+                if ( c == '*' )
+                {
+                    parts.add( unescape( rawValue.substring( partStart, index ) ) );
+                    partStart = index + 1;
+                }
+                index += c == '\\' ? 2 : 1;
+            }
+
+            if ( parts.isEmpty() )
+            {
+                return equality( attributeName, unescape( rawValue ) );
+            }
+            parts.add( unescape( rawValue.substring( Math.min( partStart, rawValue.length() ) ) ) );
+
+            final List<String> any = new ArrayList<>( parts.subList( 1, parts.size() - 1 ) );
+            any.removeIf( String::isEmpty );
+            return substring( attributeName, parts.get( 0 ), any, parts.get( parts.size() - 1 ) );
+        }
+
+        private LdapFilter parseExtensible( final String description, final String assertionValue )
+        {
+            final String[] segments = description.split( ":", -1 );
+            final String attributeName = segments[0].trim();
+            boolean dnAttributes = false;
+            String matchingRule = null;
+            for ( int i = 1; i < segments.length; i++ )
+            {
+                final String segment = segments[i].trim();
+                if ( "dn".equalsIgnoreCase( segment ) && i == 1 && matchingRule == null )
+                {
+                    dnAttributes = true;
+                }
+                else if ( matchingRule == null && !segment.isEmpty() )
+                {
+                    matchingRule = checkAttribute( segment );
+                }
+                else
+                {
+                    throw new IllegalArgumentException( "invalid extensible match description '" + description + "'" );
+                }
+            }
+
+            if ( attributeName.isEmpty() && matchingRule == null )
+            {
+                throw new IllegalArgumentException( "extensible match requires an attribute or matching rule" );
+            }
+
+            return new LdapFilter(
+                    Type.EXTENSIBLE,
+                    attributeName.isEmpty() ? null : checkAttribute( attributeName ),
+                    assertionValue,
+                    null,
+                    null,
+                    matchingRule,
+                    dnAttributes );
+        }
+
+        private int findValueEnd( final int start )
+        {
+            int index = start;
+            while ( index < input.length() )
+            {
+                final char c = input.charAt( index );
+                if ( c == ')' )
+                {
+                    return index;
+                }
+                else if ( c == '(' )
+                {
+                    pos = index;
+                    throw error( "unescaped '(' in assertion value" );
+                }
+                index += c == '\\' ? 2 : 1;
+            }
+            pos = input.length();
+            throw error( "unexpected end of filter" );
+        }
+
+        private String unescape( final String rawValue )
+        {
+            if ( rawValue.indexOf( '\\' ) < 0 )
+            {
+                return rawValue;
+            }
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream( rawValue.length() );
+            int index = 0;
+            while ( index < rawValue.length() )
+            {
+                final int escapeIndex = rawValue.indexOf( '\\', index );
+                if ( escapeIndex < 0 )
+                {
+                    writeUtf8( bytes, rawValue.substring( index ) );
+                    break;
+                }
+
+                writeUtf8( bytes, rawValue.substring( index, escapeIndex ) );
+                if ( escapeIndex + 1 >= rawValue.length() )
+                {
+                    throw new IllegalArgumentException( "incomplete escape sequence in assertion value" );
+                }
+
+                final int high = Character.digit( rawValue.charAt( escapeIndex + 1 ), 16 );
+                final int low = high >= 0 && escapeIndex + 2 < rawValue.length()
+                        ? Character.digit( rawValue.charAt( escapeIndex + 2 ), 16 )
+                        : -1;
+                if ( low >= 0 )
+                {
+                    bytes.write( ( high << 4 ) | low );
+                    index = escapeIndex + 3;
+                }
+                else
+                {
+                    // RFC 2254 style escaping of a single character, accepted for compatibility.
+                    writeUtf8( bytes, String.valueOf( rawValue.charAt( escapeIndex + 1 ) ) );
+                    index = escapeIndex + 2;
+                }
+            }
+            return new String( bytes.toByteArray(), StandardCharsets.UTF_8 );
+        }
+
+        private static void writeUtf8( final ByteArrayOutputStream bytes, final String value )
+        {
+            final byte[] encodedBytes = value.getBytes( StandardCharsets.UTF_8 );
+            bytes.write( encodedBytes, 0, encodedBytes.length );
+        }
+
+        private void expect( final char c )
+        {
+            if ( pos >= input.length() || input.charAt( pos ) != c )
+            {
+                throw error( "expected '" + c + "'" );
+            }
+            pos++;
+        }
+
+        private void skipSpaces()
+        {
+            while ( pos < input.length() && input.charAt( pos ) == ' ' )
+            {
+                pos++;
+            }
+        }
+
+        IllegalArgumentException error( final String message )
+        {
+            return new IllegalArgumentException( "invalid ldap filter '" + input + "' at position " + pos + ": " + message );
+        }
+    }
+}
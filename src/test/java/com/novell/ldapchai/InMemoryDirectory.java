@@ -0,0 +1,132 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai;
+
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.ChaiProviderFactorySetting;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.provider.DirectoryVendor;
+import com.novell.ldapchai.provider.InMemoryProviderImpl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Test fixture for an {@link InMemoryProviderImpl} directory.  The LDIF content is written to a file in a temporary
+ * directory, and providers are opened from a provider factory owned by the fixture, which is closed by
+ * {@link #close()}.
+ */
+public final class InMemoryDirectory implements AutoCloseable
+{
+    private final ChaiProviderFactory providerFactory;
+    private final ChaiConfiguration chaiConfiguration;
+
+    private InMemoryDirectory( final ChaiProviderFactory providerFactory, final ChaiConfiguration chaiConfiguration )
+    {
+        this.providerFactory = providerFactory;
+        this.chaiConfiguration = chaiConfiguration;
+    }
+
+    public static Builder builder( final Path tempDir, final CharSequence ldif )
+    {
+        return new Builder( tempDir, ldif );
+    }
+
+    public ChaiProvider newProvider()
+            throws ChaiUnavailableException
+    {
+        return providerFactory.newProvider( chaiConfiguration );
+    }
+
+    public ChaiProviderFactory getProviderFactory()
+    {
+        return providerFactory;
+    }
+
+    public ChaiConfiguration getChaiConfiguration()
+    {
+        return chaiConfiguration;
+    }
+
+    @Override
+    public void close()
+    {
+        providerFactory.close();
+    }
+
+    public static final class Builder
+    {
+        private final Path tempDir;
+        private final CharSequence ldif;
+        private final Map<ChaiSetting, String> settings = new LinkedHashMap<>();
+        private final Map<ChaiProviderFactorySetting, String> factorySettings = new LinkedHashMap<>();
+
+        private Builder( final Path tempDir, final CharSequence ldif )
+        {
+            this.tempDir = tempDir;
+            this.ldif = ldif;
+        }
+
+        public Builder vendor( final DirectoryVendor vendor )
+        {
+            return setting( ChaiSetting.DEFAULT_VENDOR, vendor.name() );
+        }
+
+        public Builder setting( final ChaiSetting setting, final String value )
+        {
+            settings.put( setting, value );
+            return this;
+        }
+
+        public Builder factorySetting( final ChaiProviderFactorySetting setting, final String value )
+        {
+            factorySettings.put( setting, value );
+            return this;
+        }
+
+        public Builder factorySettings( final Map<ChaiProviderFactorySetting, String> settings )
+        {
+            factorySettings.putAll( settings );
+            return this;
+        }
+
+        public InMemoryDirectory build()
+                throws IOException
+        {
+            final Path ldifFile = Files.createTempFile( tempDir, "directory", ".ldif" );
+            Files.write( ldifFile, ldif.toString().getBytes( StandardCharsets.UTF_8 ) );
+
+            final ChaiConfiguration chaiConfiguration = ChaiConfiguration.builder( "ldap://memory", "cn=admin", "password" )
+                    .setSetting( ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProviderImpl.class.getName() )
+                    .setSetting( ChaiSetting.IN_MEMORY_LDIF_FILE, ldifFile.toString() )
+                    .setSettings( settings )
+                    .build();
+
+            return new InMemoryDirectory( ChaiProviderFactory.newProviderFactory( factorySettings ), chaiConfiguration );
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai;
+
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.DirectoryVendor;
+import com.novell.ldapchai.provider.SearchScope;
+import com.novell.ldapchai.util.SearchHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+public class UserStatusSnapshotTest
+{
+    private static final String LDIF = "dn: o=example\nobjectClass: organization\no: example\n\n"
+            + "dn: ou=people,o=example\nobjectClass: organizationalUnit\nou: people\n\n"
+            + "dn: cn=active,ou=people,o=example\nobjectClass: inetOrgPerson\ncn: active\n"
+            + "passwordExpirationTime: 20990101000000Z\nloginGraceLimit: 3\nloginGraceRemaining: 3\n"
+            + "pwdChangedTime: 20240101000000Z\nloginTime: 20240601000000Z\n\n"
+            + "dn: cn=disabled,ou=people,o=example\nobjectClass: inetOrgPerson\ncn: disabled\n"
+            + "loginDisabled: TRUE\nlockedByIntruder: TRUE\npasswordExpirationTime: 20200101000000Z\n"
+            + "loginExpirationTime: 20200101000000Z\n\n"
+            + "dn: cn=grace,ou=people,o=example\nobjectClass: inetOrgPerson\ncn: grace\n"
+            + "loginGraceLimit: 3\nloginGraceRemaining: 1\n\n";
+
+    @TempDir
+    Path tempDir;
+
+    private InMemoryDirectory directory;
+
+    @AfterEach
+    public void tearDown()
+    {
+        directory.close();
+    }
+
+    private ChaiProvider newProvider()
+            throws Exception
+    {
+        directory = InMemoryDirectory.builder( tempDir, LDIF )
+                .vendor( DirectoryVendor.EDIRECTORY )
+                .build();
+        return directory.newProvider();
+    }
+
+    private static void assertMatchesUser( final ChaiUser user, final UserStatusSnapshot snapshot )
+            throws Exception
+    {
+        Assertions.assertEquals( user.getEntryDN(), snapshot.getEntryDN() );
+        Assertions.assertEquals( user.isAccountEnabled(), snapshot.isAccountEnabled() );
+        Assertions.assertEquals( user.isPasswordLocked(), snapshot.isPasswordLocked() );
+        Assertions.assertEquals( user.isPasswordExpired(), snapshot.isPasswordExpired() );
+        Assertions.assertEquals( user.isAccountExpired(), snapshot.isAccountExpired() );
+        Assertions.assertEquals( user.readPasswordModificationDate(), snapshot.getPasswordModificationDate() );
+        Assertions.assertEquals( user.readLastLoginTime(), snapshot.getLastLoginTime() );
+        Assertions.assertEquals( user.readAccountExpirationDate(), snapshot.getAccountExpirationDate() );
+    }
+
+    @Test
+    public void testSnapshotMatchesUserMethods()
+            throws Exception
+    {
+        final ChaiProvider provider = newProvider();
+
+        for ( final String cn : new String[] {"active", "disabled", "grace"} )
+        {
+            final ChaiUser user = provider.getEntryFactory().newChaiUser( "cn=" + cn + ",ou=people,o=example" );
+            assertMatchesUser( user, user.readStatusSnapshot() );
+        }
+
+        final UserStatusSnapshot active = provider.getEntryFactory().newChaiUser( "cn=active,ou=people,o=example" ).readStatusSnapshot();
+        Assertions.assertTrue( active.isAccountEnabled() );
+        Assertions.assertFalse( active.isPasswordExpired() );
+        Assertions.assertEquals( Instant.parse( "2099-01-01T00:00:00Z" ), active.getPasswordExpirationDate() );
+
+        final UserStatusSnapshot disabled = provider.getEntryFactory().newChaiUser( "cn=disabled,ou=people,o=example" ).readStatusSnapshot();
+        Assertions.assertFalse( disabled.isAccountEnabled() );
+        Assertions.assertTrue( disabled.isPasswordLocked() );
+        Assertions.assertTrue( disabled.isPasswordExpired() );
+        Assertions.assertTrue( disabled.isAccountExpired() );
+
+        final UserStatusSnapshot grace = provider.getEntryFactory().newChaiUser( "cn=grace,ou=people,o=example" ).readStatusSnapshot();
+        Assertions.assertTrue( grace.isPasswordExpired() );
+        Assertions.assertEquals( grace.getTimestamp(), grace.getPasswordExpirationDate() );
+    }
+
+    @Test
+    public void testSearch()
+            throws Exception
+    {
+        final ChaiProvider provider = newProvider();
+
+        final Map<String, UserStatusSnapshot> snapshots = new HashMap<>();
+        final int count = UserStatusSnapshot.search( provider, "ou=people,o=example",
+                new SearchHelper( "(objectClass=inetOrgPerson)", SearchScope.ONE ),
+                snapshot -> snapshots.put( snapshot.getEntryDN(), snapshot ) );
+
+        Assertions.assertEquals( 3, count );
+        Assertions.assertEquals( 3, snapshots.size() );
+        for ( final UserStatusSnapshot snapshot : snapshots.values() )
+        {
+            assertMatchesUser( provider.getEntryFactory().newChaiUser( snapshot.getEntryDN() ), snapshot );
+        }
+    }
+}
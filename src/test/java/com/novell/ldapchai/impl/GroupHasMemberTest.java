@@ -0,0 +1,137 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.impl;
+
+import com.novell.ldapchai.ChaiGroup;
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.InMemoryDirectory;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.ChaiProviderFactorySetting;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Optional;
+
+public class GroupHasMemberTest
+{
+    private static final String LDIF = "dn: o=example\nobjectClass: organization\no: example\n\n"
+            + "dn: cn=outer,o=example\nobjectClass: groupOfNames\ncn: outer\nmember: cn=inner,o=example\n\n"
+            + "dn: cn=inner,o=example\nobjectClass: groupOfNames\ncn: inner\nmember: cn=user1,o=example\n"
+            + "groupMembership: cn=outer,o=example\n\n"
+            + "dn: cn=other,o=example\nobjectClass: groupOfNames\ncn: other\n\n"
+            + "dn: cn=user1,o=example\nobjectClass: inetOrgPerson\ncn: user1\ngroupMembership: cn=inner,o=example\n\n"
+            + "dn: cn=user2,o=example\nobjectClass: inetOrgPerson\ncn: user2\n\n";
+
+    @TempDir
+    Path tempDir;
+
+    private InMemoryDirectory directory;
+    private ChaiProvider provider;
+
+    @BeforeEach
+    public void setUp()
+            throws Exception
+    {
+        directory = InMemoryDirectory.builder( tempDir, LDIF )
+                .build();
+        provider = directory.newProvider();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        directory.close();
+    }
+
+    @Test
+    public void testDirectAndNestedMembership()
+            throws Exception
+    {
+        final ChaiGroup outer = provider.getEntryFactory().newChaiGroup( "cn=outer,o=example" );
+        final ChaiGroup inner = provider.getEntryFactory().newChaiGroup( "cn=inner,o=example" );
+        final ChaiGroup other = provider.getEntryFactory().newChaiGroup( "cn=other,o=example" );
+        final ChaiUser user1 = provider.getEntryFactory().newChaiUser( "CN=User1,o=example" );
+        final ChaiUser user2 = provider.getEntryFactory().newChaiUser( "cn=user2,o=example" );
+
+        Assertions.assertTrue( inner.hasMember( user1 ) );
+        Assertions.assertFalse( outer.hasMember( user1 ) );
+        Assertions.assertTrue( outer.hasMember( user1, true ) );
+        Assertions.assertTrue( user1.isMemberOf( outer, true ) );
+        Assertions.assertFalse( user2.isMemberOf( inner, true ) );
+        Assertions.assertFalse( other.hasMember( user1, true ) );
+        Assertions.assertThrows( NullPointerException.class, () -> inner.hasMember( null ) );
+    }
+
+    @Test
+    public void testCacheInvalidatedByMembershipChange()
+            throws Exception
+    {
+        final ChaiGroup inner = provider.getEntryFactory().newChaiGroup( "cn=inner,o=example" );
+        final ChaiGroup outer = provider.getEntryFactory().newChaiGroup( "cn=outer,o=example" );
+        final ChaiUser user2 = provider.getEntryFactory().newChaiUser( "cn=user2,o=example" );
+
+        Assertions.assertFalse( inner.hasMember( user2 ) );
+        Assertions.assertFalse( outer.hasMember( user2, true ) );
+        Assertions.assertEquals( Optional.of( false ), directory.getProviderFactory().getMembershipCache()
+                .get( provider.getChaiConfiguration(), user2.getEntryDN(), inner.getEntryDN(), false ) );
+
+        // a change made outside the membership api is not observed until the cached result expires
+        inner.addAttribute( "member", user2.getEntryDN() );
+        Assertions.assertFalse( inner.hasMember( user2 ) );
+        inner.deleteAttribute( "member", user2.getEntryDN() );
+
+        inner.addMember( user2 );
+        Assertions.assertTrue( inner.hasMember( user2 ) );
+        Assertions.assertTrue( outer.hasMember( user2, true ) );
+
+        user2.removeGroupMembership( inner );
+        Assertions.assertFalse( user2.isMemberOf( inner ) );
+        Assertions.assertFalse( user2.isMemberOf( outer, true ) );
+    }
+
+    @Test
+    public void testCacheDisabled()
+            throws Exception
+    {
+        final ChaiProviderFactory uncachedFactory = ChaiProviderFactory.newProviderFactory(
+                Collections.singletonMap( ChaiProviderFactorySetting.MEMBERSHIP_CACHE_MAX_AGE_MS, "0" ) );
+        try
+        {
+            final ChaiProvider uncachedProvider = uncachedFactory.newProvider( provider.getChaiConfiguration() );
+            final ChaiGroup inner = uncachedProvider.getEntryFactory().newChaiGroup( "cn=inner,o=example" );
+            final ChaiUser user2 = uncachedProvider.getEntryFactory().newChaiUser( "cn=user2,o=example" );
+
+            Assertions.assertFalse( inner.hasMember( user2 ) );
+            inner.addAttribute( "member", user2.getEntryDN() );
+            Assertions.assertTrue( inner.hasMember( user2 ) );
+        }
+        finally
+        {
+            uncachedFactory.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.impl;
+
+import com.novell.ldapchai.ChaiGroup;
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.InMemoryDirectory;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiSetting;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+public class GroupMembershipBatchTest
+{
+    private static final int USER_COUNT = 25;
+
+    @TempDir
+    Path tempDir;
+
+    private InMemoryDirectory directory;
+    private ChaiProvider provider;
+
+    @BeforeEach
+    public void setUp()
+            throws Exception
+    {
+        final StringBuilder ldif = new StringBuilder( "dn: o=example\nobjectClass: organization\no: example\n\n"
+                + "dn: cn=group,o=example\nobjectClass: groupOfNames\ncn: group\n\n" );
+        for ( int i = 0; i < USER_COUNT; i++ )
+        {
+            ldif.append( "dn: cn=user" ).append( i ).append( ",o=example\nobjectClass: inetOrgPerson\ncn: user" ).append( i ).append( "\n\n" );
+        }
+        directory = InMemoryDirectory.builder( tempDir, ldif )
+                .setting( ChaiSetting.GROUP_MEMBERSHIP_BATCH_SIZE, "10" )
+                .setting( ChaiSetting.GROUP_MEMBERSHIP_THREADS, "3" )
+                .build();
+        provider = directory.newProvider();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        directory.close();
+    }
+
+    private List<ChaiUser> users( final int from, final int to )
+            throws Exception
+    {
+        final List<ChaiUser> users = new ArrayList<>();
+        for ( int i = from; i < to; i++ )
+        {
+            users.add( provider.getEntryFactory().newChaiUser( "cn=user" + i + ",o=example" ) );
+        }
+        return users;
+    }
+
+    @Test
+    public void testAddAndRemoveMembers()
+            throws Exception
+    {
+        final ChaiGroup group = provider.getEntryFactory().newChaiGroup( "cn=group,o=example" );
+
+        group.addMembers( users( 0, USER_COUNT ) );
+        Assertions.assertEquals( USER_COUNT, group.readMultiStringAttribute( "member" ).size() );
+        for ( final ChaiUser user : users( 0, USER_COUNT ) )
+        {
+            Assertions.assertEquals( Collections.singleton( "cn=group,o=example" ), user.readMultiStringAttribute( "groupMembership" ) );
+        }
+
+        // users 20-24 are no longer members, and are ignored
+        group.removeMembers( users( 5, 20 ) );
+        group.removeMembers( users( 15, USER_COUNT ) );
+        Assertions.assertEquals( 5, group.readMultiStringAttribute( "member" ).size() );
+        Assertions.assertTrue( users( 5, 6 ).get( 0 ).readMultiStringAttribute( "groupMembership" ).isEmpty() );
+        Assertions.assertEquals( 1, users( 4, 5 ).get( 0 ).readMultiStringAttribute( "groupMembership" ).size() );
+
+        group.addMembers( Collections.emptyList() );
+        Assertions.assertThrows( NullPointerException.class, () -> group.addMembers( Arrays.asList( null, null ) ) );
+    }
+
+    @Test
+    public void testAddExistingMember()
+            throws Exception
+    {
+        final ChaiGroup group = provider.getEntryFactory().newChaiGroup( "cn=group,o=example" );
+        group.addMember( users( 3, 4 ).get( 0 ) );
+
+        // the chunk containing the existing member is rejected and retried value by value
+        Assertions.assertThrows( ChaiOperationException.class, () -> group.addMembers( users( 0, 12 ) ) );
+
+        final List<String> expected = new ArrayList<>();
+        for ( final ChaiUser user : users( 0, 12 ) )
+        {
+            expected.add( user.getEntryDN() );
+        }
+        Assertions.assertEquals( new HashSet<>( expected ), group.readMultiStringAttribute( "member" ) );
+    }
+
+    @Test
+    public void testFailedGroupValueSkipsMemberEntry()
+            throws Exception
+    {
+        final ChaiGroup group = provider.getEntryFactory().newChaiGroup( "cn=group,o=example" );
+        provider.writeStringAttribute( group.getEntryDN(), "member", Collections.singleton( "cn=user3,o=example" ), false );
+
+        Assertions.assertThrows( ChaiOperationException.class, () -> group.addMembers( users( 0, 12 ) ) );
+
+        // the member value of user3 was rejected, so its entry is not modified.
+        Assertions.assertTrue( users( 3, 4 ).get( 0 ).readMultiStringAttribute( "groupMembership" ).isEmpty() );
+        for ( final ChaiUser user : users( 4, 12 ) )
+        {
+            Assertions.assertEquals( Collections.singleton( group.getEntryDN() ), user.readMultiStringAttribute( "groupMembership" ) );
+        }
+    }
+
+    @Test
+    public void testRemoveMissingBackLink()
+            throws Exception
+    {
+        final ChaiProvider edirProvider = directory.getProviderFactory().newProvider( ChaiConfiguration.builder( provider.getChaiConfiguration() )
+                .setSetting( ChaiSetting.DEFAULT_VENDOR, "EDIRECTORY" )
+                .build() );
+        final ChaiGroup group = edirProvider.getEntryFactory().newChaiGroup( "cn=group,o=example" );
+        final List<ChaiUser> users = new ArrayList<>();
+        for ( int i = 0; i < 5; i++ )
+        {
+            users.add( edirProvider.getEntryFactory().newChaiUser( "cn=user" + i + ",o=example" ) );
+        }
+
+        group.addMembers( users );
+        Assertions.assertEquals( Collections.singleton( group.getEntryDN() ), users.get( 0 ).readMultiStringAttribute( "securityEquals" ) );
+        edirProvider.deleteStringAttributeValue( users.get( 0 ).getEntryDN(), "groupMembership", group.getEntryDN() );
+
+        // the missing groupMembership value does not stop securityEquals from being removed.
+        group.removeMembers( users );
+        for ( final ChaiUser user : users )
+        {
+            Assertions.assertTrue( user.readMultiStringAttribute( "groupMembership" ).isEmpty() );
+            Assertions.assertTrue( user.readMultiStringAttribute( "securityEquals" ).isEmpty() );
+        }
+        Assertions.assertTrue( group.readMultiStringAttribute( "member" ).isEmpty() );
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.impl;
+
+import com.novell.ldapchai.ChaiEntry;
+import com.novell.ldapchai.ChaiEntryFactory;
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.InMemoryDirectory;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ProviderStatistics;
+import com.novell.ldapchai.provider.SearchScope;
+import com.novell.ldapchai.util.LdapAttributeMap;
+import com.novell.ldapchai.util.SearchHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PreloadedAttributesTest
+{
+    private static final int USER_COUNT = 20;
+
+    @TempDir
+    Path tempDir;
+
+    private InMemoryDirectory directory;
+    private ChaiProvider provider;
+
+    @BeforeEach
+    public void setUp()
+            throws Exception
+    {
+        final StringBuilder ldif = new StringBuilder( "dn: o=example\nobjectClass: organization\no: example\n\n" );
+        for ( int i = 0; i < USER_COUNT; i++ )
+        {
+            ldif.append( "dn: cn=user" ).append( i ).append( ",o=example\nobjectClass: inetOrgPerson\ncn: user" ).append( i )
+                    .append( "\nsn: surname" ).append( i ).append( "\nmail: user" ).append( i ).append( "@example.com\n" );
+            if ( i % 2 == 0 )
+            {
+                ldif.append( "givenName: given" ).append( i ).append( "\ndescription: first\ndescription: second\n" );
+            }
+            ldif.append( "\n" );
+        }
+        ldif.append( "dn: cn=large,o=example\nobjectClass: groupOfNames\ncn: large\n" );
+        for ( int i = 0; i < 5; i++ )
+        {
+            ldif.append( "member: cn=user" ).append( i ).append( ",o=example\n" );
+        }
+        ldif.append( "\ndn: cn=small,o=example\nobjectClass: groupOfNames\ncn: small\nmember: cn=user1,o=example\n\n" );
+        directory = InMemoryDirectory.builder( tempDir, ldif )
+                .build();
+        provider = directory.newProvider();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        directory.close();
+    }
+
+    private long searchCount()
+    {
+        return provider.getProviderStatistics().getIncrementorStatistic( ProviderStatistics.IncrementerStatistic.SEARCH_COUNT );
+    }
+
+    private Set<ChaiUser> searchUsers( final String... attributes )
+            throws Exception
+    {
+        final ChaiEntry root = ChaiEntryFactory.newChaiFactory( provider ).newChaiEntry( "o=example" );
+        return root.searchPreloadedUsers( new SearchHelper( "(objectClass=inetOrgPerson)", SearchScope.ONE, attributes ) );
+    }
+
+    @Test
+    public void testRequestedAttributesReadLocally()
+            throws Exception
+    {
+        final Set<ChaiUser> users = searchUsers( "cn", "givenName", "description" );
+        Assertions.assertEquals( USER_COUNT, users.size() );
+
+        final long searchesBefore = searchCount();
+        for ( final ChaiUser user : users )
+        {
+            final String cn = user.readStringAttribute( "cn" );
+            Assertions.assertEquals( user.getEntryDN(), "cn=" + cn + ",o=example" );
+            Assertions.assertEquals( cn, user.readStringAttribute( "CN" ) );
+
+            final boolean even = Integer.parseInt( cn.substring( "user".length() ) ) % 2 == 0;
+            Assertions.assertEquals( even ? "given" + cn.substring( "user".length() ) : null, user.readGivenName() );
+            Assertions.assertEquals( even ? new HashSet<>( Arrays.asList( "first", "second" ) ) : Collections.emptySet(),
+                    user.readMultiStringAttribute( "description" ) );
+        }
+        Assertions.assertEquals( searchesBefore, searchCount() );
+    }
+
+    @Test
+    public void testMissingAttributesLoadedTogether()
+            throws Exception
+    {
+        final Set<ChaiUser> users = searchUsers( "cn" );
+
+        final long searchesBefore = searchCount();
+        for ( final ChaiUser user : users )
+        {
+            final Map<String, String> values = user.readStringAttributes( new HashSet<>( Arrays.asList( "sn", "mail" ) ) );
+            final String suffix = user.readStringAttribute( "cn" ).substring( "user".length() );
+            Assertions.assertEquals( "surname" + suffix, values.get( "sn" ) );
+            Assertions.assertEquals( "user" + suffix + "@example.com", values.get( "MAIL" ) );
+            Assertions.assertEquals( "surname" + suffix, user.readSurname() );
+        }
+        Assertions.assertEquals( searchesBefore + 1, searchCount() );
+
+        for ( final ChaiUser user : users )
+        {
+            Assertions.assertEquals( Collections.singleton( "inetOrgPerson" ), user.readObjectClass() );
+        }
+        Assertions.assertEquals( searchesBefore + 2, searchCount() );
+    }
+
+    @Test
+    public void testWriteDiscardsPreloadedValues()
+            throws Exception
+    {
+        final Set<ChaiUser> users = searchUsers( "cn", "sn" );
+        final ChaiUser modifiedUser = users.iterator().next();
+        final ChaiUser otherUser = users.stream().skip( 1 ).findFirst().orElseThrow( IllegalStateException::new );
+
+        modifiedUser.writeStringAttribute( "sn", "changed" );
+        provider.writeStringAttribute( otherUser.getEntryDN(), "sn", Collections.singleton( "changed" ), true );
+
+        Assertions.assertEquals( "changed", modifiedUser.readStringAttribute( "sn" ) );
+        Assertions.assertNotEquals( "changed", otherUser.readStringAttribute( "sn" ) );
+    }
+
+    /**
+     * Provider that returns values of multi-valued attributes with more than two values in ranges, as Active
+     * Directory does for large groups, and resolves the {@code commonName} alias to {@code cn}.
+     */
+    private ChaiProvider rangedAliasingProvider()
+    {
+        return ( ChaiProvider ) Proxy.newProxyInstance(
+                ChaiProvider.class.getClassLoader(),
+                new Class<?>[] {ChaiProvider.class},
+                ( proxy, method, args ) ->
+                {
+                    if ( "searchMultiValues".equals( method.getName() ) && args.length == 2 )
+                    {
+                        final SearchHelper searchHelper = new SearchHelper( ( SearchHelper ) args[1] );
+                        if ( searchHelper.getAttributes() != null )
+                        {
+                            final Set<String> attributes = new LinkedHashSet<>();
+                            for ( final String attribute : searchHelper.getAttributes() )
+                            {
+                                attributes.add( "commonName".equals( attribute ) ? "cn" : attribute );
+                            }
+                            searchHelper.setAttributes( attributes );
+                        }
+
+                        final Map<String, Map<String, List<String>>> results = new LinkedHashMap<>();
+                        for ( final Map.Entry<String, Map<String, List<String>>> entry
+                                : provider.searchMultiValues( ( String ) args[0], searchHelper ).entrySet() )
+                        {
+                            final Map<String, List<String>> values = new LdapAttributeMap<>();
+                            for ( final Map.Entry<String, List<String>> attribute : entry.getValue().entrySet() )
+                            {
+                                if ( attribute.getValue().size() > 2 )
+                                {
+                                    values.put( attribute.getKey() + ";range=0-1", attribute.getValue().subList( 0, 2 ) );
+                                }
+                                else
+                                {
+                                    values.put( attribute.getKey(), attribute.getValue() );
+                                }
+                            }
+                            results.put( entry.getKey(), values );
+                        }
+                        return results;
+                    }
+                    try
+                    {
+                        return method.invoke( provider, args );
+                    }
+                    catch ( final InvocationTargetException e )
+                    {
+                        throw e.getCause();
+                    }
+                } );
+    }
+
+    @Test
+    public void testRangedAttributesReadDirectly()
+            throws Exception
+    {
+        final ChaiEntry root = ChaiEntryFactory.newChaiFactory( rangedAliasingProvider() ).newChaiEntry( "o=example" );
+        final Map<String, ChaiEntry> groups = new HashMap<>();
+        for ( final ChaiEntry group : root.searchPreloaded( new SearchHelper( "(objectClass=groupOfNames)", SearchScope.ONE, new String[] {"member"} ) ) )
+        {
+            groups.put( group.getEntryDN(), group );
+        }
+
+        final Set<String> largeMembers = groups.get( "cn=large,o=example" ).readMultiStringAttribute( "member" );
+        Assertions.assertEquals( provider.readMultiStringAttribute( "cn=large,o=example", "member" ), largeMembers );
+        Assertions.assertEquals( 5, largeMembers.size() );
+        Assertions.assertEquals( Collections.singleton( "cn=user1,o=example" ), groups.get( "cn=small,o=example" ).readMultiStringAttribute( "member" ) );
+
+        final Set<ChaiEntry> allAttributeGroups = root.searchPreloaded( new SearchHelper( "(cn=large)", SearchScope.ONE, ( String[] ) null ) );
+        Assertions.assertEquals( largeMembers, allAttributeGroups.iterator().next().readMultiStringAttribute( "member" ) );
+    }
+
+    @Test
+    public void testAliasedAttributesReadDirectly()
+            throws Exception
+    {
+        final ChaiEntry root = ChaiEntryFactory.newChaiFactory( rangedAliasingProvider() ).newChaiEntry( "o=example" );
+        final Set<ChaiUser> users = root.searchPreloadedUsers( new SearchHelper( "(objectClass=inetOrgPerson)", SearchScope.ONE, new String[] {"commonName", "sn"} ) );
+        Assertions.assertEquals( USER_COUNT, users.size() );
+
+        for ( final ChaiUser user : users )
+        {
+            Assertions.assertEquals( provider.readStringAttribute( user.getEntryDN(), "commonName" ), user.readStringAttribute( "commonName" ) );
+            Assertions.assertEquals( provider.readStringAttribute( user.getEntryDN(), "sn" ), user.readStringAttribute( "sn" ) );
+            Assertions.assertEquals( user.getEntryDN(), "cn=" + user.readStringAttribute( "cn" ) + ",o=example" );
+        }
+    }
+}
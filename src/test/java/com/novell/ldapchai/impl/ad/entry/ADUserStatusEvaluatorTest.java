@@ -0,0 +1,187 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.impl.ad.entry;
+
+import com.novell.ldapchai.InMemoryDirectory;
+import com.novell.ldapchai.UserStatusSnapshot;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.DirectoryVendor;
+import com.novell.ldapchai.provider.SearchScope;
+import com.novell.ldapchai.util.SearchHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ADUserStatusEvaluatorTest
+{
+    private static final Duration MAX_PWD_AGE = Duration.ofDays( 42 );
+
+    @TempDir
+    Path tempDir;
+
+    private InMemoryDirectory directory;
+
+    @AfterEach
+    public void tearDown()
+    {
+        directory.close();
+    }
+
+    private ChaiProvider newProvider( final Instant now )
+            throws Exception
+    {
+        return newProvider( now, "-18000000000", "" );
+    }
+
+    private ChaiProvider newProvider( final Instant now, final String lockoutDuration, final String additionalLdif )
+            throws Exception
+    {
+        final String ldif = "dn: dc=example,dc=com\nobjectClass: domain\ndc: example\nminPwdLength: 7\n"
+                + "maxPwdAge: -" + MAX_PWD_AGE.toMillis() * 10000 + "\nlockoutDuration: " + lockoutDuration + "\n\n"
+                + "dn: cn=Users,dc=example,dc=com\nobjectClass: container\ncn: Users\n\n"
+                + "dn: cn=active,cn=Users,dc=example,dc=com\nobjectClass: user\ncn: active\nuserAccountControl: 512\n"
+                + "pwdLastSet: " + winEpoch( now.minus( Duration.ofDays( 1 ) ) ) + "\n"
+                + "lastLogon: " + winEpoch( now.minus( Duration.ofHours( 2 ) ) ) + "\n"
+                + "lastLogonTimestamp: " + winEpoch( now.minus( Duration.ofDays( 3 ) ) ) + "\n\n"
+                + "dn: cn=locked,cn=Users,dc=example,dc=com\nobjectClass: user\ncn: locked\nuserAccountControl: 514\n"
+                + "lockoutTime: " + winEpoch( now.minus( Duration.ofMinutes( 5 ) ) ) + "\n"
+                + "pwdLastSet: " + winEpoch( now.minus( Duration.ofDays( 50 ) ) ) + "\n\n"
+                + "dn: cn=noexpire,cn=Users,dc=example,dc=com\nobjectClass: user\ncn: noexpire\nuserAccountControl: 66048\n"
+                + "lockoutTime: " + winEpoch( now.minus( Duration.ofHours( 1 ) ) ) + "\n"
+                + "pwdLastSet: " + winEpoch( now.minus( Duration.ofDays( 500 ) ) ) + "\n\n"
+                + additionalLdif;
+
+        directory = InMemoryDirectory.builder( tempDir, ldif )
+                .vendor( DirectoryVendor.ACTIVE_DIRECTORY )
+                .build();
+        return directory.newProvider();
+    }
+
+    private static String winEpoch( final Instant instant )
+    {
+        return ADEntries.convertDateToWinEpoch( instant );
+    }
+
+    @Test
+    public void testStatusComputedFromDomainPolicy()
+            throws Exception
+    {
+        final Instant now = Instant.now();
+        final ChaiProvider provider = newProvider( now );
+
+        final Map<String, UserStatusSnapshot> snapshots = new HashMap<>();
+        final int count = UserStatusSnapshot.search( provider, "cn=Users,dc=example,dc=com",
+                new SearchHelper( "(objectClass=user)", SearchScope.ONE ),
+                snapshot -> snapshots.put( snapshot.getEntryDN(), snapshot ) );
+        Assertions.assertEquals( 3, count );
+
+        final UserStatusSnapshot active = snapshots.get( "cn=active,cn=Users,dc=example,dc=com" );
+        Assertions.assertTrue( active.isAccountEnabled() );
+        Assertions.assertFalse( active.isPasswordLocked() );
+        Assertions.assertFalse( active.isPasswordExpired() );
+        Assertions.assertEquals( active.getPasswordModificationDate().plus( MAX_PWD_AGE ), active.getPasswordExpirationDate() );
+        Assertions.assertTrue( active.getLastLoginTime().isAfter( now.minus( Duration.ofHours( 3 ) ) ) );
+
+        final UserStatusSnapshot locked = snapshots.get( "cn=locked,cn=Users,dc=example,dc=com" );
+        Assertions.assertFalse( locked.isAccountEnabled() );
+        Assertions.assertTrue( locked.isPasswordLocked() );
+        Assertions.assertTrue( locked.isPasswordExpired() );
+
+        // lockout duration has elapsed, and the password does not expire
+        final UserStatusSnapshot noExpire = snapshots.get( "cn=noexpire,cn=Users,dc=example,dc=com" );
+        Assertions.assertTrue( noExpire.isAccountEnabled() );
+        Assertions.assertFalse( noExpire.isPasswordLocked() );
+        Assertions.assertFalse( noExpire.isPasswordExpired() );
+        Assertions.assertNull( noExpire.getPasswordExpirationDate() );
+    }
+
+    @Test
+    public void testComputedAttributesTakePrecedence()
+            throws Exception
+    {
+        final ChaiProvider provider = newProvider( Instant.now() );
+        provider.writeStringAttribute( "cn=active,cn=Users,dc=example,dc=com", "msDS-User-Account-Control-Computed",
+                Collections.singleton( String.valueOf( 0x10 | 0x800000 ) ), true );
+
+        final UserStatusSnapshot snapshot = provider.getEntryFactory().newChaiUser( "cn=active,cn=Users,dc=example,dc=com" ).readStatusSnapshot();
+        Assertions.assertTrue( snapshot.isPasswordLocked() );
+        Assertions.assertTrue( snapshot.isPasswordExpired() );
+    }
+
+    @Test
+    public void testLockoutUntilUnlocked()
+            throws Exception
+    {
+        final ChaiProvider provider = newProvider( Instant.now(), String.valueOf( Long.MIN_VALUE ), "" );
+
+        final Map<String, UserStatusSnapshot> snapshots = new HashMap<>();
+        UserStatusSnapshot.search( provider, "cn=Users,dc=example,dc=com", new SearchHelper( "(objectClass=user)", SearchScope.ONE ),
+                snapshot -> snapshots.put( snapshot.getEntryDN(), snapshot ) );
+
+        // locked an hour ago, longer than the default lockout duration of the other tests
+        final UserStatusSnapshot snapshot = snapshots.get( "cn=noexpire,cn=Users,dc=example,dc=com" );
+        Assertions.assertTrue( snapshot.isPasswordLocked() );
+        Assertions.assertFalse( snapshot.isPasswordExpired() );
+    }
+
+    @Test
+    public void testStatusComputedFromResultantPso()
+            throws Exception
+    {
+        final Instant now = Instant.now();
+        final String psoDN = "CN=strict,CN=Password Settings Container,CN=System,dc=example,dc=com";
+        final String psoLdif = "dn: CN=System,dc=example,dc=com\nobjectClass: container\ncn: System\n\n"
+                + "dn: CN=Password Settings Container,CN=System,dc=example,dc=com\nobjectClass: msDS-PasswordSettingsContainer\n"
+                + "cn: Password Settings Container\n\n"
+                + "dn: " + psoDN + "\nobjectClass: msDS-PasswordSettings\ncn: strict\n"
+                + "msDS-MaximumPasswordAge: -" + Duration.ofDays( 10 ).toMillis() * 10000 + "\n"
+                + "msDS-LockoutDuration: " + Long.MIN_VALUE + "\n\n"
+                + "dn: cn=strict,cn=Users,dc=example,dc=com\nobjectClass: user\ncn: strict\nuserAccountControl: 512\n"
+                + "msDS-ResultantPSO: " + psoDN + "\n"
+                + "lockoutTime: " + winEpoch( now.minus( Duration.ofHours( 2 ) ) ) + "\n"
+                + "pwdLastSet: " + winEpoch( now.minus( Duration.ofDays( 20 ) ) ) + "\n\n";
+        final ChaiProvider provider = newProvider( now, "-18000000000", psoLdif );
+
+        final Map<String, UserStatusSnapshot> snapshots = new HashMap<>();
+        UserStatusSnapshot.search( provider, "cn=Users,dc=example,dc=com", new SearchHelper( "(objectClass=user)", SearchScope.ONE ),
+                snapshot -> snapshots.put( snapshot.getEntryDN(), snapshot ) );
+
+        // the pso locks until unlocked and expires passwords after 10 days, where the domain would not
+        final UserStatusSnapshot strict = snapshots.get( "cn=strict,cn=Users,dc=example,dc=com" );
+        Assertions.assertTrue( strict.isPasswordLocked() );
+        Assertions.assertTrue( strict.isPasswordExpired() );
+        Assertions.assertEquals( strict.getPasswordModificationDate().plus( Duration.ofDays( 10 ) ), strict.getPasswordExpirationDate() );
+
+        // users without a resultant pso use the domain policy
+        final UserStatusSnapshot noExpire = snapshots.get( "cn=noexpire,cn=Users,dc=example,dc=com" );
+        Assertions.assertFalse( noExpire.isPasswordLocked() );
+        final UserStatusSnapshot active = snapshots.get( "cn=active,cn=Users,dc=example,dc=com" );
+        Assertions.assertEquals( active.getPasswordModificationDate().plus( MAX_PWD_AGE ), active.getPasswordExpirationDate() );
+    }
+}
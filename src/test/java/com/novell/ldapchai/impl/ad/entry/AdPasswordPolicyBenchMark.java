@@ -0,0 +1,159 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.impl.ad.entry;
+
+import com.novell.ldapchai.ChaiPasswordPolicy;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.ChaiProviderFactorySetting;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.provider.InMemoryProviderImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of Active Directory password policy resolution against {@link InMemoryProviderImpl}, with and without
+ * the factory policy cache.  Half of the users are assigned a fine-grained password settings object.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@State( Scope.Benchmark )
+@Fork( value = 1 )
+@Warmup( iterations = 1 )
+@Measurement( iterations = 2 )
+@Threads( 4 )
+public class AdPasswordPolicyBenchMark
+{
+    private static final String DOMAIN_DN = "dc=example,dc=com";
+    private static final String PSO_CONTAINER_DN = "cn=Password Settings Container,cn=System," + DOMAIN_DN;
+
+    @Param( {
+            "true",
+            "false"
+    } )
+    public boolean policyCache;
+
+    @Param( {
+            "1000"
+    } )
+    public int userCount;
+
+    @Param( {
+            "10"
+    } )
+    public int psoCount;
+
+    private ChaiProviderFactory providerFactory;
+    private ChaiProvider provider;
+
+    public static void main( final String[] args ) throws RunnerException
+    {
+        final Options opt = new OptionsBuilder()
+                .include( AdPasswordPolicyBenchMark.class.getSimpleName() )
+                .forks( 1 )
+                .build();
+
+        new Runner( opt ).run();
+    }
+
+    @Setup
+    public void setup()
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        providerFactory = ChaiProviderFactory.newProviderFactory( policyCache
+                ? Collections.emptyMap()
+                : Collections.singletonMap( ChaiProviderFactorySetting.POLICY_CACHE_MAX_AGE_MS, "0" ) );
+        provider = providerFactory.newProvider( ChaiConfiguration.builder( "ldap://memory", "cn=admin", "password" )
+                .setSetting( ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProviderImpl.class.getName() )
+                .setSetting( ChaiSetting.DEFAULT_VENDOR, "ACTIVE_DIRECTORY" )
+                .build() );
+
+        provider.createEntry( DOMAIN_DN, "domain", Collections.singletonMap( "minPwdLength", "7" ) );
+        provider.createEntry( "cn=System," + DOMAIN_DN, "container", Collections.emptyMap() );
+        provider.createEntry( PSO_CONTAINER_DN, "msDS-PasswordSettingsContainer", Collections.emptyMap() );
+        for ( int i = 0; i < psoCount; i++ )
+        {
+            final Map<String, String> attributes = new HashMap<>();
+            attributes.put( "msDS-MinimumPasswordLength", String.valueOf( 8 + i ) );
+            attributes.put( "msDS-PasswordHistoryLength", "24" );
+            attributes.put( "msDS-MaximumPasswordAge", "-36288000000000" );
+            attributes.put( "whenChanged", "20240101000000.0Z" );
+            provider.createEntry( psoDN( i ), "msDS-PasswordSettings", attributes );
+        }
+
+        provider.createEntry( "cn=Users," + DOMAIN_DN, "container", Collections.emptyMap() );
+        for ( int i = 0; i < userCount; i++ )
+        {
+            final Map<String, String> attributes = i % 2 == 0
+                    ? Collections.singletonMap( "msDS-ResultantPSO", psoDN( i % psoCount ) )
+                    : Collections.emptyMap();
+            provider.createEntry( userDN( i ), "user", attributes );
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        providerFactory.close();
+    }
+
+    @Benchmark
+    public ChaiPasswordPolicy readPasswordPolicy()
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        final int index = ThreadLocalRandom.current().nextInt( userCount );
+        return provider.getEntryFactory().newChaiUser( userDN( index ) ).getPasswordPolicy();
+    }
+
+    private static String psoDN( final int index )
+    {
+        return "cn=pso" + index + "," + PSO_CONTAINER_DN;
+    }
+
+    private static String userDN( final int index )
+    {
+        return "cn=user" + index + ",cn=Users," + DOMAIN_DN;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.impl.ad.entry;
+
+import com.novell.ldapchai.ChaiPasswordRule;
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.InMemoryDirectory;
+import com.novell.ldapchai.exception.ChaiPasswordPolicyException;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactorySetting;
+import com.novell.ldapchai.provider.DirectoryVendor;
+import com.novell.ldapchai.util.PasswordPolicyEvaluator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+public class DomainPasswordPoliciesTest
+{
+    private static final String PSO_DN = "cn=pso1,cn=Password Settings Container,cn=System,dc=example,dc=com";
+
+    private static final String LDIF = "dn: dc=example,dc=com\nobjectClass: domain\ndc: example\nminPwdLength: 7\n\n"
+            + "dn: cn=System,dc=example,dc=com\nobjectClass: container\ncn: System\n\n"
+            + "dn: cn=Password Settings Container,cn=System,dc=example,dc=com\nobjectClass: msDS-PasswordSettingsContainer\n"
+            + "cn: Password Settings Container\n\n"
+            + "dn: " + PSO_DN + "\nobjectClass: msDS-PasswordSettings\ncn: pso1\n"
+            + "msDS-MinimumPasswordLength: 12\nmsDS-PasswordComplexityEnabled: TRUE\nwhenChanged: 20240101000000.0Z\n\n"
+            + "dn: cn=Users,dc=example,dc=com\nobjectClass: container\ncn: Users\n\n"
+            + "dn: cn=user1,cn=Users,dc=example,dc=com\nobjectClass: user\ncn: user1\n\n"
+            + "dn: cn=user2,cn=Users,dc=example,dc=com\nobjectClass: user\ncn: user2\nmsDS-ResultantPSO: " + PSO_DN + "\n\n";
+
+    @TempDir
+    Path tempDir;
+
+    private InMemoryDirectory directory;
+
+    @AfterEach
+    public void tearDown()
+    {
+        directory.close();
+    }
+
+    private ChaiProvider newProvider( final Map<ChaiProviderFactorySetting, String> factorySettings )
+            throws Exception
+    {
+        directory = InMemoryDirectory.builder( tempDir, LDIF )
+                .vendor( DirectoryVendor.ACTIVE_DIRECTORY )
+                .factorySettings( factorySettings )
+                .build();
+        return directory.newProvider();
+    }
+
+    private static String minimumLength( final ChaiProvider provider, final String userDN )
+            throws Exception
+    {
+        final ChaiUser user = provider.getEntryFactory().newChaiUser( userDN );
+        return user.getPasswordPolicy().getValue( ChaiPasswordRule.MinimumLength );
+    }
+
+    @Test
+    public void testDomainAndPsoPolicies()
+            throws Exception
+    {
+        final ChaiProvider provider = newProvider( Collections.emptyMap() );
+
+        Assertions.assertEquals( "7", minimumLength( provider, "cn=user1,cn=Users,dc=example,dc=com" ) );
+        Assertions.assertEquals( "12", minimumLength( provider, "cn=user2,cn=Users,dc=example,dc=com" ) );
+
+        final DomainPasswordPolicies policies = DomainPasswordPolicies.forDomain( provider, "dc=example,dc=com" );
+        Assertions.assertEquals( 1, policies.getPsoDNs().size() );
+        Assertions.assertEquals( "true", policies.getDomainPolicy().getValue( ChaiPasswordRule.AllowNumeric ) );
+    }
+
+    @Test
+    public void testPoliciesAreCached()
+            throws Exception
+    {
+        final ChaiProvider provider = newProvider( Collections.emptyMap() );
+
+        Assertions.assertEquals( "12", minimumLength( provider, "cn=user2,cn=Users,dc=example,dc=com" ) );
+
+        // snapshot is not revalidated yet, so neither change is observed
+        provider.writeStringAttribute( PSO_DN, "msDS-MinimumPasswordLength", Collections.singleton( "14" ), true );
+        provider.writeStringAttribute( "dc=example,dc=com", "minPwdLength", Collections.singleton( "8" ), true );
+        Assertions.assertEquals( "12", minimumLength( provider, "cn=user2,cn=Users,dc=example,dc=com" ) );
+        Assertions.assertEquals( "7", minimumLength( provider, "cn=user1,cn=Users,dc=example,dc=com" ) );
+    }
+
+    @Test
+    public void testEvaluatorsAreCached()
+            throws Exception
+    {
+        final ChaiProvider provider = newProvider( Collections.emptyMap() );
+        final ChaiUser user1 = provider.getEntryFactory().newChaiUser( "cn=user1,cn=Users,dc=example,dc=com" );
+        final ChaiUser user2 = provider.getEntryFactory().newChaiUser( "cn=user2,cn=Users,dc=example,dc=com" );
+
+        final PasswordPolicyEvaluator domainEvaluator = DomainPasswordPolicies.readPasswordPolicyEvaluator( user1 );
+        final PasswordPolicyEvaluator psoEvaluator = DomainPasswordPolicies.readPasswordPolicyEvaluator( user2 );
+        Assertions.assertNotSame( domainEvaluator, psoEvaluator );
+        Assertions.assertSame( domainEvaluator, DomainPasswordPolicies.readPasswordPolicyEvaluator( user1 ) );
+        Assertions.assertSame( psoEvaluator, DomainPasswordPolicies.readPasswordPolicyEvaluator( user2 ) );
+
+        Assertions.assertTrue( user1.testPasswordPolicy( "abcdefgh" ) );
+        Assertions.assertThrows( ChaiPasswordPolicyException.class, () -> user2.testPasswordPolicy( "abcdefgh" ) );
+    }
+
+    @Test
+    public void testDomainComplexity()
+            throws Exception
+    {
+        final ChaiProvider provider = newProvider( Collections.singletonMap( ChaiProviderFactorySetting.POLICY_CACHE_REVALIDATE_MS, "0" ) );
+        final ChaiUser user1 = provider.getEntryFactory().newChaiUser( "cn=user1,cn=Users,dc=example,dc=com" );
+
+        Assertions.assertEquals( "false", user1.getPasswordPolicy().getValue( ChaiPasswordRule.ADComplexity ) );
+        Assertions.assertTrue( user1.testPasswordPolicy( "abcdefgh" ) );
+
+        // DOMAIN_PASSWORD_COMPLEX bit, observed by the revalidation compare
+        provider.writeStringAttribute( "dc=example,dc=com", "pwdProperties", Collections.singleton( "1" ), true );
+        Assertions.assertEquals( "true", user1.getPasswordPolicy().getValue( ChaiPasswordRule.ADComplexity ) );
+        Assertions.assertThrows( ChaiPasswordPolicyException.class, () -> user1.testPasswordPolicy( "abcdefgh" ) );
+        Assertions.assertTrue( user1.testPasswordPolicy( "Abcdef12" ) );
+
+        provider.writeStringAttribute( "dc=example,dc=com", "pwdProperties", Collections.singleton( "0" ), true );
+        Assertions.assertEquals( "false", user1.getPasswordPolicy().getValue( ChaiPasswordRule.ADComplexity ) );
+        Assertions.assertTrue( user1.testPasswordPolicy( "abcdefgh" ) );
+    }
+
+    @Test
+    public void testSnapshotRevalidated()
+            throws Exception
+    {
+        final ChaiProvider provider = newProvider( Collections.singletonMap( ChaiProviderFactorySetting.POLICY_CACHE_REVALIDATE_MS, "0" ) );
+
+        Assertions.assertEquals( "12", minimumLength( provider, "cn=user2,cn=Users,dc=example,dc=com" ) );
+
+        // unchanged whenChanged value, so the cached pso policy is still used
+        provider.writeStringAttribute( PSO_DN, "msDS-MinimumPasswordLength", Collections.singleton( "14" ), true );
+        Assertions.assertEquals( "12", minimumLength( provider, "cn=user2,cn=Users,dc=example,dc=com" ) );
+
+        provider.writeStringAttribute( PSO_DN, "whenChanged", Collections.singleton( "20240102000000.0Z" ), true );
+        Assertions.assertEquals( "14", minimumLength( provider, "cn=user2,cn=Users,dc=example,dc=com" ) );
+
+        provider.writeStringAttribute( "dc=example,dc=com", "minPwdLength", Collections.singleton( "8" ), true );
+        Assertions.assertEquals( "8", minimumLength( provider, "cn=user1,cn=Users,dc=example,dc=com" ) );
+
+        // removed pso
+        provider.deleteEntry( PSO_DN );
+        Assertions.assertTrue( DomainPasswordPolicies.forDomain( provider, "dc=example,dc=com" ).getPsoDNs().isEmpty() );
+    }
+}
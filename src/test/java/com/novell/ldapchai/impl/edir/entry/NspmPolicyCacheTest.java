@@ -0,0 +1,134 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.impl.edir.entry;
+
+import com.novell.ldapchai.ChaiPasswordPolicy;
+import com.novell.ldapchai.ChaiPasswordRule;
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.InMemoryDirectory;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactorySetting;
+import com.novell.ldapchai.provider.DirectoryVendor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+public class NspmPolicyCacheTest
+{
+    private static final String LDIF = "dn: o=example\nobjectClass: organization\nobjectClass: Partition\no: example\n"
+            + "nspmPasswordPolicyDN: cn=policy2,o=example\n\n"
+            + "dn: ou=people,o=example\nobjectClass: organizationalUnit\nou: people\n"
+            + "nspmPasswordPolicyDN: cn=policy1,o=example\n\n"
+            + "dn: ou=staff,o=example\nobjectClass: organizationalUnit\nou: staff\n\n"
+            + "dn: cn=user1,ou=people,o=example\nobjectClass: inetOrgPerson\ncn: user1\n\n"
+            + "dn: cn=user2,ou=people,o=example\nobjectClass: inetOrgPerson\ncn: user2\n\n"
+            + "dn: cn=user3,ou=staff,o=example\nobjectClass: inetOrgPerson\ncn: user3\n\n"
+            + "dn: cn=policy1,o=example\nobjectClass: nspmPasswordPolicy\ncn: policy1\n"
+            + "passwordMinimumLength: 8\nnspmConfigurationOptions: 512\nmodifyTimestamp: 20240101000000Z\n\n"
+            + "dn: cn=policy2,o=example\nobjectClass: nspmPasswordPolicy\ncn: policy2\n"
+            + "passwordMinimumLength: 6\nnspmConfigurationOptions: 512\nmodifyTimestamp: 20240101000000Z\n\n";
+
+    @TempDir
+    Path tempDir;
+
+    private InMemoryDirectory directory;
+
+    @AfterEach
+    public void tearDown()
+    {
+        directory.close();
+    }
+
+    private ChaiProvider newProvider( final Map<ChaiProviderFactorySetting, String> factorySettings )
+            throws Exception
+    {
+        directory = InMemoryDirectory.builder( tempDir, LDIF )
+                .vendor( DirectoryVendor.EDIRECTORY )
+                .factorySettings( factorySettings )
+                .build();
+        return directory.newProvider();
+    }
+
+    private static String minimumLength( final ChaiProvider provider, final String userDN )
+            throws Exception
+    {
+        final ChaiUser user = provider.getEntryFactory().newChaiUser( userDN );
+        final ChaiPasswordPolicy policy = user.getPasswordPolicy();
+        return policy.getValue( ChaiPasswordRule.MinimumLength );
+    }
+
+    @Test
+    public void testContainerLookupsAreCached()
+            throws Exception
+    {
+        final ChaiProvider provider = newProvider( Collections.emptyMap() );
+
+        Assertions.assertEquals( "8", minimumLength( provider, "cn=user1,ou=people,o=example" ) );
+
+        // the container assignment and policy are cached and not revalidated yet, so the change is not observed
+        provider.writeStringAttribute( "ou=people,o=example", "nspmPasswordPolicyDN", Collections.singleton( "cn=policy2,o=example" ), true );
+        provider.writeStringAttribute( "cn=policy1,o=example", "passwordMinimumLength", Collections.singleton( "10" ), true );
+        Assertions.assertEquals( "8", minimumLength( provider, "cn=user2,ou=people,o=example" ) );
+
+        // a policy assigned to the user entry takes precedence over the cached container lookup
+        provider.writeStringAttribute( "cn=user2,ou=people,o=example", "nspmPasswordPolicyDN", Collections.singleton( "cn=policy2,o=example" ), true );
+        Assertions.assertEquals( "6", minimumLength( provider, "cn=user2,ou=people,o=example" ) );
+
+        // policy assigned to the partition root
+        Assertions.assertEquals( "6", minimumLength( provider, "cn=user3,ou=staff,o=example" ) );
+    }
+
+    @Test
+    public void testCachedPolicyRevalidatedByTimestamp()
+            throws Exception
+    {
+        final ChaiProvider provider = newProvider( Collections.singletonMap( ChaiProviderFactorySetting.POLICY_CACHE_REVALIDATE_MS, "0" ) );
+
+        Assertions.assertEquals( "8", minimumLength( provider, "cn=user1,ou=people,o=example" ) );
+
+        // unchanged timestamp, so the cached policy is still used
+        provider.writeStringAttribute( "cn=policy1,o=example", "passwordMinimumLength", Collections.singleton( "10" ), true );
+        Assertions.assertEquals( "8", minimumLength( provider, "cn=user1,ou=people,o=example" ) );
+
+        provider.writeStringAttribute( "cn=policy1,o=example", "modifyTimestamp", Collections.singleton( "20240102000000Z" ), true );
+        Assertions.assertEquals( "10", minimumLength( provider, "cn=user1,ou=people,o=example" ) );
+
+        // a changed container assignment is detected by the compare of the cached policy dn
+        provider.writeStringAttribute( "ou=people,o=example", "nspmPasswordPolicyDN", Collections.singleton( "cn=policy2,o=example" ), true );
+        Assertions.assertEquals( "6", minimumLength( provider, "cn=user2,ou=people,o=example" ) );
+    }
+
+    @Test
+    public void testCacheDisabled()
+            throws Exception
+    {
+        final ChaiProvider provider = newProvider( Collections.singletonMap( ChaiProviderFactorySetting.POLICY_CACHE_MAX_AGE_MS, "0" ) );
+
+        Assertions.assertEquals( "8", minimumLength( provider, "cn=user1,ou=people,o=example" ) );
+        provider.writeStringAttribute( "cn=policy1,o=example", "passwordMinimumLength", Collections.singleton( "10" ), true );
+        Assertions.assertEquals( "10", minimumLength( provider, "cn=user1,ou=people,o=example" ) );
+    }
+}
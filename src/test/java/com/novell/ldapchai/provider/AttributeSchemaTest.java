@@ -0,0 +1,93 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.provider;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class AttributeSchemaTest
+{
+    private static final AttributeSchema SCHEMA = AttributeSchema.fromAttributeTypes( Arrays.asList(
+            "( 2.5.4.41 NAME 'name' EQUALITY caseIgnoreMatch SUBSTR caseIgnoreSubstringsMatch SYNTAX 1.3.6.1.4.1.1466.115.121.1.15{32768} )",
+            "( 2.5.4.3 NAME ( 'cn' 'commonName' ) DESC 'RFC4519: common name(s) for which the entity is known by' SUP name )",
+            "( 2.5.4.31 NAME 'member' SUP distinguishedName )",
+            "( 2.5.4.49 NAME 'distinguishedName' EQUALITY distinguishedNameMatch SYNTAX 1.3.6.1.4.1.1466.115.121.1.12 )",
+            "( 2.5.4.36 NAME 'userCertificate' DESC 'X.509 user certificate' EQUALITY certificateExactMatch SYNTAX 1.3.6.1.4.1.1466.115.121.1.8 )",
+            "( 1.2.840.113556.1.4.2 NAME 'objectGUID' SYNTAX '1.3.6.1.4.1.1466.115.121.1.40' SINGLE-VALUE NO-USER-MODIFICATION )",
+            "( 2.5.18.1 NAME 'createTimestamp' EQUALITY generalizedTimeMatch ORDERING generalizedTimeOrderingMatch "
+                    + "SYNTAX 1.3.6.1.4.1.1466.115.121.1.24 SINGLE-VALUE NO-USER-MODIFICATION USAGE directoryOperation X-ORIGIN ( 'RFC 4512' 'test' ) )",
+            "not a definition"
+    ) );
+
+    @Test
+    public void testParse()
+    {
+        final AttributeTypeDefinition definition = AttributeTypeDefinition.parse(
+                "( 2.5.18.1 NAME 'createTimestamp' EQUALITY generalizedTimeMatch ORDERING generalizedTimeOrderingMatch "
+                        + "SYNTAX 1.3.6.1.4.1.1466.115.121.1.24 SINGLE-VALUE NO-USER-MODIFICATION USAGE directoryOperation )" );
+        Assertions.assertEquals( "2.5.18.1", definition.getOid() );
+        Assertions.assertEquals( "createTimestamp", definition.getName() );
+        Assertions.assertEquals( "generalizedTimeMatch", definition.getEqualityMatchingRule() );
+        Assertions.assertEquals( "generalizedTimeOrderingMatch", definition.getOrderingMatchingRule() );
+        Assertions.assertEquals( "1.3.6.1.4.1.1466.115.121.1.24", definition.getSyntax() );
+        Assertions.assertEquals( "directoryOperation", definition.getUsage() );
+        Assertions.assertTrue( definition.isSingleValue() );
+        Assertions.assertTrue( definition.isNoUserModification() );
+        Assertions.assertFalse( definition.isBinary() );
+    }
+
+    @Test
+    public void testSuperiorInheritance()
+    {
+        final AttributeTypeDefinition cn = SCHEMA.getAttributeType( "commonName" ).orElseThrow( IllegalStateException::new );
+        Assertions.assertEquals( "cn", cn.getName() );
+        Assertions.assertEquals( "1.3.6.1.4.1.1466.115.121.1.15", cn.getSyntax() );
+        Assertions.assertEquals( "caseIgnoreMatch", cn.getEqualityMatchingRule() );
+        Assertions.assertFalse( cn.isSingleValue() );
+
+        Assertions.assertTrue( SCHEMA.getAttributeType( "MEMBER" ).orElseThrow( IllegalStateException::new ).isDistinguishedName() );
+        Assertions.assertTrue( SCHEMA.getAttributeType( "2.5.4.31" ).isPresent() );
+    }
+
+    @Test
+    public void testBinaryAttributes()
+    {
+        Assertions.assertTrue( SCHEMA.isBinary( "objectGUID" ) );
+        Assertions.assertTrue( SCHEMA.isBinary( "usercertificate" ) );
+        Assertions.assertTrue( SCHEMA.isBinary( "cn;binary" ) );
+        Assertions.assertFalse( SCHEMA.isBinary( "cn" ) );
+        Assertions.assertFalse( SCHEMA.isBinary( "unknownAttribute" ) );
+        Assertions.assertEquals( 2, SCHEMA.getBinaryAttributeNames().size() );
+        Assertions.assertTrue( SCHEMA.getAttributeType( "objectGUID;x-option" ).orElseThrow( IllegalStateException::new ).isSingleValue() );
+    }
+
+    @Test
+    public void testEmptySchema()
+    {
+        final AttributeSchema emptySchema = AttributeSchema.fromAttributeTypes( Collections.emptyList() );
+        Assertions.assertTrue( emptySchema.isEmpty() );
+        Assertions.assertFalse( emptySchema.getAttributeType( "cn" ).isPresent() );
+        Assertions.assertEquals( 7, SCHEMA.getAttributeTypes().size() );
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.provider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.BasicAttribute;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the previous boxed copy of binary attribute values against the current zero-copy conversion used by
+ * {@link JNDIProviderImpl#readMultiByteAttribute(String, String)}.  Run with the gc profiler to see bytes allocated
+ * per read ({@code gc.alloc.rate.norm}).
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@State( Scope.Benchmark )
+@Fork( jvmArgs =
+        {
+                "-Xms1G", "-Xmx1G"
+        }, value = 1 )
+@Warmup( iterations = 1 )
+@Measurement( iterations = 2 )
+public class BinaryReadBenchMark
+{
+    @Param( {
+            "1024",
+            "204800"
+    } )
+    public int valueSize;
+
+    private Attribute attribute;
+
+    public static void main( final String[] args ) throws RunnerException
+    {
+        final Options opt = new OptionsBuilder()
+                .include( BinaryReadBenchMark.class.getSimpleName() )
+                .addProfiler( GCProfiler.class )
+                .forks( 1 )
+                .build();
+
+        new Runner( opt ).run();
+    }
+
+    @Setup
+    public void setup()
+    {
+        final byte[] value = new byte[valueSize];
+        new SecureRandom().nextBytes( value );
+        attribute = new BasicAttribute( "jpegPhoto", value );
+    }
+
+    @Benchmark
+    public byte[][] boxedCopy()
+            throws NamingException
+    {
+        final List<Byte[]> returnValues = new ArrayList<>();
+        final NamingEnumeration<?> namingEnum = attribute.getAll();
+        while ( namingEnum.hasMore() )
+        {
+            final Object value = namingEnum.next();
+            if ( value instanceof byte[] )
+            {
+                final byte[] byteValue = ( byte[] ) value;
+                final Byte[] objectValue = new Byte[byteValue.length];
+                for ( int i = 0; i < byteValue.length; i++ )
+                {
+                    objectValue[i] = byteValue[i];
+                }
+                returnValues.add( objectValue );
+            }
+        }
+
+        final byte[][] returnArray = new byte[returnValues.size()][];
+        for ( int i = 0; i < returnValues.size(); i++ )
+        {
+            final Byte[] objectValue = returnValues.get( i );
+            returnArray[i] = new byte[objectValue.length];
+            for ( int j = 0; j < objectValue.length; j++ )
+            {
+                returnArray[i][j] = objectValue[j];
+            }
+        }
+        return returnArray;
+    }
+
+    @Benchmark
+    public byte[][] binaryValues()
+            throws NamingException
+    {
+        return JNDIProviderImpl.binaryValues( attribute );
+    }
+}
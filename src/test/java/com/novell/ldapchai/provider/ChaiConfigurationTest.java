@@ -0,0 +1,71 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.provider;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+public class ChaiConfigurationTest
+{
+    @Test
+    public void testTypedSettings()
+    {
+        final ChaiConfiguration chaiConfiguration = ChaiConfiguration.builder( "ldap://host1", "cn=admin", "password" )
+                .setSetting( ChaiSetting.LDAP_SEARCH_PAGING_SIZE, "250" )
+                .setSetting( ChaiSetting.STATISTICS_ENABLE, "false" )
+                .build();
+
+        Assertions.assertEquals( 250, chaiConfiguration.getIntSetting( ChaiSetting.LDAP_SEARCH_PAGING_SIZE ) );
+        Assertions.assertEquals( "250", chaiConfiguration.getSetting( ChaiSetting.LDAP_SEARCH_PAGING_SIZE ) );
+        Assertions.assertFalse( chaiConfiguration.getBooleanSetting( ChaiSetting.STATISTICS_ENABLE ) );
+        Assertions.assertTrue( chaiConfiguration.getBooleanSetting( ChaiSetting.JNDI_RESOLVE_IN_NAMESPACE ) );
+        Assertions.assertEquals( "cn=admin", chaiConfiguration.getSetting( ChaiSetting.BIND_DN ) );
+        Assertions.assertThrows( IllegalArgumentException.class, () -> chaiConfiguration.getIntSetting( ChaiSetting.BIND_DN ) );
+    }
+
+    @Test
+    public void testBindURLs()
+    {
+        final ChaiConfiguration chaiConfiguration = ChaiConfiguration.builder(
+                Arrays.asList( "ldap://host1", "ldaps://host2:636" ), "cn=admin", "password" ).build();
+
+        Assertions.assertEquals( Arrays.asList( "ldap://host1", "ldaps://host2:636" ), chaiConfiguration.bindURLsAsList() );
+        Assertions.assertSame( chaiConfiguration.bindURLsAsList(), chaiConfiguration.bindURLsAsList() );
+        Assertions.assertThrows( UnsupportedOperationException.class, () -> chaiConfiguration.bindURLsAsList().add( "ldap://host3" ) );
+    }
+
+    @Test
+    public void testBuilderChangesAfterBuild()
+    {
+        final ChaiConfiguration.ChaiConfigurationBuilder builder = ChaiConfiguration.builder( "ldap://host1", "cn=admin", "password" );
+        final ChaiConfiguration chaiConfiguration = builder.build();
+        builder.setSetting( ChaiSetting.LDAP_SEARCH_PAGING_SIZE, "10" );
+        builder.setSetting( ChaiSetting.BIND_URLS, "ldap://host2" );
+
+        Assertions.assertEquals( Integer.parseInt( ChaiSetting.LDAP_SEARCH_PAGING_SIZE.getDefaultValue() ),
+                chaiConfiguration.getIntSetting( ChaiSetting.LDAP_SEARCH_PAGING_SIZE ) );
+        Assertions.assertEquals( "ldap://host1", chaiConfiguration.bindURLsAsList().get( 0 ) );
+        Assertions.assertEquals( 10, builder.build().getIntSetting( ChaiSetting.LDAP_SEARCH_PAGING_SIZE ) );
+        Assertions.assertEquals( chaiConfiguration, ChaiConfiguration.builder( chaiConfiguration ).build() );
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.provider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Compares the per-entry map structure built by {@link JNDIProviderImpl#searchMultiValues(String, com.novell.ldapchai.util.SearchHelper)}
+ * against {@link CompactSearchResult} for a synthetic directory of user entries.  {@link #main(String[])} prints the
+ * retained heap per entry of each representation before running the build benchmarks, run with the gc profiler
+ * to see bytes allocated per build ({@code gc.alloc.rate.norm}).
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@State( Scope.Benchmark )
+@Fork( jvmArgs =
+        {
+                "-Xms1G", "-Xmx1G"
+        }, value = 1 )
+@Warmup( iterations = 1 )
+@Measurement( iterations = 2 )
+public class CompactSearchResultBenchMark
+{
+    private static final String[] OBJECT_CLASSES = {"top", "person", "organizationalPerson", "inetOrgPerson"};
+
+    private static volatile Object retainedResult;
+
+    @Param( {
+            "10000"
+    } )
+    public int entryCount;
+
+    public static void main( final String[] args ) throws RunnerException
+    {
+        final int entryCount = 100_000;
+        final long mapBytes = retainedBytes( () -> buildMapResult( entryCount ) );
+        final long compactBytes = retainedBytes( () -> buildCompactResult( entryCount ) );
+        System.out.println( "retained heap per entry, map=" + ( mapBytes / entryCount )
+                + " bytes, compact=" + ( compactBytes / entryCount ) + " bytes" );
+
+        final Options opt = new OptionsBuilder()
+                .include( CompactSearchResultBenchMark.class.getSimpleName() )
+                .addProfiler( GCProfiler.class )
+                .forks( 1 )
+                .build();
+
+        new Runner( opt ).run();
+    }
+
+    @Setup
+    public void setup()
+    {
+        // warm the value generation so both benchmarks start with the same class loading state.
+        generateAttributes( 0 );
+    }
+
+    @Benchmark
+    public Map<String, Map<String, List<String>>> buildMap()
+    {
+        return buildMapResult( entryCount );
+    }
+
+    @Benchmark
+    public CompactSearchResult buildCompact()
+    {
+        return buildCompactResult( entryCount );
+    }
+
+    private static Map<String, Map<String, List<String>>> buildMapResult( final int entryCount )
+    {
+        final Map<String, Map<String, List<String>>> results = new HashMap<>();
+        for ( int i = 0; i < entryCount; i++ )
+        {
+            final Map<String, List<String>> attrValues = new HashMap<>();
+            for ( final Map.Entry<String, List<String>> entry : generateAttributes( i ).entrySet() )
+            {
+                attrValues.put( entry.getKey(), Collections.unmodifiableList( new ArrayList<>( entry.getValue() ) ) );
+            }
+            results.put( entryDN( i ), Collections.unmodifiableMap( attrValues ) );
+        }
+        return Collections.unmodifiableMap( results );
+    }
+
+    private static CompactSearchResult buildCompactResult( final int entryCount )
+    {
+        final CompactSearchResult.Builder builder = new CompactSearchResult.Builder();
+        for ( int i = 0; i < entryCount; i++ )
+        {
+            builder.startEntry( entryDN( i ) );
+            for ( final Map.Entry<String, List<String>> entry : generateAttributes( i ).entrySet() )
+            {
+                builder.startAttribute( entry.getKey() );
+                for ( final String value : entry.getValue() )
+                {
+                    builder.addValue( value );
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static String entryDN( final int index )
+    {
+        return "cn=user" + index + ",ou=people" + ( index % 10 ) + ",o=example";
+    }
+
+    /**
+     * Generate attributes for an entry, all names and values are new string instances as they would be
+     * when decoded from an ldap response.
+     */
+    private static Map<String, List<String>> generateAttributes( final int index )
+    {
+        final Map<String, List<String>> attributes = new HashMap<>();
+        final List<String> objectClasses = new ArrayList<>();
+        for ( final String objectClass : OBJECT_CLASSES )
+        {
+            objectClasses.add( new String( objectClass ) );
+        }
+        attributes.put( new String( "objectClass" ), objectClasses );
+        attributes.put( new String( "cn" ), Collections.singletonList( "user" + index ) );
+        attributes.put( new String( "givenName" ), Collections.singletonList( "given" + ( index % 200 ) ) );
+        attributes.put( new String( "sn" ), Collections.singletonList( "surname" + ( index % 1000 ) ) );
+        attributes.put( new String( "mail" ), Collections.singletonList( "user" + index + "@example.com" ) );
+        attributes.put( new String( "title" ), Collections.singletonList( "title" + ( index % 30 ) ) );
+        attributes.put( new String( "departmentNumber" ), Collections.singletonList( "department" + ( index % 20 ) ) );
+        attributes.put( new String( "manager" ), Collections.singletonList( "cn=user" + ( index % 50 ) + ",ou=people0,o=example" ) );
+        return attributes;
+    }
+
+    private static long retainedBytes( final Supplier<Object> supplier )
+    {
+        final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        collectGarbage( memoryMXBean );
+        final long before = memoryMXBean.getHeapMemoryUsage().getUsed();
+        // keep the result reachable until after the measurement; Reference.reachabilityFence() requires Java 9.
+        retainedResult = supplier.get();
+        collectGarbage( memoryMXBean );
+        final long after = memoryMXBean.getHeapMemoryUsage().getUsed();
+        retainedResult = null;
+        return after - before;
+    }
+
+    private static void collectGarbage( final MemoryMXBean memoryMXBean )
+    {
+        for ( int i = 0; i < 3; i++ )
+        {
+            memoryMXBean.gc();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.provider;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CompactSearchResultTest
+{
+    @Test
+    public void testMapViewEqualsSource()
+    {
+        final Map<String, Map<String, List<String>>> source = new LinkedHashMap<>();
+        source.put( "cn=alice,o=example", entry( "cn", "alice", "objectClass", "person" ) );
+        source.put( "cn=bob,o=example", entry( "cn", "bob", "mail", "bob@example.com" ) );
+        source.get( "cn=bob,o=example" ).put( "objectClass", Arrays.asList( "top", "person" ) );
+        source.put( "cn=empty,o=example", Collections.emptyMap() );
+
+        final CompactSearchResult result = CompactSearchResult.fromMap( source );
+        Assertions.assertEquals( 3, result.size() );
+        Assertions.assertEquals( source, result.asMap() );
+        Assertions.assertEquals( result.asMap(), source );
+        Assertions.assertEquals( source.hashCode(), result.asMap().hashCode() );
+        Assertions.assertTrue( result.asMap().get( "cn=empty,o=example" ).isEmpty() );
+        Assertions.assertNull( result.asMap().get( "cn=nobody,o=example" ) );
+    }
+
+    @Test
+    public void testAttributeLookup()
+    {
+        final Map<String, Map<String, List<String>>> source = new LinkedHashMap<>();
+        source.put( "cn=alice,o=example", entry( "cn", "alice", "objectClass", "person" ) );
+
+        final CompactSearchResult result = CompactSearchResult.fromMap( source );
+        final int index = result.indexOf( "cn=alice,o=example" );
+        Assertions.assertEquals( 0, index );
+        Assertions.assertEquals( -1, result.indexOf( "cn=bob,o=example" ) );
+        Assertions.assertEquals( "cn=alice,o=example", result.getEntryDN( index ) );
+        Assertions.assertEquals( "person", result.getFirstValue( index, "OBJECTCLASS" ) );
+        Assertions.assertEquals( Collections.singletonList( "alice" ), result.getValues( index, "cn" ) );
+        Assertions.assertTrue( result.getValues( index, "mail" ).isEmpty() );
+        Assertions.assertNull( result.getFirstValue( index, "mail" ) );
+        Assertions.assertThrows( UnsupportedOperationException.class, () -> result.getValues( index, "cn" ).add( "x" ) );
+    }
+
+    @Test
+    public void testRepeatedValuesShared()
+    {
+        final CompactSearchResult.Builder builder = new CompactSearchResult.Builder();
+        for ( int i = 0; i < 10; i++ )
+        {
+            builder.startEntry( "cn=user" + i + ",o=example" );
+            builder.startAttribute( new String( "objectClass" ) );
+            builder.addValue( new String( "person" ) );
+        }
+        final CompactSearchResult result = builder.build();
+
+        Assertions.assertEquals( Collections.singletonList( "objectClass" ), result.getAttributeNames() );
+        Assertions.assertSame( result.getFirstValue( 0, "objectClass" ), result.getFirstValue( 9, "objectClass" ) );
+    }
+
+    @Test
+    public void testRepeatedValuesSharedBeyondSample()
+    {
+        // each value appears twice, so there are more distinct values than the pool sample size but half are repeats.
+        final CompactSearchResult.Builder builder = new CompactSearchResult.Builder();
+        for ( int i = 0; i < 5000; i++ )
+        {
+            builder.startEntry( "cn=user" + i + ",o=example" );
+            builder.startAttribute( "manager" );
+            builder.addValue( new String( "cn=manager" + ( i / 2 ) + ",o=example" ) );
+        }
+        final CompactSearchResult result = builder.build();
+
+        Assertions.assertSame( result.getFirstValue( 4998, "manager" ), result.getFirstValue( 4999, "manager" ) );
+    }
+
+    @Test
+    public void testIndexOf()
+    {
+        final CompactSearchResult.Builder builder = new CompactSearchResult.Builder();
+        for ( int i = 0; i < 1000; i++ )
+        {
+            builder.startEntry( "cn=user" + i + ",o=example" );
+        }
+        final CompactSearchResult result = builder.build();
+
+        for ( int i = 0; i < 1000; i++ )
+        {
+            Assertions.assertEquals( i, result.indexOf( "cn=user" + i + ",o=example" ) );
+        }
+        Assertions.assertEquals( -1, result.indexOf( "cn=user1000,o=example" ) );
+        Assertions.assertEquals( -1, result.indexOf( null ) );
+        Assertions.assertTrue( result.asMap().containsKey( "cn=user999,o=example" ) );
+        Assertions.assertNull( result.asMap().get( "cn=other,o=example" ) );
+        Assertions.assertEquals( -1, CompactSearchResult.empty().indexOf( "cn=user0,o=example" ) );
+    }
+
+    @Test
+    public void testDuplicateEntryIgnored()
+    {
+        final CompactSearchResult.Builder builder = new CompactSearchResult.Builder();
+        Assertions.assertTrue( builder.startEntry( "cn=alice,o=example" ) );
+        builder.startAttribute( "cn" );
+        builder.addValue( "alice" );
+        Assertions.assertFalse( builder.startEntry( "cn=alice,o=example" ) );
+        builder.startAttribute( "cn" );
+        builder.addValue( "duplicate" );
+
+        final CompactSearchResult result = builder.build();
+        Assertions.assertEquals( 1, result.size() );
+        Assertions.assertEquals( Collections.singletonList( "alice" ), result.getValues( 0, "cn" ) );
+    }
+
+    @Test
+    public void testEmptyAttribute()
+    {
+        final CompactSearchResult.Builder builder = new CompactSearchResult.Builder();
+        builder.startEntry( "cn=alice,o=example" );
+        builder.startAttribute( "mail" );
+        builder.startEntry( "cn=bob,o=example" );
+        builder.startAttribute( "mail" );
+        builder.addValue( "bob@example.com" );
+
+        final CompactSearchResult result = builder.build();
+        Assertions.assertNull( result.getFirstValue( 0, "mail" ) );
+        Assertions.assertTrue( result.getValues( 0, "mail" ).isEmpty() );
+        Assertions.assertEquals( "bob@example.com", result.getFirstValue( 1, "mail" ) );
+    }
+
+    @Test
+    public void testRepeatedAttributeMerged()
+    {
+        final CompactSearchResult.Builder builder = new CompactSearchResult.Builder();
+        builder.startEntry( "cn=alice,o=example" );
+        builder.startAttribute( "objectClass" );
+        builder.addValue( "top" );
+        builder.startAttribute( "cn" );
+        builder.addValue( "alice" );
+        builder.startAttribute( "mail" );
+        builder.addValue( "alice@example.com" );
+        builder.startAttribute( "OBJECTCLASS" );
+        builder.addValue( "person" );
+        builder.startEntry( "cn=bob,o=example" );
+        builder.startAttribute( "cn" );
+        builder.addValue( "bob" );
+
+        final CompactSearchResult result = builder.build();
+        Assertions.assertEquals( Arrays.asList( "top", "person" ), result.getValues( 0, "objectClass" ) );
+        Assertions.assertEquals( Collections.singletonList( "alice" ), result.getValues( 0, "cn" ) );
+        Assertions.assertEquals( Collections.singletonList( "alice@example.com" ), result.getValues( 0, "mail" ) );
+        Assertions.assertEquals( 3, result.asMap().get( "cn=alice,o=example" ).size() );
+        Assertions.assertEquals( Collections.singletonList( "bob" ), result.getValues( 1, "cn" ) );
+    }
+
+    private static Map<String, List<String>> entry( final String... attributeValues )
+    {
+        final Map<String, List<String>> entry = new HashMap<>();
+        for ( int i = 0; i < attributeValues.length; i += 2 )
+        {
+            entry.put( attributeValues[i], Collections.singletonList( attributeValues[i + 1] ) );
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of common operations against {@link InMemoryProviderImpl} through the full wrapper stack created by
+ * {@link ChaiProviderFactory}, with no network or server time.  Useful as a baseline for the overhead of the
+ * wrappers themselves.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@State( Scope.Benchmark )
+@Fork( value = 1 )
+@Warmup( iterations = 1 )
+@Measurement( iterations = 2 )
+@Threads( 4 )
+public class InMemoryProviderBenchMark
+{
+    @Param( {
+            "10000"
+    } )
+    public int entryCount;
+
+    private ChaiProviderFactory providerFactory;
+    private ChaiProvider provider;
+
+    public static void main( final String[] args ) throws RunnerException
+    {
+        final Options opt = new OptionsBuilder()
+                .include( InMemoryProviderBenchMark.class.getSimpleName() )
+                .forks( 1 )
+                .build();
+
+        new Runner( opt ).run();
+    }
+
+    @Setup
+    public void setup()
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        providerFactory = ChaiProviderFactory.newProviderFactory();
+        provider = providerFactory.newProvider( ChaiConfiguration.builder( "ldap://memory", "cn=admin", "password" )
+                .setSetting( ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProviderImpl.class.getName() )
+                .build() );
+
+        provider.createEntry( "o=example", "organization", Collections.emptyMap() );
+        provider.createEntry( "ou=people,o=example", "organizationalUnit", Collections.emptyMap() );
+        for ( int i = 0; i < entryCount; i++ )
+        {
+            final Map<String, String> attributes = new HashMap<>();
+            attributes.put( "sn", "surname" + ( i % 1000 ) );
+            attributes.put( "mail", "user" + i + "@example.com" );
+            provider.createEntry( entryDN( i ), "inetOrgPerson", attributes );
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        providerFactory.close();
+    }
+
+    @Benchmark
+    public String readAttribute()
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        return provider.readStringAttribute( entryDN( ThreadLocalRandom.current().nextInt( entryCount ) ), "mail" );
+    }
+
+    @Benchmark
+    public void writeAttribute()
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        final int index = ThreadLocalRandom.current().nextInt( entryCount );
+        provider.writeStringAttribute( entryDN( index ), "description", Collections.singleton( "d" + index ), true );
+    }
+
+    @Benchmark
+    public Map<String, Map<String, String>> searchOneLevel()
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        final int index = ThreadLocalRandom.current().nextInt( entryCount );
+        return provider.search( "ou=people,o=example", "(&(objectClass=inetOrgPerson)(mail=user" + index + "@example.com))",
+                Collections.singleton( "sn" ), SearchScope.ONE );
+    }
+
+    private static String entryDN( final int index )
+    {
+        return "cn=user" + index + ",ou=people,o=example";
+    }
+}
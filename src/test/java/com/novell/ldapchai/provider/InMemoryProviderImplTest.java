@@ -0,0 +1,296 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.ChaiEntry;
+import com.novell.ldapchai.InMemoryDirectory;
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.util.SearchHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class InMemoryProviderImplTest
+{
+    private static final String LDIF = "dn: o=example\n"
+            + "objectClass: organization\n"
+            + "o: example\n"
+            + "\n"
+            + "dn: ou=people,o=example\n"
+            + "objectClass: organizationalUnit\n"
+            + "ou: people\n"
+            + "\n"
+            + "dn: cn=alice,ou=people,o=example\n"
+            + "objectClass: inetOrgPerson\n"
+            + "cn: alice\n"
+            + "sn: Smith\n"
+            + "mail: alice@example.com\n"
+            + "employeeNumber: 10\n"
+            + "\n"
+            + "dn: cn=bob,ou=people,o=example\n"
+            + "objectClass: inetOrgPerson\n"
+            + "cn: bob\n"
+            + "sn: Jones\n"
+            + "employeeNumber: 20\n";
+
+    @TempDir
+    Path tempDir;
+
+    private InMemoryDirectory directory;
+    private ChaiProvider provider;
+
+    @BeforeEach
+    public void setUp()
+            throws Exception
+    {
+        directory = InMemoryDirectory.builder( tempDir, LDIF ).build();
+        provider = directory.newProvider();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        directory.close();
+    }
+
+    @Test
+    public void testLoadAndRead()
+            throws Exception
+    {
+        Assertions.assertEquals( "Smith", provider.readStringAttribute( "cn=alice,ou=people,o=example", "sn" ) );
+        Assertions.assertEquals( "Smith", provider.readStringAttribute( "CN=Alice, OU=People, O=Example", "SN" ) );
+        Assertions.assertNull( provider.readStringAttribute( "cn=bob,ou=people,o=example", "mail" ) );
+        Assertions.assertTrue( provider.compareStringAttribute( "cn=alice,ou=people,o=example", "mail", "ALICE@example.com" ) );
+        Assertions.assertFalse( provider.compareStringAttribute( "cn=alice,ou=people,o=example", "mail", "bob@example.com" ) );
+
+        final Map<String, String> values = provider.readStringAttributes( "cn=alice,ou=people,o=example", new HashSet<>( Arrays.asList( "sn", "mail" ) ) );
+        Assertions.assertEquals( 2, values.size() );
+        Assertions.assertEquals( "alice@example.com", values.get( "MAIL" ) );
+
+        // the ldif is loaded once, a second provider of the same factory and url shares the directory
+        final ChaiProvider secondProvider = directory.getProviderFactory().newProvider( provider.getChaiConfiguration() );
+        secondProvider.writeStringAttribute( "cn=bob,ou=people,o=example", "mail", Collections.singleton( "bob@example.com" ), false );
+        Assertions.assertEquals( "bob@example.com", provider.readStringAttribute( "cn=bob,ou=people,o=example", "mail" ) );
+
+        final ChaiEntry entry = provider.getEntryFactory().newChaiEntry( "cn=alice,ou=people,o=example" );
+        Assertions.assertTrue( entry.exists() );
+        Assertions.assertEquals( DirectoryVendor.GENERIC, provider.getDirectoryVendor() );
+
+        final ChaiOperationException e = Assertions.assertThrows( ChaiOperationException.class,
+                () -> provider.readStringAttribute( "cn=carol,ou=people,o=example", "sn" ) );
+        Assertions.assertEquals( ChaiError.NO_SUCH_ENTRY, e.getErrorCode() );
+    }
+
+    @Test
+    public void testSearch()
+            throws Exception
+    {
+        final Map<String, Map<String, String>> subtree = provider.search( "o=example", "(objectClass=inetOrgPerson)",
+                Collections.singleton( "cn" ), SearchScope.SUBTREE );
+        Assertions.assertEquals( 2, subtree.size() );
+        Assertions.assertEquals( "alice", subtree.get( "cn=alice,ou=people,o=example" ).get( "cn" ) );
+
+        Assertions.assertEquals( 0, provider.search( "o=example", "(objectClass=inetOrgPerson)", null, SearchScope.ONE ).size() );
+        Assertions.assertEquals( 1, provider.search( "o=example", "(objectClass=*)", null, SearchScope.ONE ).size() );
+        Assertions.assertEquals( 1, provider.search( "o=example", "(objectClass=*)", null, SearchScope.BASE ).size() );
+
+        final Map<String, Map<String, List<String>>> filtered = provider.searchMultiValues( "ou=people,o=example",
+                "(&(objectClass=inetOrgPerson)(|(sn=Sm*)(employeeNumber>=15))(!(cn=bob)))", null, SearchScope.SUBTREE );
+        Assertions.assertEquals( Collections.singleton( "cn=alice,ou=people,o=example" ), filtered.keySet() );
+
+        Assertions.assertEquals( 1, provider.search( "o=example", "(employeeNumber>=15)", null, SearchScope.SUBTREE ).size() );
+
+        final SearchHelper searchHelper = new SearchHelper( "(objectClass=*)", SearchScope.SUBTREE );
+        searchHelper.setMaxResults( 3 );
+        Assertions.assertEquals( 3, provider.search( "o=example", searchHelper ).size() );
+
+        final SearchHelper noAttributes = new SearchHelper( "(cn=alice)", SearchScope.SUBTREE );
+        noAttributes.setAttributes( Collections.emptySet() );
+        Assertions.assertTrue( provider.searchMultiValues( "o=example", noAttributes ).get( "cn=alice,ou=people,o=example" ).isEmpty() );
+
+        final Map<String, Map<String, List<String>>> rootDse = provider.searchMultiValues( "", "(objectClass=*)", null, SearchScope.BASE );
+        Assertions.assertEquals( Collections.singletonList( "o=example" ), rootDse.get( "" ).get( "namingContexts" ) );
+        Assertions.assertEquals( 4, provider.search( "", "(objectClass=*)", null, SearchScope.SUBTREE ).size() );
+
+        final ChaiOperationException e = Assertions.assertThrows( ChaiOperationException.class,
+                () -> provider.search( "o=missing", "(objectClass=*)", null, SearchScope.SUBTREE ) );
+        Assertions.assertEquals( ChaiError.NO_SUCH_ENTRY, e.getErrorCode() );
+        Assertions.assertThrows( ChaiOperationException.class,
+                () -> provider.search( "o=example", "(objectClass=*", null, SearchScope.SUBTREE ) );
+    }
+
+    @Test
+    public void testSearchStreamAndBinaryValues()
+            throws Exception
+    {
+        final SearchHelper searchHelper = new SearchHelper( "(objectClass=inetOrgPerson)", SearchScope.SUBTREE );
+        searchHelper.setAttributes( "sn" );
+
+        final Map<String, Map<String, List<String>>> streamed = new HashMap<>();
+        provider.searchStream( "o=example", searchHelper, streamed::put );
+        Assertions.assertEquals( provider.searchMultiValues( "o=example", searchHelper ), streamed );
+
+        final Map<String, Map<String, byte[][]>> binaryValues = provider.searchMultiByteValues( "o=example", searchHelper );
+        Assertions.assertEquals( 2, binaryValues.size() );
+        Assertions.assertArrayEquals( "Smith".getBytes( StandardCharsets.UTF_8 ), binaryValues.get( "cn=alice,ou=people,o=example" ).get( "sn" )[0] );
+
+        Assertions.assertThrows( ChaiOperationException.class, () -> provider.searchStream( "o=example", searchHelper, ( entryDN, attributes ) ->
+        {
+            throw new ChaiOperationException( "stop", ChaiError.UNKNOWN );
+        } ) );
+    }
+
+    @Test
+    public void testByteStreamReturnsFirstValue()
+            throws Exception
+    {
+        provider.writeStringAttribute( "cn=bob,ou=people,o=example", "description", new LinkedHashSet<>( Arrays.asList( "first", "second" ) ), true );
+
+        final List<ByteBuffer> buffers = provider.readMultiByteBufferAttribute( "cn=bob,ou=people,o=example", "description" );
+        Assertions.assertEquals( 2, buffers.size() );
+
+        final byte[] firstValue = new byte[buffers.get( 0 ).remaining()];
+        buffers.get( 0 ).get( firstValue );
+        try ( InputStream inputStream = provider.readByteStreamAttribute( "cn=bob,ou=people,o=example", "description" ) )
+        {
+            final ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            int read;
+            while ( ( read = inputStream.read() ) != -1 )
+            {
+                streamed.write( read );
+            }
+            Assertions.assertArrayEquals( firstValue, streamed.toByteArray() );
+        }
+
+        Assertions.assertNull( provider.readByteStreamAttribute( "cn=bob,ou=people,o=example", "mail" ) );
+    }
+
+    @Test
+    public void testModify()
+            throws Exception
+    {
+        final String dn = "cn=carol,ou=people,o=example";
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put( "sn", "Brown" );
+        provider.createEntry( dn, "inetOrgPerson", attributes );
+        Assertions.assertEquals( "carol", provider.readStringAttribute( dn, "cn" ) );
+
+        final ChaiOperationException exists = Assertions.assertThrows( ChaiOperationException.class,
+                () -> provider.createEntry( dn, "inetOrgPerson", attributes ) );
+        Assertions.assertEquals( ChaiError.UNKNOWN, exists.getErrorCode() );
+        final ChaiOperationException noParent = Assertions.assertThrows( ChaiOperationException.class,
+                () -> provider.createEntry( "cn=dave,ou=missing,o=example", "inetOrgPerson", attributes ) );
+        Assertions.assertEquals( ChaiError.NO_SUCH_ENTRY, noParent.getErrorCode() );
+
+        provider.writeStringAttribute( dn, "description", new HashSet<>( Arrays.asList( "one", "two" ) ), false );
+        provider.replaceStringAttribute( dn, "description", "one", "three" );
+        Assertions.assertEquals( new HashSet<>( Arrays.asList( "two", "three" ) ), provider.readMultiStringAttribute( dn, "description" ) );
+        final ChaiOperationException noValue = Assertions.assertThrows( ChaiOperationException.class,
+                () -> provider.deleteStringAttributeValue( dn, "description", "one" ) );
+        Assertions.assertEquals( ChaiError.NO_SUCH_VALUE, noValue.getErrorCode() );
+        provider.deleteStringAttributeValue( dn, "description", null );
+        Assertions.assertTrue( provider.readMultiStringAttribute( dn, "description" ).isEmpty() );
+        final ChaiOperationException noAttribute = Assertions.assertThrows( ChaiOperationException.class,
+                () -> provider.deleteStringAttributeValue( dn, "description", null ) );
+        Assertions.assertEquals( ChaiError.NO_SUCH_ATTRIBUTE, noAttribute.getErrorCode() );
+
+        final byte[] photo = new byte[] {0, 1, 2, ( byte ) 0xFF};
+        provider.writeBinaryAttribute( dn, "jpegPhoto", new byte[][] {photo}, true );
+        Assertions.assertArrayEquals( photo, provider.readMultiByteAttribute( dn, "jpegPhoto" )[0] );
+
+        final ChaiOperationException notLeaf = Assertions.assertThrows( ChaiOperationException.class,
+                () -> provider.deleteEntry( "ou=people,o=example" ) );
+        Assertions.assertEquals( ChaiError.UNKNOWN, notLeaf.getErrorCode() );
+
+        provider.deleteEntry( dn );
+        Assertions.assertEquals( 2, provider.search( "o=example", "(objectClass=inetOrgPerson)", null, SearchScope.SUBTREE ).size() );
+    }
+
+    @Test
+    public void testRenameSubtree()
+            throws Exception
+    {
+        provider.createEntry( "ou=staff,o=example", "organizationalUnit", Collections.emptyMap() );
+        provider.renameEntry( "ou=people,o=example", "ou=users", "ou=staff,o=example" );
+
+        Assertions.assertEquals( "Smith", provider.readStringAttribute( "cn=alice,ou=users,ou=staff,o=example", "sn" ) );
+        Assertions.assertEquals( Collections.singleton( "users" ), provider.readMultiStringAttribute( "ou=users,ou=staff,o=example", "ou" ) );
+        Assertions.assertThrows( ChaiOperationException.class, () -> provider.readStringAttribute( "cn=alice,ou=people,o=example", "sn" ) );
+        Assertions.assertEquals( 2, provider.search( "ou=staff,o=example", "(objectClass=inetOrgPerson)", null, SearchScope.SUBTREE ).size() );
+    }
+
+    @Test
+    public void testConcurrentWrites()
+            throws Exception
+    {
+        final int threads = 4;
+        final int entriesPerThread = 250;
+        final ExecutorService executorService = Executors.newFixedThreadPool( threads );
+        try
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+            for ( int t = 0; t < threads; t++ )
+            {
+                final String ou = "ou=t" + t + ",o=example";
+                futures.add( executorService.submit( () ->
+                {
+                    provider.createEntry( ou, "organizationalUnit", Collections.emptyMap() );
+                    for ( int i = 0; i < entriesPerThread; i++ )
+                    {
+                        final String dn = "cn=user" + i + "," + ou;
+                        provider.createEntry( dn, "inetOrgPerson", Collections.singletonMap( "sn", "s" + i ) );
+                        provider.writeStringAttribute( dn, "description", Collections.singleton( "d" ), true );
+                    }
+                    return null;
+                } ) );
+            }
+            for ( final Future<?> future : futures )
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executorService.shutdown();
+        }
+
+        Assertions.assertEquals( threads * entriesPerThread, provider.search( "o=example", "(description=d)", null, SearchScope.SUBTREE ).size() );
+    }
+}
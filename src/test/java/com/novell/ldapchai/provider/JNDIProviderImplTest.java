@@ -0,0 +1,71 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.provider;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.naming.NamingException;
+import javax.naming.directory.BasicAttribute;
+
+public class JNDIProviderImplTest
+{
+    @Test
+    public void testBinaryValues()
+            throws NamingException
+    {
+        final byte[] value1 = new byte[] {1, 2, 3};
+        final byte[] value2 = new byte[] {4, 5};
+        final BasicAttribute attribute = new BasicAttribute( "jpegPhoto" );
+        attribute.add( value1 );
+        attribute.add( "not binary" );
+        attribute.add( value2 );
+
+        final byte[][] values = JNDIProviderImpl.binaryValues( attribute );
+        Assertions.assertEquals( 2, values.length );
+        Assertions.assertSame( value1, values[0] );
+        Assertions.assertSame( value2, values[1] );
+    }
+
+    @Test
+    public void testBinaryValuesEmpty()
+            throws NamingException
+    {
+        Assertions.assertEquals( 0, JNDIProviderImpl.binaryValues( null ).length );
+        Assertions.assertEquals( 0, JNDIProviderImpl.binaryValues( new BasicAttribute( "jpegPhoto" ) ).length );
+    }
+
+    @Test
+    public void testJndiEscapes()
+    {
+        Assertions.assertEquals( "cn=a\\2fb,o=example", JNDIProviderImpl.addJndiEscape( "cn=a/b,o=example" ) );
+        Assertions.assertEquals( "cn=\\2f\\2f,o=\\2f", JNDIProviderImpl.addJndiEscape( "cn=//,o=/" ) );
+        Assertions.assertEquals( "cn=ab,o=example", JNDIProviderImpl.addJndiEscape( "cn=ab,o=example" ) );
+        Assertions.assertNull( JNDIProviderImpl.addJndiEscape( null ) );
+
+        Assertions.assertEquals( "cn=a/b,o=example", JNDIProviderImpl.removeJndiEscapes( "\"cn=a/b,o=example\"" ) );
+        Assertions.assertEquals( "/", JNDIProviderImpl.removeJndiEscapes( "\"/\"" ) );
+        Assertions.assertEquals( "\"cn=ab\"", JNDIProviderImpl.removeJndiEscapes( "\"cn=ab\"" ) );
+        Assertions.assertEquals( "\"/", JNDIProviderImpl.removeJndiEscapes( "\"/" ) );
+        Assertions.assertEquals( "cn=a/b", JNDIProviderImpl.removeJndiEscapes( "cn=a/b" ) );
+        Assertions.assertNull( JNDIProviderImpl.removeJndiEscapes( null ) );
+    }
+}
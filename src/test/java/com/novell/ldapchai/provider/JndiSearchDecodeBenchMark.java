@@ -0,0 +1,212 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.util.SearchHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.SearchResult;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes 100k mocked JNDI {@link SearchResult}s into the {@code searchMultiValues} result form, using the
+ * previous per-entry decoding (settings lookup, two maps and unmodifiable wrappers per entry, enumerated
+ * value lists) and the current {@link JNDIProviderImpl} decoding, driven through the search engine's result
+ * consumer as for each page of a search.  Run with the gc profiler to see bytes allocated per decode
+ * ({@code gc.alloc.rate.norm}).
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@State( Scope.Benchmark )
+@Fork( jvmArgs =
+        {
+                "-Xms2G", "-Xmx2G"
+        }, value = 1 )
+@Warmup( iterations = 1 )
+@Measurement( iterations = 2 )
+public class JndiSearchDecodeBenchMark
+{
+    private static final int RESULT_COUNT = 100_000;
+    private static final String BASE_DN = "ou=people,o=example";
+
+    private ChaiConfiguration chaiConfiguration;
+    private JNDIProviderImpl jndiProvider;
+    private List<SearchResult> searchResults;
+
+    public static void main( final String[] args ) throws RunnerException
+    {
+        final Options opt = new OptionsBuilder()
+                .include( JndiSearchDecodeBenchMark.class.getSimpleName() )
+                .addProfiler( GCProfiler.class )
+                .forks( 1 )
+                .build();
+
+        new Runner( opt ).run();
+    }
+
+    @Setup
+    public void setup()
+    {
+        chaiConfiguration = ChaiConfiguration.builder( "ldap://localhost", "cn=admin", "password" ).build();
+        jndiProvider = new JNDIProviderImpl();
+        searchResults = new ArrayList<>( RESULT_COUNT );
+        for ( int i = 0; i < RESULT_COUNT; i++ )
+        {
+            final BasicAttributes attributes = new BasicAttributes( true );
+            final BasicAttribute objectClass = new BasicAttribute( "objectClass" );
+            objectClass.add( "top" );
+            objectClass.add( "person" );
+            objectClass.add( "inetOrgPerson" );
+            attributes.put( objectClass );
+            attributes.put( "cn", "user" + i );
+            attributes.put( "sn", "surname" + i );
+            attributes.put( "givenName", "given" + i );
+            attributes.put( "mail", "user" + i + "@example.com" );
+            attributes.put( "title", "title" + ( i % 30 ) );
+
+            final SearchResult searchResult = new SearchResult( "cn=user" + i, null, attributes );
+            searchResult.setNameInNamespace( "cn=user" + i + "," + BASE_DN );
+            searchResults.add( searchResult );
+        }
+    }
+
+    @Benchmark
+    public Map<String, Map<String, List<String>>> previousDecode()
+            throws NamingException
+    {
+        final Map<String, Map<String, List<String>>> results = new HashMap<>();
+        for ( final SearchResult searchResult : searchResults )
+        {
+            String entryDN = null;
+            if ( chaiConfiguration.getBooleanSetting( ChaiSetting.JNDI_RESOLVE_IN_NAMESPACE ) )
+            {
+                entryDN = JNDIProviderImpl.removeJndiEscapes( searchResult.getNameInNamespace() );
+            }
+            if ( entryDN == null )
+            {
+                final StringBuilder entryDNbuilder = new StringBuilder();
+                entryDNbuilder.append( JNDIProviderImpl.removeJndiEscapes( searchResult.getName() ) );
+                entryDNbuilder.append( ',' ).append( BASE_DN );
+                entryDN = entryDNbuilder.toString();
+            }
+
+            final Map<String, List<String>> attrValues = new HashMap<>();
+            attrValues.putAll( previousParseAttributeValues( searchResult.getAttributes().getAll() ) );
+            if ( !results.containsKey( entryDN ) )
+            {
+                results.put( entryDN, Collections.unmodifiableMap( attrValues ) );
+            }
+        }
+        return Collections.unmodifiableMap( results );
+    }
+
+    @Benchmark
+    public Map<String, Map<String, List<String>>> currentDecode()
+            throws Exception
+    {
+        return jndiProvider.new SearchEngine( chaiConfiguration, BASE_DN, new SearchHelper() )
+                .parseResults( new SearchResultEnumeration( searchResults ) );
+    }
+
+    private static Map<String, List<String>> previousParseAttributeValues( final NamingEnumeration<? extends Attribute> attributeEnum )
+            throws NamingException
+    {
+        final Map<String, List<String>> attrValues = new HashMap<>();
+        while ( attributeEnum.hasMore() )
+        {
+            final Attribute loopAttribute = attributeEnum.next();
+            final List<String> valueList = new ArrayList<>();
+            for ( NamingEnumeration attrValueEnum = loopAttribute.getAll(); attrValueEnum.hasMore(); )
+            {
+                valueList.add( attrValueEnum.next().toString() );
+            }
+            attrValues.put( loopAttribute.getID(), Collections.unmodifiableList( valueList ) );
+        }
+        return Collections.unmodifiableMap( attrValues );
+    }
+
+    /**
+     * Enumeration of prepared search results, standing in for the enumeration returned by a search.
+     */
+    private static class SearchResultEnumeration implements NamingEnumeration<SearchResult>
+    {
+        private final Iterator<SearchResult> iterator;
+
+        SearchResultEnumeration( final List<SearchResult> searchResults )
+        {
+            this.iterator = searchResults.iterator();
+        }
+
+        @Override
+        public SearchResult next()
+        {
+            return iterator.next();
+        }
+
+        @Override
+        public boolean hasMore()
+        {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        @Override
+        public boolean hasMoreElements()
+        {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public SearchResult nextElement()
+        {
+            return iterator.next();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.util.internal.LdapFilter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LocalReplicaStoreTest
+{
+    private static final List<String> INDEXED = Arrays.asList( "objectClass", "cn" );
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReadAndSearch()
+            throws Exception
+    {
+        try ( LocalReplicaStore store = LocalReplicaStore.open( tempDir, INDEXED ) )
+        {
+            store.apply( makeTree(), Collections.emptyList() );
+            Assertions.assertEquals( 5, store.size() );
+
+            final LocalReplicaStore.StoredEntry alice = store.read( "CN=Alice, OU=People, O=Test" );
+            Assertions.assertNotNull( alice );
+            Assertions.assertEquals( "cn=alice,ou=people,o=test", alice.getDn() );
+            Assertions.assertEquals( Collections.singletonList( "alice@example.com" ), alice.getAttributes().get( "MAIL" ) );
+
+            Assertions.assertEquals( 2, store.search( "ou=people,o=test", SearchScope.ONE, LdapFilter.parse( "(objectClass=person)" ), 0 ).size() );
+            Assertions.assertEquals( 3, store.search( "o=test", SearchScope.SUBTREE, LdapFilter.parse( "(objectClass=person)" ), 0 ).size() );
+            Assertions.assertEquals( 1, store.search( "o=test", SearchScope.SUBTREE, LdapFilter.parse( "(cn=ALICE)" ), 0 ).size() );
+            Assertions.assertEquals( 1, store.search( "o=test", SearchScope.SUBTREE, LdapFilter.parse( "(mail=bob*)" ), 0 ).size() );
+            Assertions.assertEquals( 0, store.search( "ou=groups,o=test", SearchScope.SUBTREE, LdapFilter.parse( "(cn=alice)" ), 0 ).size() );
+            Assertions.assertEquals( 1, store.search( "o=test", SearchScope.BASE, LdapFilter.parse( "(objectClass=*)" ), 0 ).size() );
+            Assertions.assertEquals( 2, store.search( "o=test", SearchScope.SUBTREE, LdapFilter.parse( "(objectClass=person)" ), 2 ).size() );
+        }
+    }
+
+    @Test
+    public void testUpdateAndDelete()
+            throws Exception
+    {
+        try ( LocalReplicaStore store = LocalReplicaStore.open( tempDir, INDEXED ) )
+        {
+            store.apply( makeTree(), Collections.emptyList() );
+            store.apply( Collections.singletonMap( "cn=alice,ou=people,o=test", entry( "person", "alicia", "alicia@example.com" ) ), Collections.emptyList() );
+
+            Assertions.assertEquals( 0, store.search( "o=test", SearchScope.SUBTREE, LdapFilter.parse( "(cn=alice)" ), 0 ).size() );
+            Assertions.assertEquals( 1, store.search( "o=test", SearchScope.SUBTREE, LdapFilter.parse( "(cn=alicia)" ), 0 ).size() );
+
+            store.deleteSubtree( "ou=people,o=test" );
+            Assertions.assertEquals( 2, store.size() );
+            Assertions.assertNull( store.read( "cn=bob,ou=people,o=test" ) );
+            Assertions.assertEquals( 1, store.search( "o=test", SearchScope.SUBTREE, LdapFilter.parse( "(objectClass=person)" ), 0 ).size() );
+        }
+    }
+
+    @Test
+    public void testReopen()
+            throws Exception
+    {
+        try ( LocalReplicaStore store = LocalReplicaStore.open( tempDir, INDEXED ) )
+        {
+            store.apply( makeTree(), Collections.emptyList() );
+            store.apply( Collections.emptyMap(), Collections.singletonList( "cn=bob,ou=people,o=test" ) );
+            store.putMetadata( Collections.singletonMap( "syncTimestamp", "20240101000000Z" ) );
+        }
+
+        // simulate a crash while appending a record.
+        try ( FileChannel channel = FileChannel.open( tempDir.resolve( LocalReplicaStore.DATA_FILE ), StandardOpenOption.APPEND ) )
+        {
+            channel.write( ByteBuffer.wrap( new byte[] {0, 0, 1, 0, 1, 0, 0} ) );
+        }
+
+        try ( LocalReplicaStore store = LocalReplicaStore.open( tempDir, INDEXED ) )
+        {
+            Assertions.assertEquals( 4, store.size() );
+            Assertions.assertEquals( "20240101000000Z", store.getMetadata( "syncTimestamp" ) );
+            Assertions.assertNull( store.read( "cn=bob,ou=people,o=test" ) );
+            Assertions.assertEquals( 1, store.search( "o=test", SearchScope.SUBTREE, LdapFilter.parse( "(cn=alice)" ), 0 ).size() );
+
+            store.apply( Collections.singletonMap( "cn=carol,ou=people,o=test", entry( "person", "carol", "carol@example.com" ) ), Collections.emptyList() );
+        }
+
+        try ( LocalReplicaStore store = LocalReplicaStore.open( tempDir, INDEXED ) )
+        {
+            Assertions.assertEquals( 5, store.size() );
+            Assertions.assertNotNull( store.read( "cn=carol,ou=people,o=test" ) );
+        }
+    }
+
+    @Test
+    public void testCompaction()
+            throws Exception
+    {
+        final char[] padding = new char[10_000];
+        Arrays.fill( padding, 'x' );
+
+        try ( LocalReplicaStore store = LocalReplicaStore.open( tempDir, INDEXED ) )
+        {
+            store.apply( makeTree(), Collections.emptyList() );
+            for ( int i = 0; i < 300; i++ )
+            {
+                final Map<String, List<String>> entry = entry( "person", "alice", "alice@example.com" );
+                entry.put( "description", Collections.singletonList( new String( padding ) + i ) );
+                store.apply( Collections.singletonMap( "cn=alice,ou=people,o=test", entry ), Collections.emptyList() );
+            }
+
+            Assertions.assertTrue( store.read( "cn=alice,ou=people,o=test" ).getAttributes().get( "description" ).get( 0 ).endsWith( "299" ) );
+            Assertions.assertEquals( 5, store.size() );
+        }
+
+        Assertions.assertTrue( Files.size( tempDir.resolve( LocalReplicaStore.DATA_FILE ) ) < 2_000_000 );
+
+        try ( LocalReplicaStore store = LocalReplicaStore.open( tempDir, INDEXED ) )
+        {
+            Assertions.assertEquals( 5, store.size() );
+            Assertions.assertEquals( 1, store.search( "o=test", SearchScope.SUBTREE, LdapFilter.parse( "(cn=alice)" ), 0 ).size() );
+        }
+    }
+
+    @Test
+    public void testMappedSpace()
+            throws Exception
+    {
+        final Path dataFile = tempDir.resolve( LocalReplicaStore.DATA_FILE );
+        final long logSize;
+        try ( LocalReplicaStore store = LocalReplicaStore.open( tempDir, INDEXED ) )
+        {
+            store.apply( makeTree(), Collections.emptyList() );
+            for ( int i = 0; i < 100; i++ )
+            {
+                store.apply( Collections.singletonMap( "cn=alice,ou=people,o=test", entry( "person", "alice", "alice" + i + "@example.com" ) ), Collections.emptyList() );
+            }
+
+            // records are written into space mapped ahead of the log.
+            Assertions.assertEquals( 1024 * 1024, Files.size( dataFile ) );
+        }
+
+        logSize = Files.size( dataFile );
+        Assertions.assertTrue( logSize < 1024 * 1024 );
+
+        // simulate a crash that left the unused mapped space behind.
+        try ( FileChannel channel = FileChannel.open( dataFile, StandardOpenOption.APPEND ) )
+        {
+            channel.write( ByteBuffer.wrap( new byte[64 * 1024] ) );
+        }
+
+        try ( LocalReplicaStore store = LocalReplicaStore.open( tempDir, INDEXED ) )
+        {
+            Assertions.assertEquals( 5, store.size() );
+            Assertions.assertEquals( "alice99@example.com", store.read( "cn=alice,ou=people,o=test" ).getAttributes().get( "mail" ).get( 0 ) );
+            store.apply( Collections.singletonMap( "cn=carol,ou=people,o=test", entry( "person", "carol", "carol@example.com" ) ), Collections.emptyList() );
+        }
+
+        Assertions.assertTrue( Files.size( dataFile ) > logSize );
+        try ( LocalReplicaStore store = LocalReplicaStore.open( tempDir, INDEXED ) )
+        {
+            Assertions.assertEquals( 6, store.size() );
+            Assertions.assertNotNull( store.read( "cn=carol,ou=people,o=test" ) );
+        }
+    }
+
+    private static Map<String, Map<String, List<String>>> makeTree()
+    {
+        final Map<String, Map<String, List<String>>> tree = new LinkedHashMap<>();
+        tree.put( "o=test", Collections.singletonMap( "objectClass", Arrays.asList( "top", "organization" ) ) );
+        tree.put( "ou=people,o=test", Collections.singletonMap( "objectClass", Arrays.asList( "top", "organizationalUnit" ) ) );
+        tree.put( "cn=alice,ou=people,o=test", entry( "person", "alice", "alice@example.com" ) );
+        tree.put( "cn=bob,ou=people,o=test", entry( "person", "bob", "bob@example.com" ) );
+        tree.put( "cn=admin,o=test", entry( "person", "admin", "admin@example.com" ) );
+        return tree;
+    }
+
+    private static Map<String, List<String>> entry( final String objectClass, final String cn, final String mail )
+    {
+        final Map<String, List<String>> entry = new LinkedHashMap<>();
+        entry.put( "objectClass", Arrays.asList( "top", objectClass ) );
+        entry.put( "cn", Collections.singletonList( cn ) );
+        entry.put( "mail", Collections.singletonList( mail ) );
+        return entry;
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.util.ChaiDn;
+import com.novell.ldapchai.util.SearchHelper;
+import com.novell.ldapchai.util.internal.LdapFilter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LocalReplicaTest
+{
+    private static final String BASE_DN = "ou=people,o=test";
+
+    private static final LocalReplica.Identity IDENTITY = new LocalReplica.Identity( "cn=admin,o=test", Collections.singletonList( "ldap://localhost" ) );
+
+    private static final AttributeSchema SCHEMA = AttributeSchema.fromAttributeTypes( Arrays.asList(
+            "( 2.5.4.3 NAME 'cn' EQUALITY caseIgnoreMatch SUBSTR caseIgnoreSubstringsMatch SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )",
+            "( 0.9.2342.19200300.100.1.3 NAME 'mail' EQUALITY caseIgnoreIA5Match SYNTAX 1.3.6.1.4.1.1466.115.121.1.26 )",
+            "( 2.5.4.13 NAME 'description' EQUALITY caseIgnoreMatch SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )",
+            "( 2.5.4.35 NAME 'userPassword' EQUALITY octetStringMatch SYNTAX 1.3.6.1.4.1.1466.115.121.1.40 )",
+            "( 2.5.4.31 NAME 'member' EQUALITY distinguishedNameMatch SYNTAX 1.3.6.1.4.1.1466.115.121.1.12 )",
+            "( 2.5.18.2 NAME 'modifyTimestamp' EQUALITY generalizedTimeMatch ORDERING generalizedTimeOrderingMatch "
+                    + "SYNTAX 1.3.6.1.4.1.1466.115.121.1.24 SINGLE-VALUE NO-USER-MODIFICATION USAGE directoryOperation )" ) );
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSyncAndLocalReads()
+            throws Exception
+    {
+        final FakeServer server = new FakeServer();
+        try ( LocalReplica localReplica = openReplica( server ) )
+        {
+            Assertions.assertFalse( localReplica.isReady() );
+            localReplica.sync();
+            Assertions.assertTrue( localReplica.isReady() );
+            Assertions.assertEquals( 4, localReplica.getStore().size() );
+
+            final ChaiProvider provider = LocalReplicaWrapper.forProvider( server.provider(), localReplica );
+            server.operations.clear();
+
+            Assertions.assertEquals( "alice@example.com", provider.readStringAttribute( "cn=alice," + BASE_DN, "mail" ) );
+            Assertions.assertNull( provider.readStringAttribute( "cn=alice," + BASE_DN, "description" ) );
+            Assertions.assertEquals( Collections.singleton( "alice" ), provider.readMultiStringAttribute( "cn=alice," + BASE_DN, "cn" ) );
+            Assertions.assertTrue( provider.compareStringAttribute( "cn=alice," + BASE_DN, "mail", "alice@example.com" ) );
+            Assertions.assertFalse( provider.compareStringAttribute( "cn=alice," + BASE_DN, "mail", "bob@example.com" ) );
+
+            final Map<String, Map<String, String>> results = provider.search( BASE_DN, "(&(objectClass=person)(cn=b*))", null, SearchScope.ONE );
+            Assertions.assertEquals( Collections.singleton( "cn=bob," + BASE_DN ), results.keySet() );
+            Assertions.assertEquals( "bob@example.com", results.get( "cn=bob," + BASE_DN ).get( "mail" ) );
+            Assertions.assertFalse( results.get( "cn=bob," + BASE_DN ).containsKey( LocalReplica.MODIFY_TIMESTAMP ) );
+
+            final SearchHelper searchHelper = new SearchHelper( "(objectClass=person)", SearchScope.SUBTREE, new String[] {"cn"} );
+            Assertions.assertEquals( 3, provider.searchCompact( BASE_DN, searchHelper ).size() );
+            Assertions.assertTrue( server.operations.isEmpty(), "unexpected server operations " + server.operations );
+
+            // operations that can not be answered locally
+            Assertions.assertNotNull( provider.readStringAttribute( "cn=alice," + BASE_DN, "userPassword" ) );
+            provider.readStringAttribute( "cn=other,o=test", "cn" );
+            provider.search( BASE_DN, "(member=cn=alice,ou=people,o=test)", null, SearchScope.SUBTREE );
+            provider.search( BASE_DN, "(cn~=alice)", null, SearchScope.SUBTREE );
+            Assertions.assertEquals( 4, server.operations.size(), "server operations " + server.operations );
+        }
+    }
+
+    @Test
+    public void testWriteThrough()
+            throws Exception
+    {
+        final FakeServer server = new FakeServer();
+        try ( LocalReplica localReplica = openReplica( server ) )
+        {
+            localReplica.sync();
+            final ChaiProvider provider = LocalReplicaWrapper.forProvider( server.provider(), localReplica );
+
+            provider.writeStringAttribute( "cn=alice," + BASE_DN, "description", Collections.singleton( "updated" ), true );
+            server.operations.clear();
+
+            // until the entry is re-read, it is read from the server.
+            Assertions.assertEquals( "updated", provider.readStringAttribute( "cn=alice," + BASE_DN, "description" ) );
+            Assertions.assertEquals( Collections.singletonList( "readStringAttribute" ), server.operations );
+            Assertions.assertFalse( localReplica.isSearchable() );
+
+            localReplica.refreshPending();
+            server.operations.clear();
+            Assertions.assertEquals( "updated", provider.readStringAttribute( "cn=alice," + BASE_DN, "description" ) );
+            Assertions.assertEquals( 1, provider.search( BASE_DN, "(description=UPDATED)", null, SearchScope.SUBTREE ).size() );
+            Assertions.assertTrue( server.operations.isEmpty(), "unexpected server operations " + server.operations );
+
+            provider.deleteEntry( "cn=bob," + BASE_DN );
+            Assertions.assertTrue( provider.search( BASE_DN, "(cn=bob)", null, SearchScope.SUBTREE ).isEmpty() );
+            Assertions.assertTrue( server.operations.stream().noneMatch( operation -> operation.startsWith( "search" ) ) );
+        }
+    }
+
+    @Test
+    public void testBatchedRefresh()
+            throws Exception
+    {
+        final FakeServer server = new FakeServer();
+        try ( LocalReplica localReplica = openReplica( server ) )
+        {
+            localReplica.sync();
+            final ChaiProvider provider = LocalReplicaWrapper.forProvider( server.provider(), localReplica );
+            final long mappedSize = Files.size( tempDir.resolve( LocalReplicaStore.DATA_FILE ) );
+
+            server.operations.clear();
+            for ( int i = 0; i < 10; i++ )
+            {
+                provider.writeStringAttribute( "cn=alice," + BASE_DN, "description", Collections.singleton( "alice" + i ), true );
+                provider.writeStringAttribute( "cn=bob," + BASE_DN, "description", Collections.singleton( "bob" + i ), true );
+            }
+            Assertions.assertTrue( server.operations.stream().noneMatch( operation -> operation.startsWith( "search" ) ) );
+            Assertions.assertTrue( localReplica.isRefreshPending( "CN=Alice," + BASE_DN ) );
+            Assertions.assertFalse( localReplica.isRefreshPending( "cn=carol," + BASE_DN ) );
+
+            // each modified entry is re-read once, however often it was modified.
+            localReplica.refreshPending();
+            Assertions.assertEquals( 2, server.operations.stream().filter( operation -> operation.startsWith( "search" ) ).count() );
+            Assertions.assertFalse( localReplica.isRefreshPending( "cn=alice," + BASE_DN ) );
+            Assertions.assertTrue( localReplica.isSearchable() );
+            Assertions.assertEquals( "alice9", localReplica.getStore().read( "cn=alice," + BASE_DN ).getAttributes().get( "description" ).get( 0 ) );
+            Assertions.assertEquals( "bob9", localReplica.getStore().read( "cn=bob," + BASE_DN ).getAttributes().get( "description" ).get( 0 ) );
+            Assertions.assertEquals( mappedSize, Files.size( tempDir.resolve( LocalReplicaStore.DATA_FILE ) ) );
+        }
+    }
+
+    @Test
+    public void testIncrementalSyncAndReconcile()
+            throws Exception
+    {
+        final FakeServer server = new FakeServer();
+        try ( LocalReplica localReplica = openReplica( server ) )
+        {
+            localReplica.sync();
+
+            server.put( "cn=dave," + BASE_DN, "dave", "20240102000000Z" );
+            server.entries.get( "cn=alice," + BASE_DN ).put( "mail", Collections.singletonList( "alice@example.org" ) );
+            server.entries.get( "cn=alice," + BASE_DN ).put( LocalReplica.MODIFY_TIMESTAMP, Collections.singletonList( "20240103000000Z" ) );
+            server.entries.remove( "cn=carol," + BASE_DN );
+
+            localReplica.sync();
+            Assertions.assertTrue( server.filters.get( server.filters.size() - 1 ).contains( "modifyTimestamp>=20240101000000Z" ) );
+            Assertions.assertNotNull( localReplica.getStore().read( "cn=dave," + BASE_DN ) );
+            Assertions.assertEquals( "alice@example.org", localReplica.getStore().read( "cn=alice," + BASE_DN ).getAttributes().get( "mail" ).get( 0 ) );
+            Assertions.assertEquals( "20240103000000Z", localReplica.getStore().getMetadata( LocalReplica.METADATA_SYNC_TIMESTAMP ) );
+
+            // deletes are only found by reconciliation
+            Assertions.assertNotNull( localReplica.getStore().read( "cn=carol," + BASE_DN ) );
+            localReplica.getStore().putMetadata( Collections.singletonMap( LocalReplica.METADATA_RECONCILE_TIME, "0" ) );
+            localReplica.sync();
+            Assertions.assertNull( localReplica.getStore().read( "cn=carol," + BASE_DN ) );
+        }
+    }
+
+    @Test
+    public void testRestart()
+            throws Exception
+    {
+        final FakeServer server = new FakeServer();
+        try ( LocalReplica localReplica = openReplica( server ) )
+        {
+            localReplica.sync();
+        }
+
+        try ( LocalReplica localReplica = openReplica( server ) )
+        {
+            Assertions.assertTrue( localReplica.isReady() );
+            Assertions.assertEquals( 4, localReplica.getStore().size() );
+
+            server.operations.clear();
+            final ChaiProvider provider = LocalReplicaWrapper.forProvider( server.provider(), localReplica );
+            Assertions.assertEquals( "bob@example.com", provider.readStringAttribute( "cn=bob," + BASE_DN, "mail" ) );
+            Assertions.assertTrue( server.operations.isEmpty() );
+
+            localReplica.sync();
+            Assertions.assertEquals( "searchCompact(modifyTimestamp>=20240101000000Z)", server.operations.get( server.operations.size() - 1 ) );
+        }
+
+        final LocalReplicaStore store = LocalReplicaStore.open( tempDir, Collections.singletonList( "cn" ) );
+        try ( LocalReplica localReplica = new LocalReplica( store, "ou=other,o=test", IDENTITY, 60_000, 3_600_000, server::provider ) )
+        {
+            Assertions.assertFalse( localReplica.isReady() );
+            Assertions.assertEquals( 0, store.size() );
+        }
+    }
+
+    private LocalReplica openReplica( final FakeServer server )
+            throws IOException
+    {
+        final LocalReplicaStore store = LocalReplicaStore.open( tempDir, Arrays.asList( "objectClass", "cn" ) );
+        return new LocalReplica( store, BASE_DN, IDENTITY, 60_000, 3_600_000, server::provider );
+    }
+
+    @Test
+    public void testIdentityChangeDiscardsStore()
+            throws Exception
+    {
+        final FakeServer server = new FakeServer();
+        try ( LocalReplica localReplica = openReplica( server ) )
+        {
+            localReplica.sync();
+            Assertions.assertEquals( "cn=admin,o=test", localReplica.getStore().getMetadata( LocalReplica.METADATA_BIND_DN ) );
+            Assertions.assertEquals( "ldap://localhost", localReplica.getStore().getMetadata( LocalReplica.METADATA_BIND_URLS ) );
+        }
+
+        final LocalReplica.Identity sameIdentity = new LocalReplica.Identity( "CN=Admin, O=Test", Collections.singletonList( "ldap://localhost" ) );
+        try ( LocalReplica localReplica = new LocalReplica( LocalReplicaStore.open( tempDir, Collections.singletonList( "cn" ) ),
+                BASE_DN, sameIdentity, 60_000, 3_600_000, server::provider ) )
+        {
+            Assertions.assertTrue( localReplica.isReady() );
+            Assertions.assertEquals( 4, localReplica.getStore().size() );
+        }
+
+        final LocalReplica.Identity otherUser = new LocalReplica.Identity( "cn=user,o=test", Collections.singletonList( "ldap://localhost" ) );
+        try ( LocalReplica localReplica = new LocalReplica( LocalReplicaStore.open( tempDir, Collections.singletonList( "cn" ) ),
+                BASE_DN, otherUser, 60_000, 3_600_000, server::provider ) )
+        {
+            Assertions.assertFalse( localReplica.isReady() );
+            Assertions.assertEquals( 0, localReplica.getStore().size() );
+            localReplica.sync();
+        }
+
+        final LocalReplica.Identity otherServer = new LocalReplica.Identity( "cn=user,o=test", Collections.singletonList( "ldap://otherhost" ) );
+        try ( LocalReplica localReplica = new LocalReplica( LocalReplicaStore.open( tempDir, Collections.singletonList( "cn" ) ),
+                BASE_DN, otherServer, 60_000, 3_600_000, server::provider ) )
+        {
+            Assertions.assertFalse( localReplica.isReady() );
+            Assertions.assertEquals( 0, localReplica.getStore().size() );
+        }
+    }
+
+    @Test
+    public void testCompareUsesMatchingRule()
+            throws Exception
+    {
+        final FakeServer server = new FakeServer();
+        try ( LocalReplica localReplica = openReplica( server ) )
+        {
+            localReplica.sync();
+            final ChaiProvider provider = LocalReplicaWrapper.forProvider( server.provider(), localReplica );
+            server.operations.clear();
+
+            Assertions.assertTrue( provider.compareStringAttribute( BASE_DN, "member", "cn=alice," + BASE_DN ) );
+            Assertions.assertTrue( provider.compareStringAttribute( "cn=alice," + BASE_DN, "mail", "ALICE@example.com" ) );
+            Assertions.assertFalse( provider.compareStringAttribute( "cn=alice," + BASE_DN, "mail", "bob@example.com" ) );
+            Assertions.assertTrue( server.operations.isEmpty(), "unexpected server operations " + server.operations );
+
+            // distinguished name values are normalized by the server, so a differently spelled value is not answered locally
+            Assertions.assertTrue( provider.compareStringAttribute( BASE_DN, "member", "CN=Alice, " + BASE_DN ) );
+            Assertions.assertEquals( Collections.singletonList( "compareStringAttribute" ), server.operations );
+        }
+    }
+
+    private static class FakeServer
+    {
+        private final Map<String, Map<String, List<String>>> entries = new ConcurrentHashMap<>();
+        private final List<String> operations = Collections.synchronizedList( new ArrayList<>() );
+        private final List<String> filters = Collections.synchronizedList( new ArrayList<>() );
+        private final AtomicInteger connections = new AtomicInteger();
+
+        FakeServer()
+        {
+            entries.put( BASE_DN, attributes( "organizationalUnit", null, "20240101000000Z" ) );
+            entries.get( BASE_DN ).put( "member", Collections.singletonList( "cn=alice," + BASE_DN ) );
+            put( "cn=alice," + BASE_DN, "alice", "20231201000000Z" );
+            put( "cn=bob," + BASE_DN, "bob", "20240101000000Z" );
+            put( "cn=carol," + BASE_DN, "carol", "20231101000000Z" );
+        }
+
+        void put( final String dn, final String cn, final String timestamp )
+        {
+            final Map<String, List<String>> attributes = attributes( "person", cn, timestamp );
+            attributes.put( "mail", Collections.singletonList( cn + "@example.com" ) );
+            attributes.put( "userPassword", Collections.singletonList( "secret" ) );
+            entries.put( dn, attributes );
+        }
+
+        private static Map<String, List<String>> attributes( final String objectClass, final String cn, final String timestamp )
+        {
+            final Map<String, List<String>> attributes = new ConcurrentHashMap<>();
+            attributes.put( "objectClass", Arrays.asList( "top", objectClass ) );
+            if ( cn != null )
+            {
+                attributes.put( "cn", Collections.singletonList( cn ) );
+            }
+            attributes.put( LocalReplica.MODIFY_TIMESTAMP, Collections.singletonList( timestamp ) );
+            return attributes;
+        }
+
+        ChaiProviderImplementor provider()
+        {
+            connections.incrementAndGet();
+            return ( ChaiProviderImplementor ) Proxy.newProxyInstance(
+                    LocalReplicaTest.class.getClassLoader(),
+                    new Class[] {ChaiProviderImplementor.class},
+                    ( proxy, method, args ) ->
+                    {
+                        switch ( method.getName() )
+                        {
+                            case "getAttributeSchema":
+                                return SCHEMA;
+
+                            case "close":
+                                return null;
+
+                            case "readStringAttribute":
+                                operations.add( method.getName() );
+                                return values( ( String ) args[0], ( String ) args[1] ).stream().findFirst().orElse( null );
+
+                            case "search":
+                                operations.add( method.getName() );
+                                return Collections.emptyMap();
+
+                            case "compareStringAttribute":
+                                operations.add( method.getName() );
+                                return Boolean.TRUE;
+
+                            case "searchCompact":
+                                final SearchHelper searchHelper = ( SearchHelper ) args[1];
+                                operations.add( method.getName() + searchHelper.getFilter() );
+                                filters.add( searchHelper.getFilter() );
+                                return search( ( String ) args[0], searchHelper );
+
+                            case "writeStringAttribute":
+                                operations.add( method.getName() );
+                                final Map<String, List<String>> entry = entries.get( ( String ) args[0] );
+                                entry.put( ( String ) args[1], new ArrayList<>( ( Set<String> ) args[2] ) );
+                                entry.put( LocalReplica.MODIFY_TIMESTAMP, Collections.singletonList( "20240105000000Z" ) );
+                                return null;
+
+                            case "deleteEntry":
+                                operations.add( method.getName() );
+                                if ( entries.remove( ( String ) args[0] ) == null )
+                                {
+                                    throw new ChaiOperationException( "no such entry", ChaiError.NO_SUCH_ENTRY );
+                                }
+                                return null;
+
+                            default:
+                                throw new IOException( "unexpected method " + method.getName() );
+                        }
+                    } );
+        }
+
+        private List<String> values( final String dn, final String attribute )
+        {
+            final Map<String, List<String>> entry = entries.get( dn );
+            if ( entry == null )
+            {
+                return Collections.emptyList();
+            }
+            for ( final Map.Entry<String, List<String>> attributeEntry : entry.entrySet() )
+            {
+                if ( attributeEntry.getKey().equalsIgnoreCase( attribute ) )
+                {
+                    return attributeEntry.getValue();
+                }
+            }
+            return Collections.emptyList();
+        }
+
+        private CompactSearchResult search( final String baseDN, final SearchHelper searchHelper )
+        {
+            final ChaiDn base = ChaiDn.parse( baseDN );
+            final LdapFilter filter = LdapFilter.parse( searchHelper.getFilter() );
+            final Set<String> requested = searchHelper.getAttributes() == null ? Collections.singleton( "*" ) : new HashSet<>( searchHelper.getAttributes() );
+
+            final Map<String, Map<String, List<String>>> results = new LinkedHashMap<>();
+            for ( final Map.Entry<String, Map<String, List<String>>> entry : entries.entrySet() )
+            {
+                final ChaiDn dn = ChaiDn.parse( entry.getKey() );
+                final boolean inScope = searchHelper.getSearchScope() == SearchScope.BASE
+                        ? dn.equals( base )
+                        : searchHelper.getSearchScope() == SearchScope.ONE
+                        ? base.equals( dn.getParent() )
+                        : dn.equals( base ) || dn.isDescendantOf( base );
+                if ( inScope && filter.matches( entry.getValue() ) )
+                {
+                    final Map<String, List<String>> attributes = new LinkedHashMap<>();
+                    for ( final Map.Entry<String, List<String>> attribute : entry.getValue().entrySet() )
+                    {
+                        final boolean operational = LocalReplica.MODIFY_TIMESTAMP.equals( attribute.getKey() );
+                        if ( requested.contains( attribute.getKey() ) || ( !operational && requested.contains( "*" ) ) )
+                        {
+                            attributes.put( attribute.getKey(), attribute.getValue() );
+                        }
+                    }
+                    results.put( entry.getKey(), attributes );
+                }
+            }
+            return CompactSearchResult.fromMap( results );
+        }
+    }
+}
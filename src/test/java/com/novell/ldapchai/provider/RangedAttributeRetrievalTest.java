@@ -0,0 +1,151 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.ChaiEntry;
+import com.novell.ldapchai.InMemoryDirectory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RangedAttributeRetrievalTest
+{
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Simulates a server returning at most {@code maxValRange} values of an attribute per read.
+     */
+    private static RangedAttributeRetrieval.RangeReader rangedServer( final List<String> values, final int maxValRange, final List<String> requests )
+    {
+        return requestedAttribute ->
+        {
+            requests.add( requestedAttribute );
+            final int rangeIndex = requestedAttribute.indexOf( ";range=" );
+            final String attribute = rangeIndex < 0 ? requestedAttribute : requestedAttribute.substring( 0, rangeIndex );
+            final int low = rangeIndex < 0
+                    ? 0
+                    : Integer.parseInt( requestedAttribute.substring( rangeIndex + 7, requestedAttribute.indexOf( '-', rangeIndex ) ) );
+
+            if ( rangeIndex < 0 && values.size() <= maxValRange )
+            {
+                return Collections.singletonMap( attribute.toUpperCase(), values );
+            }
+
+            final int high = Math.min( low + maxValRange, values.size() );
+            final String returnedName = attribute + ";range=" + low + "-" + ( high == values.size() ? "*" : String.valueOf( high - 1 ) );
+            return Collections.singletonMap( returnedName, values.subList( low, high ) );
+        };
+    }
+
+    private static List<String> members( final int count )
+    {
+        final List<String> values = new ArrayList<>();
+        for ( int i = 0; i < count; i++ )
+        {
+            values.add( "cn=user" + i + ",o=example" );
+        }
+        return values;
+    }
+
+    @Test
+    public void testReadAllRanges()
+            throws Exception
+    {
+        final List<String> values = members( 3501 );
+        final List<String> requests = new ArrayList<>();
+        final List<String> results = new ArrayList<>();
+
+        RangedAttributeRetrieval.readAll( rangedServer( values, 1500, requests ), "member", results );
+
+        Assertions.assertEquals( values, results );
+        Assertions.assertEquals( Arrays.asList( "member", "member;range=1500-*", "member;range=3000-*" ), requests );
+    }
+
+    @Test
+    public void testUnrangedAttribute()
+            throws Exception
+    {
+        final List<String> values = members( 10 );
+        final List<String> requests = new ArrayList<>();
+
+        final AttributeValueRange range = RangedAttributeRetrieval.readRange( rangedServer( values, 1500, requests ), "member", 0 );
+        Assertions.assertTrue( range.isComplete() );
+        Assertions.assertEquals( values, range.getValues() );
+        Assertions.assertEquals( 10, range.getNextIndex() );
+
+        final AttributeValueRange emptyRange = RangedAttributeRetrieval.readRange( requestedAttribute -> new HashMap<>(), "member", 0 );
+        Assertions.assertTrue( emptyRange.isComplete() );
+        Assertions.assertTrue( emptyRange.getValues().isEmpty() );
+    }
+
+    @Test
+    public void testParseRange()
+    {
+        final Map<String, List<String>> returned = Collections.singletonMap( "Member;Range=1500-2999", members( 1500 ) );
+        final AttributeValueRange range = RangedAttributeRetrieval.toRange( "member", 1500, returned );
+        Assertions.assertFalse( range.isComplete() );
+        Assertions.assertEquals( 1500, range.getStartIndex() );
+        Assertions.assertEquals( 3000, range.getNextIndex() );
+
+        final AttributeValueRange lastRange = RangedAttributeRetrieval.toRange( "member", 3000,
+                Collections.singletonMap( "member;range=3000-*", members( 2 ) ) );
+        Assertions.assertTrue( lastRange.isComplete() );
+        Assertions.assertEquals( 3002, lastRange.getNextIndex() );
+
+        Assertions.assertThrows( IllegalArgumentException.class,
+                () -> RangedAttributeRetrieval.readRange( requestedAttribute -> new HashMap<>(), "member", -1 ) );
+    }
+
+    @Test
+    public void testEntryRangeConsumer()
+            throws Exception
+    {
+        final StringBuilder ldif = new StringBuilder( "dn: o=example\nobjectClass: organization\no: example\n\n"
+                + "dn: cn=group,o=example\nobjectClass: groupOfNames\ncn: group\n" );
+        for ( final String member : members( 50 ) )
+        {
+            ldif.append( "member: " ).append( member ).append( '\n' );
+        }
+
+        try ( InMemoryDirectory directory = InMemoryDirectory.builder( tempDir, ldif ).build() )
+        {
+            final ChaiProvider provider = directory.newProvider();
+
+            final AttributeValueRange range = provider.readMultiStringAttributeRange( "cn=group,o=example", "member", 40 );
+            Assertions.assertTrue( range.isComplete() );
+            Assertions.assertEquals( 10, range.getValues().size() );
+
+            final ChaiEntry entry = provider.getEntryFactory().newChaiEntry( "cn=group,o=example" );
+            final List<String> consumed = new ArrayList<>();
+            final long count = entry.readMultiStringAttribute( "member", values -> consumed.addAll( values ) );
+            Assertions.assertEquals( 50, count );
+            Assertions.assertEquals( entry.readMultiStringAttribute( "member" ).size(), consumed.size() );
+        }
+    }
+}
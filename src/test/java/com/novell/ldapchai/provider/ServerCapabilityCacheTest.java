@@ -0,0 +1,177 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.provider;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class ServerCapabilityCacheTest
+{
+    private static final String UNSUPPORTED_OID = "2.16.840.1.113719.1.39.42.100.19";
+
+    @Test
+    public void testCacheKey()
+    {
+        final ChaiConfiguration config1 = ChaiConfiguration.builder( "ldaps://Host1:636/o=path", "bindDN", "bindPW" ).build();
+        final ChaiConfiguration config2 = ChaiConfiguration.builder( "ldaps://host1:636", "otherDN", "otherPW" ).build();
+        final ChaiConfiguration config3 = ChaiConfiguration.builder( "ldaps://host2:636", "bindDN", "bindPW" ).build();
+
+        Assertions.assertEquals( ServerCapabilityCache.cacheKey( config1 ), ServerCapabilityCache.cacheKey( config2 ) );
+        Assertions.assertNotEquals( ServerCapabilityCache.cacheKey( config1 ), ServerCapabilityCache.cacheKey( config3 ) );
+    }
+
+    @Test
+    public void testUnsupportedExtendedOperation()
+    {
+        final ChaiProviderFactory chaiProviderFactory = ChaiProviderFactory.newProviderFactory();
+        final ServerCapabilityCache cache = chaiProviderFactory.getCentralService().getServerCapabilityCache();
+        final ChaiConfiguration config1 = ChaiConfiguration.builder( "ldap://host1", "bindDN", "bindPW" ).build();
+        final ChaiConfiguration config2 = ChaiConfiguration.builder( "ldap://host2", "bindDN", "bindPW" ).build();
+
+        Assertions.assertFalse( cache.isExtendedOperationUnsupported( config1, UNSUPPORTED_OID ) );
+        cache.addUnsupportedExtendedOperation( config1, UNSUPPORTED_OID );
+        Assertions.assertTrue( cache.isExtendedOperationUnsupported( config1, UNSUPPORTED_OID ) );
+        Assertions.assertFalse( cache.isExtendedOperationUnsupported( config2, UNSUPPORTED_OID ) );
+        Assertions.assertFalse( cache.get( config1 ).isRootDseRead() );
+        chaiProviderFactory.close();
+    }
+
+    @Test
+    public void testConcurrentUnsupportedExtendedOperations()
+            throws Exception
+    {
+        final ChaiProviderFactory chaiProviderFactory = ChaiProviderFactory.newProviderFactory();
+        final ServerCapabilityCache cache = chaiProviderFactory.getCentralService().getServerCapabilityCache();
+        final ChaiConfiguration chaiConfiguration = ChaiConfiguration.builder( "ldap://host1", "bindDN", "bindPW" ).build();
+
+        final int threadCount = 8;
+        final int oidsPerThread = 50;
+        final ExecutorService executorService = Executors.newFixedThreadPool( threadCount );
+        final CountDownLatch startLatch = new CountDownLatch( 1 );
+        final List<Future<?>> futures = new ArrayList<>();
+        for ( int t = 0; t < threadCount; t++ )
+        {
+            final int threadNumber = t;
+            futures.add( executorService.submit( () ->
+            {
+                startLatch.await();
+                for ( int i = 0; i < oidsPerThread; i++ )
+                {
+                    cache.addUnsupportedExtendedOperation( chaiConfiguration, "1.2.3." + threadNumber + "." + i );
+                }
+                return null;
+            } ) );
+        }
+        startLatch.countDown();
+        for ( final Future<?> future : futures )
+        {
+            future.get();
+        }
+        executorService.shutdown();
+
+        Assertions.assertEquals( threadCount * oidsPerThread, cache.get( chaiConfiguration ).getUnsupportedExtendedOperations().size() );
+        chaiProviderFactory.close();
+    }
+
+    @Test
+    public void testCacheDisabled()
+    {
+        final ChaiProviderFactory chaiProviderFactory = ChaiProviderFactory.newProviderFactory(
+                Collections.singletonMap( ChaiProviderFactorySetting.VENDOR_CACHE_MAX_AGE_MS, "0" ) );
+        final ServerCapabilityCache cache = chaiProviderFactory.getCentralService().getServerCapabilityCache();
+        final ChaiConfiguration chaiConfiguration = ChaiConfiguration.builder( "ldap://host1", "bindDN", "bindPW" ).build();
+
+        cache.addUnsupportedExtendedOperation( chaiConfiguration, UNSUPPORTED_OID );
+        Assertions.assertFalse( cache.isExtendedOperationUnsupported( chaiConfiguration, UNSUPPORTED_OID ) );
+        Assertions.assertEquals( 0, cache.size() );
+        chaiProviderFactory.close();
+    }
+
+    @Test
+    public void testPersistence( @TempDir final Path tempDir )
+    {
+        final Path storageFile = tempDir.resolve( "capabilities.json" );
+        final Map<ChaiProviderFactorySetting, String> settings = new HashMap<>();
+        settings.put( ChaiProviderFactorySetting.SERVER_CAPABILITY_CACHE_FILE, storageFile.toString() );
+        final ChaiConfiguration chaiConfiguration = ChaiConfiguration.builder( "ldap://host1", "bindDN", "bindPW" ).build();
+
+        final ChaiProviderFactory factory1 = ChaiProviderFactory.newProviderFactory( settings );
+        factory1.getCentralService().getServerCapabilityCache().addUnsupportedExtendedOperation( chaiConfiguration, UNSUPPORTED_OID );
+        factory1.close();
+        Assertions.assertTrue( Files.exists( storageFile ) );
+
+        final ChaiProviderFactory factory2 = ChaiProviderFactory.newProviderFactory( settings );
+        final ServerCapabilityCache cache2 = factory2.getCentralService().getServerCapabilityCache();
+        Assertions.assertTrue( cache2.isExtendedOperationUnsupported( chaiConfiguration, UNSUPPORTED_OID ) );
+        Assertions.assertTrue( cache2.get( chaiConfiguration ).getSupportedControls().isEmpty() );
+        factory2.close();
+    }
+
+    @Test
+    public void testPersistedRecordAge( @TempDir final Path tempDir )
+            throws Exception
+    {
+        final Path storageFile = tempDir.resolve( "capabilities.json" );
+        final Map<ChaiProviderFactorySetting, String> settings = new HashMap<>();
+        settings.put( ChaiProviderFactorySetting.SERVER_CAPABILITY_CACHE_FILE, storageFile.toString() );
+        final ChaiConfiguration chaiConfiguration = ChaiConfiguration.builder( "ldap://host1", "bindDN", "bindPW" ).build();
+
+        final ChaiProviderFactory factory1 = ChaiProviderFactory.newProviderFactory( settings );
+        factory1.getCentralService().getServerCapabilityCache().addUnsupportedExtendedOperation( chaiConfiguration, UNSUPPORTED_OID );
+        factory1.close();
+
+        // age the stored record well past the in-memory max age, as after an application restart
+        final long twoHoursAgo = System.currentTimeMillis() - TimeUnit.HOURS.toMillis( 2 );
+        final String storedJson = new String( Files.readAllBytes( storageFile ), StandardCharsets.UTF_8 );
+        final byte[] agedJson = storedJson.replaceAll( "\"timestamp\":\\d+", "\"timestamp\":" + twoHoursAgo ).getBytes( StandardCharsets.UTF_8 );
+        Files.write( storageFile, agedJson );
+
+        final ChaiProviderFactory factory2 = ChaiProviderFactory.newProviderFactory( settings );
+        final ServerCapabilityCache cache2 = factory2.getCentralService().getServerCapabilityCache();
+        Assertions.assertTrue( cache2.isExtendedOperationUnsupported( chaiConfiguration, UNSUPPORTED_OID ) );
+        cache2.addUnsupportedExtendedOperation( chaiConfiguration, "1.2.3.4" );
+        Assertions.assertTrue( cache2.isExtendedOperationUnsupported( chaiConfiguration, UNSUPPORTED_OID ) );
+        factory2.close();
+
+        Files.write( storageFile, agedJson );
+        settings.put( ChaiProviderFactorySetting.SERVER_CAPABILITY_CACHE_FILE_MAX_AGE_HOURS, "1" );
+        final ChaiProviderFactory factory3 = ChaiProviderFactory.newProviderFactory( settings );
+        final ServerCapabilityCache cache3 = factory3.getCentralService().getServerCapabilityCache();
+        Assertions.assertEquals( 0, cache3.size() );
+        Assertions.assertFalse( cache3.isExtendedOperationUnsupported( chaiConfiguration, UNSUPPORTED_OID ) );
+        factory3.close();
+    }
+}
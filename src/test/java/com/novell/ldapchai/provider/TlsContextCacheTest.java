@@ -0,0 +1,99 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.X509TrustManager;
+import java.util.Collections;
+import java.util.Optional;
+
+public class TlsContextCacheTest
+{
+    @Test
+    public void testDefaultTrustUsesJvmContext()
+    {
+        final ChaiProviderFactory chaiProviderFactory = ChaiProviderFactory.newProviderFactory();
+        final ChaiConfiguration chaiConfiguration = ChaiConfiguration.builder( "ldaps://1", "bindDN", "bindPW" ).build();
+
+        Assertions.assertFalse( TlsContextCache.forConfiguration( chaiProviderFactory, chaiConfiguration ).isPresent() );
+        chaiProviderFactory.close();
+    }
+
+    @Test
+    public void testPromiscuousContextIsShared()
+    {
+        final ChaiProviderFactory chaiProviderFactory = ChaiProviderFactory.newProviderFactory();
+        final ChaiConfiguration config1 = ChaiConfiguration.builder( "ldaps://1", "bindDN", "bindPW" )
+                .setSetting( ChaiSetting.PROMISCUOUS_SSL, "true" )
+                .build();
+        final ChaiConfiguration config2 = ChaiConfiguration.builder( "ldaps://2", "otherDN", "otherPW" )
+                .setSetting( ChaiSetting.PROMISCUOUS_SSL, "true" )
+                .build();
+
+        final Optional<SSLContext> context1 = TlsContextCache.forConfiguration( chaiProviderFactory, config1 );
+        final Optional<SSLContext> context2 = TlsContextCache.forConfiguration( chaiProviderFactory, config2 );
+        Assertions.assertTrue( context1.isPresent() );
+        Assertions.assertSame( context1.get(), context2.get() );
+        chaiProviderFactory.close();
+    }
+
+    @Test
+    public void testContextKeyedByTrustManager()
+    {
+        final ChaiProviderFactory chaiProviderFactory = ChaiProviderFactory.newProviderFactory();
+        final X509TrustManager[] trustManager1 = new X509TrustManager[] {new AbstractProvider.PromiscuousTrustManager()};
+        final X509TrustManager[] trustManager2 = new X509TrustManager[] {new AbstractProvider.PromiscuousTrustManager()};
+
+        final ChaiConfiguration config1 = ChaiConfiguration.builder( "ldaps://1", "bindDN", "bindPW" )
+                .setTrustManager( trustManager1 )
+                .build();
+        final ChaiConfiguration config1Copy = ChaiConfiguration.builder( config1 ).build();
+        final ChaiConfiguration config2 = ChaiConfiguration.builder( "ldaps://1", "bindDN", "bindPW" )
+                .setTrustManager( trustManager2 )
+                .build();
+
+        final SSLContext context1 = TlsContextCache.forConfiguration( chaiProviderFactory, config1 ).orElseThrow( IllegalStateException::new );
+        final SSLContext context1Copy = TlsContextCache.forConfiguration( chaiProviderFactory, config1Copy ).orElseThrow( IllegalStateException::new );
+        final SSLContext context2 = TlsContextCache.forConfiguration( chaiProviderFactory, config2 ).orElseThrow( IllegalStateException::new );
+
+        Assertions.assertSame( context1, context1Copy );
+        Assertions.assertNotSame( context1, context2 );
+        Assertions.assertEquals( 2, chaiProviderFactory.getCentralService().getTlsContextCache().size() );
+        chaiProviderFactory.close();
+    }
+
+    @Test
+    public void testCacheDisabled()
+    {
+        final ChaiProviderFactory chaiProviderFactory = ChaiProviderFactory.newProviderFactory(
+                Collections.singletonMap( ChaiProviderFactorySetting.TLS_CONTEXT_CACHE_ENABLE, "false" ) );
+        final ChaiConfiguration chaiConfiguration = ChaiConfiguration.builder( "ldaps://1", "bindDN", "bindPW" )
+                .setSetting( ChaiSetting.PROMISCUOUS_SSL, "true" )
+                .build();
+
+        final SSLContext context1 = TlsContextCache.forConfiguration( chaiProviderFactory, chaiConfiguration ).orElseThrow( IllegalStateException::new );
+        final SSLContext context2 = TlsContextCache.forConfiguration( chaiProviderFactory, chaiConfiguration ).orElseThrow( IllegalStateException::new );
+        Assertions.assertNotSame( context1, context2 );
+        chaiProviderFactory.close();
+    }
+}
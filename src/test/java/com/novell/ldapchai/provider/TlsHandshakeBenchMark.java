@@ -0,0 +1,179 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of opening an ssl connection with a new {@link SSLContext} per connection (full handshake)
+ * against a context shared by {@link TlsContextCache} (session resumption).
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@State( Scope.Benchmark )
+@Fork( jvmArgs =
+        {
+                "-Xms1G", "-Xmx1G"
+        }, value = 1 )
+@Warmup( iterations = 1 )
+@Measurement( iterations = 2 )
+public class TlsHandshakeBenchMark
+{
+    private static final char[] KEYSTORE_PASSWORD = "password".toCharArray();
+
+    private SSLServerSocket serverSocket;
+    private Thread serverThread;
+    private ChaiProviderFactory chaiProviderFactory;
+    private ChaiConfiguration chaiConfiguration;
+
+    public static void main( final String[] args ) throws RunnerException
+    {
+        final Options opt = new OptionsBuilder()
+                .include( TlsHandshakeBenchMark.class.getSimpleName() )
+                .forks( 1 )
+                .build();
+
+        new Runner( opt ).run();
+    }
+
+    @Setup
+    public void setup()
+            throws Exception
+    {
+        final KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance( "RSA" );
+        keyPairGenerator.initialize( 2048 );
+        final KeyPair keyPair = keyPairGenerator.generateKeyPair();
+        final X500Name subject = new X500Name( "CN=localhost" );
+        final long now = System.currentTimeMillis();
+        final X509Certificate certificate = new JcaX509CertificateConverter().getCertificate( new JcaX509v3CertificateBuilder(
+                subject,
+                BigInteger.valueOf( now ),
+                new Date( now - TimeUnit.DAYS.toMillis( 1 ) ),
+                new Date( now + TimeUnit.DAYS.toMillis( 1 ) ),
+                subject,
+                keyPair.getPublic() )
+                .build( new JcaContentSignerBuilder( "SHA256withRSA" ).build( keyPair.getPrivate() ) ) );
+
+        final KeyStore keyStore = KeyStore.getInstance( "PKCS12" );
+        keyStore.load( null, null );
+        keyStore.setKeyEntry( "server", keyPair.getPrivate(), KEYSTORE_PASSWORD, new X509Certificate[] {certificate} );
+        final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance( KeyManagerFactory.getDefaultAlgorithm() );
+        keyManagerFactory.init( keyStore, KEYSTORE_PASSWORD );
+
+        final SSLContext serverContext = SSLContext.getInstance( "TLS" );
+        serverContext.init( keyManagerFactory.getKeyManagers(), null, null );
+        serverSocket = ( SSLServerSocket ) serverContext.getServerSocketFactory().createServerSocket( 0, 50, InetAddress.getLoopbackAddress() );
+
+        serverThread = new Thread( this::serve, "TlsHandshakeBenchMark-server" );
+        serverThread.setDaemon( true );
+        serverThread.start();
+
+        chaiProviderFactory = ChaiProviderFactory.newProviderFactory();
+        chaiConfiguration = ChaiConfiguration.builder( "ldaps://localhost:" + serverSocket.getLocalPort(), "bindDN", "bindPW" )
+                .setSetting( ChaiSetting.PROMISCUOUS_SSL, "true" )
+                .build();
+    }
+
+    @TearDown
+    public void tearDown()
+            throws IOException
+    {
+        serverSocket.close();
+        serverThread.interrupt();
+        chaiProviderFactory.close();
+    }
+
+    @Benchmark
+    public int newContextPerConnection()
+            throws IOException
+    {
+        return connect( TlsContextCache.forConfiguration( null, chaiConfiguration ).orElseThrow( IllegalStateException::new ) );
+    }
+
+    @Benchmark
+    public int sharedContext()
+            throws IOException
+    {
+        return connect( TlsContextCache.forConfiguration( chaiProviderFactory, chaiConfiguration ).orElseThrow( IllegalStateException::new ) );
+    }
+
+    private int connect( final SSLContext sslContext )
+            throws IOException
+    {
+        try ( SSLSocket socket = ( SSLSocket ) sslContext.getSocketFactory().createSocket( InetAddress.getLoopbackAddress(), serverSocket.getLocalPort() ) )
+        {
+            socket.setTcpNoDelay( true );
+            socket.startHandshake();
+
+            // reading application data ensures tls 1.3 session tickets sent after the handshake are processed.
+            return socket.getInputStream().read();
+        }
+    }
+
+    private void serve()
+    {
+        while ( !serverSocket.isClosed() )
+        {
+            try ( Socket socket = serverSocket.accept() )
+            {
+                socket.setTcpNoDelay( true );
+                socket.getOutputStream().write( 1 );
+                socket.getOutputStream().flush();
+            }
+            catch ( IOException e )
+            {
+                // client disconnected or server socket closed
+            }
+        }
+    }
+}
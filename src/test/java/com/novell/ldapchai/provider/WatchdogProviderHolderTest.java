@@ -0,0 +1,260 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.InMemoryDirectory;
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class WatchdogProviderHolderTest
+{
+    private static final int KEEPALIVE_INTERVAL_MS = 50;
+
+    @TempDir
+    Path tempDir;
+
+    private InMemoryDirectory directory;
+
+    @AfterEach
+    public void tearDown()
+    {
+        directory.close();
+    }
+
+    private InMemoryDirectory directory( final WatchdogKeepAliveProbe probe )
+            throws IOException
+    {
+        return directory( probe, 200 );
+    }
+
+    private InMemoryDirectory directory( final WatchdogKeepAliveProbe probe, final int keepAliveTimeoutMs )
+            throws IOException
+    {
+        return directory( probe, keepAliveTimeoutMs, 600000 );
+    }
+
+    private InMemoryDirectory directory( final WatchdogKeepAliveProbe probe, final int keepAliveTimeoutMs, final int idleTimeoutMs )
+            throws IOException
+    {
+        directory = InMemoryDirectory.builder( tempDir, "dn: o=example\nobjectClass: organization\no: example\n\n" )
+                .setting( ChaiSetting.WATCHDOG_KEEPALIVE_ENABLE, "true" )
+                .setting( ChaiSetting.WATCHDOG_KEEPALIVE_INTERVAL, String.valueOf( KEEPALIVE_INTERVAL_MS ) )
+                .setting( ChaiSetting.WATCHDOG_KEEPALIVE_TIMEOUT, String.valueOf( keepAliveTimeoutMs ) )
+                .setting( ChaiSetting.WATCHDOG_KEEPALIVE_PROBE, probe.name() )
+                .setting( ChaiSetting.WATCHDOG_IDLE_TIMEOUT, String.valueOf( idleTimeoutMs ) )
+                .build();
+        return directory;
+    }
+
+    private long statistic( final ProviderStatistics.IncrementerStatistic statistic )
+    {
+        return directory.getProviderFactory().getCentralService().getStatsBean().getIncrementorStatistic( statistic );
+    }
+
+    private static void awaitCondition( final BooleanSupplier condition )
+            throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while ( !condition.getAsBoolean() )
+        {
+            Assertions.assertTrue( System.currentTimeMillis() < deadline, "timed out waiting for keep-alive probe" );
+            Thread.sleep( 10 );
+        }
+    }
+
+    @Test
+    public void testProbeScheduling()
+            throws Exception
+    {
+        final StubProvider stub = new StubProvider( directory( WatchdogKeepAliveProbe.ROOT_DSE ), () -> "top" );
+        final WatchdogProviderHolder holder = stub.newHolder();
+
+        holder.periodicStatusCheck();
+        Assertions.assertEquals( 0, stub.probeCount.get() );
+
+        Thread.sleep( KEEPALIVE_INTERVAL_MS * 2 );
+        holder.periodicStatusCheck();
+        holder.periodicStatusCheck();
+
+        awaitCondition( () -> statistic( ProviderStatistics.IncrementerStatistic.KEEPALIVE_PROBE_COUNT ) > 0 );
+        Assertions.assertSame( stub.provider, holder.execute( chaiProvider -> chaiProvider ) );
+        Assertions.assertEquals( 1, stub.probeCount.get() );
+        Assertions.assertFalse( stub.closed.get() );
+        Assertions.assertEquals( 1, statistic( ProviderStatistics.IncrementerStatistic.KEEPALIVE_PROBE_COUNT ) );
+        Assertions.assertEquals( 0, statistic( ProviderStatistics.IncrementerStatistic.KEEPALIVE_PROBE_FAILURE_COUNT ) );
+    }
+
+    @Test
+    public void testIdleTimeoutNotAppliedWithKeepAlive()
+            throws Exception
+    {
+        final StubProvider stub = new StubProvider( directory( WatchdogKeepAliveProbe.ROOT_DSE, 200, 1 ), () -> "top" );
+        final WatchdogProviderHolder holder = stub.newHolder();
+
+        Thread.sleep( KEEPALIVE_INTERVAL_MS * 2 );
+        holder.periodicStatusCheck();
+
+        Assertions.assertSame( stub.provider, holder.execute( chaiProvider -> chaiProvider ) );
+        Assertions.assertFalse( stub.closed.get() );
+    }
+
+    @Test
+    public void testProbeFailureReplacesConnection()
+            throws Exception
+    {
+        final StubProvider stub = new StubProvider( directory( WatchdogKeepAliveProbe.ROOT_DSE ), () ->
+        {
+            throw new ChaiUnavailableException( "connection reset", ChaiError.COMMUNICATION );
+        } );
+        final WatchdogProviderHolder holder = stub.newHolder();
+
+        Thread.sleep( KEEPALIVE_INTERVAL_MS * 2 );
+        holder.periodicStatusCheck();
+
+        awaitCondition( stub.closed::get );
+        Assertions.assertNotSame( stub.provider, holder.execute( chaiProvider -> chaiProvider ) );
+        Assertions.assertEquals( 1, stub.probeCount.get() );
+        Assertions.assertTrue( stub.closed.get() );
+        Assertions.assertEquals( 1, statistic( ProviderStatistics.IncrementerStatistic.KEEPALIVE_PROBE_COUNT ) );
+        Assertions.assertEquals( 1, statistic( ProviderStatistics.IncrementerStatistic.KEEPALIVE_PROBE_FAILURE_COUNT ) );
+    }
+
+    @Test
+    public void testUnresponsiveProbeDoesNotBlockWatchdog()
+            throws Exception
+    {
+        final CountDownLatch probeStarted = new CountDownLatch( 1 );
+        final CountDownLatch connectionClosed = new CountDownLatch( 1 );
+        final StubProvider stub = new StubProvider( directory( WatchdogKeepAliveProbe.ROOT_DSE, 2000 ), () ->
+        {
+            probeStarted.countDown();
+            connectionClosed.await();
+            throw new ChaiUnavailableException( "connection closed", ChaiError.COMMUNICATION );
+        } );
+        stub.onClose = connectionClosed::countDown;
+        final WatchdogProviderHolder holder = stub.newHolder();
+
+        Thread.sleep( KEEPALIVE_INTERVAL_MS * 2 );
+        holder.periodicStatusCheck();
+
+        // the watchdog returns while the probe is still waiting for its timeout
+        Assertions.assertTrue( probeStarted.await( 5, TimeUnit.SECONDS ) );
+        Assertions.assertFalse( stub.closed.get() );
+
+        // a caller is not held up by the probe
+        Assertions.assertSame( stub.provider, holder.execute( chaiProvider -> chaiProvider ) );
+
+        // once the probe times out the connection is replaced
+        awaitCondition( stub.closed::get );
+        Assertions.assertEquals( "example", holder.execute( chaiProvider ->
+        {
+            Assertions.assertNotSame( stub.provider, chaiProvider );
+            return chaiProvider.readStringAttribute( "o=example", "o" );
+        } ) );
+        Assertions.assertEquals( 1, statistic( ProviderStatistics.IncrementerStatistic.KEEPALIVE_PROBE_FAILURE_COUNT ) );
+    }
+
+    @Test
+    public void testWhoAmIFallsBackToRootDseWhenUnsupported()
+            throws Exception
+    {
+        final StubProvider stub = new StubProvider( directory( WatchdogKeepAliveProbe.WHO_AM_I ), () ->
+        {
+            throw new ChaiUnavailableException( "connection reset", ChaiError.COMMUNICATION );
+        } );
+        stub.extendedOperationSupported = false;
+
+        Assertions.assertThrows( ChaiUnavailableException.class, () -> WatchdogKeepAliveProbe.WHO_AM_I.probe( stub.provider ) );
+        Assertions.assertEquals( 1, stub.probeCount.get() );
+    }
+
+    interface ProbeHandler
+    {
+        Object handle() throws Exception;
+    }
+
+    /**
+     * Stub around an in-memory provider that answers the keep-alive probe operations with a {@link ProbeHandler}.
+     */
+    private class StubProvider
+    {
+        private final ChaiProviderImplementor provider;
+        private final AtomicInteger probeCount = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean extendedOperationSupported = true;
+        private volatile Runnable onClose = Thread::yield;
+
+        StubProvider( final InMemoryDirectory directory, final ProbeHandler probeHandler )
+                throws ChaiUnavailableException
+        {
+            final ChaiProviderImplementor realProvider = directory.getProviderFactory()
+                    .createFailOverOrConcreteProvider( directory.getChaiConfiguration() );
+            provider = ( ChaiProviderImplementor ) Proxy.newProxyInstance(
+                    ChaiProviderImplementor.class.getClassLoader(),
+                    new Class<?>[] {ChaiProviderImplementor.class},
+                    ( proxy, method, args ) ->
+                    {
+                        final boolean rootDseRead = "readStringAttribute".equals( method.getName() ) && "".equals( args[0] );
+                        if ( "extendedOperation".equals( method.getName() ) && !extendedOperationSupported )
+                        {
+                            throw new ChaiOperationException( "unsupported", ChaiError.UNSUPPORTED_OPERATION );
+                        }
+                        if ( rootDseRead || "extendedOperation".equals( method.getName() ) )
+                        {
+                            probeCount.incrementAndGet();
+                            return probeHandler.handle();
+                        }
+                        if ( "close".equals( method.getName() ) )
+                        {
+                            closed.set( true );
+                            onClose.run();
+                        }
+                        try
+                        {
+                            return method.invoke( realProvider, args );
+                        }
+                        catch ( final InvocationTargetException e )
+                        {
+                            throw e.getCause();
+                        }
+                    } );
+        }
+
+        WatchdogProviderHolder newHolder()
+        {
+            return new WatchdogProviderHolder( "test", provider, WatchdogWrapper.Settings.fromConfig( provider.getChaiConfiguration() ) );
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ChaiDnTest
+{
+    @Test
+    public void testNormalize()
+    {
+        Assertions.assertEquals( "cn=alice,ou=people,o=example", ChaiDn.normalize( "CN=Alice, OU=People ,o=Example" ) );
+        Assertions.assertEquals( "cn=alice,o=example", ChaiDn.normalize( "cn=alice;o=example" ) );
+        Assertions.assertEquals( "cn=smith\\, john,o=example", ChaiDn.normalize( "cn=Smith\\, John,o=example" ) );
+        Assertions.assertEquals( "cn=smith\\, john,o=example", ChaiDn.normalize( "cn=\"Smith, John\",o=example" ) );
+        Assertions.assertEquals( "cn=alice+uid=a1,o=example", ChaiDn.normalize( "UID=a1+cn=Alice,o=example" ) );
+        Assertions.assertEquals( "2.5.4.3=alice", ChaiDn.normalize( "OID.2.5.4.3=Alice" ) );
+        Assertions.assertEquals( "cn=#04024869", ChaiDn.normalize( "cn=#04024869" ) );
+        Assertions.assertEquals( "", ChaiDn.normalize( "" ) );
+        Assertions.assertEquals( "not a dn", ChaiDn.normalize( "not a dn" ) );
+        Assertions.assertNull( ChaiDn.normalize( null ) );
+    }
+
+    @Test
+    public void testEscapes()
+    {
+        final ChaiDn dn = ChaiDn.parse( "cn=Lu\\C4\\8Di\\C4\\87,o=example" );
+        Assertions.assertEquals( "Lučić", dn.getRdnValue() );
+        Assertions.assertEquals( ChaiDn.parse( "cn=Lučić,o=example" ), dn );
+
+        // escaped trailing space is significant, unescaped trailing space is not
+        Assertions.assertEquals( "a ", ChaiDn.parse( "cn=a\\ ,o=example" ).getRdnValue() );
+        Assertions.assertEquals( "a", ChaiDn.parse( "cn=a  ,o=example" ).getRdnValue() );
+        Assertions.assertEquals( "cn=a\\ ,o=example", ChaiDn.normalize( "cn=a\\20,o=example" ) );
+        Assertions.assertEquals( "é", ChaiDn.parse( "cn=\\c3\\a9  ,o=example" ).getRdnValue() );
+        Assertions.assertEquals( "#1", ChaiDn.parse( "cn=\\#1" ).getRdnValue() );
+        Assertions.assertEquals( "cn=\\#1", ChaiDn.normalize( "cn=\\231" ) );
+    }
+
+    @Test
+    public void testNavigation()
+    {
+        final ChaiDn dn = ChaiDn.parse( " cn=Smith\\, John , ou=People,o=Example" );
+        Assertions.assertEquals( 3, dn.size() );
+        Assertions.assertEquals( "cn=Smith\\, John", dn.getRdn() );
+        Assertions.assertEquals( "cn", dn.getRdnType() );
+        Assertions.assertEquals( "Smith, John", dn.getRdnValue() );
+
+        final ChaiDn parent = dn.getParent();
+        Assertions.assertEquals( "ou=People,o=Example", parent.toString() );
+        Assertions.assertEquals( "ou=People", parent.getRdn() );
+        Assertions.assertEquals( ChaiDn.parse( "ou=people,o=example" ), parent );
+        Assertions.assertEquals( ChaiDn.parse( "ou=people,o=example" ).hashCode(), parent.hashCode() );
+        Assertions.assertTrue( dn.isDescendantOf( parent ) );
+        Assertions.assertTrue( dn.isDescendantOf( ChaiDn.parse( "O=EXAMPLE" ) ) );
+        Assertions.assertFalse( parent.isDescendantOf( dn ) );
+        Assertions.assertFalse( dn.isDescendantOf( dn ) );
+
+        final ChaiDn top = parent.getParent();
+        Assertions.assertEquals( "o=Example", top.toString() );
+        Assertions.assertTrue( top.getParent().isRoot() );
+        Assertions.assertNull( top.getParent().getParent() );
+        Assertions.assertTrue( dn.isDescendantOf( top.getParent() ) );
+    }
+
+    @Test
+    public void testInvalid()
+    {
+        Assertions.assertFalse( ChaiDn.isValid( "cn" ) );
+        Assertions.assertFalse( ChaiDn.isValid( "cn=a," ) );
+        Assertions.assertFalse( ChaiDn.isValid( "=a" ) );
+        Assertions.assertFalse( ChaiDn.isValid( "cn=a\\" ) );
+        Assertions.assertFalse( ChaiDn.isValid( "cn=a\\4" ) );
+        Assertions.assertEquals( "azz", ChaiDn.parse( "cn=a\\zz" ).getRdnValue() );
+        Assertions.assertFalse( ChaiDn.isValid( "cn=\"a" ) );
+        Assertions.assertFalse( ChaiDn.isValid( null ) );
+        Assertions.assertThrows( IllegalArgumentException.class, () -> ChaiDn.parse( "cn=a<b" ) );
+        Assertions.assertTrue( ChaiDn.isValid( "cn=" ) );
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.util;
+
+import com.novell.ldapchai.InMemoryDirectory;
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiSetting;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GroupExpanderTest
+{
+    private static final String LDIF = "dn: o=example\n"
+            + "objectClass: organization\n"
+            + "o: example\n"
+            + "\n"
+            + "dn: cn=alice,o=example\n"
+            + "objectClass: inetOrgPerson\n"
+            + "cn: alice\n"
+            + "groupMembership: cn=team,o=example\n"
+            + "\n"
+            + "dn: cn=bob,o=example\n"
+            + "objectClass: inetOrgPerson\n"
+            + "cn: bob\n"
+            + "groupMembership: cn=all,o=example\n"
+            + "\n"
+            + "dn: cn=team,o=example\n"
+            + "objectClass: groupOfNames\n"
+            + "cn: team\n"
+            + "member: cn=alice,o=example\n"
+            + "member: cn=missing,o=example\n"
+            + "groupMembership: cn=department,o=example\n"
+            + "\n"
+            + "dn: cn=department,o=example\n"
+            + "objectClass: groupOfNames\n"
+            + "cn: department\n"
+            + "member: cn=team,o=example\n"
+            + "member: cn=all,o=example\n"
+            + "groupMembership: cn=all,o=example\n"
+            + "\n"
+            + "dn: cn=all,o=example\n"
+            + "objectClass: groupOfNames\n"
+            + "cn: all\n"
+            + "member: cn=department,o=example\n"
+            + "member: cn=bob,o=example\n"
+            + "groupMembership: cn=department,o=example\n";
+
+    @TempDir
+    Path tempDir;
+
+    private InMemoryDirectory directory;
+    private ChaiProvider provider;
+
+    @BeforeEach
+    public void setUp()
+            throws Exception
+    {
+        directory = InMemoryDirectory.builder( tempDir, LDIF )
+                .build();
+        provider = directory.newProvider();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        directory.close();
+    }
+
+    @Test
+    public void testExpandMembers()
+            throws Exception
+    {
+        try ( GroupExpander groupExpander = GroupExpander.builder( provider ).threads( 4 ).build() )
+        {
+            // department -> all -> department is a cycle, and team references an entry that does not exist
+            final Set<String> members = groupExpander.expandMembers( "cn=department,o=example" );
+            Assertions.assertEquals( new HashSet<>( Arrays.asList(
+                    "cn=team,o=example",
+                    "cn=all,o=example",
+                    "cn=alice,o=example",
+                    "cn=missing,o=example",
+                    "cn=bob,o=example" ) ), members );
+
+            Assertions.assertEquals( new HashSet<>( Arrays.asList( "cn=alice,o=example", "cn=missing,o=example" ) ),
+                    groupExpander.expandMembers( "CN=Team, O=Example" ) );
+            Assertions.assertTrue( groupExpander.expandMembers( "cn=bob,o=example" ).isEmpty() );
+            Assertions.assertTrue( groupExpander.expandMembers( "cn=nobody,o=example" ).isEmpty() );
+        }
+    }
+
+    @Test
+    public void testExpandMemberships()
+            throws Exception
+    {
+        try ( GroupExpander groupExpander = GroupExpander.builder( provider ).threads( 1 ).build() )
+        {
+            Assertions.assertEquals( new HashSet<>( Arrays.asList(
+                    "cn=team,o=example",
+                    "cn=department,o=example",
+                    "cn=all,o=example" ) ), groupExpander.expandMemberships( "cn=alice,o=example" ) );
+
+            // the starting entry is not reported as a member of itself when the hierarchy contains a cycle
+            Assertions.assertEquals( Collections.singleton( "cn=department,o=example" ),
+                    groupExpander.expandMemberships( "cn=all,o=example" ) );
+        }
+    }
+
+    @Test
+    public void testIsMemberOf()
+            throws Exception
+    {
+        final Map<String, AtomicInteger> operations = new ConcurrentHashMap<>();
+        final ChaiProvider countingProvider = ( ChaiProvider ) Proxy.newProxyInstance(
+                GroupExpanderTest.class.getClassLoader(),
+                new Class[] {ChaiProvider.class},
+                ( proxy, method, args ) ->
+                {
+                    operations.computeIfAbsent( method.getName(), k -> new AtomicInteger() ).incrementAndGet();
+                    return invoke( provider, method, args );
+                } );
+
+        try ( GroupExpander groupExpander = GroupExpander.builder( countingProvider ).threads( 1 ).maxCacheSize( 0 ).build() )
+        {
+            // direct membership is found by reading the start entry, without expanding the groups
+            Assertions.assertTrue( groupExpander.isMemberOf( "cn=alice,o=example", "CN=Team,O=Example" ) );
+            Assertions.assertEquals( 1, operations.get( "readMultiStringAttribute" ).get() );
+            Assertions.assertNull( operations.get( "searchMultiValues" ) );
+
+            Assertions.assertTrue( groupExpander.isMemberOf( "cn=alice,o=example", "cn=all,o=example" ) );
+            Assertions.assertFalse( groupExpander.isMemberOf( "cn=bob,o=example", "cn=team,o=example" ) );
+        }
+    }
+
+    @Test
+    public void testCacheInvalidation()
+            throws Exception
+    {
+        try ( GroupExpander groupExpander = GroupExpander.builder( provider ).cacheTtl( Duration.ofHours( 1 ) ).build() )
+        {
+            Assertions.assertEquals( 2, groupExpander.expandMembers( "cn=team,o=example" ).size() );
+
+            provider.writeStringAttribute( "cn=team,o=example", "member", Collections.singleton( "cn=bob,o=example" ), false );
+            Assertions.assertEquals( 2, groupExpander.expandMembers( "cn=team,o=example" ).size() );
+
+            groupExpander.invalidate( "cn=team,o=example" );
+            Assertions.assertEquals( 3, groupExpander.expandMembers( "cn=team,o=example" ).size() );
+        }
+
+        try ( GroupExpander groupExpander = GroupExpander.builder( provider ).cacheTtl( Duration.ZERO ).build() )
+        {
+            Assertions.assertEquals( 3, groupExpander.expandMembers( "cn=team,o=example" ).size() );
+            provider.writeStringAttribute( "cn=team,o=example", "member", Collections.singleton( "cn=all,o=example" ), false );
+            Assertions.assertEquals( 5, groupExpander.expandMembers( "cn=team,o=example" ).size() );
+        }
+    }
+
+    @Test
+    public void testLevelReadWithOneSearch()
+            throws Exception
+    {
+        final Map<String, AtomicInteger> operations = new ConcurrentHashMap<>();
+        final ChaiProvider countingProvider = ( ChaiProvider ) Proxy.newProxyInstance(
+                GroupExpanderTest.class.getClassLoader(),
+                new Class[] {ChaiProvider.class},
+                ( proxy, method, args ) ->
+                {
+                    operations.computeIfAbsent( method.getName(), k -> new AtomicInteger() ).incrementAndGet();
+                    return invoke( provider, method, args );
+                } );
+
+        try ( GroupExpander groupExpander = GroupExpander.builder( countingProvider ).threads( 1 ).build() )
+        {
+            Assertions.assertEquals( 5, groupExpander.expandMembers( "cn=department,o=example" ).size() );
+        }
+
+        // the start entry is read directly, each following level with one search of its parent container
+        Assertions.assertEquals( 1, operations.get( "readMultiStringAttribute" ).get() );
+        Assertions.assertEquals( 2, operations.get( "searchMultiValues" ).get() );
+    }
+
+    @Test
+    public void testFastPathRetriedAfterError()
+            throws Exception
+    {
+        final ChaiProvider adProvider = directory.getProviderFactory().newProvider( ChaiConfiguration.builder( provider.getChaiConfiguration() )
+                .setSetting( ChaiSetting.DEFAULT_VENDOR, "ACTIVE_DIRECTORY" )
+                .build() );
+        final List<ChaiError> searchErrors = new ArrayList<>( Arrays.asList( ChaiError.UNKNOWN, null, ChaiError.UNSUPPORTED_OPERATION ) );
+        final ChaiProvider fastPathProvider = ( ChaiProvider ) Proxy.newProxyInstance(
+                GroupExpanderTest.class.getClassLoader(),
+                new Class[] {ChaiProvider.class},
+                ( proxy, method, args ) ->
+                {
+                    if ( "search".equals( method.getName() ) && String.valueOf( args[1] ).contains( "1.2.840.113556.1.4.1941" ) )
+                    {
+                        final ChaiError searchError = searchErrors.isEmpty() ? null : searchErrors.remove( 0 );
+                        if ( searchError != null )
+                        {
+                            throw new ChaiOperationException( "search failed", searchError );
+                        }
+                        return Collections.singletonMap( "cn=bob,o=example", Collections.emptyMap() );
+                    }
+                    return invoke( adProvider, method, args );
+                } );
+
+        try ( GroupExpander groupExpander = GroupExpander.builder( fastPathProvider ).searchBase( "o=example" ).cacheTtl( Duration.ZERO ).build() )
+        {
+            // a failed search falls back to the breadth first expansion for that call only
+            Assertions.assertEquals( 5, groupExpander.expandMembers( "cn=department,o=example" ).size() );
+            Assertions.assertEquals( Collections.singleton( "cn=bob,o=example" ), groupExpander.expandMembers( "cn=department,o=example" ) );
+
+            // an unsupported matching rule disables the fast path
+            Assertions.assertEquals( 5, groupExpander.expandMembers( "cn=department,o=example" ).size() );
+            Assertions.assertEquals( 5, groupExpander.expandMembers( "cn=department,o=example" ).size() );
+        }
+    }
+
+    private static Object invoke( final ChaiProvider target, final Method method, final Object[] args )
+            throws Throwable
+    {
+        try
+        {
+            return method.invoke( target, args );
+        }
+        catch ( InvocationTargetException e )
+        {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building an attribute map from a typical entry and performing case-insensitive lookups, using
+ * {@link LdapAttributeMap} versus the previous pattern of a {@code LinkedHashMap} result copied by callers
+ * into a {@code TreeMap} with {@link String#CASE_INSENSITIVE_ORDER}.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@State( Scope.Benchmark )
+@Fork( jvmArgs =
+        {
+                "-Xms1G", "-Xmx1G"
+        }, value = 1 )
+@Warmup( iterations = 1 )
+@Measurement( iterations = 2 )
+public class LdapAttributeMapBenchMark
+{
+    private static final String[] SERVER_NAMES = {
+            "objectClass", "cn", "sn", "givenName", "mail", "telephoneNumber", "title", "departmentNumber",
+            "manager", "uid", "employeeNumber", "pwdChangedTime", "loginDisabled", "groupMembership",
+    };
+
+    private static final String[] LOOKUP_NAMES = {
+            "objectclass", "CN", "givenname", "mail", "pwdchangedtime", "logindisabled", "groupmembership", "missing",
+    };
+
+    private String[] serverNames;
+
+    public static void main( final String[] args ) throws RunnerException
+    {
+        final Options opt = new OptionsBuilder()
+                .include( LdapAttributeMapBenchMark.class.getSimpleName() )
+                .addProfiler( GCProfiler.class )
+                .forks( 1 )
+                .build();
+
+        new Runner( opt ).run();
+    }
+
+    @Setup
+    public void setup()
+    {
+        // names as decoded from an ldap response are distinct string instances.
+        serverNames = new String[SERVER_NAMES.length];
+        for ( int i = 0; i < SERVER_NAMES.length; i++ )
+        {
+            serverNames[i] = new String( SERVER_NAMES[i] );
+        }
+    }
+
+    @Benchmark
+    public int treeMapCopy()
+    {
+        final Map<String, String> result = new LinkedHashMap<>();
+        for ( final String name : serverNames )
+        {
+            result.put( name, name );
+        }
+        final Map<String, String> copy = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+        copy.putAll( result );
+        return lookup( copy );
+    }
+
+    @Benchmark
+    public int ldapAttributeMap()
+    {
+        final Map<String, String> result = new LdapAttributeMap<>( serverNames.length );
+        for ( final String name : serverNames )
+        {
+            result.put( name, name );
+        }
+        return lookup( result );
+    }
+
+    private static int lookup( final Map<String, String> map )
+    {
+        int found = 0;
+        for ( final String name : LOOKUP_NAMES )
+        {
+            if ( map.get( name ) != null )
+            {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LdapAttributeMapTest
+{
+    @Test
+    public void testCaseInsensitiveLookup()
+    {
+        final Map<String, String> map = new LdapAttributeMap<>();
+        map.put( "givenName", "alice" );
+        map.put( "cn", "alice" );
+
+        Assertions.assertEquals( "alice", map.get( "GIVENNAME" ) );
+        Assertions.assertEquals( "alice", map.get( "givenname" ) );
+        Assertions.assertTrue( map.containsKey( "CN" ) );
+        Assertions.assertFalse( map.containsKey( "sn" ) );
+        Assertions.assertNull( map.get( null ) );
+        Assertions.assertNull( map.get( 42 ) );
+
+        // first spelling is retained, value replaced
+        Assertions.assertEquals( "alice", map.put( "GivenName", "bob" ) );
+        Assertions.assertEquals( 2, map.size() );
+        Assertions.assertEquals( "bob", map.get( "givenName" ) );
+        Assertions.assertEquals( Arrays.asList( "givenName", "cn" ), new ArrayList<>( map.keySet() ) );
+    }
+
+    @Test
+    public void testRemoveAndReinsert()
+    {
+        final LdapAttributeMap<Integer> map = new LdapAttributeMap<>( 2 );
+        for ( int round = 0; round < 5; round++ )
+        {
+            for ( int i = 0; i < 100; i++ )
+            {
+                map.put( "attr" + i, i );
+            }
+            Assertions.assertEquals( 100, map.size() );
+            for ( int i = 0; i < 100; i += 2 )
+            {
+                Assertions.assertEquals( Integer.valueOf( i ), map.remove( "ATTR" + i ) );
+            }
+            Assertions.assertEquals( 50, map.size() );
+            for ( int i = 0; i < 100; i++ )
+            {
+                Assertions.assertEquals( i % 2 == 0 ? null : Integer.valueOf( i ), map.get( "Attr" + i ) );
+            }
+            map.clear();
+            Assertions.assertTrue( map.isEmpty() );
+        }
+    }
+
+    @Test
+    public void testIteratorRemove()
+    {
+        final Map<String, String> map = new LdapAttributeMap<>();
+        map.put( "cn", "alice" );
+        map.put( "sn", "smith" );
+        map.put( "mail", "alice@example.com" );
+
+        final Iterator<String> iterator = map.keySet().iterator();
+        while ( iterator.hasNext() )
+        {
+            if ( "sn".equals( iterator.next() ) )
+            {
+                iterator.remove();
+            }
+        }
+        Assertions.assertEquals( 2, map.size() );
+        Assertions.assertFalse( map.containsKey( "SN" ) );
+        Assertions.assertEquals( "alice@example.com", map.get( "MAIL" ) );
+    }
+
+    @Test
+    public void testEntryAfterResize()
+    {
+        final LdapAttributeMap<String> map = new LdapAttributeMap<>( 2 );
+        map.put( "cn", "alice" );
+        map.put( "sn", "smith" );
+        final Map.Entry<String, String> snEntry = map.entrySet().stream()
+                .filter( entry -> "sn".equals( entry.getKey() ) )
+                .findFirst()
+                .orElseThrow( IllegalStateException::new );
+
+        // removal and growth move sn to a different position in the entry arrays
+        map.remove( "cn" );
+        for ( int i = 0; i < 10; i++ )
+        {
+            map.put( "attr" + i, String.valueOf( i ) );
+        }
+
+        Assertions.assertEquals( "smith", snEntry.getValue() );
+        Assertions.assertEquals( "smith", snEntry.setValue( "jones" ) );
+        Assertions.assertEquals( "jones", map.get( "SN" ) );
+
+        map.remove( "sn" );
+        Assertions.assertNull( snEntry.getValue() );
+        Assertions.assertThrows( IllegalStateException.class, () -> snEntry.setValue( "smith" ) );
+    }
+
+    @Test
+    public void testMapContract()
+            throws IOException, ClassNotFoundException
+    {
+        final Map<String, List<String>> source = new LinkedHashMap<>();
+        source.put( "objectClass", Arrays.asList( "top", "person" ) );
+        source.put( "cn", Arrays.asList( "alice" ) );
+        source.put( "description", null );
+
+        final LdapAttributeMap<List<String>> map = new LdapAttributeMap<>( source );
+        Assertions.assertEquals( source, map );
+        Assertions.assertEquals( map, new HashMap<>( source ) );
+        Assertions.assertEquals( source.hashCode(), map.hashCode() );
+        Assertions.assertTrue( map.containsKey( "DESCRIPTION" ) );
+
+        final LdapAttributeMap<List<String>> otherCase = new LdapAttributeMap<>();
+        otherCase.put( "OBJECTCLASS", Arrays.asList( "top", "person" ) );
+        otherCase.put( "CN", Arrays.asList( "alice" ) );
+        otherCase.put( "Description", null );
+        Assertions.assertEquals( map, otherCase );
+        Assertions.assertEquals( otherCase, map );
+
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try ( ObjectOutputStream objectOutputStream = new ObjectOutputStream( byteArrayOutputStream ) )
+        {
+            objectOutputStream.writeObject( map );
+        }
+        try ( ObjectInputStream objectInputStream = new ObjectInputStream( new ByteArrayInputStream( byteArrayOutputStream.toByteArray() ) ) )
+        {
+            final Object copy = objectInputStream.readObject();
+            Assertions.assertEquals( map, copy );
+            Assertions.assertEquals( Arrays.asList( "alice" ), ( ( Map<?, ?> ) copy ).get( "CN" ) );
+        }
+    }
+
+    @Test
+    public void testFoldedHashMatchesEqualsIgnoreCase()
+    {
+        Assertions.assertEquals( LdapAttributeMap.foldedHash( "userPassword" ), LdapAttributeMap.foldedHash( "USERPASSWORD" ) );
+        Assertions.assertEquals( LdapAttributeMap.foldedHash( "état" ), LdapAttributeMap.foldedHash( "ÉTAT" ) );
+    }
+}
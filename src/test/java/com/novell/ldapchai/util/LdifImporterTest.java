@@ -0,0 +1,380 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.AttributeSchema;
+import com.novell.ldapchai.provider.ChaiProvider;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LdifImporterTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testImport()
+            throws Exception
+    {
+        final StringBuilder ldif = new StringBuilder( "version: 1\n\n" );
+        // child record precedes its parent
+        ldif.append( "dn: cn=early,ou=late,o=test\nobjectClass: person\ncn: early\n\n" );
+        for ( int i = 0; i < 20; i++ )
+        {
+            ldif.append( "dn: ou=ou" ).append( i ).append( ",o=test\nobjectClass: organizationalUnit\nou: ou" ).append( i ).append( "\n\n" );
+            for ( int j = 0; j < 20; j++ )
+            {
+                ldif.append( "dn: cn=user" ).append( j ).append( ",ou=ou" ).append( i ).append( ",o=test\n" )
+                        .append( "objectClass: top\nobjectClass: person\n" )
+                        .append( "cn: user" ).append( j ).append( "\n" )
+                        .append( "mail: a@example.com\nmail: b@example.com\n" )
+                        .append( "jpegPhoto:: AQID\n\n" );
+            }
+        }
+        ldif.append( "dn: ou=late,o=test\nobjectClass: organizationalUnit\nou: late\n\n" );
+        ldif.append( "dn: cn=user0,ou=ou0,o=test\nchangetype: modify\n"
+                + "replace: sn\nsn: smith\n-\nreplace: givenName\ngivenName: al\n-\ndelete: mail\nmail: a@example.com\n-\n\n" );
+        ldif.append( "dn: cn=user1,ou=ou0,o=test\nchangetype: delete\n\n" );
+        ldif.append( "dn: cn=user2,ou=ou0,o=test\nchangetype: modrdn\nnewrdn: cn=moved\ndeleteoldrdn: 1\nnewsuperior: ou=ou1,o=test\n\n" );
+
+        final FakeDirectory directory = new FakeDirectory();
+        final LdifImporter.ImportResult result = LdifImporter.builder( directory.provider() )
+                .connections( 4 )
+                .connectionPerWorker( false )
+                .build()
+                .importLdif( new StringReader( ldif.toString() ) );
+
+        Assertions.assertEquals( 422, result.getAddedCount() );
+        Assertions.assertEquals( 1, result.getModifiedCount() );
+        Assertions.assertEquals( 1, result.getDeletedCount() );
+        Assertions.assertEquals( 1, result.getRenamedCount() );
+        Assertions.assertEquals( 0, result.getFailedCount() );
+        Assertions.assertEquals( 425, result.getRecordCount() );
+
+        Assertions.assertTrue( directory.entries.containsKey( "cn=early,ou=late,o=test" ) );
+        Assertions.assertFalse( directory.entries.containsKey( "cn=user1,ou=ou0,o=test" ) );
+        Assertions.assertTrue( directory.entries.containsKey( "cn=moved,ou=ou1,o=test" ) );
+
+        final Map<String, List<String>> user = directory.entries.get( "cn=user0,ou=ou0,o=test" );
+        Assertions.assertEquals( Collections.singletonList( "b@example.com" ), user.get( "mail" ) );
+        Assertions.assertEquals( Collections.singletonList( "smith" ), user.get( "sn" ) );
+        Assertions.assertEquals( Collections.singletonList( "AQID" ), user.get( "jpegPhoto" ) );
+        Assertions.assertEquals( Arrays.asList( "top", "person" ), user.get( "objectClass" ) );
+
+        // both single valued replace modifications are applied in one modify operation
+        Assertions.assertEquals( 1, directory.batchWrites.get() );
+    }
+
+    @Test
+    public void testRetry()
+            throws Exception
+    {
+        final FakeDirectory directory = new FakeDirectory();
+        directory.transientFailures.put( "ou=a,o=test", new AtomicInteger( 2 ) );
+
+        final LdifImporter.ImportResult result = LdifImporter.builder( directory.provider() )
+                .retryDelay( Duration.ofMillis( 1 ) )
+                .build()
+                .importLdif( new StringReader( "dn: ou=a,o=test\nobjectClass: organizationalUnit\n\n" ) );
+
+        Assertions.assertEquals( 1, result.getAddedCount() );
+        Assertions.assertEquals( 2, result.getRetryCount() );
+        Assertions.assertTrue( directory.entries.containsKey( "ou=a,o=test" ) );
+    }
+
+    @Test
+    public void testCheckpointResume()
+            throws Exception
+    {
+        final StringBuilder ldif = new StringBuilder();
+        for ( int i = 0; i < 10; i++ )
+        {
+            ldif.append( "dn: ou=ou" ).append( i ).append( ",o=test\nobjectClass: organizationalUnit\n\n" );
+        }
+        final Path checkpointFile = tempDir.resolve( "import.checkpoint" );
+
+        final FakeDirectory directory = new FakeDirectory();
+        directory.permanentFailures.add( "ou=ou6,o=test" );
+        final LdifImporter importer = LdifImporter.builder( directory.provider() )
+                .checkpointFile( checkpointFile )
+                .checkpointInterval( 2 )
+                .retryDelay( Duration.ofMillis( 1 ) )
+                .build();
+
+        Assertions.assertThrows( ChaiOperationException.class, () -> importer.importLdif( new StringReader( ldif.toString() ) ) );
+        Assertions.assertTrue( Files.readAllLines( checkpointFile ).contains( "recordsCompleted=6" ) );
+
+        directory.permanentFailures.clear();
+        final LdifImporter.ImportResult result = importer.importLdif( new StringReader( ldif.toString() ) );
+        Assertions.assertEquals( 6, result.getSkippedCount() );
+        Assertions.assertEquals( 4, result.getAddedCount() );
+        Assertions.assertEquals( 11, directory.entries.size() );
+        Assertions.assertFalse( Files.exists( checkpointFile ) );
+    }
+
+    @Test
+    public void testResumeAfterPartialAdds()
+            throws Exception
+    {
+        final StringBuilder ldif = new StringBuilder();
+        for ( int i = 0; i < 10; i++ )
+        {
+            ldif.append( "dn: ou=ou" ).append( i ).append( ",o=test\nobjectClass: organizationalUnit\n" )
+                    .append( "description: a\ndescription: b\njpegPhoto:: AQID\n\n" );
+        }
+        final Path checkpointFile = tempDir.resolve( "import.checkpoint" );
+        Files.write( checkpointFile, Collections.singletonList( "recordsCompleted=2" ) );
+
+        // the earlier run completed ou0 to ou3 but stopped part way through ou4, after the checkpoint was written
+        final FakeDirectory directory = new FakeDirectory();
+        for ( int i = 0; i < 5; i++ )
+        {
+            final Map<String, List<String>> entry = new LdapAttributeMap<>();
+            entry.put( "objectClass", new ArrayList<>( Collections.singletonList( "organizationalUnit" ) ) );
+            entry.put( "description", new ArrayList<>( i < 4 ? Arrays.asList( "a", "b" ) : Collections.singletonList( "a" ) ) );
+            if ( i < 4 )
+            {
+                entry.put( "jpegPhoto", new ArrayList<>( Collections.singletonList( "AQID" ) ) );
+            }
+            directory.entries.put( "ou=ou" + i + ",o=test", entry );
+        }
+
+        final LdifImporter.ImportResult result = LdifImporter.builder( directory.provider() )
+                .checkpointFile( checkpointFile )
+                .build()
+                .importLdif( new StringReader( ldif.toString() ) );
+
+        Assertions.assertEquals( 2, result.getSkippedCount() );
+        Assertions.assertEquals( 8, result.getAddedCount() );
+        Assertions.assertEquals( 0, result.getFailedCount() );
+        Assertions.assertEquals( 11, directory.entries.size() );
+        for ( int i = 0; i < 10; i++ )
+        {
+            final Map<String, List<String>> entry = directory.entries.get( "ou=ou" + i + ",o=test" );
+            Assertions.assertEquals( Arrays.asList( "a", "b" ), entry.get( "description" ) );
+            Assertions.assertEquals( Collections.singletonList( "AQID" ), entry.get( "jpegPhoto" ) );
+        }
+        Assertions.assertFalse( Files.exists( checkpointFile ) );
+    }
+
+    @Test
+    public void testRetriedAddReachedServer()
+            throws Exception
+    {
+        final FakeDirectory directory = new FakeDirectory();
+        directory.lostResponses.add( "ou=a,o=test" );
+
+        final LdifImporter.ImportResult result = LdifImporter.builder( directory.provider() )
+                .retryDelay( Duration.ofMillis( 1 ) )
+                .build()
+                .importLdif( new StringReader( "dn: ou=a,o=test\nobjectClass: organizationalUnit\ndescription: a\ndescription: b\n\n" ) );
+
+        Assertions.assertEquals( 1, result.getAddedCount() );
+        Assertions.assertEquals( 1, result.getRetryCount() );
+        Assertions.assertEquals( Arrays.asList( "a", "b" ), directory.entries.get( "ou=a,o=test" ).get( "description" ) );
+    }
+
+    @Test
+    public void testContinueOnError()
+            throws Exception
+    {
+        final FakeDirectory directory = new FakeDirectory();
+        final LdifImporter.ImportResult result = LdifImporter.builder( directory.provider() )
+                .continueOnError( true )
+                .build()
+                .importLdif( new StringReader( "dn: cn=orphan,ou=missing,o=test\nobjectClass: person\n\n"
+                        + "dn: ou=a,o=test\nobjectClass: organizationalUnit\n\n" ) );
+
+        Assertions.assertEquals( 1, result.getAddedCount() );
+        Assertions.assertEquals( 1, result.getFailedCount() );
+        Assertions.assertTrue( result.getFailureMessages().get( 0 ).contains( "cn=orphan,ou=missing,o=test" ) );
+    }
+
+    /**
+     * Minimal in-memory directory supporting the provider operations used by the importer.
+     */
+    private static class FakeDirectory
+    {
+        private final Map<String, Map<String, List<String>>> entries = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> transientFailures = new ConcurrentHashMap<>();
+        private final Set<String> permanentFailures = ConcurrentHashMap.newKeySet();
+        private final Set<String> lostResponses = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger batchWrites = new AtomicInteger();
+
+        FakeDirectory()
+        {
+            entries.put( "o=test", new LdapAttributeMap<>() );
+        }
+
+        ChaiProvider provider()
+        {
+            final AttributeSchema schema = AttributeSchema.fromAttributeTypes( Collections.singletonList(
+                    "( 0.9.2342.19200300.100.1.60 NAME 'jpegPhoto' SYNTAX 1.3.6.1.4.1.1466.115.121.1.28 )" ) );
+
+            return ( ChaiProvider ) Proxy.newProxyInstance( getClass().getClassLoader(), new Class[] {ChaiProvider.class}, ( proxy, method, args ) ->
+            {
+                if ( "getAttributeSchema".equals( method.getName() ) )
+                {
+                    return schema;
+                }
+
+                final String entryDN = ( String ) args[0];
+                synchronized ( this )
+                {
+                    switch ( method.getName() )
+                    {
+                        case "createEntry":
+                            createEntry( entryDN, ( Set<String> ) args[1], ( Map<String, String> ) args[2] );
+                            return null;
+
+                        case "writeStringAttribute":
+                            write( entryDN, ( String ) args[1], ( Set<String> ) args[2], ( Boolean ) args[3] );
+                            return null;
+
+                        case "writeStringAttributes":
+                            batchWrites.incrementAndGet();
+                            for ( final Map.Entry<String, String> entry : ( ( Map<String, String> ) args[1] ).entrySet() )
+                            {
+                                write( entryDN, entry.getKey(), Collections.singleton( entry.getValue() ), ( Boolean ) args[2] );
+                            }
+                            return null;
+
+                        case "writeBinaryAttribute":
+                            final List<String> encoded = new ArrayList<>();
+                            for ( final byte[] value : ( byte[][] ) args[2] )
+                            {
+                                encoded.add( Base64.getEncoder().encodeToString( value ) );
+                            }
+                            write( entryDN, ( String ) args[1], encoded, ( Boolean ) args[3] );
+                            return null;
+
+                        case "deleteStringAttributeValue":
+                            final List<String> values = entry( entryDN ).get( ( String ) args[1] );
+                            if ( args[2] == null || values == null )
+                            {
+                                entry( entryDN ).remove( ( String ) args[1] );
+                            }
+                            else
+                            {
+                                values.remove( ( String ) args[2] );
+                            }
+                            return null;
+
+                        case "readMultiStringAttribute":
+                            return new LinkedHashSet<>( entry( entryDN ).getOrDefault( ( String ) args[1], Collections.emptyList() ) );
+
+                        case "deleteEntry":
+                            entries.remove( entry( entryDN ) == null ? null : entryDN );
+                            return null;
+
+                        case "renameEntry":
+                            entries.put( args[1] + "," + args[2], entries.remove( entryDN ) );
+                            return null;
+
+                        default:
+                            throw new IllegalStateException( "unexpected method " + method.getName() );
+                    }
+                }
+            } );
+        }
+
+        private void createEntry( final String entryDN, final Set<String> objectClasses, final Map<String, String> attributes )
+                throws ChaiOperationException, ChaiUnavailableException
+        {
+            final AtomicInteger failures = transientFailures.get( entryDN );
+            if ( failures != null && failures.getAndDecrement() > 0 )
+            {
+                throw new ChaiUnavailableException( "server busy", ChaiError.COMMUNICATION, false, false );
+            }
+            if ( permanentFailures.contains( entryDN ) )
+            {
+                throw new ChaiOperationException( "constraint violation", ChaiError.UNKNOWN, true, false );
+            }
+            if ( !entries.containsKey( ChaiDn.parse( entryDN ).getParent().toString() ) )
+            {
+                throw new ChaiOperationException( "no such object", ChaiError.NO_SUCH_ENTRY, true, false );
+            }
+            if ( entries.containsKey( entryDN ) )
+            {
+                throw new ChaiOperationException( "entry already exists", ChaiError.UNKNOWN, true, false );
+            }
+
+            final Map<String, List<String>> entry = new LdapAttributeMap<>();
+            entry.put( "objectClass", new ArrayList<>( objectClasses ) );
+            for ( final Map.Entry<String, String> attribute : attributes.entrySet() )
+            {
+                entry.put( attribute.getKey(), new ArrayList<>( Collections.singletonList( attribute.getValue() ) ) );
+            }
+            entries.put( entryDN, entry );
+
+            if ( lostResponses.remove( entryDN ) )
+            {
+                throw new ChaiUnavailableException( "connection reset", ChaiError.COMMUNICATION, false, false );
+            }
+        }
+
+        private void write( final String entryDN, final String attributeName, final Collection<String> values, final boolean overwrite )
+                throws ChaiOperationException
+        {
+            final Map<String, List<String>> entry = entry( entryDN );
+            if ( overwrite )
+            {
+                entry.put( attributeName, new ArrayList<>( values ) );
+            }
+            else
+            {
+                entry.computeIfAbsent( attributeName, k -> new ArrayList<>() ).addAll( values );
+            }
+        }
+
+        private Map<String, List<String>> entry( final String entryDN )
+                throws ChaiOperationException
+        {
+            final Map<String, List<String>> entry = entries.get( entryDN );
+            if ( entry == null )
+            {
+                throw new ChaiOperationException( "no such object", ChaiError.NO_SUCH_ENTRY, true, false );
+            }
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class LdifReaderTest
+{
+    private static final String LDIF = "version: 1\n"
+            + "\n"
+            + "# a comment\n"
+            + "#  continued\n"
+            + "dn: cn=user,o=test\n"
+            + "objectClass: top\n"
+            + "objectclass: inetOrgPerson\n"
+            + "description: a long\n"
+            + "  folded value\n"
+            + "sn:: Y2Fmw6k=\n"
+            + "jpegPhoto:: AQID\n"
+            + "\n"
+            + "\n"
+            + "dn: cn=user,o=test\r\n"
+            + "changetype: modify\r\n"
+            + "replace: sn\r\n"
+            + "sn: new\r\n"
+            + "-\r\n"
+            + "delete: description\r\n"
+            + "\r\n"
+            + "dn: cn=user,o=test\n"
+            + "changetype: modrdn\n"
+            + "newrdn: cn=renamed\n"
+            + "deleteoldrdn: 1\n"
+            + "newsuperior: ou=people,o=test\n"
+            + "\n"
+            + "dn: cn=renamed,ou=people,o=test\n"
+            + "changetype: delete\n";
+
+    @Test
+    public void testReadRecords()
+            throws IOException
+    {
+        final LdifReader reader = new LdifReader( new StringReader( LDIF ), "jpegPhoto"::equalsIgnoreCase );
+
+        final LdifReader.Record add = reader.readRecord();
+        Assertions.assertEquals( "cn=user,o=test", add.getEntryDN() );
+        Assertions.assertEquals( LdifReader.ChangeType.ADD, add.getChangeType() );
+        Assertions.assertEquals( 5, add.getLineNumber() );
+        Assertions.assertEquals( Arrays.asList( "top", "inetOrgPerson" ), add.getStringValues().get( "objectClass" ) );
+        Assertions.assertEquals( Collections.singletonList( "a long folded value" ), add.getStringValues().get( "description" ) );
+        Assertions.assertEquals( Collections.singletonList( "café" ), add.getStringValues().get( "sn" ) );
+        Assertions.assertArrayEquals( new byte[] {1, 2, 3}, add.getBinaryValues().get( "jpegPhoto" ).get( 0 ) );
+
+        final LdifReader.Record modify = reader.readRecord();
+        Assertions.assertEquals( LdifReader.ChangeType.MODIFY, modify.getChangeType() );
+        Assertions.assertEquals( 2, modify.getModifications().size() );
+        Assertions.assertEquals( LdifReader.ModificationType.REPLACE, modify.getModifications().get( 0 ).getModificationType() );
+        Assertions.assertEquals( Collections.singletonList( "new" ), modify.getModifications().get( 0 ).getValues() );
+        Assertions.assertEquals( LdifReader.ModificationType.DELETE, modify.getModifications().get( 1 ).getModificationType() );
+        Assertions.assertEquals( "description", modify.getModifications().get( 1 ).getAttributeName() );
+        Assertions.assertTrue( modify.getModifications().get( 1 ).getValues().isEmpty() );
+
+        final LdifReader.Record rename = reader.readRecord();
+        Assertions.assertEquals( LdifReader.ChangeType.MODDN, rename.getChangeType() );
+        Assertions.assertEquals( "cn=renamed", rename.getNewRdn() );
+        Assertions.assertEquals( "ou=people,o=test", rename.getNewSuperior() );
+        Assertions.assertTrue( rename.isDeleteOldRdn() );
+
+        final LdifReader.Record delete = reader.readRecord();
+        Assertions.assertEquals( LdifReader.ChangeType.DELETE, delete.getChangeType() );
+        Assertions.assertEquals( "cn=renamed,ou=people,o=test", delete.getEntryDN() );
+
+        Assertions.assertNull( reader.readRecord() );
+    }
+
+    @Test
+    public void testInvalidLdif()
+    {
+        assertInvalid( "cn: no dn\n" );
+        assertInvalid( "dn: cn=a\nno separator\n" );
+        assertInvalid( "dn: cn=a\nchangetype: bogus\n" );
+        assertInvalid( "dn: cn=a\ncn:< file:///etc/passwd\n" );
+        assertInvalid( "dn: cn=a\nchangetype: modify\nreplace: sn\ncn: wrong\n" );
+        assertInvalid( " continuation\n" );
+    }
+
+    private static void assertInvalid( final String ldif )
+    {
+        final LdifReader reader = new LdifReader( new StringReader( ldif ), name -> false );
+        Assertions.assertThrows( IOException.class, reader::readRecord, ldif );
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public class LdifWriterTest
+{
+    @Test
+    public void testSafeValues()
+    {
+        final StringBuilder sb = new StringBuilder();
+        LdifWriter.appendDn( sb, "cn=user,o=test" );
+        LdifWriter.appendAttribute( sb, "cn", "user" );
+        LdifWriter.appendAttribute( sb, "description", "" );
+        LdifWriter.appendAttribute( sb, "title", "a: b < c" );
+        Assertions.assertEquals( "dn: cn=user,o=test\ncn: user\ndescription: \ntitle: a: b < c\n", sb.toString() );
+    }
+
+    @Test
+    public void testBase64Values()
+    {
+        Assertions.assertFalse( LdifWriter.isSafeString( " leading" ) );
+        Assertions.assertFalse( LdifWriter.isSafeString( ":colon" ) );
+        Assertions.assertFalse( LdifWriter.isSafeString( "<url" ) );
+        Assertions.assertFalse( LdifWriter.isSafeString( "trailing " ) );
+        Assertions.assertFalse( LdifWriter.isSafeString( "line\nbreak" ) );
+        Assertions.assertFalse( LdifWriter.isSafeString( "café" ) );
+        Assertions.assertTrue( LdifWriter.isSafeString( "plain value" ) );
+
+        final StringBuilder sb = new StringBuilder();
+        LdifWriter.appendAttribute( sb, "sn", "café" );
+        final String expected = Base64.getEncoder().encodeToString( "café".getBytes( StandardCharsets.UTF_8 ) );
+        Assertions.assertEquals( "sn:: " + expected + "\n", sb.toString() );
+
+        sb.setLength( 0 );
+        LdifWriter.appendAttribute( sb, "jpegPhoto", new byte[] {0, 1, 2} );
+        Assertions.assertEquals( "jpegPhoto:: AAEC\n", sb.toString() );
+    }
+
+    @Test
+    public void testFolding()
+    {
+        final StringBuilder value = new StringBuilder();
+        for ( int i = 0; i < 200; i++ )
+        {
+            value.append( ( char ) ( 'a' + i % 26 ) );
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        LdifWriter.appendAttribute( sb, "description", value.toString() );
+
+        final String[] lines = sb.toString().split( "\n" );
+        Assertions.assertEquals( 3, lines.length );
+        Assertions.assertEquals( LdifWriter.MAX_LINE_LENGTH, lines[0].length() );
+        final StringBuilder unfolded = new StringBuilder( lines[0] );
+        for ( int i = 1; i < lines.length; i++ )
+        {
+            Assertions.assertTrue( lines[i].startsWith( " " ) );
+            Assertions.assertTrue( lines[i].length() <= LdifWriter.MAX_LINE_LENGTH );
+            unfolded.append( lines[i].substring( 1 ) );
+        }
+        Assertions.assertEquals( "description: " + value, unfolded.toString() );
+    }
+}
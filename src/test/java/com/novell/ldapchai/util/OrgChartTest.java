@@ -0,0 +1,141 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import com.novell.ldapchai.InMemoryDirectory;
+import com.novell.ldapchai.provider.ChaiProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+
+public class OrgChartTest
+{
+    private static final String LDIF = "dn: o=example\nobjectClass: organization\no: example\n\n"
+            + person( "ceo", null, "20240101000000Z" )
+            + person( "cto", "ceo", "20240101000000Z" )
+            + person( "cfo", "ceo", "20240101000000Z" )
+            + person( "dev1", "cto", "20240102000000Z" )
+            + person( "dev2", "cto", "20240102000000Z" )
+            + person( "intern", "dev1", "20240103000000Z" )
+            + person( "contractor", "cn=vendor,o=elsewhere", "20240103000000Z" );
+
+    @TempDir
+    Path tempDir;
+
+    private InMemoryDirectory directory;
+    private ChaiProvider provider;
+
+    private static String person( final String cn, final String manager, final String timestamp )
+    {
+        final String managerDN = manager == null || manager.contains( "," ) ? manager : "cn=" + manager + ",o=example";
+        return "dn: cn=" + cn + ",o=example\nobjectClass: person\nobjectClass: inetOrgPerson\ncn: " + cn + "\n"
+                + ( managerDN == null ? "" : "manager: " + managerDN + "\n" )
+                + "modifyTimestamp: " + timestamp + "\n\n";
+    }
+
+    private static String dn( final String cn )
+    {
+        return "cn=" + cn + ",o=example";
+    }
+
+    @BeforeEach
+    public void setUp()
+            throws Exception
+    {
+        directory = InMemoryDirectory.builder( tempDir, LDIF )
+                .build();
+        provider = directory.newProvider();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        directory.close();
+    }
+
+    @Test
+    public void testHierarchyQueries()
+            throws Exception
+    {
+        final OrgChart orgChart = OrgChart.builder( provider, "o=example" ).build();
+
+        Assertions.assertEquals( 7, orgChart.size() );
+        Assertions.assertEquals( new HashSet<>( Arrays.asList( dn( "ceo" ), dn( "contractor" ) ) ), orgChart.getRoots() );
+        Assertions.assertEquals( Optional.of( dn( "cto" ) ), orgChart.getManager( "CN=Dev1,O=Example" ) );
+        Assertions.assertEquals( Optional.empty(), orgChart.getManager( dn( "ceo" ) ) );
+
+        Assertions.assertEquals( new HashSet<>( Arrays.asList( dn( "cto" ), dn( "cfo" ) ) ), orgChart.getDirectReports( dn( "ceo" ) ) );
+        Assertions.assertEquals( 2, orgChart.getSpanOfControl( dn( "cto" ) ) );
+        Assertions.assertEquals( 0, orgChart.getSpanOfControl( dn( "intern" ) ) );
+        Assertions.assertEquals( 5, orgChart.getSubtree( dn( "ceo" ) ).size() );
+        Assertions.assertEquals( 4, orgChart.getSubtree( dn( "ceo" ), 2 ).size() );
+        Assertions.assertEquals( Collections.singleton( dn( "contractor" ) ), orgChart.getDirectReports( "cn=vendor,o=elsewhere" ) );
+
+        Assertions.assertEquals( 3, orgChart.getDepth( dn( "intern" ) ) );
+        Assertions.assertEquals( 0, orgChart.getDepth( dn( "contractor" ) ) );
+        Assertions.assertEquals( -1, orgChart.getDepth( "cn=nobody,o=example" ) );
+        Assertions.assertEquals( Arrays.asList( dn( "dev1" ), dn( "cto" ), dn( "ceo" ) ), orgChart.getManagementChain( dn( "intern" ) ) );
+    }
+
+    @Test
+    public void testIncrementalRefresh()
+            throws Exception
+    {
+        final OrgChart orgChart = OrgChart.builder( provider, "o=example" ).build();
+
+        // move dev2 under the cfo and move the cfo under the intern
+        provider.writeStringAttribute( dn( "dev2" ), "manager", Collections.singleton( dn( "cfo" ) ), true );
+        provider.writeStringAttribute( dn( "dev2" ), "modifyTimestamp", Collections.singleton( "20240201000000Z" ), true );
+        provider.writeStringAttribute( dn( "cfo" ), "manager", Collections.singleton( dn( "intern" ) ), true );
+        provider.writeStringAttribute( dn( "cfo" ), "modifyTimestamp", Collections.singleton( "20240201000000Z" ), true );
+
+        // the entries at the newest timestamp of the previous refresh are read again
+        Assertions.assertEquals( 4, orgChart.refreshIncremental() );
+        Assertions.assertEquals( 1, orgChart.getSpanOfControl( dn( "cto" ) ) );
+        Assertions.assertEquals( Collections.singleton( dn( "dev2" ) ), orgChart.getDirectReports( dn( "cfo" ) ) );
+        Assertions.assertEquals( new HashSet<>( Arrays.asList( dn( "ceo" ), dn( "contractor" ) ) ), orgChart.getRoots() );
+
+        // dev2 -> cfo -> intern -> dev1 -> cto -> ceo
+        Assertions.assertEquals( 5, orgChart.getDepth( dn( "dev2" ) ) );
+        Assertions.assertEquals( 2, orgChart.refreshIncremental() );
+    }
+
+    @Test
+    public void testManagementCycle()
+            throws Exception
+    {
+        provider.writeStringAttribute( dn( "ceo" ), "manager", Collections.singleton( dn( "intern" ) ), true );
+        final OrgChart orgChart = OrgChart.builder( provider, "o=example" ).build();
+
+        Assertions.assertEquals( Collections.singleton( dn( "contractor" ) ), orgChart.getRoots() );
+        Assertions.assertEquals( 5, orgChart.getSubtree( dn( "ceo" ) ).size() );
+        Assertions.assertEquals( 3, orgChart.getManagementChain( dn( "intern" ) ).size() );
+        Assertions.assertEquals( 3, orgChart.getDepth( dn( "intern" ) ) );
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import com.novell.ldapchai.ChaiPasswordRule;
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiPasswordPolicyException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class PasswordPolicyEvaluatorTest
+{
+    private static PasswordPolicyEvaluator compile( final Map<ChaiPasswordRule, String> rules )
+    {
+        return PasswordPolicyEvaluator.compile( DefaultChaiPasswordPolicy.createDefaultChaiPasswordPolicyByRule( rules ) );
+    }
+
+    private static Set<ChaiError> errors( final List<PasswordPolicyEvaluator.Violation> violations )
+    {
+        return violations.stream().map( PasswordPolicyEvaluator.Violation::getError ).collect( Collectors.toSet() );
+    }
+
+    @Test
+    public void testCharacterRules()
+    {
+        final Map<ChaiPasswordRule, String> rules = new EnumMap<>( ChaiPasswordRule.class );
+        rules.put( ChaiPasswordRule.MinimumLength, "8" );
+        rules.put( ChaiPasswordRule.MaximumLength, "12" );
+        rules.put( ChaiPasswordRule.MinimumUpperCase, "1" );
+        rules.put( ChaiPasswordRule.AllowNumeric, "true" );
+        rules.put( ChaiPasswordRule.MinimumNumeric, "2" );
+        rules.put( ChaiPasswordRule.AllowFirstCharNumeric, "false" );
+        rules.put( ChaiPasswordRule.AllowSpecial, "false" );
+        final PasswordPolicyEvaluator evaluator = compile( rules );
+
+        Assertions.assertTrue( evaluator.evaluate( "Password12" ).isEmpty() );
+
+        // every violation is reported
+        Assertions.assertEquals(
+                EnumSet.of( ChaiError.PASSWORD_TOO_SHORT, ChaiError.PASSWORD_NOT_ENOUGH_UPPER, ChaiError.PASSWORD_NOT_ENOUGH_NUM,
+                        ChaiError.PASSWORD_FIRST_IS_NUMERIC, ChaiError.PASSWORD_SPECIAL_DISALLOWED ),
+                errors( evaluator.evaluate( "1pass!" ) ) );
+
+        Assertions.assertEquals( EnumSet.of( ChaiError.PASSWORD_TOO_LONG ), errors( evaluator.evaluate( "Password12345" ) ) );
+    }
+
+    @Test
+    public void testRepeatRules()
+    {
+        final Map<ChaiPasswordRule, String> rules = new EnumMap<>( ChaiPasswordRule.class );
+        rules.put( ChaiPasswordRule.MaximumSequentialRepeat, "2" );
+        rules.put( ChaiPasswordRule.MinimumUnique, "4" );
+        rules.put( ChaiPasswordRule.CaseSensitive, "false" );
+        final PasswordPolicyEvaluator evaluator = compile( rules );
+
+        Assertions.assertTrue( evaluator.evaluate( "aabbccd" ).isEmpty() );
+        Assertions.assertEquals( EnumSet.of( ChaiError.PASSWORD_TOO_MANY_REPEAT ), errors( evaluator.evaluate( "abcdaAa" ) ) );
+        Assertions.assertEquals( EnumSet.of( ChaiError.PASSWORD_NOT_ENOUGH_UNIQUE ), errors( evaluator.evaluate( "abcABC" ) ) );
+    }
+
+    @Test
+    public void testDisallowedValuesAndAttributes()
+            throws Exception
+    {
+        final Map<ChaiPasswordRule, String> rules = new EnumMap<>( ChaiPasswordRule.class );
+        rules.put( ChaiPasswordRule.DisallowedValues, "password\nsecret" );
+        rules.put( ChaiPasswordRule.DisallowedAttributes, "cn\ngivenName" );
+        final PasswordPolicyEvaluator evaluator = compile( rules );
+
+        Assertions.assertEquals( new LinkedHashSet<>( Arrays.asList( "cn", "givenName" ) ), evaluator.getRequiredAttributes() );
+        Assertions.assertEquals( EnumSet.of( ChaiError.PASSWORD_INWORDLIST ), errors( evaluator.evaluate( "MyPassWord" ) ) );
+
+        final Map<String, String> attributes = Collections.singletonMap( "CN", "jsmith" );
+        Assertions.assertEquals( EnumSet.of( ChaiError.PASSWORD_SAMEASATTR ), errors( evaluator.evaluate( "xJSmithx", attributes ) ) );
+
+        final ChaiPasswordPolicyException exception = Assertions.assertThrows( ChaiPasswordPolicyException.class,
+                () -> evaluator.check( "jsmith", attributes ) );
+        Assertions.assertEquals( ChaiError.PASSWORD_SAMEASATTR, exception.getErrorCode() );
+        evaluator.check( "unrelated", attributes );
+    }
+
+    @Test
+    public void testAdComplexity()
+    {
+        final Map<ChaiPasswordRule, String> rules = new EnumMap<>( ChaiPasswordRule.class );
+        rules.put( ChaiPasswordRule.ADComplexity, "true" );
+        rules.put( ChaiPasswordRule.AllowNumeric, "true" );
+        rules.put( ChaiPasswordRule.AllowSpecial, "true" );
+        final PasswordPolicyEvaluator evaluator = compile( rules );
+
+        Assertions.assertTrue( evaluator.getRequiredAttributes().contains( "sAMAccountName" ) );
+        Assertions.assertTrue( evaluator.evaluate( "Summer2024" ).isEmpty() );
+        Assertions.assertEquals( EnumSet.of( ChaiError.PASSWORD_BADPASSWORD ), errors( evaluator.evaluate( "summer2024" ) ) );
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put( "sAMAccountName", "jsmith" );
+        attributes.put( "displayName", "Smith, John" );
+        Assertions.assertEquals( EnumSet.of( ChaiError.PASSWORD_SAMEASATTR ), errors( evaluator.evaluate( "Jsmith2024", attributes ) ) );
+        Assertions.assertEquals( EnumSet.of( ChaiError.PASSWORD_SAMEASATTR ), errors( evaluator.evaluate( "John2024!", attributes ) ) );
+    }
+
+    @Test
+    public void testNovellComplexityRules()
+    {
+        final String complexityXml = "<RuleSets><Policy>"
+                + "<RuleSet ViolationsAllowed=\"0\"><Rule MinPwdLen=\"8\"/><Rule MaxPwdLen=\"16\"/></RuleSet>"
+                + "<RuleSet ViolationsAllowed=\"1\"><Rule MinUppercase=\"1\"/><Rule MinLowercase=\"1\"/><Rule MinNumeric=\"1\"/></RuleSet>"
+                + "</Policy></RuleSets>";
+
+        final Map<ChaiPasswordRule, String> rules = new EnumMap<>( ChaiPasswordRule.class );
+        rules.put( ChaiPasswordRule.NovellComplexityRules, complexityXml );
+        rules.put( ChaiPasswordRule.AllowNumeric, "true" );
+        final PasswordPolicyEvaluator evaluator = compile( rules );
+
+        // one violation of the second rule set is allowed
+        Assertions.assertTrue( evaluator.evaluate( "password1" ).isEmpty() );
+
+        final List<PasswordPolicyEvaluator.Violation> violations = evaluator.evaluate( "pass" );
+        Assertions.assertEquals( EnumSet.of( ChaiError.PASSWORD_TOO_SHORT, ChaiError.PASSWORD_NOT_ENOUGH_UPPER, ChaiError.PASSWORD_NOT_ENOUGH_NUM ),
+                errors( violations ) );
+        Assertions.assertEquals( ChaiPasswordRule.NovellComplexityRules, violations.get( 0 ).getRule() );
+    }
+
+    @Test
+    public void testDisabledPolicy()
+    {
+        final Map<ChaiPasswordRule, String> rules = new EnumMap<>( ChaiPasswordRule.class );
+        rules.put( ChaiPasswordRule.PolicyEnabled, "false" );
+        rules.put( ChaiPasswordRule.MinimumLength, "8" );
+        Assertions.assertTrue( compile( rules ).evaluate( "a" ).isEmpty() );
+    }
+}
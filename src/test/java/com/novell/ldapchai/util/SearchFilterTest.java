@@ -0,0 +1,104 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.util;
+
+import com.novell.ldapchai.provider.SearchScope;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class SearchFilterTest
+{
+    @Test
+    public void testEscaping()
+    {
+        Assertions.assertEquals( "(cn=a\\2ab\\28c\\29\\5c)", SearchFilter.equal( "cn", "a*b(c)\\" ).toString() );
+        Assertions.assertEquals( "(cn=Smith\\2a*)", SearchFilter.startsWith( "cn", "Smith*" ).toString() );
+        Assertions.assertEquals( "(cn=*)", SearchFilter.present( "cn" ).toString() );
+        Assertions.assertEquals( "(objectClass=*)", SearchFilter.ANY.toString() );
+        Assertions.assertEquals( "(uid>=10)", SearchFilter.greaterOrEqual( "uid", "10" ).toString() );
+    }
+
+    @Test
+    public void testFlattenAndDeduplicate()
+    {
+        final SearchFilter a = SearchFilter.equal( "a", "1" );
+        final SearchFilter b = SearchFilter.equal( "b", "2" );
+        final SearchFilter c = SearchFilter.equal( "c", "3" );
+
+        Assertions.assertEquals( "(&(a=1)(b=2)(c=3))", SearchFilter.and( SearchFilter.and( a, b ), b, SearchFilter.and( c, a ) ).toString() );
+        Assertions.assertEquals( "(|(a=1)(&(b=2)(c=3)))", SearchFilter.or( a, SearchFilter.or( a ), SearchFilter.and( b, c ) ).toString() );
+        Assertions.assertEquals( a, SearchFilter.and( a, a ) );
+        Assertions.assertEquals( a, SearchFilter.not( SearchFilter.not( a ) ) );
+        Assertions.assertThrows( IllegalArgumentException.class, () -> SearchFilter.and( Collections.emptyList() ) );
+    }
+
+    @Test
+    public void testParse()
+    {
+        final SearchFilter parsed = SearchFilter.parse( "(&(objectClass=person)(&(cn=bob)(objectClass=person))(!(!(sn=x))))" );
+        Assertions.assertEquals( "(&(objectClass=person)(cn=bob)(sn=x))", parsed.toString() );
+        Assertions.assertEquals( SearchFilter.and(
+                SearchFilter.equal( "objectClass", "person" ),
+                SearchFilter.equal( "cn", "bob" ),
+                SearchFilter.equal( "sn", "x" ) ), parsed );
+        Assertions.assertEquals( parsed.hashCode(), SearchFilter.parse( parsed.toString() ).hashCode() );
+        Assertions.assertEquals( "(cn=bob)", SearchFilter.parse( "cn=bob" ).toString() );
+        Assertions.assertThrows( IllegalArgumentException.class, () -> SearchFilter.parse( "(&(cn=bob)" ) );
+    }
+
+    @Test
+    public void testEqualityMaps()
+    {
+        final Map<String, String> values = new LinkedHashMap<>();
+        values.put( "objectClass", "inetOrgPerson" );
+        values.put( "cn", "j*" );
+        Assertions.assertEquals( "(&(objectClass=inetOrgPerson)(cn=j\\2a))", SearchFilter.allEqual( values ).toString() );
+        Assertions.assertEquals( "(|(objectClass=inetOrgPerson)(cn=j\\2a))", SearchFilter.anyEqual( values ).toString() );
+        Assertions.assertEquals( "(cn=x)", SearchFilter.allEqual( Collections.singletonMap( "cn", "x" ) ).toString() );
+    }
+
+    @Test
+    public void testSearchHelper()
+    {
+        final SearchFilter filter = SearchFilter.or( SearchFilter.equal( "cn", "a" ), SearchFilter.equal( "cn", "b" ) );
+        final SearchHelper searchHelper = new SearchHelper( filter, SearchScope.ONE );
+        Assertions.assertEquals( "(|(cn=a)(cn=b))", searchHelper.getFilter() );
+        Assertions.assertSame( filter, searchHelper.getSearchFilter() );
+        Assertions.assertSame( filter, new SearchHelper( searchHelper ).getSearchFilter() );
+
+        searchHelper.setFilterAnd( Collections.singletonMap( "sn", "c" ) );
+        Assertions.assertEquals( SearchFilter.equal( "sn", "c" ), searchHelper.getSearchFilter() );
+
+        searchHelper.setFilter( "(&(sn=c)(sn=c))" );
+        Assertions.assertEquals( "(sn=c)", searchHelper.getSearchFilter().toString() );
+
+        searchHelper.clearFilter();
+        Assertions.assertSame( SearchFilter.ANY, searchHelper.getSearchFilter() );
+
+        searchHelper.setFilter( "(cn=" );
+        Assertions.assertThrows( IllegalArgumentException.class, searchHelper::getSearchFilter );
+        Assertions.assertEquals( Arrays.asList( "(cn=" ), Collections.singletonList( searchHelper.getFilter() ) );
+    }
+}
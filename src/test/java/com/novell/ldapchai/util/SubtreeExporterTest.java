@@ -0,0 +1,321 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.novell.ldapchai.util;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.provider.AttributeSchema;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.CompactSearchResult;
+import com.novell.ldapchai.provider.SearchScope;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+public class SubtreeExporterTest
+{
+    private static final int USERS_PER_CONTAINER = 40;
+
+    private static final byte[] PHOTO = new byte[] {1, 2, 3, 4};
+
+    @Test
+    public void testLdifExport()
+            throws Exception
+    {
+        final Map<String, Map<String, List<String>>> tree = makeTree();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final AtomicInteger binarySearches = new AtomicInteger();
+
+        final SubtreeExporter.ExportResult result = SubtreeExporter.builder( makeProvider( tree, binarySearches ), "o=test" )
+                .workers( 4 )
+                .connectionPerWorker( false )
+                .build()
+                .export( Channels.newChannel( outputStream ) );
+
+        final String ldif = new String( outputStream.toByteArray(), StandardCharsets.UTF_8 );
+        Assertions.assertTrue( ldif.startsWith( "version: 1\n\n" ) );
+        Assertions.assertEquals( tree.size(), result.getEntryCount() );
+        Assertions.assertEquals( outputStream.size(), result.getByteCount() );
+        Assertions.assertEquals( 4, result.getContainerCount() );
+
+        final List<String> exportedDNs = new ArrayList<>();
+        for ( final String line : ldif.split( "\n" ) )
+        {
+            if ( line.startsWith( "dn: " ) )
+            {
+                exportedDNs.add( line.substring( 4 ) );
+            }
+        }
+        assertParentsFirst( tree, exportedDNs );
+
+        Assertions.assertTrue( ldif.contains( "jpegPhoto:: AQIDBA==\n" ) );
+        Assertions.assertFalse( ldif.contains( "hasSubordinates" ) );
+        Assertions.assertTrue( ldif.contains( "objectClass: organizationalUnit\n" ) );
+
+        // binary values are read with one search per container holding entries with binary attributes
+        Assertions.assertEquals( 3, binarySearches.get() );
+    }
+
+    @Test
+    public void testGzipJsonLinesExport()
+            throws Exception
+    {
+        final Map<String, Map<String, List<String>>> tree = makeTree();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        final SubtreeExporter.ExportResult result = SubtreeExporter.builder( makeProvider( tree ), "o=test" )
+                .format( SubtreeExporter.Format.JSON_LINES )
+                .attributes( Arrays.asList( "cn", "jpegPhoto" ) )
+                .gzip( true )
+                .build()
+                .export( Channels.newChannel( outputStream ) );
+
+        final StringWriter json = new StringWriter();
+        try ( Reader reader = new InputStreamReader(
+                new GZIPInputStream( new ByteArrayInputStream( outputStream.toByteArray() ) ), StandardCharsets.UTF_8 ) )
+        {
+            final char[] buffer = new char[4096];
+            for ( int read = reader.read( buffer ); read >= 0; read = reader.read( buffer ) )
+            {
+                json.write( buffer, 0, read );
+            }
+        }
+
+        final List<String> exportedDNs = new ArrayList<>();
+        for ( final String line : json.toString().split( "\n" ) )
+        {
+            final JsonObject jsonObject = JsonParser.parseString( line ).getAsJsonObject();
+            final String entryDN = jsonObject.get( "dn" ).getAsString();
+            exportedDNs.add( entryDN );
+
+            final JsonObject attributes = jsonObject.getAsJsonObject( "attributes" );
+            Assertions.assertFalse( attributes.has( "objectClass" ) );
+            Assertions.assertFalse( attributes.has( "hasSubordinates" ) );
+            if ( entryDN.startsWith( "cn=" ) )
+            {
+                Assertions.assertEquals( 1, attributes.size() );
+                Assertions.assertEquals( "AQIDBA==", jsonObject.getAsJsonObject( "binary" ).getAsJsonArray( "jpegPhoto" ).get( 0 ).getAsString() );
+            }
+        }
+
+        Assertions.assertEquals( tree.size(), result.getEntryCount() );
+        Assertions.assertEquals( json.toString().getBytes( StandardCharsets.UTF_8 ).length, result.getByteCount() );
+        assertParentsFirst( tree, exportedDNs );
+    }
+
+    @Test
+    public void testLargeContainerExportedInBatches()
+            throws Exception
+    {
+        final Map<String, Map<String, List<String>>> tree = new LinkedHashMap<>();
+        tree.put( "o=test", entry( "organization", null ) );
+        for ( int i = 0; i < 1200; i++ )
+        {
+            final Map<String, List<String>> user = entry( "inetOrgPerson", "FALSE" );
+            user.put( "jpegPhoto", Collections.singletonList( "[B@1234" ) );
+            tree.put( "cn=user" + i + ",o=test", user );
+        }
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final AtomicInteger binarySearches = new AtomicInteger();
+
+        final SubtreeExporter.ExportResult result = SubtreeExporter.builder( makeProvider( tree, binarySearches ), "o=test" )
+                .build()
+                .export( Channels.newChannel( outputStream ) );
+
+        final String ldif = new String( outputStream.toByteArray(), StandardCharsets.UTF_8 );
+        Assertions.assertEquals( tree.size(), result.getEntryCount() );
+        Assertions.assertEquals( 1200, ldif.split( "jpegPhoto:: AQIDBA==\n", -1 ).length - 1 );
+
+        // one binary search per batch of 500 entries
+        Assertions.assertEquals( 3, binarySearches.get() );
+    }
+
+    @Test
+    public void testMissingBase()
+    {
+        final ChaiProvider provider = makeProvider( makeTree() );
+        Assertions.assertThrows( ChaiOperationException.class, () -> SubtreeExporter.builder( provider, "o=missing" )
+                .build()
+                .export( Channels.newChannel( new ByteArrayOutputStream() ) ) );
+    }
+
+    private static void assertParentsFirst( final Map<String, Map<String, List<String>>> tree, final List<String> exportedDNs )
+    {
+        Assertions.assertEquals( tree.size(), exportedDNs.size() );
+        Assertions.assertEquals( tree.keySet(), new HashSet<>( exportedDNs ) );
+        Assertions.assertEquals( "o=test", exportedDNs.get( 0 ) );
+        for ( int i = 1; i < exportedDNs.size(); i++ )
+        {
+            final String parentDN = ChaiDn.parse( exportedDNs.get( i ) ).getParent().toString();
+            Assertions.assertTrue( exportedDNs.subList( 0, i ).contains( parentDN ), "parent of " + exportedDNs.get( i ) + " not yet exported" );
+        }
+    }
+
+    private static Map<String, Map<String, List<String>>> makeTree()
+    {
+        final Map<String, Map<String, List<String>>> tree = new LinkedHashMap<>();
+        tree.put( "o=test", entry( "organization", null ) );
+        for ( final String container : new String[] {"ou=a,o=test", "ou=b,o=test", "ou=c,ou=a,o=test"} )
+        {
+            // ou=b relies on the subordinate attribute, the others on the object class
+            tree.put( container, entry( "organizationalUnit", container.startsWith( "ou=b" ) ? "TRUE" : null ) );
+            for ( int i = 0; i < USERS_PER_CONTAINER; i++ )
+            {
+                final Map<String, List<String>> user = entry( "inetOrgPerson", "FALSE" );
+                user.put( "cn", Collections.singletonList( "user" + i ) );
+                user.put( "jpegPhoto", Collections.singletonList( "[B@1234" ) );
+                tree.put( "cn=user" + i + "," + container, user );
+            }
+        }
+        return tree;
+    }
+
+    private static Map<String, List<String>> entry( final String objectClass, final String hasSubordinates )
+    {
+        final Map<String, List<String>> entry = new LinkedHashMap<>();
+        entry.put( "objectClass", Arrays.asList( "top", objectClass ) );
+        if ( hasSubordinates != null )
+        {
+            entry.put( "hasSubordinates", Collections.singletonList( hasSubordinates ) );
+        }
+        return entry;
+    }
+
+    private static ChaiProvider makeProvider( final Map<String, Map<String, List<String>>> tree )
+    {
+        return makeProvider( tree, new AtomicInteger() );
+    }
+
+    private static ChaiProvider makeProvider( final Map<String, Map<String, List<String>>> tree, final AtomicInteger binarySearches )
+    {
+        final AttributeSchema schema = AttributeSchema.fromAttributeTypes( Collections.singletonList(
+                "( 0.9.2342.19200300.100.1.60 NAME 'jpegPhoto' SYNTAX 1.3.6.1.4.1.1466.115.121.1.28 )" ) );
+
+        return ( ChaiProvider ) Proxy.newProxyInstance( SubtreeExporterTest.class.getClassLoader(), new Class[] {ChaiProvider.class}, ( proxy, method, args ) ->
+        {
+            switch ( method.getName() )
+            {
+                case "getAttributeSchema":
+                    return schema;
+
+                case "searchMultiByteValues":
+                    binarySearches.incrementAndGet();
+                    return binarySearch( tree, ( String ) args[0], ( SearchHelper ) args[1] );
+
+                case "searchStream":
+                    for ( final Map.Entry<String, Map<String, List<String>>> entry
+                            : search( tree, ( String ) args[0], ( SearchHelper ) args[1] ).asMap().entrySet() )
+                    {
+                        ( ( ChaiProvider.SearchResultHandler ) args[2] ).handleEntry( entry.getKey(), entry.getValue() );
+                    }
+                    return null;
+
+                default:
+                    throw new IOException( "unexpected method " + method.getName() );
+            }
+        } );
+    }
+
+    private static CompactSearchResult search( final Map<String, Map<String, List<String>>> tree, final String baseDN, final SearchHelper searchHelper )
+    {
+        final Map<String, Map<String, List<String>>> results = new LinkedHashMap<>();
+        for ( final Map.Entry<String, Map<String, List<String>>> entry : tree.entrySet() )
+        {
+            final ChaiDn entryDN = ChaiDn.parse( entry.getKey() );
+            final boolean matches = searchHelper.getSearchScope() == SearchScope.BASE
+                    ? entryDN.equals( ChaiDn.parse( baseDN ) )
+                    : !entryDN.isRoot() && entryDN.getParent().equals( ChaiDn.parse( baseDN ) );
+            if ( matches )
+            {
+                final Map<String, List<String>> attributes = new LinkedHashMap<>();
+                for ( final Map.Entry<String, List<String>> attribute : entry.getValue().entrySet() )
+                {
+                    if ( searchHelper.getAttributes().contains( "*" ) || searchHelper.getAttributes().contains( attribute.getKey() ) )
+                    {
+                        attributes.put( attribute.getKey(), attribute.getValue() );
+                    }
+                }
+                results.put( entry.getKey(), attributes );
+            }
+        }
+        return CompactSearchResult.fromMap( results );
+    }
+
+    private static Map<String, Map<String, byte[][]>> binarySearch(
+            final Map<String, Map<String, List<String>>> tree,
+            final String baseDN,
+            final SearchHelper searchHelper
+    )
+    {
+        Assertions.assertEquals( Collections.singleton( "jpegPhoto" ), searchHelper.getAttributes() );
+
+        // one-level searches are limited to the entries of a batch by an rdn filter
+        final Set<String> filterRdns = new HashSet<>();
+        final Matcher matcher = Pattern.compile( "\\(([^()|=]+=[^()]*)\\)" ).matcher( searchHelper.getFilter() );
+        while ( matcher.find() )
+        {
+            filterRdns.add( matcher.group( 1 ) );
+        }
+        if ( searchHelper.getSearchScope() == SearchScope.ONE )
+        {
+            Assertions.assertFalse( filterRdns.isEmpty() );
+        }
+
+        final Map<String, Map<String, byte[][]>> results = new LinkedHashMap<>();
+        for ( final Map.Entry<String, Map<String, List<String>>> entry : search( tree, baseDN, searchHelper ).asMap().entrySet() )
+        {
+            final ChaiDn entryDN = ChaiDn.parse( entry.getKey() );
+            if ( !filterRdns.isEmpty() && !filterRdns.contains( entryDN.getRdnType() + "=" + entryDN.getRdnValue() ) )
+            {
+                continue;
+            }
+            final Map<String, byte[][]> attributes = new LinkedHashMap<>();
+            for ( final String attributeName : entry.getValue().keySet() )
+            {
+                attributes.put( attributeName, new byte[][] {PHOTO} );
+            }
+            results.put( entry.getKey(), attributes );
+        }
+        return results;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2017 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.util.internal;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LdapFilterTest
+{
+    @Test
+    public void testParseItems()
+    {
+        Assertions.assertEquals( LdapFilter.Type.EQUALITY, LdapFilter.parse( "(cn=bob)" ).getType() );
+        Assertions.assertEquals( LdapFilter.Type.PRESENT, LdapFilter.parse( "(cn=*)" ).getType() );
+        Assertions.assertEquals( LdapFilter.Type.GREATER_OR_EQUAL, LdapFilter.parse( "(uidNumber>=100)" ).getType() );
+        Assertions.assertEquals( LdapFilter.Type.LESS_OR_EQUAL, LdapFilter.parse( "(uidNumber<=100)" ).getType() );
+        Assertions.assertEquals( LdapFilter.Type.APPROXIMATE, LdapFilter.parse( "(cn~=bob)" ).getType() );
+
+        final LdapFilter substring = LdapFilter.parse( "(cn=ab*cd*ef*)" );
+        Assertions.assertEquals( LdapFilter.Type.SUBSTRING, substring.getType() );
+        Assertions.assertEquals( "ab", substring.getSubstringInitial() );
+        Assertions.assertEquals( Arrays.asList( "cd", "ef" ), substring.getSubstringAny() );
+        Assertions.assertNull( substring.getSubstringFinal() );
+
+        final LdapFilter extensible = LdapFilter.parse( "(member:dn:1.2.840.113556.1.4.1941:=cn=group,o=test)" );
+        Assertions.assertEquals( LdapFilter.Type.EXTENSIBLE, extensible.getType() );
+        Assertions.assertEquals( "member", extensible.getAttribute() );
+        Assertions.assertTrue( extensible.isDnAttributes() );
+        Assertions.assertEquals( "1.2.840.113556.1.4.1941", extensible.getMatchingRule() );
+        Assertions.assertEquals( "cn=group,o=test", extensible.getValue() );
+        Assertions.assertFalse( extensible.isEvaluable() );
+    }
+
+    @Test
+    public void testParseComposite()
+    {
+        final LdapFilter filter = LdapFilter.parse( "(&(objectClass=person)(|(cn=a)(cn=b))(!(mail=*)))" );
+        Assertions.assertEquals( LdapFilter.Type.AND, filter.getType() );
+        Assertions.assertEquals( 3, filter.getChildren().size() );
+        Assertions.assertEquals( LdapFilter.Type.OR, filter.getChildren().get( 1 ).getType() );
+        Assertions.assertEquals( LdapFilter.Type.NOT, filter.getChildren().get( 2 ).getType() );
+        Assertions.assertEquals( "(&(objectClass=person)(|(cn=a)(cn=b))(!(mail=*)))", filter.toString() );
+    }
+
+    @Test
+    public void testEscaping()
+    {
+        final LdapFilter filter = LdapFilter.parse( "(cn=a\\2a\\28b\\29\\5c\\c3\\a9)" );
+        Assertions.assertEquals( "a*(b)\\é".replace( "é", new String( new char[] {0xe9} ) ), filter.getValue() );
+        Assertions.assertEquals( "(cn=a\\2a\\28b\\29\\5c" + new String( new char[] {0xe9} ) + ")", filter.toString() );
+        Assertions.assertEquals( filter, LdapFilter.parse( filter.toString() ) );
+        Assertions.assertEquals( "(cn=x\\2ay)", LdapFilter.equality( "cn", "x*y" ).toString() );
+        Assertions.assertEquals( "\\28\\29", LdapFilter.escapeValue( "()" ) );
+    }
+
+    @Test
+    public void testLenientForms()
+    {
+        Assertions.assertEquals( LdapFilter.parse( "(cn=bob)" ), LdapFilter.parse( "cn=bob" ) );
+        Assertions.assertEquals( LdapFilter.parse( "(&(cn=a)(cn=b))" ), LdapFilter.parse( "(& (cn=a) (cn=b) )" ) );
+        Assertions.assertEquals( "a*b", LdapFilter.parse( "(cn=a\\*b)" ).getValue() );
+    }
+
+    @Test
+    public void testInvalidFilters()
+    {
+        for ( final String invalid : Arrays.asList( "(cn=bob", "(=bob)", "(cn=a(b)", "(cn=bob))", "(c n=bob)", "(cn=bob\\)", "()" ) )
+        {
+            Assertions.assertThrows( IllegalArgumentException.class, () -> LdapFilter.parse( invalid ), invalid );
+        }
+    }
+
+    @Test
+    public void testMatches()
+    {
+        final Map<String, List<String>> entry = new LinkedHashMap<>();
+        entry.put( "objectClass", Arrays.asList( "top", "inetOrgPerson" ) );
+        entry.put( "cn", Collections.singletonList( "Alice Smith" ) );
+        entry.put( "uidNumber", Collections.singletonList( "1200" ) );
+
+        Assertions.assertTrue( LdapFilter.parse( "(objectclass=INETORGPERSON)" ).matches( entry ) );
+        Assertions.assertTrue( LdapFilter.parse( "(cn=alice*)" ).matches( entry ) );
+        Assertions.assertTrue( LdapFilter.parse( "(cn=*ce*smi*)" ).matches( entry ) );
+        Assertions.assertFalse( LdapFilter.parse( "(cn=*smith*alice)" ).matches( entry ) );
+        Assertions.assertTrue( LdapFilter.parse( "(uidNumber>=900)" ).matches( entry ) );
+        Assertions.assertFalse( LdapFilter.parse( "(uidNumber<=900)" ).matches( entry ) );
+        Assertions.assertTrue( LdapFilter.parse( "(&(cn=*)(!(mail=*)))" ).matches( entry ) );
+        Assertions.assertFalse( LdapFilter.parse( "(|(mail=*)(cn=bob))" ).matches( entry ) );
+        Assertions.assertTrue( LdapFilter.parse( "(&)" ).matches( entry ) );
+        Assertions.assertFalse( LdapFilter.parse( "(|)" ).matches( entry ) );
+        Assertions.assertFalse( LdapFilter.parse( "(cn:caseExactMatch:=Alice Smith)" ).matches( entry ) );
+    }
+}